@@ -2,8 +2,9 @@
  * ExternalCompare.java
  *
  * Standalone (non-JMH, non-ant-managed) throughput comparison of Gonzalez's
- * raw namespace-aware XMLHandler path and SAXAdapter path against the JDK's
- * bundled Xerces and an externally supplied aalto-xml, over the file-backed
+ * raw namespace-aware XMLHandler path, SAXAdapter path and XMLCursor pull
+ * path against the JDK's bundled Xerces and an externally supplied
+ * aalto-xml, over the file-backed
  * benchmark/resources corpus plus generated encoding and DTD cases. See
  * benchmark/external-compare/run.sh for how this is compiled/run -
  * deliberately kept out of build.xml (no new project dependency). The script
@@ -97,6 +98,14 @@ public class ExternalCompare {
                 reader.parse(new InputSource(new ByteArrayInputStream(bytes)));
             });
 
+            time(docType, "gonzalez-cursor", bytes, mb, () -> {
+                XMLCursor cursor = new XMLCursor(new ByteArrayInputStream(bytes));
+                while (cursor.hasNext()) {
+                    cursor.next();
+                }
+                cursor.close();
+            });
+
             time(docType, "jdk-xerces", bytes, mb, () -> {
                 SAXParser parser = jdkFactory.newSAXParser();
                 parser.parse(new ByteArrayInputStream(bytes), EMPTY_HANDLER);
@@ -170,4 +170,31 @@ public class ScannerPipelineBenchmark {
         scanner.close();
     }
 
+    /**
+     * Same as {@link #largeFile_ScannerPipeline} but fed through {@link
+     * ExternalEntityDecoder} in 64 KB reads, the way {@link Parser}
+     * feeds it: bytes are decoded straight into the Scanner's buffer with
+     * line endings normalized in place. The difference to the up-front
+     * decode above is the cost of incremental decoding.
+     */
+    @Benchmark
+    public void largeFile_DecoderPipeline() throws Exception {
+        SAXAdapter adapter = new SAXAdapter(false);
+        adapter.setContentHandler(emptyHandler);
+        Scanner scanner = new Scanner(adapter);
+        ExternalEntityDecoder decoder = new ExternalEntityDecoder(scanner, null, null, false);
+
+        ByteBuffer buffer = ByteBuffer.allocate(65536);
+        int offset = 0;
+        while (offset < largeBytesNoDecl.length) {
+            int n = Math.min(buffer.remaining(), largeBytesNoDecl.length - offset);
+            buffer.put(largeBytesNoDecl, offset, n);
+            offset += n;
+            buffer.flip();
+            decoder.receive(buffer);
+            buffer.compact();
+        }
+        decoder.close();
+    }
+
 }
@@ -22,6 +22,7 @@
 package org.bluezoo.gonzalez.benchmark;
 
 import org.bluezoo.gonzalez.Parser;
+import org.bluezoo.gonzalez.ParserPool;
 import org.openjdk.jmh.annotations.*;
 import org.xml.sax.helpers.DefaultHandler;
 
@@ -72,6 +73,7 @@ public class XMLParserBenchmark {
     private byte[] largeBytes;
 
     private Parser reusableParser;
+    private ParserPool parserPool;
 
     private static final String JDK_XERCES_FACTORY =
         "com.sun.org.apache.xerces.internal.jaxp.SAXParserFactoryImpl";
@@ -120,6 +122,13 @@ public class XMLParserBenchmark {
             throw new FileNotFoundException("Large test file not found: " + largeFile);
         }
 
+        parserPool = new ParserPool(ParserPool.DEFAULT_MAX_IDLE, new ParserPool.Configurer() {
+            @Override
+            public void configure(Parser parser) throws org.xml.sax.SAXException {
+                parser.setFeature("http://xml.org/sax/features/namespaces", namespaceAware);
+            }
+        });
+
         smallBytes = Files.readAllBytes(smallFile);
         largeBytes = Files.readAllBytes(largeFile);
 
@@ -152,6 +161,24 @@ public class XMLParserBenchmark {
         parser.close();
     }
 
+    /**
+     * The same parse as smallFile_Gonzalez, with the parser borrowed from a
+     * {@link ParserPool} rather than constructed: the difference is the
+     * per-document construction cost pooling saves.
+     */
+    @Benchmark
+    public void smallFile_Gonzalez_Pooled() throws Exception {
+        Parser parser = parserPool.acquire();
+        try {
+            parser.setContentHandler(emptyHandler);
+            ByteBuffer buffer = ByteBuffer.wrap(smallBytes);
+            parser.receive(buffer);
+            parser.close();
+        } finally {
+            parserPool.release(parser);
+        }
+    }
+
     // ===== Large File =====
 
     @Benchmark
@@ -0,0 +1,391 @@
+/*
+ * XSDSchema.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.schema.xsd;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents an XML Schema (XSD) document.
+ *
+ * <p>Contains the schema's target namespace and all global element,
+ * attribute, and type declarations.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class XSDSchema implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * XML Schema namespace URI.
+     *
+     * <p>This is the namespace URI for XML Schema definitions (xs: prefix).
+     * All XSD built-in types and schema elements belong to this namespace.
+     */
+    public static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+    
+    /**
+     * XML Schema Instance namespace URI.
+     *
+     * <p>This is the namespace URI for XML Schema Instance attributes (xsi: prefix),
+     * such as xsi:type, xsi:nil, xsi:schemaLocation, etc.
+     */
+    public static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+    
+    private final String targetNamespace;
+    private final Map<String, XSDElement> globalElements = new HashMap<>();
+    private final Map<String, XSDAttribute> globalAttributes = new HashMap<>();
+    private final Map<String, XSDType> types = new HashMap<>();
+    
+    // Substitution group tracking: maps head element name -> list of members
+    private final Map<String, java.util.List<XSDElement>> substitutionGroups = new HashMap<>();
+    
+    // Schema-level settings
+    private String elementFormDefault = "unqualified";
+    private String attributeFormDefault = "unqualified";
+    
+    /**
+     * Creates a schema with the given target namespace.
+     *
+     * <p>The schema is initialized with all XSD Part 2 built-in types registered.
+     *
+     * @param targetNamespace the target namespace URI, or null for no namespace
+     */
+    public XSDSchema(String targetNamespace) {
+        this.targetNamespace = targetNamespace;
+        registerBuiltInTypes();
+    }
+    
+    /**
+     * Registers XSD built-in types.
+     *
+     * <p>This method is called during construction to make all XSD Part 2
+     * built-in types available for reference.
+     */
+    private void registerBuiltInTypes() {
+        // Register all XSD Part 2 built-in types
+        for (String typeName : XSDSimpleType.getBuiltInTypeNames()) {
+            types.put(typeName, XSDSimpleType.getBuiltInType(typeName));
+        }
+    }
+    
+    /**
+     * Returns the target namespace of this schema.
+     *
+     * @return the target namespace URI, or null for no namespace schemas
+     */
+    public String getTargetNamespace() {
+        return targetNamespace;
+    }
+    
+    /**
+     * Returns the element form default.
+     *
+     * <p>This determines whether local element declarations are qualified
+     * by default. Can be "qualified" or "unqualified".
+     *
+     * @return the element form default (defaults to "unqualified")
+     */
+    public String getElementFormDefault() {
+        return elementFormDefault;
+    }
+    
+    /**
+     * Sets the element form default.
+     *
+     * @param value "qualified" or "unqualified"
+     */
+    public void setElementFormDefault(String value) {
+        this.elementFormDefault = value;
+    }
+    
+    /**
+     * Returns the attribute form default.
+     *
+     * <p>This determines whether local attribute declarations are qualified
+     * by default. Can be "qualified" or "unqualified".
+     *
+     * @return the attribute form default (defaults to "unqualified")
+     */
+    public String getAttributeFormDefault() {
+        return attributeFormDefault;
+    }
+    
+    /**
+     * Sets the attribute form default.
+     *
+     * @param value "qualified" or "unqualified"
+     */
+    public void setAttributeFormDefault(String value) {
+        this.attributeFormDefault = value;
+    }
+    
+    /**
+     * Adds a global element declaration to this schema.
+     *
+     * <p>Global elements can be referenced from anywhere in the schema and
+     * can serve as root elements in instance documents.
+     *
+     * <p>If the element has a substitution group, it is registered as a
+     * member of that substitution group.
+     *
+     * @param element the global element declaration
+     */
+    public void addElement(XSDElement element) {
+        globalElements.put(element.getName(), element);
+        
+        // Track substitution group membership
+        String subGroup = element.getSubstitutionGroup();
+        if (subGroup != null) {
+            java.util.List<XSDElement> members = substitutionGroups.get(subGroup);
+            if (members == null) {
+                members = new java.util.ArrayList<>();
+                substitutionGroups.put(subGroup, members);
+            }
+            members.add(element);
+        }
+    }
+    
+    /**
+     * Gets a global element declaration by name.
+     *
+     * @param name the element name (local part)
+     * @return the element declaration, or null if not found
+     */
+    public XSDElement getElement(String name) {
+        return globalElements.get(name);
+    }
+    
+    /**
+     * Returns all global element declarations.
+     *
+     * @return an unmodifiable map of element names to declarations
+     */
+    public Map<String, XSDElement> getElements() {
+        return Collections.unmodifiableMap(globalElements);
+    }
+    
+    /**
+     * Adds a global attribute declaration to this schema.
+     *
+     * <p>Global attributes can be referenced from complex type definitions.
+     *
+     * @param attribute the global attribute declaration
+     */
+    public void addAttribute(XSDAttribute attribute) {
+        globalAttributes.put(attribute.getName(), attribute);
+    }
+    
+    /**
+     * Gets a global attribute declaration by name.
+     *
+     * @param name the attribute name (local part)
+     * @return the attribute declaration, or null if not found
+     */
+    public XSDAttribute getAttribute(String name) {
+        return globalAttributes.get(name);
+    }
+    
+    /**
+     * Returns all global attribute declarations.
+     *
+     * @return an unmodifiable map of attribute names to declarations
+     */
+    public Map<String, XSDAttribute> getAttributes() {
+        return Collections.unmodifiableMap(globalAttributes);
+    }
+    
+    /**
+     * Adds a named type (simple or complex) to this schema.
+     *
+     * <p>Named types can be referenced from element and attribute declarations.
+     *
+     * @param name the type name (local part)
+     * @param type the type definition
+     */
+    public void addType(String name, XSDType type) {
+        types.put(name, type);
+    }
+    
+    /**
+     * Gets a type definition by name.
+     *
+     * <p>This searches both user-defined types and built-in types.
+     *
+     * @param name the type name (local part)
+     * @return the type definition, or null if not found
+     */
+    public XSDType getType(String name) {
+        return types.get(name);
+    }
+    
+    /**
+     * Returns all type definitions (including built-in types).
+     *
+     * @return an unmodifiable map of type names to definitions
+     */
+    public Map<String, XSDType> getTypes() {
+        return Collections.unmodifiableMap(types);
+    }
+    
+    /**
+     * Resolves an element declaration for the given namespace and local name.
+     *
+     * <p>This method takes into account the elementFormDefault setting to
+     * determine whether the element should be qualified. It searches for
+     * global elements in the target namespace.
+     *
+     * @param namespaceURI the element namespace URI (may be null)
+     * @param localName the element local name
+     * @return the element declaration, or null if not found
+     */
+    public XSDElement resolveElement(String namespaceURI, String localName) {
+        // Check if namespace matches target namespace
+        boolean namespaceMatches = (targetNamespace == null && (namespaceURI == null || namespaceURI.isEmpty()))
+            || (targetNamespace != null && targetNamespace.equals(namespaceURI));
+        
+        if (namespaceMatches) {
+            return globalElements.get(localName);
+        }
+        return null;
+    }
+    
+    /**
+     * Gets all members of a substitution group, including the head element.
+     *
+     * <p>This method returns all elements that can substitute for the given
+     * head element, including the head itself and all transitive members.
+     *
+     * <p>Example: If "car" and "bicycle" are in the substitution group for "vehicle",
+     * and "sedan" is in the substitution group for "car", then calling this method
+     * with "vehicle" returns: [vehicle, car, bicycle, sedan].
+     *
+     * @param headElementName the name of the substitution group head element
+     * @return a list of all elements in the substitution group (including head),
+     *         or an empty list if the element has no substitution group
+     */
+    public java.util.List<XSDElement> getSubstitutionGroupMembers(String headElementName) {
+        java.util.List<XSDElement> result = new java.util.ArrayList<>();
+        java.util.Set<String> visited = new java.util.HashSet<>();
+        
+        // Add the head element itself
+        XSDElement headElement = globalElements.get(headElementName);
+        if (headElement != null) {
+            result.add(headElement);
+            visited.add(headElementName);
+        }
+        
+        // Recursively add all members
+        collectSubstitutionGroupMembers(headElementName, result, visited);
+        
+        return result;
+    }
+    
+    /**
+     * Recursively collects all substitution group members.
+     *
+     * @param headName the current head element name
+     * @param result the accumulating list of members
+     * @param visited set of already-visited element names (prevents cycles)
+     */
+    private void collectSubstitutionGroupMembers(String headName, 
+                                                  java.util.List<XSDElement> result,
+                                                  java.util.Set<String> visited) {
+        java.util.List<XSDElement> directMembers = substitutionGroups.get(headName);
+        if (directMembers != null) {
+            for (XSDElement member : directMembers) {
+                String memberName = member.getName();
+                if (!visited.contains(memberName)) {
+                    result.add(member);
+                    visited.add(memberName);
+                    // Recursively add members of this member's substitution group
+                    collectSubstitutionGroupMembers(memberName, result, visited);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the local names of all elements and attributes declared in
+     * this schema, global or local - the vocabulary of its instance
+     * documents, for seeding an {@link org.bluezoo.gonzalez.NameDictionary}.
+     *
+     * @return the declared names
+     */
+    public java.util.Set<String> getDeclaredNames() {
+        java.util.Set<String> names = new java.util.LinkedHashSet<>();
+        java.util.Set<XSDType> visited = new java.util.HashSet<>();
+        for (XSDElement element : globalElements.values()) {
+            collectDeclaredNames(element, names, visited);
+        }
+        for (XSDAttribute attribute : globalAttributes.values()) {
+            names.add(attribute.getName());
+        }
+        for (XSDType type : types.values()) {
+            collectDeclaredNames(type, names, visited);
+        }
+        return names;
+    }
+
+    private void collectDeclaredNames(XSDElement element, java.util.Set<String> names,
+                                      java.util.Set<XSDType> visited) {
+        names.add(element.getName());
+        if (element.getType() != null) {
+            collectDeclaredNames(element.getType(), names, visited);
+        }
+    }
+
+    private void collectDeclaredNames(XSDType type, java.util.Set<String> names,
+                                      java.util.Set<XSDType> visited) {
+        if (!(type instanceof XSDComplexType) || !visited.add(type)) {
+            return;
+        }
+        XSDComplexType complexType = (XSDComplexType) type;
+        names.addAll(complexType.getAttributes().keySet());
+        for (XSDParticle particle : complexType.getParticles()) {
+            collectDeclaredNames(particle, names, visited);
+        }
+        if (complexType.getBaseType() != null) {
+            collectDeclaredNames(complexType.getBaseType(), names, visited);
+        }
+    }
+
+    private void collectDeclaredNames(XSDParticle particle, java.util.Set<String> names,
+                                      java.util.Set<XSDType> visited) {
+        if (particle.getElement() != null) {
+            collectDeclaredNames(particle.getElement(), names, visited);
+        }
+        for (XSDParticle child : particle.getChildren()) {
+            collectDeclaredNames(child, names, visited);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "XSDSchema[targetNamespace=" + targetNamespace + 
+               ", elements=" + globalElements.size() +
+               ", types=" + types.size() + "]";
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * FunctionResultCache.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform;
+
+import org.bluezoo.gonzalez.transform.compiler.UserFunction;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathAnyURI;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathAtomicValue;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathBinaryValue;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathBoolean;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathDateTime;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNodeSet;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNumber;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathQName;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathSequence;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathString;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathTypedAtomic;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded memo cache for xsl:function declarations with cache="yes".
+ *
+ * <p>Each compiled stylesheet owns one cache, which holds the configuration
+ * and the hit, miss and eviction counters. Every transformation obtains its
+ * own child via {@link #forTransformation}. With {@link Scope#TRANSFORM}
+ * (the default) results live only as long as the transformation; with
+ * {@link Scope#TEMPLATES} calls whose arguments and result are purely
+ * atomic are shared by all transformations of the same Templates, while
+ * calls involving nodes, maps or function items stay local to the
+ * transformation so that no source document is retained.
+ *
+ * <p>Keys compare arguments structurally: nodes by identity, atomic values
+ * by type and value, so that {@code f(1)} and {@code f('1')} are distinct.
+ * Entries are evicted in least-recently-used order once the entry budget
+ * is reached.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class FunctionResultCache {
+
+    /**
+     * Lifetime of cached function results.
+     */
+    public enum Scope {
+        /** Results are discarded at the end of each transformation. */
+        TRANSFORM,
+        /** Atomic results are shared by all transformations of a Templates. */
+        TEMPLATES
+    }
+
+    /** Default maximum number of entries per cache. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final Scope scope;
+    private final int maxEntries;
+    private final FunctionResultCache owner;
+    private Map<Key, XPathValue> entries;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    /**
+     * Creates a stylesheet-level cache.
+     *
+     * @param scope the lifetime of cached results
+     * @param maxEntries the maximum number of entries, or 0 to disable caching
+     */
+    public FunctionResultCache(Scope scope, int maxEntries) {
+        this(scope, maxEntries, null);
+    }
+
+    private FunctionResultCache(Scope scope, int maxEntries, FunctionResultCache owner) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative");
+        }
+        this.scope = scope != null ? scope : Scope.TRANSFORM;
+        this.maxEntries = maxEntries;
+        this.owner = owner;
+        if (owner == null) {
+            hits = new AtomicLong();
+            misses = new AtomicLong();
+            evictions = new AtomicLong();
+        } else {
+            hits = owner.hits;
+            misses = owner.misses;
+            evictions = owner.evictions;
+        }
+    }
+
+    /**
+     * Returns a cache for a single transformation. Counters are shared
+     * with this cache.
+     *
+     * @return the per-transformation cache
+     */
+    public FunctionResultCache forTransformation() {
+        FunctionResultCache root = owner != null ? owner : this;
+        return new FunctionResultCache(Scope.TRANSFORM, root.maxEntries, root);
+    }
+
+    /**
+     * Creates a key for a call of the given function.
+     *
+     * @param function the function
+     * @param args the argument values
+     * @return the key
+     */
+    public static Key key(UserFunction function, List<XPathValue> args) {
+        return new Key(function, args.toArray(new XPathValue[args.size()]));
+    }
+
+    /**
+     * Returns the cached result for a call, or null.
+     *
+     * @param key the call key
+     * @return the cached result, or null on a miss
+     */
+    public XPathValue get(Key key) {
+        if (maxEntries == 0) {
+            return null;
+        }
+        XPathValue value = null;
+        FunctionResultCache shared = sharedFor(key);
+        if (shared != null) {
+            value = shared.lookup(key);
+        }
+        if (value == null) {
+            value = lookup(key);
+        }
+        if (value != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Records the result of a call.
+     *
+     * @param key the call key
+     * @param value the function result
+     */
+    public void put(Key key, XPathValue value) {
+        if (maxEntries == 0 || value == null) {
+            return;
+        }
+        FunctionResultCache shared = sharedFor(key);
+        if (shared != null && isPortable(value)) {
+            shared.store(key, value);
+        } else {
+            store(key, value);
+        }
+    }
+
+    /**
+     * Returns the scope of this cache.
+     *
+     * @return the scope
+     */
+    public Scope getScope() {
+        return owner != null ? owner.scope : scope;
+    }
+
+    /**
+     * Returns the maximum number of entries held by each cache.
+     *
+     * @return the entry budget
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of entries currently held by this cache.
+     *
+     * @return the entry count
+     */
+    public synchronized int size() {
+        return entries != null ? entries.size() : 0;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that required evaluation.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the budget.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Discards all entries held by this cache. Counters are kept.
+     */
+    public synchronized void clear() {
+        entries = null;
+    }
+
+    /**
+     * Returns the stylesheet-level cache to use for the key, or null if
+     * the call is to be cached in this cache.
+     */
+    private FunctionResultCache sharedFor(Key key) {
+        if (owner != null && owner.scope == Scope.TEMPLATES && key.portable) {
+            return owner;
+        }
+        return null;
+    }
+
+    private synchronized XPathValue lookup(Key key) {
+        return entries != null ? entries.get(key) : null;
+    }
+
+    private synchronized void store(Key key, XPathValue value) {
+        if (entries == null) {
+            entries = new LinkedHashMap<Key, XPathValue>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, XPathValue> eldest) {
+                    if (size() > maxEntries) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        entries.put(key, value);
+    }
+
+    /**
+     * Returns true if the value holds only atomic values, so that it can be
+     * shared between transformations without retaining any document.
+     */
+    static boolean isPortable(XPathValue value) {
+        if (value instanceof XPathSequence) {
+            for (XPathValue item : (XPathSequence) value) {
+                if (!isPortable(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (value instanceof XPathNodeSet) {
+            return ((XPathNodeSet) value).isEmpty();
+        }
+        return isAtomic(value);
+    }
+
+    private static boolean isAtomic(XPathValue value) {
+        return value instanceof XPathString
+            || value instanceof XPathNumber
+            || value instanceof XPathBoolean
+            || value instanceof XPathDateTime
+            || value instanceof XPathQName
+            || value instanceof XPathAnyURI
+            || value instanceof XPathAtomicValue
+            || value instanceof XPathTypedAtomic
+            || value instanceof XPathBinaryValue;
+    }
+
+    private static int valueHash(XPathValue value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof XPathNodeSet) {
+            int h = 1;
+            for (XPathNode node : (XPathNodeSet) value) {
+                h = 31 * h + System.identityHashCode(node);
+            }
+            return h;
+        }
+        if (value instanceof XPathSequence) {
+            int h = 7;
+            for (XPathValue item : (XPathSequence) value) {
+                h = 31 * h + valueHash(item);
+            }
+            return h;
+        }
+        if (value instanceof XPathNumber) {
+            return Double.hashCode(value.asNumber());
+        }
+        if (isAtomic(value)) {
+            return 31 * value.getClass().hashCode() + value.asString().hashCode();
+        }
+        return System.identityHashCode(value);
+    }
+
+    private static boolean valueEquals(XPathValue a, XPathValue b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.getClass() != b.getClass()) {
+            return false;
+        }
+        if (a instanceof XPathNodeSet) {
+            XPathNodeSet na = (XPathNodeSet) a;
+            XPathNodeSet nb = (XPathNodeSet) b;
+            if (na.size() != nb.size()) {
+                return false;
+            }
+            Iterator<XPathNode> ib = nb.iterator();
+            for (XPathNode node : na) {
+                if (node != ib.next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof XPathSequence) {
+            XPathSequence sa = (XPathSequence) a;
+            XPathSequence sb = (XPathSequence) b;
+            if (sa.size() != sb.size()) {
+                return false;
+            }
+            for (int i = 0; i < sa.size(); i++) {
+                if (!valueEquals(sa.get(i), sb.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof XPathNumber) {
+            // Same value is not enough: xs:integer 1 and xs:double 1 differ
+            XPathNumber na = (XPathNumber) a;
+            XPathNumber nb = (XPathNumber) b;
+            return Double.compare(na.asNumber(), nb.asNumber()) == 0
+                && na.isFloat() == nb.isFloat()
+                && na.isExplicitDouble() == nb.isExplicitDouble()
+                && na.isDecimal() == nb.isDecimal()
+                && na.isExactInteger() == nb.isExactInteger()
+                && na.asString().equals(nb.asString());
+        }
+        if (isAtomic(a)) {
+            return a.equals(b) && a.asString().equals(b.asString());
+        }
+        // Maps, arrays, function items and tree fragments: identity only
+        return false;
+    }
+
+    /**
+     * Identifies a call of a user function with particular arguments.
+     */
+    public static final class Key {
+
+        private final UserFunction function;
+        private final XPathValue[] args;
+        private final int hash;
+        final boolean portable;
+
+        Key(UserFunction function, XPathValue[] args) {
+            this.function = function;
+            this.args = args;
+            int h = System.identityHashCode(function);
+            boolean atomic = true;
+            for (XPathValue arg : args) {
+                h = 31 * h + valueHash(arg);
+                if (atomic && !isPortable(arg)) {
+                    atomic = false;
+                }
+            }
+            this.hash = h;
+            this.portable = atomic;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (hash != other.hash || function != other.function
+                    || args.length != other.args.length) {
+                return false;
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (!valueEquals(args[i], other.args[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
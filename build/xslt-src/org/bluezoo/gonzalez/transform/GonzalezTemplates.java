@@ -0,0 +1,177 @@
+/*
+ * GonzalezTemplates.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform;
+
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.compiler.OutputProperties;
+import org.bluezoo.gonzalez.transform.compiler.StreamabilityReport;
+import org.bluezoo.gonzalez.transform.compiler.StylesheetArchive;
+import org.bluezoo.gonzalez.transform.runtime.TemplateMatcher;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * JAXP Templates implementation for compiled Gonzalez stylesheets.
+ *
+ * <p>Templates represent a compiled stylesheet that can create multiple
+ * Transformer instances for concurrent transformation.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class GonzalezTemplates implements Templates {
+
+    /** The compiled XSLT stylesheet. */
+    private final CompiledStylesheet stylesheet;
+
+    /** Allowed protocols for external DTD access. */
+    private String accessExternalDTD = "";
+
+    /**
+     * Creates templates from a compiled stylesheet.
+     *
+     * @param stylesheet the compiled stylesheet
+     */
+    public GonzalezTemplates(CompiledStylesheet stylesheet) {
+        this.stylesheet = stylesheet;
+    }
+
+    /**
+     * Sets the allowed protocols for external DTD access.
+     *
+     * @param accessExternalDTD comma-separated list of protocols, "all", or ""
+     */
+    void setAccessExternalDTD(String accessExternalDTD) {
+        this.accessExternalDTD = accessExternalDTD != null ? accessExternalDTD : "";
+    }
+
+    /**
+     * Creates a new Transformer instance from these templates.
+     *
+     * <p>Each Transformer instance is thread-safe and can be used
+     * concurrently with other instances created from the same Templates.
+     *
+     * @return a new Transformer instance
+     * @throws TransformerConfigurationException if the transformer cannot be created
+     */
+    @Override
+    public Transformer newTransformer() throws TransformerConfigurationException {
+        GonzalezTransformer transformer = new GonzalezTransformer(stylesheet);
+        transformer.setAccessExternalDTD(accessExternalDTD);
+        return transformer;
+    }
+
+    /**
+     * Gets the output properties from the compiled stylesheet.
+     *
+     * <p>These properties reflect the xsl:output settings in the stylesheet,
+     * such as method, encoding, indent, etc.
+     *
+     * @return a Properties object containing the output properties
+     */
+    @Override
+    public Properties getOutputProperties() {
+        Properties props = new Properties();
+        
+        if (stylesheet != null) {
+            OutputProperties op = stylesheet.getOutputProperties();
+            
+            props.setProperty("method", op.getMethod().name().toLowerCase());
+            props.setProperty("version", op.getVersion());
+            props.setProperty("encoding", op.getEncoding());
+            props.setProperty("omit-xml-declaration", op.isOmitXmlDeclaration() ? "yes" : "no");
+            props.setProperty("indent", op.isIndent() ? "yes" : "no");
+            
+            if (op.getDoctypePublic() != null) {
+                props.setProperty("doctype-public", op.getDoctypePublic());
+            }
+            if (op.getDoctypeSystem() != null) {
+                props.setProperty("doctype-system", op.getDoctypeSystem());
+            }
+            if (op.getMediaType() != null) {
+                props.setProperty("media-type", op.getMediaType());
+            }
+        }
+        
+        return props;
+    }
+
+    /**
+     * Returns the memo cache for xsl:function declarations with
+     * cache="yes". Its hit, miss and eviction counts cover all
+     * transformers created from these templates.
+     *
+     * @return the function result cache
+     */
+    public FunctionResultCache getFunctionResultCache() {
+        return stylesheet.getFunctionResultCache();
+    }
+
+    /**
+     * Returns the template matcher shared by all transformers created from
+     * these templates.
+     *
+     * @return the template matcher
+     */
+    public TemplateMatcher getTemplateMatcher() {
+        return stylesheet.getTemplateMatcher();
+    }
+
+    /**
+     * Returns how the templates of the stylesheet were classified for
+     * streaming, and the constructs that keep each template that buffers
+     * from streaming.
+     *
+     * @return the streamability report
+     */
+    public StreamabilityReport getStreamabilityReport() {
+        return StreamabilityReport.of(stylesheet);
+    }
+
+    /**
+     * Writes the compiled stylesheet to a stream in binary form, so that
+     * it can later be loaded with
+     * {@link GonzalezTransformerFactory#loadTemplates} without recompiling
+     * the XSLT source. The archive is only readable by the same version of
+     * Gonzalez. The stream is not closed.
+     *
+     * @param out the output stream
+     * @throws IOException if the stylesheet cannot be written
+     */
+    public void save(OutputStream out) throws IOException {
+        StylesheetArchive.write(stylesheet, out);
+    }
+
+    /**
+     * Returns the compiled stylesheet.
+     *
+     * @return the stylesheet
+     */
+    public CompiledStylesheet getStylesheet() {
+        return stylesheet;
+    }
+
+}
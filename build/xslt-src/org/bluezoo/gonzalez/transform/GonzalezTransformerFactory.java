@@ -0,0 +1,798 @@
+/*
+ * GonzalezTransformerFactory.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+
+import org.bluezoo.gonzalez.Metrics;
+import org.bluezoo.gonzalez.Parser;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TemplatesHandler;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.compiler.PackageResolver;
+import org.bluezoo.gonzalez.transform.compiler.ProfileInstrumenter;
+import org.bluezoo.gonzalez.transform.compiler.StylesheetArchive;
+import org.bluezoo.gonzalez.transform.compiler.StylesheetCompiler;
+import org.bluezoo.gonzalez.transform.compiler.StylesheetResolver;
+
+/**
+ * JAXP TransformerFactory implementation for Gonzalez XSLT.
+ *
+ * <p>This factory creates Transformer and Templates objects from XSLT
+ * stylesheet sources. It supports:
+ * <ul>
+ *   <li>StreamSource, SAXSource for stylesheet input</li>
+ *   <li>SAX-based transformation pipeline</li>
+ *   <li>TemplatesHandler for receiving stylesheet as SAX events</li>
+ * </ul>
+ *
+ * <p>Usage:
+ * <pre>
+ * TransformerFactory factory = new GonzalezTransformerFactory();
+ * Transformer transformer = factory.newTransformer(stylesheetSource);
+ * transformer.transform(inputSource, resultTarget);
+ * </pre>
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class GonzalezTransformerFactory extends SAXTransformerFactory {
+
+    private static final String FEATURE_SECURE_PROCESSING =
+        "http://javax.xml.XMLConstants/feature/secure-processing";
+    private static final String ACCESS_EXTERNAL_DTD =
+        "http://javax.xml.XMLConstants/property/accessExternalDTD";
+    private static final String ACCESS_EXTERNAL_STYLESHEET =
+        "http://javax.xml.XMLConstants/property/accessExternalStylesheet";
+
+    /** Factory attributes for configuration. */
+    private final Map<String, Object> attributes = new HashMap<>();
+    
+    /** URI resolver for resolving external resources. */
+    private URIResolver uriResolver;
+    
+    /** Error listener for reporting compilation and transformation errors. */
+    private ErrorListener errorListener;
+
+    /** Whether secure processing is enabled (default: true). */
+    private boolean secureProcessing = true;
+
+    /** Allowed protocols for external DTD access (default: empty = none). */
+    private String accessExternalDTD = "";
+
+    /** Allowed protocols for external stylesheet access (default: empty = none). */
+    private String accessExternalStylesheet = "";
+
+    /** Package resolver for xsl:use-package support (XSLT 3.0). */
+    private PackageResolver packageResolver;
+
+    /** Static parameters to override at compile time (XSLT 3.0). */
+    private final Map<String, String> staticParameters = new HashMap<>();
+
+    /** Maximum XSLT version the processor should advertise (-1 = no limit). */
+    private double maxXsltVersion = -1;
+
+    /** Whether strict (pessimistic) static type checking is enabled (default: true). */
+    private boolean strictTypeChecking = true;
+
+    /** Streaming fallback (§19.10): fall back to non-streaming for non-streamable content. */
+    private boolean streamingFallback = false;
+
+    /** Lifetime of xsl:function cache="yes" results. */
+    private FunctionResultCache.Scope functionCacheScope = FunctionResultCache.Scope.TRANSFORM;
+
+    /** Maximum number of cached xsl:function results. */
+    private int functionCacheSize = FunctionResultCache.DEFAULT_MAX_ENTRIES;
+
+    /** Executor for xsl:fork branches, or null for the shared default. */
+    private Executor forkExecutor;
+
+    /** Maximum number of threads per xsl:fork. */
+    private int forkParallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Whether stylesheets are instrumented for profiling. */
+    private boolean profiling = false;
+
+    /**
+     * Creates a new transformer factory.
+     */
+    public GonzalezTransformerFactory() {
+    }
+
+    /**
+     * Creates a new Transformer from a stylesheet source.
+     *
+     * @param source the stylesheet source, or null for identity transform
+     * @return a new Transformer instance
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    @Override
+    public Transformer newTransformer(Source source) throws TransformerConfigurationException {
+        if (source == null) {
+            // Identity transform
+            return new GonzalezTransformer(null);
+        }
+        
+        Templates templates = newTemplates(source);
+        return templates.newTransformer();
+    }
+
+    /**
+     * Creates a new Transformer for identity transformation.
+     *
+     * @return a new Transformer instance that performs identity transform
+     * @throws TransformerConfigurationException if the transformer cannot be created
+     */
+    @Override
+    public Transformer newTransformer() throws TransformerConfigurationException {
+        // Identity transform
+        return new GonzalezTransformer(null);
+    }
+
+    /**
+     * Compiles a stylesheet source into a Templates object.
+     *
+     * <p>The Templates object can be used to create multiple Transformer
+     * instances efficiently, as the stylesheet is compiled once.
+     *
+     * @param source the stylesheet source
+     * @return a compiled Templates object
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    @Override
+    public Templates newTemplates(Source source) throws TransformerConfigurationException {
+        try {
+            Metrics metrics = Metrics.getMetrics();
+            long start = (metrics != null) ? System.nanoTime() : 0L;
+            CompiledStylesheet stylesheet = compileStylesheet(source);
+            if (metrics != null) {
+                metrics.record(Metrics.COMPILE, System.nanoTime() - start);
+            }
+            GonzalezTemplates templates = new GonzalezTemplates(stylesheet);
+            templates.setAccessExternalDTD(accessExternalDTD);
+            return templates;
+        } catch (SAXException | IOException e) {
+            throw new TransformerConfigurationException("Failed to compile stylesheet", e);
+        }
+    }
+
+    private CompiledStylesheet compileStylesheet(Source source) throws SAXException, IOException {
+        // Get the base URI from the source
+        String baseUri = source.getSystemId();
+        
+        // Create resolver for imports/includes
+        StylesheetResolver resolver = new StylesheetResolver(uriResolver);
+        resolver.setAllowedProtocols(accessExternalStylesheet);
+        resolver.setAccessExternalDTD(accessExternalDTD);
+        
+        // Create compiler with resolver and base URI
+        StylesheetCompiler compiler = new StylesheetCompiler(resolver, baseUri);
+
+        if (maxXsltVersion > 0) {
+            compiler.setMaxProcessorVersion(maxXsltVersion);
+        }
+        compiler.setStrictTypeChecking(strictTypeChecking);
+        compiler.setStreamingFallback(streamingFallback);
+
+        // Pass static parameter overrides to the compiler
+        for (Map.Entry<String, String> entry : staticParameters.entrySet()) {
+            compiler.setStaticParameter(entry.getKey(), entry.getValue());
+        }
+        
+        // Configure package resolver for xsl:use-package support
+        if (packageResolver != null) {
+            packageResolver.setCompiler(compiler);
+            compiler.setPackageResolver(packageResolver);
+        }
+        
+        if (source instanceof StreamSource) {
+            StreamSource ss = (StreamSource) source;
+            XMLReader reader = createXMLReader();
+            attachStylesheetHandler(reader, compiler);
+            
+            InputSource inputSource = new InputSource();
+            if (ss.getInputStream() != null) {
+                inputSource.setByteStream(ss.getInputStream());
+            } else if (ss.getSystemId() != null) {
+                // Open stream from systemId
+                InputStream byteStream = openStream(ss.getSystemId());
+                inputSource.setByteStream(byteStream);
+            } else if (ss.getReader() != null) {
+                // Gonzalez parser requires byte streams for encoding detection
+                // TODO: Consider adding Reader support via ExternalEntityDecoder
+                throw new SAXException("StreamSource with Reader not supported - use InputStream or SystemId");
+            } else {
+                throw new SAXException("StreamSource has no InputStream or SystemId");
+            }
+            inputSource.setSystemId(ss.getSystemId());
+            reader.parse(inputSource);
+            
+        } else if (source instanceof SAXSource) {
+            SAXSource saxSource = (SAXSource) source;
+            XMLReader reader = saxSource.getXMLReader();
+            if (reader == null) {
+                reader = createXMLReader();
+                attachStylesheetHandler(reader, compiler);
+            } else {
+                // Caller-supplied XMLReader: stay on the SAX boundary.
+                reader.setContentHandler(compiler);
+            }
+            
+            InputSource inputSource = saxSource.getInputSource();
+            if (inputSource == null) {
+                inputSource = new InputSource();
+            }
+            if (inputSource.getSystemId() == null && baseUri != null) {
+                inputSource.setSystemId(baseUri);
+            }
+            reader.parse(inputSource);
+            
+        } else if (source instanceof DOMSource) {
+            throw new SAXException("DOMSource not yet supported - use StreamSource or SAXSource");
+            
+        } else {
+            throw new SAXException("Unsupported source type: " + source.getClass().getName());
+        }
+        
+        try {
+            CompiledStylesheet stylesheet = compiler.getCompiledStylesheet();
+            configureStylesheet(stylesheet);
+            return stylesheet;
+        } catch (TransformerConfigurationException e) {
+            throw new SAXException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads templates from a precompiled stylesheet written by
+     * {@link GonzalezTemplates#save}. The function cache, xsl:fork and
+     * external access settings of this factory apply to the loaded
+     * templates, as they would to a freshly compiled stylesheet. The
+     * stream is not closed.
+     *
+     * @param in the precompiled stylesheet
+     * @return the templates
+     * @throws TransformerConfigurationException if the stream is not a
+     *         precompiled stylesheet, or was written by a different
+     *         version of Gonzalez
+     */
+    public Templates loadTemplates(InputStream in) throws TransformerConfigurationException {
+        try {
+            CompiledStylesheet stylesheet = StylesheetArchive.read(in);
+            configureStylesheet(stylesheet);
+            if (packageResolver != null) {
+                stylesheet.setPackageResolver(packageResolver);
+            }
+            GonzalezTemplates templates = new GonzalezTemplates(stylesheet);
+            templates.setAccessExternalDTD(accessExternalDTD);
+            return templates;
+        } catch (IOException e) {
+            throw new TransformerConfigurationException("Failed to load precompiled stylesheet", e);
+        }
+    }
+
+    private void configureStylesheet(CompiledStylesheet stylesheet) {
+        stylesheet.setFunctionResultCache(
+            new FunctionResultCache(functionCacheScope, functionCacheSize));
+        stylesheet.setForkExecutor(forkExecutor);
+        stylesheet.setForkParallelism(forkParallelism);
+        if (profiling) {
+            ProfileInstrumenter.instrument(stylesheet);
+        }
+    }
+
+    /**
+     * Opens a ReadableByteChannel from a URI string.
+     *
+     * <p>For file: URLs, this opens a FileChannel directly for optimal
+     * performance. For other protocols, this wraps the URL's input stream.
+     *
+     * @param uri the URI to open
+     * @return a ReadableByteChannel for the resource
+     * @throws IOException if the resource cannot be opened
+     */
+    private ReadableByteChannel openChannel(String uri) throws IOException {
+        if (uri.startsWith("file:")) {
+            // Use FileChannel for file: URLs (most efficient)
+            try {
+                Path path = Paths.get(URI.create(uri));
+                return FileChannel.open(path, StandardOpenOption.READ);
+            } catch (Exception e) {
+                // Fall back to URL handling for unusual file: URL formats
+            }
+        }
+        // For other protocols, wrap URL stream in a channel
+        URL url = new URL(uri);
+        return Channels.newChannel(url.openStream());
+    }
+
+    /**
+     * Opens an InputStream from a URI string, backed by NIO channels.
+     *
+     * <p>This method provides an InputStream interface while using FileChannel
+     * internally for file: URLs, enabling efficient I/O.
+     *
+     * @param uri the URI to open
+     * @return an InputStream for the resource
+     * @throws IOException if the resource cannot be opened
+     */
+    private InputStream openStream(String uri) throws IOException {
+        return Channels.newInputStream(openChannel(uri));
+    }
+
+    private XMLReader createXMLReader() throws SAXException {
+        XMLReader reader;
+        try {
+            // Try to use Gonzalez parser if available
+            Class<?> parserClass = Class.forName("org.bluezoo.gonzalez.Parser");
+            reader = (XMLReader) parserClass.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            // Fall back to default
+            reader = XMLReaderFactory.createXMLReader();
+        }
+        
+        // Enable namespace processing - required for XSLT compilation
+        reader.setFeature("http://xml.org/sax/features/namespaces", true);
+        reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+        
+        // Configure entity processing based on accessExternalDTD setting
+        boolean allowDTD = accessExternalDTD != null && !accessExternalDTD.isEmpty();
+        try {
+            reader.setFeature("http://xml.org/sax/features/external-general-entities", allowDTD);
+            reader.setFeature("http://xml.org/sax/features/external-parameter-entities", allowDTD);
+        } catch (SAXException e) {
+            // Platform parser may not support these features
+        }
+        if (allowDTD) {
+            try {
+                reader.setProperty(ACCESS_EXTERNAL_DTD, accessExternalDTD);
+            } catch (SAXException e) {
+                // Parser may not support this property
+            }
+        }
+        
+        return reader;
+    }
+
+    /**
+     * Attaches a stylesheet compiler using Gonzalez's native event path when
+     * the reader is a Gonzalez {@link Parser}; otherwise uses SAX.
+     */
+    private static void attachStylesheetHandler(XMLReader reader,
+            StylesheetCompiler compiler) throws SAXException {
+        if (reader instanceof Parser) {
+            ((Parser) reader).setXMLHandler(compiler);
+        } else {
+            reader.setContentHandler(compiler);
+        }
+    }
+
+    /**
+     * Gets the associated stylesheet from an XML document's xml-stylesheet
+     * processing instruction.
+     *
+     * @param source the XML document source
+     * @param media the media type to match
+     * @param title the title to match
+     * @param charset the character encoding
+     * @return the associated stylesheet source, or null if not found
+     * @throws TransformerConfigurationException if an error occurs
+     */
+    @Override
+    public Source getAssociatedStylesheet(Source source, String media, String title, String charset) 
+            throws TransformerConfigurationException {
+        // TODO: Implement xml-stylesheet PI processing
+        return null;
+    }
+
+    /**
+     * Sets the URI resolver for resolving external resources during
+     * stylesheet compilation and transformation.
+     *
+     * @param resolver the URI resolver, or null to use the default resolver
+     */
+    @Override
+    public void setURIResolver(URIResolver resolver) {
+        this.uriResolver = resolver;
+    }
+
+    /**
+     * Sets the package resolver for xsl:use-package support (XSLT 3.0).
+     *
+     * @param resolver the package resolver, or null to disable package support
+     */
+    public void setPackageResolver(PackageResolver resolver) {
+        this.packageResolver = resolver;
+    }
+
+    /**
+     * Sets a static parameter that overrides a stylesheet's static xsl:param
+     * default value at compile time. Must be called before newTemplates().
+     *
+     * @param name the parameter local name
+     * @param value the parameter value as a string
+     */
+    public void setStaticParameter(String name, String value) {
+        staticParameters.put(name, value);
+    }
+
+    /**
+     * Clears all static parameter overrides.
+     */
+    public void clearStaticParameters() {
+        staticParameters.clear();
+    }
+
+    /**
+     * Limits the maximum XSLT version the processor will advertise.
+     * Instructions introduced after this version are treated as unknown.
+     * Pass -1 to remove the limit (default).
+     */
+    public void setMaxXsltVersion(double version) {
+        this.maxXsltVersion = version;
+    }
+
+    /**
+     * Enables or disables strict (pessimistic) static type checking.
+     * When enabled (the default), expressions that <em>might</em> fail
+     * are rejected at compile time. When disabled, only provably
+     * incompatible types are rejected.
+     *
+     * @param strict true for pessimistic checking, false for optimistic
+     */
+    public void setStrictTypeChecking(boolean strict) {
+        this.strictTypeChecking = strict;
+    }
+
+    /**
+     * Returns whether strict static type checking is enabled.
+     *
+     * @return true if strict type checking is enabled
+     */
+    public boolean isStrictTypeChecking() {
+        return strictTypeChecking;
+    }
+
+    /**
+     * Enables streaming fallback mode (XSLT 3.0 §19.10).
+     * When enabled, non-streamable content in streamable modes is
+     * downgraded to non-streaming instead of raising XTSE3430.
+     *
+     * @param fallback true to enable streaming fallback
+     */
+    public void setStreamingFallback(boolean fallback) {
+        this.streamingFallback = fallback;
+    }
+
+    /**
+     * Sets the lifetime of results memoized for xsl:function declarations
+     * with cache="yes". With {@link FunctionResultCache.Scope#TRANSFORM}
+     * (the default) results are discarded after each transformation. With
+     * {@link FunctionResultCache.Scope#TEMPLATES} results of calls with
+     * atomic arguments and atomic results are shared by all transformers
+     * created from the same Templates; this assumes such functions do not
+     * depend on stylesheet parameters or the source document.
+     *
+     * @param scope the cache scope
+     */
+    public void setFunctionCacheScope(FunctionResultCache.Scope scope) {
+        if (scope == null) {
+            throw new IllegalArgumentException("scope must not be null");
+        }
+        this.functionCacheScope = scope;
+    }
+
+    /**
+     * Sets the maximum number of memoized xsl:function results held per
+     * cache. Least recently used entries are evicted beyond this size.
+     * A size of 0 disables memoization.
+     *
+     * @param size the maximum number of entries
+     */
+    public void setFunctionCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        this.functionCacheSize = size;
+    }
+
+    /**
+     * Sets the executor used to run xsl:fork branches concurrently.
+     * By default a shared work-stealing pool sized to the available
+     * processors is used. On Java 21 and later, virtual threads can be
+     * used by passing {@code Executors.newVirtualThreadPerTaskExecutor()}.
+     *
+     * @param executor the executor, or null for the shared default pool
+     */
+    public void setForkExecutor(Executor executor) {
+        this.forkExecutor = executor;
+    }
+
+    /**
+     * Sets the maximum number of threads, including the calling thread,
+     * that work on the branches of a single xsl:fork. Defaults to the
+     * number of available processors; 1 runs branches sequentially.
+     *
+     * @param parallelism the maximum number of threads per fork
+     */
+    public void setForkParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.forkParallelism = parallelism;
+    }
+
+    /**
+     * Enables or disables profiling of the stylesheets this factory
+     * compiles or loads. A profiled stylesheet measures the calls, time
+     * and allocation of each template, function and instruction-level
+     * XPath expression in every transformation; the results are available
+     * from {@link GonzalezTransformer#getProfiler} afterwards. Stylesheets
+     * compiled without profiling carry no instrumentation. Disabled by
+     * default.
+     *
+     * @param profiling true to profile
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    /**
+     * Returns whether stylesheets are compiled for profiling.
+     *
+     * @return true if profiling is enabled
+     */
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * Gets the URI resolver.
+     *
+     * @return the URI resolver, or null if not set
+     */
+    @Override
+    public URIResolver getURIResolver() {
+        return uriResolver;
+    }
+
+    /**
+     * Sets a feature flag for the factory.
+     *
+     * @param name the feature name
+     * @param value the feature value
+     * @throws TransformerConfigurationException if the feature is not supported
+     */
+    @Override
+    public void setFeature(String name, boolean value) throws TransformerConfigurationException {
+        if (FEATURE_SECURE_PROCESSING.equals(name)) {
+            this.secureProcessing = value;
+            if (value) {
+                this.accessExternalDTD = "";
+                this.accessExternalStylesheet = "";
+            } else {
+                this.accessExternalDTD = "all";
+                this.accessExternalStylesheet = "all";
+            }
+        }
+        attributes.put(name, value);
+    }
+
+    /**
+     * Gets a feature flag value.
+     *
+     * @param name the feature name
+     * @return true if the feature is enabled, false otherwise
+     */
+    @Override
+    public boolean getFeature(String name) {
+        if (FEATURE_SECURE_PROCESSING.equals(name)) {
+            return secureProcessing;
+        }
+        
+        Object value = attributes.get(name);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        
+        // Standard features
+        if (SAXTransformerFactory.FEATURE.equals(name)) {
+            return true; // We support SAXTransformerFactory
+        }
+        if (SAXTransformerFactory.FEATURE_XMLFILTER.equals(name)) {
+            return true; // We support XMLFilter
+        }
+        
+        return false;
+    }
+
+    /**
+     * Sets an attribute value for the factory.
+     *
+     * @param name the attribute name
+     * @param value the attribute value
+     * @throws IllegalArgumentException if the attribute name or value is invalid
+     */
+    @Override
+    public void setAttribute(String name, Object value) throws IllegalArgumentException {
+        if (ACCESS_EXTERNAL_DTD.equals(name)) {
+            if (value instanceof String) {
+                this.accessExternalDTD = (String) value;
+            } else {
+                throw new IllegalArgumentException("Value must be a String");
+            }
+        } else if (ACCESS_EXTERNAL_STYLESHEET.equals(name)) {
+            if (value instanceof String) {
+                this.accessExternalStylesheet = (String) value;
+            } else {
+                throw new IllegalArgumentException("Value must be a String");
+            }
+        }
+        attributes.put(name, value);
+    }
+
+    /**
+     * Gets an attribute value.
+     *
+     * @param name the attribute name
+     * @return the attribute value, or null if not set
+     * @throws IllegalArgumentException if the attribute name is invalid
+     */
+    @Override
+    public Object getAttribute(String name) throws IllegalArgumentException {
+        if (ACCESS_EXTERNAL_DTD.equals(name)) {
+            return accessExternalDTD;
+        }
+        if (ACCESS_EXTERNAL_STYLESHEET.equals(name)) {
+            return accessExternalStylesheet;
+        }
+        return attributes.get(name);
+    }
+
+    /**
+     * Sets the error listener for reporting compilation and transformation errors.
+     *
+     * @param listener the error listener, or null to use the default listener
+     * @throws IllegalArgumentException if the listener is invalid
+     */
+    @Override
+    public void setErrorListener(ErrorListener listener) throws IllegalArgumentException {
+        this.errorListener = listener;
+    }
+
+    /**
+     * Gets the error listener.
+     *
+     * @return the error listener, or null if not set
+     */
+    @Override
+    public ErrorListener getErrorListener() {
+        return errorListener;
+    }
+
+    // SAXTransformerFactory methods
+
+    /**
+     * Creates a TransformerHandler from a stylesheet source.
+     *
+     * @param src the stylesheet source
+     * @return a new TransformerHandler instance
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    @Override
+    public TransformerHandler newTransformerHandler(Source src) throws TransformerConfigurationException {
+        Templates templates = newTemplates(src);
+        return newTransformerHandler(templates);
+    }
+
+    /**
+     * Creates a TransformerHandler from a Templates object.
+     *
+     * @param templates the compiled templates
+     * @return a new TransformerHandler instance
+     * @throws TransformerConfigurationException if the templates are not from this factory
+     */
+    @Override
+    public TransformerHandler newTransformerHandler(Templates templates) throws TransformerConfigurationException {
+        if (!(templates instanceof GonzalezTemplates)) {
+            throw new TransformerConfigurationException("Templates not from this factory");
+        }
+        return new GonzalezTransformerHandler((GonzalezTemplates) templates);
+    }
+
+    /**
+     * Creates a TransformerHandler for identity transformation.
+     *
+     * @return a new TransformerHandler instance that performs identity transform
+     * @throws TransformerConfigurationException if the handler cannot be created
+     */
+    @Override
+    public TransformerHandler newTransformerHandler() throws TransformerConfigurationException {
+        return new GonzalezTransformerHandler(null);
+    }
+
+    /**
+     * Creates a TemplatesHandler for building Templates from SAX events.
+     *
+     * @return a new TemplatesHandler instance
+     * @throws TransformerConfigurationException if the handler cannot be created
+     */
+    @Override
+    public TemplatesHandler newTemplatesHandler() throws TransformerConfigurationException {
+        return new GonzalezTemplatesHandler(this);
+    }
+
+    /**
+     * Creates an XMLFilter from a stylesheet source.
+     *
+     * @param src the stylesheet source
+     * @return a new XMLFilter instance
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    @Override
+    public org.xml.sax.XMLFilter newXMLFilter(Source src) throws TransformerConfigurationException {
+        Templates templates = newTemplates(src);
+        return newXMLFilter(templates);
+    }
+
+    /**
+     * Creates an XMLFilter from a Templates object.
+     *
+     * @param templates the compiled templates
+     * @return a new XMLFilter instance
+     * @throws TransformerConfigurationException if the templates are not from this factory
+     */
+    @Override
+    public org.xml.sax.XMLFilter newXMLFilter(Templates templates) throws TransformerConfigurationException {
+        TransformerHandler handler = newTransformerHandler(templates);
+        return new TransformerXMLFilter(handler);
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * TransformStatistics.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
+import org.bluezoo.json.JSONWriter;
+
+/**
+ * What one transformation buffered.
+ *
+ * <p>The statistics say how many source nodes were built and whether the
+ * source tree was projected down to what the stylesheet can reach, what
+ * the templates buffered, and how long the grounded templates ran (see
+ * {@link GroundedBuffering}). Together with
+ * {@link GonzalezTemplates#getStreamabilityReport} they show where the
+ * memory of a transformation goes and which templates to rewrite.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class TransformStatistics {
+
+    private final GroundedBuffering groundedBuffering;
+    private boolean projected;
+    private long sourceNodes;
+
+    TransformStatistics(GroundedBuffering groundedBuffering) {
+        this.groundedBuffering = groundedBuffering;
+    }
+
+    void setSourceTree(long sourceNodes, boolean projected) {
+        this.sourceNodes = sourceNodes;
+        this.projected = projected;
+    }
+
+    /**
+     * Returns true if the source tree left out the content the stylesheet
+     * cannot reach.
+     *
+     * @return true for a projected source tree
+     */
+    public boolean isProjected() {
+        return projected;
+    }
+
+    /**
+     * Returns the number of source nodes built, counting namespace and
+     * attribute nodes.
+     *
+     * @return the node count, 0 if no source tree was built
+     */
+    public long getSourceNodes() {
+        return sourceNodes;
+    }
+
+    /**
+     * Returns what the templates of the transformation buffered.
+     *
+     * @return the grounded buffering
+     */
+    public GroundedBuffering getGroundedBuffering() {
+        return groundedBuffering;
+    }
+
+    /**
+     * Writes the statistics as a JSON object.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the statistics cannot be written
+     */
+    public void writeJSON(OutputStream out) throws IOException {
+        JSONWriter writer = new JSONWriter(out);
+        writer.writeStartObject();
+        writer.writeKey("projected");
+        writer.writeBoolean(projected);
+        writer.writeKey("sourceNodes");
+        writer.writeNumber(Long.valueOf(sourceNodes));
+        writer.writeKey("groundedExecutions");
+        writer.writeNumber(Integer.valueOf(groundedBuffering.getGroundedExecutions()));
+        writer.writeKey("groundedNanos");
+        writer.writeNumber(Long.valueOf(groundedBuffering.getGroundedNanos()));
+        writer.writeKey("bufferedEvents");
+        writer.writeNumber(Long.valueOf(groundedBuffering.getBufferedEvents()));
+        writer.writeKey("peakBufferSize");
+        writer.writeNumber(Long.valueOf(groundedBuffering.getPeakBufferSize()));
+        writer.writeKey("templates");
+        writer.writeStartArray();
+        for (Map.Entry<TemplateRule, GroundedBuffering.Usage> entry
+                : groundedBuffering.getUsage().entrySet()) {
+            TemplateRule template = entry.getKey();
+            GroundedBuffering.Usage usage = entry.getValue();
+            writer.writeStartObject();
+            writer.writeKey("template");
+            writer.writeString(template.toString());
+            writer.writeKey("executions");
+            writer.writeNumber(Integer.valueOf(usage.getExecutions()));
+            writer.writeKey("nanos");
+            writer.writeNumber(Long.valueOf(usage.getNanos()));
+            writer.writeKey("peakBytes");
+            writer.writeNumber(Long.valueOf(usage.getPeakBytes()));
+            writer.writeEndObject();
+        }
+        writer.writeEndArray();
+        writer.writeEndObject();
+        writer.flush();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("projected=").append(projected);
+        buf.append(" sourceNodes=").append(sourceNodes);
+        buf.append(" groundedExecutions=").append(groundedBuffering.getGroundedExecutions());
+        buf.append(" groundedNanos=").append(groundedBuffering.getGroundedNanos());
+        buf.append(" bufferedEvents=").append(groundedBuffering.getBufferedEvents());
+        buf.append(" peakBufferSize=").append(groundedBuffering.getPeakBufferSize());
+        return buf.toString();
+    }
+
+}
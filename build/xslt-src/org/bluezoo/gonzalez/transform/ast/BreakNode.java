@@ -0,0 +1,130 @@
+/*
+ * BreakNode.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+import org.xml.sax.SAXException;
+
+/**
+ * XSLT 3.0 xsl:break instruction.
+ *
+ * <p>Used within xsl:iterate to terminate iteration early. Any content
+ * within xsl:break is evaluated as the iteration result before the
+ * xsl:on-completion executes.
+ *
+ * <p>Example:
+ * <pre>
+ * &lt;xsl:if test="@stop"&gt;
+ *   &lt;xsl:break&gt;
+ *     &lt;stopped/&gt;
+ *   &lt;/xsl:break&gt;
+ * &lt;/xsl:if&gt;
+ * </pre>
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class BreakNode implements XSLTNode {
+
+    private static final long serialVersionUID = 1L;
+
+    private final XSLTNode content;
+    private final XPathExpression selectExpr;
+
+    /**
+     * Creates a new break instruction.
+     *
+     * @param content the content to output before breaking (may be null)
+     */
+    public BreakNode(XSLTNode content) {
+        this.content = content;
+        this.selectExpr = null;
+    }
+
+    /**
+     * Creates a new break instruction with a select expression.
+     *
+     * @param selectExpr the select expression whose result is output before breaking
+     */
+    public BreakNode(XPathExpression selectExpr) {
+        this.content = null;
+        this.selectExpr = selectExpr;
+    }
+
+    /**
+     * Returns the break content.
+     *
+     * @return the content node, or null
+     */
+    public XSLTNode getContent() {
+        return content;
+    }
+
+    @Override
+    public void execute(TransformContext context, OutputHandler output) throws SAXException {
+        if (selectExpr != null) {
+            try {
+                XPathValue result = selectExpr.evaluate(context);
+                if (result != null) {
+                    output.atomicValue(result);
+                }
+            } catch (XPathException e) {
+                throw new SAXException("Error evaluating xsl:break select", e);
+            }
+        } else if (content != null) {
+            content.execute(context, output);
+        }
+        
+        throw new BreakSignal();
+    }
+
+    @Override
+    public StreamingCapability getStreamingCapability() {
+        return StreamingCapability.FULL;
+    }
+
+    @Override
+    public String toString() {
+        return "BreakNode[hasContent=" + (content != null) + "]";
+    }
+
+    /**
+     * Signal exception used to communicate break to the iterate loop.
+     *
+     * <p>This exception is thrown by xsl:break to signal to the enclosing
+     * xsl:iterate that iteration should terminate early. The exception is
+     * caught by the iterate loop handler, which then executes xsl:on-completion
+     * if present.
+     */
+    public static class BreakSignal extends SAXException {
+        /**
+         * Creates a new break signal.
+         */
+        public BreakSignal() {
+            super("break");
+        }
+    }
+
+}
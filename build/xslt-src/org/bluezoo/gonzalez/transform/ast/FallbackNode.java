@@ -0,0 +1,46 @@
+/*
+ * FallbackNode.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.xml.sax.SAXException;
+
+import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+
+/**
+ * FallbackNode XSLT instruction.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class FallbackNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SequenceNode content;
+    public FallbackNode(SequenceNode content) { this.content = content; }
+    @Override public String getInstructionName() { return "fallback"; }
+    @Override public void execute(TransformContext context, 
+                                  OutputHandler output) throws SAXException {
+        // Fallback content executed when parent instruction not supported
+        content.execute(context, output);
+    }
+}
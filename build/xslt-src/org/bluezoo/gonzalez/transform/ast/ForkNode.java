@@ -0,0 +1,619 @@
+/*
+ * ForkNode.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.OutputHandlerUtils;
+import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * XSLT 3.0 xsl:fork instruction.
+ *
+ * <p>The xsl:fork instruction allows multiple independent operations to be
+ * performed on the same streaming input. Each branch (xsl:sequence child)
+ * sees the same SAX events but can maintain independent accumulator state.
+ *
+ * <p>Example:
+ * <pre>
+ * &lt;xsl:fork&gt;
+ *   &lt;xsl:sequence&gt;
+ *     &lt;!-- Branch 1: Count items --&gt;
+ *     &lt;count&gt;&lt;xsl:value-of select="accumulator-after('item-count')"/&gt;&lt;/count&gt;
+ *   &lt;/xsl:sequence&gt;
+ *   &lt;xsl:sequence&gt;
+ *     &lt;!-- Branch 2: Sum prices --&gt;
+ *     &lt;total&gt;&lt;xsl:value-of select="accumulator-after('price-total')"/&gt;&lt;/total&gt;
+ *   &lt;/xsl:sequence&gt;
+ * &lt;/xsl:fork&gt;
+ * </pre>
+ *
+ * <p>Streaming semantics:
+ * <ul>
+ *   <li>All branches receive the same SAX events</li>
+ *   <li>Each branch has its own accumulator state</li>
+ *   <li>Outputs are combined in document order</li>
+ *   <li>Branches execute concurrently on the stylesheet's fork executor</li>
+ * </ul>
+ *
+ * <p>The calling thread executes the first branch itself, writing straight
+ * to the output, and then helps with any branch no other thread has
+ * started. Only the remaining branches are buffered and replayed in order.
+ * Because the caller never waits for a branch that has not been claimed,
+ * nested forks cannot deadlock on a bounded executor. At most
+ * {@link CompiledStylesheet#getForkParallelism()} threads work on one fork,
+ * and forks whose branches are cheap (as estimated from the instruction
+ * tree) run sequentially on the calling thread.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class ForkNode implements XSLTNode {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Branches whose combined estimated cost is at most this are run
+     * sequentially: the hand-off would cost more than the work.
+     */
+    static final int INLINE_COST_THRESHOLD = 64;
+
+    /**
+     * Shared default executor, created on first use. Worker threads are
+     * daemon threads so they don't prevent JVM shutdown.
+     */
+    private static volatile ForkJoinPool defaultExecutor;
+
+    /**
+     * Returns the shared default fork executor.
+     *
+     * @return a work-stealing pool sized to the available processors
+     */
+    public static Executor getDefaultExecutor() {
+        ForkJoinPool pool = defaultExecutor;
+        if (pool == null) {
+            synchronized (ForkNode.class) {
+                pool = defaultExecutor;
+                if (pool == null) {
+                    final AtomicInteger counter = new AtomicInteger(0);
+                    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                        new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                            public ForkJoinWorkerThread newThread(ForkJoinPool p) {
+                                ForkJoinWorkerThread t = ForkJoinPool
+                                    .defaultForkJoinWorkerThreadFactory.newThread(p);
+                                t.setName("xsl-fork-" + counter.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        }, null, true);
+                    defaultExecutor = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Represents a branch within xsl:fork.
+     *
+     * <p>Each branch corresponds to an xsl:sequence child of xsl:fork.
+     * All branches receive the same SAX events but maintain independent
+     * accumulator state.
+     */
+    public static final class ForkBranch implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final XSLTNode content;
+
+        /**
+         * Creates a new fork branch.
+         *
+         * @param content the branch content (xsl:sequence body)
+         */
+        public ForkBranch(XSLTNode content) {
+            this.content = content;
+        }
+
+        /**
+         * Returns the branch content.
+         *
+         * @return the content node, or null if empty
+         */
+        public XSLTNode getContent() {
+            return content;
+        }
+    }
+
+    private final List<ForkBranch> branches;
+    private final boolean inline;
+
+    /**
+     * Creates a new fork instruction.
+     *
+     * @param branches the fork branches (xsl:sequence children)
+     */
+    public ForkNode(List<ForkBranch> branches) {
+        this.branches = branches != null ? new ArrayList<>(branches) : new ArrayList<>();
+        long cost = 0;
+        for (ForkBranch branch : this.branches) {
+            cost += ForkCostEstimator.estimate(branch.getContent());
+        }
+        this.inline = cost <= INLINE_COST_THRESHOLD;
+    }
+
+    /**
+     * Returns the fork branches.
+     *
+     * <p>Each branch corresponds to an xsl:sequence child and will be
+     * executed concurrently with the same input events.
+     *
+     * @return the branches (immutable list)
+     */
+    public List<ForkBranch> getBranches() {
+        return branches;
+    }
+
+    /**
+     * Returns true if the branches are cheap enough to run sequentially
+     * on the calling thread.
+     *
+     * @return true if this fork is executed inline
+     */
+    public boolean isInline() {
+        return inline;
+    }
+
+    @Override
+    public void execute(TransformContext context, OutputHandler output) throws SAXException {
+        int branchCount = branches.size();
+        
+        if (branchCount == 0) {
+            return;
+        }
+        
+        // Single branch - no parallelism needed
+        if (branchCount == 1) {
+            ForkBranch branch = branches.get(0);
+            if (branch.getContent() != null) {
+                branch.getContent().execute(context, output);
+            }
+            return;
+        }
+
+        CompiledStylesheet stylesheet = context.getStylesheet();
+        Executor executor = stylesheet != null ? stylesheet.getForkExecutor() : null;
+        int parallelism = stylesheet != null
+            ? stylesheet.getForkParallelism() : Runtime.getRuntime().availableProcessors();
+        if (executor == null) {
+            executor = getDefaultExecutor();
+        }
+
+        // Tiny branches or no parallelism: run in order, straight to output
+        if (inline || parallelism <= 1) {
+            for (int i = 0; i < branchCount; i++) {
+                XSLTNode content = branches.get(i).getContent();
+                if (content != null) {
+                    content.execute(cloneContextForBranch(context), output);
+                }
+            }
+            return;
+        }
+
+        // Each branch gets its own context, created on this thread
+        TransformContext[] branchContexts = new TransformContext[branchCount];
+        for (int i = 0; i < branchCount; i++) {
+            if (branches.get(i).getContent() != null) {
+                branchContexts[i] = cloneContextForBranch(context);
+            }
+        }
+        final ForkExecution fork = new ForkExecution(branchContexts);
+
+        // Helpers claim branches 1..n-1; at most parallelism threads in total
+        int helpers = Math.min(parallelism, branchCount) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        fork.runClaimedBranches();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The calling thread will run the unclaimed branches
+                break;
+            }
+        }
+
+        // Streaming hand-off: the first branch writes directly to output
+        XSLTNode first = branches.get(0).getContent();
+        if (first != null) {
+            try {
+                first.execute(branchContexts[0], output);
+            } catch (SAXException e) {
+                fork.fail(e);
+            } catch (RuntimeException e) {
+                fork.fail(new SAXException("Error in fork branch 0", e));
+            }
+        }
+
+        // Help with any branch not yet started, then wait for the rest
+        fork.runClaimedBranches();
+        fork.await();
+        
+        // Check for errors
+        if (fork.error != null) {
+            throw fork.error;
+        }
+        
+        // Replay buffered branches to output in document order.
+        // First pass: emit any parent attributes/namespaces (for the enclosing element).
+        for (int i = 1; i < branchCount; i++) {
+            BufferOutputHandler bufferHandler = fork.handlers[i];
+            if (bufferHandler != null) {
+                List<String[]> pns = bufferHandler.getParentNamespaces();
+                for (int j = 0; j < pns.size(); j++) {
+                    String[] ns = pns.get(j);
+                    output.namespace(ns[0], ns[1]);
+                }
+                List<String[]> pa = bufferHandler.getParentAttributes();
+                for (int j = 0; j < pa.size(); j++) {
+                    String[] attr = pa.get(j);
+                    output.attribute(attr[0], attr[1], attr[2], attr[3]);
+                }
+            }
+        }
+        // Second pass: replay buffered content.
+        for (int i = 1; i < branchCount; i++) {
+            if (fork.results[i] != null) {
+                fork.results[i].replayContent(new SAXEventAdapter(output));
+            }
+        }
+    }
+
+    /**
+     * State shared by the threads executing one xsl:fork. Branches 1..n-1
+     * are claimed in order from a counter by whichever thread gets there
+     * first, so each runs exactly once and the caller only ever waits for
+     * branches that are already in progress.
+     */
+    private final class ForkExecution {
+        final TransformContext[] contexts;
+        final SAXEventBuffer[] results;
+        final BufferOutputHandler[] handlers;
+        final AtomicInteger next = new AtomicInteger(1);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final CountDownLatch done;
+        volatile SAXException error;
+
+        ForkExecution(TransformContext[] contexts) {
+            this.contexts = contexts;
+            this.results = new SAXEventBuffer[contexts.length];
+            this.handlers = new BufferOutputHandler[contexts.length];
+            this.done = new CountDownLatch(contexts.length - 1);
+        }
+
+        void runClaimedBranches() {
+            int index;
+            while ((index = next.getAndIncrement()) < contexts.length) {
+                try {
+                    if (!failed.get()) {
+                        runBranch(index);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+
+        private void runBranch(int index) {
+            XSLTNode content = branches.get(index).getContent();
+            if (content == null) {
+                return;
+            }
+            try {
+                SAXEventBuffer buffer = new SAXEventBuffer();
+                BufferOutputHandler bufferHandler = new BufferOutputHandler(buffer);
+                content.execute(contexts[index], bufferHandler);
+                bufferHandler.flush();
+                results[index] = buffer;
+                handlers[index] = bufferHandler;
+            } catch (SAXException e) {
+                fail(e);
+            } catch (Exception e) {
+                fail(new SAXException("Error in fork branch " + index, e));
+            }
+        }
+
+        void fail(SAXException e) {
+            if (failed.compareAndSet(false, true)) {
+                error = e;
+            }
+        }
+
+        void await() throws SAXException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException("Fork execution interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Creates an independent copy of the context for a branch.
+     * Each branch gets its own variable scope and accumulator state.
+     */
+    private TransformContext cloneContextForBranch(TransformContext context) {
+        if (context instanceof BasicTransformContext) {
+            return ((BasicTransformContext) context).forParallelPartition();
+        }
+        return context.pushVariableScope();
+    }
+
+    @Override
+    public StreamingCapability getStreamingCapability() {
+        // Fork is designed for streaming
+        StreamingCapability result = StreamingCapability.FULL;
+        for (ForkBranch branch : branches) {
+            if (branch.getContent() != null) {
+                StreamingCapability branchCap = branch.getContent().getStreamingCapability();
+                if (branchCap.ordinal() > result.ordinal()) {
+                    result = branchCap;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ForkNode[branches=" + branches.size() + "]";
+    }
+
+    /**
+     * OutputHandler that buffers to SAXEventBuffer.
+     *
+     * <p>Attributes that arrive before any element start tag are stored
+     * separately as "parent attributes" -- these are meant for the enclosing
+     * element created outside the fork branch.
+     */
+    private static class BufferOutputHandler implements OutputHandler {
+        private final SAXEventBuffer buffer;
+        private boolean inStartTag = false;
+        private String pendingUri;
+        private String pendingLocalName;
+        private String pendingQName;
+        private final AttributesImpl pendingAttrs = new AttributesImpl();
+        private final List<String[]> pendingNs = new ArrayList<>();
+        private final List<String[]> parentAttrs = new ArrayList<>();
+        private final List<String[]> parentNamespaces = new ArrayList<>();
+        private boolean hadElement = false;
+
+        BufferOutputHandler(SAXEventBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        List<String[]> getParentAttributes() {
+            return parentAttrs;
+        }
+
+        List<String[]> getParentNamespaces() {
+            return parentNamespaces;
+        }
+
+        public void startDocument() throws SAXException {
+            buffer.startDocument();
+        }
+
+        public void endDocument() throws SAXException {
+            flush();
+            buffer.endDocument();
+        }
+
+        public void startElement(String uri, String localName, String qName) throws SAXException {
+            flush();
+            hadElement = true;
+            inStartTag = true;
+            pendingUri = OutputHandlerUtils.effectiveUri(uri);
+            pendingLocalName = localName;
+            pendingQName = OutputHandlerUtils.effectiveQName(qName, localName);
+            pendingAttrs.clear();
+            pendingNs.clear();
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            flush();
+            String effectiveUri = OutputHandlerUtils.effectiveUri(uri);
+            String effectiveQName = OutputHandlerUtils.effectiveQName(qName, localName);
+            buffer.endElement(effectiveUri, localName, effectiveQName);
+        }
+
+        public void attribute(String uri, String localName, String qName, String value) 
+                throws SAXException {
+            if (inStartTag) {
+                String effectiveUri = OutputHandlerUtils.effectiveUri(uri);
+                String effectiveQName = OutputHandlerUtils.effectiveQName(qName, localName);
+                pendingAttrs.addAttribute(
+                    effectiveUri, 
+                    localName,
+                    effectiveQName, 
+                    "CDATA", 
+                    value);
+            } else if (!hadElement) {
+                String effectiveUri = OutputHandlerUtils.effectiveUri(uri);
+                String effectiveQName = OutputHandlerUtils.effectiveQName(qName, localName);
+                parentAttrs.add(new String[]{
+                    effectiveUri,
+                    localName,
+                    effectiveQName,
+                    value
+                });
+            } else {
+                throw new SAXException("Attribute outside of start tag");
+            }
+        }
+
+        public void namespace(String prefix, String uri) throws SAXException {
+            String effectivePrefix = OutputHandlerUtils.effectiveUri(prefix);
+            String effectiveUri = OutputHandlerUtils.effectiveUri(uri);
+            if (inStartTag) {
+                pendingNs.add(new String[]{ effectivePrefix, effectiveUri });
+            } else if (!hadElement) {
+                parentNamespaces.add(new String[]{ effectivePrefix, effectiveUri });
+            } else {
+                buffer.startPrefixMapping(effectivePrefix, effectiveUri);
+            }
+        }
+
+        public void characters(String text) throws SAXException {
+            flush();
+            if (text != null && !text.isEmpty()) {
+                buffer.characters(text.toCharArray(), 0, text.length());
+            }
+        }
+
+        @Override
+        public void atomicValue(org.bluezoo.gonzalez.transform.xpath.type.XPathValue value) 
+                throws SAXException {
+            flush();
+            if (value != null) {
+                buffer.xpathValue(value);
+            }
+        }
+
+        public void charactersRaw(String text) throws SAXException {
+            characters(text);
+        }
+
+        public void comment(String text) throws SAXException {
+            flush();
+            // SAXEventBuffer doesn't support comments directly - skip
+        }
+
+        public void processingInstruction(String target, String data) throws SAXException {
+            flush();
+            buffer.processingInstruction(target, data);
+        }
+
+        public void flush() throws SAXException {
+            if (inStartTag) {
+                for (int i = 0; i < pendingNs.size(); i++) {
+                    String[] ns = pendingNs.get(i);
+                    buffer.startPrefixMapping(ns[0], ns[1]);
+                }
+                pendingNs.clear();
+                buffer.startElement(pendingUri, pendingLocalName, pendingQName, pendingAttrs);
+                inStartTag = false;
+                pendingAttrs.clear();
+            }
+        }
+    }
+
+    /**
+     * Adapts SAXEventBuffer replay (ContentHandler) to OutputHandler.
+     *
+     * <p>SAX sends startPrefixMapping BEFORE startElement, but OutputHandler
+     * expects namespace() AFTER startElement. This adapter buffers pending
+     * namespace declarations and emits them after each startElement call.
+     */
+    private static class SAXEventAdapter implements org.xml.sax.ContentHandler, SAXEventBuffer.XPathValueHandler {
+        private final OutputHandler output;
+        private final List<String[]> pendingNamespaces = new ArrayList<>();
+
+        SAXEventAdapter(OutputHandler output) {
+            this.output = output;
+        }
+
+        public void setDocumentLocator(org.xml.sax.Locator locator) {
+        }
+
+        public void startDocument() throws SAXException {
+        }
+
+        public void endDocument() throws SAXException {
+        }
+
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            pendingNamespaces.add(new String[]{prefix, uri});
+        }
+
+        public void endPrefixMapping(String prefix) throws SAXException {
+        }
+
+        public void startElement(String uri, String localName, String qName, Attributes atts) 
+                throws SAXException {
+            output.startElement(uri, localName, qName);
+            for (int i = 0; i < pendingNamespaces.size(); i++) {
+                String[] ns = pendingNamespaces.get(i);
+                output.namespace(ns[0], ns[1]);
+            }
+            pendingNamespaces.clear();
+            for (int i = 0; i < atts.getLength(); i++) {
+                output.attribute(
+                    atts.getURI(i), 
+                    atts.getLocalName(i), 
+                    atts.getQName(i), 
+                    atts.getValue(i));
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            output.endElement(uri, localName, qName);
+        }
+
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            output.characters(new String(ch, start, length));
+        }
+
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            output.characters(new String(ch, start, length));
+        }
+
+        public void processingInstruction(String target, String data) throws SAXException {
+            output.processingInstruction(target, data);
+        }
+
+        public void skippedEntity(String name) throws SAXException {
+        }
+
+        public void xpathValue(org.bluezoo.gonzalez.transform.xpath.type.XPathValue value) throws SAXException {
+            output.atomicValue(value);
+        }
+    }
+
+}
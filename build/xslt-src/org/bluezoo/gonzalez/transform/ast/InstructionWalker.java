@@ -0,0 +1,293 @@
+/*
+ * InstructionWalker.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.bluezoo.gonzalez.transform.compiler.AttributeValueTemplate;
+import org.bluezoo.gonzalez.transform.compiler.ExpressionHolder;
+import org.bluezoo.gonzalez.transform.compiler.SortSpec;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+import org.bluezoo.gonzalez.transform.xpath.expr.BinaryExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.ContextItemExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Expr;
+import org.bluezoo.gonzalez.transform.xpath.expr.FilterExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.FunctionCall;
+import org.bluezoo.gonzalez.transform.xpath.expr.IfExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Literal;
+import org.bluezoo.gonzalez.transform.xpath.expr.LocationPath;
+import org.bluezoo.gonzalez.transform.xpath.expr.PathExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.SequenceExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Step;
+import org.bluezoo.gonzalez.transform.xpath.expr.TypeExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.UnaryExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.VariableReference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conservative walk over a small, side-effect-free subset of instructions
+ * and the expressions they evaluate, for static analyses of a body.
+ *
+ * <p>The walk understands literal text and result elements, xsl:value-of,
+ * xsl:sequence, xsl:if, xsl:choose, xsl:variable and unsorted
+ * xsl:for-each, and the expression types whose sub-expressions it can
+ * see. Anything else rejects the whole body, so an analysis never draws
+ * conclusions from code it has not seen. Subclasses inspect the nodes and
+ * steps visited and may reject them too.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+abstract class InstructionWalker {
+
+    /**
+     * What to do after visiting an expression.
+     */
+    enum Visit {
+        /** Walk the sub-expressions. */
+        DESCEND,
+        /** Accept the expression without walking its sub-expressions. */
+        SKIP,
+        /** Reject the body. */
+        REJECT
+    }
+
+    /**
+     * Walks an instruction tree.
+     *
+     * @param node the instruction tree (may be null)
+     * @return false if the tree was rejected
+     */
+    final boolean walk(XSLTNode node) {
+        if (node == null) {
+            return true;
+        }
+        if (!visitInstruction(node)) {
+            return false;
+        }
+        if (node instanceof LiteralText) {
+            return true;
+        }
+        if (node instanceof SequenceNode) {
+            List<XSLTNode> children = ((SequenceNode) node).getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                if (!walk(children.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (node instanceof LiteralResultElement) {
+            LiteralResultElement lre = (LiteralResultElement) node;
+            List<String> attributeSets = lre.getUseAttributeSets();
+            if ((attributeSets != null && !attributeSets.isEmpty())
+                    || lre.getOnEmpty() != null || lre.getOnNonEmpty() != null) {
+                return false;
+            }
+            for (Map.Entry<String, AttributeValueTemplate> entry : lre.getAttributes().entrySet()) {
+                if (!walk(entry.getValue())) {
+                    return false;
+                }
+            }
+            return walk(lre.getContent());
+        }
+        if (node instanceof ValueOfNode) {
+            ValueOfNode valueOf = (ValueOfNode) node;
+            return walk(valueOf.getSeparatorAvt()) && walkExpressions(valueOf);
+        }
+        if (node instanceof SequenceOutputNode) {
+            return walkExpressions((SequenceOutputNode) node);
+        }
+        if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            return walkExpressions(ifNode) && walk(ifNode.getContent());
+        }
+        if (node instanceof ChooseNode) {
+            ChooseNode choose = (ChooseNode) node;
+            for (WhenNode when : choose.getWhens()) {
+                if (!walkExpressions(when) || !walk(when.getContent())) {
+                    return false;
+                }
+            }
+            return walk(choose.getOtherwise());
+        }
+        if (node instanceof VariableNode) {
+            VariableNode variable = (VariableNode) node;
+            return walkExpressions(variable) && walk(variable.getContent());
+        }
+        if (node instanceof ForEachNode) {
+            ForEachNode forEach = (ForEachNode) node;
+            List<SortSpec> sorts = forEach.getSorts();
+            if (sorts != null && !sorts.isEmpty()) {
+                return false;
+            }
+            return walkExpressions(forEach) && walk(forEach.getBody());
+        }
+        return false;
+    }
+
+    /**
+     * Walks the expressions of an attribute value template.
+     *
+     * @param avt the template (may be null)
+     * @return false if an expression was rejected
+     */
+    final boolean walk(AttributeValueTemplate avt) {
+        if (avt == null) {
+            return true;
+        }
+        List<XPathExpression> exprs = new ArrayList<XPathExpression>();
+        avt.collectExpressions(exprs);
+        return walkAll(exprs);
+    }
+
+    /**
+     * Walks a compiled expression.
+     *
+     * @param xpe the expression (may be null)
+     * @return false if the expression was rejected
+     */
+    final boolean walk(XPathExpression xpe) {
+        return xpe == null || walk(xpe.getCompiledExpr());
+    }
+
+    private boolean walkExpressions(ExpressionHolder holder) {
+        return walkAll(holder.getExpressions());
+    }
+
+    private boolean walkAll(List<XPathExpression> exprs) {
+        for (int i = 0; i < exprs.size(); i++) {
+            if (!walk(exprs.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean walk(Expr expr) {
+        if (expr == null) {
+            return true;
+        }
+        switch (visitExpr(expr)) {
+            case SKIP:
+                return true;
+            case REJECT:
+                return false;
+            default:
+                break;
+        }
+        if (expr instanceof Literal || expr instanceof VariableReference
+                || expr instanceof ContextItemExpr) {
+            return true;
+        }
+        if (expr instanceof FunctionCall) {
+            return walk(((FunctionCall) expr).getArguments());
+        }
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            return walk(binary.getLeft()) && walk(binary.getRight());
+        }
+        if (expr instanceof UnaryExpr) {
+            return walk(((UnaryExpr) expr).getOperand());
+        }
+        if (expr instanceof TypeExpr) {
+            return walk(((TypeExpr) expr).getOperand());
+        }
+        if (expr instanceof IfExpr) {
+            IfExpr ifExpr = (IfExpr) expr;
+            return walk(ifExpr.getCondition())
+                && walk(ifExpr.getThenExpr())
+                && walk(ifExpr.getElseExpr());
+        }
+        if (expr instanceof SequenceExpr) {
+            return walk(((SequenceExpr) expr).getItems());
+        }
+        if (expr instanceof PathExpr) {
+            PathExpr path = (PathExpr) expr;
+            return walk(path.getFilter()) && walk(path.getPath());
+        }
+        if (expr instanceof FilterExpr) {
+            FilterExpr filter = (FilterExpr) expr;
+            return walk(filter.getPrimary()) && walk(filter.getPredicates());
+        }
+        if (expr instanceof LocationPath) {
+            List<Step> steps = ((LocationPath) expr).getSteps();
+            for (int i = 0; i < steps.size(); i++) {
+                Step step = steps.get(i);
+                if (!visitStep(step)
+                        || !walk(step.getStepExpr())
+                        || !walk(step.getPredicates())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Walks a list of expressions, such as the predicates of a step.
+     *
+     * @param exprs the expressions (may be null)
+     * @return false if an expression was rejected
+     */
+    final boolean walk(List<Expr> exprs) {
+        if (exprs == null) {
+            return true;
+        }
+        for (int i = 0; i < exprs.size(); i++) {
+            if (!walk(exprs.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visits an instruction before its content is walked.
+     *
+     * @param node the instruction
+     * @return false to reject the body
+     */
+    boolean visitInstruction(XSLTNode node) {
+        return true;
+    }
+
+    /**
+     * Visits an expression before its sub-expressions are walked.
+     *
+     * @param expr the expression
+     * @return what to do next
+     */
+    abstract Visit visitExpr(Expr expr);
+
+    /**
+     * Visits a step of a location path before its predicates are walked.
+     *
+     * @param step the step
+     * @return false to reject the body
+     */
+    boolean visitStep(Step step) {
+        return true;
+    }
+
+}
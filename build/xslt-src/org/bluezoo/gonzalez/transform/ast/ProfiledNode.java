@@ -0,0 +1,99 @@
+/*
+ * ProfiledNode.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.ProfileSite;
+import org.bluezoo.gonzalez.transform.runtime.Profiler;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.xml.sax.SAXException;
+
+/**
+ * Measures the execution of a template or function body.
+ *
+ * <p>This wraps the body when a stylesheet is compiled for profiling and
+ * reports each execution to the {@link Profiler} of the transformation.
+ * Stylesheets compiled without profiling do not contain it.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class ProfiledNode implements XSLTNode {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ProfileSite site;
+    private final XSLTNode body;
+
+    /**
+     * Creates a profiled node.
+     *
+     * @param site the site the body is measured as
+     * @param body the body to execute
+     */
+    public ProfiledNode(ProfileSite site, XSLTNode body) {
+        this.site = site;
+        this.body = body;
+    }
+
+    /**
+     * Returns the wrapped body node.
+     *
+     * @return the body
+     */
+    public XSLTNode getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the site the body is measured as.
+     *
+     * @return the site
+     */
+    public ProfileSite getSite() {
+        return site;
+    }
+
+    @Override
+    public void execute(TransformContext context, OutputHandler output) throws SAXException {
+        Profiler profiler = null;
+        if (context instanceof BasicTransformContext) {
+            profiler = ((BasicTransformContext) context).getProfiler();
+        }
+        if (profiler == null) {
+            body.execute(context, output);
+            return;
+        }
+        profiler.enter(site);
+        try {
+            body.execute(context, output);
+        } finally {
+            profiler.exit();
+        }
+    }
+
+    @Override
+    public StreamingCapability getStreamingCapability() {
+        return body.getStreamingCapability();
+    }
+
+}
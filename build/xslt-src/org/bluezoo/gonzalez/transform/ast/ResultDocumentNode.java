@@ -0,0 +1,377 @@
+/*
+ * ResultDocumentNode.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.bluezoo.gonzalez.transform.compiler.AttributeValueTemplate;
+import org.bluezoo.gonzalez.transform.compiler.OutputProperties;
+import org.bluezoo.gonzalez.transform.ValidationMode;
+import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.runtime.ResultDocumentHandler;
+import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer;
+import org.bluezoo.gonzalez.transform.runtime.XMLWriterOutputHandler;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.OutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * XSLT 2.0 xsl:result-document instruction.
+ *
+ * <p>The xsl:result-document instruction creates a secondary output document.
+ * This enables generating multiple output files from a single transformation.
+ *
+ * <p>Example:
+ * <pre>
+ * &lt;xsl:result-document href="chapter{position()}.html"&gt;
+ *   &lt;html&gt;
+ *     &lt;head&gt;&lt;title&gt;Chapter &lt;xsl:value-of select="position()"/&gt;&lt;/title&gt;&lt;/head&gt;
+ *     &lt;body&gt;
+ *       &lt;xsl:apply-templates/&gt;
+ *     &lt;/body&gt;
+ *   &lt;/html&gt;
+ * &lt;/xsl:result-document&gt;
+ * </pre>
+ *
+ * <p>Attributes:
+ * <ul>
+ *   <li><b>href</b> - URI of the output document (AVT)</li>
+ *   <li><b>format</b> - Named output format (references xsl:output)</li>
+ *   <li><b>method</b> - Output method (xml, html, text)</li>
+ *   <li><b>encoding</b> - Character encoding</li>
+ *   <li><b>indent</b> - Whether to indent output</li>
+ * </ul>
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class ResultDocumentNode implements XSLTNode {
+
+    private static final long serialVersionUID = 1L;
+
+    private final AttributeValueTemplate hrefAvt;
+    private final AttributeValueTemplate formatAvt;
+    private final Map<String, String> formatNamespaceBindings;
+    private final String method;
+    private final String encoding;
+    private final String indent;
+    private final XSLTNode content;
+    private final String typeNamespaceURI;
+    private final String typeLocalName;
+    private final ValidationMode validation;
+    private String sourceSystemId;
+    private int sourceLineNumber = -1;
+    private int sourceColumnNumber = -1;
+
+    /**
+     * Sets the source location for error reporting.
+     */
+    public void setSourceLocation(String systemId, int lineNumber, int columnNumber) {
+        this.sourceSystemId = systemId;
+        this.sourceLineNumber = lineNumber;
+        this.sourceColumnNumber = columnNumber;
+    }
+
+    /**
+     * Creates a new result-document instruction.
+     *
+     * @param hrefAvt the href AVT (may be null for principal output)
+     * @param formatAvt the format name AVT (may be null)
+     * @param method the output method (may be null)
+     * @param encoding the encoding (may be null)
+     * @param indent indent setting (may be null)
+     * @param content the content to output
+     */
+    public ResultDocumentNode(AttributeValueTemplate hrefAvt, AttributeValueTemplate formatAvt,
+                               String method, String encoding, String indent,
+                               XSLTNode content) {
+        this(hrefAvt, formatAvt, null, method, encoding, indent, content, null, null, null);
+    }
+
+    /**
+     * Creates a new result-document instruction with validation.
+     *
+     * @param hrefAvt the href AVT (may be null for principal output)
+     * @param formatAvt the format name AVT (may be null)
+     * @param formatNamespaceBindings in-scope namespaces for resolving format QName prefix
+     * @param method the output method (may be null)
+     * @param encoding the encoding (may be null)
+     * @param indent indent setting (may be null)
+     * @param content the content to output
+     * @param typeNamespaceURI the type annotation namespace (may be null)
+     * @param typeLocalName the type annotation local name (may be null)
+     * @param validation the validation mode (may be null for default)
+     */
+    public ResultDocumentNode(AttributeValueTemplate hrefAvt, AttributeValueTemplate formatAvt,
+                               Map<String, String> formatNamespaceBindings,
+                               String method, String encoding, String indent,
+                               XSLTNode content, String typeNamespaceURI,
+                               String typeLocalName, ValidationMode validation) {
+        this.hrefAvt = hrefAvt;
+        this.formatAvt = formatAvt;
+        this.formatNamespaceBindings = formatNamespaceBindings;
+        this.method = method;
+        this.encoding = encoding;
+        this.indent = indent;
+        this.content = content;
+        this.typeNamespaceURI = typeNamespaceURI;
+        this.typeLocalName = typeLocalName;
+        this.validation = validation;
+    }
+
+    @Override
+    public void execute(TransformContext context, OutputHandler output) throws SAXException {
+        // XTDE1480: xsl:result-document must not be evaluated in temporary output state
+        // Exception: fn:transform() uses SequenceBuilderOutputHandler as top-level output
+        boolean inTransformFunction = false;
+        if (context instanceof BasicTransformContext) {
+            inTransformFunction =
+                ((BasicTransformContext) context).getResultDocumentCollector() != null;
+        }
+        if (!inTransformFunction
+                && (output instanceof org.bluezoo.gonzalez.transform.compiler.SequenceBuilderOutputHandler
+                    || output instanceof org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler)) {
+            throw new SAXException("XTDE1480: xsl:result-document cannot be evaluated " +
+                "while writing to a temporary tree (e.g. inside a variable or function)");
+        }
+        
+        // Evaluate href AVT to get output URI
+        String href = null;
+        if (hrefAvt != null) {
+            try {
+                href = hrefAvt.evaluate(context);
+            } catch (XPathException e) {
+                throw new SAXException("Error evaluating href AVT: " + e.getMessage(), e);
+            }
+        }
+
+        // XTDE0290/XTDE1460: evaluate and validate format attribute
+        if (formatAvt != null) {
+            try {
+                String formatName = formatAvt.evaluate(context);
+                if (formatName != null && !formatName.isEmpty()) {
+                    int colonPos = formatName.indexOf(':');
+                    if (colonPos > 0) {
+                        String prefix = formatName.substring(0, colonPos);
+                        if (formatNamespaceBindings == null
+                                || !formatNamespaceBindings.containsKey(prefix)) {
+                            throw new SAXException("XTDE0290: Undeclared prefix '"
+                                    + prefix + "' in format attribute value '"
+                                    + formatName + "'");
+                        }
+                    }
+                }
+            } catch (XPathException e) {
+                throw new SAXException("Error evaluating format AVT: "
+                        + e.getMessage(), e);
+            }
+        }
+
+        // Determine output properties
+        OutputProperties props = determineOutputProperties(context);
+
+        // Create output handler for secondary document
+        OutputHandler secondaryOutput;
+        OutputStream outputStream = null;
+        boolean usingPrincipalOutput = false;
+        
+        try {
+            if (href != null && !href.isEmpty()) {
+                URI uri = resolveHref(href, context);
+                String uriStr = uri.toString();
+                try {
+                    context.claimResultDocumentUri(uriStr);
+                } catch (SAXException e) {
+                    throw new SAXParseException(e.getMessage(), null,
+                        sourceSystemId, sourceLineNumber, sourceColumnNumber);
+                }
+                
+                // fn:transform() secondary output capture
+                Map<String, OutputHandler> collector = null;
+                if (context instanceof BasicTransformContext) {
+                    collector = ((BasicTransformContext) context).getResultDocumentCollector();
+                }
+                if (collector != null) {
+                    SAXEventBuffer buffer = new SAXEventBuffer();
+                    secondaryOutput = new BufferOutputHandler(buffer);
+                    collector.put(uriStr, secondaryOutput);
+                } else {
+                    // Create file output for secondary document
+                    java.io.File outFile = new java.io.File(uri.getPath());
+                    java.io.File parentDir = outFile.getParentFile();
+                    if (parentDir != null && !parentDir.exists()) {
+                        parentDir.mkdirs();
+                    }
+                    outputStream = new FileOutputStream(outFile);
+                    secondaryOutput = new ResultDocumentHandler(outputStream, props);
+                }
+            } else {
+                // No href - write to principal output
+                OutputHandler principalOutput = context.getPrincipalOutput();
+                OutputHandler target = principalOutput != null ? principalOutput : output;
+                if (target.hasReceivedContent()) {
+                    throw new SAXParseException(
+                        "XTDE1490: Cannot write to the principal output URI " +
+                        "because it has already been used", null,
+                        sourceSystemId, sourceLineNumber, sourceColumnNumber);
+                }
+                context.claimResultDocumentUri("");
+                // Configure handler for json/adaptive output method
+                OutputProperties.Method effectiveMethod = props.getMethod();
+                if (effectiveMethod == OutputProperties.Method.JSON
+                        || effectiveMethod == OutputProperties.Method.ADAPTIVE) {
+                    if (target instanceof XMLWriterOutputHandler) {
+                        ((XMLWriterOutputHandler) target).setStrictXmlSerialization(false);
+                    }
+                }
+                secondaryOutput = target;
+                usingPrincipalOutput = true;
+            }
+
+            // Only start a new document for secondary outputs
+            if (!usingPrincipalOutput) {
+                secondaryOutput.startDocument();
+            }
+
+            // Execute content
+            if (content != null) {
+                content.execute(context, secondaryOutput);
+            }
+
+            // Only end document for secondary outputs
+            if (!usingPrincipalOutput) {
+                secondaryOutput.endDocument();
+            } else {
+                // Block subsequent implicit writes to the principal output
+                secondaryOutput.markClaimedByResultDocument();
+            }
+
+        } catch (IOException e) {
+            throw new SAXException("Error creating result document: " + href, e);
+        } finally {
+            // Close output stream if we created one
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    // Ignore close errors
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the href as a URI, handling relative URIs.
+     */
+    private URI resolveHref(String href, TransformContext context) {
+        try {
+            URI hrefUri = new URI(href);
+            if (hrefUri.isAbsolute()) {
+                return hrefUri;
+            }
+        } catch (java.net.URISyntaxException e) {
+            // Not a valid URI syntax; treat as relative file path below
+        }
+        // Relative URI: resolve as a file path
+        return new java.io.File(href).toURI();
+    }
+
+    /**
+     * Determines output properties from format reference or inline attributes.
+     */
+    private OutputProperties determineOutputProperties(TransformContext context) {
+        OutputProperties props = new OutputProperties();
+
+        // Start with default properties from stylesheet
+        OutputProperties stylesheetProps = context.getStylesheet().getOutputProperties();
+        if (stylesheetProps != null) {
+            props.merge(stylesheetProps);
+        }
+
+        // Override with inline attributes
+        if (method != null) {
+            props.setMethod(method);
+        }
+        if (encoding != null) {
+            props.setEncoding(encoding);
+        }
+        if (indent != null) {
+            props.setIndent("yes".equals(indent));
+        }
+
+        return props;
+    }
+
+    /**
+     * Returns the href attribute value template.
+     *
+     * <p>The href AVT specifies the URI of the output document. If null,
+     * the content is written to the principal output.
+     *
+     * @return the href AVT, or null if writing to principal output
+     */
+    public AttributeValueTemplate getHrefAvt() {
+        return hrefAvt;
+    }
+
+    /**
+     * Returns the format AVT.
+     *
+     * <p>The format name references a named output format defined via
+     * xsl:output with a name attribute.
+     *
+     * @return the format AVT, or null if not specified
+     */
+    public AttributeValueTemplate getFormatAvt() {
+        return formatAvt;
+    }
+
+    /**
+     * Returns the content to be written to the result document.
+     *
+     * @return the content node, or null if empty
+     */
+    public XSLTNode getContent() {
+        return content;
+    }
+
+    @Override
+    public StreamingCapability getStreamingCapability() {
+        // Result document content may or may not be streamable
+        if (content != null) {
+            return content.getStreamingCapability();
+        }
+        return StreamingCapability.FULL;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultDocumentNode[href=" + hrefAvt + "]";
+    }
+
+}
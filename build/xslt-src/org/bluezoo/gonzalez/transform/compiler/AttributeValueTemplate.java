@@ -0,0 +1,478 @@
+/*
+ * AttributeValueTemplate.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import org.bluezoo.gonzalez.transform.ast.XSLTNode.StreamingCapability;
+import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.xpath.StaticTypeContext;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+import org.bluezoo.gonzalez.transform.xpath.XPathParser;
+import org.bluezoo.gonzalez.transform.xpath.XPathSyntaxException;
+import org.bluezoo.gonzalez.transform.xpath.expr.LocationPath;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Attribute Value Template (AVT) in XSLT.
+ *
+ * <p>AVTs allow XPath expressions to be embedded in attribute values using
+ * accolades. For example: {@code class="{$type}-item"} where {@code {$type}}
+ * is evaluated as an XPath expression and concatenated with "-item".
+ *
+ * <p>AVT syntax:
+ * <ul>
+ *   <li>{@code {expr}} - XPath expression, result converted to string</li>
+ *   <li>{@code {{} - literal left accolade</li>
+ *   <li>{@code }}} - literal right accolade</li>
+ * </ul>
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class AttributeValueTemplate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A part of an AVT - either literal text or an XPath expression.
+     */
+    private static abstract class Part implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        abstract String evaluate(TransformContext context, boolean backwardsCompatible) throws XPathException;
+        abstract StreamingCapability getStreamingCapability();
+    }
+
+    private static final class LiteralPart extends Part {
+
+        private static final long serialVersionUID = 1L;
+
+        final String text;
+
+        LiteralPart(String text) {
+            this.text = text;
+        }
+
+        @Override
+        String evaluate(TransformContext context, boolean backwardsCompatible) {
+            return text;
+        }
+
+        @Override
+        StreamingCapability getStreamingCapability() {
+            return StreamingCapability.FULL;
+        }
+    }
+
+    private static final class ExpressionPart extends Part {
+
+        private static final long serialVersionUID = 1L;
+
+        final XPathExpression expression;
+
+        ExpressionPart(XPathExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        String evaluate(TransformContext context, boolean backwardsCompatible) throws XPathException {
+            // Memoizable absolute / parent-relative paths: reuse cached string
+            // across for-each iterations (free-ranging / relative-meta AVTs).
+            if (expression.getCompiledExpr() instanceof LocationPath
+                    && context instanceof BasicTransformContext) {
+                LocationPath path = (LocationPath) expression.getCompiledExpr();
+                XPathNode ctxNode = context.getContextNode();
+                XPathNode anchor = path.memoizationAnchor(ctxNode);
+                if (anchor != null) {
+                    BasicTransformContext btc = (BasicTransformContext) context;
+                    String cached = btc.getCachedPathString(path, anchor);
+                    if (cached != null) {
+                        return cached;
+                    }
+                    XPathValue computed = expression.evaluate(context);
+                    String s = valueToString(computed, backwardsCompatible);
+                    btc.putCachedPathString(path, anchor, s);
+                    return s;
+                }
+            }
+            XPathValue result = expression.evaluate(context);
+            return valueToString(result, backwardsCompatible);
+        }
+
+        private static String valueToString(XPathValue result, boolean backwardsCompatible) {
+            if (result == null) {
+                return "";
+            }
+            if (result.isNodeSet()) {
+                org.bluezoo.gonzalez.transform.xpath.type.XPathNodeSet ns = result.asNodeSet();
+                if (ns.isEmpty()) {
+                    return "";
+                }
+                // XSLT 1.0 backward compat: only use first node's string value
+                if (backwardsCompatible || ns.size() == 1) {
+                    return ns.iterator().next().getStringValue();
+                }
+                StringBuilder sb = new StringBuilder();
+                boolean first = true;
+                for (org.bluezoo.gonzalez.transform.xpath.type.XPathNode node : ns) {
+                    if (!first) {
+                        sb.append(' ');
+                    }
+                    sb.append(node.getStringValue());
+                    first = false;
+                }
+                return sb.toString();
+            }
+            if (result instanceof org.bluezoo.gonzalez.transform.xpath.type.XPathSequence) {
+                org.bluezoo.gonzalez.transform.xpath.type.XPathSequence seq =
+                    (org.bluezoo.gonzalez.transform.xpath.type.XPathSequence) result;
+                if (seq.isEmpty()) {
+                    return "";
+                }
+                // XSLT 1.0 backward compat: only use first item
+                if (backwardsCompatible || seq.size() == 1) {
+                    return seq.get(0).asString();
+                }
+                StringBuilder sb = new StringBuilder();
+                boolean first = true;
+                for (XPathValue item : seq) {
+                    if (!first) {
+                        sb.append(' ');
+                    }
+                    sb.append(item.asString());
+                    first = false;
+                }
+                return sb.toString();
+            }
+            return result.asString();
+        }
+
+        @Override
+        StreamingCapability getStreamingCapability() {
+            // Would need expression analysis for accurate capability
+            return StreamingCapability.GROUNDED;
+        }
+    }
+
+    private final String originalValue;
+    private final List<Part> parts;
+    private final boolean isStatic;
+    private final StreamingCapability streamingCapability;
+    private boolean backwardsCompatible;
+
+    /**
+     * Private constructor - use parse().
+     */
+    private AttributeValueTemplate(String originalValue, List<Part> parts) {
+        this.originalValue = originalValue;
+        this.parts = parts;
+        this.isStatic = parts.size() == 1 && parts.get(0) instanceof LiteralPart;
+        this.streamingCapability = computeStreamingCapability();
+    }
+
+    /**
+     * Parses an attribute value template.
+     *
+     * @param value the attribute value string
+     * @return the parsed AVT
+     * @throws XPathSyntaxException if an embedded expression is invalid
+     */
+    public static AttributeValueTemplate parse(String value) throws XPathSyntaxException {
+        return parse(value, null);
+    }
+
+    /**
+     * Parses an attribute value template with namespace resolution.
+     *
+     * @param value the attribute value string
+     * @param namespaceResolver resolver for namespace prefixes in embedded expressions
+     * @return the parsed AVT
+     * @throws XPathSyntaxException if an embedded expression is invalid
+     */
+    public static AttributeValueTemplate parse(String value,
+            XPathParser.NamespaceResolver namespaceResolver) throws XPathSyntaxException {
+        return parse(value, namespaceResolver, null);
+    }
+
+    /**
+     * Parses an attribute value template with namespace resolution and
+     * static type checking.
+     *
+     * @param value the attribute value string
+     * @param namespaceResolver resolver for namespace prefixes in embedded expressions
+     * @param typeContext static type context for type checking (may be null)
+     * @return the parsed AVT
+     * @throws XPathSyntaxException if an embedded expression is invalid
+     */
+    public static AttributeValueTemplate parse(String value,
+            XPathParser.NamespaceResolver namespaceResolver,
+            StaticTypeContext typeContext) throws XPathSyntaxException {
+        List<Part> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        int len = value.length();
+
+        while (i < len) {
+            char c = value.charAt(i);
+
+            if (c == '{') {
+                if (i + 1 < len && value.charAt(i + 1) == '{') {
+                    // Escaped left accolade
+                    literal.append('{');
+                    i += 2;
+                } else {
+                    // Start of expression
+                    if (literal.length() > 0) {
+                        parts.add(new LiteralPart(literal.toString()));
+                        literal.setLength(0);
+                    }
+
+                    // Find matching close accolade, skipping string literals
+                    // and XPath comments (: ... :)
+                    int start = i + 1;
+                    int depth = 1;
+                    i = start;
+                    while (i < len && depth > 0) {
+                        char ec = value.charAt(i);
+                        if (ec == '(' && i + 1 < len && value.charAt(i + 1) == ':') {
+                            // XPath comment — skip to matching :)
+                            int commentDepth = 1;
+                            i += 2;
+                            while (i < len - 1 && commentDepth > 0) {
+                                if (value.charAt(i) == '(' && value.charAt(i + 1) == ':') {
+                                    commentDepth++;
+                                    i += 2;
+                                } else if (value.charAt(i) == ':' && value.charAt(i + 1) == ')') {
+                                    commentDepth--;
+                                    i += 2;
+                                } else {
+                                    i++;
+                                }
+                            }
+                        } else if (ec == '{') {
+                            depth++;
+                            i++;
+                        } else if (ec == '}') {
+                            depth--;
+                            if (depth > 0) {
+                                i++;
+                            }
+                        } else if (ec == '\'' || ec == '"') {
+                            // Skip string literals
+                            char quote = ec;
+                            i++;
+                            while (i < len && value.charAt(i) != quote) {
+                                i++;
+                            }
+                            i++;
+                        } else {
+                            i++;
+                        }
+                    }
+
+                    if (depth != 0) {
+                        throw new XPathSyntaxException("Unclosed '{' in attribute value template");
+                    }
+
+                    String exprStr = value.substring(start, i);
+                    if (isEmptyExpression(exprStr)) {
+                        parts.add(new LiteralPart(""));
+                    } else {
+                        XPathExpression expr = XPathExpression.compile(exprStr,
+                                namespaceResolver, typeContext);
+                        parts.add(new ExpressionPart(expr));
+                    }
+                    i++; // Skip closing accolade
+                }
+            } else if (c == '}') {
+                if (i + 1 < len && value.charAt(i + 1) == '}') {
+                    // Escaped right accolade
+                    literal.append('}');
+                    i += 2;
+                } else {
+                    throw new XPathSyntaxException("Unescaped '}' in attribute value template");
+                }
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+
+        if (literal.length() > 0) {
+            parts.add(new LiteralPart(literal.toString()));
+        }
+
+        // Handle empty AVT
+        if (parts.isEmpty()) {
+            parts.add(new LiteralPart(""));
+        }
+
+        return new AttributeValueTemplate(value, parts);
+    }
+
+    /**
+     * Checks if an AVT expression string contains only whitespace and/or
+     * XPath comments, making it effectively empty. Such expressions evaluate
+     * to the empty string.
+     */
+    static boolean isEmptyExpression(String expr) {
+        int pos = 0;
+        int len = expr.length();
+        while (pos < len) {
+            char c = expr.charAt(pos);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                pos++;
+            } else if (c == '(' && pos + 1 < len && expr.charAt(pos + 1) == ':') {
+                // Skip XPath comment
+                int depth = 1;
+                pos += 2;
+                while (pos < len - 1 && depth > 0) {
+                    if (expr.charAt(pos) == '(' && expr.charAt(pos + 1) == ':') {
+                        depth++;
+                        pos += 2;
+                    } else if (expr.charAt(pos) == ':' && expr.charAt(pos + 1) == ')') {
+                        depth--;
+                        pos += 2;
+                    } else {
+                        pos++;
+                    }
+                }
+                if (depth > 0) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a static (non-templated) AVT.
+     *
+     * @param value the literal value
+     * @return the AVT
+     */
+    public static AttributeValueTemplate literal(String value) {
+        List<Part> parts = new ArrayList<>(1);
+        parts.add(new LiteralPart(value));
+        return new AttributeValueTemplate(value, parts);
+    }
+
+    /**
+     * Sets backwards-compatible mode for this AVT.
+     * When true, expressions that return multiple nodes/items will only use the first.
+     *
+     * @param backwardsCompatible true for XSLT 1.0 behavior
+     */
+    public void setBackwardsCompatible(boolean backwardsCompatible) {
+        this.backwardsCompatible = backwardsCompatible;
+    }
+
+    /**
+     * Evaluates this AVT in the given context.
+     *
+     * @param context the transformation context
+     * @return the evaluated string value
+     * @throws XPathException if expression evaluation fails
+     */
+    public String evaluate(TransformContext context) throws XPathException {
+        if (isStatic) {
+            return ((LiteralPart) parts.get(0)).text;
+        }
+
+        if (parts.size() == 1) {
+            return parts.get(0).evaluate(context, backwardsCompatible);
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (Part part : parts) {
+            result.append(part.evaluate(context, backwardsCompatible));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the streaming capability of this AVT.
+     *
+     * @return the streaming capability
+     */
+    public StreamingCapability getStreamingCapability() {
+        return streamingCapability;
+    }
+
+    private StreamingCapability computeStreamingCapability() {
+        StreamingCapability result = StreamingCapability.FULL;
+        for (Part part : parts) {
+            StreamingCapability partCap = part.getStreamingCapability();
+            if (partCap.ordinal() > result.ordinal()) {
+                result = partCap;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if this AVT is static (no embedded expressions).
+     *
+     * @return true if static
+     */
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    /**
+     * Returns the original attribute value string.
+     *
+     * @return the original value
+     */
+    public String getOriginalValue() {
+        return originalValue;
+    }
+
+    /**
+     * Collects all XPath expressions contained in this AVT into the
+     * provided list.
+     *
+     * @param exprs list to collect into
+     */
+    public void collectExpressions(java.util.List<XPathExpression> exprs) {
+        for (int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            if (part instanceof ExpressionPart) {
+                exprs.add(((ExpressionPart) part).expression);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AVT[" + originalValue + "]";
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * ExceptPattern.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+
+/**
+ * XSLT 3.0 except pattern (left except right).
+ * Matches if the node matches the left pattern but NOT the right pattern.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+final class ExceptPattern extends AbstractPattern {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Pattern left;
+    private final Pattern right;
+
+    ExceptPattern(String patternStr, Pattern left, Pattern right) {
+        super(patternStr, null);
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public boolean matches(XPathNode node, TransformContext context) {
+        return left.matches(node, context) && !right.matches(node, context);
+    }
+
+    @Override
+    boolean matchesBase(XPathNode node, TransformContext context,
+                        XPathNode targetNode) {
+        return left.matches(node, context) && !right.matches(node, context);
+    }
+
+    Pattern getLeft() {
+        return left;
+    }
+
+    Pattern getRight() {
+        return right;
+    }
+
+    @Override
+    public double getDefaultPriority() {
+        return 0.5;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * ProfileInstrumenter.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bluezoo.gonzalez.transform.ast.ProfiledNode;
+import org.bluezoo.gonzalez.transform.ast.XSLTNode;
+import org.bluezoo.gonzalez.transform.runtime.ProfileSite;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+
+/**
+ * Instruments a compiled stylesheet for profiling.
+ *
+ * <p>Each template and function body is wrapped in a {@link ProfiledNode}
+ * and each XPath expression its instructions evaluate is given a
+ * {@link ProfileSite}, so that a transformation with a
+ * {@link org.bluezoo.gonzalez.transform.runtime.Profiler} measures them.
+ * Template rules that share a body, such as the alternatives of a union
+ * pattern, are measured as one site. A stylesheet that is not instrumented
+ * carries no profiling code in its templates.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class ProfileInstrumenter {
+
+    private ProfileInstrumenter() {
+    }
+
+    /**
+     * Instruments a compiled stylesheet. Instrumenting a stylesheet twice
+     * has no further effect.
+     *
+     * @param stylesheet the stylesheet
+     */
+    public static void instrument(CompiledStylesheet stylesheet) {
+        if (stylesheet.isProfiled()) {
+            return;
+        }
+        StreamabilityAnalyzer analyzer = new StreamabilityAnalyzer();
+        Map<XSLTNode, List<TemplateRule>> bodies =
+            new IdentityHashMap<XSLTNode, List<TemplateRule>>();
+        List<XSLTNode> order = new ArrayList<XSLTNode>();
+        for (TemplateRule rule : stylesheet.getTemplateRules()) {
+            List<TemplateRule> rules = bodies.get(rule.getBody());
+            if (rules == null) {
+                rules = new ArrayList<TemplateRule>();
+                bodies.put(rule.getBody(), rules);
+                order.add(rule.getBody());
+            }
+            rules.add(rule);
+        }
+        for (XSLTNode body : order) {
+            List<TemplateRule> rules = bodies.get(body);
+            TemplateRule first = rules.get(0);
+            ProfileSite site = templateSite(rules);
+            instrumentExpressions(analyzer, body, first.getSystemId(),
+                    first.getLineNumber(), first.getColumnNumber());
+            ProfiledNode profiled = new ProfiledNode(site, body);
+            for (TemplateRule rule : rules) {
+                rule.setBody(profiled);
+            }
+        }
+        for (UserFunction function : stylesheet.getUserFunctions().values()) {
+            if (function.getBody() == null || function.getBody() instanceof ProfiledNode) {
+                continue;
+            }
+            String name = "{" + function.getNamespaceURI() + "}"
+                + function.getLocalName() + "#" + function.getArity();
+            ProfileSite site = new ProfileSite(ProfileSite.Kind.FUNCTION, name,
+                    function.getSystemId(), function.getLineNumber(),
+                    function.getColumnNumber());
+            instrumentExpressions(analyzer, function.getBody(), function.getSystemId(),
+                    function.getLineNumber(), function.getColumnNumber());
+            function.setBody(new ProfiledNode(site, function.getBody()));
+        }
+        stylesheet.setProfiled(true);
+    }
+
+    private static ProfileSite templateSite(List<TemplateRule> rules) {
+        TemplateRule first = rules.get(0);
+        Set<String> patterns = new LinkedHashSet<String>();
+        Set<String> modes = new LinkedHashSet<String>();
+        String name = null;
+        for (TemplateRule rule : rules) {
+            if (rule.getMatchPattern() != null) {
+                patterns.add(rule.getMatchPattern().toString());
+            }
+            if (rule.getMode() != null && !"#default".equals(rule.getMode())) {
+                modes.add(rule.getMode());
+            }
+            if (name == null) {
+                name = rule.getName();
+            }
+        }
+        if (patterns.isEmpty()) {
+            return new ProfileSite(ProfileSite.Kind.NAMED_TEMPLATE, name,
+                    first.getSystemId(), first.getLineNumber(), first.getColumnNumber());
+        }
+        StringBuilder label = new StringBuilder();
+        if (name != null) {
+            label.append(name).append(' ');
+        }
+        label.append("match=").append(join(patterns, " | "));
+        if (!modes.isEmpty()) {
+            label.append(" mode=").append(join(modes, " "));
+        }
+        return new ProfileSite(ProfileSite.Kind.TEMPLATE, label.toString(),
+                first.getSystemId(), first.getLineNumber(), first.getColumnNumber());
+    }
+
+    private static void instrumentExpressions(StreamabilityAnalyzer analyzer, XSLTNode body,
+            String systemId, int lineNumber, int columnNumber) {
+        for (XPathExpression expr : analyzer.collectBodyExpressions(body)) {
+            if (expr != null && expr.getProfileSite() == null) {
+                expr.setProfileSite(new ProfileSite(ProfileSite.Kind.EXPRESSION,
+                        expr.getExpressionString(), systemId, lineNumber, columnNumber));
+            }
+        }
+    }
+
+    private static String join(Set<String> values, String separator) {
+        StringBuilder buf = new StringBuilder();
+        for (String value : values) {
+            if (buf.length() > 0) {
+                buf.append(separator);
+            }
+            buf.append(value);
+        }
+        return buf.toString();
+    }
+
+}
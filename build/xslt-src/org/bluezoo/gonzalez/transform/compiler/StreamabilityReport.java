@@ -0,0 +1,276 @@
+/*
+ * StreamabilityReport.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bluezoo.gonzalez.transform.compiler.StreamabilityAnalyzer.ExpressionStreamability;
+import org.bluezoo.gonzalez.transform.compiler.StreamabilityAnalyzer.TemplateStreamability;
+import org.bluezoo.gonzalez.transform.runtime.BufferingStrategy;
+import org.bluezoo.json.JSONWriter;
+
+/**
+ * How a compiled stylesheet's templates were classified for streaming,
+ * and why.
+ *
+ * <p>For each template the report gives the streamability category the
+ * {@link StreamabilityAnalyzer} assigned, the buffering strategy that
+ * follows from it, and the constructs - expressions, patterns or
+ * instructions - that made it less than streamable. Templates are listed
+ * in declaration order. Rewriting the listed constructs is what moves a
+ * template back onto the streaming path.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class StreamabilityReport {
+
+    /**
+     * The classification of one template.
+     */
+    public static final class Entry {
+
+        private final TemplateRule template;
+        private final ExpressionStreamability streamability;
+        private final BufferingStrategy strategy;
+        private final boolean streamableMode;
+        private final List<String> reasons;
+
+        Entry(TemplateRule template, ExpressionStreamability streamability,
+                BufferingStrategy strategy, boolean streamableMode, List<String> reasons) {
+            this.template = template;
+            this.streamability = streamability;
+            this.strategy = strategy;
+            this.streamableMode = streamableMode;
+            this.reasons = reasons;
+        }
+
+        /**
+         * Returns the template.
+         *
+         * @return the template rule
+         */
+        public TemplateRule getTemplate() {
+            return template;
+        }
+
+        /**
+         * Returns the streamability category of the template.
+         *
+         * @return the category
+         */
+        public ExpressionStreamability getStreamability() {
+            return streamability;
+        }
+
+        /**
+         * Returns the buffering the template needs.
+         *
+         * @return the buffering strategy
+         */
+        public BufferingStrategy getBufferingStrategy() {
+            return strategy;
+        }
+
+        /**
+         * Returns true if the template belongs to a mode declared streamable.
+         *
+         * @return true for a template in a streamable mode
+         */
+        public boolean isInStreamableMode() {
+            return streamableMode;
+        }
+
+        /**
+         * Returns the constructs that make the template need buffering.
+         *
+         * @return the reasons, empty for a streamable template
+         */
+        public List<String> getReasons() {
+            return reasons;
+        }
+
+    }
+
+    private final BufferingStrategy overallStrategy;
+    private final List<Entry> entries;
+
+    private StreamabilityReport(BufferingStrategy overallStrategy, List<Entry> entries) {
+        this.overallStrategy = overallStrategy;
+        this.entries = entries;
+    }
+
+    /**
+     * Creates the report for a compiled stylesheet.
+     *
+     * @param stylesheet the stylesheet
+     * @return the report
+     */
+    public static StreamabilityReport of(CompiledStylesheet stylesheet) {
+        StreamabilityAnalyzer.StylesheetStreamability analysis =
+            stylesheet.getStreamabilityAnalysis();
+        StreamabilityAnalyzer analyzer = null;
+        BufferingStrategy overall = BufferingStrategy.NONE;
+        List<Entry> entries = new ArrayList<Entry>();
+        for (TemplateRule template : stylesheet.getTemplateRules()) {
+            TemplateStreamability ts = null;
+            if (analysis != null) {
+                ts = analysis.getTemplateAnalysis().get(template);
+            }
+            if (ts == null) {
+                if (analyzer == null) {
+                    analyzer = new StreamabilityAnalyzer();
+                }
+                ts = analyzer.analyzeTemplate(template);
+            }
+            BufferingStrategy strategy = toBufferingStrategy(ts.getStreamability());
+            overall = overall.combine(strategy);
+            ModeDeclaration mode = stylesheet.getModeDeclaration(template.getMode());
+            boolean streamableMode = mode != null && mode.isStreamable();
+            List<String> reasons = ts.getBufferingReasons() != null
+                ? Collections.unmodifiableList(new ArrayList<String>(ts.getBufferingReasons()))
+                : Collections.<String>emptyList();
+            entries.add(new Entry(template, ts.getStreamability(), strategy,
+                    streamableMode, reasons));
+        }
+        return new StreamabilityReport(overall, Collections.unmodifiableList(entries));
+    }
+
+    private static BufferingStrategy toBufferingStrategy(ExpressionStreamability s) {
+        switch (s) {
+            case GROUNDED:
+                return BufferingStrategy.GROUNDED;
+            case FREE_RANGING:
+                return BufferingStrategy.FULL_DOCUMENT;
+            default:
+                return BufferingStrategy.NONE;
+        }
+    }
+
+    /**
+     * Returns the buffering the stylesheet as a whole needs: the most
+     * demanding strategy of any of its templates.
+     *
+     * @return the overall buffering strategy
+     */
+    public BufferingStrategy getOverallStrategy() {
+        return overallStrategy;
+    }
+
+    /**
+     * Returns the classification of each template, in declaration order.
+     *
+     * @return the entries
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the templates that need subtree or document buffering.
+     *
+     * @return the entries of templates that do not stream
+     */
+    public List<Entry> getBufferingEntries() {
+        List<Entry> result = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            if (entry.strategy != BufferingStrategy.NONE) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the report as a JSON object.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the report cannot be written
+     */
+    public void writeJSON(OutputStream out) throws IOException {
+        JSONWriter writer = new JSONWriter(out);
+        writer.writeStartObject();
+        writer.writeKey("strategy");
+        writer.writeString(overallStrategy.name());
+        writer.writeKey("templates");
+        writer.writeStartArray();
+        for (Entry entry : entries) {
+            TemplateRule template = entry.template;
+            writer.writeStartObject();
+            if (template.getName() != null) {
+                writer.writeKey("name");
+                writer.writeString(template.getName());
+            }
+            if (template.getMatchPattern() != null) {
+                writer.writeKey("match");
+                writer.writeString(template.getMatchPattern().toString());
+            }
+            if (template.getMode() != null) {
+                writer.writeKey("mode");
+                writer.writeString(template.getMode());
+            }
+            writer.writeKey("streamability");
+            writer.writeString(entry.streamability.name());
+            writer.writeKey("strategy");
+            writer.writeString(entry.strategy.name());
+            writer.writeKey("streamableMode");
+            writer.writeBoolean(entry.streamableMode);
+            writer.writeKey("reasons");
+            writer.writeStartArray();
+            for (String reason : entry.reasons) {
+                writer.writeString(reason);
+            }
+            writer.writeEndArray();
+            writer.writeEndObject();
+        }
+        writer.writeEndArray();
+        writer.writeEndObject();
+        writer.flush();
+    }
+
+    /**
+     * Returns the report as text, one line per template followed by its
+     * reasons.
+     *
+     * @return the report
+     */
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("strategy ").append(overallStrategy).append('\n');
+        for (Entry entry : entries) {
+            buf.append(entry.template).append(' ').append(entry.streamability);
+            if (entry.streamableMode) {
+                buf.append(" (streamable mode)");
+            }
+            buf.append('\n');
+            for (String reason : entry.reasons) {
+                buf.append("  ").append(reason).append('\n');
+            }
+        }
+        return buf.toString();
+    }
+
+}
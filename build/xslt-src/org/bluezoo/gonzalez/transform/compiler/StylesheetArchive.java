@@ -0,0 +1,346 @@
+/*
+ * StylesheetArchive.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary form of a compiled stylesheet.
+ *
+ * <p>An archive lets an application compile a stylesheet once, for example
+ * at build time, and load the compiled form at startup without parsing or
+ * analysing the XSLT source again. The archive starts with a header
+ * holding a magic number, the archive format version and the Gonzalez
+ * version that wrote it, followed by the compressed serialized
+ * {@link CompiledStylesheet}. A build without a version, such as one run
+ * from its class directories, is identified by a hash of its classes
+ * instead. An archive written by a different Gonzalez build, or whose
+ * compiled classes no longer match, is rejected with an
+ * {@link IOException}; the caller should then recompile from source.
+ *
+ * <p>Runtime configuration is not part of the archive: the package
+ * resolver, the xsl:fork executor and the xsl:function memo cache must be
+ * set again after loading. An archive may only hold the classes of the
+ * compiled stylesheet and the few JDK value and collection classes it
+ * uses; this is checked both when writing and when loading.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class StylesheetArchive {
+
+    /** Magic number at the start of every archive ("GZXS"). */
+    static final int MAGIC = 0x475a5853;
+
+    /** Version of the archive layout. */
+    static final int FORMAT_VERSION = 1;
+
+    /** Build stamp of an unversioned build whose classes cannot be read. */
+    private static final String UNKNOWN_BUILD = "unknown";
+
+    private static final String TRANSFORM_PACKAGE = "org.bluezoo.gonzalez.transform.";
+
+    /** Package of the imported schema model. */
+    private static final String SCHEMA_PACKAGE = "org.bluezoo.gonzalez.schema.xsd.";
+
+    /** Classes outside the transform package that an archive may hold. */
+    private static final Set<String> ALLOWED_CLASSES = new HashSet<String>(Arrays.asList(
+        "org.bluezoo.gonzalez.QName",
+        "org.bluezoo.gonzalez.schema.ValidationSource",
+        "org.bluezoo.gonzalez.schema.Validity",
+        "java.lang.Object",
+        "java.lang.String",
+        "java.lang.Enum",
+        "java.lang.Number",
+        "java.lang.Boolean",
+        "java.lang.Character",
+        "java.lang.Integer",
+        "java.lang.Long",
+        "java.lang.Float",
+        "java.lang.Double",
+        "java.math.BigInteger",
+        "java.math.BigDecimal",
+        "java.util.ArrayList",
+        "java.util.ArrayDeque",
+        "java.util.HashMap",
+        "java.util.HashSet",
+        "java.util.IdentityHashMap",
+        "java.util.LinkedHashMap",
+        "java.util.LinkedHashSet",
+        "java.util.TreeMap",
+        "java.util.TreeSet",
+        "java.util.Arrays$ArrayList",
+        "java.util.Collections$EmptyList",
+        "java.util.Collections$EmptyMap",
+        "java.util.Collections$EmptySet",
+        "java.util.Collections$SetFromMap",
+        "java.util.Collections$SingletonList",
+        "java.util.Collections$SingletonMap",
+        "java.util.Collections$SingletonSet",
+        "java.util.Collections$UnmodifiableCollection",
+        "java.util.Collections$UnmodifiableList",
+        "java.util.Collections$UnmodifiableMap",
+        "java.util.Collections$UnmodifiableRandomAccessList",
+        "java.util.Collections$UnmodifiableSet"
+    ));
+
+    private static String buildStamp;
+
+    private StylesheetArchive() {
+    }
+
+    /**
+     * Writes a compiled stylesheet to a stream. The stream is not closed.
+     *
+     * @param stylesheet the compiled stylesheet
+     * @param out the output stream
+     * @throws IOException if the stylesheet cannot be written
+     */
+    public static void write(CompiledStylesheet stylesheet, OutputStream out)
+            throws IOException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        header.writeUTF(getBuildStamp());
+        header.flush();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream body = new DeflaterOutputStream(out, deflater);
+            ObjectOutputStream oos = new ArchiveOutputStream(body);
+            oos.writeObject(stylesheet);
+            oos.flush();
+            body.finish();
+        } finally {
+            deflater.end();
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a compiled stylesheet from a stream. The stream is not closed.
+     *
+     * @param in the input stream
+     * @return the compiled stylesheet
+     * @throws IOException if the stream is not an archive, was written by
+     *         a different version of Gonzalez, or cannot be read
+     */
+    public static CompiledStylesheet read(InputStream in) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a precompiled stylesheet");
+        }
+        int format = header.readInt();
+        String version = header.readUTF();
+        if (format != FORMAT_VERSION || UNKNOWN_BUILD.equals(version)
+                || !version.equals(getBuildStamp())) {
+            throw new IOException("Stale precompiled stylesheet: written by Gonzalez " +
+                version + " (format " + format + "), recompile from source");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            ObjectInputStream ois = new ArchiveInputStream(
+                    new InflaterInputStream(in, inflater));
+            Object object = ois.readObject();
+            if (!(object instanceof CompiledStylesheet)) {
+                throw new IOException("Not a precompiled stylesheet");
+            }
+            return (CompiledStylesheet) object;
+        } catch (InvalidClassException e) {
+            throw new IOException("Stale precompiled stylesheet: " + e.getMessage() +
+                ", recompile from source", e);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid precompiled stylesheet: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns the version of this Gonzalez build, or for an unversioned
+     * build a hash of the classes of the transformer.
+     */
+    static synchronized String getBuildStamp() {
+        if (buildStamp == null) {
+            Package pkg = StylesheetArchive.class.getPackage();
+            String version = (pkg != null) ? pkg.getImplementationVersion() : null;
+            buildStamp = (version != null) ? version : hashClasses();
+        }
+        return buildStamp;
+    }
+
+    /**
+     * Hashes the jar or class directory holding this class. Returns
+     * {@link #UNKNOWN_BUILD} if it cannot be read, and archives are then
+     * never accepted.
+     */
+    private static String hashClasses() {
+        try {
+            CodeSource source = StylesheetArchive.class.getProtectionDomain().getCodeSource();
+            URL location = (source != null) ? source.getLocation() : null;
+            if (location == null) {
+                return UNKNOWN_BUILD;
+            }
+            Path root = Paths.get(location.toURI());
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (Files.isDirectory(root)) {
+                final List<Path> files = new ArrayList<Path>();
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (file.getFileName().toString().endsWith(".class")) {
+                            files.add(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                Collections.sort(files);
+                for (Path file : files) {
+                    digest.update(root.relativize(file).toString().getBytes("UTF-8"));
+                    digest.update(Files.readAllBytes(file));
+                }
+            } else {
+                digest.update(Files.readAllBytes(root));
+            }
+            StringBuilder buf = new StringBuilder("sha-256:");
+            for (byte b : digest.digest()) {
+                buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+                buf.append(Character.forDigit(b & 0xf, 16));
+            }
+            return buf.toString();
+        } catch (IOException | URISyntaxException | NoSuchAlgorithmException
+                | SecurityException | IllegalArgumentException e) {
+            return UNKNOWN_BUILD;
+        }
+    }
+
+    /**
+     * Returns whether an archive may hold instances of a class, or arrays
+     * of them.
+     */
+    static boolean isAllowed(String name) {
+        return name.startsWith(TRANSFORM_PACKAGE) || name.startsWith(SCHEMA_PACKAGE)
+            || ALLOWED_CLASSES.contains(name);
+    }
+
+    /**
+     * Object stream that refuses to write classes a loader would reject.
+     */
+    private static final class ArchiveOutputStream extends ObjectOutputStream {
+
+        private boolean failed;
+
+        ArchiveOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void annotateClass(Class<?> cl) throws IOException {
+            if (failed) {
+                return;
+            }
+            if (IOException.class.isAssignableFrom(cl)) {
+                // The stream is writing the exception that aborted it into
+                // itself; let it through so the caller gets that exception
+                failed = true;
+                return;
+            }
+            Class<?> type = cl;
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (!type.isPrimitive() && !isAllowed(type.getName())) {
+                throw new InvalidClassException(type.getName(),
+                    "class not allowed in precompiled stylesheet");
+            }
+        }
+    }
+
+    /**
+     * Object stream that only resolves the allowed classes.
+     */
+    private static final class ArchiveInputStream extends ObjectInputStream {
+
+        ArchiveInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            int start = 0;
+            while (start < name.length() && name.charAt(start) == '[') {
+                start++;
+            }
+            if (start > 0) {
+                if (name.charAt(start) != 'L') {
+                    // Array of primitives
+                    return super.resolveClass(desc);
+                }
+                name = name.substring(start + 1, name.length() - 1);
+            }
+            if (!isAllowed(name)) {
+                throw new InvalidObjectException("Class not allowed in precompiled stylesheet: " + name);
+            }
+            if (name.startsWith("org.bluezoo.gonzalez.")) {
+                // Resolve against the loader that holds Gonzalez itself
+                try {
+                    return Class.forName(desc.getName(), false,
+                            StylesheetArchive.class.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc);
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+
+}
@@ -0,0 +1,876 @@
+/*
+ * StylesheetResolver.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bluezoo.gonzalez.Parser;
+import org.bluezoo.gonzalez.XMLHandler;
+import org.bluezoo.gonzalez.transform.runtime.NativeAttributeBuffer;
+import org.bluezoo.gonzalez.transform.runtime.NativeExpandedNames;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves and compiles external stylesheets for xsl:import and xsl:include.
+ *
+ * <p>This class handles the resolution of external stylesheet references,
+ * supporting both absolute and relative URIs. It integrates with the JAXP
+ * {@link URIResolver} mechanism for custom resolution strategies.
+ *
+ * <p>The resolver tracks which stylesheets are currently being loaded (on the
+ * call stack) to detect circular imports/includes. Note that importing the same
+ * stylesheet multiple times (e.g., from different locations) is valid in XSLT
+ * and is allowed - each import gets a different import precedence.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class StylesheetResolver {
+
+    private final URIResolver uriResolver;
+    private final Set<String> loadedStylesheets;
+    
+    // Global precedence counter - increments each time an import is processed
+    // Shared across the entire import tree via the precedenceCounter array
+    private final int[] precedenceCounter;
+    
+    // Global template declaration counter - increments for each template
+    // Shared across the entire import tree to ensure unique declaration indices
+    private final int[] templateCounter;
+    
+    // Allowed protocols for stylesheet access (empty = none, "all" = unrestricted)
+    private String allowedProtocols = "";
+
+    // Allowed protocols for external DTD access (empty = none, "all" = unrestricted)
+    private String accessExternalDTD = "";
+
+    // Shared static variables for include processing (XSLT 3.0).
+    // When non-null, child compilers share this map with the parent so
+    // static variables defined before an xsl:include are visible inside
+    // the included module, and variables declared in the included module
+    // become visible in the parent after the include.
+    private Map<String, XPathValue> sharedStaticVariables;
+
+    /**
+     * Creates a new stylesheet resolver with no custom URI resolver.
+     */
+    public StylesheetResolver() {
+        this(null);
+    }
+
+    /**
+     * Creates a new stylesheet resolver with the given URI resolver.
+     *
+     * @param uriResolver the JAXP URI resolver, or null to use default resolution
+     */
+    public StylesheetResolver(URIResolver uriResolver) {
+        this.uriResolver = uriResolver;
+        this.loadedStylesheets = new HashSet<>();
+        this.precedenceCounter = new int[] { 0 };  // Shared mutable counter
+        this.templateCounter = new int[] { 0 };    // Shared mutable counter
+    }
+    
+    /**
+     * Private constructor for child resolvers that share state.
+     */
+    private StylesheetResolver(URIResolver uriResolver, Set<String> loadedStylesheets, 
+                               int[] precedenceCounter, int[] templateCounter,
+                               String allowedProtocols, String accessExternalDTD,
+                               Map<String, XPathValue> sharedStaticVariables) {
+        this.uriResolver = uriResolver;
+        this.loadedStylesheets = loadedStylesheets;
+        this.precedenceCounter = precedenceCounter;
+        this.templateCounter = templateCounter;
+        this.allowedProtocols = allowedProtocols;
+        this.accessExternalDTD = accessExternalDTD;
+        this.sharedStaticVariables = sharedStaticVariables;
+    }
+
+    /**
+     * Sets the allowed URL protocols for stylesheet resolution.
+     *
+     * @param protocols comma-separated list of allowed protocols,
+     *                  "all" for unrestricted, or empty string for none
+     */
+    public void setAllowedProtocols(String protocols) {
+        this.allowedProtocols = (protocols != null) ? protocols : "";
+    }
+
+    /**
+     * Sets the allowed protocols for external DTD access.
+     *
+     * @param protocols comma-separated list of protocols, "all", or ""
+     */
+    public void setAccessExternalDTD(String protocols) {
+        this.accessExternalDTD = (protocols != null) ? protocols : "";
+    }
+
+    /**
+     * Sets shared static variables for include processing (XSLT 3.0).
+     * The included module's compiler will share this map with the parent,
+     * so static variables flow bidirectionally across xsl:include boundaries.
+     *
+     * @param vars the parent's static variable map to share
+     */
+    void setSharedStaticVariables(Map<String, XPathValue> vars) {
+        this.sharedStaticVariables = vars;
+    }
+
+    /**
+     * Creates a child resolver that shares the loaded stylesheet tracking,
+     * precedence counter, and template counter. Used when compiling imported/included stylesheets.
+     *
+     * @return a new resolver sharing the loaded set and counters
+     */
+    StylesheetResolver createChild() {
+        return new StylesheetResolver(uriResolver, loadedStylesheets, 
+            precedenceCounter, templateCounter, allowedProtocols, accessExternalDTD,
+            sharedStaticVariables);
+    }
+    
+    /**
+     * Gets the next import precedence value and increments the counter.
+     * Called when an imported stylesheet's templates are about to be created.
+     *
+     * @return the next precedence value
+     */
+    int nextPrecedence() {
+        return precedenceCounter[0]++;
+    }
+    
+    /**
+     * Gets the current precedence value without incrementing.
+     *
+     * @return the current precedence value
+     */
+    int currentPrecedence() {
+        return precedenceCounter[0];
+    }
+    
+    /**
+     * Gets the next template declaration index and increments the counter.
+     * This ensures unique declaration indices across all included/imported stylesheets.
+     *
+     * @return the next template index
+     */
+    int nextTemplateIndex() {
+        return templateCounter[0]++;
+    }
+
+    /**
+     * Marks a stylesheet URI as currently being loaded.
+     * Used for circular reference detection.
+     *
+     * @param uri the resolved URI
+     */
+    void markLoading(String uri) {
+        if (uri != null) {
+            loadedStylesheets.add(normalizeUri(uri));
+        }
+    }
+
+    /**
+     * Unmarks a stylesheet URI as no longer being loaded.
+     * Called after stylesheet parsing is complete.
+     *
+     * @param uri the resolved URI
+     */
+    void unmarkLoading(String uri) {
+        if (uri != null) {
+            loadedStylesheets.remove(normalizeUri(uri));
+        }
+    }
+
+    /**
+     * Checks if a stylesheet is currently being loaded (on the call stack).
+     * This is used to detect circular imports/includes.
+     *
+     * @param uri the URI to check
+     * @return true if currently being loaded
+     */
+    boolean isLoading(String uri) {
+        if (uri == null) {
+            return false;
+        }
+        return loadedStylesheets.contains(normalizeUri(uri));
+    }
+
+    /**
+     * Resolves and compiles an external stylesheet.
+     *
+     * @param href the href attribute from xsl:import or xsl:include
+     * @param baseUri the base URI of the importing stylesheet
+     * @param isImport true for xsl:import, false for xsl:include
+     * @param importPrecedence the import precedence to use
+     * @return a compiled stylesheet, or null if resolution fails
+     * @throws SAXException if parsing fails
+     * @throws IOException if I/O fails
+     */
+    public CompiledStylesheet resolve(String href, String baseUri, 
+            boolean isImport, int importPrecedence) throws SAXException, IOException {
+        
+        // Extract fragment identifier for embedded stylesheets (e.g. "doc.xml#id")
+        String fragmentId = null;
+        int hashIdx = href.indexOf('#');
+        if (hashIdx >= 0) {
+            fragmentId = href.substring(hashIdx + 1);
+        }
+
+        String resolvedUri = resolveUri(href, baseUri);
+        
+        // Check for circular reference - only throw if currently being loaded (on the call stack)
+        // It's valid to import the same stylesheet multiple times from different places
+        if (isLoading(resolvedUri)) {
+            throw new SAXException("Circular stylesheet reference detected: " + resolvedUri);
+        }
+        
+        // Mark as loading before parsing to prevent infinite loops
+        markLoading(resolvedUri);
+        
+        try {
+            // Get the input source
+            InputSource inputSource = getInputSource(href, baseUri, resolvedUri);
+            if (inputSource == null) {
+                throw new SAXException("Unable to resolve stylesheet: " + href);
+            }
+            
+            // Create compiler for the external stylesheet
+            StylesheetResolver childResolver = createChild();
+            StylesheetCompiler compiler = new StylesheetCompiler(childResolver, resolvedUri, importPrecedence);
+            
+            // For includes (not imports), share static variables with child compiler
+            if (!isImport && sharedStaticVariables != null) {
+                compiler.setSharedStaticVariables(sharedStaticVariables);
+            }
+            
+            // Parse the stylesheet. Fragment selection uses a native XMLHandler
+            // filter; full documents go straight to the compiler.
+            XMLReader reader = createXMLReader();
+            if (!(reader instanceof Parser)) {
+                reader = new Parser();
+                reader.setFeature("http://xml.org/sax/features/namespaces", true);
+                reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+            }
+            if (fragmentId != null && !fragmentId.isEmpty()) {
+                ((Parser) reader).setXMLHandler(
+                        new EmbeddedStylesheetFilter(fragmentId, compiler));
+            } else {
+                ((Parser) reader).setXMLHandler(compiler);
+            }
+            reader.parse(inputSource);
+            
+            try {
+                // Skip cross-reference validation for sub-stylesheets since
+                // references may target definitions in sibling or parent modules
+                return compiler.getCompiledStylesheet(false);
+            } catch (javax.xml.transform.TransformerConfigurationException e) {
+                throw new SAXException(e.getMessage(), e);
+            }
+        } finally {
+            // Unmark as loading - the stylesheet is fully parsed now
+            // This allows it to be imported again from a different place
+            unmarkLoading(resolvedUri);
+        }
+    }
+
+    /**
+     * Resolves a URI reference against a base URI.
+     *
+     * @param href the href to resolve
+     * @param baseUri the base URI
+     * @return the resolved URI string
+     */
+    String resolveUri(String href, String baseUri) {
+        if (href == null || href.isEmpty()) {
+            return baseUri;
+        }
+        
+        // Check if href is already absolute
+        try {
+            URI hrefUri = new URI(href);
+            if (hrefUri.isAbsolute()) {
+                return href;
+            }
+        } catch (URISyntaxException e) {
+            // Not a valid URI, try to resolve against base
+        }
+        
+        // Resolve against base
+        if (baseUri != null && !baseUri.isEmpty()) {
+            try {
+                URI base = new URI(baseUri);
+                URI resolved = base.resolve(href);
+                return resolved.toString();
+            } catch (URISyntaxException e) {
+                // Fall back to simple concatenation
+                if (baseUri.endsWith("/")) {
+                    return baseUri + href;
+                }
+                int lastSlash = baseUri.lastIndexOf('/');
+                if (lastSlash >= 0) {
+                    return baseUri.substring(0, lastSlash + 1) + href;
+                }
+            }
+        }
+        
+        return href;
+    }
+
+    /**
+     * Gets an InputSource for the resolved URI.
+     */
+    private InputSource getInputSource(String href, String baseUri, String resolvedUri) 
+            throws SAXException, IOException {
+        
+        // Check protocol restriction before resolving
+        if (!isProtocolAllowed(resolvedUri, allowedProtocols)) {
+            throw new SAXException(
+                "Access denied to stylesheet protocol by security policy: " + resolvedUri);
+        }
+        
+        // Try custom URI resolver first
+        if (uriResolver != null) {
+            try {
+                Source source = uriResolver.resolve(href, baseUri);
+                if (source != null) {
+                    return sourceToInputSource(source);
+                }
+            } catch (TransformerException e) {
+                throw new SAXException("URIResolver failed: " + e.getMessage(), e);
+            }
+        }
+        
+        // Default resolution - open the stream for the Gonzalez parser
+        InputSource inputSource = new InputSource(resolvedUri);
+        inputSource.setSystemId(resolvedUri);
+        
+        // Open the byte stream since Gonzalez parser requires it
+        InputStream byteStream = null;
+        try {
+            URL url = new URL(resolvedUri);
+            byteStream = url.openStream();
+        } catch (Exception e) {
+            // URL open failed, try as a file path
+            String filePath = resolvedUri;
+            // Strip file: prefix if present
+            if (filePath.startsWith("file:")) {
+                filePath = filePath.substring(5);
+                // Handle file:/// on Unix
+                if (filePath.startsWith("//")) {
+                    filePath = filePath.substring(2);
+                }
+            }
+            File file = new File(filePath);
+            if (file.exists()) {
+                byteStream = new FileInputStream(file);
+            }
+        }
+        
+        if (byteStream != null) {
+            inputSource.setByteStream(byteStream);
+        }
+        
+        return inputSource;
+    }
+
+    /**
+     * Converts a JAXP Source to a SAX InputSource.
+     */
+    private InputSource sourceToInputSource(Source source) throws IOException {
+        if (source instanceof StreamSource) {
+            StreamSource ss = (StreamSource) source;
+            InputSource is = new InputSource();
+            is.setSystemId(ss.getSystemId());
+            is.setPublicId(ss.getPublicId());
+            if (ss.getInputStream() != null) {
+                is.setByteStream(ss.getInputStream());
+            } else if (ss.getReader() != null) {
+                is.setCharacterStream(ss.getReader());
+            } else if (ss.getSystemId() != null) {
+                // Open the stream
+                try {
+                    URL url = new URL(ss.getSystemId());
+                    is.setByteStream(url.openStream());
+                } catch (MalformedURLException e) {
+                    File file = new File(ss.getSystemId());
+                    if (file.exists()) {
+                        is.setByteStream(new FileInputStream(file));
+                    }
+                }
+            }
+            return is;
+        }
+        
+        // For other source types, try to open by system ID
+        InputSource is = new InputSource();
+        String systemId = source.getSystemId();
+        is.setSystemId(systemId);
+        if (systemId != null) {
+            try {
+                URL url = new URL(systemId);
+                is.setByteStream(url.openStream());
+            } catch (MalformedURLException e) {
+                File file = new File(systemId);
+                if (file.exists()) {
+                    is.setByteStream(new FileInputStream(file));
+                }
+            }
+        }
+        return is;
+    }
+
+    /**
+     * Creates an XMLReader for parsing stylesheets.
+     * Entity processing is enabled when accessExternalDTD is configured.
+     */
+    private XMLReader createXMLReader() throws SAXException {
+        XMLReader reader;
+        try {
+            // Try to use Gonzalez parser if available
+            Class<?> parserClass = Class.forName("org.bluezoo.gonzalez.Parser");
+            reader = (XMLReader) parserClass.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            // Fall back to default
+            reader = XMLReaderFactory.createXMLReader();
+        }
+        // Configure entity processing based on accessExternalDTD setting
+        boolean allowDTD = accessExternalDTD != null && !accessExternalDTD.isEmpty();
+        try {
+            reader.setFeature("http://xml.org/sax/features/namespaces", true);
+            reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+            reader.setFeature("http://xml.org/sax/features/external-general-entities", allowDTD);
+            reader.setFeature("http://xml.org/sax/features/external-parameter-entities", allowDTD);
+        } catch (SAXException e) {
+            // Parser may not support these features
+        }
+        if (allowDTD) {
+            try {
+                reader.setProperty("http://javax.xml.XMLConstants/property/accessExternalDTD",
+                    accessExternalDTD);
+            } catch (SAXException e) {
+                // Parser may not support this property
+            }
+        }
+        return reader;
+    }
+
+    private static boolean isProtocolAllowed(String uri, String allowedProtocols) {
+        if (uri == null) {
+            return true;
+        }
+        if (allowedProtocols == null || allowedProtocols.isEmpty()) {
+            return false;
+        }
+        if ("all".equals(allowedProtocols)) {
+            return true;
+        }
+        int colonIndex = uri.indexOf(':');
+        if (colonIndex <= 0) {
+            return true;
+        }
+        String protocol = uri.substring(0, colonIndex);
+        int start = 0;
+        int len = allowedProtocols.length();
+        while (start < len) {
+            int comma = allowedProtocols.indexOf(',', start);
+            if (comma < 0) {
+                comma = len;
+            }
+            String allowed = allowedProtocols.substring(start, comma).trim();
+            if (protocol.equalsIgnoreCase(allowed)) {
+                return true;
+            }
+            start = comma + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Normalizes a URI for comparison purposes.
+     */
+    private String normalizeUri(String uri) {
+        if (uri == null) {
+            return "";
+        }
+        // Remove fragment identifier
+        int hashIndex = uri.indexOf('#');
+        if (hashIndex >= 0) {
+            uri = uri.substring(0, hashIndex);
+        }
+        return uri;
+    }
+
+    /**
+     * Native XMLHandler filter that selects an embedded stylesheet subtree by
+     * element whose {@code id} / {@code xml:id} attribute matches a fragment
+     * identifier, then forwards only that subtree to the delegate compiler.
+     *
+     * <p>Namespace declarations on skipped ancestors are discarded (same as the
+     * former SAX filter): the fragment root must carry its own xmlns bindings.
+     * Declarations on the matched element are buffered until {@code endAttributes}
+     * and replayed before the delegated start-tag.
+     *
+     * <p>If the matched element has {@code xml:base}, it is resolved against the
+     * document URI and exposed via a wrapping {@link Locator}.
+     */
+    private static class EmbeddedStylesheetFilter implements XMLHandler {
+
+        private final String targetId;
+        private final XMLHandler delegate;
+        private int depth;
+        private boolean forwarding;
+        private MutableLocator locatorWrapper;
+
+        private String currentQName;
+        private final List<String[]> pendingNamespaces = new ArrayList<String[]>();
+        private final NativeAttributeBuffer attributes = new NativeAttributeBuffer();
+
+        EmbeddedStylesheetFilter(String targetId, XMLHandler delegate) {
+            this.targetId = targetId;
+            this.delegate = delegate;
+            this.depth = 0;
+            this.forwarding = false;
+        }
+
+        @Override
+        public void setLocator(Locator locator) {
+            locatorWrapper = new MutableLocator(locator);
+            delegate.setLocator(locatorWrapper);
+        }
+
+        @Override
+        public void setXml11(boolean xml11) {
+            delegate.setXml11(xml11);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            delegate.startDocument();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            delegate.endDocument();
+        }
+
+        @Override
+        public void startElement(String qName) throws SAXException {
+            if (forwarding) {
+                depth++;
+                delegate.startElement(qName);
+                return;
+            }
+            currentQName = qName;
+            pendingNamespaces.clear();
+            attributes.clear();
+        }
+
+        @Override
+        public void namespace(String prefix, String uri) throws SAXException {
+            if (forwarding) {
+                delegate.namespace(prefix, uri);
+                return;
+            }
+            pendingNamespaces.add(new String[] {
+                prefix != null ? prefix : "",
+                uri != null ? uri : ""
+            });
+        }
+
+        @Override
+        public void startAttribute(String name, String type, boolean declared,
+                boolean specified) throws SAXException {
+            if (forwarding) {
+                delegate.startAttribute(name, type, declared, specified);
+                return;
+            }
+            attributes.startAttribute(name, type);
+        }
+
+        @Override
+        public void attributeValueContent(CharBuffer value, boolean end)
+                throws SAXException {
+            if (forwarding) {
+                delegate.attributeValueContent(value, end);
+                return;
+            }
+            attributes.attributeValueContent(value, end);
+        }
+
+        @Override
+        public void endAttributes() throws SAXException {
+            if (forwarding) {
+                delegate.endAttributes();
+                return;
+            }
+
+            String id = findIdValue();
+            if (targetId.equals(id)) {
+                forwarding = true;
+                depth = 1;
+                applyXmlBase();
+                for (String[] mapping : pendingNamespaces) {
+                    delegate.namespace(mapping[0], mapping[1]);
+                }
+                pendingNamespaces.clear();
+                delegate.startElement(currentQName);
+                for (int i = 0; i < attributes.size(); i++) {
+                    NativeAttributeBuffer.Attr attr = attributes.get(i);
+                    if (NativeExpandedNames.isNamespaceDeclaration(attr.qName)) {
+                        continue;
+                    }
+                    delegate.startAttribute(attr.qName,
+                            attr.type != null ? attr.type : "CDATA");
+                    CharBuffer value = CharBuffer.wrap(
+                            attr.value != null ? attr.value : "");
+                    delegate.attributeValueContent(value, true);
+                }
+                delegate.endAttributes();
+            } else {
+                pendingNamespaces.clear();
+                attributes.clear();
+            }
+        }
+
+        private String findIdValue() {
+            for (int i = 0; i < attributes.size(); i++) {
+                NativeAttributeBuffer.Attr attr = attributes.get(i);
+                if ("id".equals(attr.qName) || "xml:id".equals(attr.qName)) {
+                    return attr.value;
+                }
+            }
+            return null;
+        }
+
+        private void applyXmlBase() {
+            if (locatorWrapper == null) {
+                return;
+            }
+            String xmlBase = null;
+            for (int i = 0; i < attributes.size(); i++) {
+                NativeAttributeBuffer.Attr attr = attributes.get(i);
+                if ("xml:base".equals(attr.qName)) {
+                    xmlBase = attr.value;
+                    break;
+                }
+            }
+            if (xmlBase == null || xmlBase.isEmpty()) {
+                return;
+            }
+            String docUri = locatorWrapper.getDelegate().getSystemId();
+            if (docUri == null || docUri.isEmpty()) {
+                return;
+            }
+            try {
+                URI base = new URI(docUri);
+                URI resolved = base.resolve(xmlBase);
+                locatorWrapper.setSystemId(resolved.toString());
+            } catch (URISyntaxException e) {
+                // ignore malformed xml:base
+            }
+        }
+
+        @Override
+        public void characters(CharBuffer text, boolean ignorable, boolean end)
+                throws SAXException {
+            if (forwarding) {
+                delegate.characters(text, ignorable, end);
+            }
+        }
+
+        @Override
+        public void endElement() throws SAXException {
+            if (!forwarding) {
+                return;
+            }
+            depth--;
+            delegate.endElement();
+            if (depth == 0) {
+                forwarding = false;
+            }
+        }
+
+        @Override
+        public void startComment() throws SAXException {
+            if (forwarding) {
+                delegate.startComment();
+            }
+        }
+
+        @Override
+        public void commentData(CharBuffer text, boolean end) throws SAXException {
+            if (forwarding) {
+                delegate.commentData(text, end);
+            }
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            if (forwarding) {
+                delegate.startCDATA();
+            }
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            if (forwarding) {
+                delegate.endCDATA();
+            }
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId)
+                throws SAXException {
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+        }
+
+        @Override
+        public void startEntity(String name) throws SAXException {
+            if (forwarding) {
+                delegate.startEntity(name);
+            }
+        }
+
+        @Override
+        public void endEntity(String name) throws SAXException {
+            if (forwarding) {
+                delegate.endEntity(name);
+            }
+        }
+
+        @Override
+        public void notationDecl(String name, String publicId, String systemId)
+                throws SAXException {
+        }
+
+        @Override
+        public void unparsedEntityDecl(String name, String publicId,
+                String systemId, String notationName) throws SAXException {
+        }
+
+        @Override
+        public void piTarget(String target) throws SAXException {
+            if (forwarding) {
+                delegate.piTarget(target);
+            }
+        }
+
+        @Override
+        public void piData(CharBuffer data, boolean end) throws SAXException {
+            if (forwarding) {
+                delegate.piData(data, end);
+            }
+        }
+
+        @Override
+        public void saveBuffers() throws SAXException {
+            if (forwarding) {
+                delegate.saveBuffers();
+            }
+        }
+
+        @Override
+        public SAXException fatalError(String message) throws SAXException {
+            return delegate.fatalError(message);
+        }
+
+        @Override
+        public void error(String message) throws SAXException {
+            if (forwarding) {
+                delegate.error(message);
+            }
+        }
+    }
+
+    /**
+     * Locator wrapper that allows the system ID to be overridden, used to
+     * propagate {@code xml:base} from embedded stylesheet elements.
+     */
+    private static class MutableLocator implements Locator {
+
+        private final Locator delegate;
+        private String systemIdOverride;
+
+        MutableLocator(Locator delegate) {
+            this.delegate = delegate;
+        }
+
+        Locator getDelegate() {
+            return delegate;
+        }
+
+        void setSystemId(String systemId) {
+            this.systemIdOverride = systemId;
+        }
+
+        @Override
+        public String getPublicId() {
+            return delegate.getPublicId();
+        }
+
+        @Override
+        public String getSystemId() {
+            if (systemIdOverride != null) {
+                return systemIdOverride;
+            }
+            return delegate.getSystemId();
+        }
+
+        @Override
+        public int getLineNumber() {
+            return delegate.getLineNumber();
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return delegate.getColumnNumber();
+        }
+    }
+
+}
@@ -0,0 +1,1020 @@
+/*
+ * AccumulatorManager.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import org.bluezoo.gonzalez.transform.ast.XSLTNode;
+import org.bluezoo.gonzalez.transform.compiler.AccumulatorDefinition;
+import org.bluezoo.gonzalez.transform.compiler.AccumulatorDefinition.AccumulatorRule;
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.compiler.Pattern;
+import org.bluezoo.gonzalez.transform.compiler.SequenceBuilderOutputHandler;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathBoolean;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathMap;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNodeSet;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNumber;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathSequence;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathUntypedAtomic;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathString;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.xml.sax.SAXException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Manages accumulator state during transformation.
+ *
+ * <p>For tree-based (non-streaming) transforms, accumulators are computed by
+ * a depth-first traversal of the document the first time one of their
+ * values is asked for, so an accumulator the stylesheet never reads is never
+ * computed. Each document (main input, doc() results, temporary trees)
+ * gets its own independent traversal of each accumulator, starting from
+ * its initial value, per XSLT 3.0 Section 6.1. The traversal is iterative,
+ * tests only the rules whose pattern could match each node (see {@link
+ * AccumulatorRules}), and keeps the values where they change (see {@link
+ * AccumulatorValues}).
+ *
+ * <p>For streaming transforms, accumulator rules fire on SAX events
+ * via {@link #notifyStartElement} and {@link #notifyEndElement}.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class AccumulatorManager {
+
+    /**
+     * Sentinel XPathValue that wraps a deferred error.
+     * When an accumulator rule or initial-value causes an error,
+     * it is stored as a DeferredError and re-thrown when the value is accessed.
+     */
+    static final class DeferredError implements XPathValue {
+
+        private static final long serialVersionUID = 1L;
+
+        final Exception cause;
+        DeferredError(Exception cause) {
+            this.cause = cause;
+        }
+        @Override public Type getType() { return Type.STRING; }
+        @Override public String asString() { return ""; }
+        @Override public double asNumber() { return Double.NaN; }
+        @Override public boolean asBoolean() { return false; }
+        @Override public XPathNodeSet asNodeSet() { return null; }
+    }
+
+    private final CompiledStylesheet stylesheet;
+    private final TransformContext transformContext;
+    private final Map<String, AccumulatorState> accumulators;
+    private final List<InternalAccumulator> internalAccumulators;
+    private boolean initialized;
+    private boolean streamingMode;
+
+    /**
+     * Computed values of the documents encountered so far, keyed by
+     * document root. Populated lazily as values are asked for.
+     */
+    private final Map<XPathNode, DocumentValues> documents;
+
+    /** Accumulators currently being evaluated (for cycle detection). */
+    private final Set<String> evaluatingAccumulators;
+
+    /**
+     * When non-null, restricts which accumulators are applicable for the
+     * current document (e.g., xsl:merge-source use-accumulators).
+     * Accessing a non-applicable accumulator raises XTDE3362.
+     */
+    private Set<String> applicableAccumulators;
+
+    /**
+     * Creates a new AccumulatorManager.
+     *
+     * @param stylesheet the compiled stylesheet containing accumulator definitions
+     * @param transformContext the transformation context for expression evaluation
+     */
+    public AccumulatorManager(CompiledStylesheet stylesheet, TransformContext transformContext) {
+        this.stylesheet = stylesheet;
+        this.transformContext = transformContext;
+        this.accumulators = new HashMap<>();
+        this.internalAccumulators = stylesheet != null
+                ? new ArrayList<InternalAccumulator>(stylesheet.getInternalAccumulators())
+                : new ArrayList<InternalAccumulator>();
+        this.initialized = false;
+        this.documents = new HashMap<>();
+        this.evaluatingAccumulators = new HashSet<>();
+    }
+
+    /**
+     * Creates a copy of an existing AccumulatorManager with independent state.
+     * Used for xsl:fork to give each branch its own accumulator state.
+     *
+     * @param other the manager to copy
+     * @param newContext the transformation context for the new manager
+     */
+    public AccumulatorManager(AccumulatorManager other, TransformContext newContext) {
+        this.stylesheet = other.stylesheet;
+        this.transformContext = newContext;
+        this.accumulators = new HashMap<>();
+        this.internalAccumulators = new ArrayList<InternalAccumulator>(other.internalAccumulators);
+        this.initialized = other.initialized;
+        this.documents = other.documents;
+        this.evaluatingAccumulators = other.evaluatingAccumulators;
+
+        for (Map.Entry<String, AccumulatorState> entry : other.accumulators.entrySet()) {
+            this.accumulators.put(entry.getKey(), new AccumulatorState(entry.getValue()));
+        }
+    }
+
+    /**
+     * Initializes all accumulators with their initial values.
+     * Must be called before document processing begins.
+     *
+     * @throws SAXException if initialization fails
+     */
+    public void initialize() throws SAXException {
+        accumulators.clear();
+
+        for (Map.Entry<String, AccumulatorDefinition> entry : stylesheet.getAccumulators().entrySet()) {
+            AccumulatorDefinition def = entry.getValue();
+            XPathValue initialValue = evaluateInitialValue(def);
+            AccumulatorState state = new AccumulatorState(def, initialValue);
+            accumulators.put(entry.getKey(), state);
+        }
+
+        for (int i = 0; i < internalAccumulators.size(); i++) {
+            internalAccumulators.get(i).initialize();
+        }
+
+        initialized = true;
+    }
+
+    /**
+     * Registers a grounded (tree-based) document whose accumulator values
+     * may be asked for. The values of each accumulator are computed on
+     * first access; each document starts from initial accumulator values
+     * per the spec.
+     *
+     * @param documentRoot the root node of the document to traverse
+     * @throws SAXException if initialization fails
+     */
+    public void preTraverseDocument(XPathNode documentRoot) throws SAXException {
+        if (!initialized) {
+            initialize();
+        }
+        if (!documents.containsKey(documentRoot)) {
+            documents.put(documentRoot, new DocumentValues(documentRoot));
+        }
+    }
+
+    /**
+     * Returns the values of an accumulator over a document, computing them
+     * if they have not been asked for before. While the accumulator is
+     * being computed - when one of its rules asks for its own values - the
+     * values of the nodes visited so far are returned.
+     *
+     * @return the values, or null if there is no such accumulator
+     */
+    private AccumulatorValues getValues(DocumentValues document, String name)
+            throws SAXException {
+        AccumulatorValues values = document.values.get(name);
+        if (values != null) {
+            return values;
+        }
+        AccumulatorState state = accumulators.get(name);
+        if (state == null) {
+            return null;
+        }
+        if (document.ordinals == null) {
+            document.ordinals = AccumulatorValues.Ordinals.of(document.root);
+        }
+        values = new AccumulatorValues(document.ordinals);
+        document.values.put(name, values);
+
+        XPathValue savedValue = state.getCurrentValue();
+        state.setCurrentValue(evaluateInitialValue(state.getDefinition()));
+        try {
+            traverse(document.root, name, state, values);
+        } finally {
+            values.seal();
+            state.setCurrentValue(savedValue);
+        }
+        return values;
+    }
+
+    /**
+     * Depth-first traversal of a document that fires one accumulator's
+     * rules on each node and records the before/after values. Nodes copied
+     * from another document take their values from the original nodes.
+     */
+    private void traverse(XPathNode root, String name, AccumulatorState state,
+            AccumulatorValues values) throws SAXException {
+        Frame[] stack = new Frame[16];
+        int depth = 0;
+        int ordinal = 0;
+        stack[0] = new Frame();
+        stack[0].set(root, null, null, ordinal++);
+        enter(stack[0], name, state, values);
+        while (depth >= 0) {
+            Frame frame = stack[depth];
+            if (!frame.children.hasNext()) {
+                exit(frame, state, values);
+                depth--;
+                continue;
+            }
+            XPathNode child = frame.children.next();
+            XPathNode childSource = null;
+            if (frame.source != null) {
+                if (!frame.sourceChildren.hasNext()) {
+                    // No original to take values from
+                    ordinal += AccumulatorValues.Ordinals.countSubtree(child);
+                    continue;
+                }
+                childSource = frame.sourceChildren.next();
+            }
+            if (++depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            if (stack[depth] == null) {
+                stack[depth] = new Frame();
+            }
+            stack[depth].set(child, childSource, frame.sourceValues, ordinal++);
+            enter(stack[depth], name, state, values);
+        }
+    }
+
+    private void enter(Frame frame, String name, AccumulatorState state,
+            AccumulatorValues values) throws SAXException {
+        XPathNode node = frame.node;
+        if (frame.source == null) {
+            XPathNode copySource = node.getCopySource();
+            if (copySource != null) {
+                frame.source = copySource;
+                frame.sourceValues = getSourceValues(copySource, name);
+            }
+        }
+        if (frame.source != null) {
+            frame.sourceChildren = frame.source.getChildren();
+            XPathValue val = frame.sourceValues != null
+                    ? frame.sourceValues.getBefore(frame.source) : null;
+            if (val != null) {
+                state.setCurrentValue(val);
+            }
+            values.setBefore(frame.ordinal, val);
+        } else {
+            applyRules(state, state.getPreDescentRules(), node);
+            values.setBefore(frame.ordinal, state.getCurrentValue());
+        }
+        frame.children = node.getChildren();
+    }
+
+    private void exit(Frame frame, AccumulatorState state, AccumulatorValues values)
+            throws SAXException {
+        if (frame.source != null) {
+            XPathValue val = frame.sourceValues != null
+                    ? frame.sourceValues.getAfter(frame.source) : null;
+            if (val != null) {
+                state.setCurrentValue(val);
+            }
+            values.setAfter(frame.ordinal, val);
+        } else {
+            applyRules(state, state.getPostDescentRules(), frame.node);
+            values.setAfter(frame.ordinal, state.getCurrentValue());
+        }
+        frame.clear();
+    }
+
+    /**
+     * Returns the values of an accumulator over the document a copied node
+     * was copied from.
+     */
+    private AccumulatorValues getSourceValues(XPathNode sourceNode, String name)
+            throws SAXException {
+        XPathNode root = getDocumentRoot(sourceNode);
+        preTraverseDocument(root);
+        return getValues(documents.get(root), name);
+    }
+
+    /**
+     * Fires the rules that match a node, in declaration order.
+     */
+    private void applyRules(AccumulatorState state, AccumulatorRules rules, XPathNode node)
+            throws SAXException {
+        AccumulatorRule[] candidates = rules.getCandidates(node);
+        if (candidates.length == 0 || state.getCurrentValue() instanceof DeferredError) {
+            return;
+        }
+        AccumulatorDefinition def = state.getDefinition();
+        for (AccumulatorRule rule : candidates) {
+            if (matchesPattern(rule.getMatchPattern(), node)) {
+                XPathValue newValue = evaluateRule(state, rule, node);
+                newValue = coerceWithDeferral(newValue, def);
+                state.setCurrentValue(newValue);
+            }
+        }
+    }
+
+    /**
+     * Finds the document root of a node by walking up the parent chain.
+     */
+    private XPathNode getDocumentRoot(XPathNode node) {
+        XPathNode current = node;
+        while (current.getParent() != null) {
+            current = current.getParent();
+        }
+        return current;
+    }
+
+    /**
+     * Returns the values of an accumulator over the document containing
+     * the given node, computing them if needed.
+     */
+    private AccumulatorValues getDocumentValues(String name, XPathNode node) {
+        XPathNode root = getDocumentRoot(node);
+        try {
+            preTraverseDocument(root);
+            return getValues(documents.get(root), name);
+        } catch (SAXException e) {
+            String msg = e.getMessage();
+            if (msg != null && msg.contains("XTDE3400")) {
+                throw new RuntimeException(msg, e);
+            }
+            return null;
+        }
+    }
+
+    private XPathValue evaluateInitialValue(AccumulatorDefinition def) throws SAXException {
+        try {
+            XPathExpression initialExpr = def.getInitialValue();
+            if (initialExpr != null) {
+                XPathValue value = initialExpr.evaluate(transformContext);
+                return coerceToAsType(value, def);
+            }
+        } catch (Exception e) {
+            return new DeferredError(e);
+        }
+        return XPathString.of("");
+    }
+
+    /**
+     * Notifies the manager of a startElement event (streaming mode).
+     * In tree mode, this is a no-op since values are pre-computed.
+     *
+     * @param node the node being entered
+     * @throws SAXException if rule evaluation fails
+     */
+    public void notifyStartElement(XPathNode node) throws SAXException {
+        if (!initialized) {
+            initialize();
+        }
+
+        for (AccumulatorState state : accumulators.values()) {
+            state.push();
+            applyRules(state, state.getPreDescentRules(), node);
+        }
+
+        for (int i = 0; i < internalAccumulators.size(); i++) {
+            internalAccumulators.get(i).notifyStartElement(node, transformContext);
+        }
+    }
+
+    /**
+     * Notifies the manager of an endElement event (streaming mode).
+     *
+     * @param node the node being exited
+     * @throws SAXException if rule evaluation fails
+     */
+    public void notifyEndElement(XPathNode node) throws SAXException {
+        if (!initialized) {
+            return;
+        }
+
+        for (AccumulatorState state : accumulators.values()) {
+            applyRules(state, state.getPostDescentRules(), node);
+            state.pop();
+        }
+
+        for (int i = 0; i < internalAccumulators.size(); i++) {
+            internalAccumulators.get(i).notifyEndElement(node, transformContext);
+        }
+    }
+
+    /**
+     * Notifies the manager of a text (or other leaf) node (streaming mode).
+     * Fires both pre-descent and post-descent rules since leaf nodes have no children.
+     * No push/pop is needed because there is no nested element processing.
+     *
+     * @param node the text/leaf node
+     * @throws SAXException if rule evaluation fails
+     */
+    public void notifyTextNode(XPathNode node) throws SAXException {
+        if (!initialized) {
+            initialize();
+        }
+
+        for (AccumulatorState state : accumulators.values()) {
+            applyRules(state, state.getPreDescentRules(), node);
+            applyRules(state, state.getPostDescentRules(), node);
+        }
+    }
+
+    private boolean matchesPattern(Pattern pattern, XPathNode node) {
+        if (pattern == null) {
+            return false;
+        }
+        return pattern.matches(node, transformContext);
+    }
+
+    /**
+     * Coerces a value to the accumulator's declared as type.
+     * Untyped atomic values are promoted to the target type per XPath rules.
+     */
+    private XPathValue coerceToAsType(XPathValue value, AccumulatorDefinition def)
+            throws SAXException {
+        String asType = def.getAsType();
+        if (asType == null || value == null || value instanceof DeferredError) {
+            return value;
+        }
+        if (asType.startsWith("map(") && value instanceof XPathMap) {
+            checkMapType((XPathMap) value, asType, def);
+            return value;
+        }
+        String baseType = asType.replaceAll("[*+?]", "").trim();
+        boolean isNumericType = "xs:double".equals(baseType) || "xs:float".equals(baseType)
+                || "xs:decimal".equals(baseType) || "xs:integer".equals(baseType)
+                || "xs:long".equals(baseType) || "xs:int".equals(baseType)
+                || "xs:short".equals(baseType) || "xs:byte".equals(baseType)
+                || "xs:nonNegativeInteger".equals(baseType)
+                || "xs:positiveInteger".equals(baseType)
+                || "xs:nonPositiveInteger".equals(baseType)
+                || "xs:negativeInteger".equals(baseType)
+                || "xs:unsignedLong".equals(baseType)
+                || "xs:unsignedInt".equals(baseType)
+                || "xs:unsignedShort".equals(baseType)
+                || "xs:unsignedByte".equals(baseType);
+        boolean isIntegerSubtype = "xs:integer".equals(baseType)
+                || "xs:long".equals(baseType) || "xs:int".equals(baseType)
+                || "xs:short".equals(baseType) || "xs:byte".equals(baseType)
+                || "xs:nonNegativeInteger".equals(baseType)
+                || "xs:positiveInteger".equals(baseType)
+                || "xs:nonPositiveInteger".equals(baseType)
+                || "xs:negativeInteger".equals(baseType)
+                || "xs:unsignedLong".equals(baseType)
+                || "xs:unsignedInt".equals(baseType)
+                || "xs:unsignedShort".equals(baseType)
+                || "xs:unsignedByte".equals(baseType);
+
+        if (value instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) value;
+            List<XPathValue> coerced = new ArrayList<>();
+            boolean changed = false;
+            for (XPathValue item : seq) {
+                XPathValue c = coerceSingleItem(item, isNumericType, isIntegerSubtype, baseType, def);
+                if (c != item) {
+                    changed = true;
+                }
+                coerced.add(c);
+            }
+            if (changed) {
+                return new XPathSequence(coerced);
+            }
+            return value;
+        }
+        return coerceSingleItem(value, isNumericType, isIntegerSubtype, baseType, def);
+    }
+
+    private XPathValue coerceSingleItem(XPathValue item, boolean isNumericType,
+            boolean isIntegerSubtype, String baseType, AccumulatorDefinition def)
+            throws SAXException {
+        if (item instanceof XPathNode || item instanceof XPathNodeSet) {
+            if (isNumericType) {
+                double d = item.asNumber();
+                checkNumericCoercion(d, isIntegerSubtype, baseType, def);
+                if (isIntegerSubtype) {
+                    return XPathNumber.of((long) d);
+                }
+                return XPathNumber.of(d);
+            }
+            if ("xs:string".equals(baseType)) {
+                return XPathString.of(item.asString());
+            }
+            return item;
+        }
+        if (item instanceof XPathUntypedAtomic) {
+            if (isNumericType) {
+                double d = item.asNumber();
+                checkNumericCoercion(d, isIntegerSubtype, baseType, def);
+                if (isIntegerSubtype) {
+                    return XPathNumber.of((long) d);
+                }
+                return XPathNumber.of(d);
+            }
+            if ("xs:string".equals(baseType)) {
+                return XPathString.of(item.asString());
+            }
+            return item;
+        }
+        if (isNumericType) {
+            if (item instanceof XPathString) {
+                throw new SAXException("XPTY0004: Cannot convert string to " + baseType +
+                    " in accumulator " + def.getName());
+            }
+            double d = item.asNumber();
+            checkNumericCoercion(d, isIntegerSubtype, baseType, def);
+            if (isIntegerSubtype) {
+                long lv = (long) d;
+                if (lv != d) {
+                    return XPathNumber.of(lv);
+                }
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Wraps coercion to catch errors and produce DeferredError values,
+     * matching the spec requirement that accumulator errors are deferred.
+     */
+    private XPathValue coerceWithDeferral(XPathValue value, AccumulatorDefinition def) {
+        if (value instanceof DeferredError) {
+            return value;
+        }
+        try {
+            return coerceToAsType(value, def);
+        } catch (Exception e) {
+            return new DeferredError(e);
+        }
+    }
+
+    private void checkNumericCoercion(double d, boolean isIntegerSubtype,
+            String baseType, AccumulatorDefinition def) throws SAXException {
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new SAXException("FOAR0001: Cannot convert " + d + " to " + baseType +
+                " in accumulator " + def.getName());
+        }
+    }
+
+    /**
+     * Validates a map value against a declared map(K, V) type.
+     * Checks that all keys conform to K and all values conform to V.
+     */
+    private void checkMapType(XPathMap map, String mapType, AccumulatorDefinition def)
+            throws SAXException {
+        String inner = mapType.substring(4, mapType.length() - 1);
+        int commaIdx = findMapTypeComma(inner);
+        if (commaIdx < 0) {
+            return;
+        }
+        String keyType = inner.substring(0, commaIdx).trim();
+        String valueType = inner.substring(commaIdx + 1).trim();
+        for (Map.Entry<String, XPathValue> entry : map.entries()) {
+            XPathValue typedKey = map.getTypedKey(entry.getKey());
+            if (typedKey != null && !isInstanceOfAtomicType(typedKey, keyType)) {
+                String actualType = typedKey instanceof XPathUntypedAtomic
+                    ? "xs:untypedAtomic" : typedKey.getType().name().toLowerCase();
+                throw new SAXException("XPTY0004: Map key type mismatch in accumulator '"
+                    + def.getName() + "': required " + keyType
+                    + ", got " + actualType);
+            }
+            XPathValue val = entry.getValue();
+            if (val != null && !isInstanceOfAtomicType(val, valueType)) {
+                throw new SAXException("XPTY0004: Map value type mismatch in accumulator '"
+                    + def.getName() + "': required " + valueType
+                    + ", got " + val.getType().name().toLowerCase());
+            }
+        }
+    }
+
+    /**
+     * Finds the comma separating key and value types in a map(K, V) declaration,
+     * accounting for nested parentheses.
+     */
+    private static int findMapTypeComma(String inner) {
+        int depth = 0;
+        for (int i = 0; i < inner.length(); i++) {
+            char c = inner.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a value is an instance of the given XPath atomic type name.
+     */
+    private static boolean isInstanceOfAtomicType(XPathValue value, String typeName) {
+        if ("xs:anyAtomicType".equals(typeName) || "item()".equals(typeName)
+                || "item()*".equals(typeName)) {
+            return true;
+        }
+        if ("xs:string".equals(typeName)) {
+            return (value instanceof XPathString) && !(value instanceof XPathUntypedAtomic);
+        }
+        if ("xs:untypedAtomic".equals(typeName)) {
+            return value instanceof XPathUntypedAtomic;
+        }
+        if ("xs:boolean".equals(typeName)) {
+            return value instanceof XPathBoolean;
+        }
+        if ("xs:integer".equals(typeName) || "xs:int".equals(typeName)
+                || "xs:long".equals(typeName) || "xs:short".equals(typeName)
+                || "xs:byte".equals(typeName) || "xs:decimal".equals(typeName)
+                || "xs:double".equals(typeName) || "xs:float".equals(typeName)) {
+            return value instanceof XPathNumber;
+        }
+        return true;
+    }
+
+    private XPathValue evaluateRule(AccumulatorState state, AccumulatorRule rule,
+                                     XPathNode node) throws SAXException {
+        String accName = state.getDefinition().getName();
+        try {
+            TransformContext ruleContext = transformContext.withContextNode(node);
+            if (ruleContext instanceof BasicTransformContext) {
+                ((BasicTransformContext) ruleContext).setAccumulatorManager(this);
+            }
+            ruleContext.getVariableScope().bind("value", state.getCurrentValue());
+
+            XPathExpression newValueExpr = rule.getNewValue();
+            if (newValueExpr != null) {
+                // XTDE3400: guard only the select expression evaluation.
+                // Calling accumulator-before/after for the same accumulator
+                // from within its select expression is a dynamic error.
+                if (!evaluatingAccumulators.add(accName)) {
+                    throw new SAXException("XTDE3400: Cyclic dependency " +
+                        "detected evaluating accumulator '" + accName + "'");
+                }
+                try {
+                    return newValueExpr.evaluate(ruleContext);
+                } finally {
+                    evaluatingAccumulators.remove(accName);
+                }
+            }
+
+            XSLTNode body = rule.getBody();
+            if (body != null) {
+                // Sequence constructor body may call accumulator-before/after
+                // for the same accumulator (e.g. xsl:evaluate with-params).
+                // The before-value is already computed, so this is safe.
+                return executeSequenceConstructor(body, ruleContext);
+            }
+
+            return state.getCurrentValue();
+        } catch (SAXException e) {
+            String msg = e.getMessage();
+            if (msg != null && msg.startsWith("XTDE3400")) {
+                throw e;
+            }
+            return new DeferredError(e);
+        } catch (RuntimeException e) {
+            String msg = e.getMessage();
+            if (msg != null && msg.contains("XTDE3400")) {
+                throw e;
+            }
+            return new DeferredError(e);
+        } catch (Exception e) {
+            return new DeferredError(e);
+        }
+    }
+
+    /**
+     * Executes a sequence constructor body and returns its result as an XPathValue.
+     */
+    private XPathValue executeSequenceConstructor(XSLTNode body, TransformContext context)
+            throws SAXException {
+        SequenceBuilderOutputHandler seqBuilder = new SequenceBuilderOutputHandler();
+        body.execute(context, seqBuilder);
+        XPathValue result = seqBuilder.getSequence();
+        if (result instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) result;
+            if (seq.size() == 1) {
+                return seq.iterator().next();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the accumulator-before value for the named accumulator.
+     * Computes the accumulator over the node's document if needed.
+     *
+     * @param name the accumulator name
+     * @param node the context node
+     * @return the before value, or null if accumulator not found
+     */
+    public XPathValue getAccumulatorBefore(String name, XPathNode node) {
+        if (applicableAccumulators != null && !applicableAccumulators.contains(name)) {
+            throw new RuntimeException("XTDE3362: Accumulator '" + name +
+                "' is not applicable (not listed in use-accumulators)");
+        }
+        if (evaluatingAccumulators.contains(name)) {
+            throw new RuntimeException("XTDE3400: Cyclic dependency detected " +
+                "evaluating accumulator '" + name + "'");
+        }
+        // XTDE3362: accessing a non-streamable accumulator in a streamed document
+        if (streamingMode) {
+            AccumulatorState state = accumulators.get(name);
+            if (state != null && !state.getDefinition().isStreamable()) {
+                throw new RuntimeException("XTDE3362: accumulator-before called for " +
+                    "non-streamable accumulator '" + name + "' in a streamed document");
+            }
+        }
+        if (node != null && !streamingMode) {
+            AccumulatorValues values = getDocumentValues(name, node);
+            if (values != null) {
+                XPathValue val = values.getBefore(node);
+                if (val != null) {
+                    rethrowIfDeferred(val);
+                    return val;
+                }
+            }
+        }
+        AccumulatorState state = accumulators.get(name);
+        if (state != null) {
+            XPathValue val = state.getBeforeValue();
+            rethrowIfDeferred(val);
+            return val;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the accumulator-after value for the named accumulator.
+     * Computes the accumulator over the node's document if needed.
+     *
+     * @param name the accumulator name
+     * @param node the context node
+     * @return the after value, or null if accumulator not found
+     */
+    public XPathValue getAccumulatorAfter(String name, XPathNode node) {
+        if (applicableAccumulators != null && !applicableAccumulators.contains(name)) {
+            throw new RuntimeException("XTDE3362: Accumulator '" + name +
+                "' is not applicable (not listed in use-accumulators)");
+        }
+        if (evaluatingAccumulators.contains(name)) {
+            throw new RuntimeException("XTDE3400: Cyclic dependency detected " +
+                "evaluating accumulator '" + name + "'");
+        }
+        // XTDE3362: accessing a non-streamable accumulator in a streamed document
+        if (streamingMode) {
+            AccumulatorState state = accumulators.get(name);
+            if (state != null && !state.getDefinition().isStreamable()) {
+                throw new RuntimeException("XTDE3362: accumulator-after called for " +
+                    "non-streamable accumulator '" + name + "' in a streamed document");
+            }
+        }
+        if (node != null && !streamingMode) {
+            AccumulatorValues values = getDocumentValues(name, node);
+            if (values != null) {
+                XPathValue val = values.getAfter(node);
+                if (val != null) {
+                    rethrowIfDeferred(val);
+                    return val;
+                }
+            }
+        }
+        AccumulatorState state = accumulators.get(name);
+        if (state != null) {
+            XPathValue val = state.getAfterValue();
+            rethrowIfDeferred(val);
+            return val;
+        }
+        return null;
+    }
+
+    /**
+     * Re-throws a deferred error as a RuntimeException if the value is a DeferredError.
+     */
+    private void rethrowIfDeferred(XPathValue val) {
+        if (val instanceof DeferredError) {
+            Exception cause = ((DeferredError) val).cause;
+            String msg = cause.getMessage();
+            if (msg == null) {
+                msg = cause.getClass().getName();
+            }
+            throw new RuntimeException(msg, cause);
+        }
+    }
+
+    /**
+     * Returns the accumulator-before value (no node context, for streaming).
+     *
+     * @param name the accumulator name
+     * @return the before value, or null if accumulator not found
+     */
+    public XPathValue getAccumulatorBefore(String name) {
+        return getAccumulatorBefore(name, null);
+    }
+
+    /**
+     * Returns the accumulator-after value (no node context, for streaming).
+     *
+     * @param name the accumulator name
+     * @return the after value, or null if accumulator not found
+     */
+    public XPathValue getAccumulatorAfter(String name) {
+        return getAccumulatorAfter(name, null);
+    }
+
+    /**
+     * Returns the current value for the named accumulator.
+     *
+     * @param name the accumulator name
+     * @return the current value, or null if accumulator not found
+     */
+    public XPathValue getAccumulatorValue(String name) {
+        AccumulatorState state = accumulators.get(name);
+        if (state != null) {
+            return state.getCurrentValue();
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the named accumulator exists.
+     *
+     * @param name the accumulator name
+     * @return true if the accumulator exists
+     */
+    public boolean hasAccumulator(String name) {
+        return accumulators.containsKey(name);
+    }
+
+    /**
+     * Finds the stored key for an accumulator by its expanded (Clark notation) name.
+     * Used when the caller's prefix differs from the declaring module's prefix.
+     *
+     * @param expandedName the expanded name, e.g. "{http://example.com}foo"
+     * @return the stored key, or null if not found
+     */
+    public String findKeyByExpandedName(String expandedName) {
+        for (Map.Entry<String, AccumulatorState> entry : accumulators.entrySet()) {
+            AccumulatorDefinition def = entry.getValue().getDefinition();
+            if (expandedName.equals(def.getExpandedName())) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the document containing the given node has been
+     * registered for accumulator values.
+     *
+     * @param node a node in the document
+     * @return true if pre-traversed
+     */
+    public boolean isPreTraversed(XPathNode node) {
+        if (node == null) {
+            return false;
+        }
+        XPathNode root = getDocumentRoot(node);
+        return documents.containsKey(root);
+    }
+
+    /**
+     * Resets all accumulator states.
+     * Called after document processing completes.
+     *
+     * @throws SAXException if reset fails
+     */
+    public void reset() throws SAXException {
+        for (Map.Entry<String, AccumulatorState> entry : accumulators.entrySet()) {
+            AccumulatorDefinition def = entry.getValue().getDefinition();
+            XPathValue initialValue = evaluateInitialValue(def);
+            entry.getValue().reset(initialValue);
+        }
+    }
+
+    /**
+     * Returns true if the manager has been initialized.
+     *
+     * @return true if initialized
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Sets streaming mode. When true, accumulator-before/after return the
+     * current flowing value without attempting tree traversal. This is
+     * essential for streaming transforms where the document tree is not
+     * fully materialized.
+     *
+     * @param streaming true to enable streaming mode
+     */
+    public void setStreamingMode(boolean streaming) {
+        this.streamingMode = streaming;
+    }
+
+    /**
+     * Returns whether this manager is in streaming mode.
+     *
+     * @return true if streaming mode is active
+     */
+    public boolean isStreamingMode() {
+        return streamingMode;
+    }
+
+    /**
+     * Sets the set of applicable accumulator names for the current context.
+     * When set, only accumulators in this set may be accessed; others
+     * raise XTDE3362. Pass null to remove the restriction.
+     *
+     * @param names the applicable accumulator names, or null
+     */
+    public void setApplicableAccumulators(Set<String> names) {
+        this.applicableAccumulators = names;
+    }
+
+    /**
+     * Returns the number of accumulators being managed.
+     *
+     * @return the accumulator count
+     */
+    public int getAccumulatorCount() {
+        return accumulators.size();
+    }
+
+    @Override
+    public String toString() {
+        return "AccumulatorManager[accumulators=" + accumulators.size() +
+               ", initialized=" + initialized +
+               ", documents=" + documents.size() + "]";
+    }
+
+    /**
+     * The accumulator values computed so far for one document.
+     */
+    private static final class DocumentValues {
+        final XPathNode root;
+        final Map<String, AccumulatorValues> values;
+        AccumulatorValues.Ordinals ordinals;
+
+        DocumentValues(XPathNode root) {
+            this.root = root;
+            this.values = new HashMap<>();
+        }
+    }
+
+    /**
+     * A node being visited by {@link #traverse}, and for a copied node the
+     * original it takes its values from.
+     */
+    private static final class Frame {
+        XPathNode node;
+        int ordinal;
+        Iterator<XPathNode> children;
+        XPathNode source;
+        Iterator<XPathNode> sourceChildren;
+        AccumulatorValues sourceValues;
+
+        void set(XPathNode node, XPathNode source, AccumulatorValues sourceValues,
+                int ordinal) {
+            this.node = node;
+            this.source = source;
+            this.sourceValues = sourceValues;
+            this.ordinal = ordinal;
+        }
+
+        void clear() {
+            node = null;
+            children = null;
+            source = null;
+            sourceChildren = null;
+            sourceValues = null;
+        }
+    }
+
+}
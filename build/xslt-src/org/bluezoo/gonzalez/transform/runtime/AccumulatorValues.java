@@ -0,0 +1,291 @@
+/*
+ * AccumulatorValues.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The before and after values of one accumulator over one document.
+ *
+ * <p>Nodes are numbered by their position in a pre-order walk of the
+ * document's children - see {@link Ordinals}. While the accumulator is
+ * computed its values are held in arrays indexed by that number. Once
+ * {@link #seal sealed}, only the nodes where the value changes are kept:
+ * a before value is stored where it differs from the preceding node's,
+ * and found again by binary search, and an after value only where it
+ * differs from the node's own before value. An accumulator whose rules
+ * match a few elements therefore costs a few entries rather than two map
+ * entries per node.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+final class AccumulatorValues {
+
+    private static final int[] NO_ORDINALS = new int[0];
+    private static final XPathValue[] NO_VALUES = new XPathValue[0];
+
+    private final Ordinals ordinals;
+
+    // While computing: values by ordinal
+    private XPathValue[] before;
+    private XPathValue[] after;
+
+    // Once sealed: change points
+    private int[] beforeAt;
+    private XPathValue[] beforeValues;
+    private int[] afterAt;
+    private XPathValue[] afterValues;
+
+    /**
+     * Creates empty values for a document.
+     *
+     * @param ordinals the numbering of the document's nodes
+     */
+    AccumulatorValues(Ordinals ordinals) {
+        this.ordinals = ordinals;
+        this.before = new XPathValue[ordinals.size()];
+        this.after = new XPathValue[ordinals.size()];
+    }
+
+    /**
+     * Returns the numbering of the document's nodes.
+     *
+     * @return the ordinals
+     */
+    Ordinals getOrdinals() {
+        return ordinals;
+    }
+
+    void setBefore(int ordinal, XPathValue value) {
+        before[ordinal] = value;
+    }
+
+    void setAfter(int ordinal, XPathValue value) {
+        after[ordinal] = value;
+    }
+
+    /**
+     * Returns the value before a node's descendants are visited.
+     *
+     * @param node a node of the document
+     * @return the value, or null if the node has none (yet)
+     */
+    XPathValue getBefore(XPathNode node) {
+        int ordinal = ordinals.getOrdinal(node);
+        return ordinal < 0 ? null : getBefore(ordinal);
+    }
+
+    /**
+     * Returns the value after a node's descendants are visited.
+     *
+     * @param node a node of the document
+     * @return the value, or null if the node has none (yet)
+     */
+    XPathValue getAfter(XPathNode node) {
+        int ordinal = ordinals.getOrdinal(node);
+        if (ordinal < 0) {
+            return null;
+        }
+        if (before != null) {
+            return after[ordinal];
+        }
+        int i = Arrays.binarySearch(afterAt, ordinal);
+        return i >= 0 ? afterValues[i] : getBefore(ordinal);
+    }
+
+    private XPathValue getBefore(int ordinal) {
+        if (before != null) {
+            return before[ordinal];
+        }
+        int i = Arrays.binarySearch(beforeAt, ordinal);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return i < 0 ? null : beforeValues[i];
+    }
+
+    /**
+     * Replaces the per-node arrays with the points where the value
+     * changes. Called once the traversal is over.
+     */
+    void seal() {
+        if (before == null) {
+            return;
+        }
+        int size = before.length;
+        int beforeCount = 0;
+        int afterCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || before[i] != before[i - 1]) {
+                beforeCount++;
+            }
+            if (after[i] != before[i]) {
+                afterCount++;
+            }
+        }
+        beforeAt = beforeCount == 0 ? NO_ORDINALS : new int[beforeCount];
+        beforeValues = beforeCount == 0 ? NO_VALUES : new XPathValue[beforeCount];
+        afterAt = afterCount == 0 ? NO_ORDINALS : new int[afterCount];
+        afterValues = afterCount == 0 ? NO_VALUES : new XPathValue[afterCount];
+        int b = 0;
+        int a = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || before[i] != before[i - 1]) {
+                beforeAt[b] = i;
+                beforeValues[b++] = before[i];
+            }
+            if (after[i] != before[i]) {
+                afterAt[a] = i;
+                afterValues[a++] = after[i];
+            }
+        }
+        before = null;
+        after = null;
+    }
+
+    /**
+     * The pre-order numbering of the nodes of one document.
+     *
+     * <p>Tree nodes carry a document order that increases in pre-order, so
+     * the numbering is normally a sorted array of document orders searched
+     * by binary search. Trees whose document order does not increase that
+     * way, such as copies built on demand, fall back to an identity map.
+     * Attributes and namespace nodes are not numbered.
+     */
+    static final class Ordinals {
+
+        private final int size;
+        private final long[] orders;
+        private final Map<XPathNode, Integer> byNode;
+
+        private Ordinals(int size, long[] orders, Map<XPathNode, Integer> byNode) {
+            this.size = size;
+            this.orders = orders;
+            this.byNode = byNode;
+        }
+
+        /**
+         * Numbers the nodes of a document.
+         *
+         * @param root the document root
+         * @return the numbering
+         */
+        static Ordinals of(XPathNode root) {
+            long[] orders = new long[64];
+            int size = 0;
+            boolean increasing = true;
+            List<Iterator<XPathNode>> stack = new ArrayList<>();
+            XPathNode node = root;
+            while (node != null) {
+                long order = node.getDocumentOrder();
+                if (size > 0 && order <= orders[size - 1]) {
+                    increasing = false;
+                    break;
+                }
+                if (size == orders.length) {
+                    orders = Arrays.copyOf(orders, size * 2);
+                }
+                orders[size++] = order;
+                stack.add(node.getChildren());
+                node = next(stack);
+            }
+            if (increasing) {
+                return new Ordinals(size, orders, null);
+            }
+            Map<XPathNode, Integer> byNode = new IdentityHashMap<>();
+            stack.clear();
+            node = root;
+            while (node != null) {
+                byNode.put(node, Integer.valueOf(byNode.size()));
+                stack.add(node.getChildren());
+                node = next(stack);
+            }
+            return new Ordinals(byNode.size(), null, byNode);
+        }
+
+        /**
+         * Advances a pre-order walk: returns the next child of the deepest
+         * open node, closing nodes whose children are exhausted.
+         */
+        private static XPathNode next(List<Iterator<XPathNode>> stack) {
+            while (!stack.isEmpty()) {
+                Iterator<XPathNode> children = stack.get(stack.size() - 1);
+                if (children.hasNext()) {
+                    return children.next();
+                }
+                stack.remove(stack.size() - 1);
+            }
+            return null;
+        }
+
+        /**
+         * Returns the number of nodes.
+         *
+         * @return the node count
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the number of a node.
+         *
+         * @param node the node
+         * @return its pre-order number, or -1 if it is not numbered
+         */
+        int getOrdinal(XPathNode node) {
+            if (orders != null) {
+                int i = Arrays.binarySearch(orders, 0, size, node.getDocumentOrder());
+                return i >= 0 ? i : -1;
+            }
+            Integer ordinal = byNode.get(node);
+            return ordinal == null ? -1 : ordinal.intValue();
+        }
+
+        /**
+         * Returns the number of nodes in a subtree, the node included.
+         *
+         * @param node the subtree root
+         * @return the node count
+         */
+        static int countSubtree(XPathNode node) {
+            int count = 0;
+            List<Iterator<XPathNode>> stack = new ArrayList<>();
+            while (node != null) {
+                count++;
+                stack.add(node.getChildren());
+                node = next(stack);
+            }
+            return count;
+        }
+
+    }
+
+}
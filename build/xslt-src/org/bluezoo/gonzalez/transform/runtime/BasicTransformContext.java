@@ -0,0 +1,1515 @@
+/*
+ * BasicTransformContext.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+import javax.xml.transform.ErrorListener;
+
+import org.xml.sax.SAXException;
+
+import org.bluezoo.gonzalez.schema.xsd.XSDSimpleType;
+import org.bluezoo.gonzalez.transform.FunctionResultCache;
+import org.bluezoo.gonzalez.transform.compiler.AccumulatorDefinition;
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.compiler.ModeDeclaration;
+import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+import org.bluezoo.gonzalez.transform.xpath.XPathFunctionLibrary;
+import org.bluezoo.gonzalez.transform.xpath.XPathVariableException;
+import org.bluezoo.gonzalez.transform.xpath.expr.LocationPath;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.bluezoo.gonzalez.transform.xpath.function.XSLTFunctionLibrary;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNodeSet;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+/**
+ * Basic implementation of TransformContext.
+ *
+ * <p>This context provides the runtime state for XSLT transformation,
+ * including the current node, position, variables, and stylesheet access.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class BasicTransformContext implements TransformContext {
+
+    private final CompiledStylesheet stylesheet;
+    private CompiledStylesheet principalStylesheet;
+    private final XPathNode contextNode;
+    private final XPathNode xsltCurrentNode;  // The XSLT current() node
+    private final XPathValue contextItem;     // For atomic context items (XPath 2.0+)
+    private final int position;
+    private final int size;
+    private final String currentMode;
+    private final VariableScope variableScope;
+    private boolean throwOnUndefinedVariable = false;  // For circular reference detection during global init
+    private final Set<String> keysBeingEvaluated;  // For key circular reference detection
+    private final Map<String, Map<String, List<XPathNode>>> keyIndexCache;  // Cached key indexes
+    private final Set<String> variablesBeingEvaluated;  // For variable circular reference detection
+    private final XPathFunctionLibrary functionLibrary;
+    private final TemplateMatcher templateMatcher;
+    private final OutputHandler outputHandler;
+    private AccumulatorManager accumulatorManager;
+    private final ErrorListener errorListener;
+    private final TemplateRule currentTemplateRule;  // For xsl:next-match
+    private final String staticBaseURI;  // Override for static-base-uri() (from xml:base)
+    private final RuntimeSchemaValidator runtimeValidator;  // For output validation
+    private final Matcher regexMatcher;  // For regex-group() in xsl:analyze-string
+    private final Map<String, XPathValue> tunnelParameters;  // XSLT 2.0 tunnel params
+    private org.bluezoo.gonzalez.transform.xpath.type.XPathDateTime cachedCurrentDateTime;  // Cached for current-dateTime()
+    private final OutputHandler principalOutput;  // Principal output for xsl:result-document
+    private final java.util.Set<String> usedResultUris;  // Track URIs for XTDE1490, shared by parallel partitions
+    private final org.bluezoo.gonzalez.transform.ErrorHandlingMode errorHandlingMode;  // Error handling mode
+    private boolean contextItemUndefined;  // XPDY0002: true inside xsl:function bodies
+    private boolean dynamicEvaluation;    // true inside xsl:evaluate (restricts function access)
+    private boolean insideMergeAction;    // true inside xsl:merge-action body (for XTDE3480)
+    private XPathValue xsltCurrentItem;   // The XSLT current() item for atomic for-each
+    private Map<String, List<XPathNode>> collections;  // Registered fn:collection() mappings
+    private Map<String, List<String>> collectionUris;  // Registered fn:uri-collection() mappings
+    private Map<String, OutputHandler> resultDocumentCollector;  // fn:transform() secondary capture
+    private Map<CompiledStylesheet, Map<String, XPathValue>> packageGlobalVariables;  // Pre-evaluated package globals
+    private java.util.Set<String> availableResourceUris;  // URIs declared available by test environment
+    /** Shared across for-each context clones: memoized location-path results. */
+    private Map<LocationPath, PathCacheEntry> pathResultCache;
+    /** Shared across all contexts of a transformation: xsl:function memo cache. */
+    private FunctionResultCache functionResultCache;
+    /** Shared across for-each context clones: xsl:number and preceding counts. */
+    private NodeCounters nodeCounters;
+    private GroundedBuffering groundedBuffering;
+    private Profiler profiler;
+
+    /**
+     * Creates a new transform context.
+     *
+     * @param stylesheet the compiled stylesheet
+     * @param contextNode the initial context node
+     * @param matcher the template matcher
+     * @param outputHandler the output handler
+     */
+    public BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
+            TemplateMatcher matcher, OutputHandler outputHandler) {
+        this(stylesheet, contextNode, contextNode, null, 1, 1, null, new VariableScope(), 
+             XSLTFunctionLibrary.INSTANCE, matcher, outputHandler, null, null, null, null,
+             stylesheet != null ? new RuntimeSchemaValidator(stylesheet) : null, outputHandler);
+        this.principalStylesheet = stylesheet;
+    }
+
+    /**
+     * Creates a new transform context with an error listener.
+     *
+     * @param stylesheet the compiled stylesheet
+     * @param contextNode the initial context node
+     * @param matcher the template matcher
+     * @param outputHandler the output handler
+     * @param errorListener the error listener for transformation errors
+     */
+    public BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
+            TemplateMatcher matcher, OutputHandler outputHandler,
+            ErrorListener errorListener) {
+        this(stylesheet, contextNode, contextNode, null, 1, 1, null, new VariableScope(), 
+             XSLTFunctionLibrary.INSTANCE, matcher, outputHandler, null, errorListener, null, null,
+             stylesheet != null ? new RuntimeSchemaValidator(stylesheet) : null, outputHandler);
+        this.principalStylesheet = stylesheet;
+    }
+
+    private BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
+            XPathNode xsltCurrentNode, XPathValue contextItem, int position, int size, String currentMode, 
+            VariableScope variableScope, XPathFunctionLibrary functionLibrary, 
+            TemplateMatcher matcher, OutputHandler outputHandler, 
+            AccumulatorManager accumulatorManager, ErrorListener errorListener,
+            TemplateRule currentTemplateRule, String staticBaseURI,
+            RuntimeSchemaValidator runtimeValidator, OutputHandler principalOutput) {
+        this(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size, currentMode,
+             variableScope, functionLibrary, matcher, outputHandler, accumulatorManager,
+             errorListener, currentTemplateRule, staticBaseURI, runtimeValidator, null, null, principalOutput);
+    }
+
+    private BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
+            XPathNode xsltCurrentNode, XPathValue contextItem, int position, int size, String currentMode, 
+            VariableScope variableScope, XPathFunctionLibrary functionLibrary, 
+            TemplateMatcher matcher, OutputHandler outputHandler, 
+            AccumulatorManager accumulatorManager, ErrorListener errorListener,
+            TemplateRule currentTemplateRule, String staticBaseURI,
+            RuntimeSchemaValidator runtimeValidator, Matcher regexMatcher, OutputHandler principalOutput) {
+        this(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size, currentMode,
+             variableScope, functionLibrary, matcher, outputHandler, accumulatorManager,
+             errorListener, currentTemplateRule, staticBaseURI, runtimeValidator, regexMatcher, null, principalOutput);
+    }
+
+    private BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
+            XPathNode xsltCurrentNode, XPathValue contextItem, int position, int size, String currentMode, 
+            VariableScope variableScope, XPathFunctionLibrary functionLibrary, 
+            TemplateMatcher matcher, OutputHandler outputHandler, 
+            AccumulatorManager accumulatorManager, ErrorListener errorListener,
+            TemplateRule currentTemplateRule, String staticBaseURI,
+            RuntimeSchemaValidator runtimeValidator, Matcher regexMatcher,
+            Map<String, XPathValue> tunnelParameters, OutputHandler principalOutput) {
+        this(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size, currentMode,
+             variableScope, functionLibrary, matcher, outputHandler, accumulatorManager,
+             errorListener, currentTemplateRule, staticBaseURI, runtimeValidator, regexMatcher,
+             tunnelParameters, new HashSet<String>(),
+             new ConcurrentHashMap<String, Map<String, List<XPathNode>>>(), principalOutput);
+    }
+
+    private BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
+            XPathNode xsltCurrentNode, XPathValue contextItem, int position, int size, String currentMode, 
+            VariableScope variableScope, XPathFunctionLibrary functionLibrary, 
+            TemplateMatcher matcher, OutputHandler outputHandler, 
+            AccumulatorManager accumulatorManager, ErrorListener errorListener,
+            TemplateRule currentTemplateRule, String staticBaseURI,
+            RuntimeSchemaValidator runtimeValidator, Matcher regexMatcher,
+            Map<String, XPathValue> tunnelParameters, Set<String> keysBeingEvaluated,
+            Map<String, Map<String, List<XPathNode>>> keyIndexCache, OutputHandler principalOutput) {
+        this(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size, currentMode,
+             variableScope, functionLibrary, matcher, outputHandler, accumulatorManager,
+             errorListener, currentTemplateRule, staticBaseURI, runtimeValidator, regexMatcher,
+             tunnelParameters, keysBeingEvaluated, keyIndexCache, new HashSet<>(),
+             Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()), principalOutput);
+    }
+
+    private BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
+            XPathNode xsltCurrentNode, XPathValue contextItem, int position, int size, String currentMode, 
+            VariableScope variableScope, XPathFunctionLibrary functionLibrary, 
+            TemplateMatcher matcher, OutputHandler outputHandler, 
+            AccumulatorManager accumulatorManager, ErrorListener errorListener,
+            TemplateRule currentTemplateRule, String staticBaseURI,
+            RuntimeSchemaValidator runtimeValidator, Matcher regexMatcher,
+            Map<String, XPathValue> tunnelParameters, Set<String> keysBeingEvaluated,
+            Map<String, Map<String, List<XPathNode>>> keyIndexCache,
+            Set<String> variablesBeingEvaluated, Set<String> usedResultUris, OutputHandler principalOutput) {
+        this.stylesheet = stylesheet;
+        this.contextNode = contextNode;
+        this.xsltCurrentNode = xsltCurrentNode;
+        this.contextItem = contextItem;
+        this.position = position;
+        this.size = size;
+        this.currentMode = currentMode;
+        this.variableScope = variableScope;
+        this.functionLibrary = functionLibrary;
+        this.templateMatcher = matcher;
+        this.outputHandler = outputHandler;
+        this.accumulatorManager = accumulatorManager;
+        this.errorListener = errorListener;
+        this.currentTemplateRule = currentTemplateRule;
+        this.staticBaseURI = staticBaseURI;
+        this.runtimeValidator = runtimeValidator;
+        this.regexMatcher = regexMatcher;
+        this.tunnelParameters = tunnelParameters != null ? tunnelParameters : Collections.emptyMap();
+        this.keysBeingEvaluated = keysBeingEvaluated;
+        this.keyIndexCache = keyIndexCache;
+        this.variablesBeingEvaluated = variablesBeingEvaluated;
+        this.usedResultUris = usedResultUris;
+        this.principalOutput = principalOutput;
+        // Default to STRICT mode for spec compliance
+        // TODO: Make this configurable via API or system property
+        this.errorHandlingMode = org.bluezoo.gonzalez.transform.ErrorHandlingMode.STRICT;
+    }
+
+    @Override
+    public CompiledStylesheet getStylesheet() {
+        return stylesheet;
+    }
+
+    @Override
+    public boolean isIdDerivedType(String typeNamespaceURI, String typeLocalName) {
+        // First check built-in types
+        org.bluezoo.gonzalez.schema.xsd.XSDSimpleType builtIn = 
+            org.bluezoo.gonzalez.schema.xsd.XSDSimpleType.getBuiltInType(typeLocalName);
+        if (builtIn != null) {
+            return builtIn.isDerivedFrom("http://www.w3.org/2001/XMLSchema", "ID");
+        }
+        
+        // Check imported schemas for user-defined types
+        if (stylesheet != null) {
+            org.bluezoo.gonzalez.schema.xsd.XSDSimpleType imported = 
+                stylesheet.getImportedSimpleType(typeNamespaceURI, typeLocalName);
+            if (imported != null) {
+                return imported.isDerivedFrom("http://www.w3.org/2001/XMLSchema", "ID");
+            }
+        }
+        
+        return false;
+    }
+
+    /**
+     * Returns the static base URI for the current instruction.
+     * Uses instruction-level override if set, otherwise uses stylesheet base URI.
+     *
+     * @return the static base URI, or null if not available
+     */
+    @Override
+    public String getStaticBaseURI() {
+        // Use instruction-level override if set, otherwise use stylesheet base URI
+        if (staticBaseURI != null) {
+            return staticBaseURI;
+        }
+        return stylesheet != null ? stylesheet.getBaseURI() : null;
+    }
+
+    @Override
+    public String getCurrentMode() {
+        return currentMode;
+    }
+
+    @Override
+    public String getCurrentOutputUri() {
+        // Not yet tracked; return null (absent) by default
+        return null;
+    }
+
+    @Override
+    public VariableScope getVariableScope() {
+        return variableScope;
+    }
+
+    /**
+     * Creates a new context with a pushed variable scope.
+     *
+     * @return a new context with a fresh variable scope level
+     */
+    @Override
+    public TransformContext pushVariableScope() {
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope.push(), functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    /**
+     * Creates a new context with only global (top-level) variables visible.
+     * Used for attribute sets which should only see top-level variables.
+     *
+     * @return a new context with global-only variable scope
+     */
+    @Override
+    public TransformContext withGlobalVariablesOnly() {
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope.globalOnly(), functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    /**
+     * Creates a new context with the specified template mode.
+     *
+     * @param mode the template mode (null for default mode)
+     * @return a new context with the specified mode
+     */
+    @Override
+    public TransformContext withMode(String mode) {
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            mode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    /**
+     * Creates a new context with the specified context node.
+     * Note: When changing context node for XPath evaluation (e.g., in predicates),
+     * the XSLT current node stays the same. Use withXsltCurrentNode to update it.
+     *
+     * @param node the new context node
+     * @return a new context with the specified context node
+     */
+    @Override
+    public TransformContext withContextNode(XPathNode node) {
+        return inherit(new BasicTransformContext(stylesheet, node, xsltCurrentNode, null, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+    
+    /**
+     * Creates a new context with a new XSLT current node.
+     * This should be used when entering a new template or for-each iteration.
+     *
+     * @param node the new XSLT current node
+     * @return a new context with the specified current node
+     */
+    public TransformContext withXsltCurrentNode(XPathNode node) {
+        BasicTransformContext result = inherit(new BasicTransformContext(stylesheet, node, node, null, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+        result.xsltCurrentItem = null;
+        return result;
+    }
+
+    /**
+     * Single-allocation for-each iteration frame: optional pushed variable scope,
+     * cleared current template rule, new XSLT current node, and position/size.
+     *
+     * @param node the iteration context node
+     * @param position 1-based position
+     * @param size sequence size
+     * @param pushVariableScope if false, reuse the parent variable scope (safe when
+     *        the for-each body does not declare local variables)
+     * @return a new context for this iteration
+     */
+    public TransformContext forEachIteration(XPathNode node, int position, int size,
+                                             boolean pushVariableScope) {
+        VariableScope scope = pushVariableScope ? variableScope.push() : variableScope;
+        BasicTransformContext result = inherit(new BasicTransformContext(stylesheet, node, node, null,
+            position, size, currentMode, scope, functionLibrary, templateMatcher,
+            outputHandler, accumulatorManager, errorListener, null, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache,
+            variablesBeingEvaluated, usedResultUris, principalOutput));
+        result.xsltCurrentItem = null;
+        return result;
+    }
+
+    /**
+     * Single-allocation for-each iteration frame with a pushed variable scope.
+     *
+     * @param node the iteration context node
+     * @param position 1-based position
+     * @param size sequence size
+     * @return a new context for this iteration
+     */
+    public TransformContext forEachIteration(XPathNode node, int position, int size) {
+        return forEachIteration(node, position, size, true);
+    }
+
+    /**
+     * Creates a context for a partition of a parallel iteration that runs
+     * on another thread. The partition pushes its own variable scope and has
+     * its own path result cache, circular-reference tracking and accumulator
+     * state; key indexes, the function result cache and the result document
+     * URIs already claimed remain shared, since all are safe for concurrent
+     * use.
+     *
+     * @return a new context for the partition
+     */
+    public BasicTransformContext forParallelPartition() {
+        BasicTransformContext result = inherit(new BasicTransformContext(stylesheet, contextNode,
+            xsltCurrentNode, contextItem, position, size, currentMode, variableScope.push(),
+            functionLibrary, templateMatcher, outputHandler, accumulatorManager, errorListener,
+            currentTemplateRule, staticBaseURI, runtimeValidator, regexMatcher, tunnelParameters,
+            new HashSet<String>(keysBeingEvaluated), keyIndexCache,
+            new HashSet<String>(variablesBeingEvaluated), usedResultUris, principalOutput));
+        result.pathResultCache = new IdentityHashMap<LocationPath, PathCacheEntry>();
+        result.nodeCounters = new NodeCounters();
+        if (accumulatorManager != null) {
+            result.accumulatorManager = new AccumulatorManager(accumulatorManager, result);
+        }
+        return result;
+    }
+
+    /**
+     * Single-allocation apply-templates execution context: focus on {@code node}
+     * plus the matched template rule (and optional variable-scope push).
+     *
+     * <p>Prefer matching with the parent context via
+     * {@link TemplateMatcher#findMatch}, then calling this once — pattern
+     * predicates build their own node-local context.
+     *
+     * @param node the node being processed
+     * @param position 1-based position among selected nodes
+     * @param size size of the selected node list
+     * @param mode mode to set, or null to keep the current mode
+     * @param rule the matched template rule
+     * @param pushVariableScope true when the template has parameters or local variables
+     * @return execution context for the template body
+     */
+    public TransformContext applyTemplates(XPathNode node, int position, int size,
+                                           String mode, TemplateRule rule,
+                                           boolean pushVariableScope) {
+        String useMode = mode != null ? mode : currentMode;
+        VariableScope scope = pushVariableScope ? variableScope.push() : variableScope;
+        CompiledStylesheet effectiveStylesheet = stylesheet;
+        if (rule != null && rule.getDefiningStylesheet() != null) {
+            effectiveStylesheet = rule.getDefiningStylesheet();
+        } else if (rule != null && principalStylesheet != null) {
+            effectiveStylesheet = principalStylesheet;
+        }
+        BasicTransformContext result = inherit(new BasicTransformContext(
+            effectiveStylesheet, node, node, XPathNodeSet.of(node), position, size,
+            useMode, scope, functionLibrary, templateMatcher,
+            outputHandler, accumulatorManager, errorListener, rule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache,
+            variablesBeingEvaluated, usedResultUris, principalOutput));
+        result.insideMergeAction = false;
+        result.xsltCurrentItem = null;
+        return result;
+    }
+    
+    /**
+     * Creates a new context where the given node is both the context node and the context item.
+     * Used by xsl:apply-templates so that xsl:context-item type checks see the matched node.
+     *
+     * @param node the node to set as both context node and context item
+     * @return new context with the node as context node and context item
+     */
+    public TransformContext withXsltCurrentNodeAndContextItem(XPathNode node) {
+        return inherit(new BasicTransformContext(stylesheet, node, node, XPathNodeSet.of(node), position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+    
+    /**
+     * Creates a new context with separate context node and XSLT current node.
+     * This is used when evaluating predicates in patterns where the context node
+     * changes during path traversal but current() should still refer to the 
+     * original target node being matched.
+     * 
+     * @param contextNode the node to use as XPath context (.)
+     * @param xsltCurrent the node to return from current()
+     * @return a new context with the specified nodes
+     */
+    public BasicTransformContext withContextAndCurrentNodes(XPathNode contextNode, XPathNode xsltCurrent) {
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrent, null, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+    
+    /**
+     * Creates a new context with a context item (for atomic values).
+     * This is used in for-each loops over atomic sequences.
+     *
+     * @param item the context item (atomic value or node)
+     * @return a new context with the specified context item
+     */
+    public BasicTransformContext withContextItem(XPathValue item) {
+        // If item is a node or a single-node node-set, set it as context node
+        XPathNode node;
+        if (item instanceof XPathNode) {
+            node = (XPathNode) item;
+        } else if (item.isNodeSet()) {
+            XPathNodeSet ns = item.asNodeSet();
+            node = ns.isEmpty() ? contextNode : ns.iterator().next();
+        } else {
+            node = contextNode;
+        }
+        return inherit(new BasicTransformContext(stylesheet, node, xsltCurrentNode, item, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+    
+    /**
+     * Returns the context item (atomic value or node).
+     * Returns null if there is no context item (only context node).
+     *
+     * @return the context item, or null if not set
+     */
+    public XPathValue getContextItem() {
+        return contextItem;
+    }
+
+    /**
+     * Sets the XSLT current item for atomic for-each iterations.
+     * Unlike contextItem, this survives predicate evaluation (withContextNode
+     * does not clear it), paralleling xsltCurrentNode for node-based iterations.
+     *
+     * @param item the current atomic item
+     */
+    public void setXsltCurrentItem(XPathValue item) {
+        this.xsltCurrentItem = item;
+    }
+
+    /**
+     * Returns the XSLT current item set during atomic for-each iterations.
+     *
+     * @return the current item, or null if not in an atomic for-each
+     */
+    public XPathValue getXsltCurrentItem() {
+        return xsltCurrentItem;
+    }
+
+    @Override
+    public boolean isContextItemUndefined() {
+        return contextItemUndefined;
+    }
+
+    /**
+     * Marks this context as having an explicitly undefined context item.
+     * Used for xsl:function bodies where accessing '.' or '//' is XPDY0002.
+     */
+    public void setContextItemUndefined(boolean undefined) {
+        this.contextItemUndefined = undefined;
+    }
+
+    /**
+     * Returns true if running inside xsl:evaluate (dynamic evaluation).
+     * Private stylesheet functions must not be called in this mode.
+     */
+    public boolean isDynamicEvaluation() {
+        return dynamicEvaluation;
+    }
+
+    /**
+     * Sets the dynamic evaluation flag for xsl:evaluate context.
+     */
+    public void setDynamicEvaluation(boolean dynamicEval) {
+        this.dynamicEvaluation = dynamicEval;
+    }
+
+    /**
+     * Returns true if currently inside an xsl:merge-action body.
+     * Used to validate current-merge-group()/current-merge-key() calls.
+     */
+    public boolean isInsideMergeAction() {
+        return insideMergeAction;
+    }
+
+    /**
+     * Sets the merge-action flag.
+     */
+    public void setInsideMergeAction(boolean inside) {
+        this.insideMergeAction = inside;
+    }
+
+    /**
+     * Creates a new context with the specified position and size.
+     *
+     * @param position the context position (1-based)
+     * @param size the context size
+     * @return a new context with the specified position and size
+     */
+    @Override
+    public TransformContext withPositionAndSize(int position, int size) {
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    /**
+     * Creates a new context with a variable binding.
+     *
+     * @param namespaceURI the variable namespace URI (may be null)
+     * @param localName the variable local name
+     * @param value the variable value
+     * @return a new context with the variable bound
+     */
+    @Override
+    public TransformContext withVariable(String namespaceURI, String localName, XPathValue value) {
+        VariableScope newScope = variableScope.push();
+        newScope.bind(localName, value);
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, newScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    @Override
+    public TemplateRule getCurrentTemplateRule() {
+        return currentTemplateRule;
+    }
+
+    /**
+     * Creates a new context with the specified current template rule.
+     * If the rule was imported from a package, automatically switches
+     * to the defining stylesheet for cross-package component resolution.
+     *
+     * @param rule the template rule being executed
+     * @return a new context with the specified template rule
+     */
+    @Override
+    public TransformContext withCurrentTemplateRule(TemplateRule rule) {
+        CompiledStylesheet effectiveStylesheet = stylesheet;
+        if (rule != null && rule.getDefiningStylesheet() != null) {
+            effectiveStylesheet = rule.getDefiningStylesheet();
+        } else if (rule != null && principalStylesheet != null) {
+            effectiveStylesheet = principalStylesheet;
+        }
+        BasicTransformContext result = (BasicTransformContext) inherit(new BasicTransformContext(effectiveStylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, rule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+        // XTDE3480: entering a new template clears merge-action context
+        result.insideMergeAction = false;
+        return result;
+    }
+
+    /**
+     * Creates a new context with the specified stylesheet for component resolution.
+     * Used for cross-package execution where a function or template needs to
+     * resolve calls against its defining package's stylesheet.
+     *
+     * @param newStylesheet the stylesheet to use
+     * @return a new context with the specified stylesheet
+     */
+    @Override
+    public TransformContext withStylesheet(CompiledStylesheet newStylesheet) {
+        return inherit(new BasicTransformContext(newStylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher,
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    /**
+     * Creates a new context with the specified static base URI.
+     *
+     * @param baseURI the static base URI for the instruction
+     * @return a new context with the specified base URI
+     */
+    @Override
+    public TransformContext withStaticBaseURI(String baseURI) {
+        BasicTransformContext ctx = inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, baseURI,
+            runtimeValidator, regexMatcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+        ctx.throwOnUndefinedVariable = this.throwOnUndefinedVariable;
+        return ctx;
+    }
+
+    @Override
+    public RuntimeSchemaValidator getRuntimeValidator() {
+        return runtimeValidator;
+    }
+
+    @Override
+    public TemplateMatcher getTemplateMatcher() {
+        return templateMatcher;
+    }
+
+    @Override
+    public ErrorListener getErrorListener() {
+        return errorListener;
+    }
+
+    @Override
+    public TransformContext withRegexMatcher(Matcher matcher) {
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, matcher, tunnelParameters, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    @Override
+    public Matcher getRegexMatcher() {
+        return regexMatcher;
+    }
+
+    @Override
+    public Map<String, XPathValue> getTunnelParameters() {
+        return tunnelParameters;
+    }
+
+    @Override
+    public TransformContext withTunnelParameters(Map<String, XPathValue> params) {
+        if (params == null || params.isEmpty()) {
+            return this;
+        }
+        // Merge new params with existing ones
+        Map<String, XPathValue> merged = new HashMap<>(tunnelParameters);
+        merged.putAll(params);
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, merged, keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    @Override
+    public TransformContext withNoTunnelParameters() {
+        if (tunnelParameters.isEmpty()) {
+            return this;
+        }
+        return inherit(new BasicTransformContext(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size,
+            currentMode, variableScope, functionLibrary, templateMatcher, 
+            outputHandler, accumulatorManager, errorListener, currentTemplateRule, staticBaseURI,
+            runtimeValidator, regexMatcher, Collections.emptyMap(), keysBeingEvaluated, keyIndexCache, variablesBeingEvaluated, usedResultUris, principalOutput));
+    }
+
+    /**
+     * Evaluates an XPath expression in this context.
+     *
+     * @param expression the compiled XPath expression
+     * @return the evaluation result
+     * @throws XPathException if evaluation fails
+     */
+    @Override
+    public XPathValue evaluateXPath(XPathExpression expression) throws XPathException {
+        return expression.evaluate(this);
+    }
+
+    // XPathContext methods
+
+    @Override
+    public XPathNode getContextNode() {
+        return contextNode;
+    }
+    
+    @Override
+    public XPathNode getXsltCurrentNode() {
+        return xsltCurrentNode != null ? xsltCurrentNode : contextNode;
+    }
+
+    @Override
+    public int getContextPosition() {
+        return position;
+    }
+
+    @Override
+    public int getContextSize() {
+        return size;
+    }
+
+    @Override
+    public XPathValue getVariable(String namespaceURI, String localName) throws XPathVariableException {
+        // Check for circular reference - if this variable is being evaluated, it's a cycle
+        String varKey = (namespaceURI != null && !namespaceURI.isEmpty()) 
+            ? "{" + namespaceURI + "}" + localName : localName;
+        if (variablesBeingEvaluated.contains(varKey)) {
+            throw new XPathVariableException(namespaceURI, localName, 
+                "XTDE0640: Circular reference in variable: $" + localName);
+        }
+        
+        XPathValue value = variableScope.lookup(namespaceURI, localName);
+        if (value == null && packageGlobalVariables != null) {
+            Map<String, XPathValue> pkgVars = packageGlobalVariables.get(stylesheet);
+            if (pkgVars != null) {
+                value = pkgVars.get(varKey);
+            }
+        }
+        if (value == null) {
+            throw new XPathVariableException(namespaceURI, localName);
+        }
+        return value;
+    }
+    
+    /**
+     * Enables strict mode where undefined variables throw exceptions.
+     * Used during global variable initialization to detect circular references.
+     *
+     * @param enabled true to throw exceptions for undefined variables
+     */
+    public void setThrowOnUndefinedVariable(boolean enabled) {
+        this.throwOnUndefinedVariable = enabled;
+    }
+    
+    /**
+     * Checks if a key is currently being evaluated (for circular reference detection).
+     *
+     * @param keyName the expanded key name
+     * @return true if this key is already being evaluated
+     */
+    public boolean isKeyBeingEvaluated(String keyName) {
+        return keysBeingEvaluated.contains(keyName);
+    }
+    
+    /**
+     * Marks a key as currently being evaluated.
+     *
+     * @param keyName the expanded key name
+     */
+    public void startKeyEvaluation(String keyName) {
+        keysBeingEvaluated.add(keyName);
+    }
+    
+    /**
+     * Marks a key as finished evaluating.
+     *
+     * @param keyName the expanded key name
+     */
+    public void endKeyEvaluation(String keyName) {
+        keysBeingEvaluated.remove(keyName);
+    }
+
+    /**
+     * Returns the cached key index for the given cache key, or null if not cached.
+     *
+     * @param cacheKey the composite key (expanded key name + document identity)
+     * @return the cached index mapping key values to matching nodes, or null
+     */
+    public Map<String, List<XPathNode>> getKeyIndex(String cacheKey) {
+        return keyIndexCache.get(cacheKey);
+    }
+
+    /**
+     * Stores a built key index in the cache.
+     *
+     * @param cacheKey the composite key (expanded key name + document identity)
+     * @param index the index mapping key values to matching nodes
+     */
+    public void putKeyIndex(String cacheKey, Map<String, List<XPathNode>> index) {
+        keyIndexCache.put(cacheKey, index);
+    }
+
+    /**
+     * Checks if a variable is currently being evaluated (for circular reference detection).
+     *
+     * @param varName the variable name (expanded form {uri}local or just local)
+     * @return true if this variable is already being evaluated
+     */
+    public boolean isVariableBeingEvaluated(String varName) {
+        return variablesBeingEvaluated.contains(varName);
+    }
+    
+    /**
+     * Marks a variable as currently being evaluated.
+     *
+     * @param varName the variable name
+     */
+    public void startVariableEvaluation(String varName) {
+        variablesBeingEvaluated.add(varName);
+    }
+    
+    /**
+     * Marks a variable as finished evaluating.
+     *
+     * @param varName the variable name
+     */
+    public void endVariableEvaluation(String varName) {
+        variablesBeingEvaluated.remove(varName);
+    }
+
+    @Override
+    public XPathFunctionLibrary getFunctionLibrary() {
+        return functionLibrary;
+    }
+
+    /**
+     * Resolves a namespace prefix to a URI.
+     * First checks the stylesheet's namespace bindings, then falls back
+     * to the source document's namespace bindings.
+     *
+     * @param prefix the namespace prefix (null for default namespace)
+     * @return the namespace URI, or null if not found
+     */
+    @Override
+    public String resolveNamespacePrefix(String prefix) {
+        if (stylesheet != null) {
+            String uri = stylesheet.resolveNamespacePrefix(prefix);
+            if (uri != null) {
+                return uri;
+            }
+        }
+        // Fall back to the source document's namespace bindings
+        if (contextNode instanceof StreamingNode) {
+            return ((StreamingNode) contextNode).lookupNamespaceURI(prefix);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the output handler.
+     *
+     * @return the output handler
+     */
+    public OutputHandler getOutputHandler() {
+        return outputHandler;
+    }
+
+    /**
+     * Sets a variable in the current scope.
+     *
+     * @param name the variable name (local name only)
+     * @param value the variable value
+     */
+    public void setVariable(String name, XPathValue value) {
+        variableScope.bind(name, value);
+    }
+
+    /**
+     * Sets a variable with namespace in the current scope.
+     *
+     * @param namespaceURI the namespace URI (may be null)
+     * @param localName the local name
+     * @param value the variable value
+     */
+    public void setVariable(String namespaceURI, String localName, XPathValue value) {
+        variableScope.bind(namespaceURI, localName, value);
+    }
+
+    /**
+     * Sets a parameter value (checks if already bound).
+     * Parameters take the passed value if provided, otherwise use the default.
+     *
+     * @param name the parameter name
+     * @param value the parameter value
+     */
+    public void setParameter(String name, XPathValue value) {
+        // Parameters take passed value if provided, otherwise default
+        if (variableScope.lookup(name) == null) {
+            variableScope.bind(name, value);
+        }
+    }
+
+    /**
+     * Returns the accumulator manager.
+     *
+     * @return the accumulator manager, or null if not set
+     */
+    public AccumulatorManager getAccumulatorManager() {
+        return accumulatorManager;
+    }
+
+    /**
+     * Sets the accumulator manager.
+     *
+     * @param accumulatorManager the accumulator manager
+     */
+    public void setAccumulatorManager(AccumulatorManager accumulatorManager) {
+        this.accumulatorManager = accumulatorManager;
+    }
+
+    /**
+     * Returns the accumulator-before value for the named accumulator.
+     *
+     * @param name the accumulator name
+     * @return the before value, or null if accumulator not found
+     */
+    @Override
+    public XPathValue getAccumulatorBefore(String name) {
+        if (accumulatorManager != null) {
+            checkAccumulatorAvailableInMode(name);
+            checkAccumulatorStreamable(name);
+            String resolved = resolveAccumulatorName(name);
+            return accumulatorManager.getAccumulatorBefore(resolved, contextNode);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the accumulator-after value for the named accumulator.
+     *
+     * @param name the accumulator name
+     * @return the after value, or null if accumulator not found
+     */
+    @Override
+    public XPathValue getAccumulatorAfter(String name) {
+        if (accumulatorManager != null) {
+            checkAccumulatorAvailableInMode(name);
+            checkAccumulatorStreamable(name);
+            String resolved = resolveAccumulatorName(name);
+            return accumulatorManager.getAccumulatorAfter(resolved, contextNode);
+        }
+        return null;
+    }
+
+    /**
+     * XTDE3362: checks that the named accumulator is available in the
+     * current mode's use-accumulators declaration. Throws RuntimeException
+     * if the mode explicitly excludes it.
+     */
+    private void checkAccumulatorAvailableInMode(String name) {
+        if (currentMode == null || stylesheet == null) {
+            return;
+        }
+        ModeDeclaration modeDecl = stylesheet.getModeDeclaration(currentMode);
+        if (modeDecl == null) {
+            return;
+        }
+        if (!modeDecl.isUseAccumulatorsExplicit()) {
+            return;
+        }
+        String useAcc = modeDecl.getUseAccumulators();
+        if (useAcc == null) {
+            throw new RuntimeException("XTDE3362: Accumulator '" + name +
+                "' is not available in mode '" + currentMode + "'");
+        }
+        String trimmed = useAcc.trim();
+        if ("#all".equals(trimmed)) {
+            return;
+        }
+        // Check if the accumulator name is in the whitespace-separated list.
+        // Also try resolving the name to match the declared form.
+        String resolved = resolveAccumulatorName(name);
+        boolean found = false;
+        int start = 0;
+        int len = trimmed.length();
+        while (start < len) {
+            int end = trimmed.indexOf(' ', start);
+            if (end < 0) {
+                end = len;
+            }
+            String token = trimmed.substring(start, end);
+            if (token.equals(name) || token.equals(resolved)) {
+                found = true;
+                break;
+            }
+            start = end + 1;
+        }
+        if (!found) {
+            throw new RuntimeException("XTDE3362: Accumulator '" + name +
+                "' is not available in mode '" + currentMode + "'");
+        }
+    }
+
+    /**
+     * XTDE3362: Checks that a non-streamable accumulator is not accessed
+     * when the context node is in a streamed document.
+     */
+    private void checkAccumulatorStreamable(String name) {
+        if (accumulatorManager == null || !accumulatorManager.isStreamingMode()) {
+            return;
+        }
+        String resolved = resolveAccumulatorName(name);
+        if (stylesheet != null) {
+            AccumulatorDefinition def = stylesheet.getAccumulators().get(resolved);
+            if (def != null && !def.isStreamable()) {
+                throw new RuntimeException("XTDE3362: Cannot access non-streamable " +
+                    "accumulator '" + name + "' in a streamed document");
+            }
+        }
+    }
+
+    /**
+     * Resolves an accumulator QName to the key stored in AccumulatorManager.
+     * When the calling module uses a different prefix than the declaring module,
+     * the direct lookup fails. This method resolves the prefix to namespace URI
+     * and matches by expanded name.
+     */
+    private String resolveAccumulatorName(String name) {
+        if (accumulatorManager.hasAccumulator(name)) {
+            return name;
+        }
+        int colonIdx = name.indexOf(':');
+        if (colonIdx > 0) {
+            String prefix = name.substring(0, colonIdx);
+            String local = name.substring(colonIdx + 1);
+            String nsUri = resolveNamespacePrefix(prefix);
+            if (nsUri != null) {
+                String expandedName = "{" + nsUri + "}" + local;
+                String key = accumulatorManager.findKeyByExpandedName(expandedName);
+                if (key != null) {
+                    return key;
+                }
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Returns a schema simple type by name.
+     *
+     * @param namespaceURI the type namespace URI
+     * @param localName the type local name
+     * @return the simple type, or null if not found
+     */
+    @Override
+    public XSDSimpleType getSchemaType(String namespaceURI, String localName) {
+        if (stylesheet != null) {
+            return stylesheet.getImportedSimpleType(namespaceURI, localName);
+        }
+        return null;
+    }
+
+    /**
+     * Gets a schema by namespace URI (from SchemaContext interface).
+     *
+     * <p>This enables type checking operations to access schemas imported
+     * via xsl:import-schema for substitution group checking.
+     *
+     * @param namespaceURI the schema target namespace URI, or null/empty for no-namespace
+     * @return the schema for this namespace, or null if not found
+     */
+    @Override
+    public org.bluezoo.gonzalez.schema.xsd.XSDSchema getSchema(String namespaceURI) {
+        if (stylesheet != null) {
+            return stylesheet.getImportedSchema(namespaceURI);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the XSLT version of the stylesheet.
+     *
+     * @return the XSLT version (e.g., 1.0, 2.0, 3.0)
+     */
+    @Override
+    public double getXsltVersion() {
+        if (currentTemplateRule != null) {
+            double templateVersion = currentTemplateRule.getEffectiveVersion();
+            if (templateVersion > 0) {
+                return templateVersion;
+            }
+        }
+        if (stylesheet != null) {
+            return stylesheet.getVersion();
+        }
+        return 1.0;
+    }
+
+    @Override
+    public double getProcessorVersion() {
+        if (stylesheet != null) {
+            return stylesheet.getProcessorVersion();
+        }
+        return getXsltVersion();
+    }
+
+    @Override
+    public org.bluezoo.gonzalez.transform.xpath.type.XPathDateTime getCurrentDateTime() {
+        // Per XPath/XSLT spec, current-dateTime() must return the same value
+        // throughout a single transformation
+        if (cachedCurrentDateTime == null) {
+            cachedCurrentDateTime = org.bluezoo.gonzalez.transform.xpath.type.XPathDateTime.now();
+        }
+        return cachedCurrentDateTime;
+    }
+
+    @Override
+    public OutputHandler getPrincipalOutput() {
+        return principalOutput;
+    }
+
+    @Override
+    public void claimResultDocumentUri(String uri) throws SAXException {
+        if (!usedResultUris.add(uri)) {
+            throw new SAXException("XTDE1490: Cannot write to result document URI '" + uri +
+                "' because it has already been used");
+        }
+    }
+
+    /**
+     * Sets a collector for fn:transform() secondary output capture.
+     * When set, xsl:result-document writes to in-memory buffers
+     * instead of files.
+     */
+    public void setResultDocumentCollector(Map<String, OutputHandler> collector) {
+        this.resultDocumentCollector = collector;
+    }
+
+    /**
+     * Returns the result document collector, or null if not in
+     * fn:transform() context.
+     */
+    public Map<String, OutputHandler> getResultDocumentCollector() {
+        return resultDocumentCollector;
+    }
+
+    @Override
+    public void setPrincipalOutput(OutputHandler output) {
+        // Note: This method is deprecated since principalOutput is now immutable
+        // after construction. It remains for TransformContext interface compatibility
+        // but should not be called during normal operation.
+        throw new UnsupportedOperationException(
+            "setPrincipalOutput() is deprecated - principal output is now set during context construction");
+    }
+
+    @Override
+    public org.bluezoo.gonzalez.transform.ErrorHandlingMode getErrorHandlingMode() {
+        return errorHandlingMode;
+    }
+    
+    @Override
+    public boolean isStrictTypeChecking() {
+        // Strict type checking when not in SILENT mode AND stylesheet is XPath 2.0+
+        // XSLT 1.0 stylesheets should use XPath 1.0 auto-coercion rules
+        if (errorHandlingMode == null || errorHandlingMode.isSilent()) {
+            return false;
+        }
+        // Check stylesheet version - XPath 1.0 semantics for version 1.0 stylesheets
+        if (stylesheet != null && stylesheet.getVersion() < 2.0) {
+            return false;  // XPath 1.0 backwards-compatible mode
+        }
+        return true;
+    }
+
+    private String defaultCollationOverride;
+
+    /**
+     * Copies mutable state (like collation override) from this context to the given one.
+     * Must be called on any newly-created derived context.
+     */
+    private BasicTransformContext inherit(BasicTransformContext derived) {
+        derived.principalStylesheet = this.principalStylesheet;
+        derived.defaultCollationOverride = this.defaultCollationOverride;
+        derived.xsltCurrentItem = this.xsltCurrentItem;
+        derived.cachedCurrentDateTime = this.cachedCurrentDateTime;
+        derived.collections = this.collections;
+        derived.collectionUris = this.collectionUris;
+        derived.resultDocumentCollector = this.resultDocumentCollector;
+        derived.packageGlobalVariables = this.packageGlobalVariables;
+        derived.dynamicEvaluation = this.dynamicEvaluation;
+        derived.insideMergeAction = this.insideMergeAction;
+        derived.availableResourceUris = this.availableResourceUris;
+        if (this.pathResultCache == null) {
+            this.pathResultCache = new IdentityHashMap<LocationPath, PathCacheEntry>();
+        }
+        derived.pathResultCache = this.pathResultCache;
+        derived.functionResultCache = getFunctionResultCache();
+        derived.nodeCounters = getNodeCounters();
+        derived.groundedBuffering = getGroundedBuffering();
+        derived.profiler = this.profiler;
+        if (this.contextItemUndefined &&
+                derived.contextNode == this.contextNode &&
+                derived.contextItem == this.contextItem) {
+            derived.contextItemUndefined = true;
+        }
+        return derived;
+    }
+
+    /**
+     * Returns the memo cache for xsl:function cache="yes" calls in this
+     * transformation, creating it from the stylesheet on first use.
+     *
+     * @return the function result cache, or null if there is no stylesheet
+     */
+    public FunctionResultCache getFunctionResultCache() {
+        if (functionResultCache == null && stylesheet != null) {
+            functionResultCache = stylesheet.getFunctionResultCache().forTransformation();
+        }
+        return functionResultCache;
+    }
+
+    /**
+     * Returns the counters used to number nodes and count preceding nodes
+     * incrementally in this transformation, creating them on first use.
+     *
+     * @return the node counters
+     */
+    public NodeCounters getNodeCounters() {
+        if (nodeCounters == null) {
+            nodeCounters = new NodeCounters();
+        }
+        return nodeCounters;
+    }
+
+    /**
+     * Returns the record of what the templates of this
+     * transformation buffered.
+     *
+     * @return the grounded buffering state
+     */
+    public GroundedBuffering getGroundedBuffering() {
+        if (groundedBuffering == null) {
+            groundedBuffering = new GroundedBuffering();
+        }
+        return groundedBuffering;
+    }
+
+    /**
+     * Sets the record of what the templates of this
+     * transformation buffered.
+     *
+     * @param buffering the grounded buffering state
+     */
+    public void setGroundedBuffering(GroundedBuffering buffering) {
+        this.groundedBuffering = buffering;
+    }
+
+    /**
+     * Returns the profiler of this transformation.
+     *
+     * @return the profiler, or null if the transformation is not profiled
+     */
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Sets the profiler of this transformation.
+     *
+     * @param profiler the profiler, or null not to profile
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns a memoized location-path result for the given anchor node, or null.
+     * The anchor is the document root for absolute paths, or the climbed-to
+     * parent for parent-relative paths such as {@code ../meta/@generated}.
+     */
+    public XPathValue getCachedPathResult(LocationPath path, XPathNode anchor) {
+        if (pathResultCache == null || path == null || anchor == null) {
+            return null;
+        }
+        PathCacheEntry entry = pathResultCache.get(path);
+        if (entry != null && entry.anchor == anchor && entry.value != null) {
+            return entry.value;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a memoized string value for a location path (AVT hot path), or null.
+     */
+    public String getCachedPathString(LocationPath path, XPathNode anchor) {
+        if (pathResultCache == null || path == null || anchor == null) {
+            return null;
+        }
+        PathCacheEntry entry = pathResultCache.get(path);
+        if (entry != null && entry.anchor == anchor) {
+            return entry.stringValue;
+        }
+        return null;
+    }
+
+    /**
+     * Stores a memoized location-path result for the given anchor node.
+     */
+    public void putCachedPathResult(LocationPath path, XPathNode anchor, XPathValue value) {
+        if (path == null || anchor == null || value == null) {
+            return;
+        }
+        if (pathResultCache == null) {
+            pathResultCache = new IdentityHashMap<LocationPath, PathCacheEntry>();
+        }
+        pathResultCache.put(path, new PathCacheEntry(anchor, value, null));
+    }
+
+    /**
+     * Stores or updates the string form for a memoized path (after AVT conversion).
+     */
+    public void putCachedPathString(LocationPath path, XPathNode anchor, String stringValue) {
+        if (path == null || anchor == null || stringValue == null) {
+            return;
+        }
+        if (pathResultCache == null) {
+            pathResultCache = new IdentityHashMap<LocationPath, PathCacheEntry>();
+        }
+        PathCacheEntry entry = pathResultCache.get(path);
+        if (entry != null && entry.anchor == anchor) {
+            if (entry.stringValue == null) {
+                entry.stringValue = stringValue;
+            }
+            return;
+        }
+        pathResultCache.put(path, new PathCacheEntry(anchor, null, stringValue));
+    }
+
+    private static final class PathCacheEntry {
+        final XPathNode anchor;
+        final XPathValue value;
+        String stringValue;
+
+        PathCacheEntry(XPathNode anchor, XPathValue value, String stringValue) {
+            this.anchor = anchor;
+            this.value = value;
+            this.stringValue = stringValue;
+        }
+    }
+
+    /**
+     * Sets the pre-evaluated global variables for package stylesheets.
+     * Keyed by package CompiledStylesheet, values are variable maps using
+     * the same key format as VariableScope ({namespaceURI}localName).
+     *
+     * @param globals the package global variables map
+     */
+    public void setPackageGlobalVariables(
+            Map<CompiledStylesheet, Map<String, XPathValue>> globals) {
+        this.packageGlobalVariables = globals;
+    }
+
+    /**
+     * Sets the default collation for this context, overriding the stylesheet-level setting.
+     * Used for element-level default-collation attributes.
+     *
+     * @param collationUri the collation URI, or null to clear the override
+     */
+    public void setDefaultCollation(String collationUri) {
+        this.defaultCollationOverride = collationUri;
+    }
+
+    @Override
+    public String getDefaultCollation() {
+        if (defaultCollationOverride != null) {
+            return defaultCollationOverride;
+        }
+        if (stylesheet != null) {
+            return stylesheet.getDefaultCollation();
+        }
+        return null;
+    }
+
+    /**
+     * Registers a named collection for the fn:collection() function.
+     *
+     * @param uri the collection URI
+     * @param nodes the list of nodes in the collection
+     */
+    public void setCollection(String uri, List<XPathNode> nodes) {
+        if (collections == null) {
+            collections = new java.util.HashMap<>();
+        }
+        collections.put(uri, nodes);
+    }
+
+    @Override
+    public List<XPathNode> getCollection(String uri) {
+        if (collections != null) {
+            return collections.get(uri);
+        }
+        return null;
+    }
+
+    /**
+     * Registers URI strings for a named collection (fn:uri-collection).
+     *
+     * @param uri the collection URI
+     * @param uris the list of document URIs in the collection
+     */
+    public void setCollectionUris(String uri, List<String> uris) {
+        if (collectionUris == null) {
+            collectionUris = new java.util.HashMap<>();
+        }
+        collectionUris.put(uri, uris);
+    }
+
+    /**
+     * Returns the URI strings registered for the given collection.
+     *
+     * @param uri the collection URI
+     * @return the list of document URIs, or null if not registered
+     */
+    public List<String> getCollectionUris(String uri) {
+        if (collectionUris != null) {
+            return collectionUris.get(uri);
+        }
+        return null;
+    }
+
+    /**
+     * Registers a URI as an available resource. Used by the test harness
+     * to declare resources that should be reachable for unparsed-text()
+     * and unparsed-text-available() without requiring actual network access.
+     *
+     * @param uri the resource URI
+     */
+    public void addAvailableResourceUri(String uri) {
+        if (availableResourceUris == null) {
+            availableResourceUris = new java.util.HashSet<String>();
+        }
+        availableResourceUris.add(uri);
+    }
+
+    /**
+     * Returns true if the given URI was declared as an available resource.
+     *
+     * @param uri the resource URI
+     * @return true if the URI was registered as available
+     */
+    public boolean isResourceUriAvailable(String uri) {
+        if (availableResourceUris != null) {
+            return availableResourceUris.contains(uri);
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,896 @@
+/*
+ * DocumentLoader.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import org.bluezoo.gonzalez.Metrics;
+import org.bluezoo.gonzalez.Parser;
+import org.bluezoo.gonzalez.XMLHandler;
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNodeWithBaseURI;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Utility class for loading XML documents into navigable node trees.
+ *
+ * <h3>When to Use This Class</h3>
+ * <p>This class builds a <b>complete in-memory tree</b> of the document. Use it only when:
+ * <ul>
+ *   <li>Full XPath navigation is required (parent/preceding/sibling axes)</li>
+ *   <li>Multiple passes over the document are needed</li>
+ *   <li>The document() or doc() XPath functions are called</li>
+ *   <li>xsl:source-document with streamable="no" is used</li>
+ * </ul>
+ *
+ * <h3>Prefer Streaming When Possible</h3>
+ * <p>For large documents or memory-constrained environments, prefer streaming alternatives:
+ * <ul>
+ *   <li>{@link org.bluezoo.gonzalez.transform.ast.StreamNode xsl:stream} - Explicit streaming</li>
+ *   <li>{@link org.bluezoo.gonzalez.transform.ast.SourceDocumentNode xsl:source-document} 
+ *       with streamable="yes" (the Gonzalez default)</li>
+ * </ul>
+ *
+ * <p>Documents loaded by this class are cached by their absolute URI (plus strip-space 
+ * configuration) so that multiple requests for the same document return the same node tree.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class DocumentLoader {
+
+    // Cache for loaded documents - keyed by absolute URI + strip-space rules
+    private static final Map<String, XPathNode> documentCache = new ConcurrentHashMap<>();
+
+    private static final int MAX_CACHE_SIZE = 1000;
+
+    private DocumentLoader() {
+        // Utility class - no instantiation
+    }
+
+    /**
+     * Loads an XML document from a URI and returns its document node.
+     * Results are cached so the same URI always returns the same document.
+     *
+     * @param uri the document URI (may be relative)
+     * @param baseUri the base URI for resolving relative URIs (may be null)
+     * @param stripSpace element patterns for strip-space (or null)
+     * @param preserveSpace element patterns for preserve-space (or null)
+     * @return the document node, or null if loading fails
+     */
+    public static XPathNode loadDocument(String uri, String baseUri,
+            List<String> stripSpace, List<String> preserveSpace) {
+        return loadDocument(uri, baseUri, stripSpace, preserveSpace, "all");
+    }
+
+    /**
+     * Loads an XML document from a URI and returns its document node.
+     * Results are cached so the same URI always returns the same document.
+     *
+     * @param uri the document URI (may be relative)
+     * @param baseUri the base URI for resolving relative URIs (may be null)
+     * @param stripSpace element patterns for strip-space (or null)
+     * @param preserveSpace element patterns for preserve-space (or null)
+     * @param allowedProtocols comma-separated allowed protocols, "all", or ""
+     * @return the document node, or null if loading fails
+     */
+    public static XPathNode loadDocument(String uri, String baseUri,
+            List<String> stripSpace, List<String> preserveSpace,
+            String allowedProtocols) {
+        try {
+            // Extract fragment identifier before resolving.
+            // Per XSLT spec, the fragment selects an element by ID within
+            // the loaded document (recognize_id_as_uri_fragment feature).
+            String fragment = null;
+            int fragIndex = uri.indexOf('#');
+            if (fragIndex >= 0) {
+                fragment = uri.substring(fragIndex + 1);
+                uri = uri.substring(0, fragIndex);
+            }
+            
+            // Encode unescaped spaces in URIs (common in XSLT document() calls)
+            if (uri.indexOf(' ') >= 0) {
+                uri = uri.replace(" ", "%20");
+            }
+            
+            // Resolve the URI against the base URI.
+            // Empty URI (from fragment-only reference like "#id") means
+            // "the same document as the base URI".
+            URI resolved;
+            if (uri.isEmpty() && baseUri != null && !baseUri.isEmpty()) {
+                resolved = new URI(baseUri).normalize();
+            } else if (baseUri != null && !baseUri.isEmpty()) {
+                URI base = new URI(baseUri);
+                resolved = base.resolve(uri);
+            } else {
+                resolved = new URI(uri);
+            }
+            
+            String absoluteUri = resolved.toString();
+            
+            // Check protocol restriction
+            String scheme = resolved.getScheme();
+            if (scheme != null && allowedProtocols != null) {
+                if (!isProtocolAllowed(scheme, allowedProtocols)) {
+                    return null;
+                }
+            }
+            
+            // Build cache key including strip-space rules
+            String cacheKey = buildCacheKey(absoluteUri, stripSpace, preserveSpace);
+            
+            // Check cache
+            Metrics metrics = Metrics.getMetrics();
+            XPathNode cached = documentCache.get(cacheKey);
+            if (cached != null) {
+                if (metrics != null) {
+                    metrics.increment(Metrics.DOCUMENT_CACHE_HITS, 1L);
+                }
+                if (fragment != null && !fragment.isEmpty()) {
+                    return findElementById(cached, fragment);
+                }
+                return cached;
+            }
+            
+            // Parse with Gonzalez's native XMLHandler path (no SAXAdapter).
+            long start = (metrics != null) ? System.nanoTime() : 0L;
+            URL url = resolved.toURL();
+            DocumentTreeBuilder builder = new DocumentTreeBuilder(
+                    absoluteUri, stripSpace, preserveSpace);
+            Parser parser = SecureGonzalezParser.acquire(builder);
+            try (InputStream in = url.openStream()) {
+                InputSource source = new InputSource(in);
+                source.setSystemId(absoluteUri);
+                parser.parse(source);
+            } finally {
+                SecureGonzalezParser.release(parser);
+            }
+            
+            XPathNode root = builder.getRoot();
+            if (metrics != null) {
+                metrics.record(Metrics.DOCUMENT_LOAD, System.nanoTime() - start);
+            }
+            
+            // Cache the full document (with size limit to prevent memory exhaustion)
+            if (root != null) {
+                if (documentCache.size() >= MAX_CACHE_SIZE) {
+                    documentCache.clear();
+                }
+                documentCache.put(cacheKey, root);
+            }
+            
+            // If a fragment identifier was specified, find the element by ID
+            if (root != null && fragment != null && !fragment.isEmpty()) {
+                return findElementById(root, fragment);
+            }
+            
+            return root;
+        } catch (Exception e) {
+            // Return null on any error (caller decides whether to throw)
+            return null;
+        }
+    }
+
+    /**
+     * Finds an element in the document tree whose ID attribute matches
+     * the given value. Checks DTD-declared ID attributes and xml:id.
+     */
+    private static XPathNode findElementById(XPathNode node, String id) {
+        if (!(node instanceof DocumentNode)) {
+            return null;
+        }
+        DocumentNode docNode = (DocumentNode) node;
+        if (docNode.type == NodeType.ELEMENT) {
+            for (int i = 0; i < docNode.attributes.size(); i++) {
+                DocumentNode attr = docNode.attributes.get(i);
+                if ("ID".equals(attr.dtdType) && id.equals(attr.value)) {
+                    return docNode;
+                }
+                if ("id".equals(attr.localName)
+                        && "http://www.w3.org/XML/1998/namespace"
+                            .equals(attr.namespaceURI)
+                        && id.equals(attr.value)) {
+                    return docNode;
+                }
+            }
+        }
+        for (int i = 0; i < docNode.children.size(); i++) {
+            XPathNode found = findElementById(docNode.children.get(i), id);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isProtocolAllowed(String protocol, String allowedProtocols) {
+        if (allowedProtocols == null || allowedProtocols.isEmpty()) {
+            return false;
+        }
+        if ("all".equals(allowedProtocols)) {
+            return true;
+        }
+        int start = 0;
+        int len = allowedProtocols.length();
+        while (start < len) {
+            int comma = allowedProtocols.indexOf(',', start);
+            if (comma < 0) {
+                comma = len;
+            }
+            String allowed = allowedProtocols.substring(start, comma).trim();
+            if (protocol.equalsIgnoreCase(allowed)) {
+                return true;
+            }
+            start = comma + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Loads an XML document, throwing an exception if loading fails.
+     *
+     * @param uri the document URI (may be relative)
+     * @param baseUri the base URI for resolving relative URIs (may be null)
+     * @param stripSpace element patterns for strip-space (or null)
+     * @param preserveSpace element patterns for preserve-space (or null)
+     * @return the document node
+     * @throws SAXException if the document cannot be loaded
+     */
+    public static XPathNode loadDocumentOrThrow(String uri, String baseUri,
+            List<String> stripSpace, List<String> preserveSpace) throws SAXException {
+        XPathNode doc = loadDocument(uri, baseUri, stripSpace, preserveSpace);
+        if (doc == null) {
+            throw new SAXException("FODC0002: Cannot retrieve document at " + uri);
+        }
+        return doc;
+    }
+
+    /**
+     * Loads a document from a string of XML content.
+     *
+     * @param xml the XML string to parse
+     * @param stripSpace element patterns for strip-space (or null)
+     * @param preserveSpace element patterns for preserve-space (or null)
+     * @param baseUri the base URI (or null)
+     * @return the document node
+     * @throws SAXException if parsing fails
+     */
+    public static XPathNode loadDocumentFromString(String xml, String baseUri,
+            List<String> stripSpace, List<String> preserveSpace) throws SAXException {
+        try {
+            DocumentTreeBuilder builder = new DocumentTreeBuilder(
+                    baseUri, stripSpace, preserveSpace);
+            Parser parser = SecureGonzalezParser.acquire(builder);
+            try {
+                InputSource source = new InputSource(new ByteArrayInputStream(
+                        xml.getBytes(StandardCharsets.UTF_8)));
+                if (baseUri != null) {
+                    source.setSystemId(baseUri);
+                }
+                parser.parse(source);
+            } finally {
+                SecureGonzalezParser.release(parser);
+            }
+            return builder.getRoot();
+        } catch (SAXException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SAXException("FODC0006: Error parsing XML string: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resolves a URI against a base URI.
+     *
+     * @param uri the URI to resolve
+     * @param baseUri the base URI (may be null)
+     * @return the resolved absolute URI
+     * @throws SAXException if the URI is invalid
+     */
+    public static String resolveUri(String uri, String baseUri) throws SAXException {
+        try {
+            if (baseUri != null && !baseUri.isEmpty()) {
+                URI base = new URI(baseUri);
+                return base.resolve(uri).toString();
+            }
+            return new URI(uri).toString();
+        } catch (Exception e) {
+            throw new SAXException("FODC0002: Invalid URI: " + uri, e);
+        }
+    }
+
+    /**
+     * Clears the document cache.
+     * Useful for testing or when memory needs to be freed.
+     */
+    public static void clearCache() {
+        documentCache.clear();
+    }
+
+    private static String buildCacheKey(String absoluteUri, List<String> stripSpace, List<String> preserveSpace) {
+        StringBuilder key = new StringBuilder(absoluteUri);
+        if (stripSpace != null && !stripSpace.isEmpty()) {
+            key.append("#strip=").append(stripSpace.hashCode());
+        }
+        if (preserveSpace != null && !preserveSpace.isEmpty()) {
+            key.append("#preserve=").append(preserveSpace.hashCode());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Native XMLHandler that builds a navigable node tree from a parsed XML document.
+     */
+    private static class DocumentTreeBuilder implements XMLHandler {
+        private final String baseUri;
+        private final List<String> stripSpace;
+        private final List<String> preserveSpace;
+        private DocumentNode root;
+        private DocumentNode current;
+        private final StringBuilder textBuffer = new StringBuilder();
+        private int documentOrder = 0;
+        private final List<String[]> pendingNamespaces = new ArrayList<>();
+        private final Map<String, String> inScopeNamespaces = new HashMap<>();
+        private final List<Map<String, String>> namespaceScopeStack = new ArrayList<>();
+        private final NativeAttributeBuffer attributes = new NativeAttributeBuffer();
+        private String currentElementQName;
+        private String currentPITarget;
+        private boolean piDataFirstChunk;
+        private final StringBuilder piDataBuffer = new StringBuilder();
+        private boolean commentDataFirstChunk;
+        private final StringBuilder commentDataBuffer = new StringBuilder();
+        
+        DocumentTreeBuilder(String baseUri, List<String> stripSpace, List<String> preserveSpace) {
+            this.baseUri = baseUri;
+            this.stripSpace = stripSpace;
+            this.preserveSpace = preserveSpace;
+        }
+        
+        XPathNode getRoot() {
+            return root;
+        }
+
+        @Override
+        public void setLocator(Locator locator) {
+        }
+
+        @Override
+        public void setXml11(boolean xml11) {
+        }
+        
+        @Override
+        public void startDocument() {
+            root = new DocumentNode(NodeType.ROOT, null, null, null, baseUri);
+            root.documentOrder = documentOrder++;
+            current = root;
+            inScopeNamespaces.clear();
+            inScopeNamespaces.put("xml", "http://www.w3.org/XML/1998/namespace");
+            namespaceScopeStack.clear();
+        }
+
+        @Override
+        public void endDocument() {
+            flushText();
+        }
+
+        @Override
+        public void startElement(String qName) {
+            flushText();
+            currentElementQName = qName;
+            attributes.clear();
+            pendingNamespaces.clear();
+        }
+
+        @Override
+        public void namespace(String prefix, String uri) {
+            pendingNamespaces.add(new String[] {
+                prefix != null ? prefix : "",
+                uri != null ? uri : ""
+            });
+        }
+
+        @Override
+        public void startAttribute(String name, String type, boolean declared,
+                boolean specified) {
+            attributes.startAttribute(name, type);
+        }
+
+        @Override
+        public void attributeValueContent(CharBuffer value, boolean end) {
+            attributes.attributeValueContent(value, end);
+        }
+
+        @Override
+        public void endAttributes() throws SAXException {
+            Map<String, String> elementBindings = new HashMap<>(inScopeNamespaces);
+            for (String[] ns : pendingNamespaces) {
+                elementBindings.put(ns[0], ns[1]);
+            }
+
+            String prefix = NativeExpandedNames.extractPrefix(currentElementQName);
+            String localName = NativeExpandedNames.extractLocalName(currentElementQName);
+            String uri = NativeExpandedNames.resolveNamespaceURI(
+                    prefix, false, elementBindings);
+            attributes.resolveAndCheckDuplicates(elementBindings);
+
+            DocumentNode element = new DocumentNode(NodeType.ELEMENT, uri, localName,
+                    prefix, baseUri);
+            element.documentOrder = documentOrder++;
+            element.parent = current;
+            if (current != null) {
+                current.addChild(element);
+            }
+
+            for (String[] ns : pendingNamespaces) {
+                DocumentNode nsNode = new DocumentNode(
+                        NodeType.NAMESPACE, null, ns[0], null, baseUri);
+                nsNode.documentOrder = documentOrder++;
+                nsNode.value = ns[1];
+                nsNode.parent = element;
+                element.addNamespace(nsNode);
+            }
+            pendingNamespaces.clear();
+
+            for (int i = 0; i < attributes.size(); i++) {
+                NativeAttributeBuffer.Attr attr = attributes.get(i);
+                if (NativeExpandedNames.isNamespaceDeclaration(attr.qName)) {
+                    continue;
+                }
+                DocumentNode attrNode = new DocumentNode(
+                        NodeType.ATTRIBUTE, attr.uri, attr.localName, attr.prefix, baseUri);
+                attrNode.documentOrder = documentOrder++;
+                attrNode.value = attr.value;
+                attrNode.dtdType = attr.type;
+                attrNode.parent = element;
+                element.addAttribute(attrNode);
+            }
+
+            namespaceScopeStack.add(new HashMap<>(inScopeNamespaces));
+            inScopeNamespaces.clear();
+            inScopeNamespaces.putAll(elementBindings);
+            current = element;
+        }
+
+        @Override
+        public void endElement() {
+            flushText();
+            if (current != null && current.parent != null) {
+                current = current.parent;
+            }
+            if (!namespaceScopeStack.isEmpty()) {
+                inScopeNamespaces.clear();
+                inScopeNamespaces.putAll(
+                        namespaceScopeStack.remove(namespaceScopeStack.size() - 1));
+            }
+        }
+
+        @Override
+        public void characters(CharBuffer text, boolean ignorable, boolean end) {
+            if (!ignorable) {
+                textBuffer.append(text);
+            }
+        }
+
+        @Override
+        public void piTarget(String target) {
+            flushText();
+            currentPITarget = target;
+            piDataFirstChunk = true;
+        }
+
+        @Override
+        public void piData(CharBuffer data, boolean end) {
+            String value;
+            if (piDataFirstChunk && end) {
+                value = data.toString();
+            } else {
+                if (piDataFirstChunk) {
+                    piDataBuffer.setLength(0);
+                    piDataFirstChunk = false;
+                }
+                piDataBuffer.append(data);
+                if (!end) {
+                    return;
+                }
+                value = piDataBuffer.toString();
+            }
+            DocumentNode pi = new DocumentNode(
+                    NodeType.PROCESSING_INSTRUCTION, null, currentPITarget, null, baseUri);
+            pi.documentOrder = documentOrder++;
+            pi.value = value != null ? value : "";
+            pi.parent = current;
+            if (current != null) {
+                current.addChild(pi);
+            }
+        }
+
+        @Override
+        public void startComment() {
+            flushText();
+            commentDataFirstChunk = true;
+        }
+
+        @Override
+        public void commentData(CharBuffer text, boolean end) {
+            String value;
+            if (commentDataFirstChunk && end) {
+                value = text.toString();
+            } else {
+                if (commentDataFirstChunk) {
+                    commentDataBuffer.setLength(0);
+                    commentDataFirstChunk = false;
+                }
+                commentDataBuffer.append(text);
+                if (!end) {
+                    return;
+                }
+                value = commentDataBuffer.toString();
+            }
+            DocumentNode comment = new DocumentNode(
+                    NodeType.COMMENT, null, null, null, baseUri);
+            comment.documentOrder = documentOrder++;
+            comment.value = value;
+            comment.parent = current;
+            if (current != null) {
+                current.addChild(comment);
+            }
+        }
+
+        @Override
+        public void startCDATA() {
+        }
+
+        @Override
+        public void endCDATA() {
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) {
+        }
+
+        @Override
+        public void endDTD() {
+        }
+
+        @Override
+        public void startEntity(String name) {
+        }
+
+        @Override
+        public void endEntity(String name) {
+        }
+
+        @Override
+        public void notationDecl(String name, String publicId, String systemId) {
+        }
+
+        @Override
+        public void unparsedEntityDecl(String name, String publicId, String systemId,
+                String notationName) {
+        }
+
+        @Override
+        public void saveBuffers() {
+        }
+
+        @Override
+        public SAXException fatalError(String message) {
+            return new SAXParseException(message, null);
+        }
+
+        @Override
+        public void error(String message) {
+        }
+        
+        private void flushText() {
+            if (textBuffer.length() > 0) {
+                String text = textBuffer.toString();
+                textBuffer.setLength(0);
+                
+                // Apply strip-space rules
+                if (shouldStripText(text)) {
+                    return;
+                }
+                
+                DocumentNode textNode = new DocumentNode(NodeType.TEXT, null, null, null, baseUri);
+                textNode.documentOrder = documentOrder++;
+                textNode.value = text;
+                textNode.parent = current;
+                if (current != null) {
+                    current.addChild(textNode);
+                }
+            }
+        }
+        
+        private boolean shouldStripText(String text) {
+            // Only consider stripping whitespace-only text
+            if (!isWhitespace(text)) {
+                return false;
+            }
+            
+            // Get current element name for matching
+            if (current == null || current.type != NodeType.ELEMENT) {
+                return false;
+            }
+            
+            String elementName = current.localName;
+            String elementUri = current.namespaceURI;
+            
+            // Check preserve-space first (takes precedence)
+            if (preserveSpace != null) {
+                for (String pattern : preserveSpace) {
+                    if (matchesPattern(elementUri, elementName, pattern)) {
+                        return false; // Preserve this whitespace
+                    }
+                }
+            }
+            
+            // Check strip-space
+            if (stripSpace != null) {
+                for (String pattern : stripSpace) {
+                    if (matchesPattern(elementUri, elementName, pattern)) {
+                        return true; // Strip this whitespace
+                    }
+                }
+            }
+            
+            return false; // Default: preserve
+        }
+        
+        private boolean isWhitespace(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private boolean matchesPattern(String uri, String localName, String pattern) {
+            if ("*".equals(pattern)) {
+                return true;
+            }
+            // Simple name matching (TODO: support prefix:* patterns)
+            return pattern.equals(localName);
+        }
+    }
+
+    /**
+     * Internal node class for building document trees.
+     */
+    public static class DocumentNode implements XPathNode, XPathNodeWithBaseURI {
+        final NodeType type;
+        final String namespaceURI;
+        final String localName;
+        final String prefix;
+        final String baseUri;
+        String value;
+        String dtdType;
+        DocumentNode parent;
+        int documentOrder;
+        int childIndex = -1;
+        private final List<DocumentNode> children = new ArrayList<>();
+        private final List<DocumentNode> attributes = new ArrayList<>();
+        private final List<DocumentNode> namespaces = new ArrayList<>();
+        private List<XPathNode> cachedNamespaceNodes;
+        
+        DocumentNode(NodeType type, String namespaceURI, String localName, String prefix, String baseUri) {
+            this.type = type;
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+            this.prefix = prefix;
+            this.baseUri = baseUri;
+        }
+        
+        void addChild(DocumentNode child) {
+            child.childIndex = children.size();
+            children.add(child);
+        }
+        
+        void addAttribute(DocumentNode attr) {
+            attributes.add(attr);
+        }
+        
+        void addNamespace(DocumentNode ns) {
+            namespaces.add(ns);
+        }
+        
+        @Override public NodeType getNodeType() { return type; }
+        @Override public String getNamespaceURI() { return namespaceURI; }
+        @Override public String getLocalName() { return localName; }
+        @Override public String getPrefix() { return prefix; }
+        
+        @Override
+        public String getBaseURI() {
+            return baseUri;
+        }
+
+        @Override
+        public String getDocumentURI() {
+            if (type == NodeType.ROOT) {
+                return baseUri;
+            }
+            return null;
+        }
+        
+        @Override 
+        public String getStringValue() {
+            if (type == NodeType.ROOT || type == NodeType.ELEMENT) {
+                StringBuilder sb = new StringBuilder();
+                appendTextContent(sb);
+                return sb.toString();
+            }
+            return value != null ? value : "";
+        }
+        
+        private void appendTextContent(StringBuilder sb) {
+            if (type == NodeType.TEXT) {
+                sb.append(value);
+            } else {
+                for (DocumentNode child : children) {
+                    child.appendTextContent(sb);
+                }
+            }
+        }
+        
+        @Override public XPathNode getParent() { return parent; }
+        
+        @Override
+        public Iterator<XPathNode> getChildren() {
+            return Collections.<XPathNode>unmodifiableList(children).iterator();
+        }
+        
+        @Override
+        public Iterator<XPathNode> getAttributes() {
+            return Collections.<XPathNode>unmodifiableList(attributes).iterator();
+        }
+        
+        @Override
+        public Iterator<XPathNode> getNamespaces() {
+            if (type != NodeType.ELEMENT) {
+                return Collections.<XPathNode>emptyList().iterator();
+            }
+            if (cachedNamespaceNodes != null) {
+                return cachedNamespaceNodes.iterator();
+            }
+            List<XPathNode> result = new ArrayList<>();
+            Set<String> seenPrefixes = new HashSet<>();
+            collectNamespaces(result, seenPrefixes);
+            if (!seenPrefixes.contains("xml")) {
+                DocumentNode xmlNs = new DocumentNode(NodeType.NAMESPACE, null, "xml", null, baseUri);
+                xmlNs.value = "http://www.w3.org/XML/1998/namespace";
+                xmlNs.parent = this;
+                result.add(xmlNs);
+            }
+            cachedNamespaceNodes = Collections.unmodifiableList(result);
+            return cachedNamespaceNodes.iterator();
+        }
+        
+        private void collectNamespaces(List<XPathNode> result, Set<String> seenPrefixes) {
+            for (DocumentNode ns : namespaces) {
+                String nsPrefix = ns.localName != null ? ns.localName : "";
+                if (seenPrefixes.add(nsPrefix)) {
+                    String uri = ns.value;
+                    if (uri != null && !uri.isEmpty()) {
+                        result.add(ns);
+                    }
+                }
+            }
+            if (parent != null && parent.type == NodeType.ELEMENT) {
+                parent.collectNamespaces(result, seenPrefixes);
+            }
+        }
+        
+        @Override
+        public XPathNode getFollowingSibling() {
+            if (parent == null || childIndex < 0) {
+                return null;
+            }
+            int nextIndex = childIndex + 1;
+            if (nextIndex < parent.children.size()) {
+                return parent.children.get(nextIndex);
+            }
+            return null;
+        }
+        
+        @Override
+        public XPathNode getPrecedingSibling() {
+            if (parent == null || childIndex <= 0) {
+                return null;
+            }
+            return parent.children.get(childIndex - 1);
+        }
+        
+        @Override
+        public long getDocumentOrder() {
+            return documentOrder;
+        }
+        
+        @Override
+        public boolean isSameNode(XPathNode other) {
+            return this == other;
+        }
+        
+        @Override
+        public XPathNode getRoot() {
+            DocumentNode n = this;
+            while (n.parent != null) {
+                n = n.parent;
+            }
+            return n;
+        }
+        
+        @Override
+        public boolean isFullyNavigable() {
+            return true;
+        }
+
+        @Override
+        public boolean isAttribute() {
+            return type == NodeType.ATTRIBUTE;
+        }
+
+        @Override
+        public String getTypeNamespaceURI() {
+            if (dtdType != null && isDtdTypedAttribute()) {
+                return "http://www.w3.org/2001/XMLSchema";
+            }
+            return null;
+        }
+
+        @Override
+        public String getTypeLocalName() {
+            if (dtdType != null && isDtdTypedAttribute()) {
+                return dtdType;
+            }
+            return null;
+        }
+
+        private boolean isDtdTypedAttribute() {
+            return "ID".equals(dtdType) ||
+                   "IDREF".equals(dtdType) ||
+                   "IDREFS".equals(dtdType) ||
+                   "NMTOKEN".equals(dtdType) ||
+                   "NMTOKENS".equals(dtdType) ||
+                   "ENTITY".equals(dtdType) ||
+                   "ENTITIES".equals(dtdType);
+        }
+    }
+}
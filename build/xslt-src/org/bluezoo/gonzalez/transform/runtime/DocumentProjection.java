@@ -0,0 +1,279 @@
+/*
+ * DocumentProjection.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The parts of a source document a stylesheet can reach, used to build a
+ * projected source tree that leaves out everything else.
+ *
+ * <p>A projection is a tree of element names rooted at the document node.
+ * While the source tree is built, each open element has a projection
+ * {@link Node}: a child element is kept if the node has a child of that
+ * name, or else if the node has a projection for its other child
+ * elements, and is left out with its whole subtree otherwise. A node
+ * standing for a subtree kept whole is {@link #ALL}. Text is kept only
+ * where the node keeps text, and comments and processing instructions only
+ * where it keeps other content. Attributes and namespace nodes of a kept
+ * element are always kept, as are the ancestors of every kept node, so
+ * the projected tree answers every path the stylesheet can evaluate
+ * exactly as the full tree would.
+ *
+ * <p>Projection nodes may be shared, so a projection can be cyclic: in a
+ * recursive structure an element usually has the same projection as its
+ * ancestor of the same name.
+ *
+ * <p>Projections are computed from the stylesheet at compile time - see
+ * {@code CompiledStylesheet.getDocumentProjection()} - and are immutable
+ * once built, so one projection is shared by every transformation.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class DocumentProjection {
+
+    /**
+     * The projection of a subtree that is kept whole: every child is kept,
+     * with all of its content.
+     */
+    public static final Node ALL = Node.whole("", "");
+
+    private final Node root;
+
+    /**
+     * Creates a projection.
+     *
+     * @param root the projection of the document node
+     */
+    public DocumentProjection(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the projection of the document node.
+     *
+     * @return the root node
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the projection as text: each node lists {@code text()} and
+     * {@code other()} where that content is kept, then its children, with
+     * {@code *} for the other children. A subtree kept whole is {@code
+     * {**}}, and {@code ^} marks a child with the projection of the
+     * enclosing node of that name.
+     */
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        root.appendTo(buf, Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>()));
+        return buf.toString();
+    }
+
+    /**
+     * The projection of one element, or of the document node.
+     */
+    public static final class Node {
+
+        private final String namespaceURI;
+        private final String localName;
+        private final boolean keepText;
+        private final boolean keepOthers;
+        private boolean whole;
+        private Map<String, Node[]> children; // by local name
+        private Node otherChildren;
+
+        /**
+         * Creates a projection node.
+         *
+         * @param namespaceURI the element's namespace URI, or the empty
+         *        string for none (ignored for the document node)
+         * @param localName the element's local name (ignored for the
+         *        document node)
+         * @param keepText whether text children are kept
+         * @param keepOthers whether comment and processing instruction
+         *        children are kept
+         */
+        public Node(String namespaceURI, String localName, boolean keepText,
+                boolean keepOthers) {
+            this.namespaceURI = namespaceURI == null ? "" : namespaceURI;
+            this.localName = localName;
+            this.keepText = keepText;
+            this.keepOthers = keepOthers;
+        }
+
+        /**
+         * Creates the projection node of a child subtree that is kept
+         * whole.
+         *
+         * @param namespaceURI the element's namespace URI, or the empty
+         *        string for none
+         * @param localName the element's local name
+         * @return a node standing for {@link #ALL} under that name
+         */
+        public static Node whole(String namespaceURI, String localName) {
+            Node node = new Node(namespaceURI, localName, true, true);
+            node.whole = true;
+            return node;
+        }
+
+        /**
+         * Adds the projection of a child element. Only used while the
+         * projection is built.
+         *
+         * @param child the child's projection node, which may also be the
+         *        projection of other elements
+         */
+        public void addChild(Node child) {
+            if (children == null) {
+                children = new LinkedHashMap<String, Node[]>();
+            }
+            Node[] named = children.get(child.localName);
+            if (named == null) {
+                named = new Node[] { child };
+            } else {
+                named = Arrays.copyOf(named, named.length + 1);
+                named[named.length - 1] = child;
+            }
+            children.put(child.localName, named);
+        }
+
+        /**
+         * Sets the projection of the child elements not added with {@link
+         * #addChild}. Only used while the projection is built.
+         *
+         * @param otherChildren the projection of the other children, or
+         *        null to leave them out
+         */
+        public void setOtherChildren(Node otherChildren) {
+            this.otherChildren = otherChildren;
+        }
+
+        /**
+         * Returns the projection of a child element.
+         *
+         * @param namespaceURI the child's namespace URI, or null or the
+         *        empty string for none
+         * @param localName the child's local name
+         * @return the child's projection, {@link #ALL} if the child is kept
+         *         whole, or null if it is left out with its subtree
+         */
+        public Node getChild(String namespaceURI, String localName) {
+            if (whole) {
+                return ALL;
+            }
+            if (children != null) {
+                Node[] named = children.get(localName);
+                if (named != null) {
+                    String uri = namespaceURI == null ? "" : namespaceURI;
+                    for (Node child : named) {
+                        if (child.namespaceURI.equals(uri)) {
+                            return child.whole ? ALL : child;
+                        }
+                    }
+                }
+            }
+            if (otherChildren != null && otherChildren.whole) {
+                return ALL;
+            }
+            return otherChildren;
+        }
+
+        /**
+         * Returns whether text children of the element are kept.
+         *
+         * @return true to keep text
+         */
+        public boolean isTextKept() {
+            return keepText;
+        }
+
+        /**
+         * Returns whether comment and processing instruction children of
+         * the element are kept.
+         *
+         * @return true to keep comments and processing instructions
+         */
+        public boolean isOtherContentKept() {
+            return keepOthers;
+        }
+
+        /**
+         * Returns whether the element's subtree is kept whole.
+         *
+         * @return true if everything below the element is kept
+         */
+        public boolean isWhole() {
+            return whole;
+        }
+
+        private void appendTo(StringBuilder buf, Set<Node> enclosing) {
+            if (whole) {
+                buf.append("{**}");
+                return;
+            }
+            if (!enclosing.add(this)) {
+                buf.append('^');
+                return;
+            }
+            buf.append('{');
+            if (keepText) {
+                buf.append("text()");
+            }
+            if (keepOthers) {
+                buf.append(keepText ? " other()" : "other()");
+            }
+            if (children != null) {
+                for (Node[] named : children.values()) {
+                    for (Node child : named) {
+                        if (buf.charAt(buf.length() - 1) != '{') {
+                            buf.append(' ');
+                        }
+                        if (!child.namespaceURI.isEmpty()) {
+                            buf.append("Q{").append(child.namespaceURI).append('}');
+                        }
+                        buf.append(child.localName);
+                        child.appendTo(buf, enclosing);
+                    }
+                }
+            }
+            if (otherChildren != null) {
+                if (buf.charAt(buf.length() - 1) != '{') {
+                    buf.append(' ');
+                }
+                buf.append('*');
+                otherChildren.appendTo(buf, enclosing);
+            }
+            buf.append('}');
+            enclosing.remove(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,566 @@
+/*
+ * EventBufferTree.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer.*;
+
+/**
+ * A navigable node view over the encoded events of a {@link SAXEventBuffer}.
+ *
+ * <p>The view is indexed in one pass over the encoding: every node -
+ * the document node, elements with their namespace declarations and
+ * attributes, text, comments and processing instructions - is numbered in
+ * document order, and a few int arrays hold each node's kind, the position
+ * of its event in the encoding, its parent, the end of its subtree and its
+ * preceding sibling. Names and content are read from the encoding when
+ * asked for. Node objects are created only when navigation reaches them,
+ * and then kept, so each node has one identity.
+ *
+ * <p>Adjacent character events form one text node, and empty text is
+ * left out. As with a tree built from the events, namespace nodes are
+ * those declared by prefix mappings, and ignorable whitespace and typed
+ * values are not part of the tree.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+final class EventBufferTree {
+
+    private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+    private final byte[] ops;
+    private final char[] chars;
+    private final String[] names;
+
+    // By node number
+    private int count;
+    private NodeType[] kinds;
+    private int[] positions;  // operands of the node's event; -1 for the root
+    private int[] parents;
+    private int[] ends;       // first node after the subtree
+    private int[] previous;   // preceding sibling, or -1
+    private int[] textEnds;   // for text, the end of its character events
+
+    private final Node[] nodes;
+    private Node[] xmlNamespaces; // by element number
+
+    EventBufferTree(byte[] ops, int length, char[] chars, String[] names) {
+        this.ops = ops;
+        this.chars = chars;
+        this.names = names;
+        index(length);
+        this.nodes = new Node[count];
+    }
+
+    XPathNode getRoot() {
+        return node(0);
+    }
+
+    private void index(int length) {
+        int capacity = 16;
+        kinds = new NodeType[capacity];
+        positions = new int[capacity];
+        parents = new int[capacity];
+        ends = new int[capacity];
+        previous = new int[capacity];
+        textEnds = new int[capacity];
+        add(NodeType.ROOT, -1, -1, -1);
+
+        int[] open = new int[16];      // open elements
+        int[] lastChild = new int[16]; // their last child so far
+        int depth = 0;
+        open[0] = 0;
+        lastChild[0] = -1;
+        int[] prefixes = new int[4];   // pending prefix mapping positions
+        int prefixCount = 0;
+        int text = -1;                 // open text node
+
+        Cursor in = new Cursor(ops);
+        while (in.pos < length) {
+            byte op = ops[in.pos++];
+            int pos = in.pos;
+            if (op != CHARACTERS && op != START_PREFIX_MAPPING && op != END_PREFIX_MAPPING
+                    && op != IGNORABLE_WHITESPACE && op != XPATH_VALUE) {
+                text = -1;
+            }
+            switch (op) {
+                case START_ELEMENT:
+                case START_ELEMENT_TYPED: {
+                    int element = add(NodeType.ELEMENT, pos, open[depth], lastChild[depth]);
+                    lastChild[depth] = element;
+                    for (int i = 0; i < prefixCount; i++) {
+                        add(NodeType.NAMESPACE, prefixes[i], element, -1);
+                    }
+                    prefixCount = 0;
+                    in.next();
+                    in.next();
+                    in.next();
+                    int attributes = in.next();
+                    for (int i = 0; i < attributes; i++) {
+                        add(NodeType.ATTRIBUTE, in.pos, element, -1);
+                        for (int j = 0; j < 6; j++) {
+                            in.next();
+                        }
+                    }
+                    if (op == START_ELEMENT_TYPED) {
+                        in.skipTypes();
+                    }
+                    if (++depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                        lastChild = Arrays.copyOf(lastChild, depth * 2);
+                    }
+                    open[depth] = element;
+                    lastChild[depth] = -1;
+                    break;
+                }
+                case END_ELEMENT:
+                    in.skip(op);
+                    if (depth > 0) {
+                        ends[open[depth]] = count;
+                        depth--;
+                    }
+                    break;
+                case START_PREFIX_MAPPING:
+                    if (prefixCount == prefixes.length) {
+                        prefixes = Arrays.copyOf(prefixes, prefixCount * 2);
+                    }
+                    prefixes[prefixCount++] = pos;
+                    in.skip(op);
+                    break;
+                case CHARACTERS: {
+                    in.next();
+                    int textLength = in.next();
+                    if (text >= 0) {
+                        textEnds[text] = in.pos;
+                    } else if (textLength > 0) {
+                        text = add(NodeType.TEXT, pos, open[depth], lastChild[depth]);
+                        lastChild[depth] = text;
+                        textEnds[text] = in.pos;
+                    }
+                    break;
+                }
+                case COMMENT:
+                case PROCESSING_INSTRUCTION: {
+                    NodeType kind = op == COMMENT ? NodeType.COMMENT
+                            : NodeType.PROCESSING_INSTRUCTION;
+                    lastChild[depth] = add(kind, pos, open[depth], lastChild[depth]);
+                    in.skip(op);
+                    break;
+                }
+                default:
+                    in.skip(op);
+            }
+        }
+        while (depth >= 0) {
+            ends[open[depth]] = count;
+            depth--;
+        }
+    }
+
+    private int add(NodeType kind, int position, int parent, int previousSibling) {
+        if (count == kinds.length) {
+            int capacity = count * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            textEnds = Arrays.copyOf(textEnds, capacity);
+        }
+        int number = count++;
+        kinds[number] = kind;
+        positions[number] = position;
+        parents[number] = parent;
+        ends[number] = number + 1;
+        previous[number] = previousSibling;
+        return number;
+    }
+
+    private Node node(int number) {
+        Node node = nodes[number];
+        if (node == null) {
+            node = new Node(number, -1);
+            nodes[number] = node;
+        }
+        return node;
+    }
+
+    private Node xmlNamespace(int element) {
+        if (xmlNamespaces == null) {
+            xmlNamespaces = new Node[count];
+        }
+        Node node = xmlNamespaces[element];
+        if (node == null) {
+            node = new Node(-1, element);
+            xmlNamespaces[element] = node;
+        }
+        return node;
+    }
+
+    /** Returns the name operand at an offset from a node's position. */
+    private String name(int number, int operand) {
+        Cursor in = new Cursor(ops, positions[number]);
+        for (int i = 0; i < operand; i++) {
+            in.next();
+        }
+        return names[in.next()];
+    }
+
+    /** Returns the first node number after a node's namespaces and attributes. */
+    private int firstChild(int number) {
+        int child = number + 1;
+        while (child < count && parents[child] == number
+                && (kinds[child] == NodeType.ATTRIBUTE || kinds[child] == NodeType.NAMESPACE)) {
+            child++;
+        }
+        return child;
+    }
+
+    private String getText(int number) {
+        Cursor in = new Cursor(ops, positions[number]);
+        int offset = in.next();
+        int length = in.next();
+        if (in.pos >= textEnds[number]) {
+            return new String(chars, offset, length);
+        }
+        StringBuilder buf = new StringBuilder();
+        buf.append(chars, offset, length);
+        while (in.pos < textEnds[number]) {
+            byte op = ops[in.pos++];
+            if (op == CHARACTERS) {
+                offset = in.next();
+                buf.append(chars, offset, in.next());
+            } else {
+                in.skip(op);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * A node of the view: a node number, or for the implicit xml namespace
+     * node of an element, -1 and the element's number.
+     */
+    private final class Node implements XPathNode {
+
+        private final int number;
+        private final int owner;
+
+        Node(int number, int owner) {
+            this.number = number;
+            this.owner = owner;
+        }
+
+        @Override
+        public NodeType getNodeType() {
+            return number < 0 ? NodeType.NAMESPACE : kinds[number];
+        }
+
+        @Override
+        public String getNamespaceURI() {
+            if (number < 0) {
+                return null;
+            }
+            switch (kinds[number]) {
+                case ELEMENT:
+                case ATTRIBUTE:
+                    return name(number, 0);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public String getLocalName() {
+            if (number < 0) {
+                return "xml";
+            }
+            switch (kinds[number]) {
+                case ELEMENT:
+                case ATTRIBUTE:
+                    return name(number, 1);
+                case NAMESPACE:
+                case PROCESSING_INSTRUCTION:
+                    return name(number, 0);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public String getPrefix() {
+            if (number < 0) {
+                return null;
+            }
+            switch (kinds[number]) {
+                case ELEMENT:
+                case ATTRIBUTE:
+                    String qName = name(number, 2);
+                    int colon = qName != null ? qName.indexOf(':') : -1;
+                    return colon > 0 ? qName.substring(0, colon) : null;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public String getStringValue() {
+            if (number < 0) {
+                return XML_NAMESPACE;
+            }
+            switch (kinds[number]) {
+                case ROOT:
+                case ELEMENT:
+                    StringBuilder buf = new StringBuilder();
+                    for (int i = number + 1; i < ends[number]; i++) {
+                        if (kinds[i] == NodeType.TEXT) {
+                            buf.append(getText(i));
+                        }
+                    }
+                    return buf.toString();
+                case TEXT:
+                    return getText(number);
+                case NAMESPACE: {
+                    String uri = name(number, 1);
+                    return uri != null ? uri : "";
+                }
+                case ATTRIBUTE: {
+                    Cursor in = new Cursor(ops, positions[number]);
+                    for (int i = 0; i < 4; i++) {
+                        in.next();
+                    }
+                    String value = in.nextString(chars);
+                    return value != null ? value : "";
+                }
+                case COMMENT: {
+                    Cursor in = new Cursor(ops, positions[number]);
+                    int offset = in.next();
+                    return new String(chars, offset, in.next());
+                }
+                case PROCESSING_INSTRUCTION: {
+                    Cursor in = new Cursor(ops, positions[number]);
+                    in.next();
+                    String data = in.nextString(chars);
+                    return data != null ? data : "";
+                }
+                default:
+                    return "";
+            }
+        }
+
+        @Override
+        public XPathNode getParent() {
+            if (number < 0) {
+                return node(owner);
+            }
+            int parent = parents[number];
+            return parent < 0 ? null : node(parent);
+        }
+
+        @Override
+        public Iterator<XPathNode> getChildren() {
+            if (number < 0 || (kinds[number] != NodeType.ELEMENT
+                    && kinds[number] != NodeType.ROOT)) {
+                return Collections.<XPathNode>emptyList().iterator();
+            }
+            final int end = ends[number];
+            final int first = firstChild(number);
+            return new Iterator<XPathNode>() {
+                private int next = first;
+
+                @Override
+                public boolean hasNext() {
+                    return next < end;
+                }
+
+                @Override
+                public XPathNode next() {
+                    if (next >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    Node child = node(next);
+                    next = ends[next];
+                    return child;
+                }
+            };
+        }
+
+        @Override
+        public Iterator<XPathNode> getAttributes() {
+            if (number < 0 || kinds[number] != NodeType.ELEMENT) {
+                return Collections.<XPathNode>emptyList().iterator();
+            }
+            List<XPathNode> attributes = new ArrayList<>();
+            for (int i = number + 1; i < count && parents[i] == number; i++) {
+                if (kinds[i] == NodeType.ATTRIBUTE) {
+                    attributes.add(node(i));
+                } else if (kinds[i] != NodeType.NAMESPACE) {
+                    break;
+                }
+            }
+            return attributes.iterator();
+        }
+
+        @Override
+        public Iterator<XPathNode> getNamespaces() {
+            if (number < 0 || kinds[number] != NodeType.ELEMENT) {
+                return Collections.<XPathNode>emptyList().iterator();
+            }
+            List<XPathNode> result = new ArrayList<>();
+            Set<String> seenPrefixes = new HashSet<>();
+            for (int e = number; e >= 0 && kinds[e] == NodeType.ELEMENT; e = parents[e]) {
+                for (int i = e + 1; i < count && parents[i] == e
+                        && kinds[i] == NodeType.NAMESPACE; i++) {
+                    String prefix = name(i, 0);
+                    if (seenPrefixes.add(prefix != null ? prefix : "")) {
+                        String uri = name(i, 1);
+                        if (uri != null && !uri.isEmpty()) {
+                            result.add(node(i));
+                        }
+                    }
+                }
+            }
+            if (!seenPrefixes.contains("xml")) {
+                result.add(xmlNamespace(number));
+            }
+            return result.iterator();
+        }
+
+        @Override
+        public XPathNode getFollowingSibling() {
+            if (number <= 0 || kinds[number] == NodeType.ATTRIBUTE
+                    || kinds[number] == NodeType.NAMESPACE) {
+                return null;
+            }
+            int next = ends[number];
+            int parent = parents[number];
+            return next < ends[parent] ? node(next) : null;
+        }
+
+        @Override
+        public XPathNode getPrecedingSibling() {
+            if (number <= 0) {
+                return null;
+            }
+            int sibling = previous[number];
+            return sibling < 0 ? null : node(sibling);
+        }
+
+        @Override
+        public long getDocumentOrder() {
+            return number < 0 ? owner : number;
+        }
+
+        @Override
+        public boolean isSameNode(XPathNode other) {
+            return this == other;
+        }
+
+        @Override
+        public XPathNode getRoot() {
+            return node(0);
+        }
+
+        @Override
+        public boolean isFullyNavigable() {
+            return true;
+        }
+
+        @Override
+        public String getTypeNamespaceURI() {
+            String[] type = getType();
+            return type != null ? type[0] : null;
+        }
+
+        @Override
+        public String getTypeLocalName() {
+            String[] type = getType();
+            return type != null ? type[1] : null;
+        }
+
+        /** Returns the type annotation of a typed element or attribute. */
+        private String[] getType() {
+            if (number < 0) {
+                return null;
+            }
+            NodeType kind = kinds[number];
+            int element;
+            if (kind == NodeType.ELEMENT) {
+                element = number;
+            } else if (kind == NodeType.ATTRIBUTE) {
+                element = parents[number];
+            } else {
+                return null;
+            }
+            if (ops[positions[element] - 1] != START_ELEMENT_TYPED) {
+                return null;
+            }
+            Cursor in = new Cursor(ops, positions[element]);
+            in.next();
+            in.next();
+            in.next();
+            in.skipAttributes();
+            String typeNamespaceURI = names[in.next()];
+            String typeLocalName = names[in.next()];
+            if (kind == NodeType.ELEMENT) {
+                return typeLocalName != null
+                        ? new String[] { typeNamespaceURI, typeLocalName } : null;
+            }
+            int attribute = 0;
+            for (int i = element + 1; i < number; i++) {
+                if (kinds[i] == NodeType.ATTRIBUTE) {
+                    attribute++;
+                }
+            }
+            int types = in.next();
+            for (int i = 0; i < types; i++) {
+                if (in.next() != 0) {
+                    String namespaceURI = names[in.next()];
+                    String localName = names[in.next()];
+                    if (i == attribute) {
+                        return localName != null
+                                ? new String[] { namespaceURI, localName } : null;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return getNodeType() + "[" + getDocumentOrder() + "]";
+        }
+
+    }
+
+}
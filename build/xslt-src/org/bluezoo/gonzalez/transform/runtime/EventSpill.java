@@ -0,0 +1,162 @@
+/*
+ * EventSpill.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+
+import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer.Cursor;
+
+/**
+ * The encoding of a {@link SAXEventBuffer} moved out of the heap.
+ *
+ * <p>The opcode stream and the character arena are each appended to a
+ * temporary file, in the same form they take in memory, and read back
+ * through memory-mapped views, so the operating system pages the
+ * content in as it is navigated. The files are unlinked as soon as they
+ * are open where the platform allows it, so nothing is left behind if
+ * the process dies; otherwise they are deleted on {@link #close} or at
+ * exit. A mapping is limited to 2 GB, so each stream is too.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+final class EventSpill {
+
+    private static final int CHUNK = 32768;
+
+    private final File opsFile;
+    private final File charsFile;
+    private final FileChannel ops;
+    private final FileChannel chars;
+    private final ByteBuffer transfer = ByteBuffer.allocateDirect(CHUNK);
+
+    private Cursor mapped;
+
+    /**
+     * Creates the temporary files.
+     *
+     * @param directory the directory, or null for the default
+     * @throws IOException if the files cannot be created
+     */
+    EventSpill(File directory) throws IOException {
+        opsFile = File.createTempFile("gonzalez", ".ops", directory);
+        File created = null;
+        RandomAccessFile opsAccess = null;
+        try {
+            created = File.createTempFile("gonzalez", ".chars", directory);
+            opsAccess = new RandomAccessFile(opsFile, "rw");
+            ops = opsAccess.getChannel();
+            chars = new RandomAccessFile(created, "rw").getChannel();
+        } catch (IOException e) {
+            if (opsAccess != null) {
+                opsAccess.close();
+            }
+            opsFile.delete();
+            if (created != null) {
+                created.delete();
+            }
+            throw e;
+        }
+        charsFile = created;
+        unlink(opsFile);
+        unlink(charsFile);
+    }
+
+    private static void unlink(File file) {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Appends the contents of the in-memory arrays.
+     *
+     * @param opsArray the encoding
+     * @param opsLength the number of bytes to write
+     * @param charsArray the character data
+     * @param charsLength the number of characters to write
+     * @throws IOException if the files cannot be written
+     */
+    void write(byte[] opsArray, int opsLength, char[] charsArray, int charsLength)
+            throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(opsArray, 0, opsLength);
+        while (src.hasRemaining()) {
+            ops.write(src, ops.size());
+        }
+        int written = 0;
+        while (written < charsLength) {
+            int n = Math.min(charsLength - written, CHUNK / 2);
+            transfer.clear();
+            transfer.asCharBuffer().put(charsArray, written, n);
+            transfer.limit(n * 2);
+            while (transfer.hasRemaining()) {
+                chars.write(transfer, chars.size());
+            }
+            written += n;
+        }
+        mapped = null;
+    }
+
+    /**
+     * Returns a cursor at the start of the spilled encoding.
+     *
+     * @return the cursor
+     * @throws IOException if the files cannot be mapped
+     */
+    Cursor cursor() throws IOException {
+        if (mapped == null) {
+            long opsSize = ops.size();
+            long charsSize = chars.size();
+            if (opsSize > Integer.MAX_VALUE || charsSize > Integer.MAX_VALUE) {
+                throw new IOException("Spilled event buffer exceeds 2 GB");
+            }
+            ByteBuffer opsView = ops.map(FileChannel.MapMode.READ_ONLY, 0, opsSize);
+            CharBuffer charsView = charsSize == 0 ? CharBuffer.allocate(0)
+                    : chars.map(FileChannel.MapMode.READ_ONLY, 0, charsSize).asCharBuffer();
+            mapped = new Cursor(opsView, charsView);
+        }
+        return new Cursor(mapped, 0);
+    }
+
+    /**
+     * Closes and deletes the files. Views already mapped stay readable.
+     */
+    void close() {
+        try {
+            ops.close();
+        } catch (IOException e) {
+            // Nothing more can be done with the file
+        }
+        try {
+            chars.close();
+        } catch (IOException e) {
+            // Nothing more can be done with the file
+        }
+        opsFile.delete();
+        charsFile.delete();
+    }
+
+}
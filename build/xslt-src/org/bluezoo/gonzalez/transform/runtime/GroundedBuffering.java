@@ -0,0 +1,253 @@
+/*
+ * GroundedBuffering.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
+
+/**
+ * What the templates of one transformation buffered.
+ *
+ * <p>Event buffers hold the subtree of a grounded template's context node
+ * (see {@link GroundedExecutor}) and the temporary trees a transformation
+ * builds: variable, parameter and function results, and the documents of
+ * {@code xsl:document}. Every completed buffer is recorded against the
+ * template that built it, with its event count and encoded size. For each
+ * template with the grounded buffering strategy the number of executions
+ * and the time spent in them are recorded too.
+ *
+ * <p>Instances are safe for use by the threads of one transformation.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class GroundedBuffering {
+
+    /**
+     * What one template buffered in a transformation and, if grounded,
+     * how it ran.
+     */
+    public static final class Usage {
+
+        private int executions;
+        private long nanos;
+        private long peakBytes;
+
+        private Usage() {
+        }
+
+        private Usage(Usage other) {
+            this.executions = other.executions;
+            this.nanos = other.nanos;
+            this.peakBytes = other.peakBytes;
+        }
+
+        /**
+         * Returns the number of times the template ran grounded.
+         *
+         * @return the execution count
+         */
+        public int getExecutions() {
+            return executions;
+        }
+
+        /**
+         * Returns the time spent in grounded executions of the template,
+         * including the templates they applied.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the largest buffer the template built.
+         *
+         * @return the size in bytes, 0 if it buffered nothing
+         */
+        public long getPeakBytes() {
+            return peakBytes;
+        }
+
+    }
+
+    private final Map<TemplateRule, Usage> usage = new LinkedHashMap<TemplateRule, Usage>();
+    private long bufferedEvents;
+    private long peakBufferSize;
+
+    /**
+     * Creates the buffering state of a transformation.
+     */
+    public GroundedBuffering() {
+    }
+
+    /**
+     * Records a temporary tree completed in a transformation against the
+     * current template of the context that built it.
+     *
+     * @param context the context the tree was built in
+     * @param buffer the buffer holding the tree
+     */
+    public static void recordTree(TransformContext context, SAXEventBuffer buffer) {
+        if (context instanceof BasicTransformContext) {
+            ((BasicTransformContext) context).getGroundedBuffering()
+                    .record(context.getCurrentTemplateRule(), buffer);
+        }
+    }
+
+    /**
+     * Records a grounded execution of a template against the buffering
+     * of the context it ran in.
+     *
+     * @param context the context the template ran in
+     * @param template the template
+     * @param nanos the time the execution took
+     */
+    public static void recordGrounded(TransformContext context, TemplateRule template,
+            long nanos) {
+        if (context instanceof BasicTransformContext) {
+            ((BasicTransformContext) context).getGroundedBuffering()
+                    .recordExecution(template, nanos);
+        }
+    }
+
+    /**
+     * Records a completed buffer.
+     *
+     * @param template the template that built it, or null if not known
+     * @param buffer the buffer
+     */
+    synchronized void record(TemplateRule template, SAXEventBuffer buffer) {
+        long size = buffer.getEncodedSize();
+        bufferedEvents += buffer.size();
+        peakBufferSize = Math.max(peakBufferSize, size);
+        if (template == null) {
+            return;
+        }
+        Usage entry = getUsage(template);
+        entry.peakBytes = Math.max(entry.peakBytes, size);
+    }
+
+    /**
+     * Records a grounded execution of a template.
+     *
+     * @param template the template, or null if not known
+     * @param nanos the time the execution took
+     */
+    synchronized void recordExecution(TemplateRule template, long nanos) {
+        if (template == null) {
+            return;
+        }
+        Usage entry = getUsage(template);
+        entry.executions++;
+        entry.nanos += nanos;
+    }
+
+    private Usage getUsage(TemplateRule template) {
+        Usage entry = usage.get(template);
+        if (entry == null) {
+            entry = new Usage();
+            usage.put(template, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns what each template did, in the order the templates first
+     * buffered or ran grounded.
+     *
+     * @return a snapshot of the usage by template
+     */
+    public synchronized Map<TemplateRule, Usage> getUsage() {
+        Map<TemplateRule, Usage> result = new LinkedHashMap<TemplateRule, Usage>();
+        for (Map.Entry<TemplateRule, Usage> entry : usage.entrySet()) {
+            result.put(entry.getKey(), new Usage(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the peak number of bytes buffered by each template that
+     * buffered, in the order the templates first buffered or ran grounded.
+     *
+     * @return the peak sizes by template
+     */
+    public synchronized Map<TemplateRule, Long> getPeakBufferedBytes() {
+        Map<TemplateRule, Long> result = new LinkedHashMap<TemplateRule, Long>();
+        for (Map.Entry<TemplateRule, Usage> entry : usage.entrySet()) {
+            if (entry.getValue().peakBytes > 0) {
+                result.put(entry.getKey(), Long.valueOf(entry.getValue().peakBytes));
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the largest buffer built in the transformation.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getPeakBufferSize() {
+        return peakBufferSize;
+    }
+
+    /**
+     * Returns the number of grounded template executions.
+     *
+     * @return the execution count
+     */
+    public synchronized int getGroundedExecutions() {
+        int executions = 0;
+        for (Usage entry : usage.values()) {
+            executions += entry.executions;
+        }
+        return executions;
+    }
+
+    /**
+     * Returns the time spent in grounded template executions. Nested
+     * grounded executions are counted in each template that encloses
+     * them.
+     *
+     * @return the time in nanoseconds
+     */
+    public synchronized long getGroundedNanos() {
+        long nanos = 0;
+        for (Usage entry : usage.values()) {
+            nanos += entry.nanos;
+        }
+        return nanos;
+    }
+
+    /**
+     * Returns the number of SAX events in all the completed buffers.
+     *
+     * @return the event count
+     */
+    public synchronized long getBufferedEvents() {
+        return bufferedEvents;
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * GroundedExecutor.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import org.bluezoo.gonzalez.transform.ast.XSLTNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.xml.sax.SAXException;
+
+/**
+ * Executor for grounded (subtree-buffered) transformations.
+ *
+ * <p>The GroundedExecutor handles templates that require subtree buffering
+ * to support reverse axis navigation or other constructs that need the
+ * full subtree to be available.
+ *
+ * <p>Grounded execution flow:
+ * <ol>
+ *   <li>Buffer current element's complete subtree (all SAX events)</li>
+ *   <li>Navigate the buffered subtree through a node view over the buffer</li>
+ *   <li>Execute the template with full XPath navigation available</li>
+ *   <li>Release the buffer</li>
+ * </ol>
+ *
+ * <p>This is used for templates with:
+ * <ul>
+ *   <li>parent:: axis</li>
+ *   <li>ancestor:: or ancestor-or-self:: axis</li>
+ *   <li>preceding-sibling:: axis</li>
+ *   <li>last() in predicates</li>
+ *   <li>xsl:sort (collect then sort)</li>
+ * </ul>
+ *
+ * <p>Memory usage is proportional to subtree size, but the rest of the
+ * document can still be streamed.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class GroundedExecutor {
+
+    private final TransformContext parentContext;
+    private final OutputHandler output;
+    private SAXEventBuffer currentBuffer;
+    private boolean buffering;
+    private int bufferDepth;
+
+    /**
+     * Creates a new grounded executor.
+     *
+     * @param parentContext the parent transformation context
+     * @param output the output handler
+     */
+    public GroundedExecutor(TransformContext parentContext, OutputHandler output) {
+        this.parentContext = parentContext;
+        this.output = output;
+        this.buffering = false;
+        this.bufferDepth = 0;
+    }
+
+    /**
+     * Executes a template in grounded mode.
+     *
+     * <p>This buffers the current element's complete subtree, builds a
+     * navigable node tree, and then executes the template with full
+     * navigation available.
+     *
+     * @param template the template to execute
+     * @param buffer the SAX event buffer containing the subtree
+     * @param contextNode the original context node
+     * @throws SAXException if execution fails
+     */
+    public void executeGrounded(XSLTNode template, SAXEventBuffer buffer,
+                                 XPathNode contextNode) throws SAXException {
+        if (contextNode == null || buffer == null) {
+            return;
+        }
+        GroundedBuffering budget = getBuffering();
+        if (budget != null) {
+            budget.record(parentContext.getCurrentTemplateRule(), buffer);
+        }
+        
+        // Navigate the buffered subtree through a view over the buffer
+        XPathNode bufferedRoot = buildTreeFromBuffer(buffer);
+        XPathNode targetNode = bufferedRoot;
+        if (targetNode != null) {
+            execute(template, targetNode);
+        } else {
+            execute(template, contextNode);
+        }
+    }
+
+    /**
+     * Executes a template in grounded mode with an existing node.
+     * The node should be a BufferedNode for full navigation support.
+     *
+     * @param template the template to execute
+     * @param contextNode the context node (should be BufferedNode for full navigation)
+     * @throws SAXException if execution fails
+     */
+    public void executeGrounded(XSLTNode template, XPathNode contextNode) throws SAXException {
+        if (contextNode == null) {
+            return;
+        }
+        execute(template, contextNode);
+    }
+
+    /**
+     * Executes the template on a navigable node, recording the time it
+     * took against the current template.
+     */
+    private void execute(XSLTNode template, XPathNode node) throws SAXException {
+        TransformContext groundedCtx = parentContext.withContextNode(node);
+        GroundedBuffering budget = getBuffering();
+        if (budget == null) {
+            template.execute(groundedCtx, output);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            template.execute(groundedCtx, output);
+        } finally {
+            budget.recordExecution(parentContext.getCurrentTemplateRule(),
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Starts buffering the current subtree.
+     * Called when entering an element that requires grounded execution.
+     * Creates a new buffer if not already buffering, otherwise increments depth.
+     *
+     * @return the buffer to use for capturing SAX events
+     */
+    public SAXEventBuffer startBuffering() {
+        if (!buffering) {
+            currentBuffer = new SAXEventBuffer();
+            buffering = true;
+            bufferDepth = 0;
+        }
+        bufferDepth++;
+        return currentBuffer;
+    }
+
+    /**
+     * Ends buffering for the current element.
+     * Called when exiting an element. Decrements depth and returns true
+     * when the original buffering element is reached.
+     *
+     * @return true if buffering is complete (reached the original element)
+     */
+    public boolean endBuffering() {
+        if (buffering) {
+            bufferDepth--;
+            if (bufferDepth <= 0) {
+                buffering = false;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current buffer.
+     *
+     * @return the buffer, or null if not buffering
+     */
+    public SAXEventBuffer getCurrentBuffer() {
+        return currentBuffer;
+    }
+
+    /**
+     * Returns true if currently buffering.
+     *
+     * @return true if buffering
+     */
+    public boolean isBuffering() {
+        return buffering;
+    }
+
+    /**
+     * Clears the current buffer and resets buffering state.
+     * Called when buffering is no longer needed.
+     */
+    public void clearBuffer() {
+        currentBuffer = null;
+        buffering = false;
+        bufferDepth = 0;
+    }
+
+    /**
+     * Returns the parent transformation context.
+     *
+     * @return the parent transformation context
+     */
+    public TransformContext getParentContext() {
+        return parentContext;
+    }
+
+    /**
+     * Returns the output handler.
+     *
+     * @return the output handler
+     */
+    public OutputHandler getOutput() {
+        return output;
+    }
+
+    private GroundedBuffering getBuffering() {
+        if (parentContext instanceof BasicTransformContext) {
+            return ((BasicTransformContext) parentContext).getGroundedBuffering();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "GroundedExecutor[buffering=" + buffering + 
+               ", depth=" + bufferDepth + "]";
+    }
+
+    /**
+     * Returns a fully navigable view of a SAX event buffer. The nodes are
+     * read directly from the buffer's encoding as they are navigated to,
+     * rather than built into a separate tree first.
+     *
+     * @param buffer the buffer containing SAX events
+     * @return the root node of the view, or null if buffer is empty
+     * @throws SAXException if the view cannot be built
+     */
+    public static XPathNode buildTreeFromBuffer(SAXEventBuffer buffer) throws SAXException {
+        if (buffer == null || buffer.isEmpty()) {
+            return null;
+        }
+        return buffer.getNavigableRoot();
+    }
+
+}
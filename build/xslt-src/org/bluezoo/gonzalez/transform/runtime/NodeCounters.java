@@ -0,0 +1,314 @@
+/*
+ * NodeCounters.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.bluezoo.gonzalez.transform.compiler.Pattern;
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+
+/**
+ * Counters over the source tree that answer the counting idioms of XSLT
+ * 1.0 - {@code xsl:number} and {@code count(preceding::x)} - incrementally.
+ *
+ * <p>Counted naively, each of these walks back over the siblings or the
+ * preceding nodes of the node being numbered, which is quadratic when a
+ * stylesheet numbers every paragraph or footnote of a document. A counter
+ * instead remembers the last node it counted up to and the count at that
+ * node, much like an accumulator, and carries on from there when asked
+ * about a later node. Since nodes are usually numbered in document order,
+ * each node is then visited a bounded number of times.
+ *
+ * <p>Each use site owns its counters, identified by a key whose equality
+ * also covers the node tests being counted. A counter asked about a node
+ * before its last one, or in another tree, starts again from the
+ * beginning, so results never depend on the order of the questions.
+ * Counters are kept per transformation; see
+ * {@link BasicTransformContext#getNodeCounters()}.
+ *
+ * <p>A counter remembers which nodes passed its test, so the test must
+ * give the same answer for a node wherever it is asked: a pattern that
+ * refers to variables or to {@code current()} cannot be counted
+ * incrementally (see {@link #isContextFree}).
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class NodeCounters {
+
+    /**
+     * A node test applied by a counter.
+     */
+    public interface Test {
+
+        /**
+         * Returns whether a node is counted.
+         *
+         * @param node the node
+         * @return true to count the node
+         */
+        boolean matches(XPathNode node);
+    }
+
+    private final Map<Object, SiblingCursor[]> siblingCursors =
+        new HashMap<Object, SiblingCursor[]>();
+    private final Map<Object, Cursor> orderCursors = new HashMap<Object, Cursor>();
+
+    /**
+     * Functions whose result depends on the dynamic context of the
+     * instruction rather than on the node a pattern is matched against.
+     */
+    private static final String[] CONTEXT_FUNCTIONS = {
+        "current", "current-group", "current-grouping-key",
+        "current-merge-group", "current-merge-key",
+        "current-output-uri", "regex-group"
+    };
+
+    /**
+     * Returns whether a pattern matches a node the same way wherever it is
+     * evaluated, so that a counter may remember its results: it must not
+     * refer to variables or parameters, nor call {@code current()} or any
+     * other function of the dynamic context. The test is made on the text
+     * of the pattern and errs on the side of answering false.
+     *
+     * @param pattern the pattern, or null for none
+     * @return true if the pattern does not depend on the dynamic context
+     */
+    public static boolean isContextFree(Pattern pattern) {
+        if (pattern == null) {
+            return true;
+        }
+        String text = pattern.toString();
+        if (text == null) {
+            return false;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\'' || c == '"') {
+                int end = text.indexOf(c, i + 1);
+                if (end < 0) {
+                    return false;
+                }
+                i = end + 1;
+                continue;
+            }
+            if (c == '$') {
+                return false;
+            }
+            if (isNameChar(c) && (i == 0 || !isNameChar(text.charAt(i - 1)))) {
+                int end = i;
+                while (end < length && isNameChar(text.charAt(end))) {
+                    end++;
+                }
+                int next = end;
+                while (next < length && Character.isWhitespace(text.charAt(next))) {
+                    next++;
+                }
+                if (next < length && text.charAt(next) == '(') {
+                    String name = text.substring(i, end);
+                    int colon = name.lastIndexOf(':');
+                    if (colon >= 0) {
+                        name = name.substring(colon + 1);
+                    }
+                    for (String f : CONTEXT_FUNCTIONS) {
+                        if (f.equals(name)) {
+                            return false;
+                        }
+                    }
+                }
+                i = end;
+                continue;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.' || c == ':';
+    }
+
+    /**
+     * Returns whether a node can be counted incrementally: it must be a
+     * child of a navigable tree with document order, and neither an
+     * attribute nor a namespace node.
+     *
+     * @param node the node
+     * @return true if the counting methods apply to the node
+     */
+    public static boolean isCountable(XPathNode node) {
+        return node != null && node.getParent() != null
+            && !node.isAttribute() && node.getNodeType() != NodeType.NAMESPACE
+            && node.isFullyNavigable()
+            && node.getDocumentOrder() != 0;
+    }
+
+    /**
+     * Returns the number of preceding siblings of a node that pass a test.
+     *
+     * @param key identifies the counter: the use site and its test
+     * @param node a countable node
+     * @param test the test
+     * @return the number of matching preceding siblings
+     */
+    public int countPrecedingSiblings(Object key, XPathNode node, Test test) {
+        int depth = 0;
+        for (XPathNode a = node.getParent(); a != null; a = a.getParent()) {
+            depth++;
+        }
+        SiblingCursor[] cursors = siblingCursors.get(key);
+        if (cursors == null || cursors.length <= depth) {
+            cursors = cursors == null ? new SiblingCursor[depth + 1]
+                : Arrays.copyOf(cursors, depth + 1);
+            siblingCursors.put(key, cursors);
+        }
+        SiblingCursor cursor = cursors[depth];
+        if (cursor == null) {
+            cursor = new SiblingCursor();
+            cursors[depth] = cursor;
+        }
+        XPathNode last = cursor.node;
+        if (last != null && (last.getDocumentOrder() >= node.getDocumentOrder()
+                || !last.getParent().isSameNode(node.getParent()))) {
+            last = null;
+        }
+        int count = 0;
+        XPathNode sibling = node.getPrecedingSibling();
+        while (sibling != null) {
+            if (last != null && sibling.isSameNode(last)) {
+                count += cursor.count;
+                break;
+            }
+            if (test.matches(sibling)) {
+                count++;
+            }
+            sibling = sibling.getPrecedingSibling();
+        }
+        cursor.node = node;
+        cursor.count = test.matches(node) ? count + 1 : count;
+        return count;
+    }
+
+    /**
+     * Returns the number of nodes up to and including a node in document
+     * order that pass a test, counting only from the last node at or
+     * before it that passes a reset test. This is the number given by
+     * {@code xsl:number level="any"}. Attributes and namespace nodes are
+     * not counted.
+     *
+     * @param key identifies the counter: the use site and its tests
+     * @param node a countable node
+     * @param test the test for counted nodes
+     * @param reset the test for nodes that restart the count, or null
+     * @return the count
+     */
+    public int countInDocumentOrder(Object key, XPathNode node, Test test, Test reset) {
+        Cursor cursor = orderCursors.get(key);
+        if (cursor == null) {
+            cursor = new Cursor();
+            orderCursors.put(key, cursor);
+        }
+        XPathNode root = node.getRoot();
+        XPathNode current = cursor.node;
+        int count = cursor.count;
+        if (current == null || current.getDocumentOrder() > node.getDocumentOrder()
+                || !current.getRoot().isSameNode(root)) {
+            current = root;
+            count = apply(root, 0, test, reset);
+        }
+        while (!current.isSameNode(node)) {
+            current = next(current);
+            if (current == null) {
+                // Not reachable from the cursor: the node is not in order
+                cursor.node = null;
+                return count;
+            }
+            count = apply(current, count, test, reset);
+        }
+        cursor.node = node;
+        cursor.count = count;
+        return count;
+    }
+
+    /**
+     * Returns the number of nodes on the preceding axis of a node that
+     * pass a test.
+     *
+     * @param key identifies the counter: the use site and its test
+     * @param node a countable node
+     * @param test the test
+     * @return the number of matching preceding nodes
+     */
+    public int countPreceding(Object key, XPathNode node, Test test) {
+        int count = countInDocumentOrder(key, node, test, null);
+        if (test.matches(node)) {
+            count--;
+        }
+        for (XPathNode a = node.getParent(); a != null; a = a.getParent()) {
+            if (test.matches(a)) {
+                count--;
+            }
+        }
+        return count;
+    }
+
+    private static int apply(XPathNode node, int count, Test test, Test reset) {
+        if (reset != null && reset.matches(node)) {
+            count = 0;
+        }
+        return test.matches(node) ? count + 1 : count;
+    }
+
+    /**
+     * Returns the node after a node in document order, or null at the end.
+     */
+    private static XPathNode next(XPathNode node) {
+        Iterator<XPathNode> children = node.getChildren();
+        if (children.hasNext()) {
+            return children.next();
+        }
+        for (XPathNode n = node; n != null; n = n.getParent()) {
+            XPathNode sibling = n.getFollowingSibling();
+            if (sibling != null) {
+                return sibling;
+            }
+        }
+        return null;
+    }
+
+    private static final class SiblingCursor {
+        XPathNode node;
+        int count; // matching siblings up to and including node
+    }
+
+    private static final class Cursor {
+        XPathNode node;
+        int count;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * ProfileSite.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.io.Serializable;
+
+/**
+ * A point in a compiled stylesheet that the {@link Profiler} measures: a
+ * template rule, a named template, a function, or an XPath expression
+ * evaluated directly by an instruction.
+ *
+ * <p>Sites are created when a stylesheet is compiled for profiling and
+ * are shared by all its transformations. The location of an expression
+ * is that of the template or function containing it.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class ProfileSite implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The kind of construct measured.
+     */
+    public enum Kind {
+        /** A template rule with a match pattern. */
+        TEMPLATE,
+        /** A template invoked only by name. */
+        NAMED_TEMPLATE,
+        /** An xsl:function. */
+        FUNCTION,
+        /** An XPath expression of an instruction. */
+        EXPRESSION
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final String systemId;
+    private final int lineNumber;
+    private final int columnNumber;
+
+    /**
+     * Creates a site.
+     *
+     * @param kind the kind of construct
+     * @param name the pattern, name or expression text identifying it
+     * @param systemId the system ID of the stylesheet module, or null
+     * @param lineNumber the line number, or -1 if unknown
+     * @param columnNumber the column number, or -1 if unknown
+     */
+    public ProfileSite(Kind kind, String name, String systemId,
+                       int lineNumber, int columnNumber) {
+        this.kind = kind;
+        this.name = name;
+        this.systemId = systemId;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+    }
+
+    /**
+     * Returns the kind of construct.
+     *
+     * @return the kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the pattern, name or expression text identifying the site.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the system ID of the stylesheet module.
+     *
+     * @return the system ID, or null if unknown
+     */
+    public String getSystemId() {
+        return systemId;
+    }
+
+    /**
+     * Returns the line number of the declaration.
+     *
+     * @return the line number, or -1 if unknown
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the column number of the declaration.
+     *
+     * @return the column number, or -1 if unknown
+     */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * Returns the location as {@code systemId:line:column}, leaving out
+     * the parts that are unknown.
+     *
+     * @return the location, or an empty string if unknown
+     */
+    public String getLocation() {
+        StringBuilder buf = new StringBuilder();
+        if (systemId != null) {
+            buf.append(systemId);
+        }
+        if (lineNumber > 0) {
+            buf.append(':').append(lineNumber);
+            if (columnNumber > 0) {
+                buf.append(':').append(columnNumber);
+            }
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public String toString() {
+        String location = getLocation();
+        if (location.isEmpty()) {
+            return kind + " " + name;
+        }
+        return kind + " " + name + " (" + location + ")";
+    }
+
+}
@@ -0,0 +1,383 @@
+/*
+ * Profiler.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bluezoo.json.JSONWriter;
+
+/**
+ * The execution profile of one transformation.
+ *
+ * <p>A stylesheet compiled with profiling enabled has its template and
+ * function bodies, and the XPath expressions their instructions evaluate,
+ * instrumented to report to the profiler of the running transformation
+ * (see {@link ProfileSite}). For each site the profiler counts the calls
+ * and measures the time and the heap allocated, both inclusive of the
+ * sites it called and exclusive of them. Inclusive figures of a recursive
+ * site count only its outermost calls.
+ *
+ * <p>Allocation is measured per thread through the HotSpot thread MXBean;
+ * where that is not available the allocated figures are 0. Each thread,
+ * such as those running xsl:fork branches, is measured on its own, so the
+ * time a thread spends waiting for others counts as its own.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class Profiler {
+
+    private static final MethodHandle ALLOCATED_BYTES = allocatedBytesHandle();
+
+    /**
+     * The measurements of one site.
+     */
+    public static final class Entry {
+
+        private final ProfileSite site;
+        private long calls;
+        private long inclusiveNanos;
+        private long exclusiveNanos;
+        private long inclusiveBytes;
+        private long exclusiveBytes;
+        private int active;
+
+        Entry(ProfileSite site) {
+            this.site = site;
+        }
+
+        void add(Entry other) {
+            calls += other.calls;
+            inclusiveNanos += other.inclusiveNanos;
+            exclusiveNanos += other.exclusiveNanos;
+            inclusiveBytes += other.inclusiveBytes;
+            exclusiveBytes += other.exclusiveBytes;
+        }
+
+        /**
+         * Returns the site measured.
+         *
+         * @return the site
+         */
+        public ProfileSite getSite() {
+            return site;
+        }
+
+        /**
+         * Returns the number of times the site was executed.
+         *
+         * @return the call count
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * Returns the time spent in the site and the sites it called.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getInclusiveNanos() {
+            return inclusiveNanos;
+        }
+
+        /**
+         * Returns the time spent in the site itself.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getExclusiveNanos() {
+            return exclusiveNanos;
+        }
+
+        /**
+         * Returns the heap allocated by the site and the sites it called.
+         *
+         * @return the size in bytes
+         */
+        public long getInclusiveBytes() {
+            return inclusiveBytes;
+        }
+
+        /**
+         * Returns the heap allocated by the site itself.
+         *
+         * @return the size in bytes
+         */
+        public long getExclusiveBytes() {
+            return exclusiveBytes;
+        }
+
+    }
+
+    /**
+     * The call stack and measurements of one thread.
+     */
+    private static final class Recorder {
+
+        private final long threadId = Thread.currentThread().getId();
+        private final Map<ProfileSite, Entry> entries = new IdentityHashMap<ProfileSite, Entry>();
+        private Entry[] stack = new Entry[32];
+        private long[] startNanos = new long[32];
+        private long[] startBytes = new long[32];
+        private long[] childNanos = new long[32];
+        private long[] childBytes = new long[32];
+        private int depth;
+
+        void enter(ProfileSite site) {
+            Entry entry = entries.get(site);
+            if (entry == null) {
+                entry = new Entry(site);
+                entries.put(site, entry);
+            }
+            if (depth == stack.length) {
+                int length = depth * 2;
+                stack = Arrays.copyOf(stack, length);
+                startNanos = Arrays.copyOf(startNanos, length);
+                startBytes = Arrays.copyOf(startBytes, length);
+                childNanos = Arrays.copyOf(childNanos, length);
+                childBytes = Arrays.copyOf(childBytes, length);
+            }
+            entry.active++;
+            stack[depth] = entry;
+            childNanos[depth] = 0L;
+            childBytes[depth] = 0L;
+            startBytes[depth] = allocatedBytes(threadId);
+            startNanos[depth] = System.nanoTime();
+            depth++;
+        }
+
+        void exit() {
+            long now = System.nanoTime();
+            long bytes = allocatedBytes(threadId);
+            if (depth == 0) {
+                return;
+            }
+            depth--;
+            Entry entry = stack[depth];
+            stack[depth] = null;
+            long nanos = now - startNanos[depth];
+            long allocated = bytes - startBytes[depth];
+            entry.calls++;
+            entry.exclusiveNanos += nanos - childNanos[depth];
+            entry.exclusiveBytes += allocated - childBytes[depth];
+            if (--entry.active == 0) {
+                entry.inclusiveNanos += nanos;
+                entry.inclusiveBytes += allocated;
+            }
+            if (depth > 0) {
+                childNanos[depth - 1] += nanos;
+                childBytes[depth - 1] += allocated;
+            }
+        }
+
+    }
+
+    private final List<Recorder> recorders = new ArrayList<Recorder>();
+    private final ThreadLocal<Recorder> recorder = new ThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            Recorder r = new Recorder();
+            synchronized (recorders) {
+                recorders.add(r);
+            }
+            return r;
+        }
+    };
+
+    /**
+     * Records entry to a site by the current thread.
+     *
+     * @param site the site
+     */
+    public void enter(ProfileSite site) {
+        recorder.get().enter(site);
+    }
+
+    /**
+     * Records exit from the site the current thread entered last.
+     */
+    public void exit() {
+        recorder.get().exit();
+    }
+
+    /**
+     * Returns true if the heap allocated by each site is measured.
+     *
+     * @return true if allocation is measured
+     */
+    public static boolean isAllocationMeasured() {
+        return ALLOCATED_BYTES != null;
+    }
+
+    /**
+     * Returns the measurements of every site executed, the sites that took
+     * the most time themselves first. Call this once the transformation
+     * has finished.
+     *
+     * @return the entries
+     */
+    public List<Entry> getEntries() {
+        Map<ProfileSite, Entry> merged = new IdentityHashMap<ProfileSite, Entry>();
+        synchronized (recorders) {
+            for (Recorder r : recorders) {
+                for (Entry entry : r.entries.values()) {
+                    Entry total = merged.get(entry.site);
+                    if (total == null) {
+                        total = new Entry(entry.site);
+                        merged.put(entry.site, total);
+                    }
+                    total.add(entry);
+                }
+            }
+        }
+        List<Entry> entries = new ArrayList<Entry>(merged.values());
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return Long.compare(b.exclusiveNanos, a.exclusiveNanos);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Writes the profile as a JSON array of sites, in the order of
+     * {@link #getEntries}.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the profile cannot be written
+     */
+    public void writeJSON(OutputStream out) throws IOException {
+        JSONWriter writer = new JSONWriter(out);
+        writer.writeStartArray();
+        for (Entry entry : getEntries()) {
+            ProfileSite site = entry.site;
+            writer.writeStartObject();
+            writer.writeKey("kind");
+            writer.writeString(site.getKind().name());
+            writer.writeKey("name");
+            writer.writeString(site.getName());
+            if (site.getSystemId() != null) {
+                writer.writeKey("systemId");
+                writer.writeString(site.getSystemId());
+            }
+            if (site.getLineNumber() > 0) {
+                writer.writeKey("line");
+                writer.writeNumber(Integer.valueOf(site.getLineNumber()));
+            }
+            if (site.getColumnNumber() > 0) {
+                writer.writeKey("column");
+                writer.writeNumber(Integer.valueOf(site.getColumnNumber()));
+            }
+            writer.writeKey("calls");
+            writer.writeNumber(Long.valueOf(entry.calls));
+            writer.writeKey("inclusiveNanos");
+            writer.writeNumber(Long.valueOf(entry.inclusiveNanos));
+            writer.writeKey("exclusiveNanos");
+            writer.writeNumber(Long.valueOf(entry.exclusiveNanos));
+            writer.writeKey("inclusiveBytes");
+            writer.writeNumber(Long.valueOf(entry.inclusiveBytes));
+            writer.writeKey("exclusiveBytes");
+            writer.writeNumber(Long.valueOf(entry.exclusiveBytes));
+            writer.writeEndObject();
+        }
+        writer.writeEndArray();
+        writer.flush();
+    }
+
+    /**
+     * Returns the profile as a table, one line per site in the order of
+     * {@link #getEntries}, with times in milliseconds.
+     *
+     * @return the profile
+     */
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(String.format("%10s %12s %12s %14s %14s  %s%n",
+                "calls", "incl ms", "excl ms", "incl bytes", "excl bytes", "site"));
+        for (Entry entry : getEntries()) {
+            buf.append(String.format("%10d %12.3f %12.3f %14d %14d  %s%n",
+                    entry.calls,
+                    entry.inclusiveNanos / 1e6, entry.exclusiveNanos / 1e6,
+                    entry.inclusiveBytes, entry.exclusiveBytes,
+                    entry.site));
+        }
+        return buf.toString();
+    }
+
+    private static long allocatedBytes(long threadId) {
+        if (ALLOCATED_BYTES == null) {
+            return 0L;
+        }
+        try {
+            return (long) ALLOCATED_BYTES.invokeExact(threadId);
+        } catch (Throwable e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Looks up the per-thread allocation counter of the HotSpot thread
+     * MXBean, preferring the cheaper current-thread form of Java 14 and
+     * later. The handle takes the thread ID.
+     */
+    private static MethodHandle allocatedBytesHandle() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+            if (!type.isInstance(bean)) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle handle;
+            try {
+                handle = lookup.findVirtual(type, "getCurrentThreadAllocatedBytes",
+                        MethodType.methodType(long.class)).bindTo(bean);
+                handle = MethodHandles.dropArguments(handle, 0, long.class);
+            } catch (NoSuchMethodException e) {
+                handle = lookup.findVirtual(type, "getThreadAllocatedBytes",
+                        MethodType.methodType(long.class, long.class)).bindTo(bean);
+            }
+            if ((long) handle.invokeExact(Thread.currentThread().getId()) < 0L) {
+                return null;
+            }
+            return handle;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,941 @@
+/*
+ * SAXEventBuffer.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import org.xml.sax.*;
+import org.xml.sax.ext.LexicalHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+/**
+ * Buffer for capturing and replaying SAX events.
+ *
+ * <p>This buffer stores a sequence of SAX events that can be replayed
+ * multiple times. It's used for:
+ * <ul>
+ *   <li>Building result tree fragments from template content</li>
+ *   <li>Buffering subtrees for non-streamable operations</li>
+ *   <li>Implementing xsl:variable with content</li>
+ * </ul>
+ *
+ * <p>Events are not stored as objects. Each event is appended to a byte
+ * stream as an opcode followed by its operands, written as variable-length
+ * integers: names (URIs, local names, qualified names, prefixes and types)
+ * are indices into a table holding each distinct name once, and character
+ * data - text, comments, attribute values and processing instruction
+ * data - is an offset and length in a single shared character arena.
+ * A buffered element with attributes thus costs a few dozen bytes and no
+ * objects, and replay passes the arena directly to
+ * {@link ContentHandler#characters}.
+ *
+ * <p>{@link #getNavigableRoot} gives a navigable node view over the
+ * encoding itself, so buffered content can be navigated without first
+ * being built into a separate node tree.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
+
+    // Opcodes
+    static final byte START_DOCUMENT = 1;
+    static final byte END_DOCUMENT = 2;
+    static final byte START_PREFIX_MAPPING = 3;
+    static final byte END_PREFIX_MAPPING = 4;
+    static final byte START_ELEMENT = 5;           // uri local qName atts
+    static final byte START_ELEMENT_TYPED = 6;     // ... typeNs typeLocal attTypes
+    static final byte END_ELEMENT = 7;             // uri local qName
+    static final byte CHARACTERS = 8;              // offset length
+    static final byte IGNORABLE_WHITESPACE = 9;    // offset length
+    static final byte PROCESSING_INSTRUCTION = 10; // target offset length+1
+    static final byte SKIPPED_ENTITY = 11;         // name
+    static final byte COMMENT = 12;                // offset length
+    static final byte XPATH_VALUE = 13;            // value index
+
+    /**
+     * Extended ContentHandler that can receive typed XPath values.
+     */
+    public interface XPathValueHandler extends ContentHandler {
+        void xpathValue(XPathValue value) throws SAXException;
+    }
+
+    /**
+     * Stores a typed XPath value event (for non-SAX-serializable items like maps).
+     */
+    public void xpathValue(XPathValue value) {
+        if (recording && value != null) {
+            if (values == null) {
+                values = new ArrayList<>();
+            }
+            appendOp(XPATH_VALUE);
+            appendInt(values.size());
+            values.add(value);
+        }
+    }
+
+    // The encoding: opcodes and operands
+    private byte[] ops = new byte[64];
+    private int opsLength;
+
+    // Character data of all events
+    private char[] chars = new char[64];
+    private int charsLength;
+
+    // Names by index; index 0 is null. Most buffers use a few names, found
+    // by identity scan; the map is only built once there are more.
+    private static final int NAME_SCAN_LIMIT = 16;
+    private String[] names = new String[8];
+    private int nameCount = 1;
+    private Map<String, Integer> nameIndex;
+
+    private List<XPathValue> values;
+    private int eventCount;
+    private boolean recording = true;
+    private EventBufferTree tree;
+
+    /**
+     * Creates a new event buffer.
+     */
+    public SAXEventBuffer() {
+    }
+
+    /**
+     * Returns true if the buffer is empty.
+     *
+     * @return true if no events stored
+     */
+    public boolean isEmpty() {
+        return eventCount == 0;
+    }
+
+    /**
+     * Returns true if this buffer contains meaningful content: elements,
+     * non-zero-length text, comments, or PIs. Zero-length text nodes
+     * and document start/end markers alone are not meaningful.
+     *
+     * @return true if there is meaningful content
+     */
+    public boolean hasNonEmptyContent() {
+        Cursor in = new Cursor(ops);
+        while (in.pos < opsLength) {
+            byte op = ops[in.pos++];
+            switch (op) {
+                case START_ELEMENT:
+                case START_ELEMENT_TYPED:
+                case PROCESSING_INSTRUCTION:
+                case COMMENT:
+                    return true;
+                case CHARACTERS:
+                    in.next();
+                    if (in.next() > 0) {
+                        return true;
+                    }
+                    break;
+                default:
+                    in.skip(op);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of events stored.
+     *
+     * @return the event count
+     */
+    public int size() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the number of bytes the buffered events occupy, not counting
+     * the name table.
+     *
+     * @return the encoded size in bytes
+     */
+    public long getEncodedSize() {
+        return opsLength + 2L * charsLength;
+    }
+
+    /**
+     * Clears all stored events.
+     */
+    public void clear() {
+        if (tree != null) {
+            // The view still reads the old arrays
+            ops = new byte[64];
+            chars = new char[64];
+            tree = null;
+        }
+        opsLength = 0;
+        charsLength = 0;
+        values = null;
+        eventCount = 0;
+    }
+
+    /**
+     * Stops recording and prepares for replay.
+     */
+    public void stopRecording() {
+        recording = false;
+    }
+
+    /**
+     * Returns a navigable view of the buffered events. The root is a
+     * document node whose children are the buffered top-level nodes; the
+     * nodes read their names and content directly from the encoding and
+     * are created only as they are navigated to. The view reflects the
+     * events buffered when it was created.
+     *
+     * @return the root node of the view
+     */
+    public XPathNode getNavigableRoot() {
+        if (tree == null) {
+            tree = new EventBufferTree(ops, opsLength, chars, names);
+        }
+        return tree.getRoot();
+    }
+
+    /**
+     * Replays all stored events to a content handler.
+     * Includes startDocument and endDocument events.
+     *
+     * @param handler the target content handler
+     * @throws SAXException if replay fails
+     */
+    public void replay(ContentHandler handler) throws SAXException {
+        replay(handler, true, null);
+    }
+
+    /**
+     * Replays events without startDocument/endDocument.
+     * Useful for replaying a fragment into an existing document.
+     *
+     * @param handler the target content handler
+     * @throws SAXException if replay fails
+     */
+    public void replayContent(ContentHandler handler) throws SAXException {
+        replay(handler, false, null);
+    }
+
+    /**
+     * Handler interface that supports type annotations during replay.
+     */
+    public interface TypeAwareHandler extends ContentHandler {
+        /**
+         * Called to set type annotation for the current element.
+         *
+         * @param namespaceURI the type namespace URI
+         * @param localName the type local name
+         */
+        void setElementType(String namespaceURI, String localName);
+        
+        /**
+         * Called to set type annotation for an attribute.
+         *
+         * @param attrIndex the attribute index (0-based)
+         * @param namespaceURI the type namespace URI
+         * @param localName the type local name
+         */
+        default void setAttributeType(int attrIndex, String namespaceURI, String localName) {
+            // Default implementation does nothing
+        }
+    }
+
+    /**
+     * Replays events to a type-aware handler, passing type annotations.
+     * If the handler implements TypeAwareHandler, type annotations for
+     * elements and attributes are passed through.
+     *
+     * @param handler the target handler (may implement TypeAwareHandler)
+     * @throws SAXException if replay fails
+     */
+    public void replayContentWithTypes(ContentHandler handler) throws SAXException {
+        TypeAwareHandler typeHandler = (handler instanceof TypeAwareHandler) 
+            ? (TypeAwareHandler) handler : null;
+        replay(handler, false, typeHandler);
+    }
+
+    private void replay(ContentHandler handler, boolean document,
+            TypeAwareHandler typeHandler) throws SAXException {
+        // Snapshot: the handler may not append, but be safe if it does
+        byte[] ops = this.ops;
+        char[] chars = this.chars;
+        String[] names = this.names;
+        int limit = opsLength;
+        Cursor in = new Cursor(ops);
+        EncodedAttributes atts = new EncodedAttributes(chars, names);
+        while (in.pos < limit) {
+            byte op = ops[in.pos++];
+            switch (op) {
+                case START_DOCUMENT:
+                    if (document) {
+                        handler.startDocument();
+                    }
+                    break;
+                case END_DOCUMENT:
+                    if (document) {
+                        handler.endDocument();
+                    }
+                    break;
+                case START_PREFIX_MAPPING: {
+                    String prefix = names[in.next()];
+                    handler.startPrefixMapping(prefix, names[in.next()]);
+                    break;
+                }
+                case END_PREFIX_MAPPING:
+                    handler.endPrefixMapping(names[in.next()]);
+                    break;
+                case START_ELEMENT:
+                case START_ELEMENT_TYPED: {
+                    String uri = names[in.next()];
+                    String localName = names[in.next()];
+                    String qName = names[in.next()];
+                    handler.startElement(uri, localName, qName, atts.read(in));
+                    if (op == START_ELEMENT_TYPED) {
+                        replayTypes(in, names, typeHandler);
+                    }
+                    break;
+                }
+                case END_ELEMENT: {
+                    String uri = names[in.next()];
+                    String localName = names[in.next()];
+                    handler.endElement(uri, localName, names[in.next()]);
+                    break;
+                }
+                case CHARACTERS: {
+                    int offset = in.next();
+                    handler.characters(chars, offset, in.next());
+                    break;
+                }
+                case IGNORABLE_WHITESPACE: {
+                    int offset = in.next();
+                    handler.ignorableWhitespace(chars, offset, in.next());
+                    break;
+                }
+                case PROCESSING_INSTRUCTION: {
+                    String target = names[in.next()];
+                    handler.processingInstruction(target, in.nextString(chars));
+                    break;
+                }
+                case SKIPPED_ENTITY:
+                    handler.skippedEntity(names[in.next()]);
+                    break;
+                case COMMENT: {
+                    int offset = in.next();
+                    int length = in.next();
+                    // Comments need LexicalHandler
+                    if (handler instanceof LexicalHandler) {
+                        ((LexicalHandler) handler).comment(chars, offset, length);
+                    }
+                    break;
+                }
+                case XPATH_VALUE: {
+                    XPathValue value = values.get(in.next());
+                    if (handler instanceof XPathValueHandler) {
+                        ((XPathValueHandler) handler).xpathValue(value);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Bad opcode " + op);
+            }
+        }
+    }
+
+    private static void replayTypes(Cursor in, String[] names,
+            TypeAwareHandler typeHandler) {
+        String typeNamespaceURI = names[in.next()];
+        String typeLocalName = names[in.next()];
+        if (typeHandler != null && typeLocalName != null) {
+            typeHandler.setElementType(typeNamespaceURI, typeLocalName);
+        }
+        int count = in.next();
+        for (int i = 0; i < count; i++) {
+            if (in.next() != 0) {
+                String namespaceURI = names[in.next()];
+                String localName = names[in.next()];
+                if (typeHandler != null) {
+                    typeHandler.setAttributeType(i, namespaceURI, localName);
+                }
+            }
+        }
+    }
+
+    // ContentHandler implementation
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        // Locator is not stored
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        if (recording) {
+            appendOp(START_DOCUMENT);
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        if (recording) {
+            appendOp(END_DOCUMENT);
+        }
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        if (recording) {
+            appendOp(START_PREFIX_MAPPING);
+            appendName(prefix);
+            appendName(uri);
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        if (recording) {
+            appendOp(END_PREFIX_MAPPING);
+            appendName(prefix);
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) 
+            throws SAXException {
+        if (recording) {
+            appendStartElement(START_ELEMENT, uri, localName, qName, atts);
+        }
+    }
+
+    /**
+     * Records a startElement with element type annotation.
+     *
+     * @param uri the element namespace URI
+     * @param localName the element local name
+     * @param qName the element qualified name
+     * @param atts the element attributes
+     * @param typeNamespaceURI the type annotation namespace URI
+     * @param typeLocalName the type annotation local name
+     * @throws SAXException if recording fails
+     */
+    public void startElementWithType(String uri, String localName, String qName, Attributes atts,
+            String typeNamespaceURI, String typeLocalName) throws SAXException {
+        startElementWithTypes(uri, localName, qName, atts, typeNamespaceURI, typeLocalName, null);
+    }
+
+    /**
+     * Records a startElement with element and attribute type annotations.
+     *
+     * @param uri the element namespace URI
+     * @param localName the element local name
+     * @param qName the element qualified name
+     * @param atts the element attributes
+     * @param typeNamespaceURI the element type annotation namespace URI
+     * @param typeLocalName the element type annotation local name
+     * @param attributeTypes list of attribute type annotations [namespaceURI, localName] by index
+     * @throws SAXException if recording fails
+     */
+    public void startElementWithTypes(String uri, String localName, String qName, Attributes atts,
+            String typeNamespaceURI, String typeLocalName, 
+            List<String[]> attributeTypes) throws SAXException {
+        if (!recording) {
+            return;
+        }
+        boolean hasAttributeTypes = attributeTypes != null && !attributeTypes.isEmpty();
+        if (typeLocalName == null && !hasAttributeTypes) {
+            appendStartElement(START_ELEMENT, uri, localName, qName, atts);
+            return;
+        }
+        appendStartElement(START_ELEMENT_TYPED, uri, localName, qName, atts);
+        appendName(typeNamespaceURI);
+        appendName(typeLocalName);
+        if (!hasAttributeTypes) {
+            appendInt(0);
+            return;
+        }
+        appendInt(attributeTypes.size());
+        for (int i = 0; i < attributeTypes.size(); i++) {
+            String[] attrType = attributeTypes.get(i);
+            if (attrType == null) {
+                appendInt(0);
+            } else {
+                appendInt(1);
+                appendName(attrType[0]);
+                appendName(attrType[1]);
+            }
+        }
+    }
+
+    private void appendStartElement(byte op, String uri, String localName, String qName,
+            Attributes atts) {
+        appendOp(op);
+        appendName(uri);
+        appendName(localName);
+        appendName(qName);
+        int count = atts != null ? atts.getLength() : 0;
+        appendInt(count);
+        for (int i = 0; i < count; i++) {
+            appendName(atts.getURI(i));
+            appendName(atts.getLocalName(i));
+            appendName(atts.getQName(i));
+            appendName(atts.getType(i));
+            appendString(atts.getValue(i));
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (recording) {
+            appendOp(END_ELEMENT);
+            appendName(uri);
+            appendName(localName);
+            appendName(qName);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (recording) {
+            appendOp(CHARACTERS);
+            appendChars(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        if (recording) {
+            appendOp(IGNORABLE_WHITESPACE);
+            appendChars(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException {
+        if (recording) {
+            appendOp(PROCESSING_INSTRUCTION);
+            appendName(target);
+            appendString(data);
+        }
+    }
+
+    @Override
+    public void skippedEntity(String name) throws SAXException {
+        if (recording) {
+            appendOp(SKIPPED_ENTITY);
+            appendName(name);
+        }
+    }
+
+    /**
+     * Returns the text content of all character events concatenated.
+     * This extracts only text nodes, ignoring element structure.
+     *
+     * @return the concatenated text content
+     */
+    public String getTextContent() {
+        StringBuilder sb = new StringBuilder();
+        Cursor in = new Cursor(ops);
+        while (in.pos < opsLength) {
+            byte op = ops[in.pos++];
+            if (op == CHARACTERS) {
+                int offset = in.next();
+                sb.append(chars, offset, in.next());
+            } else {
+                in.skip(op);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getTextContent();
+    }
+
+    // LexicalHandler implementation
+
+    @Override
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        if (recording) {
+            appendOp(COMMENT);
+            appendChars(ch, start, length);
+        }
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) throws SAXException {
+        // DTD events not captured in RTF buffers
+    }
+
+    @Override
+    public void endDTD() throws SAXException {
+        // DTD events not captured in RTF buffers
+    }
+
+    @Override
+    public void startEntity(String name) throws SAXException {
+        // Entity boundary events not captured in RTF buffers
+    }
+
+    @Override
+    public void endEntity(String name) throws SAXException {
+        // Entity boundary events not captured in RTF buffers
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+        // CDATA section markers not captured (content is captured as characters)
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+        // CDATA section markers not captured
+    }
+
+    // -- Encoding --
+
+    private void appendOp(byte op) {
+        if (opsLength == ops.length) {
+            ops = Arrays.copyOf(ops, opsLength * 2);
+        }
+        ops[opsLength++] = op;
+        eventCount++;
+        tree = null;
+    }
+
+    /** Appends an unsigned variable-length integer, 7 bits per byte. */
+    private void appendInt(int value) {
+        if (opsLength + 5 > ops.length) {
+            ops = Arrays.copyOf(ops, Math.max(opsLength * 2, opsLength + 5));
+        }
+        while ((value & ~0x7f) != 0) {
+            ops[opsLength++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        ops[opsLength++] = (byte) value;
+    }
+
+    private void appendName(String name) {
+        if (name == null) {
+            appendInt(0);
+            return;
+        }
+        if (nameIndex == null) {
+            for (int i = 1; i < nameCount; i++) {
+                if (names[i] == name) {
+                    appendInt(i);
+                    return;
+                }
+            }
+            for (int i = 1; i < nameCount; i++) {
+                if (names[i].equals(name)) {
+                    appendInt(i);
+                    return;
+                }
+            }
+            if (nameCount == NAME_SCAN_LIMIT) {
+                nameIndex = new HashMap<>();
+                for (int i = 1; i < nameCount; i++) {
+                    nameIndex.put(names[i], Integer.valueOf(i));
+                }
+            }
+        } else {
+            Integer index = nameIndex.get(name);
+            if (index != null) {
+                appendInt(index.intValue());
+                return;
+            }
+        }
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+        }
+        int index = nameCount++;
+        names[index] = name;
+        if (nameIndex != null) {
+            nameIndex.put(name, Integer.valueOf(index));
+        }
+        appendInt(index);
+    }
+
+    private void appendChars(char[] ch, int start, int length) {
+        ensureChars(length);
+        System.arraycopy(ch, start, chars, charsLength, length);
+        appendInt(charsLength);
+        appendInt(length);
+        charsLength += length;
+    }
+
+    /** Appends a possibly null string as offset and length + 1 (0 for null). */
+    private void appendString(String s) {
+        if (s == null) {
+            appendInt(0);
+            appendInt(0);
+            return;
+        }
+        int length = s.length();
+        ensureChars(length);
+        s.getChars(0, length, chars, charsLength);
+        appendInt(charsLength);
+        appendInt(length + 1);
+        charsLength += length;
+    }
+
+    private void ensureChars(int length) {
+        if (charsLength + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsLength + length));
+        }
+    }
+
+    /**
+     * Reads operands from an encoded event stream.
+     */
+    static final class Cursor {
+
+        final byte[] ops;
+        int pos;
+
+        Cursor(byte[] ops) {
+            this.ops = ops;
+        }
+
+        Cursor(byte[] ops, int pos) {
+            this.ops = ops;
+            this.pos = pos;
+        }
+
+        /** Reads an unsigned variable-length integer. */
+        int next() {
+            int b = ops[pos++];
+            if (b >= 0) {
+                return b;
+            }
+            int value = b & 0x7f;
+            int shift = 7;
+            while (true) {
+                b = ops[pos++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        /** Reads a string written as offset and length + 1. */
+        String nextString(char[] chars) {
+            int offset = next();
+            int length = next();
+            return length == 0 ? null : new String(chars, offset, length - 1);
+        }
+
+        /** Skips the operands of an event whose opcode has been read. */
+        void skip(byte op) {
+            switch (op) {
+                case START_DOCUMENT:
+                case END_DOCUMENT:
+                    break;
+                case END_PREFIX_MAPPING:
+                case SKIPPED_ENTITY:
+                case XPATH_VALUE:
+                    next();
+                    break;
+                case START_PREFIX_MAPPING:
+                case CHARACTERS:
+                case IGNORABLE_WHITESPACE:
+                case COMMENT:
+                    next();
+                    next();
+                    break;
+                case END_ELEMENT:
+                case PROCESSING_INSTRUCTION:
+                    next();
+                    next();
+                    next();
+                    break;
+                case START_ELEMENT:
+                case START_ELEMENT_TYPED:
+                    next();
+                    next();
+                    next();
+                    skipAttributes();
+                    if (op == START_ELEMENT_TYPED) {
+                        skipTypes();
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Bad opcode " + op);
+            }
+        }
+
+        void skipAttributes() {
+            int count = next();
+            for (int i = 0; i < count; i++) {
+                next();
+                next();
+                next();
+                next();
+                next();
+                next();
+            }
+        }
+
+        void skipTypes() {
+            next();
+            next();
+            int count = next();
+            for (int i = 0; i < count; i++) {
+                if (next() != 0) {
+                    next();
+                    next();
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The attributes of a buffered start element, read from the encoding.
+     * One instance is refilled for each element of a replay: as SAX
+     * specifies, the attributes are only valid during startElement.
+     */
+    static final class EncodedAttributes implements Attributes {
+
+        private static final int FIELDS = 6; // uri local qName type offset length+1
+
+        private final char[] chars;
+        private final String[] names;
+        private int[] fields = new int[4 * FIELDS];
+        private int length;
+
+        EncodedAttributes(char[] chars, String[] names) {
+            this.chars = chars;
+            this.names = names;
+        }
+
+        /** Reads an attribute count and the attributes that follow. */
+        EncodedAttributes read(Cursor in) {
+            length = in.next();
+            int size = length * FIELDS;
+            if (size > fields.length) {
+                fields = new int[size];
+            }
+            for (int i = 0; i < size; i++) {
+                fields[i] = in.next();
+            }
+            return this;
+        }
+
+        @Override
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public String getURI(int index) {
+            return inRange(index) ? names[fields[index * FIELDS]] : null;
+        }
+
+        @Override
+        public String getLocalName(int index) {
+            return inRange(index) ? names[fields[index * FIELDS + 1]] : null;
+        }
+
+        @Override
+        public String getQName(int index) {
+            return inRange(index) ? names[fields[index * FIELDS + 2]] : null;
+        }
+
+        @Override
+        public String getType(int index) {
+            return inRange(index) ? names[fields[index * FIELDS + 3]] : null;
+        }
+
+        @Override
+        public String getValue(int index) {
+            if (!inRange(index)) {
+                return null;
+            }
+            int length = fields[index * FIELDS + 5];
+            if (length == 0) {
+                return null;
+            }
+            return new String(chars, fields[index * FIELDS + 4], length - 1);
+        }
+
+        @Override
+        public int getIndex(String uri, String localName) {
+            int count = getLength();
+            for (int i = 0; i < count; i++) {
+                String attrUri = getURI(i);
+                if ((attrUri == null ? "" : attrUri).equals(uri == null ? "" : uri)
+                        && localName.equals(getLocalName(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int getIndex(String qName) {
+            int count = getLength();
+            for (int i = 0; i < count; i++) {
+                if (qName.equals(getQName(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String getType(String uri, String localName) {
+            return getType(getIndex(uri, localName));
+        }
+
+        @Override
+        public String getType(String qName) {
+            return getType(getIndex(qName));
+        }
+
+        @Override
+        public String getValue(String uri, String localName) {
+            return getValue(getIndex(uri, localName));
+        }
+
+        @Override
+        public String getValue(String qName) {
+            return getValue(getIndex(qName));
+        }
+
+        private boolean inRange(int index) {
+            return index >= 0 && index < length;
+        }
+
+    }
+
+}
@@ -0,0 +1,945 @@
+/*
+ * StreamingNode.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import org.bluezoo.gonzalez.schema.PSVIProvider;
+import org.bluezoo.gonzalez.schema.TypedValue;
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNodeWithBaseURI;
+import org.xml.sax.Attributes;
+
+import java.util.*;
+
+/**
+ * XPathNode implementation for streaming transformation.
+ *
+ * <p>This node implementation supports the subset of XPath navigation
+ * available during streaming. It maintains references to ancestors
+ * and attributes, but children are processed on-the-fly.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class StreamingNode implements XPathNode, XPathNodeWithBaseURI {
+
+    private final NodeType nodeType;
+    private final String namespaceURI;
+    private final String localName;
+    private final String prefix;
+    private final String stringValue;
+    private final StreamingNode parent;
+    /** Document root; null when this node is the root. */
+    private final StreamingNode documentRoot;
+    private final List<StreamingNode> attributes;
+    private Map<String, String> namespaceBindings;
+    private boolean namespaceBindingsShared;
+    private final long documentOrder;
+    private final String attributeType;  // DTD attribute type (ID, IDREF, CDATA, etc.)
+    private final TypedValue typedValue; // Schema typed value (from XSD validation)
+    private final String documentBaseURI; // Base URI for the document (on root nodes only)
+    private final String typeNamespaceURI;  // Schema type annotation namespace URI
+    private final String typeLocalName;     // Schema type annotation local name
+
+    // For element nodes - track children as they're added
+    private final List<StreamingNode> children;
+    /**
+     * Lazy index of element children by local name; invalidated when children
+     * change. Volatile and only assigned once built, as parallel partitions
+     * may read the same tree.
+     */
+    private volatile Map<String, List<StreamingNode>> elementChildrenByLocalName;
+    private StreamingNode followingSibling;
+    private StreamingNode precedingSibling;
+    private volatile List<XPathNode> cachedNamespaceNodes;
+    private volatile String cachedStringValue;
+    private int namespaceNodeCount;
+    
+    // Per-node base URI override (from external entity expansion)
+    private String entityBaseURI;
+    
+    // For root nodes - DTD unparsed entity declarations: name → [publicId, systemId, notationName]
+    private Map<String, String[]> unparsedEntities;
+
+    /**
+     * Creates a root node.
+     *
+     * @return a new root node
+     */
+    public static StreamingNode createRoot() {
+        return createRoot(null);
+    }
+    
+    /**
+     * Creates a root node with a base URI.
+     *
+     * @param baseURI the base URI of the document (typically from the source's system ID)
+     * @return a new root node
+     */
+    public static StreamingNode createRoot(String baseURI) {
+        return new StreamingNode(NodeType.ROOT, null, null, null, null, null, 
+            Collections.emptyMap(), 0, null, null, baseURI);
+    }
+
+    /**
+     * Creates an element node.
+     *
+     * @param namespaceURI the element namespace URI
+     * @param localName the element local name
+     * @param prefix the element prefix
+     * @param atts the SAX attributes
+     * @param namespaceBindings namespace bindings in scope
+     * @param parent the parent node
+     * @param documentOrder the document order position
+     * @return a new element node
+     */
+    public static StreamingNode createElement(String namespaceURI, String localName, 
+            String prefix, Attributes atts, Map<String, String> namespaceBindings,
+            StreamingNode parent, long documentOrder) {
+        return createElement(namespaceURI, localName, prefix, atts, namespaceBindings,
+            parent, documentOrder, null);
+    }
+    
+    /**
+     * Creates an element node with PSVI type information.
+     *
+     * @param namespaceURI the element namespace URI
+     * @param localName the element local name
+     * @param prefix the element prefix
+     * @param atts the SAX attributes
+     * @param namespaceBindings namespace bindings in scope
+     * @param parent the parent node
+     * @param documentOrder the document order position
+     * @param psvi the PSVIProvider for type information, or null to use SAX Attributes directly
+     */
+    public static StreamingNode createElement(String namespaceURI, String localName, 
+            String prefix, Attributes atts, Map<String, String> namespaceBindings,
+            StreamingNode parent, long documentOrder, PSVIProvider psvi) {
+        
+        StreamingNode element = new StreamingNode(NodeType.ELEMENT, namespaceURI, localName,
+            prefix, null, parent, namespaceBindings, documentOrder);
+        
+        // Count non-empty namespace bindings for document order offset
+        // Namespace nodes use orders [elementOrder+1 .. elementOrder+nsCount]
+        // Attribute nodes use orders [elementOrder+nsCount+1 .. ]
+        int nsCount = 0;
+        for (Map.Entry<String, String> entry : namespaceBindings.entrySet()) {
+            String nsUri = entry.getValue();
+            if (nsUri != null && !nsUri.isEmpty()) {
+                nsCount++;
+            }
+        }
+        // Include the implicit xml namespace
+        if (!namespaceBindings.containsKey("xml")) {
+            nsCount++;
+        }
+        element.namespaceNodeCount = nsCount;
+        
+        // Create attribute nodes - offset past namespace nodes
+        if (atts != null) {
+            for (int i = 0; i < atts.getLength(); i++) {
+                // Get type info from PSVIProvider if available, otherwise from SAX Attributes
+                String attrType;
+                TypedValue attrTypedValue = null;
+                
+                if (psvi != null) {
+                    attrType = psvi.getDTDAttributeType(i);
+                    attrTypedValue = psvi.getAttributeTypedValue(i);
+                } else {
+                    attrType = atts.getType(i);  // DTD type: ID, IDREF, CDATA, etc.
+                }
+                
+                StreamingNode attr = new StreamingNode(
+                    NodeType.ATTRIBUTE,
+                    atts.getURI(i),
+                    atts.getLocalName(i),
+                    OutputHandlerUtils.extractPrefix(atts.getQName(i)),
+                    atts.getValue(i),
+                    element,
+                    Collections.emptyMap(),
+                    documentOrder + nsCount + i + 1,
+                    attrType,
+                    attrTypedValue
+                );
+                element.attributes.add(attr);
+            }
+        }
+        
+        return element;
+    }
+
+    /**
+     * Adds an attribute received through Gonzalez's native XML event path.
+     *
+     * <p>The caller supplies the final document order because namespace
+     * nodes precede attribute nodes in the XPath data model. This avoids
+     * constructing a transient SAX {@link Attributes} collection merely to
+     * create the permanent attribute node.
+     */
+    public void addNativeAttribute(String namespaceURI, String localName,
+            String prefix, String value, String attributeType,
+            TypedValue typedValue, long attributeDocumentOrder) {
+        if (nodeType != NodeType.ELEMENT) {
+            throw new IllegalStateException("Attributes can only be added to elements");
+        }
+        StreamingNode attr = new StreamingNode(
+            NodeType.ATTRIBUTE,
+            namespaceURI,
+            localName,
+            prefix,
+            value,
+            this,
+            Collections.emptyMap(),
+            attributeDocumentOrder,
+            attributeType,
+            typedValue
+        );
+        attributes.add(attr);
+    }
+
+    /**
+     * Creates a text node.
+     *
+     * @param text the text content
+     * @param parent the parent node
+     * @param documentOrder the document order position
+     * @return a new text node
+     */
+    public static StreamingNode createText(String text, StreamingNode parent, long documentOrder) {
+        return new StreamingNode(NodeType.TEXT, null, null, null, text, parent,
+            Collections.emptyMap(), documentOrder);
+    }
+
+    /**
+     * Creates a comment node.
+     *
+     * @param text the comment text
+     * @param parent the parent node
+     * @param documentOrder the document order position
+     * @return a new comment node
+     */
+    public static StreamingNode createComment(String text, StreamingNode parent, long documentOrder) {
+        return new StreamingNode(NodeType.COMMENT, null, null, null, text, parent,
+            Collections.emptyMap(), documentOrder);
+    }
+
+    /**
+     * Creates a processing instruction node.
+     *
+     * @param target the PI target
+     * @param data the PI data
+     * @param parent the parent node
+     * @param documentOrder the document order position
+     * @return a new processing instruction node
+     */
+    public static StreamingNode createPI(String target, String data, StreamingNode parent, 
+            long documentOrder) {
+        return new StreamingNode(NodeType.PROCESSING_INSTRUCTION, null, target, null, data,
+            parent, Collections.emptyMap(), documentOrder);
+    }
+
+    private StreamingNode(NodeType nodeType, String namespaceURI, String localName,
+            String prefix, String stringValue, StreamingNode parent,
+            Map<String, String> namespaceBindings, long documentOrder) {
+        this(nodeType, namespaceURI, localName, prefix, stringValue, parent, 
+             namespaceBindings, documentOrder, null, null, null);
+    }
+    
+    private StreamingNode(NodeType nodeType, String namespaceURI, String localName,
+            String prefix, String stringValue, StreamingNode parent,
+            Map<String, String> namespaceBindings, long documentOrder, String attributeType) {
+        this(nodeType, namespaceURI, localName, prefix, stringValue, parent, 
+             namespaceBindings, documentOrder, attributeType, null, null);
+    }
+    
+    private StreamingNode(NodeType nodeType, String namespaceURI, String localName,
+            String prefix, String stringValue, StreamingNode parent,
+            Map<String, String> namespaceBindings, long documentOrder, 
+            String attributeType, TypedValue typedValue) {
+        this(nodeType, namespaceURI, localName, prefix, stringValue, parent, 
+             namespaceBindings, documentOrder, attributeType, typedValue, null);
+    }
+    
+    private StreamingNode(NodeType nodeType, String namespaceURI, String localName,
+            String prefix, String stringValue, StreamingNode parent,
+            Map<String, String> namespaceBindings, long documentOrder, 
+            String attributeType, TypedValue typedValue, String documentBaseURI) {
+        this.nodeType = nodeType;
+        this.namespaceURI = namespaceURI != null && !namespaceURI.isEmpty() ? namespaceURI : null;
+        this.localName = localName;
+        this.prefix = prefix;
+        this.stringValue = stringValue;
+        this.parent = parent;
+        this.documentRoot = parent == null ? null
+            : (parent.documentRoot != null ? parent.documentRoot : parent);
+        if (parent != null && namespaceBindings == parent.namespaceBindings) {
+            this.namespaceBindings = parent.namespaceBindings;
+            this.namespaceBindingsShared = true;
+        } else {
+            this.namespaceBindings = new HashMap<>(namespaceBindings);
+            this.namespaceBindingsShared = false;
+        }
+        this.documentOrder = documentOrder;
+        this.attributeType = attributeType;
+        this.typedValue = typedValue;
+        this.documentBaseURI = documentBaseURI;
+        
+        if (typedValue != null) {
+            this.typeNamespaceURI = typedValue.getDatatypeURI();
+            this.typeLocalName = typedValue.getDatatypeLocalName();
+        } else if (attributeType != null && isDtdTypedAttribute(attributeType)) {
+            this.typeNamespaceURI = "http://www.w3.org/2001/XMLSchema";
+            this.typeLocalName = attributeType;
+        } else {
+            this.typeNamespaceURI = null;
+            this.typeLocalName = null;
+        }
+        
+        this.attributes = new ArrayList<>();
+        this.children = new ArrayList<>();
+        
+        // Link to parent's children
+        if (parent != null && nodeType != NodeType.ATTRIBUTE && nodeType != NodeType.NAMESPACE) {
+            if (!parent.children.isEmpty()) {
+                StreamingNode prevSibling = parent.children.get(parent.children.size() - 1);
+                prevSibling.followingSibling = this;
+                this.precedingSibling = prevSibling;
+            }
+            parent.children.add(this);
+        }
+    }
+
+    @Override
+    public NodeType getNodeType() {
+        return nodeType;
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return namespaceURI;
+    }
+
+    @Override
+    public String getLocalName() {
+        return localName;
+    }
+
+    @Override
+    public String getPrefix() {
+        return prefix;
+    }
+    
+    /**
+     * Returns the base URI of this node.
+     *
+     * <p>For nodes in a document loaded from a URI, the base URI is the
+     * document's URI (or as modified by xml:base attributes). This is used
+     * by functions like document() that need to resolve relative URIs.
+     *
+     * @return the base URI, or null if not set
+     */
+    @Override
+    public String getBaseURI() {
+        // For root nodes, return the document base URI directly
+        if (nodeType == NodeType.ROOT) {
+            return documentBaseURI;
+        }
+        // Per-node base URI from external entity expansion takes priority
+        if (entityBaseURI != null) {
+            return entityBaseURI;
+        }
+        // For other nodes, walk up checking for entity base URIs or xml:base,
+        // ultimately falling back to the document root's base URI
+        StreamingNode current = parent;
+        while (current != null) {
+            if (current.entityBaseURI != null) {
+                return current.entityBaseURI;
+            }
+            if (current.nodeType == NodeType.ROOT) {
+                return current.documentBaseURI;
+            }
+            current = current.parent;
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the document URI of this node.
+     *
+     * <p>Only root nodes have a document URI. For other node types, returns null.
+     *
+     * @return the document URI, or null
+     */
+    @Override
+    public String getDocumentURI() {
+        if (nodeType == NodeType.ROOT) {
+            return documentBaseURI;
+        }
+        return null;
+    }
+    
+    /**
+     * Sets the base URI for this node from an external entity source.
+     * Used when the node originates from an expanded external entity
+     * whose system ID differs from the document's.
+     */
+    public void setEntityBaseURI(String uri) {
+        this.entityBaseURI = uri;
+    }
+    
+    @Override
+    public String getEntityBaseURI() {
+        return entityBaseURI;
+    }
+    
+    /**
+     * Registers an unparsed entity declaration from the DTD.
+     * Only meaningful on root (document) nodes.
+     */
+    public void addUnparsedEntity(String name, String publicId, String systemId, String notationName) {
+        if (unparsedEntities == null) {
+            unparsedEntities = new HashMap<String, String[]>();
+        }
+        unparsedEntities.put(name, new String[]{publicId, systemId, notationName});
+    }
+    
+    /**
+     * Returns the unparsed entity declaration for the given name, or null.
+     * Result array: [publicId, systemId, notationName].
+     */
+    public String[] getUnparsedEntity(String name) {
+        if (unparsedEntities == null) {
+            return null;
+        }
+        return unparsedEntities.get(name);
+    }
+
+    @Override
+    public String getStringValue() {
+        if (stringValue != null) {
+            return stringValue;
+        }
+        // For element/root, concatenate descendant text (cached)
+        if (nodeType == NodeType.ELEMENT || nodeType == NodeType.ROOT) {
+            String value = cachedStringValue;
+            if (value != null) {
+                return value;
+            }
+            // Fast path: single text child (common for leaf elements like <item>value</item>)
+            if (children.size() == 1) {
+                StreamingNode only = children.get(0);
+                if (only.nodeType == NodeType.TEXT) {
+                    value = only.stringValue != null ? only.stringValue : "";
+                    cachedStringValue = value;
+                    return value;
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            appendDescendantText(sb);
+            value = sb.toString();
+            cachedStringValue = value;
+            return value;
+        }
+        return "";
+    }
+    
+    /**
+     * Returns the type annotation namespace URI for this node.
+     *
+     * <p>For schema-aware processing, elements and attributes have
+     * type annotations from validation. This provides the namespace URI
+     * of the type (e.g., "http://www.w3.org/2001/XMLSchema" for XSD types).
+     *
+     * @return the type namespace URI, or null if not annotated
+     */
+    @Override
+    public String getTypeNamespaceURI() {
+        return typeNamespaceURI;
+    }
+    
+    /**
+     * Returns the type annotation local name for this node.
+     *
+     * <p>For schema-aware processing, elements and attributes have
+     * type annotations from validation. This provides the local name
+     * of the type (e.g., "integer", "string", "date" for XSD types).
+     *
+     * @return the type local name, or null if not annotated
+     */
+    @Override
+    public String getTypeLocalName() {
+        return typeLocalName;
+    }
+
+    private void appendDescendantText(StringBuilder sb) {
+        for (StreamingNode child : children) {
+            if (child.nodeType == NodeType.TEXT) {
+                sb.append(child.stringValue);
+            } else if (child.nodeType == NodeType.ELEMENT) {
+                child.appendDescendantText(sb);
+            }
+        }
+    }
+
+    @Override
+    public XPathNode getParent() {
+        return parent;
+    }
+
+    @Override
+    public Iterator<XPathNode> getChildren() {
+        final Iterator<StreamingNode> it = children.iterator();
+        return new Iterator<XPathNode>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            @Override
+            public XPathNode next() {
+                return it.next();
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<XPathNode> getAttributes() {
+        final Iterator<StreamingNode> it = attributes.iterator();
+        return new Iterator<XPathNode>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            @Override
+            public XPathNode next() {
+                return it.next();
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public XPathNode getAttribute(String namespaceURI, String localName) {
+        if (localName == null || attributes.isEmpty()) {
+            return null;
+        }
+        String ns = namespaceURI == null ? "" : namespaceURI;
+        for (int i = 0; i < attributes.size(); i++) {
+            StreamingNode attr = attributes.get(i);
+            String attrNs = attr.namespaceURI;
+            if (attrNs == null) {
+                attrNs = "";
+            }
+            if (ns.equals(attrNs) && localName.equals(attr.localName)) {
+                return attr;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<XPathNode> getNamespaces() {
+        // Only element nodes have namespace nodes
+        if (nodeType != NodeType.ELEMENT) {
+            return Collections.<XPathNode>emptyIterator();
+        }
+        List<XPathNode> nsNodes = cachedNamespaceNodes;
+        if (nsNodes != null) {
+            return nsNodes.iterator();
+        }
+        nsNodes = new ArrayList<>();
+        int index = 0;
+        for (Map.Entry<String, String> entry : namespaceBindings.entrySet()) {
+            String uri = entry.getValue();
+            if (uri != null && !uri.isEmpty()) {
+                nsNodes.add(new NamespaceNode(entry.getKey(), uri, this, index));
+                index++;
+            }
+        }
+        if (!namespaceBindings.containsKey("xml")) {
+            nsNodes.add(new NamespaceNode("xml", "http://www.w3.org/XML/1998/namespace", this, index));
+        }
+        cachedNamespaceNodes = nsNodes;
+        return nsNodes.iterator();
+    }
+
+    @Override
+    public XPathNode getFollowingSibling() {
+        return followingSibling;
+    }
+
+    @Override
+    public XPathNode getPrecedingSibling() {
+        return precedingSibling;
+    }
+
+    @Override
+    public long getDocumentOrder() {
+        return documentOrder;
+    }
+
+    @Override
+    public boolean isSameNode(XPathNode other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof StreamingNode)) return false;
+        return documentOrder == ((StreamingNode) other).documentOrder;
+    }
+
+    @Override
+    public XPathNode getRoot() {
+        return documentRoot != null ? documentRoot : this;
+    }
+
+    @Override
+    public boolean isFullyNavigable() {
+        // Streaming nodes become fully navigable once their subtree is complete
+        return true;
+    }
+
+    /**
+     * Returns the DTD attribute type (ID, IDREF, CDATA, etc.) for attribute nodes.
+     *
+     * @return the attribute type, or null if not an attribute or type unknown
+     */
+    public String getAttributeType() {
+        return attributeType;
+    }
+    
+    /**
+     * Checks if this attribute node has DTD type ID.
+     *
+     * @return true if this is an ID attribute
+     */
+    public boolean isIdAttribute() {
+        return "ID".equals(attributeType);
+    }
+
+    private static boolean isDtdTypedAttribute(String dtdType) {
+        return "ID".equals(dtdType) ||
+               "IDREF".equals(dtdType) ||
+               "IDREFS".equals(dtdType) ||
+               "NMTOKEN".equals(dtdType) ||
+               "NMTOKENS".equals(dtdType) ||
+               "ENTITY".equals(dtdType) ||
+               "ENTITIES".equals(dtdType);
+    }
+    
+    /**
+     * Returns the schema typed value for this node.
+     *
+     * <p>This is populated when XSD validation is active and provides
+     * the typed (Java object) representation of the node's value.
+     *
+     * @return the typed value, or null if not available
+     */
+    public TypedValue getTypedValue() {
+        return typedValue;
+    }
+
+    /**
+     * Returns the namespace bindings in scope for this element.
+     *
+     * @return an unmodifiable map of prefix to namespace URI
+     */
+    public Map<String, String> getNamespaceBindings() {
+        return Collections.unmodifiableMap(namespaceBindings);
+    }
+
+    /**
+     * Returns the raw in-scope namespace map for constructing child nodes.
+     * Shared across siblings when no new declarations are present (copy-on-write).
+     */
+    public Map<String, String> getNamespaceBindingsForChild() {
+        return namespaceBindings;
+    }
+
+    /**
+     * Looks up a namespace URI by prefix.
+     * Searches from this element up to the root.
+     *
+     * @param prefix the namespace prefix (null for default namespace)
+     * @return the namespace URI, or null if not found
+     */
+    public String lookupNamespaceURI(String prefix) {
+        if (prefix == null) {
+            prefix = "";
+        }
+        String uri = namespaceBindings.get(prefix);
+        if (uri != null) {
+            return uri;
+        }
+        if (parent != null) {
+            return parent.lookupNamespaceURI(prefix);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        switch (nodeType) {
+            case ROOT: return "/";
+            case ELEMENT: return "<" + (prefix != null ? prefix + ":" : "") + localName + ">";
+            case TEXT: return "text('" + stringValue.substring(0, Math.min(20, stringValue.length())) + "')";
+            case ATTRIBUTE: return "@" + localName + "='" + stringValue + "'";
+            case COMMENT: return "comment()";
+            case PROCESSING_INSTRUCTION: return "pi(" + localName + ")";
+            default: return nodeType.toString();
+        }
+    }
+
+    /**
+     * Returns the parent as a StreamingNode.
+     *
+     * @return the parent node, or null if this is the root
+     */
+    public StreamingNode getParentNode() {
+        return parent;
+    }
+
+    /**
+     * Adds a child node to this element.
+     * Updates sibling links automatically.
+     *
+     * @param child the child node to add
+     */
+    public void addChild(StreamingNode child) {
+        if (!children.isEmpty()) {
+            StreamingNode prevSibling = children.get(children.size() - 1);
+            prevSibling.followingSibling = child;
+        }
+        children.add(child);
+        cachedStringValue = null;
+        elementChildrenByLocalName = null;
+    }
+
+    /**
+     * Returns element children with the given local name, in document order.
+     * Builds a lazy per-local-name index on first use so repeated
+     * {@code child::name} steps from a large parent stay cheap.
+     *
+     * @param localName the element local name
+     * @return matching element children (possibly empty); never null
+     */
+    public List<StreamingNode> getElementChildrenByLocalName(String localName) {
+        if (localName == null) {
+            return Collections.emptyList();
+        }
+        Map<String, List<StreamingNode>> index = elementChildrenByLocalName;
+        if (index == null) {
+            index = buildElementChildrenByLocalName();
+            elementChildrenByLocalName = index;
+        }
+        List<StreamingNode> named = index.get(localName);
+        if (named == null) {
+            return Collections.emptyList();
+        }
+        return named;
+    }
+
+    /**
+     * Returns the first element child with the given local name, or null.
+     * Linear scan — preferred for small parents / singleton lookups where
+     * building the local-name index would cost more than it saves.
+     *
+     * @param localName the element local name
+     * @return the first matching child, or null
+     */
+    public StreamingNode getFirstElementChildByLocalName(String localName) {
+        if (localName == null) {
+            return null;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            StreamingNode child = children.get(i);
+            if (child.nodeType == NodeType.ELEMENT && localName.equals(child.localName)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, List<StreamingNode>> buildElementChildrenByLocalName() {
+        Map<String, List<StreamingNode>> index = new HashMap<>();
+        for (int i = 0; i < children.size(); i++) {
+            StreamingNode child = children.get(i);
+            if (child.nodeType == NodeType.ELEMENT && child.localName != null) {
+                List<StreamingNode> list = index.get(child.localName);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    index.put(child.localName, list);
+                }
+                list.add(child);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the last child node, or null if there are no children.
+     *
+     * @return the last child node
+     */
+    public StreamingNode getLastChild() {
+        if (children.isEmpty()) {
+            return null;
+        }
+        return children.get(children.size() - 1);
+    }
+
+    /**
+     * Removes the last child node, if any.
+     * Used by strip-space processing to discard whitespace-only text nodes.
+     */
+    public void removeLastChild() {
+        if (!children.isEmpty()) {
+            children.remove(children.size() - 1);
+            cachedStringValue = null;
+            elementChildrenByLocalName = null;
+        }
+    }
+
+    /**
+     * Returns true if this node has any in-scope namespace bindings that would
+     * be copied by {@code xsl:copy} (i.e. non-xml, non-empty URIs). Used to skip
+     * building namespace nodes when there is nothing to emit.
+     */
+    public boolean hasCopyableNamespaceBindings() {
+        if (namespaceBindings == null || namespaceBindings.isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : namespaceBindings.entrySet()) {
+            String prefix = entry.getKey();
+            String uri = entry.getValue();
+            if (!"xml".equals(prefix) && uri != null && !uri.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of namespace nodes on this element.
+     *
+     * @return the namespace node count
+     */
+    public int getNamespaceNodeCount() {
+        return namespaceNodeCount;
+    }
+
+    /**
+     * Adds a namespace mapping to this element.
+     *
+     * @param prefix the namespace prefix (null or empty for default namespace)
+     * @param uri the namespace URI
+     */
+    public void addNamespaceMapping(String prefix, String uri) {
+        if (namespaceBindingsShared) {
+            namespaceBindings = new HashMap<>(namespaceBindings);
+            namespaceBindingsShared = false;
+        }
+        namespaceBindings.put(prefix != null ? prefix : "", uri);
+        cachedNamespaceNodes = null;
+    }
+
+    /**
+     * Appends text to this element's text content.
+     * Creates or updates a text child node. If the last child is already
+     * a text node, the text is appended to it.
+     *
+     * @param text the text to append (ignored if null or empty)
+     */
+    public void appendText(String text) {
+        appendText(text, documentOrder);
+    }
+
+    /**
+     * Appends text with a specific document order for new text nodes.
+     * Merged text reuses the existing node's order.
+     *
+     * @param text the text to append (ignored if null or empty)
+     * @param newDocOrder document order for newly created text nodes
+     */
+    public void appendText(String text, long newDocOrder) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        cachedStringValue = null;
+        if (!children.isEmpty()) {
+            StreamingNode lastChild = children.get(children.size() - 1);
+            if (lastChild.nodeType == NodeType.TEXT) {
+                String combinedText = lastChild.stringValue + text;
+                long docOrder = lastChild.documentOrder;
+                children.remove(children.size() - 1);
+                createText(combinedText, this, docOrder);
+                return;
+            }
+        }
+        createText(text, this, newDocOrder);
+    }
+
+    /**
+     * Namespace node implementation.
+     */
+    private static class NamespaceNode implements XPathNode {
+        private final String prefix;
+        private final String uri;
+        private final StreamingNode parent;
+        private final int index;
+
+        NamespaceNode(String prefix, String uri, StreamingNode parent, int index) {
+            this.prefix = prefix;
+            this.uri = uri;
+            this.parent = parent;
+            this.index = index;
+        }
+
+        @Override public NodeType getNodeType() { return NodeType.NAMESPACE; }
+        @Override public String getNamespaceURI() { return null; }
+        @Override public String getLocalName() { return prefix; }
+        @Override public String getPrefix() { return null; }
+        @Override public String getStringValue() { return uri; }
+        @Override public XPathNode getParent() { return parent; }
+        @Override public Iterator<XPathNode> getChildren() { return Collections.emptyIterator(); }
+        @Override public Iterator<XPathNode> getAttributes() { return Collections.emptyIterator(); }
+        @Override public Iterator<XPathNode> getNamespaces() { return Collections.emptyIterator(); }
+        @Override public XPathNode getFollowingSibling() { return null; }
+        @Override public XPathNode getPrecedingSibling() { return null; }
+        @Override public long getDocumentOrder() { 
+            // Namespace nodes sort after the parent element but before attributes
+            return parent.getDocumentOrder() + index + 1;
+        }
+        @Override public boolean isSameNode(XPathNode other) { 
+            return other instanceof NamespaceNode && 
+                   prefix.equals(((NamespaceNode)other).prefix) &&
+                   parent.isSameNode(((NamespaceNode)other).parent);
+        }
+        @Override public XPathNode getRoot() { return parent.getRoot(); }
+        @Override public boolean isFullyNavigable() { return true; }
+    }
+
+}
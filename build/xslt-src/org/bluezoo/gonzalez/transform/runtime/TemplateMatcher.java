@@ -0,0 +1,956 @@
+/*
+ * TemplateMatcher.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bluezoo.gonzalez.transform.ast.SequenceNode;
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.compiler.ElementPath;
+import org.bluezoo.gonzalez.transform.compiler.ModeDeclaration;
+import org.bluezoo.gonzalez.transform.compiler.Pattern;
+import org.bluezoo.gonzalez.transform.compiler.SimpleAttrEquality;
+import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+/**
+ * Matches nodes to template rules.
+ *
+ * <p>Template matching follows XSLT 1.0 conflict resolution rules:
+ * <ol>
+ *   <li>Higher import precedence wins</li>
+ *   <li>Higher priority wins</li>
+ *   <li>If still tied, it's an error (but we use last-declared)</li>
+ * </ol>
+ *
+ * <p>Rules are indexed by mode, then by matchable node type and local name so
+ * that only plausible candidates are considered for each node. When a mode
+ * is indexed the candidates for each node type and local name are merged
+ * into a single array in conflict-resolution order, so finding the rule
+ * for a node is one lookup followed by pattern checks, without allocation.
+ * Candidates whose patterns are only element names joined by child steps
+ * are further compiled into a suffix trie over the ancestor chain, so a
+ * single upward walk finds the best of them however many there are.
+ *
+ * <p>A matcher is immutable once built and may be shared by concurrent
+ * transformations; see {@link CompiledStylesheet#getTemplateMatcher()}.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class TemplateMatcher {
+
+    private final CompiledStylesheet stylesheet;
+    private final Map<String, ModeIndex> rulesByMode;
+    private final List<TemplateRule> allModeRules;
+
+    /**
+     * Creates a template matcher for the given stylesheet.
+     *
+     * @param stylesheet the compiled stylesheet
+     */
+    public TemplateMatcher(CompiledStylesheet stylesheet) {
+        this.stylesheet = stylesheet;
+        this.allModeRules = new ArrayList<>();
+        if (stylesheet != null) {
+            this.rulesByMode = new ConcurrentHashMap<>(indexRulesByMode());
+        } else {
+            this.rulesByMode = new ConcurrentHashMap<>();
+        }
+    }
+
+    private Map<String, ModeIndex> indexRulesByMode() {
+        Map<String, ModeIndex> map = new HashMap<>();
+
+        Set<String> allModeKeys = new HashSet<>();
+        allModeKeys.add("");
+
+        for (String declaredMode : stylesheet.getModeDeclarations().keySet()) {
+            allModeKeys.add(normalizeModeKey(declaredMode));
+        }
+
+        for (TemplateRule rule : stylesheet.getTemplateRules()) {
+            if (rule.getMatchPattern() != null) {
+                String mode = rule.getMode();
+                if ("#all".equals(mode)) {
+                    allModeRules.add(rule);
+                } else {
+                    String key = normalizeModeKey(mode);
+                    allModeKeys.add(key);
+                    ModeIndex index = map.get(key);
+                    if (index == null) {
+                        index = new ModeIndex();
+                        map.put(key, index);
+                    }
+                    index.add(rule);
+                }
+            }
+        }
+
+        if (!allModeRules.isEmpty()) {
+            Collections.sort(allModeRules, TEMPLATE_PRECEDENCE_COMPARATOR);
+            for (String key : allModeKeys) {
+                ModeIndex index = map.get(key);
+                if (index == null) {
+                    index = new ModeIndex();
+                    map.put(key, index);
+                }
+                for (int i = 0; i < allModeRules.size(); i++) {
+                    index.add(allModeRules.get(i));
+                }
+            }
+        }
+
+        for (ModeIndex index : map.values()) {
+            index.seal();
+        }
+
+        return map;
+    }
+
+    /**
+     * Returns the candidate index for a mode, creating one on the fly for
+     * previously-unseen modes that have #all rules.
+     */
+    private ModeIndex getModeIndex(String modeKey) {
+        ModeIndex index = rulesByMode.get(modeKey);
+        if (index != null) {
+            return index;
+        }
+        if (!allModeRules.isEmpty()) {
+            ModeIndex newIndex = new ModeIndex();
+            for (int i = 0; i < allModeRules.size(); i++) {
+                newIndex.add(allModeRules.get(i));
+            }
+            newIndex.seal();
+            // May be reached concurrently from parallel iterations
+            ModeIndex existing = rulesByMode.putIfAbsent(modeKey, newIndex);
+            return (existing != null) ? existing : newIndex;
+        }
+        return null;
+    }
+
+    /**
+     * Comparator for template rules: higher import precedence wins,
+     * then higher priority wins. When tied, later-declared wins (higher index).
+     */
+    private static final Comparator<TemplateRule> TEMPLATE_PRECEDENCE_COMPARATOR =
+        new Comparator<TemplateRule>() {
+            @Override
+            public int compare(TemplateRule a, TemplateRule b) {
+                int precDiff = b.getImportPrecedence() - a.getImportPrecedence();
+                if (precDiff != 0) {
+                    return precDiff;
+                }
+                int priDiff = Double.compare(b.getPriority(), a.getPriority());
+                if (priDiff != 0) {
+                    return priDiff;
+                }
+                return b.getDeclarationIndex() - a.getDeclarationIndex();
+            }
+        };
+
+    /**
+     * Finds the best matching template for a node.
+     *
+     * @param node the node to match
+     * @param mode the current mode (null for default)
+     * @param context the transformation context
+     * @return the matching rule, or null if no match
+     * @throws RuntimeException if on-multiple-match="fail" and multiple templates match
+     */
+    public TemplateRule findMatch(XPathNode node, String mode, TransformContext context) {
+        ModeIndex index = getModeIndex(normalizeModeKey(mode));
+
+        if (index == null || index.all.isEmpty()) {
+            return getBuiltInRule(node, mode);
+        }
+
+        ModeDeclaration modeDecl = stylesheet.getModeDeclaration(mode);
+        boolean failOnMultiple = modeDecl != null &&
+            modeDecl.getOnMultipleMatch() == ModeDeclaration.OnMultipleMatch.FAIL;
+
+        Dispatch dispatch = index.dispatchFor(node);
+        TemplateRule[] rules = dispatch.rules;
+        String keyValue = dispatch.keyValue(node);
+        TemplateRule firstMatch = null;
+        int matchCount = 0;
+
+        if (!failOnMultiple && dispatch.paths != null) {
+            // Rules ranked above the best path rule still need checking
+            int best = Math.min(dispatch.paths.bestMatch(node), rules.length);
+            for (int i = 0; i < best; i++) {
+                if (!dispatch.inPaths[i] && dispatch.mayMatch(i, node, keyValue)
+                        && rules[i].getMatchPattern().matches(node, context)) {
+                    return rules[i];
+                }
+            }
+            if (best < rules.length) {
+                return rules[best];
+            }
+            return getBuiltInRule(node, mode);
+        }
+
+        for (int i = 0; i < rules.length; i++) {
+            TemplateRule rule = rules[i];
+            if (dispatch.mayMatch(i, node, keyValue)
+                    && rule.getMatchPattern().matches(node, context)) {
+                if (firstMatch == null) {
+                    firstMatch = rule;
+                    matchCount = 1;
+                    if (!failOnMultiple) {
+                        return firstMatch;
+                    }
+                } else if (failOnMultiple) {
+                    if (rule.getImportPrecedence() == firstMatch.getImportPrecedence() &&
+                        rule.getPriority() == firstMatch.getPriority()) {
+                        if (rule.getBody() != firstMatch.getBody()) {
+                            matchCount++;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (firstMatch != null) {
+            if (failOnMultiple && matchCount > 1) {
+                throw new RuntimeException("XTDE0540: Multiple templates match node " +
+                    describeNode(node) + " with the same import precedence and priority");
+            }
+            return firstMatch;
+        }
+
+        return getBuiltInRule(node, mode);
+    }
+
+    /**
+     * Finds the best matching template for an atomic value (XSLT 3.0).
+     * Atomic value patterns use the syntax ".[ predicate ]".
+     *
+     * @param value the atomic value to match
+     * @param mode the current mode (null for default)
+     * @param context the transformation context
+     * @return the matching rule, or null if no match
+     * @throws RuntimeException if on-multiple-match="fail" and ambiguous
+     */
+    public TemplateRule findMatchForAtomicValue(XPathValue value,
+                                                 String mode, TransformContext context) {
+        ModeIndex index = getModeIndex(normalizeModeKey(mode));
+
+        if (index == null || index.all.isEmpty()) {
+            return null;
+        }
+
+        ModeDeclaration modeDecl = stylesheet.getModeDeclaration(mode);
+        boolean failOnMultiple = modeDecl != null &&
+            modeDecl.getOnMultipleMatch() == ModeDeclaration.OnMultipleMatch.FAIL;
+
+        TemplateRule firstMatch = null;
+        int matchCount = 0;
+
+        for (TemplateRule rule : index.all) {
+            if (rule.getMatchPattern().canMatchAtomicValues() &&
+                rule.getMatchPattern().matchesAtomicValue(value, context)) {
+                if (firstMatch == null) {
+                    firstMatch = rule;
+                    matchCount = 1;
+                    if (!failOnMultiple) {
+                        return firstMatch;
+                    }
+                } else if (failOnMultiple) {
+                    if (rule.getImportPrecedence() == firstMatch.getImportPrecedence() &&
+                        rule.getPriority() == firstMatch.getPriority()) {
+                        if (rule.getBody() != firstMatch.getBody()) {
+                            matchCount++;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (firstMatch != null && failOnMultiple && matchCount > 1) {
+            throw new RuntimeException(
+                "XTDE0540: Ambiguous rule match for atomic value " +
+                "with the same import precedence and priority");
+        }
+
+        return firstMatch;
+    }
+
+    /**
+     * Finds the next matching template for an atomic value after the current rule (XSLT 3.0).
+     *
+     * @param value the atomic value to match
+     * @param mode the current mode (null for default)
+     * @param currentRule the currently executing template rule
+     * @param context the transformation context
+     * @return the next matching rule, or null if no more matches
+     */
+    public TemplateRule findNextMatchForAtomicValue(
+            XPathValue value,
+            String mode, TemplateRule currentRule, TransformContext context) {
+        ModeIndex index = getModeIndex(normalizeModeKey(mode));
+
+        if (index == null || index.all.isEmpty()) {
+            return null;
+        }
+
+        boolean foundCurrent = false;
+        for (TemplateRule rule : index.all) {
+            if (foundCurrent) {
+                if (rule.getMatchPattern().canMatchAtomicValues()
+                        && rule.getMatchPattern().matchesAtomicValue(value, context)) {
+                    return rule;
+                }
+            } else if (rule == currentRule || isSameRule(rule, currentRule)) {
+                foundCurrent = true;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a brief description of a node for error messages.
+     */
+    private static String describeNode(XPathNode node) {
+        if (node == null) {
+            return "null";
+        }
+        NodeType type = node.getNodeType();
+        if (type == NodeType.ELEMENT) {
+            String ns = node.getNamespaceURI();
+            String local = node.getLocalName();
+            if (ns != null && !ns.isEmpty()) {
+                return "{" + ns + "}" + local;
+            }
+            return local;
+        }
+        return type.toString().toLowerCase();
+    }
+
+    /**
+     * Returns the built-in template rule for a node.
+     *
+     * <p>XSLT 3.0 built-in behavior is determined by xsl:mode/@on-no-match.
+     * Default behaviors (XSLT 1.0/2.0):
+     * <ul>
+     *   <li>For root and elements: apply-templates to children</li>
+     *   <li>For text and attributes: copy the string value</li>
+     *   <li>For comments and PIs: do nothing</li>
+     * </ul>
+     *
+     * @param node the node
+     * @param mode the current mode
+     * @return the built-in rule
+     */
+    private TemplateRule getBuiltInRule(XPathNode node, String mode) {
+        ModeDeclaration modeDecl = stylesheet.getModeDeclaration(mode);
+        if (modeDecl != null) {
+            return getBuiltInRuleForMode(node, modeDecl);
+        }
+
+        if (node.isElement() || node.getNodeType() == NodeType.ROOT) {
+            return BUILTIN_ELEMENT_RULE;
+        }
+        if (node.isText() || node.isAttribute()) {
+            return BUILTIN_TEXT_RULE;
+        }
+        return BUILTIN_EMPTY_RULE;
+    }
+
+    /**
+     * Returns the built-in rule based on the mode's on-no-match setting.
+     */
+    private TemplateRule getBuiltInRuleForMode(XPathNode node, ModeDeclaration modeDecl) {
+        ModeDeclaration.OnNoMatch onNoMatch = modeDecl.getOnNoMatch();
+
+        if (node.getNodeType() == NodeType.ROOT) {
+            return BUILTIN_SHALLOW_SKIP_RULE;
+        }
+
+        if (modeDecl.isTyped() && node.isElement()) {
+            return BUILTIN_TYPED_FAIL_RULE;
+        }
+
+        switch (onNoMatch) {
+            case SHALLOW_COPY:
+                return BUILTIN_SHALLOW_COPY_RULE;
+
+            case DEEP_COPY:
+                return BUILTIN_DEEP_COPY_RULE;
+
+            case TEXT_ONLY_COPY:
+                if (node.isElement()) {
+                    return BUILTIN_ELEMENT_RULE;
+                }
+                if (node.isText() || node.isAttribute()) {
+                    return BUILTIN_TEXT_RULE;
+                }
+                return BUILTIN_EMPTY_RULE;
+
+            case SHALLOW_SKIP:
+                return BUILTIN_SHALLOW_SKIP_RULE;
+
+            case DEEP_SKIP:
+                return BUILTIN_EMPTY_RULE;
+
+            case FAIL:
+                return BUILTIN_FAIL_RULE;
+
+            default:
+                if (node.isElement()) {
+                    return BUILTIN_ELEMENT_RULE;
+                }
+                if (node.isText() || node.isAttribute()) {
+                    return BUILTIN_TEXT_RULE;
+                }
+                return BUILTIN_EMPTY_RULE;
+        }
+    }
+
+    // Built-in template rules
+    private static final TemplateRule BUILTIN_ELEMENT_RULE = createBuiltInRule("element-or-root");
+    private static final TemplateRule BUILTIN_TEXT_RULE = createBuiltInRule("text-or-attribute");
+    private static final TemplateRule BUILTIN_EMPTY_RULE = createBuiltInRule("empty");
+    private static final TemplateRule BUILTIN_SHALLOW_COPY_RULE = createBuiltInRule("shallow-copy");
+    private static final TemplateRule BUILTIN_DEEP_COPY_RULE = createBuiltInRule("deep-copy");
+    private static final TemplateRule BUILTIN_SHALLOW_SKIP_RULE = createBuiltInRule("shallow-skip");
+    private static final TemplateRule BUILTIN_FAIL_RULE = createBuiltInRule("fail");
+    private static final TemplateRule BUILTIN_TYPED_FAIL_RULE = createBuiltInRule("typed-fail");
+
+    /**
+     * Normalizes a mode name to the key used in the rulesByMode map.
+     * #unnamed and #default are aliases for the unnamed mode (empty string).
+     */
+    private static String normalizeModeKey(String mode) {
+        if (mode == null || "#default".equals(mode) || "#unnamed".equals(mode)) {
+            return "";
+        }
+        return mode;
+    }
+
+    private static TemplateRule createBuiltInRule(String type) {
+        return new TemplateRule(null, "__builtin__" + type, null,
+            Double.NEGATIVE_INFINITY, -1, Collections.emptyList(),
+            SequenceNode.EMPTY);
+    }
+
+    /**
+     * Returns true if the given rule is a built-in template rule.
+     * Built-in rules are used when no explicit template matches.
+     *
+     * @param rule the rule to check
+     * @return true if the rule is a built-in rule
+     */
+    public static boolean isBuiltIn(TemplateRule rule) {
+        return rule.getName() != null && rule.getName().startsWith("__builtin__");
+    }
+
+    /**
+     * Returns the type of built-in rule.
+     * Types include: "element-or-root", "text-or-attribute", "empty",
+     * "shallow-copy", "deep-copy", "shallow-skip", "fail".
+     *
+     * @param rule the built-in rule
+     * @return the type string, or null if not a built-in rule
+     */
+    public static String getBuiltInType(TemplateRule rule) {
+        if (!isBuiltIn(rule)) return null;
+        return rule.getName().substring("__builtin__".length());
+    }
+
+    /**
+     * Finds the next matching template after the current one.
+     *
+     * <p>This is used by xsl:next-match to invoke the next template
+     * in precedence/priority order that matches the current node.
+     *
+     * @param node the node to match
+     * @param mode the current mode (null for default)
+     * @param currentRule the currently executing template rule
+     * @param context the transformation context
+     * @return the next matching rule, or null if no more matches
+     */
+    public TemplateRule findNextMatch(XPathNode node, String mode,
+                                       TemplateRule currentRule, TransformContext context) {
+        ModeIndex index = getModeIndex(normalizeModeKey(mode));
+
+        if (index == null || index.all.isEmpty()) {
+            return null;
+        }
+
+        boolean foundCurrent = false;
+        Dispatch dispatch = index.dispatchFor(node);
+        TemplateRule[] rules = dispatch.rules;
+        String keyValue = dispatch.keyValue(node);
+        for (int i = 0; i < rules.length; i++) {
+            TemplateRule rule = rules[i];
+            if (foundCurrent) {
+                if (dispatch.mayMatch(i, node, keyValue)
+                        && rule.getMatchPattern().matches(node, context)) {
+                    return rule;
+                }
+            } else if (rule == currentRule || isSameRule(rule, currentRule)) {
+                foundCurrent = true;
+            }
+        }
+
+        if (foundCurrent) {
+            return getBuiltInRule(node, mode);
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks whether two template rules represent the same template by comparing
+     * their match pattern string, priority, import precedence, and declaration index.
+     */
+    private boolean isSameRule(TemplateRule a, TemplateRule b) {
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a.getImportPrecedence() != b.getImportPrecedence()) {
+            return false;
+        }
+        if (a.getPriority() != b.getPriority()) {
+            return false;
+        }
+        if (a.getDeclarationIndex() != b.getDeclarationIndex()) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the highest-precedence matching template from imported stylesheets.
+     *
+     * <p>This is used by xsl:apply-imports to invoke template rules from
+     * stylesheets that were imported by the stylesheet containing the
+     * currently executing template. Only templates with LOWER import precedence
+     * than the current template are considered.
+     *
+     * @param node the node to match
+     * @param mode the current mode (null for default)
+     * @param currentRule the currently executing template rule
+     * @param context the transformation context
+     * @return the matching rule from imports, or null if no import matches
+     */
+    public TemplateRule findImportMatch(XPathNode node, String mode,
+                                         TemplateRule currentRule, TransformContext context) {
+        if (currentRule == null) {
+            return null;
+        }
+
+        ModeIndex index = getModeIndex(normalizeModeKey(mode));
+
+        if (index == null || index.all.isEmpty()) {
+            return getBuiltInRule(node, mode);
+        }
+
+        int currentPrecedence = currentRule.getImportPrecedence();
+        int minPrecedence = currentRule.getMinImportPrecedence();
+
+        Dispatch dispatch = index.dispatchFor(node);
+        TemplateRule[] rules = dispatch.rules;
+        String keyValue = dispatch.keyValue(node);
+        for (int i = 0; i < rules.length; i++) {
+            TemplateRule rule = rules[i];
+            int rulePrec = rule.getImportPrecedence();
+            if (rulePrec < currentPrecedence
+                    && (minPrecedence < 0 || rulePrec >= minPrecedence)) {
+                if (dispatch.mayMatch(i, node, keyValue)
+                        && rule.getMatchPattern().matches(node, context)) {
+                    return rule;
+                }
+            }
+        }
+
+        return getBuiltInRule(node, mode);
+    }
+
+    /**
+     * Finds a matching template from imported stylesheets for an atomic value.
+     * Used by xsl:apply-imports when the context item is an atomic value.
+     */
+    public TemplateRule findImportMatchForAtomicValue(XPathValue value,
+            String mode, TemplateRule currentRule, TransformContext context) {
+        if (currentRule == null) {
+            return null;
+        }
+
+        ModeIndex index = getModeIndex(normalizeModeKey(mode));
+
+        if (index == null || index.all.isEmpty()) {
+            return null;
+        }
+
+        int currentPrecedence = currentRule.getImportPrecedence();
+        int minPrecedence = currentRule.getMinImportPrecedence();
+
+        for (TemplateRule rule : index.all) {
+            int rulePrec = rule.getImportPrecedence();
+            if (rulePrec < currentPrecedence
+                    && (minPrecedence < 0 || rulePrec >= minPrecedence)) {
+                if (rule.getMatchPattern().canMatchAtomicValues()
+                        && rule.getMatchPattern().matchesAtomicValue(value, context)) {
+                    return rule;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Per-mode index of template rules by node type and local name.
+     */
+    private static final class ModeIndex {
+        final List<TemplateRule> all = new ArrayList<>();
+        final List<TemplateRule> anyType = new ArrayList<>();
+        final Map<NodeType, TypeIndex> byType = new HashMap<>();
+
+        // Built by seal(): candidates by node type ordinal, then local name
+        private Dispatch[] byTypeOther;
+        private Map<String, Dispatch>[] byTypeName;
+
+        void add(TemplateRule rule) {
+            all.add(rule);
+            Pattern pattern = rule.getMatchPattern();
+            NodeType type = pattern.getMatchableNodeType();
+            if (type == null) {
+                anyType.add(rule);
+                return;
+            }
+            TypeIndex typeIndex = byType.get(type);
+            if (typeIndex == null) {
+                typeIndex = new TypeIndex();
+                byType.put(type, typeIndex);
+            }
+            String localName = pattern.getMatchableLocalName();
+            if (localName == null) {
+                typeIndex.anyName.add(rule);
+            } else {
+                List<TemplateRule> bucket = typeIndex.byLocalName.get(localName);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    typeIndex.byLocalName.put(localName, bucket);
+                }
+                bucket.add(rule);
+            }
+        }
+
+        void seal() {
+            Collections.sort(all, TEMPLATE_PRECEDENCE_COMPARATOR);
+            NodeType[] types = NodeType.values();
+            byTypeOther = new Dispatch[types.length];
+            byTypeName = newDispatchMaps(types.length);
+            Dispatch anyTypeOnly = new Dispatch(anyType, null);
+            for (NodeType type : types) {
+                TypeIndex typeIndex = byType.get(type);
+                if (typeIndex == null) {
+                    byTypeOther[type.ordinal()] = anyTypeOnly;
+                    continue;
+                }
+                List<TemplateRule> other = new ArrayList<>(typeIndex.anyName);
+                other.addAll(anyType);
+                byTypeOther[type.ordinal()] = new Dispatch(other, null);
+                if (!typeIndex.byLocalName.isEmpty()) {
+                    Map<String, Dispatch> byName = new HashMap<>();
+                    for (Map.Entry<String, List<TemplateRule>> entry
+                            : typeIndex.byLocalName.entrySet()) {
+                        List<TemplateRule> named = entry.getValue();
+                        List<TemplateRule> candidates = new ArrayList<>(named);
+                        candidates.addAll(other);
+                        byName.put(entry.getKey(), new Dispatch(candidates, named));
+                    }
+                    byTypeName[type.ordinal()] = byName;
+                }
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Map<String, Dispatch>[] newDispatchMaps(int length) {
+            return new Map[length];
+        }
+
+        /**
+         * Returns the candidate rules for a node. Names no rule is indexed
+         * by share their type's candidates, so the table never grows.
+         */
+        Dispatch dispatchFor(XPathNode node) {
+            int type = node.getNodeType().ordinal();
+            Map<String, Dispatch> byName = byTypeName[type];
+            if (byName != null) {
+                String localName = node.getLocalName();
+                if (localName != null) {
+                    Dispatch dispatch = byName.get(localName);
+                    if (dispatch != null) {
+                        return dispatch;
+                    }
+                }
+            }
+            return byTypeOther[type];
+        }
+    }
+
+    private static final class TypeIndex {
+        final Map<String, List<TemplateRule>> byLocalName = new HashMap<>();
+        final List<TemplateRule> anyName = new ArrayList<>();
+    }
+
+    /**
+     * The candidate rules for one node type and local name, in
+     * conflict-resolution order. Rules indexed by that name whose pattern
+     * has a simple {@code @attr='v'} predicate are pre-tested on the
+     * attribute before the full pattern; when they all test the same
+     * attribute, its value is looked up once per node.
+     */
+    private static final class Dispatch {
+        final TemplateRule[] rules;
+        final Suffix paths;
+        final boolean[] inPaths;
+        private final SimpleAttrEquality[] attrTests;
+        private final String keyNamespaceURI;
+        private final String keyLocalName;
+
+        Dispatch(List<TemplateRule> candidates, List<TemplateRule> named) {
+            Collections.sort(candidates, TEMPLATE_PRECEDENCE_COMPARATOR);
+            rules = candidates.toArray(new TemplateRule[candidates.size()]);
+            Set<TemplateRule> indexed = Collections.newSetFromMap(
+                new IdentityHashMap<TemplateRule, Boolean>());
+            if (named != null) {
+                indexed.addAll(named);
+            }
+            SimpleAttrEquality[] tests = null;
+            String keyNs = null;
+            String keyLocal = null;
+            boolean sameAttribute = true;
+            for (int i = 0; i < rules.length; i++) {
+                if (!indexed.contains(rules[i])) {
+                    continue;
+                }
+                SimpleAttrEquality test = rules[i].getMatchPattern().getSimpleAttrEquality();
+                if (test == null) {
+                    continue;
+                }
+                if (tests == null) {
+                    tests = new SimpleAttrEquality[rules.length];
+                    keyNs = test.getNamespaceURI();
+                    keyLocal = test.getLocalName();
+                } else if (!keyNs.equals(test.getNamespaceURI())
+                        || !keyLocal.equals(test.getLocalName())) {
+                    sameAttribute = false;
+                }
+                tests[i] = test;
+            }
+            attrTests = tests;
+            Suffix trie = null;
+            boolean[] decided = null;
+            for (int i = 0; i < rules.length; i++) {
+                ElementPath path = rules[i].getMatchPattern().getElementPath();
+                if (path == null) {
+                    continue;
+                }
+                if (trie == null) {
+                    trie = new Suffix(null, null);
+                    decided = new boolean[rules.length];
+                }
+                trie.add(path, i);
+                decided[i] = true;
+            }
+            paths = trie;
+            inPaths = decided;
+            keyNamespaceURI = (tests != null && sameAttribute) ? keyNs : null;
+            keyLocalName = (tests != null && sameAttribute) ? keyLocal : null;
+        }
+
+        /**
+         * Returns the value of the attribute all pre-tests compare, or
+         * null if there is no such attribute or no single one.
+         */
+        String keyValue(XPathNode node) {
+            if (keyLocalName == null) {
+                return null;
+            }
+            XPathNode attr = node.getAttribute(keyNamespaceURI, keyLocalName);
+            return attr != null ? attr.getStringValue() : null;
+        }
+
+        /**
+         * Returns false if the rule at index i cannot match the node
+         * because its attribute pre-test fails.
+         */
+        boolean mayMatch(int i, XPathNode node, String keyValue) {
+            if (attrTests == null || attrTests[i] == null) {
+                return true;
+            }
+            SimpleAttrEquality test = attrTests[i];
+            if (keyLocalName != null) {
+                return test.getValue().equals(keyValue);
+            }
+            XPathNode attr = node.getAttribute(test.getNamespaceURI(), test.getLocalName());
+            return attr != null && test.getValue().equals(attr.getStringValue());
+        }
+    }
+
+    /**
+     * A node of the suffix trie of the element paths in a dispatch. Each
+     * node stands for the steps on the way to it from the root, read from
+     * the matched element upwards, and records the best-ranked rule whose
+     * path ends there. The trie is walked up the ancestor chain of an
+     * element, following every edge whose name test the ancestor passes,
+     * so each element is tested once per distinct suffix rather than once
+     * per rule.
+     */
+    private static final class Suffix {
+
+        private static final Suffix[] NO_EDGES = new Suffix[0];
+
+        private final String namespaceURI; // null for any
+        private final String localName; // null for any
+        private int relative = Integer.MAX_VALUE;
+        private int absolute = Integer.MAX_VALUE;
+        private int floor = Integer.MAX_VALUE; // best rule at or below here
+        private Map<String, Suffix[]> named;
+        private Suffix[] unnamed = NO_EDGES;
+
+        Suffix(String namespaceURI, String localName) {
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+        }
+
+        void add(ElementPath path, int rule) {
+            Suffix node = this;
+            node.floor = Math.min(node.floor, rule);
+            for (int i = 0; i < path.getLength(); i++) {
+                node = node.edge(path.getNamespaceURI(i), path.getLocalName(i));
+                node.floor = Math.min(node.floor, rule);
+            }
+            if (path.isAbsolute()) {
+                node.absolute = Math.min(node.absolute, rule);
+            } else {
+                node.relative = Math.min(node.relative, rule);
+            }
+        }
+
+        private Suffix edge(String uri, String local) {
+            Suffix[] edges = unnamed;
+            if (local != null) {
+                if (named == null) {
+                    named = new HashMap<>();
+                }
+                edges = named.get(local);
+                if (edges == null) {
+                    edges = NO_EDGES;
+                }
+            }
+            for (Suffix edge : edges) {
+                if (uri == null ? edge.namespaceURI == null : uri.equals(edge.namespaceURI)) {
+                    return edge;
+                }
+            }
+            Suffix edge = new Suffix(uri, local);
+            edges = Arrays.copyOf(edges, edges.length + 1);
+            edges[edges.length - 1] = edge;
+            if (local != null) {
+                named.put(local, edges);
+            } else {
+                unnamed = edges;
+            }
+            return edge;
+        }
+
+        /**
+         * Returns the index of the best-ranked rule whose path matches the
+         * element, or {@link Integer#MAX_VALUE} if none does.
+         */
+        int bestMatch(XPathNode node) {
+            return descend(node, Integer.MAX_VALUE);
+        }
+
+        private boolean accepts(XPathNode element) {
+            if (namespaceURI == null) {
+                return true;
+            }
+            String uri = element.getNamespaceURI();
+            return namespaceURI.equals(uri == null ? "" : uri);
+        }
+
+        /**
+         * Follows the edges whose tests the element passes and returns the
+         * best rule found below them, or best if that is better.
+         */
+        private int descend(XPathNode element, int best) {
+            if (!element.isElement()) {
+                return best;
+            }
+            if (named != null) {
+                Suffix[] edges = named.get(element.getLocalName());
+                if (edges != null) {
+                    for (Suffix edge : edges) {
+                        if (edge.floor < best && edge.accepts(element)) {
+                            best = edge.match(element, best);
+                        }
+                    }
+                }
+            }
+            for (Suffix edge : unnamed) {
+                if (edge.floor < best && edge.accepts(element)) {
+                    best = edge.match(element, best);
+                }
+            }
+            return best;
+        }
+
+        private int match(XPathNode element, int best) {
+            if (relative < best) {
+                best = relative;
+            }
+            XPathNode parent = element.getParent();
+            if (parent == null) {
+                return best;
+            }
+            if (absolute < best && parent.getParent() == null && parent.isRoot()) {
+                best = absolute;
+            }
+            return descend(parent, best);
+        }
+    }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * TransformContext.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import javax.xml.transform.ErrorListener;
+
+import org.xml.sax.SAXException;
+
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
+import org.bluezoo.gonzalez.transform.ErrorHandlingMode;
+import org.bluezoo.gonzalez.transform.xpath.XPathContext;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.bluezoo.gonzalez.transform.xpath.type.SchemaContext;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+/**
+ * Context for XSLT transformation execution.
+ *
+ * <p>The transform context extends XPath context with XSLT-specific features:
+ * <ul>
+ *   <li>Access to the compiled stylesheet</li>
+ *   <li>Current template rule and mode</li>
+ *   <li>Variable scope management</li>
+ *   <li>Parameter passing</li>
+ *   <li>Output state</li>
+ * </ul>
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public interface TransformContext extends XPathContext, SchemaContext {
+
+    /**
+     * Returns the compiled stylesheet.
+     *
+     * @return the stylesheet
+     */
+    CompiledStylesheet getStylesheet();
+
+    /**
+     * Returns the current template mode.
+     *
+     * @return the mode name, or null for default mode
+     */
+    String getCurrentMode();
+
+    /**
+     * Returns the URI of the current output destination, or null
+     * if absent (e.g., during global variable evaluation).
+     *
+     * @return the current output URI, or null
+     */
+    String getCurrentOutputUri();
+
+    /**
+     * Returns the variable scope for binding and lookup.
+     *
+     * @return the variable scope
+     */
+    VariableScope getVariableScope();
+
+    /**
+     * Creates a new context with pushed variable scope.
+     *
+     * @return a new context with fresh variable scope
+     */
+    TransformContext pushVariableScope();
+
+    /**
+     * Creates a new context with only global (top-level) variables visible.
+     * Used for attribute sets which should only see top-level variables and params.
+     *
+     * @return a new context with global-only variable scope
+     */
+    TransformContext withGlobalVariablesOnly();
+
+    /**
+     * Creates a new context with the specified mode.
+     *
+     * @param mode the template mode
+     * @return a new context with the mode
+     */
+    TransformContext withMode(String mode);
+
+    /**
+     * Creates a new context with the specified context node.
+     *
+     * @param node the context node
+     * @return a new context
+     */
+    @Override
+    TransformContext withContextNode(XPathNode node);
+
+    /**
+     * Creates a new context with the specified position and size.
+     *
+     * @param position the context position
+     * @param size the context size
+     * @return a new context
+     */
+    @Override
+    TransformContext withPositionAndSize(int position, int size);
+
+    /**
+     * Evaluates an XPath expression in this context.
+     *
+     * @param expression the compiled expression
+     * @return the result
+     * @throws XPathException if evaluation fails
+     */
+    XPathValue evaluateXPath(XPathExpression expression) throws XPathException;
+
+    /**
+     * Returns the error listener for this transformation, if any.
+     *
+     * <p>The error listener receives warnings and errors from xsl:message
+     * and other error reporting mechanisms.
+     *
+     * @return the error listener, or null if none is set
+     */
+    ErrorListener getErrorListener();
+
+    /**
+     * Returns the currently executing template rule, if any.
+     *
+     * <p>This is used by xsl:next-match to find the next matching template.
+     *
+     * @return the current template rule, or null if not in a template
+     */
+    TemplateRule getCurrentTemplateRule();
+
+    /**
+     * Creates a new context with the specified current template rule.
+     *
+     * @param rule the template rule being executed
+     * @return a new context
+     */
+    TransformContext withCurrentTemplateRule(TemplateRule rule);
+
+    /**
+     * Returns the template matcher for finding template rules.
+     *
+     * @return the template matcher
+     */
+    TemplateMatcher getTemplateMatcher();
+
+    /**
+     * Returns the runtime schema validator for output validation.
+     *
+     * <p>The validator is used when validation="strict" or validation="lax"
+     * is specified on xsl:element, xsl:copy, xsl:copy-of, or literal result elements.
+     *
+     * @return the runtime validator, or null if not available
+     */
+    RuntimeSchemaValidator getRuntimeValidator();
+
+    /**
+     * Creates a new context with the specified static base URI.
+     *
+     * <p>This is used when executing instructions that have an xml:base
+     * attribute, so that static-base-uri() returns the correct value.
+     *
+     * @param baseURI the static base URI for the instruction
+     * @return a new context with the base URI
+     */
+    TransformContext withStaticBaseURI(String baseURI);
+
+    /**
+     * Creates a new context with the specified regex matcher for xsl:analyze-string.
+     *
+     * <p>The matcher is used by the regex-group() function to access captured groups.
+     *
+     * @param matcher the regex matcher from the current match
+     * @return a new context with the matcher
+     */
+    TransformContext withRegexMatcher(Matcher matcher);
+
+    /**
+     * Returns the current regex matcher from xsl:analyze-string.
+     *
+     * <p>This is used by the regex-group() function to access captured groups.
+     *
+     * @return the current matcher, or null if not in a matching-substring
+     */
+    Matcher getRegexMatcher();
+
+    /**
+     * Returns the current tunnel parameters (XSLT 2.0).
+     *
+     * <p>Tunnel parameters are passed automatically through intermediate templates
+     * without being explicitly declared. They are only received by templates
+     * that declare a matching parameter with tunnel="yes".
+     *
+     * @return a map of parameter names (expanded names) to values, never null
+     */
+    Map<String, XPathValue> getTunnelParameters();
+
+    /**
+     * Creates a new context with additional tunnel parameters (XSLT 2.0).
+     *
+     * <p>The new tunnel parameters are merged with any existing ones.
+     * If a parameter already exists, it is overwritten.
+     *
+     * @param params the tunnel parameters to add
+     * @return a new context with the tunnel parameters
+     */
+    TransformContext withTunnelParameters(Map<String, XPathValue> params);
+
+    /**
+     * Creates a new context with no tunnel parameters (XSLT 2.0).
+     *
+     * <p>This is used when entering a user-defined function, which per XSLT spec
+     * should not have access to the caller's tunnel parameters.
+     *
+     * @return a new context with empty tunnel parameters
+     */
+    TransformContext withNoTunnelParameters();
+
+    /**
+     * Creates a new context with the specified stylesheet.
+     *
+     * <p>This is used when executing user-defined functions or templates
+     * imported from a package. The function body needs to resolve calls
+     * against its defining package's stylesheet (which includes private
+     * components) rather than the principal stylesheet.
+     *
+     * @param stylesheet the stylesheet to use for component resolution
+     * @return a new context with the specified stylesheet
+     */
+    TransformContext withStylesheet(CompiledStylesheet stylesheet);
+
+    /**
+     * Returns the principal output handler for the transformation.
+     *
+     * <p>The principal output is the main output destination for the transformation.
+     * When xsl:result-document has no href attribute, it should write to the
+     * principal output rather than the current (possibly secondary) output.
+     *
+     * @return the principal output handler, or null if not set
+     */
+    OutputHandler getPrincipalOutput();
+
+    /**
+     * Sets the principal output handler for the transformation.
+     *
+     * <p>This should be called once at the start of the transformation
+     * with the main output handler.
+     *
+     * @param output the principal output handler
+     */
+    void setPrincipalOutput(OutputHandler output);
+
+    /**
+     * Registers a result document URI as having been written.
+     * Throws XTDE1490 if the URI has already been used.
+     *
+     * @param uri the result document URI (empty string for principal output)
+     * @throws SAXException if the URI has already been used (XTDE1490)
+     */
+    void claimResultDocumentUri(String uri) throws SAXException;
+
+    /**
+     * Returns the error handling mode for this transformation.
+     *
+     * <p>The error handling mode controls how type errors (XTTE*) are handled:
+     * <ul>
+     *   <li>STRICT - fail immediately (spec-compliant)</li>
+     *   <li>RECOVER - log warnings and continue</li>
+     *   <li>SILENT - ignore errors</li>
+     * </ul>
+     *
+     * @return the error handling mode (never null, defaults to STRICT)
+     */
+    ErrorHandlingMode getErrorHandlingMode();
+
+    /**
+     * Returns the default collation URI for string comparisons (XSLT 2.0+).
+     *
+     * <p>The default collation is used when no explicit collation is specified
+     * for operations like xsl:sort, string comparison functions, and value/general
+     * comparisons. It can be set at the stylesheet level with the default-collation
+     * attribute, and overridden at element level.
+     *
+     * <p>If no default collation is set, returns null (meaning Unicode codepoint
+     * collation should be used).
+     *
+     * @return the default collation URI, or null for Unicode codepoint collation
+     */
+    String getDefaultCollation();
+
+    /**
+     * Returns the collection of nodes registered for the given URI.
+     *
+     * <p>Collections are registered via the transformer factory before the
+     * transformation. The collection() function uses this to resolve
+     * collection URIs to sequences of nodes.
+     *
+     * @param uri the collection URI
+     * @return the list of nodes in the collection, or null if no collection
+     *         is registered for the URI
+     */
+    java.util.List<XPathNode> getCollection(String uri);
+
+}
@@ -0,0 +1,227 @@
+/*
+ * DynamicFunctionCallExpr.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.xpath.expr;
+
+import java.util.List;
+
+import org.bluezoo.gonzalez.transform.xpath.XPathContext;
+import org.bluezoo.gonzalez.transform.xpath.type.NativeFunctionItem;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathArray;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathFunctionItem;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathMap;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathSequence;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+/**
+ * An XPath 3.1 dynamic function call: {@code Expr(Args)}.
+ *
+ * <p>When the base expression evaluates to a map, this performs a map
+ * lookup using the first argument as the key (XPath 3.1 Section 3.11.3.1).
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class DynamicFunctionCallExpr implements Expr {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Expr base;
+    private final List<Expr> args;
+
+    /**
+     * Creates a dynamic function call expression.
+     *
+     * @param base the expression that evaluates to a function/map/array
+     * @param args the argument expressions
+     */
+    public DynamicFunctionCallExpr(Expr base, List<Expr> args) {
+        this.base = base;
+        this.args = args;
+    }
+
+    /**
+     * Returns the base expression.
+     *
+     * @return the base expression
+     */
+    public Expr getBase() {
+        return base;
+    }
+
+    /**
+     * Returns the argument expressions.
+     *
+     * @return the argument list
+     */
+    public List<Expr> getArguments() {
+        return args;
+    }
+
+    @Override
+    public XPathValue evaluate(XPathContext context) throws XPathException {
+        // Check for partial application (any argument is a placeholder '?')
+        boolean hasPlaceholder = false;
+        for (Expr arg : args) {
+            if (arg instanceof ArgumentPlaceholder) {
+                hasPlaceholder = true;
+                break;
+            }
+        }
+
+        XPathValue baseValue = base.evaluate(context);
+        
+        // Unwrap singleton sequences to find the actual function item
+        if (baseValue instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) baseValue;
+            if (seq.size() == 1) {
+                baseValue = seq.iterator().next();
+            }
+        }
+
+        if (hasPlaceholder) {
+            return createDynamicPartialApplication(baseValue, context);
+        }
+
+        if (baseValue instanceof InlineFunctionItem) {
+            InlineFunctionItem inline = (InlineFunctionItem) baseValue;
+            List<XPathValue> evaluatedArgs = new java.util.ArrayList<XPathValue>();
+            for (Expr arg : args) {
+                evaluatedArgs.add(arg.evaluate(context));
+            }
+            return inline.invoke(evaluatedArgs, context);
+        }
+        if (baseValue instanceof PartialFunctionItem) {
+            PartialFunctionItem partial = (PartialFunctionItem) baseValue;
+            List<XPathValue> evaluatedArgs = new java.util.ArrayList<XPathValue>();
+            for (Expr arg : args) {
+                evaluatedArgs.add(arg.evaluate(context));
+            }
+            return partial.invoke(evaluatedArgs, context);
+        }
+        if (baseValue instanceof DynamicPartialItem) {
+            DynamicPartialItem dynPartial = (DynamicPartialItem) baseValue;
+            List<XPathValue> evaluatedArgs = new java.util.ArrayList<XPathValue>();
+            for (Expr arg : args) {
+                evaluatedArgs.add(arg.evaluate(context));
+            }
+            return dynPartial.invoke(evaluatedArgs, context);
+        }
+        if (baseValue instanceof NativeFunctionItem) {
+            NativeFunctionItem nativeFunc = (NativeFunctionItem) baseValue;
+            List<XPathValue> evaluatedArgs = new java.util.ArrayList<XPathValue>();
+            for (Expr arg : args) {
+                evaluatedArgs.add(arg.evaluate(context));
+            }
+            return nativeFunc.invoke(evaluatedArgs, context);
+        }
+        if (baseValue instanceof XPathFunctionItem) {
+            XPathFunctionItem funcItem = (XPathFunctionItem) baseValue;
+            List<XPathValue> evaluatedArgs = new java.util.ArrayList<XPathValue>();
+            for (Expr arg : args) {
+                evaluatedArgs.add(arg.evaluate(context));
+            }
+            return funcItem.invoke(evaluatedArgs, context);
+        }
+        if (baseValue instanceof XPathArray) {
+            XPathArray array = (XPathArray) baseValue;
+            if (args.size() != 1) {
+                throw new XPathException("XPTY0004: Array requires exactly one argument " +
+                    "for lookup, but " + args.size() + " were supplied");
+            }
+            XPathValue keyVal = args.get(0).evaluate(context);
+            int index = (int) keyVal.asNumber();
+            if (index >= 1 && index <= array.size()) {
+                return array.get(index);
+            }
+            return XPathSequence.EMPTY;
+        }
+        if (baseValue instanceof XPathMap) {
+            XPathMap map = (XPathMap) baseValue;
+            if (args.size() != 1) {
+                throw new XPathException("XPTY0004: Map requires exactly one argument " +
+                    "for lookup, but " + args.size() + " were supplied");
+            }
+            XPathValue keyVal = args.get(0).evaluate(context);
+            String key = keyVal.asString();
+            XPathValue result = map.get(key);
+            if (result == null) {
+                return XPathSequence.EMPTY;
+            }
+            return result;
+        }
+        throw new XPathException("XPTY0004: Dynamic function call on non-function item");
+    }
+
+    /**
+     * Creates a partial application wrapping a dynamic function call.
+     * If the base is a named function item, delegates to PartialFunctionItem.
+     * Otherwise, creates a DynamicPartialItem that wraps any callable value.
+     */
+    private XPathValue createDynamicPartialApplication(XPathValue baseValue, XPathContext context)
+            throws XPathException {
+        XPathValue[] boundArgs = new XPathValue[args.size()];
+        int placeholderCount = 0;
+        int[] placeholderPositions = new int[args.size()];
+
+        for (int i = 0; i < args.size(); i++) {
+            if (args.get(i) instanceof ArgumentPlaceholder) {
+                placeholderPositions[placeholderCount] = i;
+                placeholderCount++;
+            } else {
+                boundArgs[i] = args.get(i).evaluate(context);
+            }
+        }
+
+        int[] positions = new int[placeholderCount];
+        for (int i = 0; i < placeholderCount; i++) {
+            positions[i] = placeholderPositions[i];
+        }
+
+        if (baseValue instanceof XPathFunctionItem) {
+            XPathFunctionItem funcItem = (XPathFunctionItem) baseValue;
+            String name = funcItem.getName();
+            String nsURI = funcItem.getNamespaceURI();
+            int colonIdx = name.indexOf(':');
+            String localName = (colonIdx >= 0) ? name.substring(colonIdx + 1) : name;
+            return new PartialFunctionItem(name, nsURI, localName,
+                    placeholderCount, funcItem.getLibrary(),
+                    boundArgs, positions, args.size());
+        }
+
+        return new DynamicPartialItem(baseValue, placeholderCount,
+                boundArgs, positions, args.size());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(base);
+        sb.append("(");
+        for (int i = 0; i < args.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(args.get(i));
+        }
+        sb.append(")");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * FunctionCall.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.xpath.expr;
+
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.runtime.VariableScope;
+import org.bluezoo.gonzalez.transform.xpath.StaticTypeContext;
+import org.bluezoo.gonzalez.transform.xpath.XPathContext;
+import org.bluezoo.gonzalez.transform.xpath.XPathFunctionLibrary;
+import org.bluezoo.gonzalez.transform.xpath.function.Function;
+import org.bluezoo.gonzalez.transform.xpath.type.SequenceType;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathFunctionItem;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNumber;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A function call expression.
+ *
+ * <p>Function calls consist of a function name and a list of argument expressions.
+ * The function is looked up in the function library and invoked with the
+ * evaluated arguments.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class FunctionCall implements Expr {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String FN_NAMESPACE = "http://www.w3.org/2005/xpath-functions";
+
+    private final String prefix;
+    private final String localName;
+    private final String resolvedNamespaceURI;
+    private final List<Expr> arguments;
+    private transient StaticTypeContext typeContext;
+    private String precomputedVariable;
+
+    /**
+     * Creates a function call with no namespace prefix.
+     *
+     * @param localName the function name
+     * @param arguments the argument expressions
+     */
+    public FunctionCall(String localName, List<Expr> arguments) {
+        this(null, localName, null, arguments);
+    }
+
+    /**
+     * Creates a function call with a namespace prefix.
+     *
+     * @param prefix the namespace prefix (may be null)
+     * @param localName the function local name
+     * @param arguments the argument expressions
+     */
+    public FunctionCall(String prefix, String localName, List<Expr> arguments) {
+        this(prefix, localName, null, arguments);
+    }
+
+    /**
+     * Creates a function call with a namespace prefix and resolved URI.
+     *
+     * @param prefix the namespace prefix (may be null)
+     * @param localName the function local name
+     * @param resolvedNamespaceURI namespace URI resolved at compile time (may be null)
+     * @param arguments the argument expressions
+     */
+    public FunctionCall(String prefix, String localName, String resolvedNamespaceURI,
+                        List<Expr> arguments) {
+        if (localName == null || localName.isEmpty()) {
+            throw new IllegalArgumentException("Function name cannot be null or empty");
+        }
+        this.prefix = prefix;
+        this.localName = localName;
+        this.resolvedNamespaceURI = resolvedNamespaceURI;
+        this.arguments = arguments != null ? 
+            Collections.unmodifiableList(new ArrayList<>(arguments)) : 
+            Collections.emptyList();
+    }
+
+    @Override
+    public XPathValue evaluate(XPathContext context) throws XPathException {
+        // Result computed ahead of time by the enclosing instruction
+        if (precomputedVariable != null && context instanceof TransformContext) {
+            VariableScope scope = ((TransformContext) context).getVariableScope();
+            XPathValue precomputed = scope.lookup(null, precomputedVariable);
+            if (precomputed != null) {
+                return precomputed;
+            }
+        }
+
+        // Use compile-time resolved URI if available, otherwise resolve at runtime
+        String namespaceURI = resolvedNamespaceURI;
+        if (namespaceURI == null && prefix != null && !prefix.isEmpty()) {
+            namespaceURI = context.resolveNamespacePrefix(prefix);
+            if (namespaceURI == null) {
+                throw new XPathException("Unknown namespace prefix: " + prefix);
+            }
+        }
+
+        // Get the function library
+        XPathFunctionLibrary library = context.getFunctionLibrary();
+        if (library == null) {
+            throw new XPathException("No function library available");
+        }
+
+        // Check if function exists
+        if (!library.hasFunction(namespaceURI, localName)) {
+            throw new XPathException("Unknown function: " + 
+                (prefix != null ? prefix + ":" : "") + localName);
+        }
+
+        // Check for partial application (any argument is a placeholder '?')
+        boolean hasPlaceholder = false;
+        for (Expr arg : arguments) {
+            if (arg instanceof ArgumentPlaceholder) {
+                hasPlaceholder = true;
+                break;
+            }
+        }
+        if (hasPlaceholder) {
+            return createPartialApplication(namespaceURI, library, context);
+        }
+
+        // count(preceding::x) and count(preceding-sibling::x) are counted
+        // on from the previous context node rather than walked each time
+        if ("count".equals(localName) && arguments.size() == 1
+                && arguments.get(0) instanceof LocationPath
+                && (namespaceURI == null || namespaceURI.isEmpty()
+                    || FN_NAMESPACE.equals(namespaceURI))) {
+            int count = ((LocationPath) arguments.get(0)).countPreceding(context);
+            if (count >= 0) {
+                return XPathNumber.of(count);
+            }
+        }
+
+        // Evaluate arguments
+        List<XPathValue> argValues = new ArrayList<>(arguments.size());
+        for (Expr arg : arguments) {
+            argValues.add(arg.evaluate(context));
+        }
+
+        // Invoke the function
+        return library.invokeFunction(namespaceURI, localName, argValues, context);
+    }
+
+    /**
+     * Creates a partial function application. Evaluates bound arguments now,
+     * records placeholder positions, and returns a function item that fills
+     * them in when invoked.
+     */
+    private XPathValue createPartialApplication(final String namespaceURI,
+            final XPathFunctionLibrary library, XPathContext context) throws XPathException {
+        final XPathValue[] boundArgs = new XPathValue[arguments.size()];
+        final int[] placeholderPositions = new int[arguments.size()];
+        int placeholderCount = 0;
+
+        // Look up parameter types for bound argument validation
+        Function funcDef = library.getFunction(namespaceURI, localName, arguments.size());
+        SequenceType[] funcParamTypes = null;
+        if (funcDef != null) {
+            funcParamTypes = funcDef.getParameterSequenceTypes();
+        }
+
+        for (int i = 0; i < arguments.size(); i++) {
+            Expr argExpr = arguments.get(i);
+            if (argExpr instanceof ArgumentPlaceholder) {
+                placeholderPositions[placeholderCount] = i;
+                placeholderCount++;
+            } else {
+                boundArgs[i] = argExpr.evaluate(context);
+                // Validate bound argument against declared parameter type
+                if (funcParamTypes != null && i < funcParamTypes.length
+                        && funcParamTypes[i] != null && boundArgs[i] != null) {
+                    if (!funcParamTypes[i].matches(boundArgs[i])) {
+                        Class argClass = boundArgs[i].getClass();
+                        String typeName = argClass.getSimpleName();
+                        throw new XPathException("XPTY0004: Partial application: "
+                            + "argument " + (i + 1) + " has type "
+                            + typeName
+                            + " which is not valid for parameter type "
+                            + funcParamTypes[i]);
+                    }
+                }
+            }
+        }
+
+        final int arity = placeholderCount;
+        final int totalArgs = arguments.size();
+        final String funcLocalName = this.localName;
+        final String funcNsURI = namespaceURI;
+        final int[] positions = new int[arity];
+        for (int i = 0; i < arity; i++) {
+            positions[i] = placeholderPositions[i];
+        }
+
+        String fullName;
+        if (prefix != null && !prefix.isEmpty()) {
+            fullName = prefix + ":" + localName;
+        } else {
+            fullName = localName;
+        }
+
+        return new PartialFunctionItem(fullName, funcNsURI, funcLocalName,
+                arity, library, boundArgs, positions, totalArgs);
+    }
+
+    @Override
+    public void bindStaticTypes(StaticTypeContext context) {
+        this.typeContext = context;
+        for (Expr arg : arguments) {
+            arg.bindStaticTypes(context);
+        }
+    }
+
+    @Override
+    public SequenceType getStaticType() {
+        if (typeContext == null) {
+            return null;
+        }
+        Function func = typeContext.resolveFunction(
+            resolvedNamespaceURI, localName, arguments.size());
+        if (func != null) {
+            return func.getReturnType();
+        }
+        return null;
+    }
+
+    /**
+     * Marks this call as precomputed by an enclosing instruction.
+     * When the named internal variable is bound at evaluation time its
+     * value is returned instead of invoking the function. This is used
+     * by xsl:for-each-group to fold aggregates over current-group()
+     * incrementally, without retaining the group members.
+     *
+     * @param variableName the internal variable holding the result
+     */
+    public void setPrecomputedVariable(String variableName) {
+        this.precomputedVariable = variableName;
+    }
+
+    /**
+     * Returns the namespace prefix.
+     *
+     * @return the prefix, or null if none
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Returns the function local name.
+     *
+     * @return the local name
+     */
+    public String getLocalName() {
+        return localName;
+    }
+
+    /**
+     * Returns the namespace URI resolved at compile time, if any.
+     *
+     * @return the resolved namespace URI, or null
+     */
+    public String getResolvedNamespaceURI() {
+        return resolvedNamespaceURI;
+    }
+
+    /**
+     * Returns the argument expressions.
+     *
+     * @return the arguments (immutable)
+     */
+    public List<Expr> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (prefix != null && !prefix.isEmpty()) {
+            sb.append(prefix).append(':');
+        }
+        sb.append(localName).append('(');
+        
+        boolean first = true;
+        for (Expr arg : arguments) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(arg);
+            first = false;
+        }
+        
+        sb.append(')');
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,691 @@
+/*
+ * TypeExpr.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.xpath.expr;
+
+import org.bluezoo.gonzalez.schema.xsd.XSDSimpleType;
+import org.bluezoo.gonzalez.transform.xpath.StaticTypeContext;
+import org.bluezoo.gonzalez.transform.xpath.XPathContext;
+import org.bluezoo.gonzalez.transform.xpath.type.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Expression for XPath 2.0 type operations.
+ *
+ * <p>Supports four type operations:
+ * <ul>
+ *   <li>{@code instance of} - tests if value is instance of type</li>
+ *   <li>{@code cast as} - casts value to type</li>
+ *   <li>{@code castable as} - tests if value can be cast to type</li>
+ *   <li>{@code treat as} - asserts value is of type (no runtime conversion)</li>
+ * </ul>
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class TypeExpr implements Expr {
+
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Type operation kind.
+     */
+    public enum Kind {
+        INSTANCE_OF,
+        CAST_AS,
+        CASTABLE_AS,
+        TREAT_AS
+    }
+    
+    private final Kind kind;
+    private final Expr operand;
+    private final SequenceType targetType;
+    
+    /**
+     * Creates a type expression.
+     *
+     * @param kind the operation kind
+     * @param operand the operand expression
+     * @param targetType the target sequence type
+     */
+    public TypeExpr(Kind kind, Expr operand, SequenceType targetType) {
+        this.kind = kind;
+        this.operand = operand;
+        this.targetType = targetType;
+    }
+    
+    /**
+     * Returns the type operation kind.
+     *
+     * @return INSTANCE_OF, CAST_AS, CASTABLE_AS, or TREAT_AS
+     */
+    public Kind getKind() {
+        return kind;
+    }
+    
+    /**
+     * Returns the operand expression.
+     *
+     * @return the expression to test or cast
+     */
+    public Expr getOperand() {
+        return operand;
+    }
+    
+    /**
+     * Returns the target sequence type.
+     *
+     * @return the target type for the operation
+     */
+    public SequenceType getTargetType() {
+        return targetType;
+    }
+    
+    @Override
+    public void bindStaticTypes(StaticTypeContext context) {
+        operand.bindStaticTypes(context);
+    }
+
+    @Override
+    public SequenceType getStaticType() {
+        switch (kind) {
+            case INSTANCE_OF:
+            case CASTABLE_AS:
+                return SequenceType.BOOLEAN;
+            case CAST_AS:
+            case TREAT_AS:
+                return targetType;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public XPathValue evaluate(XPathContext context) throws XPathException {
+        XPathValue value = operand.evaluate(context);
+        
+        switch (kind) {
+            case INSTANCE_OF:
+                return evaluateInstanceOf(value, context);
+                
+            case CAST_AS:
+                return evaluateCastAs(value, context);
+                
+            case CASTABLE_AS:
+                return evaluateCastableAs(value, context);
+                
+            case TREAT_AS:
+                return evaluateTreatAs(value, context);
+                
+            default:
+                throw new XPathException("Unknown type operation: " + kind);
+        }
+    }
+    
+    /**
+     * Evaluates 'instance of' - returns boolean.
+     */
+    private XPathValue evaluateInstanceOf(XPathValue value, XPathContext context) {
+        // Pass schema context if available (XPathContext may be a TransformContext which implements SchemaContext)
+        SchemaContext schemaContext = (context instanceof SchemaContext) ? (SchemaContext) context : SchemaContext.NONE;
+        boolean matches = targetType.matches(value, schemaContext);
+        if (matches) {
+            // Apply strict XDM type rules for numeric types
+            // The general matches() uses promotion rules, but instance of must be strict
+            matches = applyStrictNumericInstanceOf(value);
+        }
+        if (matches && isUserDefinedType()) {
+            // For user-defined types, also validate against facets
+            matches = validateAgainstSchemaType(value, context);
+        }
+        return XPathBoolean.of(matches);
+    }
+
+    /**
+     * Applies strict XDM numeric type checking for 'instance of'.
+     * In XDM, xs:integer is NOT promotable to xs:double for instance of checks.
+     */
+    private boolean applyStrictNumericInstanceOf(XPathValue value) {
+        if (targetType.getItemKind() != SequenceType.ItemKind.ATOMIC) {
+            return true;
+        }
+        String localName = targetType.getLocalName();
+        if (localName == null) {
+            return true;
+        }
+        if (!"double".equals(localName) && !"float".equals(localName) &&
+            !"decimal".equals(localName)) {
+            return true;
+        }
+        // For sequences, check each item
+        if (value instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) value;
+            for (XPathValue item : seq) {
+                if (item instanceof XPathNumber) {
+                    if (!((XPathNumber) item).isStrictInstanceOfNumericType(localName)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        if (value instanceof XPathNumber) {
+            return ((XPathNumber) value).isStrictInstanceOfNumericType(localName);
+        }
+        return true;
+    }
+    
+    /**
+     * Evaluates 'cast as' - converts value to target type.
+     */
+    private XPathValue evaluateCastAs(XPathValue value, XPathContext context) throws XPathException {
+        // Handle empty sequence
+        if (value == null || isEmpty(value)) {
+            if (targetType.allowsEmpty()) {
+                return XPathSequence.empty();
+            }
+            throw new XPathException("Cannot cast empty sequence to " + targetType);
+        }
+        
+        // Get the atomic value to cast
+        String stringValue = value.asString();
+        
+        // Cast to target type, passing original value for typed casts
+        return castToType(stringValue, targetType, context, value);
+    }
+    
+    /**
+     * Evaluates 'castable as' - returns boolean.
+     */
+    private XPathValue evaluateCastableAs(XPathValue value, XPathContext context) {
+        try {
+            // Handle empty sequence
+            if (value == null || isEmpty(value)) {
+                return XPathBoolean.of(targetType.allowsEmpty());
+            }
+            
+            // Try the cast
+            String stringValue = value.asString();
+            castToType(stringValue, targetType, context, value);
+            return XPathBoolean.TRUE;
+        } catch (XPathException e) {
+            return XPathBoolean.FALSE;
+        } catch (NumberFormatException e) {
+            return XPathBoolean.FALSE;
+        }
+    }
+    
+    /**
+     * Checks if the target type is a user-defined schema type (not built-in xs:).
+     */
+    private boolean isUserDefinedType() {
+        if (targetType.getItemKind() != SequenceType.ItemKind.ATOMIC) {
+            return false;
+        }
+        String ns = targetType.getNamespaceURI();
+        return ns != null && !SequenceType.XS_NAMESPACE.equals(ns);
+    }
+    
+    /**
+     * Validates a value against a user-defined schema type's facets.
+     */
+    private boolean validateAgainstSchemaType(XPathValue value, XPathContext context) {
+        if (context == null) {
+            return true;  // No context to look up types
+        }
+        
+        XSDSimpleType schemaType = context.getSchemaType(
+            targetType.getNamespaceURI(), targetType.getLocalName());
+        
+        if (schemaType == null) {
+            return true;  // Type not found, assume valid
+        }
+        
+        String stringValue = value.asString();
+        return schemaType.validate(stringValue) == null;  // null means valid
+    }
+    
+    /**
+     * Checks if a value is empty.
+     */
+    private boolean isEmpty(XPathValue value) {
+        if (value instanceof XPathNodeSet) {
+            return ((XPathNodeSet) value).size() == 0;
+        }
+        if (value instanceof XPathSequence) {
+            return ((XPathSequence) value).size() == 0;
+        }
+        return false;
+    }
+    
+    /**
+     * Evaluates 'treat as' - asserts type without conversion.
+     */
+    private XPathValue evaluateTreatAs(XPathValue value, XPathContext context) throws XPathException {
+        SchemaContext schemaContext = (context instanceof SchemaContext) ? (SchemaContext) context : SchemaContext.NONE;
+        if (!targetType.matches(value, schemaContext)) {
+            throw new XPathException("XPDY0050: Value does not match type " + targetType + 
+                " in 'treat as' expression");
+        }
+        if (isUserDefinedType() && !validateAgainstSchemaType(value, context)) {
+            throw new XPathException("XPDY0050: Value does not match type " + targetType + 
+                " in 'treat as' expression");
+        }
+        return value;
+    }
+    
+    /**
+     * Casts a string value to the target type.
+     */
+    private XPathValue castToType(String value, SequenceType type, XPathContext context, 
+                                    XPathValue sourceValue) throws XPathException {
+        if (type.getItemKind() != SequenceType.ItemKind.ATOMIC) {
+            throw new XPathException("XPST0051: Cannot cast to non-atomic type: " + type);
+        }
+        
+        String typeName = type.getLocalName();
+        String typeNs = type.getNamespaceURI();
+        
+        // XPST0051: Cannot cast to abstract or non-atomic built-in types
+        if (typeName != null && SequenceType.XS_NAMESPACE.equals(typeNs)) {
+            if ("anyType".equals(typeName) || "anySimpleType".equals(typeName)
+                    || "anyAtomicType".equals(typeName) || "untyped".equals(typeName)) {
+                throw new XPathException("XPST0051: Cannot cast to xs:" + typeName);
+            }
+        }
+        
+        if (typeName == null) {
+            throw new XPathException("Cannot cast to unspecified atomic type");
+        }
+        
+        // Check for user-defined schema types
+        if (typeNs != null && !SequenceType.XS_NAMESPACE.equals(typeNs)) {
+            return castToSchemaType(value, typeNs, typeName, context);
+        }
+        
+        // Built-in XSD types
+        try {
+            switch (typeName) {
+                case "string":
+                case "normalizedString":
+                case "token":
+                case "language":
+                case "Name":
+                case "NCName":
+                case "NMTOKEN":
+                case "ID":
+                case "IDREF":
+                case "ENTITY":
+                    return new XPathString(value);
+                    
+                case "boolean":
+                    // Numeric-to-boolean: 0, +0, -0, NaN → false; all others → true
+                    if (sourceValue instanceof XPathNumber) {
+                        double numVal = sourceValue.asNumber();
+                        return XPathBoolean.of(numVal != 0.0 && !Double.isNaN(numVal));
+                    }
+                    if ("true".equals(value) || "1".equals(value)) {
+                        return XPathBoolean.TRUE;
+                    } else if ("false".equals(value) || "0".equals(value)) {
+                        return XPathBoolean.FALSE;
+                    }
+                    throw new XPathException("Cannot cast '" + value + "' to xs:boolean");
+                    
+                case "integer":
+                case "int":
+                case "long":
+                case "short":
+                case "byte":
+                case "nonPositiveInteger":
+                case "negativeInteger":
+                case "nonNegativeInteger":
+                case "positiveInteger":
+                case "unsignedLong":
+                case "unsignedInt":
+                case "unsignedShort":
+                case "unsignedByte":
+                    if (sourceValue instanceof XPathBoolean) {
+                        return XPathNumber.ofInteger(sourceValue.asBoolean() ? 1L : 0L);
+                    }
+                    if (sourceValue instanceof XPathNumber) {
+                        BigDecimal bd = new BigDecimal(value.trim());
+                        return XPathNumber.ofInteger(bd.toBigInteger());
+                    }
+                    String intStr = value.trim();
+                    if (intStr.indexOf('.') >= 0) {
+                        BigDecimal bd = new BigDecimal(intStr);
+                        if (bd.stripTrailingZeros().scale() > 0) {
+                            throw new XPathException(
+                                "FORG0001: Cannot cast '" + value +
+                                "' to xs:" + typeName + ": non-integer value");
+                        }
+                        return XPathNumber.ofInteger(bd.toBigInteger());
+                    }
+                    try {
+                        return XPathNumber.ofInteger(Long.parseLong(intStr));
+                    } catch (NumberFormatException nfe) {
+                        return XPathNumber.ofInteger(new BigInteger(intStr));
+                    }
+                    
+                case "decimal":
+                    if (sourceValue instanceof XPathBoolean) {
+                        return new XPathNumber(sourceValue.asBoolean()
+                            ? BigDecimal.ONE : BigDecimal.ZERO);
+                    }
+                    return new XPathNumber(new BigDecimal(value.trim()));
+                    
+                case "float":
+                    if (sourceValue instanceof XPathBoolean) {
+                        return new XPathNumber(sourceValue.asBoolean() ? 1.0f : 0.0f, true);
+                    }
+                    float fv = XPathNumber.parseXPathFloat(value);
+                    return new XPathNumber(fv, true);
+                    
+                case "double":
+                    if (sourceValue instanceof XPathBoolean) {
+                        return new XPathNumber(sourceValue.asBoolean() ? 1.0d : 0.0d, false, true);
+                    }
+                    double dv = XPathNumber.parseXPathDouble(value);
+                    return new XPathNumber(dv, false, true);
+                    
+                case "dateTime":
+                    if (sourceValue instanceof XPathDateTime) {
+                        XPathDateTime srcDt = (XPathDateTime) sourceValue;
+                        if (srcDt.getDateTimeType() == XPathDateTime.DateTimeType.DATE) {
+                            return XPathDateTime.castDateToDateTime(srcDt);
+                        }
+                        if (srcDt.getDateTimeType() == XPathDateTime.DateTimeType.DATE_TIME) {
+                            return srcDt;
+                        }
+                    }
+                    return XPathDateTime.parseDateTime(value);
+                case "date":
+                    if (sourceValue instanceof XPathDateTime) {
+                        XPathDateTime srcDt = (XPathDateTime) sourceValue;
+                        if (srcDt.getDateTimeType() == XPathDateTime.DateTimeType.DATE_TIME) {
+                            return XPathDateTime.castDateTimeToDate(srcDt);
+                        }
+                        if (srcDt.getDateTimeType() == XPathDateTime.DateTimeType.DATE) {
+                            return srcDt;
+                        }
+                    }
+                    return XPathDateTime.parseDate(value);
+                case "time":
+                    if (sourceValue instanceof XPathDateTime) {
+                        XPathDateTime srcDt = (XPathDateTime) sourceValue;
+                        if (srcDt.getDateTimeType() == XPathDateTime.DateTimeType.DATE_TIME) {
+                            return XPathDateTime.castDateTimeToTime(srcDt);
+                        }
+                        if (srcDt.getDateTimeType() == XPathDateTime.DateTimeType.TIME) {
+                            return srcDt;
+                        }
+                    }
+                    return XPathDateTime.parseTime(value);
+                case "duration":
+                    if (sourceValue instanceof XPathDateTime) {
+                        XPathDateTime srcDt = (XPathDateTime) sourceValue;
+                        XPathDateTime.DateTimeType sdt = srcDt.getDateTimeType();
+                        if (sdt == XPathDateTime.DateTimeType.DURATION
+                                || sdt == XPathDateTime.DateTimeType.YEAR_MONTH_DURATION
+                                || sdt == XPathDateTime.DateTimeType.DAY_TIME_DURATION) {
+                            return XPathDateTime.castToDuration(srcDt);
+                        }
+                    }
+                    return XPathDateTime.parseDuration(value);
+                case "yearMonthDuration":
+                    if (sourceValue instanceof XPathDateTime) {
+                        XPathDateTime srcDt = (XPathDateTime) sourceValue;
+                        XPathDateTime.DateTimeType sdt = srcDt.getDateTimeType();
+                        if (sdt == XPathDateTime.DateTimeType.DURATION
+                                || sdt == XPathDateTime.DateTimeType.YEAR_MONTH_DURATION
+                                || sdt == XPathDateTime.DateTimeType.DAY_TIME_DURATION) {
+                            return XPathDateTime.castToYearMonthDuration(srcDt);
+                        }
+                    }
+                    return XPathDateTime.parseYearMonthDuration(value);
+                case "dayTimeDuration":
+                    if (sourceValue instanceof XPathDateTime) {
+                        XPathDateTime srcDt = (XPathDateTime) sourceValue;
+                        XPathDateTime.DateTimeType sdt = srcDt.getDateTimeType();
+                        if (sdt == XPathDateTime.DateTimeType.DURATION
+                                || sdt == XPathDateTime.DateTimeType.YEAR_MONTH_DURATION
+                                || sdt == XPathDateTime.DateTimeType.DAY_TIME_DURATION) {
+                            return XPathDateTime.castToDayTimeDuration(srcDt);
+                        }
+                    }
+                    return XPathDateTime.parseDayTimeDuration(value);
+                case "gYear":
+                    return castToGType(sourceValue, value, "gYear");
+                case "gYearMonth":
+                    return castToGType(sourceValue, value, "gYearMonth");
+                case "gMonth":
+                    return castToGType(sourceValue, value, "gMonth");
+                case "gMonthDay":
+                    return castToGType(sourceValue, value, "gMonthDay");
+                case "gDay":
+                    return castToGType(sourceValue, value, "gDay");
+                    
+                case "anyURI":
+                    return new XPathAnyURI(value);
+                case "QName": {
+                    int colonPos = value.indexOf(':');
+                    if (colonPos > 0) {
+                        String prefix = value.substring(0, colonPos);
+                        String local = value.substring(colonPos + 1);
+                        String nsUri = context.resolveNamespacePrefix(prefix);
+                        if (nsUri == null) {
+                            throw new XPathException("FONS0004: Namespace prefix '" + prefix +
+                                "' is not declared");
+                        }
+                        return new XPathQName(nsUri, prefix, local);
+                    }
+                    return XPathQName.of(value);
+                }
+                case "untypedAtomic":
+                    return new XPathUntypedAtomic(value);
+                    
+                default:
+                    // Unknown type - return as string
+                    return new XPathString(value);
+            }
+        } catch (NumberFormatException e) {
+            throw new XPathException("FORG0001: Cannot cast '" + value + "' to xs:" + typeName + 
+                ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Casts a source value to a g* type (gYear, gMonth, gDay, gYearMonth, gMonthDay).
+     * If source is already an XPathDateTime (date or dateTime), extracts components.
+     * Otherwise parses the string representation.
+     */
+    private XPathValue castToGType(XPathValue sourceValue, String stringValue, 
+                                    String targetType) throws XPathException {
+        if (sourceValue instanceof XPathDateTime) {
+            XPathDateTime src = (XPathDateTime) sourceValue;
+            XPathDateTime.DateTimeType srcType = src.getDateTimeType();
+            if (srcType == XPathDateTime.DateTimeType.DATE || 
+                srcType == XPathDateTime.DateTimeType.DATE_TIME) {
+                return XPathDateTime.castToGType(src, targetType);
+            }
+        }
+        // Parse from string
+        switch (targetType) {
+            case "gYear":       return XPathDateTime.parseGYear(stringValue);
+            case "gYearMonth":  return XPathDateTime.parseGYearMonth(stringValue);
+            case "gMonth":      return XPathDateTime.parseGMonth(stringValue);
+            case "gMonthDay":   return XPathDateTime.parseGMonthDay(stringValue);
+            case "gDay":        return XPathDateTime.parseGDay(stringValue);
+            default:
+                throw new XPathException("Unknown g* type: " + targetType);
+        }
+    }
+    
+    /**
+     * Casts a value to a user-defined schema type.
+     */
+    private XPathValue castToSchemaType(String value, String namespaceURI, 
+            String typeName, XPathContext context) throws XPathException {
+        
+        if (context == null) {
+            throw new XPathException("No context available to look up type " + 
+                "{" + namespaceURI + "}" + typeName);
+        }
+        
+        XSDSimpleType schemaType = context.getSchemaType(namespaceURI, typeName);
+        
+        if (schemaType == null) {
+            throw new XPathException("Unknown type: {" + namespaceURI + "}" + typeName);
+        }
+        
+        // Validate against the schema type's facets
+        String validationError = schemaType.validate(value);
+        if (validationError != null) {
+            throw new XPathException("Value '" + value + "' is not valid for type " +
+                "{" + namespaceURI + "}" + typeName + ": " + validationError);
+        }
+        
+        // Cast to the base type
+        return castToBaseType(value, schemaType);
+    }
+    
+    /**
+     * Casts a value to the base type of a schema type.
+     */
+    private XPathValue castToBaseType(String value, XSDSimpleType schemaType) throws XPathException {
+        // Walk up the type hierarchy to find the primitive base type
+        XSDSimpleType type = schemaType;
+        String primitiveTypeName = "string";  // Default
+        
+        while (type != null) {
+            String name = type.getName();
+            if (name != null && isPrimitiveTypeName(name)) {
+                primitiveTypeName = name;
+                break;
+            }
+            type = type.getBaseType();
+        }
+        
+        // Cast to appropriate XPath value based on base type
+        try {
+            switch (primitiveTypeName) {
+                case "integer":
+                case "int":
+                case "long":
+                case "short":
+                case "byte":
+                case "nonPositiveInteger":
+                case "negativeInteger":
+                case "nonNegativeInteger":
+                case "positiveInteger":
+                case "unsignedLong":
+                case "unsignedInt":
+                case "unsignedShort":
+                case "unsignedByte":
+                    String iStr = value.trim();
+                    if (iStr.indexOf('.') >= 0) {
+                        BigDecimal ibd = new BigDecimal(iStr);
+                        return XPathNumber.ofInteger(ibd.toBigInteger());
+                    }
+                    try {
+                        return XPathNumber.ofInteger(Long.parseLong(iStr));
+                    } catch (NumberFormatException nfe) {
+                        return XPathNumber.ofInteger(new BigInteger(iStr));
+                    }
+                    
+                case "decimal":
+                    return new XPathNumber(new BigDecimal(value.trim()));
+                    
+                case "float":
+                case "double": {
+                    double dval = XPathNumber.parseXPathDouble(value);
+                    return new XPathNumber(dval);
+                }
+                    
+                case "boolean":
+                    if ("true".equals(value) || "1".equals(value)) {
+                        return XPathBoolean.TRUE;
+                    } else if ("false".equals(value) || "0".equals(value)) {
+                        return XPathBoolean.FALSE;
+                    }
+                    throw new XPathException("Cannot cast '" + value + "' to boolean");
+                    
+                default:
+                    return new XPathString(value);
+            }
+        } catch (NumberFormatException e) {
+            throw new XPathException("FORG0001: Cannot cast '" + value + "' to " + primitiveTypeName + 
+                ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Checks if a type name is a primitive XSD type.
+     */
+    private boolean isPrimitiveTypeName(String name) {
+        switch (name) {
+            case "string":
+            case "boolean":
+            case "decimal":
+            case "float":
+            case "double":
+            case "integer":
+            case "int":
+            case "long":
+            case "short":
+            case "byte":
+            case "nonPositiveInteger":
+            case "negativeInteger":
+            case "nonNegativeInteger":
+            case "positiveInteger":
+            case "unsignedLong":
+            case "unsignedInt":
+            case "unsignedShort":
+            case "unsignedByte":
+            case "date":
+            case "dateTime":
+            case "time":
+            case "duration":
+            case "anyURI":
+            case "QName":
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        switch (kind) {
+            case INSTANCE_OF:
+                return operand + " instance of " + targetType;
+            case CAST_AS:
+                return operand + " cast as " + targetType;
+            case CASTABLE_AS:
+                return operand + " castable as " + targetType;
+            case TREAT_AS:
+                return operand + " treat as " + targetType;
+            default:
+                return operand + " " + kind + " " + targetType;
+        }
+    }
+}
@@ -0,0 +1,1677 @@
+/*
+ * DateTimeFunctions.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.xpath.function;
+
+import org.bluezoo.gonzalez.transform.xpath.XPathContext;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.bluezoo.gonzalez.transform.xpath.function.locale.DateTimeLocale;
+import org.bluezoo.gonzalez.transform.xpath.type.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.bluezoo.gonzalez.transform.xpath.function.TypeAnnotatedFunction.typed;
+
+/**
+ * XPath 2.0/3.0 date and time functions.
+ *
+ * <p>Implements:
+ * <ul>
+ *   <li>Component extraction: year-from-dateTime, year-from-date, month-from-dateTime, etc.</li>
+ *   <li>Current date/time: current-dateTime, current-date, current-time</li>
+ *   <li>Construction: dateTime (from date and time)</li>
+ * </ul>
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class DateTimeFunctions {
+
+    private DateTimeFunctions() {}
+
+    /**
+     * Returns all date/time functions (XPath 2.0/3.0).
+     *
+     * @return list of all date/time function implementations
+     */
+    public static List<Function> getAll() {
+        SequenceType DT = SequenceType.DATETIME;
+        SequenceType DTQ = SequenceType.DATETIME_Q;
+        SequenceType DA = SequenceType.DATE;
+        SequenceType DAQ = SequenceType.DATE_Q;
+        SequenceType TI = SequenceType.TIME;
+        SequenceType TIQ = SequenceType.TIME_Q;
+        SequenceType IQ = SequenceType.INTEGER_Q;
+        SequenceType I = SequenceType.INTEGER;
+        SequenceType DCQ = SequenceType.DECIMAL_Q;
+        SequenceType DC = SequenceType.DECIMAL;
+        SequenceType DDQ = SequenceType.DT_DURATION_Q;
+        SequenceType DD = SequenceType.DT_DURATION;
+        SequenceType DU = SequenceType.DURATION;
+        SequenceType S = SequenceType.STRING;
+        SequenceType SQ = SequenceType.STRING_Q;
+
+        List<Function> functions = new ArrayList<>();
+        functions.add(typed(CURRENT_DATE_TIME, DT));
+        functions.add(typed(CURRENT_DATE,      DA));
+        functions.add(typed(CURRENT_TIME,      TI));
+        functions.add(typed(DATE_TIME,         DTQ, DAQ, TIQ));
+        functions.add(typed(YEAR_FROM_DATE_TIME,   IQ, DTQ));
+        functions.add(typed(YEAR_FROM_DATE,        IQ, DAQ));
+        functions.add(typed(MONTH_FROM_DATE_TIME,  IQ, DTQ));
+        functions.add(typed(MONTH_FROM_DATE,       IQ, DAQ));
+        functions.add(typed(DAY_FROM_DATE_TIME,    IQ, DTQ));
+        functions.add(typed(DAY_FROM_DATE,         IQ, DAQ));
+        functions.add(typed(HOURS_FROM_DATE_TIME,  IQ, DTQ));
+        functions.add(typed(HOURS_FROM_TIME,       IQ, TIQ));
+        functions.add(typed(MINUTES_FROM_DATE_TIME, IQ, DTQ));
+        functions.add(typed(MINUTES_FROM_TIME,      IQ, TIQ));
+        functions.add(typed(SECONDS_FROM_DATE_TIME, DCQ, DTQ));
+        functions.add(typed(SECONDS_FROM_TIME,      DCQ, TIQ));
+        functions.add(typed(TIMEZONE_FROM_DATE_TIME, DDQ, DTQ));
+        functions.add(typed(TIMEZONE_FROM_DATE,      DDQ, DAQ));
+        functions.add(typed(TIMEZONE_FROM_TIME,      DDQ, TIQ));
+        functions.add(typed(YEARS_FROM_DURATION,     I, DU));
+        functions.add(typed(MONTHS_FROM_DURATION,    I, DU));
+        functions.add(typed(DAYS_FROM_DURATION,      I, DU));
+        functions.add(typed(HOURS_FROM_DURATION,     I, DU));
+        functions.add(typed(MINUTES_FROM_DURATION,   I, DU));
+        functions.add(typed(SECONDS_FROM_DURATION,   DC, DU));
+        functions.add(typed(FORMAT_DATE_TIME, S, DTQ, S, SQ, SQ, SQ));
+        functions.add(typed(FORMAT_DATE,      S, DAQ, S, SQ, SQ, SQ));
+        functions.add(typed(FORMAT_TIME,      S, TIQ, S, SQ, SQ, SQ));
+        functions.add(typed(ADJUST_DATE_TIME_TO_TIMEZONE, DTQ, DTQ, DDQ));
+        functions.add(typed(ADJUST_DATE_TO_TIMEZONE,      DAQ, DAQ, DDQ));
+        functions.add(typed(ADJUST_TIME_TO_TIMEZONE,      TIQ, TIQ, DDQ));
+        functions.add(typed(IMPLICIT_TIMEZONE, DD));
+        return functions;
+    }
+
+    // ========== Current date/time functions ==========
+    
+    /**
+     * XPath 2.0 current-dateTime() function.
+     * 
+     * <p>Returns the current date and time as an xs:dateTime value.
+     * 
+     * <p>Signature: current-dateTime() → dateTime
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-current-dateTime">XPath 3.0 current-dateTime()</a>
+     */
+    public static final Function CURRENT_DATE_TIME = new Function() {
+        @Override public String getName() { return "current-dateTime"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 0; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            // Per XPath/XSLT spec, current-dateTime() returns the same value
+            // throughout a single transformation
+            return context.getCurrentDateTime();
+        }
+    };
+    
+    /**
+     * XPath 2.0 current-date() function.
+     * 
+     * <p>Returns the current date as an xs:date value.
+     * 
+     * <p>Signature: current-date() → date
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-current-date">XPath 3.0 current-date()</a>
+     */
+    public static final Function CURRENT_DATE = new Function() {
+        @Override public String getName() { return "current-date"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 0; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            return XPathDateTime.today();
+        }
+    };
+    
+    /**
+     * XPath 2.0 current-time() function.
+     * 
+     * <p>Returns the current time as an xs:time value.
+     * 
+     * <p>Signature: current-time() → time
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-current-time">XPath 3.0 current-time()</a>
+     */
+    public static final Function CURRENT_TIME = new Function() {
+        @Override public String getName() { return "current-time"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 0; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            return XPathDateTime.currentTime();
+        }
+    };
+    
+    // ========== DateTime constructor ==========
+    
+    /**
+     * XPath 2.0 dateTime() constructor function.
+     * 
+     * <p>Constructs an xs:dateTime from an xs:date and xs:time.
+     * 
+     * <p>Signature: dateTime(date, time) → dateTime?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-dateTime">XPath 3.0 dateTime()</a>
+     */
+    public static final Function DATE_TIME = new Function() {
+        @Override public String getName() { return "dateTime"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 2; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg0 = args.get(0);
+            XPathValue arg1 = args.get(1);
+            
+            if (isEmpty(arg0) || isEmpty(arg1)) {
+                return XPathSequence.EMPTY;
+            }
+            
+            XPathDateTime date = toDate(arg0);
+            XPathDateTime time = toTime(arg1);
+            return XPathDateTime.dateTime(date, time);
+        }
+    };
+    
+    // ========== Year extraction ==========
+    
+    /**
+     * XPath 2.0 year-from-dateTime() function.
+     * 
+     * <p>Extracts the year component from an xs:dateTime value.
+     * 
+     * <p>Signature: year-from-dateTime(dateTime?) → integer?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-year-from-dateTime">XPath 3.0 year-from-dateTime()</a>
+     */
+    public static final Function YEAR_FROM_DATE_TIME = new Function() {
+        @Override public String getName() { return "year-from-dateTime"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            Integer year = dt.getYear();
+            return year != null ? XPathNumber.of(year) : XPathSequence.EMPTY;
+        }
+    };
+    
+    public static final Function YEAR_FROM_DATE = new Function() {
+        @Override public String getName() { return "year-from-date"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDate(arg);
+            Integer year = dt.getYear();
+            return year != null ? XPathNumber.of(year) : XPathSequence.EMPTY;
+        }
+    };
+    
+    // ========== Month extraction ==========
+    
+    public static final Function MONTH_FROM_DATE_TIME = new Function() {
+        @Override public String getName() { return "month-from-dateTime"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            Integer month = dt.getMonth();
+            return month != null ? XPathNumber.of(month) : XPathSequence.EMPTY;
+        }
+    };
+    
+    public static final Function MONTH_FROM_DATE = new Function() {
+        @Override public String getName() { return "month-from-date"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDate(arg);
+            Integer month = dt.getMonth();
+            return month != null ? XPathNumber.of(month) : XPathSequence.EMPTY;
+        }
+    };
+    
+    // ========== Day extraction ==========
+    
+    public static final Function DAY_FROM_DATE_TIME = new Function() {
+        @Override public String getName() { return "day-from-dateTime"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            Integer day = dt.getDay();
+            return day != null ? XPathNumber.of(day) : XPathSequence.EMPTY;
+        }
+    };
+    
+    public static final Function DAY_FROM_DATE = new Function() {
+        @Override public String getName() { return "day-from-date"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDate(arg);
+            Integer day = dt.getDay();
+            return day != null ? XPathNumber.of(day) : XPathSequence.EMPTY;
+        }
+    };
+    
+    // ========== Hours extraction ==========
+    
+    public static final Function HOURS_FROM_DATE_TIME = new Function() {
+        @Override public String getName() { return "hours-from-dateTime"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            Integer hour = dt.getHour();
+            return hour != null ? XPathNumber.of(hour) : XPathSequence.EMPTY;
+        }
+    };
+    
+    public static final Function HOURS_FROM_TIME = new Function() {
+        @Override public String getName() { return "hours-from-time"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toTime(arg);
+            Integer hour = dt.getHour();
+            return hour != null ? XPathNumber.of(hour) : XPathSequence.EMPTY;
+        }
+    };
+    
+    // ========== Minutes extraction ==========
+    
+    public static final Function MINUTES_FROM_DATE_TIME = new Function() {
+        @Override public String getName() { return "minutes-from-dateTime"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            Integer minute = dt.getMinute();
+            return minute != null ? XPathNumber.of(minute) : XPathSequence.EMPTY;
+        }
+    };
+    
+    public static final Function MINUTES_FROM_TIME = new Function() {
+        @Override public String getName() { return "minutes-from-time"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toTime(arg);
+            Integer minute = dt.getMinute();
+            return minute != null ? XPathNumber.of(minute) : XPathSequence.EMPTY;
+        }
+    };
+    
+    // ========== Seconds extraction ==========
+    
+    public static final Function SECONDS_FROM_DATE_TIME = new Function() {
+        @Override public String getName() { return "seconds-from-dateTime"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            BigDecimal second = dt.getSecond();
+            return second != null ? XPathNumber.of(second.doubleValue()) : XPathSequence.EMPTY;
+        }
+    };
+    
+    public static final Function SECONDS_FROM_TIME = new Function() {
+        @Override public String getName() { return "seconds-from-time"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toTime(arg);
+            BigDecimal second = dt.getSecond();
+            return second != null ? XPathNumber.of(second.doubleValue()) : XPathSequence.EMPTY;
+        }
+    };
+    
+    // ========== Timezone extraction ==========
+    
+    public static final Function TIMEZONE_FROM_DATE_TIME = new Function() {
+        @Override public String getName() { return "timezone-from-dateTime"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            XPathDateTime tz = dt.getTimezoneAsDuration();
+            return tz != null ? tz : XPathSequence.EMPTY;
+        }
+    };
+    
+    public static final Function TIMEZONE_FROM_DATE = new Function() {
+        @Override public String getName() { return "timezone-from-date"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDate(arg);
+            XPathDateTime tz = dt.getTimezoneAsDuration();
+            return tz != null ? tz : XPathSequence.EMPTY;
+        }
+    };
+    
+    public static final Function TIMEZONE_FROM_TIME = new Function() {
+        @Override public String getName() { return "timezone-from-time"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toTime(arg);
+            XPathDateTime tz = dt.getTimezoneAsDuration();
+            return tz != null ? tz : XPathSequence.EMPTY;
+        }
+    };
+    
+    // ========== Duration component extraction ==========
+    
+    public static final Function YEARS_FROM_DURATION = new Function() {
+        @Override public String getName() { return "years-from-duration"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDuration(arg);
+            Integer years = dt.getDurationYears();
+            int value = years != null ? years : 0;
+            if (dt.isNegative()) value = -value;
+            return XPathNumber.of(value);
+        }
+    };
+    
+    public static final Function MONTHS_FROM_DURATION = new Function() {
+        @Override public String getName() { return "months-from-duration"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDuration(arg);
+            Integer months = dt.getDurationMonths();
+            int value = months != null ? months : 0;
+            if (dt.isNegative()) value = -value;
+            return XPathNumber.of(value);
+        }
+    };
+    
+    public static final Function DAYS_FROM_DURATION = new Function() {
+        @Override public String getName() { return "days-from-duration"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDuration(arg);
+            Integer days = dt.getDurationDays();
+            int value = days != null ? days : 0;
+            if (dt.isNegative()) value = -value;
+            return XPathNumber.of(value);
+        }
+    };
+    
+    public static final Function HOURS_FROM_DURATION = new Function() {
+        @Override public String getName() { return "hours-from-duration"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDuration(arg);
+            Integer hours = dt.getDurationHours();
+            int value = hours != null ? hours : 0;
+            if (dt.isNegative()) value = -value;
+            return XPathNumber.of(value);
+        }
+    };
+    
+    public static final Function MINUTES_FROM_DURATION = new Function() {
+        @Override public String getName() { return "minutes-from-duration"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDuration(arg);
+            Integer minutes = dt.getDurationMinutes();
+            int value = minutes != null ? minutes : 0;
+            if (dt.isNegative()) value = -value;
+            return XPathNumber.of(value);
+        }
+    };
+    
+    public static final Function SECONDS_FROM_DURATION = new Function() {
+        @Override public String getName() { return "seconds-from-duration"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDuration(arg);
+            BigDecimal seconds = dt.getDurationSeconds();
+            double value = seconds != null ? seconds.doubleValue() : 0.0;
+            if (dt.isNegative()) value = -value;
+            return XPathNumber.of(value);
+        }
+    };
+    
+    // ========== Formatting functions ==========
+    
+    /**
+     * XPath 3.0 format-dateTime() function.
+     * 
+     * <p>Formats a dateTime value according to a picture string and locale.
+     * 
+     * <p>Signature: format-dateTime(dateTime?, string, string?, string?, string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-format-dateTime">XPath 3.0 format-dateTime()</a>
+     */
+    public static final Function FORMAT_DATE_TIME = new Function() {
+        @Override public String getName() { return "format-dateTime"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 5; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathString.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            String picture = args.get(1).asString();
+            String language = args.size() > 2 && !isEmpty(args.get(2)) ? args.get(2).asString() : "en";
+            String calendar = args.size() > 3 && !isEmpty(args.get(3)) ? args.get(3).asString() : null;
+            String place = args.size() > 4 && !isEmpty(args.get(4)) ? args.get(4).asString() : null;
+            Locale locale = parseLocale(language, place);
+            return XPathString.of(formatDateTime(dt, picture, true, true, locale, calendar, language));
+        }
+    };
+    
+    /**
+     * XPath 3.0 format-date() function.
+     * 
+     * <p>Formats a date value according to a picture string and locale.
+     * 
+     * <p>Signature: format-date(date?, string, string?, string?, string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-format-date">XPath 3.0 format-date()</a>
+     */
+    public static final Function FORMAT_DATE = new Function() {
+        @Override public String getName() { return "format-date"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 5; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathString.EMPTY;
+            XPathDateTime dt = toDate(arg);
+            String picture = args.get(1).asString();
+            String language = args.size() > 2 && !isEmpty(args.get(2)) ? args.get(2).asString() : "en";
+            String calendar = args.size() > 3 && !isEmpty(args.get(3)) ? args.get(3).asString() : null;
+            String place = args.size() > 4 && !isEmpty(args.get(4)) ? args.get(4).asString() : null;
+            Locale locale = parseLocale(language, place);
+            return XPathString.of(formatDateTime(dt, picture, true, false, locale, calendar, language));
+        }
+    };
+    
+    /**
+     * XPath 3.0 format-time() function.
+     * 
+     * <p>Formats a time value according to a picture string and locale.
+     * 
+     * <p>Signature: format-time(time?, string, string?, string?, string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-format-time">XPath 3.0 format-time()</a>
+     */
+    public static final Function FORMAT_TIME = new Function() {
+        @Override public String getName() { return "format-time"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 5; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathString.EMPTY;
+            XPathDateTime dt = toTime(arg);
+            String picture = args.get(1).asString();
+            String language = args.size() > 2 && !isEmpty(args.get(2)) ? args.get(2).asString() : "en";
+            String calendar = args.size() > 3 && !isEmpty(args.get(3)) ? args.get(3).asString() : null;
+            String place = args.size() > 4 && !isEmpty(args.get(4)) ? args.get(4).asString() : null;
+            Locale locale = parseLocale(language, place);
+            return XPathString.of(formatDateTime(dt, picture, false, true, locale, calendar, language));
+        }
+    };
+    
+    // ========== Timezone adjustment functions ==========
+    
+    /**
+     * XPath 2.0 adjust-dateTime-to-timezone() function.
+     * 
+     * <p>Adjusts an xs:dateTime value to a specific timezone.
+     * 
+     * <p>Signature: adjust-dateTime-to-timezone(dateTime?, dayTimeDuration?) → dateTime?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-adjust-dateTime-to-timezone">XPath 3.0 adjust-dateTime-to-timezone()</a>
+     */
+    public static final Function ADJUST_DATE_TIME_TO_TIMEZONE = new Function() {
+        @Override public String getName() { return "adjust-dateTime-to-timezone"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 2; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDateTime(arg);
+            
+            // Get timezone argument (null means remove timezone)
+            Integer tzMinutes = null;
+            if (args.size() > 1 && !isEmpty(args.get(1))) {
+                XPathDateTime tz = toDayTimeDuration(args.get(1));
+                tzMinutes = getTzMinutes(tz);
+                validateTimezone(tzMinutes);
+            }
+            
+            return dt.adjustToTimezone(tzMinutes);
+        }
+    };
+    
+    /**
+     * XPath 2.0 adjust-date-to-timezone() function.
+     * 
+     * <p>Adjusts an xs:date value to a specific timezone.
+     * 
+     * <p>Signature: adjust-date-to-timezone(date?, dayTimeDuration?) → date?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-adjust-date-to-timezone">XPath 3.0 adjust-date-to-timezone()</a>
+     */
+    public static final Function ADJUST_DATE_TO_TIMEZONE = new Function() {
+        @Override public String getName() { return "adjust-date-to-timezone"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 2; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toDate(arg);
+            
+            // Get timezone argument (null means remove timezone)
+            Integer tzMinutes = null;
+            if (args.size() > 1 && !isEmpty(args.get(1))) {
+                XPathDateTime tz = toDayTimeDuration(args.get(1));
+                tzMinutes = getTzMinutes(tz);
+                validateTimezone(tzMinutes);
+            }
+            
+            return dt.adjustToTimezone(tzMinutes);
+        }
+    };
+    
+    /**
+     * XPath 2.0 adjust-time-to-timezone() function.
+     * 
+     * <p>Adjusts an xs:time value to a specific timezone.
+     * 
+     * <p>Signature: adjust-time-to-timezone(time?, dayTimeDuration?) → time?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-adjust-time-to-timezone">XPath 3.0 adjust-time-to-timezone()</a>
+     */
+    public static final Function ADJUST_TIME_TO_TIMEZONE = new Function() {
+        @Override public String getName() { return "adjust-time-to-timezone"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 2; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (isEmpty(arg)) return XPathSequence.EMPTY;
+            XPathDateTime dt = toTime(arg);
+            
+            // Get timezone argument (null means remove timezone)
+            Integer tzMinutes = null;
+            if (args.size() > 1 && !isEmpty(args.get(1))) {
+                XPathDateTime tz = toDayTimeDuration(args.get(1));
+                tzMinutes = getTzMinutes(tz);
+                validateTimezone(tzMinutes);
+            }
+            
+            return dt.adjustToTimezone(tzMinutes);
+        }
+    };
+    
+    /**
+     * Extracts timezone offset in minutes from a dayTimeDuration.
+     */
+    private static Integer getTzMinutes(XPathDateTime duration) {
+        if (duration == null) {
+            return null;
+        }
+        int totalMinutes = 0;
+        if (duration.getDurationDays() != null) {
+            totalMinutes += duration.getDurationDays() * 24 * 60;
+        }
+        if (duration.getDurationHours() != null) {
+            totalMinutes += duration.getDurationHours() * 60;
+        }
+        if (duration.getDurationMinutes() != null) {
+            totalMinutes += duration.getDurationMinutes();
+        }
+        // Seconds are not used for timezone offsets
+        if (duration.isNegative()) {
+            totalMinutes = -totalMinutes;
+        }
+        return totalMinutes;
+    }
+    
+    /**
+     * XPath 2.0 implicit-timezone() function.
+     * 
+     * <p>Returns the implicit timezone from the dynamic context as a dayTimeDuration.
+     * 
+     * <p>Signature: implicit-timezone() → dayTimeDuration
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-implicit-timezone">XPath 3.0 implicit-timezone()</a>
+     */
+    public static final Function IMPLICIT_TIMEZONE = new Function() {
+        @Override public String getName() { return "implicit-timezone"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 0; }
+        
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            // Get the system's default timezone offset
+            java.time.ZoneOffset offset = java.time.ZonedDateTime.now().getOffset();
+            int totalSeconds = offset.getTotalSeconds();
+            int hours = totalSeconds / 3600;
+            int minutes = (Math.abs(totalSeconds) % 3600) / 60;
+            
+            // Create a dayTimeDuration representation
+            boolean negative = totalSeconds < 0;
+            String lexical = (negative ? "-" : "") + "PT" + Math.abs(hours) + "H" + 
+                             (minutes > 0 ? minutes + "M" : "");
+            if (hours == 0 && minutes == 0) {
+                lexical = "PT0S";
+            }
+            
+            return XPathDateTime.parseDayTimeDuration(lexical);
+        }
+    };
+    
+    /**
+     * Validates that a timezone offset is within the allowed range (-14:00 to +14:00).
+     */
+    private static void validateTimezone(Integer tzMinutes) throws XPathException {
+        if (tzMinutes != null && (tzMinutes < -14 * 60 || tzMinutes > 14 * 60)) {
+            throw new XPathException("FODT0003: Timezone offset out of range: " + tzMinutes + " minutes");
+        }
+    }
+    
+    /**
+     * Parses language and place into a Java Locale.
+     *
+     * @param language the language code (e.g., "en", "en-GB")
+     * @param place the country/region code (optional)
+     * @return the parsed Locale
+     */
+    private static Locale parseLocale(String language, String place) {
+        if (language == null || language.isEmpty()) {
+            language = "en";
+        }
+        // Handle language tags like "en-GB" or "en_GB"
+        String[] parts = language.split("[-_]");
+        String lang = parts[0];
+        String country = parts.length >= 2 ? parts[1].toUpperCase() : null;
+        if (country == null && place != null && !place.isEmpty()) {
+            country = place.toUpperCase();
+        }
+        // Only English is supported; fall back for unknown languages
+        if (!"en".equalsIgnoreCase(lang)) {
+            lang = "en";
+        }
+        if (country != null) {
+            return new Locale(lang, country);
+        }
+        return new Locale(lang);
+    }
+    
+    /**
+     * Formats a date/time according to a picture string.
+     * Supports basic XSLT 2.0/3.0 picture formatting.
+     *
+     * @param dt the dateTime value to format
+     * @param picture the format picture string
+     * @param hasDate true if date components should be included
+     * @param hasTime true if time components should be included
+     * @param locale the locale for localization
+     * @param calendar the calendar system (e.g., "ISO" for ISO week numbering)
+     * @return the formatted string
+     * @throws XPathException if the picture string is invalid
+     */
+    private static String formatDateTime(XPathDateTime dt, String picture, 
+                                         boolean hasDate, boolean hasTime, Locale locale,
+                                         String calendar) throws XPathException {
+        return formatDateTime(dt, picture, hasDate, hasTime, locale, calendar, null);
+    }
+    
+    private static String formatDateTime(XPathDateTime dt, String picture, 
+                                         boolean hasDate, boolean hasTime, Locale locale,
+                                         String calendar, String requestedLanguage) throws XPathException {
+        DateTimeLocale dtLocale = DateTimeLocale.forLocale(locale);
+        boolean useIsoCalendar = calendar == null || calendar.isEmpty()
+                || "ISO".equalsIgnoreCase(calendar);
+        
+        // Language/calendar fallback annotations per spec section 9.8.4.7
+        StringBuilder prefix = new StringBuilder();
+        if (requestedLanguage != null) {
+            String actualLang = locale.getLanguage();
+            if (!requestedLanguage.equalsIgnoreCase(actualLang)) {
+                prefix.append("[Language: ").append(actualLang).append("]");
+            }
+        }
+        if (calendar != null && !calendar.isEmpty()) {
+            String calNorm = calendar;
+            // Strip namespace prefix if present
+            int calColon = calNorm.indexOf(':');
+            if (calColon >= 0) {
+                calNorm = calNorm.substring(calColon + 1);
+            }
+            if (!"AD".equalsIgnoreCase(calNorm) && !"ISO".equalsIgnoreCase(calNorm)) {
+                prefix.append("[Calendar: AD]");
+            }
+        }
+        
+        StringBuilder result = new StringBuilder();
+        result.append(prefix);
+        int i = 0;
+        while (i < picture.length()) {
+            char c = picture.charAt(i);
+            if (c == '[') {
+                // Check for escaped [[ which produces literal [
+                if (i + 1 < picture.length() && picture.charAt(i + 1) == '[') {
+                    result.append('[');
+                    i += 2;
+                    continue;
+                }
+                // Find matching ]
+                int end = picture.indexOf(']', i);
+                if (end == -1) {
+                    throw new XPathException("Unclosed '[' in format picture: " + picture);
+                }
+                String component = picture.substring(i + 1, end);
+                result.append(formatComponent(dt, component, hasDate, hasTime, dtLocale, useIsoCalendar));
+                i = end + 1;
+            } else if (c == ']') {
+                // Literal ] is escaped as ]]
+                if (i + 1 < picture.length() && picture.charAt(i + 1) == ']') {
+                    result.append(']');
+                    i += 2;
+                } else {
+                    throw new XPathException("Unmatched ']' in format picture: " + picture);
+                }
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Formats a single component like Y, M, D, H, m, s, etc.
+     * 
+     * <p>Picture string format examples:
+     * <ul>
+     *   <li>[Y] = year in decimal</li>
+     *   <li>[Y0001] = year padded to 4 digits</li>
+     *   <li>[M01] = month padded to 2 digits</li>
+     *   <li>[MNn] = month name, initial capital</li>
+     *   <li>[MI] = month in Roman numerals</li>
+     *   <li>[D] = day without padding</li>
+     *   <li>[D01] = day padded to 2 digits</li>
+     * </ul>
+     *
+     * @param dt the dateTime value
+     * @param component the component specification (e.g., "Y", "M01", "MNn")
+     * @param hasDate true if date components are available
+     * @param hasTime true if time components are available
+     * @param dtLocale the locale for localization
+     * @param useIsoCalendar true to use ISO calendar (Monday=1, Sunday=7 for [F]; ISO week numbering for [W])
+     * @return the formatted component string
+     * @throws XPathException if the component specification is invalid
+     */
+    private static String formatComponent(XPathDateTime dt, String component,
+                                          boolean hasDate, boolean hasTime,
+                                          DateTimeLocale dtLocale, boolean useIsoCalendar) throws XPathException {
+        if (component.isEmpty()) {
+            return "";
+        }
+        
+        // Parse component: first char is specifier, rest is presentation modifier
+        char specifier = component.charAt(0);
+        String modifier = component.length() > 1 ? component.substring(1).trim() : "";
+        
+        // Parse presentation format and width
+        int minWidth = 1;
+        int maxWidth = Integer.MAX_VALUE;
+        String presentation = "1";  // Default: decimal
+        boolean explicitWidth = false;  // Track if width was explicitly specified
+        boolean ordinal = false;  // Track if ordinal suffix is requested
+        String rawPresentation = "";  // Unprocessed presentation text for components like [z]
+        
+        if (!modifier.isEmpty()) {
+            int commaPos = modifier.indexOf(',');
+            String presentationPart;
+            String widthPart = null;
+            
+            if (commaPos >= 0) {
+                presentationPart = modifier.substring(0, commaPos);
+                widthPart = modifier.substring(commaPos + 1);
+            } else {
+                presentationPart = modifier;
+            }
+            
+            // Check for ordinal modifier at end of presentation
+            if (presentationPart.endsWith("o") || presentationPart.endsWith("O")) {
+                ordinal = true;
+                presentationPart = presentationPart.substring(0, presentationPart.length() - 1);
+                if (presentationPart.isEmpty()) {
+                    presentationPart = "1";  // Default to decimal if just 'o'
+                }
+            }
+            
+            rawPresentation = presentationPart;
+            
+            if (presentationPart.length() > 0) {
+                int firstCp = presentationPart.codePointAt(0);
+                char firstChar = presentationPart.charAt(0);
+                
+                if (firstChar == '0' || firstChar == '#') {
+                    // Decimal format with width determined by pattern length
+                    // "01" = width 2, "001" = width 3, "0001" = width 4
+                    minWidth = presentationPart.length();
+                    presentation = "1";
+                    explicitWidth = true;
+                } else if (Character.isDigit(firstCp) && firstCp > '9') {
+                    // Non-ASCII digit (BMP or supplementary): use digit family
+                    presentation = presentationPart;
+                    minWidth = presentationPart.codePointCount(0, presentationPart.length());
+                    explicitWidth = true;
+                } else if (Character.isDigit(firstChar)) {
+                    // ASCII digit: "1" means default decimal, width 1
+                    presentation = "1";
+                    minWidth = presentationPart.length();
+                } else if (firstChar == 'I') {
+                    presentation = "I";  // Roman numerals uppercase
+                } else if (firstChar == 'i') {
+                    presentation = "i";  // Roman numerals lowercase
+                } else if (firstChar == 'W') {
+                    presentation = presentationPart;  // Words (W, Ww, etc.)
+                } else if (firstChar == 'w') {
+                    presentation = presentationPart;  // Words lowercase
+                } else if (firstChar == 'N' || firstChar == 'n') {
+                    presentation = presentationPart;  // Name format (Nn, N, n)
+                } else if (firstChar == 'A' || firstChar == 'a') {
+                    presentation = presentationPart;  // Alphabetic
+                } else {
+                    presentation = presentationPart;
+                }
+            }
+            
+            // Parse explicit width from comma-separated width spec
+            if (widthPart != null && !widthPart.isEmpty()) {
+                int dashPos = widthPart.indexOf('-');
+                if (dashPos > 0) {
+                    try {
+                        minWidth = Integer.parseInt(widthPart.substring(0, dashPos).trim());
+                        String maxStr = widthPart.substring(dashPos + 1).trim();
+                        if (!"*".equals(maxStr)) {
+                            maxWidth = Integer.parseInt(maxStr);
+                        }
+                    } catch (NumberFormatException e) {
+                        // Ignore invalid width
+                    }
+                } else {
+                    try {
+                        minWidth = Integer.parseInt(widthPart.trim());
+                    } catch (NumberFormatException e) {
+                        // Ignore
+                    }
+                }
+            }
+        }
+        
+        Integer value = null;
+        String strValue = null;
+        
+        switch (specifier) {
+            case 'Y':  // Year
+                // XTDE1350: Year requires date component
+                if (!hasDate) {
+                    throw new XPathException("XTDE1350: Component [Y] is not available for formatting a time value");
+                }
+                Integer yearVal = dt.getYear();
+                if (yearVal != null) {
+                    // For short year formats with explicit width (minWidth < 4), use modulo to get last N digits
+                    // [Y01] = 2-digit year, [Y001] = 3-digit year
+                    // [Y] with no explicit width = full year
+                    // Always use absolute value - negative years are shown with BC era designation
+                    if (explicitWidth && minWidth < 4 && minWidth > 0) {
+                        int divisor = 1;
+                        for (int j = 0; j < minWidth; j++) divisor *= 10;
+                        value = Math.abs(yearVal) % divisor;
+                    } else {
+                        value = Math.abs(yearVal);
+                    }
+                }
+                break;
+            case 'M':  // Month
+                // XTDE1350: Month requires date component
+                if (!hasDate) {
+                    throw new XPathException("XTDE1350: Component [M] is not available for formatting a time value");
+                }
+                value = dt.getMonth();
+                if (presentation.startsWith("N") || presentation.startsWith("n")) {
+                    // Pass width constraints to name selection
+                    strValue = dtLocale.getMonthName(value, minWidth, maxWidth);
+                    strValue = formatName(strValue, presentation);
+                }
+                break;
+            case 'D':  // Day of month
+                // XTDE1350: Day of month requires date component
+                if (!hasDate) {
+                    throw new XPathException("XTDE1350: Component [D] is not available for formatting a time value");
+                }
+                value = dt.getDay();
+                break;
+            case 'd':  // Day of year
+                // XTDE1350: Day of year requires date component
+                if (!hasDate) {
+                    throw new XPathException("XTDE1350: Component [d] is not available for formatting a time value");
+                }
+                value = getDayOfYear(dt);
+                break;
+            case 'F':  // Day of week
+                // XTDE1350: Day of week requires date component
+                if (!hasDate) {
+                    throw new XPathException("XTDE1350: Component [F] is not available for formatting a time value");
+                }
+                value = getDayOfWeek(dt, useIsoCalendar);
+                if (presentation.startsWith("N") || presentation.startsWith("n")) {
+                    // Pass width constraints to name selection
+                    // For day names, ISO calendar day number (Mon=1) needs to map to locale day name
+                    int dayForName = useIsoCalendar ? (value == 7 ? 1 : value + 1) : value;
+                    strValue = dtLocale.getDayName(dayForName, minWidth, maxWidth);
+                    strValue = formatName(strValue, presentation);
+                }
+                break;
+            case 'W':  // Week of year
+                // XTDE1350: Week of year requires date component
+                if (!hasDate) {
+                    throw new XPathException("XTDE1350: Component [W] is not available for formatting a time value");
+                }
+                value = getWeekOfYear(dt, useIsoCalendar);
+                break;
+            case 'w':  // Week of month
+                // XTDE1350: Week of month requires date component
+                if (!hasDate) {
+                    throw new XPathException("XTDE1350: Component [w] is not available for formatting a time value");
+                }
+                value = getWeekOfMonth(dt, useIsoCalendar);
+                break;
+            case 'H':  // Hour (24)
+                // XTDE1350: Hour requires time component
+                if (!hasTime) {
+                    throw new XPathException("XTDE1350: Component [H] is not available for formatting a date value");
+                }
+                value = dt.getHour();
+                break;
+            case 'h':  // Hour (12)
+                // XTDE1350: Hour requires time component
+                if (!hasTime) {
+                    throw new XPathException("XTDE1350: Component [h] is not available for formatting a date value");
+                }
+                Integer hour = dt.getHour();
+                if (hour != null) {
+                    value = hour % 12;
+                    if (value == 0) {
+                        value = 12;
+                    }
+                }
+                break;
+            case 'P':  // AM/PM
+                // XTDE1350: AM/PM requires time component
+                if (!hasTime) {
+                    throw new XPathException("XTDE1350: Component [P] is not available for formatting a date value");
+                }
+                Integer h = dt.getHour();
+                if (h != null) {
+                    boolean isAm = h < 12;
+                    String ampmStr = isAm ? "am" : "pm";
+                    if ("N".equals(presentation)) {
+                        ampmStr = ampmStr.toUpperCase(Locale.ENGLISH);
+                    } else if ("Nn".equals(presentation)) {
+                        ampmStr = ampmStr.substring(0, 1).toUpperCase(Locale.ENGLISH) + ampmStr.substring(1);
+                    }
+                    strValue = ampmStr;
+                }
+                break;
+            case 'm':  // Minute
+                // XTDE1350: Minute requires time component
+                if (!hasTime) {
+                    throw new XPathException("XTDE1350: Component [m] is not available for formatting a date value");
+                }
+                value = dt.getMinute();
+                // Default minimum width for minutes is 2
+                if (minWidth == 1 && !explicitWidth) {
+                    minWidth = 2;
+                }
+                break;
+            case 's':  // Second
+                // XTDE1350: Second requires time component
+                if (!hasTime) {
+                    throw new XPathException("XTDE1350: Component [s] is not available for formatting a date value");
+                }
+                BigDecimal sec = dt.getSecond();
+                if (sec != null) {
+                    value = sec.intValue();
+                }
+                // Default minimum width for seconds is 2
+                if (minWidth == 1 && !explicitWidth) {
+                    minWidth = 2;
+                }
+                break;
+            case 'f':  // Fractional seconds
+                // XTDE1350: Fractional seconds requires time component
+                if (!hasTime) {
+                    throw new XPathException("XTDE1350: Component [f] is not available for formatting a date value");
+                }
+                BigDecimal sec2 = dt.getSecond();
+                if (sec2 != null) {
+                    BigDecimal frac = sec2.remainder(BigDecimal.ONE);
+                    if (frac.compareTo(BigDecimal.ZERO) > 0) {
+                        String fracStr = frac.toPlainString();
+                        // Remove "0."
+                        strValue = fracStr.substring(2);
+                        // Pad or truncate to width
+                        StringBuilder padded = new StringBuilder(strValue);
+                        while (padded.length() < minWidth) {
+                            padded.append('0');
+                        }
+                        strValue = padded.toString();
+                        if (strValue.length() > maxWidth && maxWidth < Integer.MAX_VALUE) {
+                            strValue = strValue.substring(0, maxWidth);
+                        }
+                    } else {
+                        StringBuilder zeros = new StringBuilder(minWidth);
+                        for (int j = 0; j < minWidth; j++) {
+                            zeros.append('0');
+                        }
+                        strValue = zeros.toString();
+                    }
+                }
+                break;
+            case 'Z':  // Timezone as UTC offset
+                if (dt.getTimezone() != null) {
+                    strValue = dt.getTimezone().getId();
+                    if (strValue.equals("Z")) {
+                        strValue = "+00:00";
+                    }
+                } else {
+                    strValue = "";
+                }
+                break;
+            case 'z':  // Timezone as "GMT+hh:mm" style name
+                if (dt.getTimezone() != null) {
+                    return formatGmtTimezone(dt.getTimezone(), rawPresentation, minWidth, maxWidth);
+                }
+                return "";
+            case 'E':  // Era
+                // XTDE1350: Era requires date component (specifically year)
+                if (!hasDate) {
+                    throw new XPathException("XTDE1350: Component [E] is not available for formatting a time value");
+                }
+                Integer year = dt.getYear();
+                if (year != null) {
+                    strValue = dtLocale.getEra(year);
+                }
+                break;
+            case 'C':  // Calendar
+                strValue = "ISO";
+                break;
+            default:
+                // XTDE1340: Unknown/invalid component specifier
+                throw new XPathException("XTDE1340: Unknown component specifier '" + specifier + "' in format picture");
+        }
+        
+        if (strValue != null) {
+            // Apply width constraints to string values (like names)
+            return applyWidth(strValue, minWidth, maxWidth);
+        }
+        
+        if (value == null) {
+            return "";
+        }
+        
+        // Format numeric value based on presentation
+        return formatNumber(value, minWidth, maxWidth, presentation, ordinal, dtLocale);
+    }
+    
+    /**
+     * Apply width constraints to a string value.
+     * If the string is longer than maxWidth, truncate it.
+     * If the string is shorter than minWidth, pad with spaces.
+     *
+     * @param value the string to constrain
+     * @param minWidth minimum width (pad if shorter)
+     * @param maxWidth maximum width (truncate if longer)
+     * @return the constrained string
+     */
+    /**
+     * Formats timezone in GMT+hh:mm style for the [z] component.
+     *
+     * Per F&amp;O 3.1 section 9.8.4.6:
+     * - maxWidth &gt;= 6 (or default): always show hours and minutes (GMT+05:00)
+     * - maxWidth &lt; 6: omit :mm when minutes are zero (GMT+05)
+     * - presentation "0": hours not zero-padded (GMT+5)
+     * - default: hours zero-padded to 2 digits (GMT+05)
+     */
+    private static String formatGmtTimezone(java.time.ZoneOffset tz, String rawPresentation,
+                                             int minWidth, int maxWidth) {
+        int totalSeconds = tz.getTotalSeconds();
+        boolean neg = totalSeconds < 0;
+        if (neg) {
+            totalSeconds = -totalSeconds;
+        }
+        int hours = totalSeconds / 3600;
+        int minutes = (totalSeconds % 3600) / 60;
+        
+        boolean noLeadingZero = "0".equals(rawPresentation);
+        boolean alwaysShowMinutes = !noLeadingZero && (maxWidth >= 6);
+        
+        StringBuilder sb = new StringBuilder();
+        sb.append("GMT");
+        sb.append(neg ? '-' : '+');
+        if (!noLeadingZero && hours < 10) {
+            sb.append('0');
+        }
+        sb.append(hours);
+        if (alwaysShowMinutes || minutes != 0) {
+            sb.append(':');
+            if (minutes < 10) {
+                sb.append('0');
+            }
+            sb.append(minutes);
+        }
+        return sb.toString();
+    }
+    
+    private static String applyWidth(String value, int minWidth, int maxWidth) {
+        if (value == null) {
+            return "";
+        }
+        
+        // Truncate to max width if necessary
+        if (maxWidth < Integer.MAX_VALUE && value.length() > maxWidth) {
+            value = value.substring(0, maxWidth);
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Formats a number according to presentation and width constraints.
+     *
+     * @param value the number to format
+     * @param minWidth minimum width constraint
+     * @param maxWidth maximum width constraint
+     * @param presentation presentation format ("1"=decimal, "I"=Roman, "W"=words, etc.)
+     * @param ordinal true to add ordinal suffix
+     * @param dtLocale the locale for localization
+     * @return the formatted number string
+     */
+    private static String formatNumber(int value, int minWidth, int maxWidth, String presentation, 
+                                       boolean ordinal, DateTimeLocale dtLocale) {
+        // Handle Roman numerals
+        if ("I".equals(presentation)) {
+            return toRoman(value, true);
+        } else if ("i".equals(presentation)) {
+            return toRoman(value, false);
+        }
+        
+        // Handle alphabetic (a=1, b=2, ... z=26, aa=27, ...)
+        if ("A".equals(presentation) || "a".equals(presentation)) {
+            return toAlphabetic(value, "A".equals(presentation));
+        }
+        
+        // Handle words
+        if ("W".equals(presentation) || "w".equals(presentation) || "Ww".equals(presentation)) {
+            // Get words using locale, apply ordinal conversion if needed, then case
+            String words;
+            if (ordinal) {
+                words = dtLocale.toOrdinalWords(value);
+            } else {
+                words = dtLocale.toWords(value);
+            }
+            return formatWordCase(words, presentation, dtLocale);
+        }
+        
+        // Default: decimal format
+        // Check for digit family: if presentation starts with a non-ASCII digit, 
+        // use that digit family (the zero digit of the same Unicode block)
+        int digitZero = '0';
+        if (presentation != null && presentation.length() > 0) {
+            int firstCp = presentation.codePointAt(0);
+            int numericValue = Character.getNumericValue(firstCp);
+            if (numericValue >= 0 && numericValue <= 9 && firstCp != '0' + numericValue) {
+                digitZero = firstCp - numericValue;
+            }
+        }
+        
+        String str = Integer.toString(Math.abs(value));
+        // Pad with leading zeros
+        while (str.length() < minWidth) {
+            str = "0" + str;
+        }
+        
+        // Apply digit family substitution if non-ASCII
+        if (digitZero != '0') {
+            StringBuilder sb = new StringBuilder();
+            for (int ci = 0; ci < str.length(); ci++) {
+                char ch = str.charAt(ci);
+                if (ch >= '0' && ch <= '9') {
+                    int cp = digitZero + (ch - '0');
+                    sb.appendCodePoint(cp);
+                } else {
+                    sb.append(ch);
+                }
+            }
+            str = sb.toString();
+        }
+        
+        // Handle negative
+        if (value < 0) {
+            str = "-" + str;
+        }
+        
+        // Add ordinal suffix if requested
+        if (ordinal) {
+            str = str + dtLocale.getOrdinalSuffix(Math.abs(value));
+        }
+        
+        return str;
+    }
+    
+    private static final int[] ROMAN_VALUES = {1000, 900, 500, 400, 100, 90, 50, 40, 10, 9, 5, 4, 1};
+    private static final String[] ROMAN_SYMBOLS = {"M", "CM", "D", "CD", "C", "XC", "L", "XL", "X", "IX", "V", "IV", "I"};
+    
+    private static String toRoman(int value, boolean uppercase) {
+        if (value <= 0 || value > 3999) {
+            return Integer.toString(value);  // Fallback for out-of-range
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < ROMAN_VALUES.length; i++) {
+            while (value >= ROMAN_VALUES[i]) {
+                result.append(ROMAN_SYMBOLS[i]);
+                value -= ROMAN_VALUES[i];
+            }
+        }
+        return uppercase ? result.toString() : result.toString().toLowerCase();
+    }
+    
+    private static String toAlphabetic(int value, boolean uppercase) {
+        if (value <= 0) {
+            return Integer.toString(value);
+        }
+        StringBuilder result = new StringBuilder();
+        while (value > 0) {
+            value--;  // 1-based to 0-based
+            char c = (char) ('A' + (value % 26));
+            result.insert(0, uppercase ? c : Character.toLowerCase(c));
+            value /= 26;
+        }
+        return result.toString();
+    }
+    
+    private static String formatWordCase(String s, String presentation, DateTimeLocale dtLocale) {
+        if ("W".equals(presentation)) {
+            return s.toUpperCase();
+        } else if ("Ww".equals(presentation)) {
+            // Title case: first letter of each significant word capitalized
+            // Minor words like "and", "the", "of" stay lowercase (except at start)
+            if (s.isEmpty()) return s;
+            StringBuilder sb = new StringBuilder();
+            StringBuilder currentWord = new StringBuilder();
+            boolean isFirstWord = true;
+            
+            for (int i = 0; i <= s.length(); i++) {
+                char c = i < s.length() ? s.charAt(i) : ' ';
+                if (c == ' ' || c == '-' || i == s.length()) {
+                    // Process current word
+                    if (currentWord.length() > 0) {
+                        String word = currentWord.toString();
+                        if (isFirstWord || !dtLocale.isMinorWord(word)) {
+                            // Capitalize first letter
+                            sb.append(Character.toUpperCase(word.charAt(0)));
+                            sb.append(word.substring(1));
+                        } else {
+                            // Keep lowercase
+                            sb.append(word);
+                        }
+                        currentWord.setLength(0);
+                        isFirstWord = false;
+                    }
+                    if (i < s.length()) {
+                        sb.append(c);
+                    }
+                } else {
+                    currentWord.append(c);
+                }
+            }
+            return sb.toString();
+        }
+        return s;  // lowercase by default
+    }
+    
+    private static String formatName(String name, String presentation) {
+        if (presentation.equals("N")) {
+            return name.toUpperCase();
+        } else if (presentation.equals("n")) {
+            return name.toLowerCase();
+        } else if (presentation.equals("Nn")) {
+            return name;  // Already capitalized
+        }
+        return name;
+    }
+    
+    private static Integer getDayOfYear(XPathDateTime dt) {
+        if (dt.getYear() == null || dt.getMonth() == null || dt.getDay() == null) return null;
+        LocalDate date = LocalDate.of(dt.getYear(), dt.getMonth(), dt.getDay());
+        return date.getDayOfYear();
+    }
+    
+    /**
+     * Gets the day of week for formatting.
+     * 
+     * @param dt the datetime value
+     * @param useIsoCalendar if true, returns ISO numbering (Monday=1 through Sunday=7);
+     *                       if false, returns traditional XPath numbering (Sunday=1 through Saturday=7)
+     * @return the day of week number
+     */
+    private static Integer getDayOfWeek(XPathDateTime dt, boolean useIsoCalendar) {
+        if (dt.getYear() == null || dt.getMonth() == null || dt.getDay() == null) return null;
+        LocalDate date = LocalDate.of(dt.getYear(), dt.getMonth(), dt.getDay());
+        // Java DayOfWeek: Monday=1, Tuesday=2, ... Sunday=7
+        int dow = date.getDayOfWeek().getValue();
+        if (useIsoCalendar) {
+            // ISO: Monday=1 through Sunday=7 (same as Java)
+            return dow;
+        } else {
+            // Traditional XPath: Sunday=1, Monday=2, ... Saturday=7
+            return dow == 7 ? 1 : dow + 1;
+        }
+    }
+    
+    /**
+     * Gets the week of year for formatting.
+     * 
+     * @param dt the datetime value
+     * @param useIsoCalendar if true, uses ISO week numbering (week 1 contains first Thursday);
+     *                       if false, uses locale-specific week numbering
+     * @return the week of year number
+     */
+    private static Integer getWeekOfYear(XPathDateTime dt, boolean useIsoCalendar) {
+        if (dt.getYear() == null || dt.getMonth() == null || dt.getDay() == null) return null;
+        LocalDate date = LocalDate.of(dt.getYear(), dt.getMonth(), dt.getDay());
+        if (useIsoCalendar) {
+            // Use weekOfWeekBasedYear for proper ISO week numbering
+            // This handles edge cases like Jan 1 being in week 52/53 of the previous year
+            return date.get(WeekFields.ISO.weekOfWeekBasedYear());
+        } else {
+            // Use locale-specific (default locale) week fields
+            return date.get(WeekFields.of(Locale.getDefault()).weekOfYear());
+        }
+    }
+    
+    /**
+     * Gets the week of month for formatting.
+     * 
+     * @param dt the datetime value
+     * @param useIsoCalendar if true, uses ISO week rules; if false, uses locale-specific rules
+     * @return the week of month number
+     */
+    private static Integer getWeekOfMonth(XPathDateTime dt, boolean useIsoCalendar) {
+        if (dt.getYear() == null || dt.getMonth() == null || dt.getDay() == null) return null;
+        LocalDate date = LocalDate.of(dt.getYear(), dt.getMonth(), dt.getDay());
+        if (useIsoCalendar) {
+            return date.get(WeekFields.ISO.weekOfMonth());
+        } else {
+            return date.get(WeekFields.of(Locale.getDefault()).weekOfMonth());
+        }
+    }
+    
+    // ========== Helper methods ==========
+    
+    /**
+     * Checks if a value is empty (null or empty sequence).
+     *
+     * @param value the value to check
+     * @return true if empty
+     */
+    private static boolean isEmpty(XPathValue value) {
+        return value == null || (value instanceof XPathSequence && ((XPathSequence)value).isEmpty());
+    }
+    
+    /**
+     * Converts an XPath value to an xs:dateTime.
+     *
+     * @param value the value to convert
+     * @return the dateTime value
+     * @throws XPathException if conversion fails
+     */
+    private static XPathDateTime toDateTime(XPathValue value) throws XPathException {
+        if (value instanceof XPathDateTime) {
+            XPathDateTime dt = (XPathDateTime) value;
+            if (dt.getDateTimeType() == XPathDateTime.DateTimeType.DATE_TIME) {
+                return dt;
+            }
+        }
+        // Try to parse as dateTime
+        return XPathDateTime.parseDateTime(value.asString());
+    }
+    
+    /**
+     * Converts an XPath value to an xs:date.
+     *
+     * @param value the value to convert
+     * @return the date value
+     * @throws XPathException if conversion fails
+     */
+    private static XPathDateTime toDate(XPathValue value) throws XPathException {
+        // BC mode / sequence coercion: extract first item from sequences
+        if (value instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) value;
+            if (seq.isEmpty()) {
+                return null;
+            }
+            value = seq.iterator().next();
+        }
+        if (value instanceof XPathDateTime) {
+            XPathDateTime dt = (XPathDateTime) value;
+            if (dt.getDateTimeType() == XPathDateTime.DateTimeType.DATE) {
+                return dt;
+            }
+        }
+        return XPathDateTime.parseDate(value.asString());
+    }
+    
+    /**
+     * Converts an XPath value to an xs:time.
+     *
+     * @param value the value to convert
+     * @return the time value
+     * @throws XPathException if conversion fails
+     */
+    private static XPathDateTime toTime(XPathValue value) throws XPathException {
+        // BC mode / sequence coercion: extract first item from sequences
+        if (value instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) value;
+            if (seq.isEmpty()) {
+                return null;
+            }
+            value = seq.iterator().next();
+        }
+        if (value instanceof XPathDateTime) {
+            XPathDateTime dt = (XPathDateTime) value;
+            if (dt.getDateTimeType() == XPathDateTime.DateTimeType.TIME) {
+                return dt;
+            }
+        }
+        return XPathDateTime.parseTime(value.asString());
+    }
+    
+    /**
+     * Converts an XPath value to an xs:duration.
+     *
+     * @param value the value to convert
+     * @return the duration value
+     * @throws XPathException if conversion fails
+     */
+    private static XPathDateTime toDuration(XPathValue value) throws XPathException {
+        if (value instanceof XPathDateTime) {
+            XPathDateTime dt = (XPathDateTime) value;
+            XPathDateTime.DateTimeType type = dt.getDateTimeType();
+            if (type == XPathDateTime.DateTimeType.DURATION ||
+                type == XPathDateTime.DateTimeType.YEAR_MONTH_DURATION ||
+                type == XPathDateTime.DateTimeType.DAY_TIME_DURATION) {
+                return dt;
+            }
+        }
+        // Try to parse as duration
+        return XPathDateTime.parseDuration(value.asString());
+    }
+    
+    /**
+     * Converts an XPath value to an xs:dayTimeDuration.
+     *
+     * @param value the value to convert
+     * @return the dayTimeDuration value
+     * @throws XPathException if conversion fails
+     */
+    private static XPathDateTime toDayTimeDuration(XPathValue value) throws XPathException {
+        if (value instanceof XPathDateTime) {
+            XPathDateTime dt = (XPathDateTime) value;
+            XPathDateTime.DateTimeType type = dt.getDateTimeType();
+            if (type == XPathDateTime.DateTimeType.DAY_TIME_DURATION) {
+                return dt;
+            }
+            // Allow any duration type and extract day/time components
+            if (type == XPathDateTime.DateTimeType.DURATION ||
+                type == XPathDateTime.DateTimeType.YEAR_MONTH_DURATION) {
+                return dt;  // Will extract day/time components
+            }
+        }
+        // Try to parse as dayTimeDuration
+        return XPathDateTime.parseDayTimeDuration(value.asString());
+    }
+}
@@ -0,0 +1,2781 @@
+/*
+ * SequenceFunctions.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.xpath.function;
+
+import org.bluezoo.gonzalez.transform.xpath.Collation;
+import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.xpath.XPathContext;
+import org.bluezoo.gonzalez.transform.xpath.expr.InlineFunctionItem;
+import org.bluezoo.gonzalez.transform.xpath.expr.PartialFunctionItem;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.bluezoo.gonzalez.transform.xpath.type.*;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.bluezoo.gonzalez.transform.xpath.function.TypeAnnotatedFunction.typed;
+
+/**
+ * XPath 2.0/3.0 sequence functions.
+ *
+ * <p>Implements:
+ * <ul>
+ *   <li>empty, exists - sequence emptiness tests</li>
+ *   <li>subsequence - extract a subsequence</li>
+ *   <li>distinct-values - unique values</li>
+ *   <li>reverse - reverse sequence order</li>
+ *   <li>insert-before, remove - sequence manipulation</li>
+ *   <li>index-of - find position of value</li>
+ *   <li>head, tail - first/rest of sequence</li>
+ * </ul>
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class SequenceFunctions {
+
+    private SequenceFunctions() {}
+
+    /**
+     * Returns all sequence functions (XPath 2.0/3.0).
+     *
+     * @return list of all sequence function implementations
+     */
+    public static List<Function> getAll() {
+        SequenceType B = SequenceType.BOOLEAN;
+        SequenceType BQ = SequenceType.BOOLEAN_Q;
+        SequenceType I = SequenceType.INTEGER;
+        SequenceType ISTAR = SequenceType.INTEGER_STAR;
+        SequenceType IS = SequenceType.ITEM_STAR;
+        SequenceType IP = SequenceType.ITEM_PLUS;
+        SequenceType IQ = SequenceType.ITEM_Q;
+        SequenceType IT = SequenceType.ITEM;
+        SequenceType S = SequenceType.STRING;
+        SequenceType SQ = SequenceType.STRING_Q;
+        SequenceType SS = SequenceType.STRING_STAR;
+        SequenceType AQ = SequenceType.ANYURI_Q;
+        SequenceType QN = SequenceType.QNAME;
+        SequenceType QNQ = SequenceType.QNAME_Q;
+        SequenceType NQ = SequenceType.NODE_Q;
+        SequenceType NS = SequenceType.NODE_STAR;
+        SequenceType AAS = SequenceType.ANY_ATOMIC_STAR;
+        SequenceType E = SequenceType.EMPTY;
+
+        List<Function> functions = new ArrayList<>();
+        functions.add(typed(EMPTY,           B, IS));
+        functions.add(typed(EXISTS,          B, IS));
+        functions.add(typed(SUBSEQUENCE,     IS, IS, SequenceType.DOUBLE, SequenceType.DOUBLE));
+        functions.add(typed(DISTINCT_VALUES, AAS, IS, S));
+        functions.add(typed(REVERSE,         IS, IS));
+        functions.add(typed(INSERT_BEFORE,   IS, IS, I, IS));
+        functions.add(typed(REMOVE,          IS, IS, I));
+        functions.add(typed(INDEX_OF,        ISTAR, IS, SequenceType.ANY_ATOMIC, S));
+        functions.add(typed(HEAD,            IQ, IS));
+        functions.add(typed(TAIL,            IS, IS));
+        functions.add(typed(COUNT,           I, IS));
+        functions.add(typed(UNORDERED,       IS, IS));
+        functions.add(typed(ZERO_OR_ONE,     IQ, IS));
+        functions.add(typed(ONE_OR_MORE,     IP, IS));
+        functions.add(typed(EXACTLY_ONE,     IT, IS));
+        functions.add(typed(RESOLVE_URI,     AQ, SQ, S));
+        functions.add(typed(BASE_URI,        AQ, NQ));
+        functions.add(typed(STATIC_BASE_URI, AQ));
+        functions.add(typed(DOCUMENT_URI,    AQ, NQ));
+        functions.add(typed(DEEP_EQUAL,      B, IS, IS, S));
+        functions.add(typed(QNAME,           QN, SQ, S));
+        functions.add(typed(LOCAL_NAME_FROM_QNAME,       SQ, QNQ));
+        functions.add(typed(NAMESPACE_URI_FROM_QNAME,    AQ, QNQ));
+        functions.add(typed(PREFIX_FROM_QNAME,           SQ, QNQ));
+        functions.add(typed(IN_SCOPE_PREFIXES,           SS, SequenceType.NODE));
+        functions.add(typed(NAMESPACE_URI_FOR_PREFIX,    AQ, SQ, SequenceType.NODE));
+        functions.add(typed(NODE_NAME,       QNQ, NQ));
+        functions.add(typed(RESOLVE_QNAME,   QNQ, SQ, SequenceType.NODE));
+        functions.add(typed(COPY_OF,         IS, IS));
+        functions.add(typed(ROOT,            NQ, NQ));
+        functions.add(typed(NILLED,          BQ, NQ));
+        functions.add(typed(TRACE,           IS, IS, S));
+        functions.add(typed(DEFAULT_COLLATION, S));
+        functions.add(typed(PATH,            SQ, NQ));
+        functions.add(typed(COLLECTION,      NS, SQ));
+        functions.add(typed(URI_COLLECTION,  SS, SQ));
+        functions.add(typed(AVAILABLE_ENVIRONMENT_VARIABLES, SS));
+        functions.add(typed(ENVIRONMENT_VARIABLE, SQ, S));
+        functions.add(typed(SORT,            IS, IS, IS, IS));
+        functions.add(typed(HAS_CHILDREN,    B, NQ));
+        functions.add(typed(FUNCTION_NAME,   QNQ, IS));
+        functions.add(typed(FUNCTION_ARITY,  I, IS));
+        functions.add(typed(ERROR,           E, QNQ, S, IS));
+        functions.add(typed(RANDOM_NUMBER_GENERATOR, IS, IS));
+        return functions;
+    }
+
+    /**
+     * XPath 2.0 empty() function.
+     * 
+     * <p>Returns true if the sequence is empty.
+     * 
+     * <p>Signature: empty(item()*) → boolean
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-empty">XPath 2.0 empty()</a>
+     */
+    public static final Function EMPTY = new Function() {
+        @Override public String getName() { return "empty"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            return XPathBoolean.of(isEmpty(arg));
+        }
+    };
+
+    /**
+     * XPath 2.0 exists() function.
+     * 
+     * <p>Returns true if the sequence contains at least one item.
+     * 
+     * <p>Signature: exists(item()*) → boolean
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-exists">XPath 2.0 exists()</a>
+     */
+    public static final Function EXISTS = new Function() {
+        @Override public String getName() { return "exists"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            return XPathBoolean.of(!isEmpty(arg));
+        }
+    };
+
+    /** subsequence(sequence, startingLoc, length?) - extract subsequence */
+    public static final Function SUBSEQUENCE = new Function() {
+        @Override public String getName() { return "subsequence"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue seq = args.get(0);
+            XPathValue startArg = args.get(1);
+            if (startArg instanceof XPathSequence && ((XPathSequence) startArg).isEmpty()) {
+                throw new XPathException("XPTY0004: Required item type of second argument " +
+                    "of fn:subsequence() is xs:double; supplied value is an empty sequence");
+            }
+            double startLoc = startArg.asNumber();
+            
+            // Handle NaN starting location
+            if (Double.isNaN(startLoc)) {
+                return XPathSequence.EMPTY;
+            }
+            
+            // Handle -INF starting location (always empty)
+            if (Double.isInfinite(startLoc) && startLoc < 0) {
+                return XPathSequence.EMPTY;
+            }
+            
+            // Get length argument (defaults to infinite if not specified)
+            double lengthArg = Double.POSITIVE_INFINITY;
+            if (args.size() > 2) {
+                XPathValue lenVal = args.get(2);
+                if (lenVal instanceof XPathSequence && ((XPathSequence) lenVal).isEmpty()) {
+                    throw new XPathException("XPTY0004: Required item type of third argument " +
+                        "of fn:subsequence() is xs:double; supplied value is an empty sequence");
+                }
+                lengthArg = lenVal.asNumber();
+                if (Double.isNaN(lengthArg)) {
+                    return XPathSequence.EMPTY;
+                }
+            }
+            
+            // Per XPath spec: item at position p is included if
+            // round(startingLoc) <= p < round(startingLoc) + round(length)
+            // Positions are 1-based
+            double roundedStart = Math.round(startLoc);
+            double roundedLength = Math.round(lengthArg);
+            
+            // Calculate the end position (exclusive)
+            double endPos = roundedStart + roundedLength;
+            
+            // Handle cases where range is entirely outside valid positions
+            if (endPos < 1) {
+                return XPathSequence.EMPTY;
+            }
+            
+            List<XPathValue> items = toList(seq);
+            List<XPathValue> result = new ArrayList<>();
+            
+            // Iterate through items (1-based position)
+            for (int i = 0; i < items.size(); i++) {
+                int position = i + 1;  // Convert to 1-based
+                if (position >= roundedStart && position < endPos) {
+                    result.add(items.get(i));
+                }
+            }
+            
+            if (result.isEmpty()) {
+                return XPathSequence.EMPTY;
+            } else if (result.size() == 1) {
+                return result.get(0);
+            } else {
+                return new XPathSequence(result);
+            }
+        }
+    };
+
+    /** distinct-values(sequence, collation?) - unique values */
+    public static final Function DISTINCT_VALUES = new Function() {
+        @Override public String getName() { return "distinct-values"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue seq = args.get(0);
+            List<XPathValue> items = toList(seq);
+            
+            // Get collation from 2nd argument or use default
+            Collation collation;
+            if (args.size() > 1) {
+                String collUri = args.get(1).asString();
+                collation = Collation.forUri(collUri);
+            } else {
+                String defaultUri = context.getDefaultCollation();
+                collation = Collation.forUri(defaultUri != null ? defaultUri : Collation.CODEPOINT_URI);
+            }
+            
+            List<XPathValue> result = new ArrayList<>();
+            List<String> seenStrings = new ArrayList<>();  // For collation-based matching
+            Set<Double> seenNumbers = new HashSet<>();      // Numbers use exact equality
+            boolean seenNaN = false;
+            
+            for (XPathValue item : items) {
+                if (item instanceof XPathNumber) {
+                    double num = item.asNumber();
+                    if (Double.isNaN(num)) {
+                        // NaN is equal to nothing, including itself, so distinct-values treats it as one value
+                        if (!seenNaN) {
+                            seenNaN = true;
+                            result.add(item);
+                        }
+                    } else if (!seenNumbers.contains(num)) {
+                        seenNumbers.add(num);
+                        result.add(item);
+                    }
+                } else {
+                    String str = item.asString();
+                    boolean found = false;
+                    for (String seen : seenStrings) {
+                        if (collation.equals(str, seen)) {
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        seenStrings.add(str);
+                        result.add(item);
+                    }
+                }
+            }
+            
+            if (result.isEmpty()) {
+                return XPathSequence.EMPTY;
+            } else if (result.size() == 1) {
+                return result.get(0);
+            } else {
+                return new XPathSequence(result);
+            }
+        }
+    };
+
+    /** reverse(sequence) - reverse order */
+    public static final Function REVERSE = new Function() {
+        @Override public String getName() { return "reverse"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue seq = args.get(0);
+            List<XPathValue> items = toList(seq);
+            
+            List<XPathValue> result = new ArrayList<>();
+            for (int i = items.size() - 1; i >= 0; i--) {
+                result.add(items.get(i));
+            }
+            
+            if (result.isEmpty()) {
+                return XPathSequence.EMPTY;
+            } else if (result.size() == 1) {
+                return result.get(0);
+            } else {
+                return new XPathSequence(result);
+            }
+        }
+    };
+
+    /** insert-before(sequence, position, items) - insert items */
+    public static final Function INSERT_BEFORE = new Function() {
+        @Override public String getName() { return "insert-before"; }
+        @Override public int getMinArgs() { return 3; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            List<XPathValue> target = toList(args.get(0));
+            int position = (int) Math.round(args.get(1).asNumber());
+            List<XPathValue> inserts = toList(args.get(2));
+            
+            // XPath positions are 1-based
+            int insertIndex = Math.max(0, Math.min(position - 1, target.size()));
+            
+            List<XPathValue> result = new ArrayList<>();
+            result.addAll(target.subList(0, insertIndex));
+            result.addAll(inserts);
+            result.addAll(target.subList(insertIndex, target.size()));
+            
+            if (result.isEmpty()) {
+                return XPathSequence.EMPTY;
+            } else if (result.size() == 1) {
+                return result.get(0);
+            } else {
+                return new XPathSequence(result);
+            }
+        }
+    };
+
+    /** remove(sequence, position) - remove item at position */
+    public static final Function REMOVE = new Function() {
+        @Override public String getName() { return "remove"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            List<XPathValue> items = toList(args.get(0));
+            int position = (int) Math.round(args.get(1).asNumber());
+            
+            // XPath positions are 1-based
+            int removeIndex = position - 1;
+            
+            List<XPathValue> result = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                if (i != removeIndex) {
+                    result.add(items.get(i));
+                }
+            }
+            
+            if (result.isEmpty()) {
+                return XPathSequence.EMPTY;
+            } else if (result.size() == 1) {
+                return result.get(0);
+            } else {
+                return new XPathSequence(result);
+            }
+        }
+    };
+
+    /** index-of(sequence, search, collation?) - find positions of value */
+    public static final Function INDEX_OF = new Function() {
+        @Override public String getName() { return "index-of"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            List<XPathValue> items = toList(args.get(0));
+            XPathValue searchVal = args.get(1);
+            
+            // Get collation from 3rd argument or use default (used for string comparison)
+            Collation collation;
+            if (args.size() > 2) {
+                String collUri = args.get(2).asString();
+                collation = Collation.forUri(collUri);
+            } else {
+                String defaultUri = context.getDefaultCollation();
+                collation = Collation.forUri(defaultUri != null ? defaultUri : Collation.CODEPOINT_URI);
+            }
+            
+            List<XPathValue> result = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                XPathValue item = items.get(i);
+                // For numeric types, use numeric comparison
+                if (searchVal instanceof XPathNumber && item instanceof XPathNumber) {
+                    if (searchVal.asNumber() == item.asNumber()) {
+                        result.add(XPathNumber.of(i + 1));  // 1-based
+                    }
+                } else {
+                    // Use collation for string comparison
+                    if (collation.equals(searchVal.asString(), item.asString())) {
+                        result.add(XPathNumber.of(i + 1));  // 1-based
+                    }
+                }
+            }
+            
+            if (result.isEmpty()) {
+                return XPathSequence.EMPTY;
+            } else if (result.size() == 1) {
+                return result.get(0);
+            } else {
+                return new XPathSequence(result);
+            }
+        }
+    };
+
+    /** head(sequence) - first item of sequence */
+    public static final Function HEAD = new Function() {
+        @Override public String getName() { return "head"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            List<XPathValue> items = toList(args.get(0));
+            if (items.isEmpty()) {
+                return XPathSequence.EMPTY;
+            }
+            return items.get(0);
+        }
+    };
+
+    /** tail(sequence) - all items except first */
+    public static final Function TAIL = new Function() {
+        @Override public String getName() { return "tail"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            List<XPathValue> items = toList(args.get(0));
+            if (items.size() <= 1) {
+                return XPathSequence.EMPTY;
+            }
+            return new XPathSequence(items.subList(1, items.size()));
+        }
+    };
+
+    /** count(sequence) - number of items (also in XPath 1.0 for node-sets) */
+    public static final Function COUNT = new Function() {
+        @Override public String getName() { return "count"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            return XPathNumber.of(getSize(arg));
+        }
+    };
+
+    /** unordered(sequence) - return sequence in implementation-dependent order */
+    public static final Function UNORDERED = new Function() {
+        @Override public String getName() { return "unordered"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            return args.get(0);  // Just return as-is
+        }
+    };
+
+    /** zero-or-one(sequence) - error if more than one item */
+    public static final Function ZERO_OR_ONE = new Function() {
+        @Override public String getName() { return "zero-or-one"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            int size = getSize(args.get(0));
+            if (size > 1) {
+                throw new XPathException("FORG0003: zero-or-one called with sequence of " + size + " items");
+            }
+            return args.get(0);
+        }
+    };
+
+    /** one-or-more(sequence) - error if empty */
+    public static final Function ONE_OR_MORE = new Function() {
+        @Override public String getName() { return "one-or-more"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            int size = getSize(args.get(0));
+            if (size == 0) {
+                throw new XPathException("FORG0004: one-or-more called with empty sequence");
+            }
+            return args.get(0);
+        }
+    };
+
+    /** exactly-one(sequence) - error if not exactly one item */
+    public static final Function EXACTLY_ONE = new Function() {
+        @Override public String getName() { return "exactly-one"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            int size = getSize(args.get(0));
+            if (size != 1) {
+                throw new XPathException("FORG0005: exactly-one called with sequence of " + size + " items");
+            }
+            return args.get(0);
+        }
+    };
+
+    // ========== URI Functions (XPath 2.0) ==========
+
+    /** resolve-uri($relative) or resolve-uri($relative, $base) - resolves a relative URI against a base */
+    public static final Function RESOLVE_URI = new Function() {
+        @Override public String getName() { return "resolve-uri"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue relArg = args.get(0);
+            
+            // Handle empty sequence / empty node-set
+            if (relArg == null || 
+                (relArg instanceof XPathSequence && ((XPathSequence) relArg).isEmpty()) ||
+                (relArg.isNodeSet() && relArg.asNodeSet().isEmpty())) {
+                return XPathSequence.EMPTY;
+            }
+            
+            String relative = relArg.asString();
+            
+            // If relative is empty string, return base URI
+            if (relative.isEmpty()) {
+                if (args.size() > 1) {
+                    return XPathAnyURI.of(args.get(1).asString());
+                }
+                String staticBase = context.getStaticBaseURI();
+                return staticBase != null ? XPathAnyURI.of(staticBase) : XPathAnyURI.of("");
+            }
+            
+            try {
+                URI relativeUri = new URI(relative);
+                
+                // If relative is already absolute, return it unchanged
+                if (relativeUri.isAbsolute()) {
+                    return XPathAnyURI.of(relative);
+                }
+                
+                // Get base URI
+                String base;
+                if (args.size() > 1) {
+                    XPathValue baseArg = args.get(1);
+                    if (baseArg == null || 
+                        (baseArg instanceof XPathSequence && ((XPathSequence) baseArg).isEmpty()) ||
+                        (baseArg.isNodeSet() && baseArg.asNodeSet().isEmpty())) {
+                        throw new XPathException("FONS0005: Base URI is empty");
+                    }
+                    base = baseArg.asString();
+                } else {
+                    base = context.getStaticBaseURI();
+                    if (base == null || base.isEmpty()) {
+                        throw new XPathException("FONS0005: No base URI available");
+                    }
+                }
+                
+                URI baseUri = new URI(base);
+                if (!baseUri.isAbsolute()) {
+                    throw new XPathException("FORG0002: Base URI is not an absolute URI: " + base);
+                }
+                URI resolved = baseUri.resolve(relativeUri);
+                return XPathAnyURI.of(resolved.toString());
+                
+            } catch (URISyntaxException e) {
+                throw new XPathException("FORG0002: Invalid URI: " + e.getMessage());
+            }
+        }
+    };
+
+    /** base-uri() or base-uri($node) - returns the base URI of a node */
+    public static final Function BASE_URI = new Function() {
+        @Override public String getName() { return "base-uri"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathNode node;
+            
+            if (args.isEmpty()) {
+                // Use context node
+                node = context.getContextNode();
+                if (node == null) {
+                    throw new XPathException("XPDY0002: No context node for base-uri()");
+                }
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg == null || (arg instanceof XPathSequence && ((XPathSequence) arg).isEmpty())) {
+                    return XPathSequence.EMPTY;
+                }
+                // Handle RTF (result tree fragment) — convert to node tree
+                if (arg instanceof XPathResultTreeFragment) {
+                    XPathResultTreeFragment rtf = (XPathResultTreeFragment) arg;
+                    XPathNodeSet nodeSet = rtf.asNodeSet();
+                    if (nodeSet.isEmpty()) {
+                        return XPathSequence.EMPTY;
+                    }
+                    node = nodeSet.first();
+                    String baseUri = getNodeBaseUri(node);
+                    if (baseUri == null || baseUri.isEmpty()) {
+                        return XPathSequence.EMPTY;
+                    }
+                    return XPathAnyURI.of(baseUri);
+                }
+                // Handle values that are directly XPathNode (e.g., SequenceAttributeItem)
+                if (arg instanceof XPathNode) {
+                    node = (XPathNode) arg;
+                } else if (arg.isNodeSet()) {
+                    if (arg instanceof XPathNodeSet) {
+                        XPathNodeSet ns = (XPathNodeSet) arg;
+                        if (ns.isEmpty()) {
+                            return XPathSequence.EMPTY;
+                        }
+                        node = ns.first();
+                    } else {
+                        // Convert to node-set via asNodeSet()
+                        XPathNodeSet ns = arg.asNodeSet();
+                        if (ns == null || ns.isEmpty()) {
+                            return XPathSequence.EMPTY;
+                        }
+                        node = ns.first();
+                    }
+                } else {
+                    throw new XPathException("XPTY0004: Argument to base-uri must be a node");
+                }
+            }
+            
+            // Get base URI from node (traverse up if needed)
+            String baseUri = getNodeBaseUri(node);
+            if (baseUri == null || baseUri.isEmpty()) {
+                return XPathSequence.EMPTY;
+            }
+            return XPathAnyURI.of(baseUri);
+        }
+        
+        private String getNodeBaseUri(XPathNode node) {
+            // Per XML Base spec, base URIs are computed by resolving xml:base values
+            // against ancestor base URIs. Walk up the tree composing the URI.
+            //
+            // For attribute nodes, use the owning element's base URI.
+            // For namespace nodes, base-uri returns empty per XDM spec.
+            if (node.getNodeType() == NodeType.NAMESPACE) {
+                return null;
+            }
+            if (node.getNodeType() == NodeType.ATTRIBUTE) {
+                XPathNode parent = node.getParent();
+                if (parent != null) {
+                    return getNodeBaseUri(parent);
+                }
+                return null;
+            }
+            
+            // Walk up the tree collecting xml:base values
+            // xml:base on elements provides the base URI for that element.
+            // Relative xml:base values are resolved against the parent's base URI.
+            // The document root's stored base URI serves as the terminal resolution base.
+            String resolved = null;
+            XPathNode current = node;
+            while (current != null) {
+                String localBase = null;
+                
+                if (current.isElement()) {
+                    XPathNode xmlBase = current.getAttribute(
+                        "http://www.w3.org/XML/1998/namespace", "base");
+                    if (xmlBase == null) {
+                        xmlBase = current.getAttribute("", "xml:base");
+                    }
+                    if (xmlBase != null) {
+                        localBase = xmlBase.getStringValue();
+                    }
+                }
+                
+                if (localBase != null && !localBase.isEmpty()) {
+                    if (isAbsoluteUri(localBase)) {
+                        if (resolved != null) {
+                            return resolveBaseUri(resolved, localBase);
+                        }
+                        return localBase;
+                    }
+                    if (resolved == null) {
+                        resolved = localBase;
+                    } else {
+                        resolved = resolveBaseUri(resolved, localBase);
+                    }
+                }
+                
+                // Check for per-node base URI (e.g., from external entity expansion)
+                // Must check before root node since entity base URIs take priority
+                if (current instanceof XPathNodeWithBaseURI) {
+                    String entityBase = ((XPathNodeWithBaseURI) current).getEntityBaseURI();
+                    if (entityBase != null && !entityBase.isEmpty()) {
+                        if (resolved != null) {
+                            return resolveBaseUri(resolved, entityBase);
+                        }
+                        return entityBase;
+                    }
+                }
+                
+                if (current.getNodeType() == NodeType.ROOT) {
+                    // Use stored base URI on root nodes as terminal resolution base
+                    if (current instanceof XPathNodeWithBaseURI) {
+                        String storedBase = ((XPathNodeWithBaseURI) current).getBaseURI();
+                        if (storedBase != null && !storedBase.isEmpty()) {
+                            if (resolved != null) {
+                                return resolveBaseUri(resolved, storedBase);
+                            }
+                            return storedBase;
+                        }
+                    }
+                    break;
+                }
+                
+                current = current.getParent();
+            }
+            
+            // For parentless non-root nodes (detached from RTF), check for
+            // a stored base URI. This handles nodes from sequence construction
+            // where xsl:copy/xsl:copy-of stores the original's base URI.
+            if (node instanceof XPathNodeWithBaseURI) {
+                String storedBase = ((XPathNodeWithBaseURI) node).getBaseURI();
+                if (storedBase != null && !storedBase.isEmpty()) {
+                    if (resolved != null) {
+                        return resolveBaseUri(resolved, storedBase);
+                    }
+                    return storedBase;
+                }
+            }
+            return resolved;
+        }
+        
+        private boolean isAbsoluteUri(String uri) {
+            // Check for scheme (e.g., http:, file:, urn:)
+            int len = uri.length();
+            for (int i = 0; i < len; i++) {
+                char c = uri.charAt(i);
+                if (c == ':') {
+                    return i > 0;
+                }
+                if (c == '/' || c == '?' || c == '#') {
+                    return false;
+                }
+                if (i == 0 && !Character.isLetter(c)) {
+                    return false;
+                }
+                if (i > 0 && !Character.isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') {
+                    return false;
+                }
+            }
+            return false;
+        }
+        
+        private String resolveBaseUri(String relative, String base) {
+            if (relative == null || relative.isEmpty()) {
+                return base;
+            }
+            if (base == null || base.isEmpty()) {
+                return relative;
+            }
+            if (isAbsoluteUri(relative)) {
+                return relative;
+            }
+            // Resolve relative URI against base URI
+            try {
+                java.net.URI baseURI = new java.net.URI(base);
+                java.net.URI resolved = baseURI.resolve(relative);
+                return resolved.toString();
+            } catch (java.net.URISyntaxException e) {
+                // Fallback: simple concatenation
+                if (base.endsWith("/")) {
+                    return base + relative;
+                }
+                int lastSlash = base.lastIndexOf('/');
+                if (lastSlash >= 0) {
+                    return base.substring(0, lastSlash + 1) + relative;
+                }
+                return relative;
+            }
+        }
+    };
+
+    /** static-base-uri() - returns the static base URI from the stylesheet */
+    public static final Function STATIC_BASE_URI = new Function() {
+        @Override public String getName() { return "static-base-uri"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 0; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String baseUri = context.getStaticBaseURI();
+            if (baseUri == null || baseUri.isEmpty()) {
+                return XPathSequence.EMPTY;
+            }
+            return XPathAnyURI.of(baseUri);
+        }
+    };
+
+    /** document-uri() or document-uri($node) - returns the document URI of a node */
+    public static final Function DOCUMENT_URI = new Function() {
+        @Override public String getName() { return "document-uri"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathNode node;
+            
+            if (args.isEmpty()) {
+                // Use context node
+                node = context.getContextNode();
+                if (node == null) {
+                    throw new XPathException("XPDY0002: No context node for document-uri()");
+                }
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg == null || (arg instanceof XPathSequence && ((XPathSequence) arg).isEmpty())) {
+                    return XPathSequence.EMPTY;
+                }
+                if (!arg.isNodeSet()) {
+                    throw new XPathException("XPTY0004: Argument to document-uri must be a node");
+                }
+                XPathNodeSet ns = arg.asNodeSet();
+                if (ns.isEmpty()) {
+                    return XPathSequence.EMPTY;
+                }
+                node = ns.first();
+            }
+            
+            // document-uri() only returns a value for document nodes
+            if (node.getNodeType() != NodeType.ROOT) {
+                return XPathSequence.EMPTY;
+            }
+            
+            // Get document URI - for documents loaded via doc(), this is stored
+            // For constructed documents (RTFs), there is no document URI
+            if (node instanceof XPathNodeWithBaseURI) {
+                String docUri = ((XPathNodeWithBaseURI) node).getDocumentURI();
+                if (docUri != null && !docUri.isEmpty()) {
+                    return XPathAnyURI.of(docUri);
+                }
+            }
+            return XPathSequence.EMPTY;
+        }
+    };
+
+    /** deep-equal(seq1, seq2, collation?) - compares two sequences for deep equality */
+    public static final Function DEEP_EQUAL = new Function() {
+        @Override public String getName() { return "deep-equal"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue seq1 = args.get(0);
+            XPathValue seq2 = args.get(1);
+            checkNoFunctionItems(seq1);
+            checkNoFunctionItems(seq2);
+            Collation collation = null;
+            if (args.size() > 2) {
+                String collUri = args.get(2).asString();
+                collation = Collation.forUri(collUri);
+            } else if (context != null) {
+                String defaultUri = context.getDefaultCollation();
+                if (defaultUri != null) {
+                    collation = Collation.forUri(defaultUri);
+                }
+            }
+            return XPathBoolean.of(deepEqual(seq1, seq2, collation));
+        }
+
+        private void checkNoFunctionItems(XPathValue value) throws XPathException {
+            if (StringFunctions.isFunctionItem(value)) {
+                throw new XPathException("FOTY0015: Cannot compare function items with deep-equal()");
+            }
+            if (value instanceof XPathSequence) {
+                XPathSequence seq = (XPathSequence) value;
+                for (XPathValue item : seq) {
+                    if (StringFunctions.isFunctionItem(item)) {
+                        throw new XPathException("FOTY0015: Cannot compare function items with deep-equal()");
+                    }
+                }
+            }
+        }
+        
+        private boolean deepEqual(XPathValue v1, XPathValue v2, Collation collation) {
+            // Handle null/empty
+            if (v1 == null && v2 == null) {
+                return true;
+            }
+            if (v1 == null || v2 == null) {
+                return false;
+            }
+            
+            // Convert to lists for comparison
+            List<XPathValue> list1 = toItems(v1);
+            List<XPathValue> list2 = toItems(v2);
+            
+            // Check sizes match
+            if (list1.size() != list2.size()) return false;
+            
+            // Compare each pair
+            for (int i = 0; i < list1.size(); i++) {
+                if (!itemsDeepEqual(list1.get(i), list2.get(i), collation)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private List<XPathValue> toItems(XPathValue value) {
+            List<XPathValue> result = new ArrayList<>();
+            if (value instanceof XPathSequence) {
+                for (XPathValue item : (XPathSequence) value) {
+                    result.add(item);
+                }
+            } else if (value instanceof XPathNodeSet) {
+                for (XPathNode node : (XPathNodeSet) value) {
+                    result.add(new SingleNodeValue(node));
+                }
+            } else {
+                result.add(value);
+            }
+            return result;
+        }
+        
+        private boolean itemsDeepEqual(XPathValue item1, XPathValue item2, Collation collation) {
+            // Both nodes
+            XPathNode node1 = getNode(item1);
+            XPathNode node2 = getNode(item2);
+            
+            if (node1 != null && node2 != null) {
+                return nodesDeepEqual(node1, node2, collation);
+            }
+            if (node1 != null || node2 != null) {
+                return false; // One is node, one isn't
+            }
+            
+            // Both atomic values - types must be comparable per XPath 2.0 eq
+            XPathValue.Type type1 = item1.getType();
+            XPathValue.Type type2 = item2.getType();
+            
+            if (type1 == XPathValue.Type.NUMBER && type2 == XPathValue.Type.NUMBER) {
+                return item1.asNumber() == item2.asNumber();
+            }
+            if (type1 == XPathValue.Type.BOOLEAN && type2 == XPathValue.Type.BOOLEAN) {
+                return item1.asBoolean() == item2.asBoolean();
+            }
+            if (type1 == XPathValue.Type.STRING && type2 == XPathValue.Type.STRING) {
+                return stringsEqual(item1.asString(), item2.asString(), collation);
+            }
+            if (type1 == type2) {
+                return stringsEqual(item1.asString(), item2.asString(), collation);
+            }
+            // Incompatible types (e.g., number vs string) are not deep-equal
+            return false;
+        }
+        
+        private XPathNode getNode(XPathValue value) {
+            if (value instanceof XPathNodeSet) {
+                XPathNodeSet ns = (XPathNodeSet) value;
+                if (ns.size() == 1) {
+                    return ns.first();
+                }
+            }
+            if (value instanceof SingleNodeValue) {
+                return ((SingleNodeValue) value).node;
+            }
+            if (value instanceof XPathResultTreeFragment) {
+                XPathNodeSet ns = ((XPathResultTreeFragment) value).asNodeSet();
+                if (ns != null && ns.size() == 1) {
+                    return ns.first();
+                }
+            }
+            return null;
+        }
+        
+        private boolean stringsEqual(String a, String b, Collation collation) {
+            if (collation != null) {
+                return collation.compare(a, b) == 0;
+            }
+            return a.equals(b);
+        }
+
+        private boolean nodesDeepEqual(XPathNode n1, XPathNode n2, Collation collation) {
+            // Different node types
+            if (n1.getNodeType() != n2.getNodeType()) {
+                return false;
+            }
+            
+            switch (n1.getNodeType()) {
+                case ELEMENT:
+                    // Same name and namespace
+                    if (!n1.getLocalName().equals(n2.getLocalName())) {
+                        return false;
+                    }
+                    String ns1 = n1.getNamespaceURI();
+                    String ns2 = n2.getNamespaceURI();
+                    if (ns1 == null && ns2 != null) {
+                        return false;
+                    }
+                    if (ns1 != null && !ns1.equals(ns2)) {
+                        return false;
+                    }
+                    
+                    // Same attributes (ignoring order) — use collation for value comparison
+                    Iterator<XPathNode> attrs1 = n1.getAttributes();
+                    Iterator<XPathNode> attrs2 = n2.getAttributes();
+                    Map<String, String> attrMap1 = new HashMap<>();
+                    Map<String, String> attrMap2 = new HashMap<>();
+                    while (attrs1.hasNext()) {
+                        XPathNode attr = attrs1.next();
+                        String key = "{" + (attr.getNamespaceURI() != null ? attr.getNamespaceURI() : "") + "}" + attr.getLocalName();
+                        attrMap1.put(key, attr.getStringValue());
+                    }
+                    while (attrs2.hasNext()) {
+                        XPathNode attr = attrs2.next();
+                        String key = "{" + (attr.getNamespaceURI() != null ? attr.getNamespaceURI() : "") + "}" + attr.getLocalName();
+                        attrMap2.put(key, attr.getStringValue());
+                    }
+                    if (attrMap1.size() != attrMap2.size()) return false;
+                    for (Map.Entry<String, String> entry : attrMap1.entrySet()) {
+                        String val2 = attrMap2.get(entry.getKey());
+                        if (val2 == null) return false;
+                        if (!stringsEqual(entry.getValue(), val2, collation)) return false;
+                    }
+                    
+                    // Same children (in order)
+                    Iterator<XPathNode> children1 = n1.getChildren();
+                    Iterator<XPathNode> children2 = n2.getChildren();
+                    while (children1.hasNext() && children2.hasNext()) {
+                        if (!nodesDeepEqual(children1.next(), children2.next(), collation)) {
+                            return false;
+                        }
+                    }
+                    // Both should be exhausted
+                    return !children1.hasNext() && !children2.hasNext();
+                    
+                case NAMESPACE:
+                    // Namespace nodes are equal if they have the same prefix and same URI
+                    String localName1 = n1.getLocalName() != null ? n1.getLocalName() : "";
+                    String localName2 = n2.getLocalName() != null ? n2.getLocalName() : "";
+                    if (!localName1.equals(localName2)) return false;
+                    return n1.getStringValue().equals(n2.getStringValue());
+                    
+                case ATTRIBUTE:
+                    // Attributes are equal if same expanded-name and same value
+                    if (!n1.getLocalName().equals(n2.getLocalName())) return false;
+                    String attrNs1 = n1.getNamespaceURI();
+                    String attrNs2 = n2.getNamespaceURI();
+                    if (attrNs1 == null) {
+                        attrNs1 = "";
+                    }
+                    if (attrNs2 == null) {
+                        attrNs2 = "";
+                    }
+                    if (!attrNs1.equals(attrNs2)) {
+                        return false;
+                    }
+                    return stringsEqual(n1.getStringValue(), n2.getStringValue(), collation);
+                    
+                case TEXT:
+                case COMMENT:
+                    return stringsEqual(n1.getStringValue(), n2.getStringValue(), collation);
+                    
+                case PROCESSING_INSTRUCTION:
+                    if (!n1.getLocalName().equals(n2.getLocalName())) return false;
+                    return stringsEqual(n1.getStringValue(), n2.getStringValue(), collation);
+                    
+                case ROOT:
+                    Iterator<XPathNode> docChildren1 = n1.getChildren();
+                    Iterator<XPathNode> docChildren2 = n2.getChildren();
+                    while (docChildren1.hasNext() && docChildren2.hasNext()) {
+                        if (!nodesDeepEqual(docChildren1.next(), docChildren2.next(), collation)) {
+                            return false;
+                        }
+                    }
+                    return !docChildren1.hasNext() && !docChildren2.hasNext();
+                    
+                default:
+                    return stringsEqual(n1.getStringValue(), n2.getStringValue(), collation);
+            }
+        }
+        
+    };
+
+    // ========== QName Functions ==========
+
+    /** QName(namespace, localname) - construct a QName value */
+    public static final Function QNAME = new Function() {
+        @Override public String getName() { return "QName"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String namespaceURI = args.get(0) != null ? args.get(0).asString() : "";
+            String lexicalQName = args.get(1).asString();
+            
+            // Parse prefix:localName
+            int colonPos = lexicalQName.indexOf(':');
+            String prefix = "";
+            String localName = lexicalQName;
+            if (colonPos > 0) {
+                prefix = lexicalQName.substring(0, colonPos);
+                localName = lexicalQName.substring(colonPos + 1);
+            }
+            
+            return XPathQName.of(namespaceURI, prefix, localName);
+        }
+    };
+
+    /** local-name-from-QName(qname) - extract local name from QName */
+    public static final Function LOCAL_NAME_FROM_QNAME = new Function() {
+        @Override public String getName() { return "local-name-from-QName"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (arg == null || isEmpty(arg)) {
+                return XPathSequence.EMPTY;
+            }
+            
+            XPathQName qname = toQName(arg, context);
+            if (qname == null) {
+                return XPathSequence.EMPTY;
+            }
+            return XPathString.of(qname.getLocalName());
+        }
+    };
+
+    /** namespace-uri-from-QName(qname) - extract namespace URI from QName */
+    public static final Function NAMESPACE_URI_FROM_QNAME = new Function() {
+        @Override public String getName() { return "namespace-uri-from-QName"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (arg == null || isEmpty(arg)) {
+                return XPathSequence.EMPTY;
+            }
+            
+            XPathQName qname = toQName(arg, context);
+            if (qname == null) {
+                return XPathSequence.EMPTY;
+            }
+            String uri = qname.getNamespaceURI();
+            if (uri == null) {
+                uri = "";
+            }
+            return XPathAnyURI.of(uri);
+        }
+    };
+
+    /** prefix-from-QName(qname) - extract prefix from QName */
+    public static final Function PREFIX_FROM_QNAME = new Function() {
+        @Override public String getName() { return "prefix-from-QName"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (arg == null || isEmpty(arg)) {
+                return XPathSequence.EMPTY;
+            }
+            
+            XPathQName qname = toQName(arg, context);
+            if (qname == null) {
+                return XPathSequence.EMPTY;
+            }
+            String prefix = qname.getPrefix();
+            if (prefix == null || prefix.isEmpty()) {
+                return XPathSequence.EMPTY;
+            }
+            return XPathString.of(prefix);
+        }
+    };
+
+    /** in-scope-prefixes(element) - returns all namespace prefixes in scope */
+    public static final Function IN_SCOPE_PREFIXES = new Function() {
+        @Override public String getName() { return "in-scope-prefixes"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            if (arg == null || !arg.isNodeSet()) {
+                throw new XPathException("XPTY0004: in-scope-prefixes requires an element argument");
+            }
+            
+            XPathNodeSet nodeSet = arg.asNodeSet();
+            if (nodeSet.isEmpty()) {
+                throw new XPathException("XPTY0004: in-scope-prefixes requires an element argument");
+            }
+            
+            XPathNode node = nodeSet.first();
+            // If document node, use the document element
+            if (node.getNodeType() == NodeType.ROOT) {
+                Iterator<XPathNode> children = node.getChildren();
+                XPathNode docElement = null;
+                while (children.hasNext()) {
+                    XPathNode child = children.next();
+                    if (child.getNodeType() == NodeType.ELEMENT) {
+                        docElement = child;
+                        break;
+                    }
+                }
+                if (docElement != null) {
+                    node = docElement;
+                }
+            }
+            if (node.getNodeType() != NodeType.ELEMENT) {
+                throw new XPathException("XPTY0004: in-scope-prefixes requires an element argument");
+            }
+            
+            // Collect all in-scope namespace prefixes
+            List<XPathValue> prefixes = new ArrayList<>();
+            
+            // xml prefix is always in scope
+            prefixes.add(XPathString.of("xml"));
+            
+            // Collect namespace prefixes from namespace nodes
+            // getNamespaces() already returns inherited namespaces, no need to walk ancestors
+            Iterator<XPathNode> nsNodes = node.getNamespaces();
+            Set<String> seen = new HashSet<>();
+            seen.add("xml");
+            
+            if (nsNodes != null) {
+                while (nsNodes.hasNext()) {
+                    XPathNode nsNode = nsNodes.next();
+                    String prefix = nsNode.getLocalName();
+                    if (prefix == null) {
+                        prefix = "";
+                    }
+                    String uri = nsNode.getStringValue();
+                    if (!seen.contains(prefix) && uri != null && !uri.isEmpty()) {
+                        seen.add(prefix);
+                        prefixes.add(XPathString.of(prefix));
+                    }
+                }
+            }
+            
+            return new XPathSequence(prefixes);
+        }
+    };
+
+    /** namespace-uri-for-prefix(prefix, element) - returns namespace URI for a prefix */
+    public static final Function NAMESPACE_URI_FOR_PREFIX = new Function() {
+        @Override public String getName() { return "namespace-uri-for-prefix"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String prefix = args.get(0) != null ? args.get(0).asString() : "";
+            
+            XPathValue elementArg = args.get(1);
+            if (elementArg == null || !elementArg.isNodeSet()) {
+                throw new XPathException("XPTY0004: namespace-uri-for-prefix requires an element argument");
+            }
+            
+            XPathNodeSet nodeSet = elementArg.asNodeSet();
+            if (nodeSet.isEmpty()) {
+                throw new XPathException("XPTY0004: namespace-uri-for-prefix requires an element argument");
+            }
+            
+            XPathNode element = nodeSet.first();
+            if (element.getNodeType() != NodeType.ELEMENT) {
+                throw new XPathException("XPTY0004: namespace-uri-for-prefix requires an element argument");
+            }
+            
+            // Special case: xml prefix
+            if ("xml".equals(prefix)) {
+                return XPathAnyURI.of("http://www.w3.org/XML/1998/namespace");
+            }
+            
+            // Search for the namespace binding using getNamespaces() which
+            // already returns inherited namespaces with undeclarations filtered out
+            Iterator<XPathNode> nsNodes = element.getNamespaces();
+            if (nsNodes != null) {
+                while (nsNodes.hasNext()) {
+                    XPathNode nsNode = nsNodes.next();
+                    String nsPrefix = nsNode.getLocalName();
+                    if (nsPrefix == null) {
+                        nsPrefix = "";
+                    }
+                    if (prefix.equals(nsPrefix)) {
+                        String uri = nsNode.getStringValue();
+                        if (uri != null && !uri.isEmpty()) {
+                            return XPathAnyURI.of(uri);
+                        }
+                        return XPathSequence.EMPTY;
+                    }
+                }
+            }
+            
+            // Prefix not found
+            return XPathSequence.EMPTY;
+        }
+    };
+
+    /** node-name(node?) - returns the QName of a node */
+    public static final Function NODE_NAME = new Function() {
+        @Override public String getName() { return "node-name"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathNode node;
+            
+            if (args.isEmpty() || args.get(0) == null) {
+                // Use context node
+                node = context.getContextNode();
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg instanceof XPathSequence && ((XPathSequence) arg).isEmpty()) {
+                    return XPathSequence.EMPTY;
+                }
+                if (!arg.isNodeSet()) {
+                    throw new XPathException("XPTY0004: node-name requires a node argument");
+                }
+                XPathNodeSet ns = arg.asNodeSet();
+                if (ns.isEmpty()) {
+                    return XPathSequence.EMPTY;
+                }
+                node = ns.first();
+            }
+            
+            if (node == null) {
+                return XPathSequence.EMPTY;
+            }
+            
+            // Only named nodes return a QName
+            NodeType nodeType = node.getNodeType();
+            if (nodeType == NodeType.ELEMENT || nodeType == NodeType.ATTRIBUTE) {
+                String namespaceURI = node.getNamespaceURI();
+                String prefix = node.getPrefix();
+                String localName = node.getLocalName();
+                return XPathQName.of(namespaceURI != null ? namespaceURI : "", 
+                                    prefix != null ? prefix : "", 
+                                    localName);
+            } else if (nodeType == NodeType.PROCESSING_INSTRUCTION) {
+                // PI has a target name in no namespace
+                return XPathQName.of("", "", node.getLocalName());
+            } else if (nodeType == NodeType.NAMESPACE) {
+                // Namespace node name is the prefix
+                String prefix = node.getLocalName();
+                return XPathQName.of("", "", prefix != null ? prefix : "");
+            }
+            
+            // Other node types (text, comment, document) have no name
+            return XPathSequence.EMPTY;
+        }
+    };
+
+    /** resolve-QName(qname, element) - resolves a lexical QName using in-scope namespaces */
+    public static final Function RESOLVE_QNAME = new Function() {
+        @Override public String getName() { return "resolve-QName"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue qnameArg = args.get(0);
+            if (qnameArg == null || isEmpty(qnameArg)) {
+                return XPathSequence.EMPTY;
+            }
+            
+            String lexicalQName = qnameArg.asString();
+            if (lexicalQName == null || lexicalQName.isEmpty()) {
+                return XPathSequence.EMPTY;
+            }
+            
+            XPathValue elementArg = args.get(1);
+            if (elementArg == null || !elementArg.isNodeSet()) {
+                throw new XPathException("XPTY0004: resolve-QName requires an element argument");
+            }
+            
+            XPathNodeSet nodeSet = elementArg.asNodeSet();
+            if (nodeSet.isEmpty()) {
+                throw new XPathException("XPTY0004: resolve-QName requires an element argument");
+            }
+            
+            XPathNode element = nodeSet.first();
+            if (element.getNodeType() != NodeType.ELEMENT) {
+                throw new XPathException("XPTY0004: resolve-QName requires an element argument");
+            }
+            
+            // FOCA0002: Validate the lexical QName
+            if (!isValidLexicalQName(lexicalQName)) {
+                throw new XPathException("FOCA0002: Invalid lexical QName: " + lexicalQName);
+            }
+            
+            // Parse the lexical QName
+            int colonPos = lexicalQName.indexOf(':');
+            String prefix = "";
+            String localName = lexicalQName;
+            if (colonPos > 0) {
+                prefix = lexicalQName.substring(0, colonPos);
+                localName = lexicalQName.substring(colonPos + 1);
+            }
+            
+            // Resolve using the element's in-scope namespace nodes.
+            // getNamespaces() already handles inheritance and xmlns="" undeclarations,
+            // so no manual ancestor walk is needed.
+            String namespaceURI = "";
+            Iterator<XPathNode> nsNodes = element.getNamespaces();
+            while (nsNodes.hasNext()) {
+                XPathNode nsNode = nsNodes.next();
+                String nsPrefix = nsNode.getLocalName();
+                if (nsPrefix == null) {
+                    nsPrefix = "";
+                }
+                if (prefix.equals(nsPrefix)) {
+                    namespaceURI = nsNode.getStringValue();
+                    if (namespaceURI == null) {
+                        namespaceURI = "";
+                    }
+                    break;
+                }
+            }
+            
+            if (!prefix.isEmpty() && namespaceURI.isEmpty()) {
+                throw new XPathException("FONS0004: Prefix '" + prefix + "' is not bound to a namespace");
+            }
+            
+            return XPathQName.of(namespaceURI, prefix, localName);
+        }
+    };
+
+    // Helper: convert value to XPathQName
+    private static XPathQName toQName(XPathValue value, XPathContext context) {
+        if (value instanceof XPathQName) {
+            return (XPathQName) value;
+        }
+        // Try to parse as string
+        String str = value.asString();
+        if (str == null || str.isEmpty()) {
+            return null;
+        }
+        // Parse with context namespace resolver
+        return XPathQName.parse(str, new XPathQName.NamespaceResolver() {
+            @Override
+            public String resolve(String prefix) {
+                if (context != null) {
+                    return context.resolveNamespacePrefix(prefix);
+                }
+                return null;
+            }
+        });
+    }
+
+    // Helper class to wrap a single node as an XPathValue (used by deep-equal)
+    private static class SingleNodeValue implements XPathValue {
+
+        private static final long serialVersionUID = 1L;
+
+        final XPathNode node;
+        SingleNodeValue(XPathNode node) { this.node = node; }
+        @Override public Type getType() { return Type.NODESET; }
+        @Override public boolean isNodeSet() { return true; }
+        @Override public boolean asBoolean() { return true; }
+        @Override public double asNumber() { 
+            try { return Double.parseDouble(node.getStringValue()); }
+            catch (NumberFormatException e) { return Double.NaN; }
+        }
+        @Override public String asString() { return node.getStringValue(); }
+        @Override public XPathNodeSet asNodeSet() { 
+            return new XPathNodeSet(Collections.singletonList(node)); 
+        }
+    }
+
+    // ========== Helper methods ==========
+
+    /**
+     * Validates a lexical QName string per XML Namespaces.
+     * A valid QName is either an NCName or NCName:NCName.
+     * NCName chars: letter, digit, '.', '-', '_' (no ':').
+     * Must start with letter or '_'.
+     */
+    private static boolean isValidLexicalQName(String qname) {
+        if (qname == null || qname.isEmpty()) {
+            return false;
+        }
+        int colonPos = qname.indexOf(':');
+        if (colonPos >= 0) {
+            // Check for multiple colons
+            if (qname.indexOf(':', colonPos + 1) >= 0) {
+                return false;
+            }
+            String prefix = qname.substring(0, colonPos);
+            String local = qname.substring(colonPos + 1);
+            return isValidNCName(prefix) && isValidNCName(local);
+        }
+        return isValidNCName(qname);
+    }
+
+    private static boolean isValidNCName(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        char first = name.charAt(0);
+        if (!Character.isLetter(first) && first != '_') {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '.' && c != '-' && c != '_'
+                    && !isCombiningOrExtender(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCombiningOrExtender(char c) {
+        int type = Character.getType(c);
+        return type == Character.COMBINING_SPACING_MARK
+            || type == Character.NON_SPACING_MARK
+            || type == Character.MODIFIER_LETTER;
+    }
+
+    private static boolean isEmpty(XPathValue value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof XPathSequence) {
+            return ((XPathSequence) value).isEmpty();
+        }
+        if (value instanceof XPathNodeSet) {
+            return ((XPathNodeSet) value).isEmpty();
+        }
+        return false;
+    }
+
+    private static int getSize(XPathValue value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof XPathSequence) {
+            return ((XPathSequence) value).size();
+        }
+        if (value instanceof XPathNodeSet) {
+            return ((XPathNodeSet) value).size();
+        }
+        return 1;  // Single atomic value
+    }
+
+    private static List<XPathValue> toList(XPathValue value) {
+        List<XPathValue> result = new ArrayList<>();
+        if (value == null) {
+            return result;
+        }
+        if (value instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) value;
+            for (XPathValue item : seq) {
+                result.add(item);
+            }
+        } else if (value instanceof XPathNodeSet) {
+            XPathNodeSet nodeSet = (XPathNodeSet) value;
+            for (XPathNode node : nodeSet) {
+                // Wrap each node in a singleton node-set to preserve node identity
+                result.add(new XPathNodeSet(Collections.singletonList(node)));
+            }
+        } else {
+            result.add(value);
+        }
+        return result;
+    }
+    
+    /**
+     * XPath 3.0 copy-of() function.
+     * 
+     * <p>Returns a deep copy of each item in the input sequence.
+     * For nodes, creates a deep copy. For atomic values, returns the same value.
+     * 
+     * <p>Signature: copy-of(item()*) → item()*
+     * <p>Signature: copy-of() → item() (uses context item)
+     * 
+     * @see XSLT 3.0 specification
+     */
+    public static final Function COPY_OF = new Function() {
+        @Override public String getName() { return "copy-of"; }
+        @Override public int getMinArgs() { return 0; }  // 0 args = use context item
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue input;
+            if (args.isEmpty()) {
+                // Use context item
+                XPathNode contextNode = context.getContextNode();
+                if (contextNode == null) {
+                    throw new XPathException("XPDY0002: Context item is absent for copy-of()");
+                }
+                input = XPathNodeSet.of(contextNode);
+            } else {
+                input = args.get(0);
+            }
+            
+            // For atomic values, just return them (they're immutable)
+            // For nodes, we create a deep copy with new identity
+            if (input instanceof XPathNodeSet) {
+                XPathNodeSet nodeSet = (XPathNodeSet) input;
+                List<XPathNode> copiedNodes = new ArrayList<>();
+                for (XPathNode node : nodeSet.getNodes()) {
+                    copiedNodes.add(new CopiedNode(node));
+                }
+                return XPathNodeSet.of(copiedNodes.toArray(new XPathNode[0]));
+            } else if (input instanceof XPathSequence) {
+                XPathSequence seq = (XPathSequence) input;
+                List<XPathValue> copies = new ArrayList<>();
+                for (XPathValue item : seq) {
+                    if (item instanceof XPathNodeSet) {
+                        XPathNodeSet ns = (XPathNodeSet) item;
+                        List<XPathNode> copiedNodes = new ArrayList<>();
+                        for (XPathNode node : ns.getNodes()) {
+                            copiedNodes.add(new CopiedNode(node));
+                        }
+                        copies.add(XPathNodeSet.of(copiedNodes.toArray(new XPathNode[0])));
+                    } else {
+                        copies.add(item);  // Atomic values are immutable
+                    }
+                }
+                return new XPathSequence(copies);
+            } else {
+                // Atomic values are immutable, return as-is
+                return input;
+            }
+        }
+    };
+    
+    /**
+     * A copied node that wraps an original node with new identity.
+     * 
+     * <p>Per XPath 3.0 copy-of() semantics, copied nodes:
+     * <ul>
+     *   <li>Have different node identity (is comparison returns false)</li>
+     *   <li>Have no parent (they are orphaned)</li>
+     *   <li>Have no siblings</li>
+     *   <li>Preserve the same name, value, and structure</li>
+     * </ul>
+     */
+    /**
+     * Creates a deep copy of a node that preserves a getCopySource() link
+     * to the original, enabling accumulator value propagation.
+     */
+    public static XPathNode createCopiedNode(XPathNode original) {
+        return new CopiedNode(original);
+    }
+
+    static class CopiedNode implements XPathNode {
+        private final XPathNode original;
+        private final long uniqueId;
+        private static long nextId = Long.MAX_VALUE / 2;
+
+        private XPathNode parentNode;
+        private List<CopiedNode> childList;
+        private List<CopiedNode> attrList;
+
+        CopiedNode(XPathNode original) {
+            this(original, null);
+        }
+
+        private CopiedNode(XPathNode original, CopiedNode parent) {
+            this.original = original;
+            this.uniqueId = nextId++;
+            this.parentNode = parent;
+        }
+
+        public XPathNode getOriginal() {
+            return original;
+        }
+
+        void setParent(XPathNode parent) {
+            this.parentNode = parent;
+        }
+
+        /**
+         * Eagerly initializes all descendants so that document order IDs
+         * are assigned in tree order (depth-first). Required for snapshot
+         * trees where innermost()/outermost() depend on correct ordering.
+         */
+        void deepInitialize() {
+            List<CopiedNode> kids = ensureChildren();
+            for (int i = 0; i < kids.size(); i++) {
+                kids.get(i).deepInitialize();
+            }
+            ensureAttributes();
+        }
+
+        @Override public NodeType getNodeType() { return original.getNodeType(); }
+        @Override public String getNamespaceURI() { return original.getNamespaceURI(); }
+        @Override public String getLocalName() { return original.getLocalName(); }
+        @Override public String getPrefix() { return original.getPrefix(); }
+        @Override public String getStringValue() { return original.getStringValue(); }
+
+        @Override
+        public XPathNode getParent() {
+            return parentNode;
+        }
+
+        @Override
+        public XPathNode getFollowingSibling() {
+            if (parentNode == null || !(parentNode instanceof CopiedNode)) {
+                return null;
+            }
+            List<CopiedNode> siblings = ((CopiedNode) parentNode).ensureChildren();
+            for (int i = 0; i < siblings.size(); i++) {
+                if (siblings.get(i) == this && i + 1 < siblings.size()) {
+                    return siblings.get(i + 1);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public XPathNode getPrecedingSibling() {
+            if (parentNode == null || !(parentNode instanceof CopiedNode)) {
+                return null;
+            }
+            List<CopiedNode> siblings = ((CopiedNode) parentNode).ensureChildren();
+            for (int i = 0; i < siblings.size(); i++) {
+                if (siblings.get(i) == this && i > 0) {
+                    return siblings.get(i - 1);
+                }
+            }
+            return null;
+        }
+
+        private List<CopiedNode> ensureChildren() {
+            if (childList == null) {
+                childList = new ArrayList<>();
+                Iterator<XPathNode> origChildren = original.getChildren();
+                while (origChildren.hasNext()) {
+                    childList.add(new CopiedNode(origChildren.next(), this));
+                }
+            }
+            return childList;
+        }
+
+        private List<CopiedNode> ensureAttributes() {
+            if (attrList == null) {
+                attrList = new ArrayList<>();
+                Iterator<XPathNode> origAttrs = original.getAttributes();
+                while (origAttrs.hasNext()) {
+                    attrList.add(new CopiedNode(origAttrs.next(), this));
+                }
+            }
+            return attrList;
+        }
+
+        @Override
+        public Iterator<XPathNode> getChildren() {
+            List<CopiedNode> kids = ensureChildren();
+            List<XPathNode> result = new ArrayList<>(kids.size());
+            for (int i = 0; i < kids.size(); i++) {
+                result.add(kids.get(i));
+            }
+            return result.iterator();
+        }
+
+        @Override
+        public Iterator<XPathNode> getAttributes() {
+            List<CopiedNode> attrs = ensureAttributes();
+            List<XPathNode> result = new ArrayList<>(attrs.size());
+            for (int i = 0; i < attrs.size(); i++) {
+                result.add(attrs.get(i));
+            }
+            return result.iterator();
+        }
+
+        @Override
+        public Iterator<XPathNode> getNamespaces() {
+            List<XPathNode> copiedNs = new ArrayList<>();
+            Iterator<XPathNode> origNs = original.getNamespaces();
+            while (origNs.hasNext()) {
+                copiedNs.add(new CopiedNode(origNs.next(), this));
+            }
+            return copiedNs.iterator();
+        }
+
+        @Override public long getDocumentOrder() { return uniqueId; }
+
+        @Override
+        public boolean isSameNode(XPathNode other) {
+            return this == other;
+        }
+
+        @Override
+        public XPathNode getRoot() {
+            XPathNode node = this;
+            while (node.getParent() != null) {
+                node = node.getParent();
+            }
+            return node;
+        }
+
+        @Override public boolean isFullyNavigable() { return true; }
+
+        @Override public XPathNode getCopySource() { return original; }
+    }
+
+    /**
+     * XPath 2.0 root() function.
+     * 
+     * <p>Returns the root of the tree to which the argument node belongs.
+     * 
+     * <p>Signature: root() → node()
+     * <p>Signature: root($arg as node()?) → node()?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-root">XPath root()</a>
+     */
+    public static final Function ROOT = new Function() {
+        @Override public String getName() { return "root"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathNode node;
+            if (args.isEmpty()) {
+                node = context.getContextNode();
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg == null || (arg instanceof XPathSequence && ((XPathSequence)arg).isEmpty())) {
+                    return XPathSequence.EMPTY;
+                }
+                if (arg instanceof XPathNode) {
+                    node = (XPathNode) arg;
+                } else if (arg instanceof XPathNodeSet) {
+                    XPathNodeSet ns = (XPathNodeSet) arg;
+                    Iterator<XPathNode> iter = ns.iterator();
+                    if (!iter.hasNext()) {
+                        return XPathSequence.EMPTY;
+                    }
+                    node = iter.next();
+                } else if (arg instanceof XPathResultTreeFragment) {
+                    XPathNodeSet ns = ((XPathResultTreeFragment) arg).asNodeSet();
+                    if (ns == null || ns.isEmpty()) {
+                        return XPathSequence.EMPTY;
+                    }
+                    return ns;
+                } else {
+                    throw new XPathException("Argument to root() must be a node");
+                }
+            }
+            
+            // Navigate to root
+            XPathNode root = node.getRoot();
+            if (root != null) {
+                return XPathNodeSet.of(root);
+            }
+            
+            // Fallback: traverse parent chain
+            while (node.getParent() != null) {
+                node = node.getParent();
+            }
+            return XPathNodeSet.of(node);
+        }
+    };
+
+    /**
+     * XPath 2.0 nilled() function.
+     * 
+     * <p>Returns true if the argument node is nilled (xs:nil="true").
+     * 
+     * <p>Signature: nilled($arg as node()?) → boolean?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-nilled">XPath nilled()</a>
+     */
+    public static final Function NILLED = new Function() {
+        @Override public String getName() { return "nilled"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathNode node;
+            if (args.isEmpty()) {
+                node = context.getContextNode();
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg == null || (arg instanceof XPathSequence && ((XPathSequence)arg).isEmpty())) {
+                    return XPathSequence.EMPTY;
+                }
+                if (arg instanceof XPathNode) {
+                    node = (XPathNode) arg;
+                } else if (arg instanceof XPathNodeSet) {
+                    XPathNodeSet ns = (XPathNodeSet) arg;
+                    Iterator<XPathNode> iter = ns.iterator();
+                    if (!iter.hasNext()) {
+                        return XPathSequence.EMPTY;
+                    }
+                    node = iter.next();
+                } else {
+                    return XPathSequence.EMPTY;
+                }
+            }
+            
+            // Only element nodes can be nilled
+            if (node.getNodeType() != NodeType.ELEMENT) {
+                return XPathSequence.EMPTY;
+            }
+            
+            // In Basic XSLT (no schema validation), all elements are untyped
+            // and nilled() always returns false per the XPath 2.0 spec.
+            return XPathBoolean.FALSE;
+        }
+    };
+
+    /**
+     * XPath 2.0 trace() function.
+     * 
+     * <p>Returns its first argument and outputs debugging information.
+     * The debugging output is implementation-defined.
+     * 
+     * <p>Signature: trace($value as item()*, $label as xs:string) → item()*
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-trace">XPath trace()</a>
+     */
+    public static final Function TRACE = new Function() {
+        @Override public String getName() { return "trace"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue value = args.get(0);
+            String label = args.get(1).asString();
+            
+            // Output trace info to stderr (implementation-defined)
+            System.err.println("TRACE [" + label + "]: " + (value != null ? value.asString() : "(empty)"));
+            
+            // Return the value unchanged
+            return value;
+        }
+    };
+
+    /**
+     * XPath 2.0 default-collation() function.
+     * 
+     * <p>Returns the URI of the default collation.
+     * 
+     * <p>Signature: default-collation() → xs:string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-default-collation">XPath default-collation()</a>
+     */
+    public static final Function DEFAULT_COLLATION = new Function() {
+        @Override public String getName() { return "default-collation"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 0; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            // Return the Unicode codepoint collation as default
+            return XPathString.of("http://www.w3.org/2005/xpath-functions/collation/codepoint");
+        }
+    };
+
+    /**
+     * XPath 3.0 path() function.
+     * 
+     * <p>Returns a path expression that can be used to select the argument node.
+     * 
+     * <p>Signature: path() → xs:string?
+     * <p>Signature: path($arg as node()?) → xs:string?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-31/#func-path">XPath path()</a>
+     */
+    public static final Function PATH = new Function() {
+        @Override public String getName() { return "path"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathNode node;
+            if (args.isEmpty()) {
+                node = context.getContextNode();
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg == null || (arg instanceof XPathSequence && ((XPathSequence)arg).isEmpty())) {
+                    return XPathSequence.EMPTY;
+                }
+                if (arg instanceof XPathNode) {
+                    node = (XPathNode) arg;
+                } else if (arg instanceof XPathNodeSet) {
+                    XPathNodeSet ns = (XPathNodeSet) arg;
+                    Iterator<XPathNode> iter = ns.iterator();
+                    if (!iter.hasNext()) {
+                        return XPathSequence.EMPTY;
+                    }
+                    node = iter.next();
+                } else {
+                    throw new XPathException("Argument to path() must be a node");
+                }
+            }
+            
+            return XPathString.of(buildPath(node));
+        }
+        
+        private String buildPath(XPathNode node) {
+            if (node == null) {
+                return "";
+            }
+            
+            NodeType type = node.getNodeType();
+            if (type == NodeType.ROOT) {
+                return "/";
+            }
+            
+            StringBuilder sb = new StringBuilder();
+            XPathNode parent = node.getParent();
+            if (parent != null && parent.getNodeType() != NodeType.ROOT) {
+                sb.append(buildPath(parent));
+            }
+            
+            switch (type) {
+                case ELEMENT:
+                    String uri = node.getNamespaceURI();
+                    String local = node.getLocalName();
+                    sb.append("/");
+                    if (uri != null && !uri.isEmpty()) {
+                        sb.append("Q{").append(uri).append("}");
+                    }
+                    sb.append(local);
+                    // Add position predicate
+                    int pos = getElementPosition(node);
+                    sb.append("[").append(pos).append("]");
+                    break;
+                case ATTRIBUTE:
+                    uri = node.getNamespaceURI();
+                    local = node.getLocalName();
+                    sb.append("/@");
+                    if (uri != null && !uri.isEmpty()) {
+                        sb.append("Q{").append(uri).append("}");
+                    }
+                    sb.append(local);
+                    break;
+                case TEXT:
+                    sb.append("/text()[").append(getTextPosition(node)).append("]");
+                    break;
+                case COMMENT:
+                    sb.append("/comment()[").append(getCommentPosition(node)).append("]");
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    sb.append("/processing-instruction(").append(node.getLocalName()).append(")");
+                    sb.append("[").append(getPIPosition(node)).append("]");
+                    break;
+                case NAMESPACE:
+                    String prefix = node.getLocalName();
+                    sb.append("/namespace::").append(prefix != null && !prefix.isEmpty() ? prefix : "*[Q{http://www.w3.org/2005/xpath-functions}local-name()=\"\"]");
+                    break;
+                default:
+                    break;
+            }
+            return sb.toString();
+        }
+        
+        private int getElementPosition(XPathNode node) {
+            XPathNode parent = node.getParent();
+            if (parent == null) {
+                return 1;
+            }
+            
+            String uri = node.getNamespaceURI();
+            String local = node.getLocalName();
+            int pos = 0;
+            
+            Iterator<XPathNode> siblings = parent.getChildren();
+            if (siblings != null) {
+                while (siblings.hasNext()) {
+                    XPathNode sibling = siblings.next();
+                    if (sibling.getNodeType() == NodeType.ELEMENT) {
+                        String sibUri = sibling.getNamespaceURI();
+                        String sibLocal = sibling.getLocalName();
+                        if (local.equals(sibLocal) && 
+                            ((uri == null && sibUri == null) || (uri != null && uri.equals(sibUri)))) {
+                            pos++;
+                            if (sibling.isSameNode(node)) {
+                                return pos;
+                            }
+                        }
+                    }
+                }
+            }
+            return 1;
+        }
+        
+        private int getTextPosition(XPathNode node) {
+            XPathNode parent = node.getParent();
+            if (parent == null) {
+                return 1;
+            }
+            
+            int pos = 0;
+            Iterator<XPathNode> siblings = parent.getChildren();
+            if (siblings != null) {
+                while (siblings.hasNext()) {
+                    XPathNode sibling = siblings.next();
+                    if (sibling.getNodeType() == NodeType.TEXT) {
+                        pos++;
+                        if (sibling.isSameNode(node)) {
+                            return pos;
+                        }
+                    }
+                }
+            }
+            return 1;
+        }
+        
+        private int getCommentPosition(XPathNode node) {
+            XPathNode parent = node.getParent();
+            if (parent == null) {
+                return 1;
+            }
+            
+            int pos = 0;
+            Iterator<XPathNode> siblings = parent.getChildren();
+            if (siblings != null) {
+                while (siblings.hasNext()) {
+                    XPathNode sibling = siblings.next();
+                    if (sibling.getNodeType() == NodeType.COMMENT) {
+                        pos++;
+                        if (sibling.isSameNode(node)) {
+                            return pos;
+                        }
+                    }
+                }
+            }
+            return 1;
+        }
+        
+        private int getPIPosition(XPathNode node) {
+            XPathNode parent = node.getParent();
+            if (parent == null) {
+                return 1;
+            }
+            
+            String target = node.getLocalName();
+            int pos = 0;
+            Iterator<XPathNode> siblings = parent.getChildren();
+            if (siblings != null) {
+                while (siblings.hasNext()) {
+                    XPathNode sibling = siblings.next();
+                    if (sibling.getNodeType() == NodeType.PROCESSING_INSTRUCTION &&
+                        target.equals(sibling.getLocalName())) {
+                        pos++;
+                        if (sibling.isSameNode(node)) {
+                            return pos;
+                        }
+                    }
+                }
+            }
+            return 1;
+        }
+    };
+
+    /**
+     * XPath 2.0 collection() function.
+     * 
+     * <p>Returns a sequence of nodes retrieved from a collection.
+     * The default collection is returned if no argument is given.
+     * 
+     * <p>Signature: collection() → node()*
+     * <p>Signature: collection($arg as xs:string?) → node()*
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-collection">XPath collection()</a>
+     */
+    public static final Function COLLECTION = new Function() {
+        @Override public String getName() { return "collection"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String uri;
+            if (args.isEmpty()) {
+                uri = "";
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg == null || (arg instanceof XPathSequence && ((XPathSequence) arg).isEmpty())) {
+                    uri = "";
+                } else {
+                    uri = arg.asString();
+                }
+            }
+
+            // Look up in the registered collections
+            if (context instanceof TransformContext) {
+                TransformContext tc = (TransformContext) context;
+                List<XPathNode> nodes = tc.getCollection(uri);
+                if (nodes != null && !nodes.isEmpty()) {
+                    List<XPathValue> items = new ArrayList<>();
+                    for (XPathNode n : nodes) {
+                        items.add(new XPathNodeSet(Collections.singletonList(n)));
+                    }
+                    return new XPathSequence(items);
+                }
+            }
+
+            // FODC0002: no collection found for the URI
+            if (uri.isEmpty()) {
+                return XPathSequence.EMPTY;
+            }
+            return XPathSequence.EMPTY;
+        }
+    };
+
+    /**
+     * XPath 3.1 uri-collection() function.
+     *
+     * <p>Returns a sequence of URI strings for the documents in a collection.
+     *
+     * <p>Signature: uri-collection() as xs:anyURI*
+     * <p>Signature: uri-collection($arg as xs:string?) as xs:anyURI*
+     *
+     * @see <a href="https://www.w3.org/TR/xpath-functions-31/#func-uri-collection">XPath uri-collection()</a>
+     */
+    public static final Function URI_COLLECTION = new Function() {
+        @Override public String getName() { return "uri-collection"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context)
+                throws XPathException {
+            String uri;
+            if (args.isEmpty()) {
+                uri = "";
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg == null
+                        || (arg instanceof XPathSequence
+                            && ((XPathSequence) arg).isEmpty())) {
+                    uri = "";
+                } else {
+                    uri = arg.asString();
+                }
+            }
+
+            if (context instanceof BasicTransformContext) {
+                BasicTransformContext btc = (BasicTransformContext) context;
+                List<String> uris = btc.getCollectionUris(uri);
+                if (uris != null && !uris.isEmpty()) {
+                    List<XPathValue> items = new ArrayList<>();
+                    for (String docUri : uris) {
+                        items.add(XPathString.of(docUri));
+                    }
+                    return new XPathSequence(items);
+                }
+            }
+
+            if (uri.isEmpty()) {
+                return XPathSequence.EMPTY;
+            }
+
+            int qIdx = uri.indexOf("?select=");
+            if (qIdx >= 0) {
+                return resolveSelectCollection(uri, qIdx, context);
+            }
+
+            throw new XPathException(
+                "FODC0002: No uri-collection found for URI '" + uri + "'");
+        }
+    };
+
+    /**
+     * Resolves a collection URI with {@code ?select=glob-pattern}, listing
+     * matching files in the specified directory.
+     */
+    private static XPathValue resolveSelectCollection(String uri, int qIdx,
+            XPathContext context) throws XPathException {
+        String dirPart = uri.substring(0, qIdx);
+        String pattern = uri.substring(qIdx + 8);
+        if (dirPart.isEmpty()) {
+            dirPart = ".";
+        }
+
+        java.io.File dir;
+        String baseURI = context.getStaticBaseURI();
+        if (baseURI != null && !baseURI.isEmpty()) {
+            try {
+                java.net.URI base = new java.net.URI(baseURI);
+                java.net.URI resolved = base.resolve(dirPart);
+                dir = new java.io.File(resolved);
+            } catch (Exception e) {
+                dir = new java.io.File(dirPart);
+            }
+        } else {
+            dir = new java.io.File(dirPart);
+        }
+
+        if (!dir.isDirectory()) {
+            throw new XPathException(
+                "FODC0002: Directory not found for uri-collection: " + dirPart);
+        }
+
+        java.io.File[] files = dir.listFiles();
+        if (files == null) {
+            return XPathSequence.EMPTY;
+        }
+
+        List<XPathValue> result = new ArrayList<>();
+        for (java.io.File file : files) {
+            if (file.isFile() && matchGlob(file.getName(), pattern)) {
+                String fileUri = file.toURI().toString();
+                result.add(XPathString.of(fileUri));
+            }
+        }
+        java.util.Collections.sort(result, new java.util.Comparator<XPathValue>() {
+            @Override
+            public int compare(XPathValue a, XPathValue b) {
+                return a.asString().compareTo(b.asString());
+            }
+        });
+        return result.isEmpty() ? XPathSequence.EMPTY : new XPathSequence(result);
+    }
+
+    /**
+     * Simple glob matching supporting {@code *} and {@code ?} wildcards.
+     */
+    private static boolean matchGlob(String name, String pattern) {
+        return matchGlobAt(name, 0, pattern, 0);
+    }
+
+    private static boolean matchGlobAt(String s, int si, String p, int pi) {
+        while (pi < p.length()) {
+            char pc = p.charAt(pi);
+            if (pc == '*') {
+                pi++;
+                if (pi == p.length()) {
+                    return true;
+                }
+                for (int i = si; i <= s.length(); i++) {
+                    if (matchGlobAt(s, i, p, pi)) {
+                        return true;
+                    }
+                }
+                return false;
+            } else if (pc == '?') {
+                if (si >= s.length()) {
+                    return false;
+                }
+                si++;
+                pi++;
+            } else {
+                if (si >= s.length() || s.charAt(si) != pc) {
+                    return false;
+                }
+                si++;
+                pi++;
+            }
+        }
+        return si == s.length();
+    }
+
+    /**
+     * XPath 3.0 available-environment-variables() function.
+     * 
+     * <p>Returns a list of environment variable names available to the processor.
+     * 
+     * <p>Signature: available-environment-variables() → xs:string*
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-31/#func-available-environment-variables">XPath available-environment-variables()</a>
+     */
+    public static final Function AVAILABLE_ENVIRONMENT_VARIABLES = new Function() {
+        @Override public String getName() { return "available-environment-variables"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 0; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            java.util.Map<String, String> env = System.getenv();
+            List<XPathValue> names = new ArrayList<>();
+            for (String name : env.keySet()) {
+                names.add(XPathString.of(name));
+            }
+            return new XPathSequence(names);
+        }
+    };
+
+    /**
+     * XPath 3.0 environment-variable() function.
+     * 
+     * <p>Returns the value of a system environment variable.
+     * 
+     * <p>Signature: environment-variable($name as xs:string) → xs:string?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-31/#func-environment-variable">XPath environment-variable()</a>
+     */
+    public static final Function ENVIRONMENT_VARIABLE = new Function() {
+        @Override public String getName() { return "environment-variable"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String name = args.get(0).asString();
+            String value = System.getenv(name);
+            if (value == null) {
+                return XPathSequence.EMPTY;
+            }
+            return XPathString.of(value);
+        }
+    };
+
+    /**
+     * XPath 3.1 sort() function.
+     * 
+     * <p>Returns a sequence containing the items in the input sequence sorted according to
+     * the supplied collation and key function.
+     * 
+     * <p>Signature: sort($input as item()*) → item()*
+     * <p>Signature: sort($input as item()*, $collation as xs:string?) → item()*
+     * <p>Signature: sort($input as item()*, $collation as xs:string?, $key as function(item()) as xs:anyAtomicType*) → item()*
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-31/#func-sort">XPath sort()</a>
+     */
+    public static final Function SORT = new Function() {
+        @Override public String getName() { return "sort"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue input = args.get(0);
+            // Collation argument (args[1]) is ignored - we use default string comparison
+            // Key function (args[2]) is not supported - higher-order functions not implemented
+            
+            List<XPathValue> items = new ArrayList<>();
+            if (input instanceof XPathSequence) {
+                for (XPathValue item : (XPathSequence) input) {
+                    items.add(item);
+                }
+            } else if (input instanceof XPathNodeSet) {
+                for (XPathNode node : (XPathNodeSet) input) {
+                    items.add(XPathString.of(node.getStringValue()));
+                }
+            } else if (input != null) {
+                items.add(input);
+            }
+            
+            // Sort by string value
+            Collections.sort(items, new Comparator<XPathValue>() {
+                @Override
+                public int compare(XPathValue a, XPathValue b) {
+                    String sa = a != null ? a.asString() : "";
+                    String sb = b != null ? b.asString() : "";
+                    return sa.compareTo(sb);
+                }
+            });
+            
+            return new XPathSequence(items);
+        }
+    };
+
+    /**
+     * XPath 3.0 function-name() function.
+     *
+     * <p>Returns the name of a function item as an xs:QName, or the empty
+     * sequence if the function has no name (inline functions).
+     *
+     * <p>Signature: function-name(function(*)) as xs:QName?
+     */
+    public static final Function FUNCTION_NAME = new Function() {
+        @Override public String getName() { return "function-name"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context)
+                throws XPathException {
+            XPathValue arg = args.get(0);
+            if (arg instanceof XPathFunctionItem) {
+                XPathFunctionItem funcItem = (XPathFunctionItem) arg;
+                String name = funcItem.getName();
+                int colonIdx = name.indexOf(':');
+                String localName = (colonIdx >= 0) ? name.substring(colonIdx + 1) : name;
+                String nsUri = funcItem.getNamespaceURI();
+                if (nsUri == null) {
+                    nsUri = "";
+                }
+                return XPathQName.of(nsUri, localName);
+            }
+            if (arg instanceof PartialFunctionItem) {
+                return XPathSequence.EMPTY;
+            }
+            if (arg instanceof InlineFunctionItem) {
+                return XPathSequence.EMPTY;
+            }
+            throw new XPathException("XPTY0004: Argument to function-name is not a function item");
+        }
+    };
+
+    /**
+     * XPath 3.0 has-children() function.
+     *
+     * <p>Returns true if the supplied node has one or more child nodes.
+     * If the argument is omitted, tests the context item.
+     *
+     * <p>Signature: has-children() as xs:boolean
+     * <br>has-children(node) as xs:boolean
+     *
+     * @see <a href="https://www.w3.org/TR/xpath-functions-30/#func-has-children">XPath 3.0 has-children()</a>
+     */
+    public static final Function HAS_CHILDREN = new Function() {
+        @Override public String getName() { return "has-children"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context)
+                throws XPathException {
+            XPathNode node;
+            if (args.isEmpty()) {
+                node = context.getContextNode();
+            } else {
+                XPathValue arg = args.get(0);
+                if (arg == null || (arg instanceof XPathSequence && ((XPathSequence) arg).isEmpty())) {
+                    return XPathBoolean.FALSE;
+                }
+                if (arg instanceof XPathNode) {
+                    node = (XPathNode) arg;
+                } else if (arg instanceof XPathNodeSet) {
+                    XPathNodeSet ns = (XPathNodeSet) arg;
+                    Iterator<XPathNode> iter = ns.iterator();
+                    if (!iter.hasNext()) {
+                        return XPathBoolean.FALSE;
+                    }
+                    node = iter.next();
+                } else {
+                    return XPathBoolean.FALSE;
+                }
+            }
+            NodeType nodeType = node.getNodeType();
+            if (nodeType != NodeType.ROOT && nodeType != NodeType.ELEMENT) {
+                return XPathBoolean.FALSE;
+            }
+            Iterator<XPathNode> children = node.getChildren();
+            if (children != null && children.hasNext()) {
+                return XPathBoolean.TRUE;
+            }
+            return XPathBoolean.FALSE;
+        }
+    };
+
+    /**
+     * XPath 3.0 function-arity() function.
+     *
+     * <p>Returns the arity (number of arguments) of a function item.
+     *
+     * <p>Signature: function-arity(function(*)) as xs:integer
+     */
+    public static final Function FUNCTION_ARITY = new Function() {
+        @Override public String getName() { return "function-arity"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context)
+                throws XPathException {
+            XPathValue arg = args.get(0);
+            if (arg instanceof XPathFunctionItem) {
+                return new XPathNumber(((XPathFunctionItem) arg).getArity());
+            }
+            if (arg instanceof PartialFunctionItem) {
+                return new XPathNumber(((PartialFunctionItem) arg).getArity());
+            }
+            if (arg instanceof InlineFunctionItem) {
+                return new XPathNumber(((InlineFunctionItem) arg).getArity());
+            }
+            throw new XPathException("XPTY0004: Argument to function-arity is not a function item");
+        }
+    };
+
+    /**
+     * XPath 2.0/3.0 error() function.
+     *
+     * <p>Raises a dynamic error. The function never returns.
+     *
+     * <p>Signatures:
+     * <ul>
+     *   <li>error() as none</li>
+     *   <li>error(xs:QName?) as none</li>
+     *   <li>error(xs:QName?, xs:string) as none</li>
+     *   <li>error(xs:QName?, xs:string, item()*) as none</li>
+     * </ul>
+     */
+    public static final Function ERROR = new Function() {
+        @Override public String getName() { return "error"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context)
+                throws XPathException {
+            String errorCode = "FOER0000";
+            String description = null;
+
+            if (!args.isEmpty()) {
+                XPathValue codeArg = args.get(0);
+                if (codeArg != null && !isEmpty(codeArg)) {
+                    if (codeArg instanceof XPathQName) {
+                        XPathQName qname = (XPathQName) codeArg;
+                        String nsUri = qname.getNamespaceURI();
+                        String local = qname.getLocalName();
+                        if (nsUri == null || nsUri.isEmpty()) {
+                            errorCode = local;
+                        } else if ("http://www.w3.org/2005/xqt-errors".equals(nsUri)) {
+                            errorCode = local;
+                        } else {
+                            errorCode = "Q{" + nsUri + "}" + local;
+                        }
+                    } else {
+                        errorCode = codeArg.asString();
+                    }
+                }
+            }
+
+            if (args.size() >= 2) {
+                XPathValue descArg = args.get(1);
+                if (descArg != null) {
+                    description = descArg.asString();
+                }
+            }
+
+            if (description != null && !description.isEmpty()) {
+                throw new XPathException(errorCode, description);
+            }
+            throw new XPathException(errorCode, "error() called");
+        }
+    };
+
+    /**
+     * fn:random-number-generator($seed?) as map(xs:string, item()).
+     * XPath 3.1 Section 17.2.
+     */
+    public static final Function RANDOM_NUMBER_GENERATOR = new Function() {
+
+        @Override
+        public String getName() {
+            return "random-number-generator";
+        }
+
+        @Override
+        public int getMinArgs() {
+            return 0;
+        }
+
+        @Override
+        public int getMaxArgs() {
+            return 1;
+        }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context)
+                throws XPathException {
+            Random random;
+            if (args.isEmpty() || isEmpty(args.get(0))) {
+                random = new Random();
+            } else {
+                XPathValue seedVal = args.get(0);
+                int seed = seedVal.asString().hashCode();
+                random = new Random(seed);
+            }
+            return buildRngMap(random);
+        }
+    };
+
+    /**
+     * Builds the map returned by random-number-generator().
+     * Contains entries "number" (xs:double), "next" (zero-arity function),
+     * and "permute" (one-arity function).
+     */
+    private static XPathMap buildRngMap(final Random random) {
+        Map<String, XPathValue> entries = new LinkedHashMap<String, XPathValue>();
+
+        double num = random.nextDouble();
+        entries.put("number", XPathNumber.of(num));
+
+        entries.put("next", new NativeFunctionItem("random-number-generator:next", 0) {
+            @Override
+            public XPathValue invoke(List<XPathValue> args, XPathContext context)
+                    throws XPathException {
+                return buildRngMap(random);
+            }
+        });
+
+        entries.put("permute", new NativeFunctionItem("random-number-generator:permute", 1) {
+            @Override
+            public XPathValue invoke(List<XPathValue> args, XPathContext context)
+                    throws XPathException {
+                XPathValue input = args.get(0);
+                List<XPathValue> items = new ArrayList<XPathValue>();
+                if (input instanceof XPathSequence) {
+                    for (XPathValue item : (XPathSequence) input) {
+                        items.add(item);
+                    }
+                } else if (input instanceof XPathNodeSet) {
+                    for (XPathNode node : (XPathNodeSet) input) {
+                        items.add(XPathNodeSet.of(node));
+                    }
+                } else {
+                    items.add(input);
+                }
+                Collections.shuffle(items, random);
+                return new XPathSequence(items);
+            }
+        });
+
+        return new XPathMap(entries);
+    }
+}
@@ -0,0 +1,1414 @@
+/*
+ * StringFunctions.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.xpath.function;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.bluezoo.gonzalez.transform.compiler.OutputProperties;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathArray;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathMap;
+import org.bluezoo.json.JSONWriter;
+import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.XMLWriterOutputHandler;
+import org.bluezoo.gonzalez.transform.xpath.XPathContext;
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathBoolean;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathDateTime;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNodeSet;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNumber;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathSequence;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathString;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathTypedAtomic;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathUntypedAtomic;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+import org.bluezoo.gonzalez.transform.runtime.OutputHandlerUtils;
+import org.bluezoo.gonzalez.transform.xpath.Collation;
+import org.bluezoo.gonzalez.transform.xpath.expr.InlineFunctionItem;
+import org.bluezoo.gonzalez.transform.xpath.expr.PartialFunctionItem;
+import org.bluezoo.gonzalez.transform.xpath.expr.DynamicPartialItem;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathFunctionItem;
+import org.bluezoo.gonzalez.transform.xpath.type.SequenceType;
+
+import static org.bluezoo.gonzalez.transform.xpath.function.TypeAnnotatedFunction.typed;
+
+/**
+ * XPath 1.0 string functions.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class StringFunctions {
+
+    /**
+     * Checks if a value is a function item (which cannot be atomized).
+     */
+    static boolean isFunctionItem(XPathValue value) {
+        return value instanceof XPathFunctionItem
+            || value instanceof InlineFunctionItem
+            || value instanceof PartialFunctionItem
+            || value instanceof DynamicPartialItem;
+    }
+
+    private static final Map<String, Pattern> regexCache = new ConcurrentHashMap<>();
+
+    private StringFunctions() {}
+
+    private static Pattern getCachedPattern(String regex, int flags)
+            throws PatternSyntaxException {
+        String key = regex + "\0" + flags;
+        Pattern p = regexCache.get(key);
+        if (p == null) {
+            p = Pattern.compile(regex, flags);
+            regexCache.put(key, p);
+        }
+        return p;
+    }
+
+    /**
+     * XPath 1.0 string() function.
+     * 
+     * <p>Converts the argument (or context node if no argument) to a string.
+     * 
+     * <p>Signature: string(object?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath/#function-string">XPath 1.0 string()</a>
+     */
+    public static final Function STRING = new Function() {
+        @Override public String getName() { return "string"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context)
+                throws XPathException {
+            if (args.isEmpty()) {
+                // XPath 2.0+: context item may be an atomic value (e.g. in simple map)
+                XPathValue contextItem = context.getContextItem();
+                if (contextItem != null && !contextItem.isNodeSet()
+                        && !(contextItem instanceof XPathNode)) {
+                    return XPathString.of(contextItem.asString());
+                }
+                return XPathString.of(context.getContextNode().getStringValue());
+            }
+            XPathValue arg = args.get(0);
+            if (isFunctionItem(arg)) {
+                throw new XPathException("FOTY0014: Cannot apply string() to a function item");
+            }
+            return XPathString.of(arg.asString());
+        }
+    };
+
+    /**
+     * XPath 1.0 concat() function.
+     * 
+     * <p>Concatenates two or more strings together.
+     * 
+     * <p>Signature: concat(string, string, string*) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath/#function-concat">XPath 1.0 concat()</a>
+     */
+    public static final Function CONCAT = new Function() {
+        @Override public String getName() { return "concat"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return Integer.MAX_VALUE; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) {
+            StringBuilder sb = new StringBuilder();
+            for (XPathValue arg : args) {
+                sb.append(arg.asString());
+            }
+            return XPathString.of(sb.toString());
+        }
+    };
+
+    /**
+     * XPath 2.0 starts-with() function.
+     * 
+     * <p>Returns true if the first string starts with the second string.
+     * XPath 2.0 adds optional collation parameter.
+     * 
+     * <p>Signature: starts-with(string?, string?, string?) → boolean
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-starts-with">XPath 2.0 starts-with()</a>
+     */
+    public static final Function STARTS_WITH = new Function() {
+        @Override public String getName() { return "starts-with"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            String prefix = args.get(1).asString();
+            
+            // Empty prefix always returns true
+            if (prefix.isEmpty()) {
+                return XPathBoolean.TRUE;
+            }
+            
+            // Get collation from 3rd argument or use default
+            Collation collation;
+            if (args.size() > 2) {
+                String collUri = args.get(2).asString();
+                collation = Collation.forUri(collUri);
+            } else {
+                String defaultUri = context.getDefaultCollation();
+                collation = Collation.forUri(defaultUri != null ? defaultUri : Collation.CODEPOINT_URI);
+            }
+            
+            return XPathBoolean.of(collation.startsWith(str, prefix));
+        }
+    };
+
+    /**
+     * XPath 2.0 contains() function.
+     * 
+     * <p>Returns true if the first string contains the second string as a substring.
+     * XPath 2.0 adds optional collation parameter.
+     * 
+     * <p>Signature: contains(string?, string?, string?) → boolean
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-contains">XPath 2.0 contains()</a>
+     */
+    public static final Function CONTAINS = new Function() {
+        @Override public String getName() { return "contains"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            String substr = args.get(1).asString();
+            
+            // Empty substring always returns true
+            if (substr.isEmpty()) {
+                return XPathBoolean.TRUE;
+            }
+            
+            // Get collation from 3rd argument or use default
+            Collation collation;
+            if (args.size() > 2) {
+                String collUri = args.get(2).asString();
+                collation = Collation.forUri(collUri);
+            } else {
+                String defaultUri = context.getDefaultCollation();
+                collation = Collation.forUri(defaultUri != null ? defaultUri : Collation.CODEPOINT_URI);
+            }
+            
+            return XPathBoolean.of(collation.contains(str, substr));
+        }
+    };
+
+    /**
+     * XPath 1.0 substring-before() function.
+     * 
+     * <p>Returns the substring of the first argument that precedes the first occurrence
+     * of the second argument, or empty string if not found.
+     * 
+     * <p>Signature: substring-before(string, string) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath/#function-substring-before">XPath 1.0 substring-before()</a>
+     */
+    public static final Function SUBSTRING_BEFORE = new Function() {
+        @Override public String getName() { return "substring-before"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            String substr = args.get(1).asString();
+
+            if (args.size() > 2 || context.getDefaultCollation() != null) {
+                Collation collation;
+                if (args.size() > 2) {
+                    String collUri = args.get(2).asString();
+                    collation = Collation.forUri(collUri);
+                } else {
+                    String defaultUri = context.getDefaultCollation();
+                    collation = Collation.forUri(defaultUri != null ? defaultUri : Collation.CODEPOINT_URI);
+                }
+                return XPathString.of(collation.substringBefore(str, substr));
+            }
+
+            int index = str.indexOf(substr);
+            if (index < 0) {
+                return XPathString.EMPTY;
+            }
+            return XPathString.of(str.substring(0, index));
+        }
+    };
+
+    /**
+     * XPath 1.0 substring-after() function.
+     * 
+     * <p>Returns the substring of the first argument that follows the first occurrence
+     * of the second argument, or empty string if not found.
+     * 
+     * <p>Signature: substring-after(string, string) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath/#function-substring-after">XPath 1.0 substring-after()</a>
+     */
+    public static final Function SUBSTRING_AFTER = new Function() {
+        @Override public String getName() { return "substring-after"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            String substr = args.get(1).asString();
+
+            if (args.size() > 2 || context.getDefaultCollation() != null) {
+                Collation collation;
+                if (args.size() > 2) {
+                    String collUri = args.get(2).asString();
+                    collation = Collation.forUri(collUri);
+                } else {
+                    String defaultUri = context.getDefaultCollation();
+                    collation = Collation.forUri(defaultUri != null ? defaultUri : Collation.CODEPOINT_URI);
+                }
+                return XPathString.of(collation.substringAfter(str, substr));
+            }
+
+            int index = str.indexOf(substr);
+            if (index < 0) {
+                return XPathString.EMPTY;
+            }
+            return XPathString.of(str.substring(index + substr.length()));
+        }
+    };
+
+    /**
+     * XPath 1.0 substring() function.
+     * 
+     * <p>Returns the substring of the first argument starting at the position specified
+     * by the second argument, with optional length specified by the third argument.
+     * Positions are 1-based. If length is omitted, returns to end of string.
+     * 
+     * <p>Signature: substring(string, number, number?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath/#function-substring">XPath 1.0 substring()</a>
+     */
+    public static final Function SUBSTRING = new Function() {
+        @Override public String getName() { return "substring"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) {
+            String str = args.get(0).asString();
+            double startPos = args.get(1).asNumber();
+            
+            if (Double.isNaN(startPos)) {
+                return XPathString.EMPTY;
+            }
+            
+            // XPath spec for substring(string, startPos, length?):
+            // Returns characters at position P where:
+            //   P >= round(startPos) AND P < round(startPos) + round(length)
+            // Positions are 1-based, counting Unicode code points (not UTF-16 units).
+            // Note: Must compute end position in floating point before rounding,
+            // because -Infinity + Infinity = NaN per IEEE 754
+            
+            int cpLen = str.codePointCount(0, str.length());
+            
+            double roundedStart = Math.round(startPos);
+            double roundedEnd;
+            
+            if (args.size() > 2) {
+                double length = args.get(2).asNumber();
+                double roundedLength = Math.round(length);
+                roundedEnd = roundedStart + roundedLength;
+            } else {
+                roundedEnd = Double.POSITIVE_INFINITY;
+            }
+            
+            if (Double.isNaN(roundedStart) || Double.isNaN(roundedEnd)) {
+                return XPathString.EMPTY;
+            }
+            
+            if (roundedEnd == Double.NEGATIVE_INFINITY || 
+                roundedStart == Double.POSITIVE_INFINITY) {
+                return XPathString.EMPTY;
+            }
+            
+            // Code-point-based positions (1-based)
+            long firstPos = (roundedStart == Double.NEGATIVE_INFINITY) ? 1 : 
+                Math.max((long) roundedStart, 1);
+            long lastPosExcl = (roundedEnd == Double.POSITIVE_INFINITY) ? 
+                cpLen + 1 : Math.min((long) roundedEnd, cpLen + 1);
+            
+            int cpStart = (int) (firstPos - 1);
+            int cpEnd = (int) (lastPosExcl - 1);
+            
+            if (cpStart >= cpLen || cpEnd <= cpStart) {
+                return XPathString.EMPTY;
+            }
+            
+            // Convert code point offsets to UTF-16 char offsets
+            int charStart = str.offsetByCodePoints(0, cpStart);
+            int charEnd = str.offsetByCodePoints(charStart, cpEnd - cpStart);
+            
+            return XPathString.of(str.substring(charStart, charEnd));
+        }
+    };
+
+    /**
+     * XPath 1.0 string-length() function.
+     * 
+     * <p>Returns the number of characters in the string (or context node if no argument).
+     * 
+     * <p>Signature: string-length(string?) → number
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath/#function-string-length">XPath 1.0 string-length()</a>
+     */
+    public static final Function STRING_LENGTH = new Function() {
+        @Override public String getName() { return "string-length"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) {
+            String str;
+            if (args.isEmpty()) {
+                str = context.getContextNode().getStringValue();
+            } else {
+                str = args.get(0).asString();
+            }
+            return XPathNumber.of(str.codePointCount(0, str.length()));
+        }
+    };
+
+    /**
+     * XPath 1.0 normalize-space() function.
+     * 
+     * <p>Strips leading and trailing whitespace, and collapses sequences of whitespace
+     * characters to single spaces.
+     * 
+     * <p>Signature: normalize-space(string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath/#function-normalize-space">XPath 1.0 normalize-space()</a>
+     */
+    public static final Function NORMALIZE_SPACE = new Function() {
+        @Override public String getName() { return "normalize-space"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) {
+            String str;
+            if (args.isEmpty()) {
+                str = context.getContextNode().getStringValue();
+            } else {
+                str = args.get(0).asString();
+            }
+            // Normalize: strip leading/trailing, collapse internal whitespace (no regex)
+            String trimmed = str.trim();
+            StringBuilder result = new StringBuilder();
+            boolean lastWasWhitespace = false;
+            for (int i = 0; i < trimmed.length(); i++) {
+                char c = trimmed.charAt(i);
+                boolean isWhitespace = (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+                if (isWhitespace) {
+                    if (!lastWasWhitespace) {
+                        result.append(' ');
+                        lastWasWhitespace = true;
+                    }
+                } else {
+                    result.append(c);
+                    lastWasWhitespace = false;
+                }
+            }
+            return XPathString.of(result.toString());
+        }
+    };
+
+    /**
+     * XPath 1.0 translate() function.
+     * 
+     * <p>Replaces characters in the first string: each character found in the second string
+     * is replaced by the corresponding character in the third string. Characters in the first
+     * string that appear in the second but have no corresponding character in the third
+     * (because the third string is shorter) are removed.
+     * 
+     * <p>Signature: translate(string, string, string) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath/#function-translate">XPath 1.0 translate()</a>
+     */
+    public static final Function TRANSLATE = new Function() {
+        @Override public String getName() { return "translate"; }
+        @Override public int getMinArgs() { return 3; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) {
+            String str = args.get(0).asString();
+            String from = args.get(1).asString();
+            String to = args.get(2).asString();
+            
+            StringBuilder result = new StringBuilder(str.length());
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                int index = from.indexOf(c);
+                if (index < 0) {
+                    // Character not in 'from' - keep it
+                    result.append(c);
+                } else if (index < to.length()) {
+                    // Replace with corresponding character in 'to'
+                    result.append(to.charAt(index));
+                }
+                // If index >= to.length(), character is removed
+            }
+            
+            return XPathString.of(result.toString());
+        }
+    };
+
+    /**
+     * XPath 2.0 data() function.
+     * 
+     * <p>Atomizes the argument, returning the typed value of nodes. For sequences,
+     * returns a sequence of atomized values. If a node has a type annotation,
+     * the result is a typed atomic value that can be checked with {@code instance of}.
+     * 
+     * <p>Signature: data(item()*) → atomic*
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-data">XPath 2.0 data()</a>
+     */
+    public static final Function DATA = new Function() {
+        @Override public String getName() { return "data"; }
+        @Override public int getMinArgs() { return 0; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context)
+                throws XPathException {
+            if (args.isEmpty()) {
+                XPathNode node = context.getContextNode();
+                return atomizeNode(node);
+            }
+            XPathValue arg = args.get(0);
+            if (isFunctionItem(arg)) {
+                throw new XPathException("FOTY0013: Cannot atomize a function item");
+            }
+            
+            // If it's already a sequence, atomize each item
+            if (arg.isSequence()) {
+                XPathSequence seq = (XPathSequence) arg;
+                if (seq.isEmpty()) {
+                    return XPathSequence.EMPTY;
+                }
+                if (seq.size() == 1) {
+                    return atomize(seq.get(0));
+                }
+                List<XPathValue> atomized = new ArrayList<>(seq.size());
+                for (XPathValue item : seq) {
+                    atomized.add(atomize(item));
+                }
+                return new XPathSequence(atomized);
+            }
+            
+            // Single value - atomize it
+            return atomize(arg);
+        }
+        
+        private XPathValue atomize(XPathValue value) {
+            if (value == null) {
+                return XPathSequence.EMPTY;
+            }
+            if (value.isNodeSet()) {
+                XPathNodeSet nodeSet = value.asNodeSet();
+                if (nodeSet.isEmpty()) {
+                    return XPathSequence.EMPTY;
+                }
+                // Return first node's typed value for single node
+                if (nodeSet.size() == 1) {
+                    return atomizeNode(nodeSet.iterator().next());
+                }
+                // For multiple nodes, return sequence of typed values
+                List<XPathValue> values = new ArrayList<>(nodeSet.size());
+                for (XPathNode node : nodeSet) {
+                    values.add(atomizeNode(node));
+                }
+                return new XPathSequence(values);
+            }
+            // Already an atomic value - return as-is
+            if (value instanceof XPathTypedAtomic || value instanceof XPathNumber ||
+                value instanceof XPathBoolean || value instanceof XPathDateTime) {
+                return value;
+            }
+            // String/atomic value - return as string
+            return XPathString.of(value.asString());
+        }
+        
+        /**
+         * Atomizes a single node, returning a typed value if the node has a type annotation.
+         */
+        private XPathValue atomizeNode(XPathNode node) {
+            String stringValue = node.getStringValue();
+            String typeNs = node.getTypeNamespaceURI();
+            String typeLocal = node.getTypeLocalName();
+            
+            // If node has a type annotation, return a typed atomic value
+            if (typeLocal != null) {
+                return XPathTypedAtomic.fromNode(stringValue, typeNs, typeLocal);
+            }
+            
+            // Per XPath 2.0 data model: comment, PI, and namespace nodes
+            // have typed value xs:string; all other untyped nodes yield xs:untypedAtomic
+            NodeType nodeType = node.getNodeType();
+            if (nodeType == NodeType.COMMENT || 
+                nodeType == NodeType.PROCESSING_INSTRUCTION ||
+                nodeType == NodeType.NAMESPACE) {
+                return XPathString.of(stringValue);
+            }
+            return XPathUntypedAtomic.ofUntyped(stringValue);
+        }
+    };
+
+    // ========== XPath 2.0/3.0 String Functions ==========
+
+    /**
+     * XPath 2.0 string-join() function.
+     * 
+     * <p>Concatenates the string values of items in a sequence, separated by a separator string.
+     * 
+     * <p>Signature: string-join(item()*, string) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-string-join">XPath 2.0 string-join()</a>
+     */
+    public static final Function STRING_JOIN = new Function() {
+        @Override public String getName() { return "string-join"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue seq = args.get(0);
+            String separator = args.size() > 1 ? args.get(1).asString() : "";
+            
+            List<String> strings = toStringList(seq);
+            return XPathString.of(String.join(separator, strings));
+        }
+    };
+
+    /**
+     * XPath 2.0 upper-case() function.
+     * 
+     * <p>Converts a string to upper case.
+     * 
+     * <p>Signature: upper-case(string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-upper-case">XPath 2.0 upper-case()</a>
+     */
+    public static final Function UPPER_CASE = new Function() {
+        @Override public String getName() { return "upper-case"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            return XPathString.of(str.toUpperCase());
+        }
+    };
+
+    /**
+     * XPath 2.0 lower-case() function.
+     * 
+     * <p>Converts a string to lower case.
+     * 
+     * <p>Signature: lower-case(string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-lower-case">XPath 2.0 lower-case()</a>
+     */
+    public static final Function LOWER_CASE = new Function() {
+        @Override public String getName() { return "lower-case"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            return XPathString.of(str.toLowerCase());
+        }
+    };
+
+    /**
+     * XPath 2.0 ends-with() function.
+     * 
+     * <p>Returns true if the first string ends with the second string.
+     * 
+     * <p>Signature: ends-with(string?, string?, string?) → boolean
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-ends-with">XPath 2.0 ends-with()</a>
+     */
+    public static final Function ENDS_WITH = new Function() {
+        @Override public String getName() { return "ends-with"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            String suffix = args.get(1).asString();
+            
+            // Empty suffix always returns true
+            if (suffix.isEmpty()) {
+                return XPathBoolean.TRUE;
+            }
+            
+            // Get collation from 3rd argument or use default
+            Collation collation;
+            if (args.size() > 2) {
+                String collUri = args.get(2).asString();
+                collation = Collation.forUri(collUri);
+            } else {
+                String defaultUri = context.getDefaultCollation();
+                collation = Collation.forUri(defaultUri != null ? defaultUri : Collation.CODEPOINT_URI);
+            }
+            
+            return XPathBoolean.of(collation.endsWith(str, suffix));
+        }
+    };
+
+    /**
+     * XPath 2.0 matches() function.
+     * 
+     * <p>Returns true if the input string matches the regular expression pattern.
+     * Optional flags control matching behavior (i=case-insensitive, m=multiline, s=dotall, x=comments).
+     * 
+     * <p>Signature: matches(string?, string, string?) → boolean
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-matches">XPath 2.0 matches()</a>
+     */
+    public static final Function MATCHES = new Function() {
+        @Override public String getName() { return "matches"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String input = args.get(0).asString();
+            String pattern = args.get(1).asString();
+            String flags = args.size() > 2 ? args.get(2).asString() : "";
+            
+            try {
+                int javaFlags = parseRegexFlags(flags);
+                Pattern p = getCachedPattern(pattern, javaFlags);
+                return XPathBoolean.of(p.matcher(input).find());
+            } catch (PatternSyntaxException e) {
+                throw new XPathException("Invalid regular expression: " + pattern, e);
+            }
+        }
+    };
+
+    /**
+     * XPath 2.0 replace() function.
+     * 
+     * <p>Replaces substrings that match a regular expression pattern with a replacement string.
+     * The replacement string can contain $1, $2, etc. to refer to captured groups.
+     * 
+     * <p>Signature: replace(string?, string, string, string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-replace">XPath 2.0 replace()</a>
+     */
+    public static final Function REPLACE = new Function() {
+        @Override public String getName() { return "replace"; }
+        @Override public int getMinArgs() { return 3; }
+        @Override public int getMaxArgs() { return 4; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String input = args.get(0).asString();
+            String pattern = args.get(1).asString();
+            String replacement = args.get(2).asString();
+            String flags = args.size() > 3 ? args.get(3).asString() : "";
+            
+            try {
+                int javaFlags = parseRegexFlags(flags);
+                Pattern p = getCachedPattern(pattern, javaFlags);
+                // XPath uses $1, $2 for groups but Java also uses that, so should be compatible
+                return XPathString.of(p.matcher(input).replaceAll(replacement));
+            } catch (PatternSyntaxException e) {
+                throw new XPathException("Invalid regular expression: " + pattern, e);
+            }
+        }
+    };
+
+    /**
+     * XPath 2.0 tokenize() function.
+     * 
+     * <p>Splits a string into a sequence of tokens by matching against a regular expression pattern.
+     * If no pattern is provided, splits on whitespace.
+     * 
+     * <p>Signature: tokenize(string?, string?, string?) → string*
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-tokenize">XPath 2.0 tokenize()</a>
+     */
+    public static final Function TOKENIZE = new Function() {
+        @Override public String getName() { return "tokenize"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String input = args.get(0).asString();
+            
+            // XPath 3.1: tokenize with 1 argument splits on whitespace
+            if (args.size() == 1) {
+                String[] tokens = input.trim().split("\\s+");
+                List<XPathValue> result = new ArrayList<>();
+                for (String token : tokens) {
+                    if (!token.isEmpty()) {
+                        result.add(XPathString.of(token));
+                    }
+                }
+                return result.isEmpty() ? XPathSequence.EMPTY : new XPathSequence(result);
+            }
+            
+            String pattern = args.get(1).asString();
+            String flags = args.size() > 2 ? args.get(2).asString() : "";
+            
+            try {
+                int javaFlags = parseRegexFlags(flags);
+                Pattern p = getCachedPattern(pattern, javaFlags);
+                String[] tokens = p.split(input, -1);  // -1 to keep trailing empty strings
+                
+                List<XPathValue> result = new ArrayList<>();
+                for (String token : tokens) {
+                    result.add(XPathString.of(token));
+                }
+                return result.isEmpty() ? XPathSequence.EMPTY : new XPathSequence(result);
+            } catch (PatternSyntaxException e) {
+                throw new XPathException("Invalid regular expression: " + pattern, e);
+            }
+        }
+    };
+
+    /**
+     * XPath 2.0 compare() function.
+     * 
+     * <p>Compares two strings and returns -1, 0, or 1 if the first is less than, equal to,
+     * or greater than the second. Returns empty sequence if either argument is empty.
+     * 
+     * <p>Signature: compare(string?, string?, string?) → integer?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-compare">XPath 2.0 compare()</a>
+     */
+    public static final Function COMPARE = new Function() {
+        @Override public String getName() { return "compare"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 3; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg1 = args.get(0);
+            XPathValue arg2 = args.get(1);
+            
+            // Handle empty sequence
+            if (isEmpty(arg1) || isEmpty(arg2)) {
+                return XPathSequence.EMPTY;
+            }
+            
+            String str1 = arg1.asString();
+            String str2 = arg2.asString();
+            
+            // Get collation from 3rd argument or use default
+            Collation collation;
+            if (args.size() > 2) {
+                String collUri = args.get(2).asString();
+                collation = Collation.forUri(collUri);
+            } else {
+                String defaultUri = context.getDefaultCollation();
+                collation = Collation.forUri(defaultUri != null ? defaultUri : Collation.CODEPOINT_URI);
+            }
+            
+            int cmp = collation.compare(str1, str2);
+            if (cmp < 0) {
+                return XPathNumber.of(-1);
+            }
+            if (cmp > 0) {
+                return XPathNumber.of(1);
+            }
+            return XPathNumber.of(0);
+        }
+    };
+
+    /**
+     * XPath 2.0 codepoints-to-string() function.
+     * 
+     * <p>Converts a sequence of Unicode codepoints to a string.
+     * 
+     * <p>Signature: codepoints-to-string(integer*) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-codepoints-to-string">XPath 2.0 codepoints-to-string()</a>
+     */
+    public static final Function CODEPOINTS_TO_STRING = new Function() {
+        @Override public String getName() { return "codepoints-to-string"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            List<Integer> codepoints = toIntList(args.get(0));
+            StringBuilder sb = new StringBuilder();
+            for (int cp : codepoints) {
+                if (cp < 0 || cp > 0x10FFFF ||
+                    (cp >= 0xD800 && cp <= 0xDFFF)) {
+                    throw new XPathException("FOCH0001: Invalid XML " +
+                        "character: codepoint " + cp +
+                        " (0x" + Integer.toHexString(cp) + ")");
+                }
+                sb.appendCodePoint(cp);
+            }
+            return XPathString.of(sb.toString());
+        }
+    };
+
+    /**
+     * XPath 2.0 string-to-codepoints() function.
+     * 
+     * <p>Converts a string to a sequence of Unicode codepoints.
+     * 
+     * <p>Signature: string-to-codepoints(string?) → integer*
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-string-to-codepoints">XPath 2.0 string-to-codepoints()</a>
+     */
+    public static final Function STRING_TO_CODEPOINTS = new Function() {
+        @Override public String getName() { return "string-to-codepoints"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            if (str.isEmpty()) {
+                return XPathSequence.EMPTY;
+            }
+            
+            List<XPathValue> result = new ArrayList<>();
+            for (int i = 0; i < str.length(); ) {
+                int cp = str.codePointAt(i);
+                result.add(XPathNumber.of(cp));
+                i += Character.charCount(cp);
+            }
+            return new XPathSequence(result);
+        }
+    };
+
+    /**
+     * XPath 2.0 encode-for-uri() function.
+     * 
+     * <p>Percent-encodes a string for use as a URI component.
+     * 
+     * <p>Signature: encode-for-uri(string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-encode-for-uri">XPath 2.0 encode-for-uri()</a>
+     */
+    public static final Function ENCODE_FOR_URI = new Function() {
+        @Override public String getName() { return "encode-for-uri"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            try {
+                return XPathString.of(URLEncoder.encode(str, "UTF-8")
+                    .replace("+", "%20"));  // space should be %20, not +
+            } catch (UnsupportedEncodingException e) {
+                return XPathString.of(str);
+            }
+        }
+    };
+
+    /**
+     * XPath 2.0 iri-to-uri() function.
+     * 
+     * <p>Converts an IRI (Internationalized Resource Identifier) to a URI by percent-encoding
+     * non-ASCII characters.
+     * 
+     * <p>Signature: iri-to-uri(string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-iri-to-uri">XPath 2.0 iri-to-uri()</a>
+     */
+    public static final Function IRI_TO_URI = new Function() {
+        @Override public String getName() { return "iri-to-uri"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            // Simplified: just return as-is for now
+            return XPathString.of(args.get(0).asString());
+        }
+    };
+
+    /**
+     * XPath 2.0 escape-html-uri() function.
+     * 
+     * <p>Escapes non-ASCII characters in a string for use in HTML href attributes.
+     * 
+     * <p>Signature: escape-html-uri(string?) → string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath20/#function-escape-html-uri">XPath 2.0 escape-html-uri()</a>
+     */
+    public static final Function ESCAPE_HTML_URI = new Function() {
+        @Override public String getName() { return "escape-html-uri"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 1; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            String str = args.get(0).asString();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                if (c > 0x7F) {
+                    // Encode non-ASCII characters
+                    sb.append(String.format("%%%02X", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            return XPathString.of(sb.toString());
+        }
+    };
+
+    // ========== Helper methods ==========
+
+    private static int parseRegexFlags(String flags) {
+        int result = 0;
+        for (char c : flags.toCharArray()) {
+            switch (c) {
+                case 'i': result |= Pattern.CASE_INSENSITIVE; break;
+                case 'm': result |= Pattern.MULTILINE; break;
+                case 's': result |= Pattern.DOTALL; break;
+                case 'x': result |= Pattern.COMMENTS; break;
+                // 'q' for literal mode not directly supported in Java
+            }
+        }
+        return result;
+    }
+
+    private static boolean isEmpty(XPathValue value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof XPathSequence) {
+            return ((XPathSequence) value).isEmpty();
+        }
+        return false;
+    }
+
+    private static List<String> toStringList(XPathValue value) {
+        List<String> result = new ArrayList<>();
+        if (value == null) {
+            return result;
+        }
+        if (value instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) value;
+            for (XPathValue item : seq) {
+                addStringValues(item, result);
+            }
+        } else if (value instanceof XPathNodeSet) {
+            XPathNodeSet nodeSet = (XPathNodeSet) value;
+            for (XPathNode node : nodeSet) {
+                // Atomize node - for list types, this produces multiple values
+                XPathValue atomized = atomizeNodeForStringList(node);
+                addStringValues(atomized, result);
+            }
+        } else if (value instanceof XPathNode) {
+            // Direct node (e.g., SequenceAttributeItem)
+            XPathNode node = (XPathNode) value;
+            XPathValue atomized = atomizeNodeForStringList(node);
+            addStringValues(atomized, result);
+        } else {
+            addStringValues(value, result);
+        }
+        return result;
+    }
+    
+    private static void addStringValues(XPathValue value, List<String> result) {
+        if (value instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) value;
+            for (XPathValue item : seq) {
+                result.add(item.asString());
+            }
+        } else {
+            result.add(value.asString());
+        }
+    }
+    
+    private static XPathValue atomizeNodeForStringList(XPathNode node) {
+        String typeNs = node.getTypeNamespaceURI();
+        String typeLocal = node.getTypeLocalName();
+        String stringValue = node.getStringValue();
+        
+        // For list types, atomize to sequence
+        if (typeLocal != null) {
+            return XPathTypedAtomic.fromNode(stringValue, typeNs, typeLocal);
+        }
+        // Per XPath 2.0+, atomization of untyped nodes yields xs:untypedAtomic
+        return XPathUntypedAtomic.ofUntyped(stringValue);
+    }
+
+    private static List<Integer> toIntList(XPathValue value) {
+        List<Integer> result = new ArrayList<>();
+        if (value == null) {
+            return result;
+        }
+        if (value instanceof XPathSequence) {
+            XPathSequence seq = (XPathSequence) value;
+            for (XPathValue item : seq) {
+                result.add((int) item.asNumber());
+            }
+        } else if (value instanceof XPathNodeSet) {
+            XPathNodeSet nodeSet = (XPathNodeSet) value;
+            for (XPathNode node : nodeSet) {
+                try {
+                    result.add(Integer.parseInt(node.getStringValue().trim()));
+                } catch (NumberFormatException e) {
+                    // Skip invalid numbers
+                }
+            }
+        } else {
+            result.add((int) value.asNumber());
+        }
+        return result;
+    }
+
+    /**
+     * XPath 3.1 serialize() function.
+     * 
+     * <p>Serializes an XDM value to a string (XML representation).
+     * 
+     * <p>Signature: serialize($arg as item()?) → xs:string
+     * <p>Signature: serialize($arg as item()?, $params as item()?) → xs:string
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions-31/#func-serialize">XPath 3.1 serialize()</a>
+     */
+    public static final Function SERIALIZE = new Function() {
+        @Override public String getName() { return "serialize"; }
+        @Override public int getMinArgs() { return 1; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg = args.get(0);
+            
+            if (arg == null) {
+                return XPathString.of("");
+            }
+
+            String method = extractSerializationMethod(args);
+            
+            if ("json".equals(method) || "adaptive".equals(method)) {
+                return serializeJson(arg);
+            }
+            
+            return serializeXml(arg);
+        }
+
+        private String extractSerializationMethod(List<XPathValue> args) {
+            if (args.size() < 2) {
+                return null;
+            }
+            XPathValue params = args.get(1);
+            if (params instanceof XPathMap) {
+                XPathMap paramsMap = (XPathMap) params;
+                XPathValue methodVal = paramsMap.get("method");
+                if (methodVal != null) {
+                    return methodVal.asString();
+                }
+            }
+            return null;
+        }
+
+        private XPathValue serializeJson(XPathValue arg) throws XPathException {
+            try {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                JSONWriter writer = new JSONWriter(baos);
+                serializeJsonValue(arg, writer);
+                writer.close();
+                return XPathString.of(baos.toString("UTF-8"));
+            } catch (Exception e) {
+                throw new XPathException("Error serializing value as JSON: " + e.getMessage());
+            }
+        }
+
+        private void serializeJsonValue(XPathValue value, JSONWriter writer)
+                throws IOException, XPathException {
+            if (value instanceof XPathMap) {
+                XPathMap map = (XPathMap) value;
+                writer.writeStartObject();
+                for (Map.Entry<String, XPathValue> entry : map.entries()) {
+                    writer.writeKey(entry.getKey());
+                    serializeJsonValue(entry.getValue(), writer);
+                }
+                writer.writeEndObject();
+            } else if (value instanceof XPathArray) {
+                XPathArray array = (XPathArray) value;
+                writer.writeStartArray();
+                for (XPathValue member : array.members()) {
+                    serializeJsonValue(member, writer);
+                }
+                writer.writeEndArray();
+            } else if (value instanceof XPathBoolean) {
+                writer.writeBoolean(value.asBoolean());
+            } else if (value instanceof XPathNumber) {
+                double d = value.asNumber();
+                long longVal = (long) d;
+                if (d == longVal && !Double.isInfinite(d)) {
+                    writer.writeNumber(longVal);
+                } else {
+                    writer.writeNumber(d);
+                }
+            } else if (value instanceof XPathNodeSet) {
+                XPathNodeSet ns = (XPathNodeSet) value;
+                if (ns.isEmpty()) {
+                    writer.writeNull();
+                } else {
+                    writer.writeString(value.asString());
+                }
+            } else if (value instanceof XPathSequence) {
+                XPathSequence seq = (XPathSequence) value;
+                writer.writeStartArray();
+                for (XPathValue item : seq) {
+                    serializeJsonValue(item, writer);
+                }
+                writer.writeEndArray();
+            } else {
+                writer.writeString(value.asString());
+            }
+        }
+
+        private XPathValue serializeXml(XPathValue arg) throws XPathException {
+            try {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                OutputProperties props = new OutputProperties();
+                props.setOmitXmlDeclaration(true);
+                OutputHandler output = new XMLWriterOutputHandler(baos, props);
+                
+                serializeXmlValue(arg, output);
+                
+                output.endDocument();
+                return XPathString.of(baos.toString("UTF-8"));
+            } catch (Exception e) {
+                throw new XPathException("Error serializing value: " + e.getMessage());
+            }
+        }
+        
+        private void serializeXmlValue(XPathValue value, OutputHandler output) throws Exception {
+            if (value instanceof XPathNodeSet) {
+                XPathNodeSet nodeSet = (XPathNodeSet) value;
+                for (XPathNode node : nodeSet) {
+                    serializeNode(node, output);
+                }
+            } else if (value instanceof XPathNode) {
+                serializeNode((XPathNode) value, output);
+            } else if (value instanceof XPathSequence) {
+                XPathSequence seq = (XPathSequence) value;
+                boolean first = true;
+                for (XPathValue item : seq) {
+                    if (!first) {
+                        output.characters(" ");
+                    }
+                    first = false;
+                    serializeXmlValue(item, output);
+                }
+            } else {
+                // Atomic value - output as text
+                output.characters(value.asString());
+            }
+        }
+        
+        private void serializeNode(XPathNode node, OutputHandler output) throws Exception {
+            NodeType nodeType = node.getNodeType();
+            
+            if (nodeType == NodeType.ELEMENT) {
+                String uri = node.getNamespaceURI();
+                String effectiveUri = OutputHandlerUtils.effectiveUri(uri);
+                String local = node.getLocalName();
+                String prefix = node.getPrefix();
+                String qName = (prefix != null && !prefix.isEmpty()) ? prefix + ":" + local : local;
+                
+                output.startElement(effectiveUri, local, qName);
+                
+                // Serialize namespace declarations first
+                Iterator<XPathNode> nsIter = node.getNamespaces();
+                if (nsIter != null) {
+                    while (nsIter.hasNext()) {
+                        XPathNode ns = nsIter.next();
+                        String nsPrefix = ns.getLocalName();
+                        String nsUri = ns.getStringValue();
+                        output.namespace(nsPrefix != null ? nsPrefix : "", nsUri);
+                    }
+                }
+                
+                // Serialize attributes
+                Iterator<XPathNode> attrIter = node.getAttributes();
+                if (attrIter != null) {
+                    while (attrIter.hasNext()) {
+                        XPathNode attr = attrIter.next();
+                        String attrPrefix = attr.getPrefix();
+                        String attrLocal = attr.getLocalName();
+                        String attrQName = (attrPrefix != null && !attrPrefix.isEmpty()) ? 
+                            attrPrefix + ":" + attrLocal : attrLocal;
+                        String attrUri = OutputHandlerUtils.effectiveUri(attr.getNamespaceURI());
+                        output.attribute(attrUri, attrLocal, attrQName, attr.getStringValue());
+                    }
+                }
+                
+                // Serialize children
+                Iterator<XPathNode> children = node.getChildren();
+                if (children != null) {
+                    while (children.hasNext()) {
+                        serializeNode(children.next(), output);
+                    }
+                }
+                
+                output.endElement(effectiveUri, local, qName);
+            } else if (nodeType == NodeType.TEXT) {
+                String text = node.getStringValue();
+                if (text != null) {
+                    output.characters(text);
+                }
+            } else if (nodeType == NodeType.COMMENT) {
+                output.comment(node.getStringValue());
+            } else if (nodeType == NodeType.PROCESSING_INSTRUCTION) {
+                output.processingInstruction(node.getLocalName(), node.getStringValue());
+            } else if (nodeType == NodeType.ROOT) {
+                // Serialize document children
+                Iterator<XPathNode> docChildren = node.getChildren();
+                if (docChildren != null) {
+                    while (docChildren.hasNext()) {
+                        serializeNode(docChildren.next(), output);
+                    }
+                }
+            } else if (nodeType == NodeType.ATTRIBUTE) {
+                // Standalone attribute - output as text
+                output.characters(node.getStringValue());
+            }
+        }
+    };
+
+    /**
+     * XPath 2.0 codepoint-equal() function.
+     * 
+     * <p>Compares two strings using Unicode codepoint collation.
+     * Returns empty sequence if either argument is empty.
+     * 
+     * <p>Signature: codepoint-equal($comparand1 as xs:string?, $comparand2 as xs:string?) → xs:boolean?
+     * 
+     * @see <a href="https://www.w3.org/TR/xpath-functions/#func-codepoint-equal">XPath codepoint-equal()</a>
+     */
+    public static final Function CODEPOINT_EQUAL = new Function() {
+        @Override public String getName() { return "codepoint-equal"; }
+        @Override public int getMinArgs() { return 2; }
+        @Override public int getMaxArgs() { return 2; }
+
+        @Override
+        public XPathValue evaluate(List<XPathValue> args, XPathContext context) throws XPathException {
+            XPathValue arg1 = args.get(0);
+            XPathValue arg2 = args.get(1);
+            
+            // If either argument is empty sequence, return empty sequence
+            if (arg1 == null || (arg1 instanceof XPathSequence && ((XPathSequence)arg1).isEmpty())) {
+                return XPathSequence.EMPTY;
+            }
+            if (arg2 == null || (arg2 instanceof XPathSequence && ((XPathSequence)arg2).isEmpty())) {
+                return XPathSequence.EMPTY;
+            }
+            
+            String s1 = arg1.asString();
+            String s2 = arg2.asString();
+            
+            // Compare using codepoint (natural String.equals)
+            return XPathBoolean.of(s1.equals(s2));
+        }
+    };
+
+    /**
+     * Returns all string functions (XPath 1.0 and 2.0/3.0).
+     *
+     * @return array of all string function implementations
+     */
+    public static Function[] getAll() {
+        SequenceType S = SequenceType.STRING;
+        SequenceType SQ = SequenceType.STRING_Q;
+        SequenceType SS = SequenceType.STRING_STAR;
+        SequenceType B = SequenceType.BOOLEAN;
+        SequenceType BQ = SequenceType.BOOLEAN_Q;
+        SequenceType I = SequenceType.INTEGER;
+        SequenceType ISTAR = SequenceType.INTEGER_STAR;
+        SequenceType IQ = SequenceType.INTEGER_Q;
+        SequenceType D = SequenceType.DOUBLE;
+        SequenceType IS = SequenceType.ITEM_STAR;
+        SequenceType AAS = SequenceType.ANY_ATOMIC_STAR;
+        return new Function[] {
+            typed(STRING,              S, IS),
+            typed(CONCAT,              S, AAS, AAS),
+            typed(STARTS_WITH,         B, S, S, S),
+            typed(CONTAINS,            B, S, S, S),
+            typed(SUBSTRING_BEFORE,    S, S, S, S),
+            typed(SUBSTRING_AFTER,     S, S, S, S),
+            typed(SUBSTRING,           S, S, D, D),
+            typed(STRING_LENGTH,       I, SQ),
+            typed(NORMALIZE_SPACE,     S, SQ),
+            typed(TRANSLATE,           S, S, S, S),
+            typed(DATA,                AAS, IS),
+            typed(STRING_JOIN,         S, SS, S),
+            typed(UPPER_CASE,          S, S),
+            typed(LOWER_CASE,          S, S),
+            typed(ENDS_WITH,           B, S, S, S),
+            typed(MATCHES,             B, SQ, S, S),
+            typed(REPLACE,             S, SQ, S, S, S),
+            typed(TOKENIZE,            SS, SQ, S, S),
+            typed(COMPARE,             IQ, SQ, SQ, S),
+            typed(CODEPOINTS_TO_STRING, S, ISTAR),
+            typed(STRING_TO_CODEPOINTS, ISTAR, S),
+            typed(ENCODE_FOR_URI,      S, S),
+            typed(IRI_TO_URI,          S, S),
+            typed(ESCAPE_HTML_URI,     S, S),
+            typed(SERIALIZE,           S, IS, IS),
+            typed(CODEPOINT_EQUAL,     BQ, SQ, SQ),
+        };
+    }
+
+}
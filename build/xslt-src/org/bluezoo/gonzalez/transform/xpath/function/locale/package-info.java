@@ -0,0 +1,14 @@
+/**
+ * Localization support for XPath date/time formatting functions.
+ * 
+ * <p>This package provides locale-specific formatting for:
+ * <ul>
+ *   <li>Month and day names (full and abbreviated)</li>
+ *   <li>Number words (cardinal and ordinal)</li>
+ *   <li>AM/PM markers and era names</li>
+ *   <li>Ordinal suffixes</li>
+ * </ul>
+ * 
+ * <p>Supported locales: English (default), British English, French, German, Spanish, Italian.
+ */
+package org.bluezoo.gonzalez.transform.xpath.function.locale;
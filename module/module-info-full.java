@@ -15,6 +15,8 @@ module org.bluezoo.gonzalez {
     exports org.bluezoo.gonzalez.schema.xsd;
     exports org.bluezoo.gonzalez.transform;
 
+    uses org.bluezoo.gonzalez.Metrics;
+
     provides javax.xml.parsers.SAXParserFactory
         with org.bluezoo.gonzalez.GonzalezSAXParserFactory;
     provides javax.xml.transform.TransformerFactory
@@ -16,6 +16,8 @@ module org.bluezoo.gonzalez {
     requires java.xml;
     exports org.bluezoo.gonzalez;
 
+    uses org.bluezoo.gonzalez.Metrics;
+
     provides javax.xml.parsers.SAXParserFactory
         with org.bluezoo.gonzalez.GonzalezSAXParserFactory;
 }
@@ -0,0 +1,85 @@
+/*
+ * AttributeValues.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import org.xml.sax.Attributes;
+
+/**
+ * Reads attribute values without creating Strings.
+ *
+ * <p>The {@link Attributes} a Gonzalez {@link Parser} passes to {@code
+ * startElement} hold their values as characters; a String is only made
+ * when {@link Attributes#getValue(int)} (or another {@code getValue}) is
+ * first called for an attribute. A handler that only needs to inspect,
+ * compare or copy a value can use this interface instead and avoid that
+ * allocation altogether:
+ * <pre>
+ * public void startElement(String uri, String localName, String qName, Attributes atts) {
+ *     if (atts instanceof AttributeValues) {
+ *         AttributeValues values = (AttributeValues) atts;
+ *         int len = values.getValue(0, buf, 0);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * <p><b>Important:</b> like the {@link Attributes} object itself, the
+ * character sequences returned here are only valid during the {@code
+ * startElement} call; they are overwritten by the next element's
+ * attributes. Use {@link Attributes#getValue(int)} to keep a value.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public interface AttributeValues extends Attributes {
+
+    /**
+     * Returns the number of characters in an attribute value.
+     *
+     * @param index the attribute index (zero-based)
+     * @return the length of the value, or -1 if the index is out of range
+     */
+    int getValueLength(int index);
+
+    /**
+     * Returns an attribute value as a character sequence over the parser's
+     * own buffer. The sequence is valid only during the current {@code
+     * startElement} call.
+     *
+     * @param index the attribute index (zero-based)
+     * @return the value, or null if the index is out of range
+     */
+    CharSequence getValueCharacters(int index);
+
+    /**
+     * Copies an attribute value into a caller-supplied buffer.
+     *
+     * @param index the attribute index (zero-based)
+     * @param buf the buffer to copy the characters into
+     * @param offset the index in {@code buf} of the first character
+     * @return the number of characters copied, or -1 if the index is out
+     *         of range
+     * @throws IndexOutOfBoundsException if {@code buf} has fewer than
+     *         {@link #getValueLength(int)} characters from {@code offset}
+     */
+    int getValue(int index, char[] buf, int offset);
+
+}
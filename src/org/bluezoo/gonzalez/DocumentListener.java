@@ -0,0 +1,59 @@
+/*
+ * DocumentListener.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Told of each document completed in a stream of concatenated documents.
+ *
+ * <p>With the {@code http://www.nongnu.org/gonzalez/features/multiple-documents}
+ * feature on, a {@link Parser} reads documents one after another from the
+ * same input - a log of XML records, or messages on a socket - reporting
+ * each with its own {@code startDocument} and {@code endDocument}. Set a
+ * listener with the {@code
+ * http://www.nongnu.org/gonzalez/properties/document-listener} property to
+ * be told when each one is complete:
+ * <pre>
+ * parser.setFeature("http://www.nongnu.org/gonzalez/features/multiple-documents", true);
+ * parser.setProperty("http://www.nongnu.org/gonzalez/properties/document-listener",
+ *     new DocumentListener() {
+ *         public void documentEnded(int index) {
+ *             queue.add(builder.take());
+ *         }
+ *     });
+ * </pre>
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public interface DocumentListener {
+
+    /**
+     * Called after the {@code endDocument} event of each document in the
+     * stream, before anything of the next is reported.
+     *
+     * @param index the index of the document in the stream (zero-based)
+     * @throws SAXException to stop parsing
+     */
+    void documentEnded(int index) throws SAXException;
+
+}
@@ -44,8 +44,10 @@ import org.xml.sax.SAXException;
  * <li>Line-ending normalization</li>
  * </ul>
  * 
- * <p>Decoded character data is fed to a {@link Scanner} via {@link
- * Scanner#receive(CharBuffer)}.
+ * <p>Characters are decoded straight into the {@link Scanner}'s own buffer
+ * (see {@link Scanner#prepareReceive}), line endings are normalized in
+ * place, and the Scanner then scans them where they lie - no intermediate
+ * CharBuffer and no copy.
  * 
  * <h3>Zero-Copy Declaration Parsing</h3>
  * <p>XML/text declarations only contain 7-bit ASCII characters. This class
@@ -119,16 +121,52 @@ class ExternalEntityDecoder {
     private CharsetDecoder decoder;
 
     /**
-     * Working buffer for decoded character data.
-     * Reused to avoid allocation on every receive() call.
-     * Only allocated when actual decoding begins (after declaration).
+     * Window onto the Scanner's buffer that the decoder writes into.
+     * Re-wrapped only when the Scanner grows its buffer.
      */
-    private CharBuffer charBuffer;
+    private CharBuffer scanWindow;
 
     /**
-     * The scanner that consumes decoded characters.
+     * Number of bytes of this entity consumed by earlier receive() calls,
+     * so that malformed input can be reported by absolute byte offset.
      */
-    private final Scanner scanner;
+    private long bytesConsumed;
+
+    /**
+     * Absolute byte offset of index 0 of the buffer passed to the current
+     * receive() call.
+     */
+    private long bufferBase;
+
+    /**
+     * The scanner that consumes decoded characters: replaced by the next
+     * document's, if there is a {@link #documentSequence}.
+     */
+    private Scanner scanner;
+
+    /**
+     * Supplies a Scanner for each further document in a stream of
+     * concatenated documents; null if the entity is a single document.
+     */
+    private DocumentSequence documentSequence;
+
+    /**
+     * Continues a stream of concatenated documents.
+     */
+    interface DocumentSequence {
+
+        /**
+         * Returns the Scanner for the document following a finished one,
+         * having had it {@link Scanner#continueFrom continue from} the
+         * finished Scanner.
+         *
+         * @param finished the Scanner whose document has ended
+         * @return the next document's Scanner
+         * @throws SAXException if the next document cannot be started
+         */
+        Scanner nextDocument(Scanner finished) throws SAXException;
+
+    }
 
     /**
      * True when the most recent decodeAndTokenize() call left undecoded bytes
@@ -198,6 +236,15 @@ class ExternalEntityDecoder {
         return isExternalEntity;
     }
     
+    /**
+     * Treats the entity as a sequence of documents, each after the last
+     * one's root element (see {@link Scanner#hasNextDocument()}), rather
+     * than a single document.
+     */
+    void setDocumentSequence(DocumentSequence documentSequence) {
+        this.documentSequence = documentSequence;
+    }
+
     // ===== Public API =====
     
     /**
@@ -217,7 +264,17 @@ class ExternalEntityDecoder {
         if (!data.hasRemaining()) {
             return;
         }
-        
+
+        int entryPosition = data.position();
+        bufferBase = bytesConsumed - entryPosition;
+        try {
+            receiveBytes(data);
+        } finally {
+            bytesConsumed += data.position() - entryPosition;
+        }
+    }
+
+    private void receiveBytes(ByteBuffer data) throws SAXException {
         // Process based on state
         switch (state) {
             case INIT:
@@ -281,10 +338,7 @@ class ExternalEntityDecoder {
         if (decoder != null) {
             decoder.reset();
         }
-        // Keep charBuffer allocated - just clear it
-        if (charBuffer != null) {
-            charBuffer.clear();
-        }
+        bytesConsumed = 0L;
         lastChar = '\u0000';
     }
     
@@ -560,24 +614,28 @@ class ExternalEntityDecoder {
     // ===== Content Decoding =====
     
     /**
-     * Maximum CharBuffer size. Processing is done incrementally to avoid
-     * allocating a buffer sized for the entire input.
+     * Maximum number of characters decoded per step. Processing is done
+     * incrementally so that the Scanner's buffer is not grown to the size
+     * of the entire input.
      */
     private static final int MAX_CHAR_BUFFER = 32768;
     
     /**
      * Decodes bytes to characters and sends to tokenizer.
      * Processes incrementally to avoid large buffer allocations.
+     *
+     * <p>Each step decodes directly into free space at the end of the
+     * Scanner's buffer and normalizes line endings there, in place, before
+     * the Scanner scans it. A JDK decoder is used for every charset,
+     * including UTF-8: its ASCII bulk decode is intrinsified and
+     * vectorized, and measured several times faster than a hand-written
+     * UTF-8 decoder with the line-ending normalization folded in - what
+     * costs is the extra pass and copy, not the decode itself.
      */
     private void decodeAndTokenize(ByteBuffer data) throws SAXException {
         if (!data.hasRemaining()) {
             return;
         }
-        
-        // Allocate CharBuffer if needed (capped at MAX_CHAR_BUFFER)
-        if (charBuffer == null) {
-            charBuffer = CharBuffer.allocate(MAX_CHAR_BUFFER);
-        }
 
         // One pass over the raw bytes up front to learn whether this call's
         // input can produce any '\r' at all: for the ASCII-transparent
@@ -601,33 +659,49 @@ class ExternalEntityDecoder {
         // consistently faster than a scalar byte-by-byte widening loop in
         // front of it.
         while (data.hasRemaining()) {
-            // Decode into charBuffer (from current position to limit)
-            CoderResult result = decoder.decode(data, charBuffer, false);
+            // Decode into the free space at the end of the Scanner's buffer,
+            // asking for no more than this input can produce, so a small
+            // document does not grow the buffer to the full step size
+            float maxChars = data.remaining() * decoder.maxCharsPerByte() + 1;
+            int step = maxChars < MAX_CHAR_BUFFER ? (int) maxChars : MAX_CHAR_BUFFER;
+            char[] buf = scanner.prepareReceive(step);
+            int start = scanner.receiveLimit();
+            if (scanWindow == null || scanWindow.array() != buf) {
+                scanWindow = CharBuffer.wrap(buf);
+            }
+            scanWindow.limit(start + step).position(start);
+            CoderResult result = decoder.decode(data, scanWindow, false);
 
-            // Check for decoding errors
+            // Check for decoding errors (the decoder leaves data's position
+            // at the start of the offending sequence)
             if (result.isError()) {
+                long offset = bufferBase + data.position();
                 if (result.isMalformed()) {
                     throw scanner.fatalError("Malformed byte sequence in encoding " + charset.name() +
-                        " (length: " + result.length() + ")");
+                        " at byte offset " + offset + " (length: " + result.length() + ")");
                 } else if (result.isUnmappable()) {
                     throw scanner.fatalError("Unmappable byte sequence in encoding " + charset.name() +
-                        " (length: " + result.length() + ")");
+                        " at byte offset " + offset + " (length: " + result.length() + ")");
                 }
             }
 
-            // Normalize line endings
-            normalizeLineEndings(crFree);
-
-            // Flip to read mode before passing to tokenizer
-            charBuffer.flip();
-            
-            // Pass to tokenizer
-            scanner.receive(charBuffer);
-            
-            // Compact to preserve any unconsumed data (underflow)
-            charBuffer.compact();
+            // Normalize line endings in place, then pass to tokenizer
+            int end = normalizeLineEndings(buf, start, scanWindow.position(), crFree);
+            if (end > start) {
+                scanner.receive(end);
+                while (documentSequence != null && scanner.hasNextDocument()) {
+                    scanner = documentSequence.nextDocument(scanner);
+                    scanner.receive(scanner.receiveLimit());
+                }
+                if (scanner.isPaused()) {
+                    // The rest of data is decoded once the consumer has
+                    // resumed the scanner and it asks for more
+                    hasPendingIncompleteBytes = false;
+                    return;
+                }
+            }
 
-            // OVERFLOW: charBuffer was full - loop again to decode more into the
+            // OVERFLOW: the window was full - loop again to decode more into the
             // freed space. UNDERFLOW: decoder cannot make progress on the
             // remaining input without more bytes - stop now rather than looping
             // forever on the same undecodable trailing sequence (data.hasRemaining()
@@ -669,7 +743,8 @@ class ExternalEntityDecoder {
     }
 
     /**
-     * Normalizes line endings in the character buffer according to XML spec.
+     * Normalizes line endings in {@code array[start..end)}, in place,
+     * according to XML spec.
      * 
      * <p>XML line ending normalization rules:
      * <ul>
@@ -677,6 +752,7 @@ class ExternalEntityDecoder {
      *   <li>CR LF (\r\n) -> LF (\n) - the LF is removed</li>
      *   <li>LF (\n) alone -> LF (unchanged)</li>
      *   <li>XML 1.1 only: NEL (\u0085) -> LF</li>
+     *   <li>XML 1.1 only: CR NEL (\r\u0085) -> LF</li>
      *   <li>XML 1.1 only: LS (\u2028) -> LF</li>
      * </ul>
      * 
@@ -690,24 +766,22 @@ class ExternalEntityDecoder {
      *         not apply, so the per-char scan below is skipped. {@link
      *         #lastChar} still matters: a '\r' that ended the previous
      *         receive() call must swallow a leading '\n' in this one.
+     * @return the end of the normalized characters
      */
-    private void normalizeLineEndings(boolean crFree) {
-        int end = charBuffer.position();
-        if (end == 0) {
-            return;
+    private int normalizeLineEndings(char[] array, int start, int end, boolean crFree) {
+        if (end == start) {
+            return end;
         }
 
-        char[] array = charBuffer.array();
-
         if (crFree && lastChar != '\r') {
             lastChar = array[end - 1];
-            return;
+            return end;
         }
 
         // Fast scan: check if normalization is needed at all
         boolean needsNormalization = (lastChar == '\r');
         if (!needsNormalization) {
-            for (int i = 0; i < end; i++) {
+            for (int i = start; i < end; i++) {
                 char c = array[i];
                 if (c == '\r') {
                     needsNormalization = true;
@@ -722,18 +796,19 @@ class ExternalEntityDecoder {
 
         if (!needsNormalization) {
             lastChar = array[end - 1];
-            return;
+            return end;
         }
 
-        int writePos = 0;
+        int writePos = start;
 
-        for (int readPos = 0; readPos < end; readPos++) {
+        for (int readPos = start; readPos < end; readPos++) {
             char c = array[readPos];
 
             if (c == '\r') {
                 array[writePos++] = '\n';
-            } else if (c == '\n' && lastChar == '\r') {
-                // CR LF pair: skip the LF (CR was already converted)
+            } else if ((c == '\n' || (xml11 && c == '\u0085')) && lastChar == '\r') {
+                // CR LF (or XML 1.1 CR NEL) pair: skip the second character
+                // (CR was already converted)
             } else if (xml11 && (c == '\u0085' || c == '\u2028')) {
                 array[writePos++] = '\n';
             } else {
@@ -742,7 +817,7 @@ class ExternalEntityDecoder {
             lastChar = c;
         }
 
-        charBuffer.position(writePos);
+        return writePos;
     }
 
 }
@@ -0,0 +1,144 @@
+/*
+ * Metrics.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Receives the counters and timers of the parser and transformer.
+ *
+ * <p>Implement this to bind Gonzalez to a metrics registry, or to emit
+ * JFR events, and install it with {@link #setMetrics}, or register it as
+ * a {@link ServiceLoader} provider of this class to have it installed
+ * when first needed:
+ * <pre>
+ * Metrics.setMetrics(new Metrics() {
+ *     public void increment(String name, long delta) {
+ *         registry.counter(name).increment(delta);
+ *     }
+ *     public void record(String name, long nanos) {
+ *         registry.timer(name).record(nanos, TimeUnit.NANOSECONDS);
+ *     }
+ * });
+ * </pre>
+ *
+ * <p>Measurements are taken once per document, compilation, transformation
+ * and so on, never per event. With no metrics installed each of those
+ * costs a single field read.
+ *
+ * <p>Implementations are called from any thread that parses or
+ * transforms, and must be thread-safe.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public abstract class Metrics {
+
+    /** Timer: parsing one document, from its first byte to its end. */
+    public static final String PARSE = "gonzalez.parse";
+
+    /** Counter: bytes parsed. */
+    public static final String PARSE_BYTES = "gonzalez.parse.bytes";
+
+    /** Counter prefix: documents parsed, by the name of their encoding. */
+    public static final String PARSE_ENCODING = "gonzalez.parse.encoding.";
+
+    /** Timer: compiling a stylesheet. */
+    public static final String COMPILE = "gonzalez.compile";
+
+    /** Timer: one transformation. */
+    public static final String TRANSFORM = "gonzalez.transform";
+
+    /** Counter: transformations that streamed the source. */
+    public static final String TRANSFORM_STREAMED = "gonzalez.transform.streamed";
+
+    /** Counter: transformations that built the source as a tree. */
+    public static final String TRANSFORM_FULL_DOCUMENT = "gonzalez.transform.full-document";
+
+    /** Counter: transformations that built a projected source tree. */
+    public static final String TRANSFORM_PROJECTED = "gonzalez.transform.projected";
+
+    /** Counter: source nodes built by transformations. */
+    public static final String TRANSFORM_SOURCE_NODES = "gonzalez.transform.source-nodes";
+
+    /** Counter: bytes written by transformations to a stream result. */
+    public static final String TRANSFORM_OUTPUT_BYTES = "gonzalez.transform.output-bytes";
+
+    /** Timer: loading a document for fn:doc, document() and the like. */
+    public static final String DOCUMENT_LOAD = "gonzalez.document.load";
+
+    /** Counter: documents found already loaded. */
+    public static final String DOCUMENT_CACHE_HITS = "gonzalez.document.cache-hits";
+
+    /** Timer: building the index of an xsl:key for a document. */
+    public static final String KEY_INDEX = "gonzalez.key.index";
+
+    private static volatile Metrics metrics = loadMetrics();
+
+    /**
+     * Installs the metrics, replacing any installed before.
+     *
+     * @param m the metrics, or null to stop measuring
+     */
+    public static void setMetrics(Metrics m) {
+        metrics = m;
+    }
+
+    /**
+     * Returns the installed metrics.
+     *
+     * @return the metrics, or null if none are installed
+     */
+    public static Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param name the counter name
+     * @param delta the amount to add
+     */
+    public abstract void increment(String name, long delta);
+
+    /**
+     * Records a duration with a timer.
+     *
+     * @param name the timer name
+     * @param nanos the duration in nanoseconds
+     */
+    public abstract void record(String name, long nanos);
+
+    private static Metrics loadMetrics() {
+        try {
+            Iterator<Metrics> i = ServiceLoader.load(Metrics.class).iterator();
+            if (i.hasNext()) {
+                return i.next();
+            }
+        } catch (ServiceConfigurationError e) {
+            // A broken provider must not stop parsing
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * NameDictionary.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.xml.sax.ext.DeclHandler;
+
+/**
+ * A read-mostly dictionary of element and attribute names shared by any
+ * number of {@link Parser} instances, on any threads.
+ *
+ * <p>Each parser interns the names it scans into a table of its own. With
+ * a dictionary installed (the {@code
+ * http://www.nongnu.org/gonzalez/properties/name-dictionary} property of
+ * {@link Parser}), a name missing from that table is looked up here before a new String is
+ * created, and the dictionary's String is cached and reported instead. Names
+ * of a known vocabulary are therefore reported without allocation from the
+ * first document a parser sees, and are the same String instances in every
+ * parser sharing the dictionary, so they can be compared by identity.
+ *
+ * <p>Lookups take no lock: the names are held in an immutable table, which
+ * {@link #add} and {@link #addAll} replace with an extended copy. Adding is
+ * therefore relatively expensive and meant for seeding, with the names of a
+ * schema ({@code XSDSchema.getDeclaredNames()}), a compiled stylesheet's
+ * name tests ({@code CompiledStylesheet.getNameDictionary()}), or a DTD -
+ * this class is a {@link DeclHandler}, so it can be installed as the
+ * declaration handler of a parser reading a DTD or a sample document:
+ * <pre>
+ * NameDictionary names = new NameDictionary();
+ * Parser dtdReader = new Parser();
+ * dtdReader.setProperty("http://xml.org/sax/properties/declaration-handler", names);
+ * dtdReader.parse(sample);
+ *
+ * Parser parser = new Parser();
+ * parser.setProperty("http://www.nongnu.org/gonzalez/properties/name-dictionary", names);
+ * </pre>
+ *
+ * <p>Names are matched as they appear in the document, prefix included.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class NameDictionary implements DeclHandler {
+
+    /** The current table, never modified once published. */
+    private volatile PackedName table = new PackedName();
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public NameDictionary() {
+    }
+
+    /**
+     * Creates a dictionary holding the given names.
+     *
+     * @param names the names to add
+     */
+    public NameDictionary(Collection<String> names) {
+        addAll(names);
+    }
+
+    /**
+     * Adds a name. If an equal name is already present, that String remains
+     * the canonical instance.
+     *
+     * @param name the name to add
+     */
+    public void add(String name) {
+        addAll(Collections.singleton(name));
+    }
+
+    /**
+     * Adds names. Null and empty names are ignored.
+     *
+     * @param names the names to add
+     */
+    public synchronized void addAll(Collection<String> names) {
+        PackedName next = null;
+        for (String name : names) {
+            if (name == null || name.isEmpty() || table.find(name) != null) {
+                continue;
+            }
+            if (next == null) {
+                next = table.copy();
+            }
+            next.intern(name);
+        }
+        if (next != null) {
+            table = next;
+        }
+    }
+
+    /**
+     * Returns the canonical instance of a name, or null if the dictionary
+     * does not hold it.
+     *
+     * @param name the name to look up
+     * @return the dictionary's String equal to {@code name}, or null
+     */
+    public String get(String name) {
+        return table.find(name);
+    }
+
+    /**
+     * Returns whether the dictionary holds a name.
+     *
+     * @param name the name to look up
+     * @return true if the name is present
+     */
+    public boolean contains(String name) {
+        return get(name) != null;
+    }
+
+    /**
+     * Returns the number of names held.
+     *
+     * @return the number of names
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /** The current table, for {@link PackedName}'s fallback lookups. */
+    PackedName table() {
+        return table;
+    }
+
+    // -- DeclHandler --
+
+    @Override
+    public void elementDecl(String name, String model) {
+        add(name);
+    }
+
+    @Override
+    public void attributeDecl(String eName, String aName, String type, String mode, String value) {
+        addAll(Arrays.asList(eName, aName));
+    }
+
+    @Override
+    public void internalEntityDecl(String name, String value) {
+    }
+
+    @Override
+    public void externalEntityDecl(String name, String publicId, String systemId) {
+    }
+
+}
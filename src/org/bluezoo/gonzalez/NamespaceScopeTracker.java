@@ -21,9 +21,9 @@
 
 package org.bluezoo.gonzalez;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -31,14 +31,23 @@ import java.util.Map;
  * High-performance namespace scope tracker for streaming XML parsing.
  * 
  * <p>This class manages namespace prefix-to-URI mappings with proper scoping
- * for nested elements. It uses modern Java collections (HashMap, ArrayList)
- * for better performance than the legacy SAX2 NamespaceSupport class.
+ * for nested elements. Bindings are kept on a single flat stack of
+ * (prefix, URI) entries, with the stack height recorded at each
+ * {@link #pushContext()}: entering or leaving an element that declares
+ * nothing - by far the common case - is an integer store, and leaving one
+ * that does discards its entries by truncating the stack. A prefix is
+ * resolved by scanning the stack from the top, so the innermost binding
+ * wins; documents rarely have more than a handful of bindings in scope.
  * 
  * <p>Key design decisions:
  * <ul>
  * <li>No synchronization (single-threaded parser)</li>
- * <li>HashMap for O(1) prefix lookup</li>
- * <li>ArrayList for scope stack (typically shallow nesting)</li>
+ * <li>No per-element allocation: the arrays only grow, to the deepest
+ *     nesting and most bindings seen</li>
+ * <li>{@link #processName} caches its result for the last few qualified
+ *     names, keyed by String identity - the scanner's names are interned, so
+ *     a repeated name is resolved without a scan or a substring until the
+ *     bindings next change</li>
  * <li>Separate tracking for xmlns attributes vs. regular attributes</li>
  * </ul>
  * 
@@ -60,41 +69,46 @@ public class NamespaceScopeTracker {
     
     /** XMLNS namespace URI (pre-bound to "xmlns" prefix) */
     public static final String XMLNS_NAMESPACE_URI = "http://www.w3.org/2000/xmlns/";
-    
+
+    /** Number of {@link #processName} results cached (a power of two). */
+    private static final int CACHE_SIZE = 8;
+
     /**
-     * Represents a namespace scope level.
-     * Each element introduces a new scope that may declare new namespace bindings.
+     * The binding stack: entry i binds prefixes[i] to uris[i]. Entries
+     * below bindingCount are live; those of the current scope start at
+     * scopeStarts[scopeDepth].
      */
-    private static class Scope {
-        /** Prefix-to-URI mappings declared at this level */
-        final Map<String, String> bindings;
-        
-        /** Number of declarations at this level (for efficient iteration) */
-        int declarationCount;
-        
-        Scope() {
-            this.bindings = new HashMap<>();
-            this.declarationCount = 0;
-        }
-    }
-    
+    private String[] prefixes = new String[16];
+    private String[] uris = new String[16];
+    private int bindingCount;
+
     /**
-     * Stack of namespace scopes.
-     * Index 0 is the root scope (contains xml and xmlns pre-bindings).
-     * Index scopeDepth is the current scope.
+     * Binding stack height at each pushContext(). Index 0 is the root scope
+     * (contains xml and xmlns pre-bindings); index scopeDepth is the
+     * current scope.
      */
-    private final ArrayList<Scope> scopes;
+    private int[] scopeStarts = new int[32];
     
     /**
      * Current scope depth (0 = root scope, increments with each element).
      */
     private int scopeDepth;
-    
+
     /**
-     * Flat map of all active prefix-to-URI bindings.
-     * This is updated as we push/pop scopes for fast lookup.
+     * Incremented whenever the bindings in scope change, invalidating the
+     * {@link #processName} cache.
      */
-    private final Map<String, String> activeBindings;
+    private int generation;
+
+    // processName() cache, direct-mapped by qName hash code.
+    private final String[] cachedQNames = new String[CACHE_SIZE];
+    private final String[] cachedURIs = new String[CACHE_SIZE];
+    private final String[] cachedLocalNames = new String[CACHE_SIZE];
+    private final int[] cachedGenerations = new int[CACHE_SIZE];
+
+    // Result of the last resolve() call.
+    private String resolvedURI;
+    private String resolvedLocalName;
     
     /**
      * Optional intern pool for namespace URIs and prefixes.
@@ -106,9 +120,7 @@ public class NamespaceScopeTracker {
      * Creates a new namespace scope tracker with pre-bound xml and xmlns prefixes.
      */
     public NamespaceScopeTracker() {
-        this.scopes = new ArrayList<>();
         this.scopeDepth = -1; // Will become 0 on first pushContext()
-        this.activeBindings = new HashMap<>();
         
         // Initialize root scope
         pushContext();
@@ -133,21 +145,12 @@ public class NamespaceScopeTracker {
      */
     public void pushContext() {
         scopeDepth++;
-
-        // Reuse existing scope object if available, otherwise create new
-        if (scopeDepth < scopes.size()) {
-            Scope scope = scopes.get(scopeDepth);
-            // Most elements declare no namespaces, so declarationCount is almost always
-            // already 0 here (the invariant declarationCount==0 iff bindings is empty is
-            // maintained below and in declarePrefix()) - skip the clear() call entirely
-            // rather than relying on HashMap's own internal empty-check.
-            if (scope.declarationCount > 0) {
-                scope.bindings.clear();
-                scope.declarationCount = 0;
-            }
-        } else {
-            scopes.add(new Scope());
+        if (scopeDepth == scopeStarts.length) {
+            int[] grown = new int[scopeStarts.length * 2];
+            System.arraycopy(scopeStarts, 0, grown, 0, scopeStarts.length);
+            scopeStarts = grown;
         }
+        scopeStarts[scopeDepth] = bindingCount;
     }
 
     /**
@@ -158,23 +161,15 @@ public class NamespaceScopeTracker {
         if (scopeDepth < 0) {
             throw new IllegalStateException("Cannot pop root namespace context");
         }
-
-        // Remove bindings declared at this level from activeBindings.
-        // Skip entirely when nothing was declared at this depth (the common case) -
-        // avoids allocating a KeySet iterator on every single element close.
-        Scope scope = scopes.get(scopeDepth);
-        if (scope.declarationCount > 0) {
-            for (String prefix : scope.bindings.keySet()) {
-                // Restore previous binding from outer scope (if any)
-                String outerBinding = findBindingInOuterScopes(prefix, scopeDepth - 1);
-                if (outerBinding != null) {
-                    activeBindings.put(prefix, outerBinding);
-                } else {
-                    activeBindings.remove(prefix);
-                }
+        int start = scopeStarts[scopeDepth];
+        if (bindingCount > start) {
+            for (int i = start; i < bindingCount; i++) {
+                prefixes[i] = null;
+                uris[i] = null;
             }
+            bindingCount = start;
+            generation++;
         }
-
         scopeDepth--;
     }
     
@@ -198,19 +193,30 @@ public class NamespaceScopeTracker {
             uri = internPool.intern(uri);
         }
         
-        Scope scope = scopes.get(scopeDepth);
-        
-        // Check if already declared at this level with same URI
-        String existing = scope.bindings.get(prefix);
-        if (uri.equals(existing)) {
-            return false; // Same binding, not new
+        // Already declared at this level: replace, unless the same binding
+        for (int i = scopeStarts[scopeDepth]; i < bindingCount; i++) {
+            if (prefixes[i].equals(prefix)) {
+                if (uri.equals(uris[i])) {
+                    return false; // Same binding, not new
+                }
+                uris[i] = uri;
+                generation++;
+                return true;
+            }
         }
         
-        // Add/update binding
-        scope.bindings.put(prefix, uri);
-        scope.declarationCount++;
-        activeBindings.put(prefix, uri);
-        
+        if (bindingCount == prefixes.length) {
+            String[] grownPrefixes = new String[prefixes.length * 2];
+            String[] grownURIs = new String[uris.length * 2];
+            System.arraycopy(prefixes, 0, grownPrefixes, 0, bindingCount);
+            System.arraycopy(uris, 0, grownURIs, 0, bindingCount);
+            prefixes = grownPrefixes;
+            uris = grownURIs;
+        }
+        prefixes[bindingCount] = prefix;
+        uris[bindingCount] = uri;
+        bindingCount++;
+        generation++;
         return true;
     }
     
@@ -226,12 +232,46 @@ public class NamespaceScopeTracker {
         if (prefix == null) {
             throw new IllegalArgumentException("Prefix must not be null");
         }
-        String uri = activeBindings.get(prefix);
+        for (int i = bindingCount - 1; i >= 0; i--) {
+            String candidate = prefixes[i];
+            if (candidate == prefix || candidate.equals(prefix)) {
+                return unboundIfEmpty(uris[i]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the namespace URI bound to the prefix of a qualified name, the
+     * characters before {@code colon} - without extracting the prefix.
+     */
+    private String getPrefixURI(String qName, int colon) {
+        for (int i = bindingCount - 1; i >= 0; i--) {
+            String candidate = prefixes[i];
+            if (candidate.length() == colon && qName.regionMatches(0, candidate, 0, colon)) {
+                return unboundIfEmpty(uris[i]);
+            }
+        }
+        return null;
+    }
+
+    private static String unboundIfEmpty(String uri) {
         // Empty URI means unbound (XML Namespaces 1.1)
-        if (uri != null && uri.isEmpty()) {
-            return null;
+        return uri.isEmpty() ? null : uri;
+    }
+
+    /**
+     * Whether binding i is in effect, i.e. not shadowed by a later binding
+     * of the same prefix.
+     */
+    private boolean isVisible(int i) {
+        String prefix = prefixes[i];
+        for (int j = i + 1; j < bindingCount; j++) {
+            if (prefixes[j].equals(prefix)) {
+                return false;
+            }
         }
-        return uri;
+        return true;
     }
     
     /**
@@ -245,10 +285,9 @@ public class NamespaceScopeTracker {
         if (uri == null) {
             throw new IllegalArgumentException("URI must not be null");
         }
-        
-        for (Map.Entry<String, String> entry : activeBindings.entrySet()) {
-            if (uri.equals(entry.getValue())) {
-                return entry.getKey();
+        for (int i = bindingCount - 1; i >= 0; i--) {
+            if (uri.equals(uris[i]) && isVisible(i)) {
+                return prefixes[i];
             }
         }
         return null;
@@ -265,13 +304,13 @@ public class NamespaceScopeTracker {
             throw new IllegalArgumentException("URI must not be null");
         }
         
-        ArrayList<String> prefixes = new ArrayList<>();
-        for (Map.Entry<String, String> entry : activeBindings.entrySet()) {
-            if (uri.equals(entry.getValue())) {
-                prefixes.add(entry.getKey());
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < bindingCount; i++) {
+            if (uri.equals(uris[i]) && isVisible(i)) {
+                result.add(prefixes[i]);
             }
         }
-        return prefixes.iterator();
+        return result.iterator();
     }
     
     /**
@@ -280,7 +319,13 @@ public class NamespaceScopeTracker {
      * @return iterator over all currently bound prefixes
      */
     public Iterator<String> getAllPrefixes() {
-        return activeBindings.keySet().iterator();
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < bindingCount; i++) {
+            if (isVisible(i)) {
+                result.add(prefixes[i]);
+            }
+        }
+        return result.iterator();
     }
     
     /**
@@ -290,17 +335,49 @@ public class NamespaceScopeTracker {
      * @return iterator over (prefix, URI) entries for current level
      */
     public Iterator<Map.Entry<String, String>> getCurrentScopeDeclarations() {
-        if (scopeDepth < 0) {
+        int count = getCurrentScopeDeclarationCount();
+        if (count == 0) {
             return Collections.emptyIterator();
         }
-        // Called on every element start/end to fire (start|end)PrefixMapping. Most
-        // elements declare no namespaces, so avoid allocating a HashMap entrySet
-        // iterator for the (very common) empty case.
-        Scope scope = scopes.get(scopeDepth);
-        if (scope.declarationCount == 0) {
-            return Collections.emptyIterator();
+        ArrayList<Map.Entry<String, String>> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(
+                    getCurrentScopeDeclarationPrefix(i), getCurrentScopeDeclarationURI(i)));
         }
-        return scope.bindings.entrySet().iterator();
+        return entries.iterator();
+    }
+
+    /**
+     * Returns the number of namespace declarations made at the current
+     * scope level - the allocation-free form of {@link
+     * #getCurrentScopeDeclarations()}, in declaration order.
+     *
+     * @return the number of declarations at the current level
+     */
+    public int getCurrentScopeDeclarationCount() {
+        return scopeDepth < 0 ? 0 : bindingCount - scopeStarts[scopeDepth];
+    }
+
+    /**
+     * Returns the prefix of a declaration made at the current scope level.
+     *
+     * @param index the declaration index, less than {@link
+     *        #getCurrentScopeDeclarationCount()}
+     * @return the declared prefix
+     */
+    public String getCurrentScopeDeclarationPrefix(int index) {
+        return prefixes[scopeStarts[scopeDepth] + index];
+    }
+
+    /**
+     * Returns the URI of a declaration made at the current scope level.
+     *
+     * @param index the declaration index, less than {@link
+     *        #getCurrentScopeDeclarationCount()}
+     * @return the declared URI
+     */
+    public String getCurrentScopeDeclarationURI(int index) {
+        return uris[scopeStarts[scopeDepth] + index];
     }
     
     /**
@@ -320,111 +397,120 @@ public class NamespaceScopeTracker {
      * @throws NamespaceException if namespace well-formedness constraint is violated
      */
     public QName processName(String rawQName, boolean isAttribute, QNamePool pool) throws NamespaceException {
+        resolve(rawQName, isAttribute);
+        QName qname = pool.checkout();
+        qname.update(resolvedURI, resolvedLocalName, rawQName);
+        return qname;
+    }
+
+    /**
+     * Resolves a qualified name as {@link #processName} does, leaving the
+     * result in {@link #getResolvedURI()} and {@link
+     * #getResolvedLocalName()} rather than in a pooled {@link QName}.
+     */
+    void resolve(String rawQName, boolean isAttribute) throws NamespaceException {
         if (rawQName == null || rawQName.isEmpty()) {
             throw new NamespaceException("QName must not be null or empty");
         }
-        
+        int slot = rawQName.hashCode() & (CACHE_SIZE - 1);
+        // Unprefixed attribute names need no lookup, and are never cached:
+        // the cache holds the element reading of unprefixed names.
+        boolean cacheable = !isAttribute || rawQName.indexOf(':') >= 0;
+        if (cacheable && cachedQNames[slot] == rawQName && cachedGenerations[slot] == generation) {
+            resolvedURI = cachedURIs[slot];
+            resolvedLocalName = cachedLocalNames[slot];
+            return;
+        }
+
         int colonIndex = rawQName.indexOf(':');
-        
-        // Checkout QName from pool
-        QName qname = pool.checkout();
-        
         if (colonIndex == -1) {
             // No prefix - validate no xmlns as element/attribute name
             if ("xmlns".equals(rawQName)) {
-                pool.returnToPool(qname);
                 throw new NamespaceException("Illegal QName: 'xmlns' cannot be used as " + 
                     (isAttribute ? "attribute" : "element") + " name");
             }
             
-            // No prefix
-            String namespaceURI;
             if (isAttribute) {
                 // Attributes without prefix are not in any namespace (per XML Namespaces spec)
-                namespaceURI = "";
+                resolvedURI = "";
             } else {
                 // Elements without prefix use default namespace
                 String defaultNS = getURI("");
-                namespaceURI = (defaultNS != null) ? defaultNS : "";
+                resolvedURI = (defaultNS != null) ? defaultNS : "";
             }
-            qname.update(namespaceURI, rawQName, rawQName);
-            return qname;
+            resolvedLocalName = rawQName;
         } else {
             // Has prefix - validate QName syntax
             
             // Check for multiple colons
             int secondColon = rawQName.indexOf(':', colonIndex + 1);
             if (secondColon != -1) {
-                pool.returnToPool(qname);
                 throw new NamespaceException("Illegal QName '" + rawQName + 
                     "': QNames may contain at most one colon");
             }
             
-            String prefix = rawQName.substring(0, colonIndex);
-            String localName = rawQName.substring(colonIndex + 1);
-            
             // Check for leading colon (empty prefix)
-            if (prefix.isEmpty()) {
-                pool.returnToPool(qname);
+            if (colonIndex == 0) {
                 throw new NamespaceException("Illegal QName '" + rawQName + 
                     "': QName cannot start with colon");
             }
             
             // Check for trailing colon (empty localName)
-            if (localName.isEmpty()) {
-                pool.returnToPool(qname);
+            if (colonIndex == rawQName.length() - 1) {
                 throw new NamespaceException("Illegal QName '" + rawQName + 
                     "': QName cannot end with colon");
             }
             
             // Check for xmlns: prefix in element/attribute names
-            if ("xmlns".equals(prefix)) {
-                pool.returnToPool(qname);
+            if (colonIndex == 5 && rawQName.startsWith("xmlns")) {
                 throw new NamespaceException("Illegal QName '" + rawQName + 
                     "': 'xmlns:' prefix cannot be used in " + 
                     (isAttribute ? "non-namespace-declaration attributes" : "element names"));
             }
             
             // Look up prefix
-            String namespaceURI = getURI(prefix);
+            String namespaceURI = getPrefixURI(rawQName, colonIndex);
             if (namespaceURI == null) {
-                // Return QName to pool before throwing
-                pool.returnToPool(qname);
-                throw new NamespaceException("Unbound namespace prefix: " + prefix);
+                throw new NamespaceException("Unbound namespace prefix: "
+                        + rawQName.substring(0, colonIndex));
             }
-            
-            qname.update(namespaceURI, localName, rawQName);
-            return qname;
+            resolvedURI = namespaceURI;
+            resolvedLocalName = rawQName.substring(colonIndex + 1);
+        }
+        if (cacheable) {
+            cachedQNames[slot] = rawQName;
+            cachedURIs[slot] = resolvedURI;
+            cachedLocalNames[slot] = resolvedLocalName;
+            cachedGenerations[slot] = generation;
         }
     }
+
+    /** The namespace URI found by the last {@link #resolve} call. */
+    String getResolvedURI() {
+        return resolvedURI;
+    }
+
+    /** The local name found by the last {@link #resolve} call. */
+    String getResolvedLocalName() {
+        return resolvedLocalName;
+    }
     
     /**
      * Resets the tracker to initial state.
      * Removes all scopes except the root scope with pre-bound xml and xmlns.
      */
     public void reset() {
-        scopes.clear();
-        activeBindings.clear();
+        for (int i = 0; i < bindingCount; i++) {
+            prefixes[i] = null;
+            uris[i] = null;
+        }
+        bindingCount = 0;
         scopeDepth = -1;
+        generation++;
         
         // Re-initialize root scope with pre-bindings
         pushContext();
         declarePrefix("xml", XML_NAMESPACE_URI);
         declarePrefix("xmlns", XMLNS_NAMESPACE_URI);
     }
-    
-    /**
-     * Helper: finds a prefix binding in outer scopes (not including current scope).
-     * Used when popping context to restore previous bindings.
-     */
-    private String findBindingInOuterScopes(String prefix, int maxDepth) {
-        for (int i = maxDepth; i >= 0; i--) {
-            String uri = scopes.get(i).bindings.get(prefix);
-            if (uri != null) {
-                return uri;
-            }
-        }
-        return null;
-    }
 }
-
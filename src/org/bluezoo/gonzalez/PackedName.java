@@ -19,6 +19,7 @@
 package org.bluezoo.gonzalez;
 
 import java.nio.CharBuffer;
+import java.util.HashMap;
 
 /**
  * Zero-allocation-on-hit interning pool for short, name-like strings
@@ -45,6 +46,14 @@ import java.nio.CharBuffer;
  * a final character-range comparison against the stored String resolves the
  * rare case of two different long names sharing both their first-12-chars
  * packing and their remainder hash.
+ * <p>
+ * Every name is cached, so the same content always yields the same String
+ * instance - {@link SAXAdapter}'s duplicate-attribute check depends on it.
+ * The table doubles once half full, or when a probe sequence is exhausted
+ * while a quarter full; names that still collide past that are kept in a
+ * side map rather than growing the table for them. A pool may fall back to
+ * a shared {@link NameDictionary} on a miss, taking the dictionary's String
+ * for a name it holds.
  *
  * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
  */
@@ -53,27 +62,66 @@ class PackedName {
     private static final int MAX_PROBES = 4;
     private static final int DENSE_CHARS = 12;
 
-    private final long[] q0;
-    private final long[] q1;
-    private final long[] q2;
-    private final int[] lengths;
-    private final String[] values;
-    private final int mask;
+    private long[] q0;
+    private long[] q1;
+    private long[] q2;
+    private int[] lengths;
+    private int[] hashes;
+    private String[] values;
+    private int mask;
+    private int size;
+
+    /** Names whose probe sequence is full while the table is still sparse
+     *  (adversarial or pathological hash collisions) - kept here rather
+     *  than growing the table without bound, so a name is still canonical
+     *  however it hashes. Null until first needed. */
+    private HashMap<String,String> spilled;
+
+    /** Shared dictionary consulted on a miss, or null. */
+    private final NameDictionary dictionary;
 
     PackedName() {
         this(512);
     }
 
     PackedName(int initialCapacity) {
-        int capacity = nextPowerOfTwo(Math.max(256, initialCapacity));
+        this(initialCapacity, null);
+    }
+
+    /**
+     * Creates a pool that falls back to {@code dictionary} on a miss, so a
+     * name the dictionary holds is returned as the dictionary's own String
+     * (and then cached locally) instead of being allocated afresh.
+     */
+    PackedName(NameDictionary dictionary) {
+        this(512, dictionary);
+    }
+
+    PackedName(int initialCapacity, NameDictionary dictionary) {
+        this.dictionary = dictionary;
+        allocate(nextPowerOfTwo(Math.max(256, initialCapacity)));
+    }
+
+    private void allocate(int capacity) {
         this.mask = capacity - 1;
         this.q0 = new long[capacity];
         this.q1 = new long[capacity];
         this.q2 = new long[capacity];
         this.lengths = new int[capacity];
+        this.hashes = new int[capacity];
         this.values = new String[capacity];
     }
 
+    /** The dictionary this pool falls back to, or null. */
+    NameDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /** The number of distinct names held. */
+    int size() {
+        return (spilled == null) ? size : size + spilled.size();
+    }
+
     /**
      * Interns a name from a CharBuffer window (position to limit), returning
      * a canonical String instance. Zero-allocation on a cache hit.
@@ -96,6 +144,16 @@ class PackedName {
         return internRange(copy, 0, len);
     }
 
+    /**
+     * Interns the given String itself: it becomes the canonical instance
+     * for its content unless an equal name is already held, in which case
+     * that one is returned. Used to build {@link NameDictionary} tables.
+     */
+    String intern(String name) {
+        char[] chars = name.toCharArray();
+        return internRange(chars, 0, chars.length, name);
+    }
+
     /**
      * Interns a name directly from a char-array range - same contract as
      * {@link #intern(CharBuffer)} minus the window unwrapping, for callers
@@ -104,6 +162,10 @@ class PackedName {
      * per name just to pass the range in).
      */
     String internRange(char[] buf, int start, int len) {
+        return internRange(buf, start, len, null);
+    }
+
+    private String internRange(char[] buf, int start, int len, String value) {
         long p0 = 0;
         long p1 = 0;
         long p2 = 0;
@@ -130,13 +192,14 @@ class PackedName {
             int slot = (index + probe) & mask;
             String candidate = values[slot];
             if (candidate == null) {
-                String newString = new String(buf, start, len);
-                q0[slot] = p0;
-                q1[slot] = p1;
-                q2[slot] = p2;
-                lengths[slot] = len;
-                values[slot] = newString;
-                return newString;
+                if (value == null && dictionary != null) {
+                    value = dictionary.table().findChars(p0, p1, p2, hash, buf, start, len);
+                }
+                if (value == null) {
+                    value = new String(buf, start, len);
+                }
+                store(slot, p0, p1, p2, hash, len, value);
+                return value;
             }
             if (lengths[slot] == len && q0[slot] == p0 && q1[slot] == p1 && q2[slot] == p2) {
                 if (len <= DENSE_CHARS || rangeEquals(buf, start, len, candidate)) {
@@ -146,9 +209,156 @@ class PackedName {
                 // differs (only possible for names > 12 chars) - keep probing.
             }
         }
-        // Exceeded probe limit - create without caching to avoid polluting
-        // the pool with an entry that will never be found again anyway.
-        return new String(buf, start, len);
+        // Exceeded probe limit: grow if the table is reasonably full (the
+        // retry then finds a free slot), otherwise the names genuinely
+        // collide and doubling would not separate them.
+        if (shouldGrow()) {
+            grow();
+            return internRange(buf, start, len, value);
+        }
+        if (value == null && dictionary != null) {
+            value = dictionary.table().findChars(p0, p1, p2, hash, buf, start, len);
+        }
+        if (value == null) {
+            value = new String(buf, start, len);
+        }
+        return spill(value);
+    }
+
+    /**
+     * Looks up an already-packed name without inserting it - the {@link
+     * NameDictionary} side of a miss in another pool, which shares this
+     * packing and hash. Names that were spilled are not found here.
+     */
+    String findChars(long p0, long p1, long p2, int hash, char[] buf, int start, int len) {
+        int index = hash & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (index + probe) & mask;
+            String candidate = values[slot];
+            if (candidate == null) {
+                return null;
+            }
+            if (lengths[slot] == len && q0[slot] == p0 && q1[slot] == p1 && q2[slot] == p2) {
+                if (len <= DENSE_CHARS || rangeEquals(buf, start, len, candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Looks up a name without inserting it, spilled names included. */
+    String find(String name) {
+        int len = name.length();
+        long p0 = 0;
+        long p1 = 0;
+        long p2 = 0;
+        int dense = Math.min(len, DENSE_CHARS);
+        for (int i = 0; i < dense; i++) {
+            char c = name.charAt(i);
+            if (i < 4) {
+                p0 = (p0 << 16) | c;
+            } else if (i < 8) {
+                p1 = (p1 << 16) | c;
+            } else {
+                p2 = (p2 << 16) | c;
+            }
+        }
+        int hash = (int) (p0 * 31 + p1 * 17 + p2 * 7) + len;
+        for (int i = DENSE_CHARS; i < len; i++) {
+            hash = hash * 31 + name.charAt(i);
+        }
+        String found = findChars(p0, p1, p2, hash, name.toCharArray(), 0, len);
+        if (found == null && spilled != null) {
+            found = spilled.get(name);
+        }
+        return found;
+    }
+
+    /**
+     * Returns a copy of this pool, sharing its Strings - {@link
+     * NameDictionary} adds to a copy and publishes it, so readers of the
+     * previous table never see it change.
+     */
+    PackedName copy() {
+        PackedName copy = new PackedName(values.length, dictionary);
+        System.arraycopy(q0, 0, copy.q0, 0, q0.length);
+        System.arraycopy(q1, 0, copy.q1, 0, q1.length);
+        System.arraycopy(q2, 0, copy.q2, 0, q2.length);
+        System.arraycopy(lengths, 0, copy.lengths, 0, lengths.length);
+        System.arraycopy(hashes, 0, copy.hashes, 0, hashes.length);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        copy.size = size;
+        if (spilled != null) {
+            copy.spilled = new HashMap<String,String>(spilled);
+        }
+        return copy;
+    }
+
+    private void store(int slot, long p0, long p1, long p2, int hash, int len, String value) {
+        q0[slot] = p0;
+        q1[slot] = p1;
+        q2[slot] = p2;
+        lengths[slot] = len;
+        hashes[slot] = hash;
+        values[slot] = value;
+        size++;
+        // Keep the load at most one half, so probe sequences stay short.
+        if (size * 2 > values.length) {
+            grow();
+        }
+    }
+
+    private boolean shouldGrow() {
+        return size * 4 >= values.length;
+    }
+
+    /** Doubles the table, re-placing every entry by its stored hash. */
+    private void grow() {
+        long[] oldQ0 = q0;
+        long[] oldQ1 = q1;
+        long[] oldQ2 = q2;
+        int[] oldLengths = lengths;
+        int[] oldHashes = hashes;
+        String[] oldValues = values;
+        allocate(oldValues.length * 2);
+        for (int i = 0; i < oldValues.length; i++) {
+            String value = oldValues[i];
+            if (value == null) {
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            q0[slot] = oldQ0[i];
+            q1[slot] = oldQ1[i];
+            q2[slot] = oldQ2[i];
+            lengths[slot] = oldLengths[i];
+            hashes[slot] = oldHashes[i];
+            values[slot] = value;
+        }
+        // A spilled name may now have a free slot on its probe sequence; it
+        // must be found there rather than be allocated again.
+        if (spilled != null) {
+            HashMap<String,String> names = spilled;
+            spilled = null;
+            for (String name : names.keySet()) {
+                intern(name);
+            }
+        }
+    }
+
+    private String spill(String value) {
+        if (spilled == null) {
+            spilled = new HashMap<String,String>();
+        }
+        String existing = spilled.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        spilled.put(value, value);
+        return value;
     }
 
     private static boolean rangeEquals(char[] buf, int start, int len, String s) {
@@ -128,10 +128,37 @@ public class Parser implements XMLReader, PSVIProvider {
     private boolean scannerResolveDTDURIs = true;
     private boolean scannerStringInterning = true;
     private boolean scannerXmlnsUris;
+    private boolean scannerMultipleDocuments;
+    private DocumentListener scannerDocumentListener;
     private String scannerAccessExternalDTD = "";
     private int scannerEntityExpansionLimit = ScannerSettings.DEFAULT_EXPANSION_LIMIT;
     private String scannerPublicId;
     private String scannerSystemId;
+    private NameDictionary scannerNameDictionary;
+
+    /** The handler chain and settings {@link #scanner} was built with, for
+     *  the Scanner of each further document in a multiple-document stream
+     *  (see {@link #nextDocument}). */
+    private XMLHandler scannerTarget;
+    private ScannerSettings scannerSettings;
+
+    /** The {@link Metrics} measuring the document being received, its
+     *  start time and the bytes received so far; null if not measured. */
+    private Metrics parseMetrics;
+    private long parseStart;
+    private long parseBytes;
+
+    /**
+     * Names interned by the scanners, kept from one document to the next so
+     * a reused parser reports its vocabulary without allocation - unless it
+     * grew past {@link #NAME_POOL_RETAIN_LIMIT}, or the name dictionary
+     * changed, when {@link #ensureScannerReady()} starts a fresh one.
+     */
+    private PackedName namePool;
+
+    /** The most names {@link #namePool} may hold and still be reused for the
+     *  next document. */
+    private static final int NAME_POOL_RETAIN_LIMIT = 4096;
 
     /** Document standalone status before {@link #scanner} exists (always
      *  false - the declared value lives on the live Scanner once built;
@@ -150,6 +177,19 @@ public class Parser implements XMLReader, PSVIProvider {
      */
     private ByteBuffer parseBuffer;
 
+    /**
+     * The last document's scan buffer and SAX adapter, taken over by
+     * {@link #reset()} for {@link #ensureScannerReady()} to build the next
+     * document's pipeline from: together with {@link #namePool}, this is
+     * most of what a parser would otherwise allocate per document.
+     */
+    private char[] recycledScanBuffer;
+    private SAXAdapter recycledAdapter;
+
+    /** The largest scan buffer (in chars) {@link #reset()} keeps - the
+     *  size reached by any document at the decoder's chunk size. */
+    private static final int SCAN_BUFFER_RETAIN_LIMIT = 65536;
+
     /**
      * Creates a new Parser instance. The internal {@link Scanner} chain is
      * built lazily, once per document, when parsing begins - see {@link
@@ -169,9 +209,20 @@ public class Parser implements XMLReader, PSVIProvider {
         if (scanner != null) {
             return;
         }
+        parseMetrics = Metrics.getMetrics();
+        if (parseMetrics != null) {
+            parseStart = System.nanoTime();
+            parseBytes = 0L;
+        }
         XMLHandler target = scannerXMLHandler;
         if (target == null) {
-            SAXAdapter adapter = new SAXAdapter(scannerNamespaces);
+            SAXAdapter adapter = recycledAdapter;
+            if (adapter != null && adapter.isNamespaceAware() == scannerNamespaces) {
+                adapter.reset();
+            } else {
+                adapter = new SAXAdapter(scannerNamespaces);
+            }
+            recycledAdapter = null;
             adapter.setContentHandler(scannerContentHandler);
             adapter.setLexicalHandler(scannerLexicalHandler);
             adapter.setDeclHandler(scannerDeclHandler);
@@ -189,12 +240,53 @@ public class Parser implements XMLReader, PSVIProvider {
             filter.setXmlnsUris(scannerXmlnsUris);
             target = filter;
         }
-        ScannerSettings settings = new ScannerSettings(scannerExternalGeneralEntities,
+        if (namePool == null || namePool.size() > NAME_POOL_RETAIN_LIMIT
+                || namePool.getDictionary() != scannerNameDictionary) {
+            namePool = new PackedName(scannerNameDictionary);
+        }
+        scannerTarget = target;
+        scannerSettings = new ScannerSettings(scannerExternalGeneralEntities,
                 scannerExternalParameterEntities, scannerDisallowDoctypeDecl, scannerResolveDTDURIs,
                 scannerAccessExternalDTD, scannerEntityExpansionLimit);
-        scanner = new Scanner(target, false, scannerEntityResolver, scannerPublicId, scannerSystemId, scannerValidation,
-                scannerNamespaces, settings, true);
+        scanner = newScanner(recycledScanBuffer, 0);
+        recycledScanBuffer = null;
         decoder = new ExternalEntityDecoder(scanner, scannerPublicId, scannerSystemId, false);
+        if (scannerMultipleDocuments) {
+            decoder.setDocumentSequence(new ExternalEntityDecoder.DocumentSequence() {
+                @Override
+                public Scanner nextDocument(Scanner finished) throws SAXException {
+                    return Parser.this.nextDocument(finished);
+                }
+            });
+        }
+    }
+
+    /** Builds the Scanner for the {@code index}th document of the input. */
+    private Scanner newScanner(char[] buffer, int index) throws SAXException {
+        Scanner s = new Scanner(scannerTarget, false, scannerEntityResolver, scannerPublicId, scannerSystemId,
+                scannerValidation, scannerNamespaces, scannerSettings, true, buffer, namePool);
+        s.setMultipleDocuments(scannerMultipleDocuments);
+        s.setDocumentListener(scannerDocumentListener, index);
+        return s;
+    }
+
+    /**
+     * Starts the document following a finished one in a multiple-document
+     * stream. The new Scanner shares the finished one's buffer and name
+     * pool, and the handler chain; the document is decoded in the same
+     * encoding and XML version as the first (a later XML declaration is
+     * skipped, see {@link Scanner#continueFrom}).
+     */
+    private Scanner nextDocument(Scanner finished) throws SAXException {
+        if (scannerAdapter != null) {
+            scannerAdapter.reset();
+        }
+        Scanner next = newScanner(finished.buffer(), finished.getDocumentIndex() + 1);
+        next.continueFrom(finished);
+        next.setXml11("1.1".equals(finished.getXMLVersion()));
+        next.setEncoding(finished.getEncoding());
+        scanner = next;
+        return next;
     }
 
     // ========================================================================
@@ -643,6 +735,10 @@ public class Parser implements XMLReader, PSVIProvider {
      *     (defense against XXE and entity-expansion attacks)</td></tr>
      * <tr><td>{@code http://xml.org/sax/features/string-interning}</td>
      *     <td>true</td><td>Intern element/attribute names</td></tr>
+     * <tr><td>{@code http://www.nongnu.org/gonzalez/features/multiple-documents}</td>
+     *     <td>false</td><td>Read concatenated documents from the input, each
+     *     starting after the previous root element; they may be separated by
+     *     white space or NUL characters (see {@link DocumentListener})</td></tr>
      * <tr><td>{@code http://xml.org/sax/features/is-standalone}</td>
      *     <td>false</td><td>(Read-only) Document standalone status</td></tr>
      * <tr><td>{@code http://xml.org/sax/features/xml-1.1}</td>
@@ -692,6 +788,9 @@ public class Parser implements XMLReader, PSVIProvider {
             case "http://xml.org/sax/features/xmlns-uris":
                 return scannerXmlnsUris;
 
+            case "http://www.nongnu.org/gonzalez/features/multiple-documents":
+                return scannerMultipleDocuments;
+
             // Read-only features (report capabilities)
             case "http://xml.org/sax/features/lexical-handler":
             case "http://xml.org/sax/features/parameter-entities":
@@ -780,6 +879,14 @@ public class Parser implements XMLReader, PSVIProvider {
                 scannerXmlnsUris = value;
                 break;
 
+            case "http://www.nongnu.org/gonzalez/features/multiple-documents":
+                if (scanner != null && value != scannerMultipleDocuments) {
+                    throw new SAXNotSupportedException(
+                            "Cannot change " + name + " once parsing has started");
+                }
+                scannerMultipleDocuments = value;
+                break;
+
             // Read-only features (throw exception if trying to change)
             case "http://xml.org/sax/features/is-standalone":
             case "http://xml.org/sax/features/lexical-handler":
@@ -842,6 +949,13 @@ public class Parser implements XMLReader, PSVIProvider {
      *     <td>{@link Integer}</td>
      *     <td>Maximum entity expansions per document; 64,000 by default and
      *     zero for unlimited</td></tr>
+     * <tr><td>{@code http://www.nongnu.org/gonzalez/properties/name-dictionary}</td>
+     *     <td>{@link NameDictionary}</td>
+     *     <td>Shared dictionary of element and attribute names, consulted
+     *     before a newly seen name is allocated; none by default</td></tr>
+     * <tr><td>{@code http://www.nongnu.org/gonzalez/properties/document-listener}</td>
+     *     <td>{@link DocumentListener}</td>
+     *     <td>Told as each document of the input ends; none by default</td></tr>
      * </tbody>
      * </table>
      *
@@ -864,6 +978,12 @@ public class Parser implements XMLReader, PSVIProvider {
         if ("http://www.nongnu.org/gonzalez/properties/entity-expansion-limit".equals(name)) {
             return scannerEntityExpansionLimit;
         }
+        if ("http://www.nongnu.org/gonzalez/properties/name-dictionary".equals(name)) {
+            return scannerNameDictionary;
+        }
+        if ("http://www.nongnu.org/gonzalez/properties/document-listener".equals(name)) {
+            return scannerDocumentListener;
+        }
         throw new SAXNotRecognizedException("Property not recognized: " + name);
     }
 
@@ -914,6 +1034,20 @@ public class Parser implements XMLReader, PSVIProvider {
             }
             throw new SAXNotSupportedException("Value must be an Integer");
         }
+        if ("http://www.nongnu.org/gonzalez/properties/name-dictionary".equals(name)) {
+            if (value == null || value instanceof NameDictionary) {
+                scannerNameDictionary = (NameDictionary) value;
+                return;
+            }
+            throw new SAXNotSupportedException("Value must be a NameDictionary");
+        }
+        if ("http://www.nongnu.org/gonzalez/properties/document-listener".equals(name)) {
+            if (value == null || value instanceof DocumentListener) {
+                scannerDocumentListener = (DocumentListener) value;
+                return;
+            }
+            throw new SAXNotSupportedException("Value must be a DocumentListener");
+        }
         throw new SAXNotRecognizedException("Property not recognized: " + name);
     }
 
@@ -952,10 +1086,61 @@ public class Parser implements XMLReader, PSVIProvider {
     public void reset() throws SAXException {
         // Scanner has no reset() of its own (inherently single-document) -
         // ensureScannerReady() rebuilds a fresh scanner/decoder pair from
-        // the still-held scannerXxx configuration on the next receive().
+        // the still-held scannerXxx configuration on the next receive(),
+        // reusing the old pair's buffer and adapter: resetting is O(1).
+        if (scanner != null) {
+            char[] buf = scanner.buffer();
+            if (buf.length <= SCAN_BUFFER_RETAIN_LIMIT) {
+                recycledScanBuffer = buf;
+            }
+        }
+        if (scannerAdapter != null) {
+            recycledAdapter = scannerAdapter;
+        }
         scanner = null;
         scannerAdapter = null;
+        scannerTarget = null;
         decoder = null;
+        parseMetrics = null;
+    }
+
+    /**
+     * Restores every handler, feature and property to its initial value,
+     * as on a new Parser - while keeping the buffers and name pool {@link
+     * #reset()} retains. For {@link ParserPool}, after {@link #reset()}.
+     */
+    void resetConfiguration() {
+        scannerContentHandler = null;
+        scannerDtdHandler = null;
+        scannerErrorHandler = null;
+        scannerEntityResolver = null;
+        scannerLexicalHandler = null;
+        scannerDeclHandler = null;
+        scannerXMLHandler = null;
+        scannerNamespaces = true;
+        scannerNamespacePrefixes = false;
+        scannerValidation = false;
+        scannerExternalGeneralEntities = false;
+        scannerExternalParameterEntities = false;
+        scannerDisallowDoctypeDecl = false;
+        scannerResolveDTDURIs = true;
+        scannerStringInterning = true;
+        scannerXmlnsUris = false;
+        scannerMultipleDocuments = false;
+        scannerDocumentListener = null;
+        scannerAccessExternalDTD = "";
+        scannerEntityExpansionLimit = ScannerSettings.DEFAULT_EXPANSION_LIMIT;
+        scannerPublicId = null;
+        scannerSystemId = null;
+        scannerNameDictionary = null;
+        if (recycledAdapter != null) {
+            // Drop the last document's handlers along with the others
+            recycledAdapter.setContentHandler(null);
+            recycledAdapter.setLexicalHandler(null);
+            recycledAdapter.setDeclHandler(null);
+            recycledAdapter.setDTDHandler(null);
+            recycledAdapter.setErrorHandler(null);
+        }
     }
 
     // ========================================================================
@@ -1031,7 +1216,14 @@ public class Parser implements XMLReader, PSVIProvider {
      */
     public void receive(ByteBuffer data) throws SAXException {
         ensureScannerReady();
+        if (parseMetrics == null) {
+            decoder.receive(data);
+            return;
+        }
+        // Only what is consumed: the rest is passed again
+        int start = data.position();
         decoder.receive(data);
+        parseBytes += data.position() - start;
     }
 
     /**
@@ -1056,6 +1248,34 @@ public class Parser implements XMLReader, PSVIProvider {
         // Scanner's own close() (invoked via decoder.close()) validates that
         // parsing is complete (no unclosed constructs).
         decoder.close();
+        Metrics metrics = parseMetrics;
+        if (metrics != null) {
+            parseMetrics = null;
+            metrics.record(Metrics.PARSE, System.nanoTime() - parseStart);
+            metrics.increment(Metrics.PARSE_BYTES, parseBytes);
+            String encoding = scanner.getEncoding();
+            if (encoding != null) {
+                metrics.increment(Metrics.PARSE_ENCODING + encoding, 1L);
+            }
+        }
+    }
+
+    // ===== Pausing, for XMLCursor =====
+
+    /** Stops the scanner once the current construct is complete: {@link
+     *  #receive} then returns, leaving the rest of its data for later. */
+    void pause() {
+        scanner.pause();
+    }
+
+    boolean isPaused() {
+        return scanner != null && scanner.isPaused();
+    }
+
+    /** Scans on from a {@link #pause()}, until the scanner pauses again or
+     *  needs the rest of the data last passed to {@link #receive}. */
+    void resume() throws SAXException {
+        scanner.resume();
     }
 
     /**
@@ -0,0 +1,307 @@
+/*
+ * ParserPool.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+
+import org.xml.sax.SAXException;
+
+/**
+ * A thread-safe pool of configured {@link Parser} instances, for
+ * applications parsing many small documents.
+ *
+ * <p>A new Parser allocates its scan buffer, name table and SAX adapter
+ * for the first document it parses; {@link Parser#reset()} keeps them for
+ * the next. For small documents that allocation costs more than the parse
+ * itself, so reusing parsers - one per thread, or borrowed from a pool -
+ * is much cheaper than creating them:
+ * <pre>
+ * ParserPool pool = new ParserPool(16, new ParserPool.Configurer() {
+ *     public void configure(Parser parser) throws SAXException {
+ *         parser.setFeature("http://xml.org/sax/features/namespaces", false);
+ *     }
+ * });
+ *
+ * Parser parser = pool.acquire();
+ * try {
+ *     parser.setContentHandler(handler);
+ *     parser.parse(source);
+ * } finally {
+ *     pool.release(parser);
+ * }
+ * </pre>
+ *
+ * <p>{@link #acquire()} hands out a parser in the state the {@link
+ * Configurer} leaves a new one in, whatever the previous borrower did with
+ * it: {@link #release} resets the parser and restores every handler,
+ * feature and property to its default, and {@link #acquire()} then applies
+ * the configurer. None of this depends on the size of the previous
+ * document. At most {@code maxIdle} released parsers are kept; any more
+ * are left to the garbage collector.
+ *
+ * <p>A parser that is acquired but never released is harmless but wasted.
+ * With {@link #setLeakDetection leak detection} on, the pool remembers
+ * where each parser was acquired, and when one is garbage collected
+ * without having been released, counts it and keeps that stack trace -
+ * see {@link #getLeakCount()} and {@link #getLeaks()}.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class ParserPool {
+
+    /**
+     * Configures the parsers a pool hands out.
+     */
+    public interface Configurer {
+
+        /**
+         * Sets the features, properties or handlers every parser from the
+         * pool should have. Called on every {@link ParserPool#acquire()},
+         * with the parser in its initial state.
+         *
+         * @param parser the parser to configure
+         * @throws SAXException if the configuration is not supported
+         */
+        void configure(Parser parser) throws SAXException;
+
+    }
+
+    /** The number of idle parsers kept by {@link #ParserPool()}. */
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    /** The most leak reports kept by {@link #getLeaks()}. */
+    private static final int MAX_LEAK_REPORTS = 16;
+
+    private final int maxIdle;
+    private final Configurer configurer;
+
+    // All guarded by this
+    private final ArrayDeque<Parser> idle = new ArrayDeque<Parser>();
+    private int active;
+    private long created;
+    private boolean leakDetection;
+    private WeakHashMap<Parser, Lease> leases;
+    private final ReferenceQueue<Parser> collected = new ReferenceQueue<Parser>();
+    private long leakCount;
+    private final ArrayDeque<Throwable> leaks = new ArrayDeque<Throwable>();
+
+    /**
+     * Creates a pool of default parsers, keeping up to {@link
+     * #DEFAULT_MAX_IDLE} idle.
+     */
+    public ParserPool() {
+        this(DEFAULT_MAX_IDLE, null);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxIdle the most released parsers to keep for reuse
+     * @param configurer configures each parser handed out, or null for
+     *        default parsers
+     * @throws IllegalArgumentException if maxIdle is negative
+     */
+    public ParserPool(int maxIdle, Configurer configurer) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle must not be negative: " + maxIdle);
+        }
+        this.maxIdle = maxIdle;
+        this.configurer = configurer;
+    }
+
+    /**
+     * Returns a configured parser, reusing an idle one if possible. Pass it
+     * to {@link #release} when done with it.
+     *
+     * @return a parser, ready to parse
+     * @throws SAXException if the configurer fails
+     */
+    public Parser acquire() throws SAXException {
+        Parser parser;
+        synchronized (this) {
+            expungeLeaks();
+            parser = idle.pollFirst();
+            if (parser == null) {
+                created++;
+            }
+            active++;
+        }
+        if (parser == null) {
+            parser = new Parser();
+        }
+        if (configurer != null) {
+            try {
+                configurer.configure(parser);
+            } catch (SAXException | RuntimeException e) {
+                synchronized (this) {
+                    active--;
+                }
+                throw e;
+            }
+        }
+        synchronized (this) {
+            if (leakDetection) {
+                leases.put(parser, new Lease(parser, collected));
+            }
+        }
+        return parser;
+    }
+
+    /**
+     * Returns a parser to the pool. Its handlers are dropped, so the pool
+     * holds no reference to the previous borrower's objects. A parser must
+     * not be used after it is released, nor released twice.
+     *
+     * @param parser a parser obtained from {@link #acquire()}
+     */
+    public void release(Parser parser) {
+        if (parser == null) {
+            return;
+        }
+        boolean reusable;
+        try {
+            parser.reset();
+            parser.resetConfiguration();
+            reusable = true;
+        } catch (SAXException e) {
+            reusable = false;
+        }
+        synchronized (this) {
+            if (leases != null) {
+                Lease lease = leases.remove(parser);
+                if (lease != null) {
+                    lease.clear();
+                }
+            }
+            active--;
+            if (reusable && idle.size() < maxIdle) {
+                idle.offerFirst(parser);
+            }
+        }
+    }
+
+    /**
+     * Turns leak detection on or off. While on, each {@link #acquire()}
+     * records a stack trace, which is relatively expensive; parsers
+     * acquired while it was off are not tracked.
+     *
+     * @param enabled whether to detect unreleased parsers
+     */
+    public synchronized void setLeakDetection(boolean enabled) {
+        leakDetection = enabled;
+        if (enabled && leases == null) {
+            leases = new WeakHashMap<Parser, Lease>();
+        }
+    }
+
+    /**
+     * Returns the number of parsers found to have been garbage collected
+     * without being released, since leak detection was turned on.
+     *
+     * @return the number of leaked parsers detected
+     */
+    public synchronized long getLeakCount() {
+        expungeLeaks();
+        return leakCount;
+    }
+
+    /**
+     * Returns where the most recently detected leaked parsers (up to 16)
+     * were acquired, most recent first.
+     *
+     * @return the acquisition stack traces of leaked parsers
+     */
+    public synchronized List<Throwable> getLeaks() {
+        expungeLeaks();
+        return new ArrayList<Throwable>(leaks);
+    }
+
+    /**
+     * Returns the number of parsers acquired and not yet released (or found
+     * leaked).
+     *
+     * @return the number of parsers in use
+     */
+    public synchronized int getActiveCount() {
+        expungeLeaks();
+        return active;
+    }
+
+    /**
+     * Returns the number of idle parsers held for reuse.
+     *
+     * @return the number of idle parsers
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of parsers this pool has created.
+     *
+     * @return the number of parsers created
+     */
+    public synchronized long getCreatedCount() {
+        return created;
+    }
+
+    /**
+     * Discards all idle parsers.
+     */
+    public synchronized void clear() {
+        idle.clear();
+    }
+
+    /** Accounts for leased parsers collected since the last call. */
+    private void expungeLeaks() {
+        Lease lease;
+        while ((lease = (Lease) collected.poll()) != null) {
+            active--;
+            leakCount++;
+            if (leaks.size() == MAX_LEAK_REPORTS) {
+                leaks.pollLast();
+            }
+            leaks.offerFirst(lease.site);
+        }
+    }
+
+    /**
+     * A parser on loan while leak detection is on: enqueued if the parser
+     * is collected before {@link #release} clears it.
+     */
+    private static final class Lease extends WeakReference<Parser> {
+
+        final Throwable site;
+
+        Lease(Parser parser, ReferenceQueue<Parser> queue) {
+            super(parser, queue);
+            site = new Throwable("Parser acquired here was never released");
+        }
+
+    }
+
+}
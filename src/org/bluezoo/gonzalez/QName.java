@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez;
 
+import java.io.Serializable;
+
 /**
  * Represents a qualified name in XML with namespace URI and local name.
  *
@@ -33,7 +35,9 @@ package org.bluezoo.gonzalez;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class QName {
+public final class QName implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String uri;
     private String localName;
@@ -23,8 +23,6 @@ package org.bluezoo.gonzalez;
 
 import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Map;
 
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
@@ -73,10 +71,16 @@ import org.xml.sax.ext.LexicalHandler;
  * uri/localName/qName so it can supply SAX's {@code endElement(uri,
  * localName, qName)} - the event source is not required to remember this
  * itself.
+ * <p>
+ * Attribute values are copied into a per-element character arena rather
+ * than made into Strings: a handler that reads none, or only some, of an
+ * element's attributes pays for no String at all for the rest. {@code
+ * getValue} materializes (and caches) the String on demand, and {@link
+ * AttributeValues} reads a value without one.
  *
  * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
  */
-class SAXAdapter implements XMLHandler, Attributes2 {
+class SAXAdapter implements XMLHandler, Attributes2, AttributeValues {
 
     /**
      * One buffered attribute. Pooled and reused across {@link
@@ -87,17 +91,61 @@ class SAXAdapter implements XMLHandler, Attributes2 {
      * to check out/return: {@link #uri}/{@link #localName}/{@link #qName}
      * are plain fields, resolved in place by {@link
      * #resolveAttributeNamespaces}, needing no pooled wrapper object at all.
+     * The value is the range {@link #valueStart}/{@link #valueLength} of
+     * {@link #valueArena}; {@link #value} caches it as a String once asked
+     * for, and {@link #view} is its reusable {@link CharSequence} form.
      */
     private static final class Attr {
         String uri = "";
         String localName;
         String qName;
         String type;
+        int valueStart;
+        int valueLength;
         String value;
+        ValueView view;
         boolean declared;
         boolean specified;
     }
 
+    /**
+     * A value in {@link #valueArena} as a {@link CharSequence} - one per
+     * {@link Attr} slot, reused like the slot itself.
+     */
+    private final class ValueView implements CharSequence {
+        private final Attr attr;
+
+        ValueView(Attr attr) {
+            this.attr = attr;
+        }
+
+        @Override
+        public int length() {
+            return attr.valueLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= attr.valueLength) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return valueArena[attr.valueStart + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > attr.valueLength || start > end) {
+                throw new IndexOutOfBoundsException(start + ", " + end);
+            }
+            return new String(valueArena, attr.valueStart + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return materialize(attr);
+        }
+    }
+
     private ContentHandler contentHandler;
     private LexicalHandler lexicalHandler;
     private DeclHandler declHandler;
@@ -108,13 +156,17 @@ class SAXAdapter implements XMLHandler, Attributes2 {
 
     private final boolean namespaceAware;
     private final NamespaceScopeTracker namespaceTracker;
-    private final QNamePool qnamePool;
 
     // This element's buffered attributes - see Attr's own Javadoc for the
     // pooling/duplicate-detection design. attrCount is the "used" length;
     // attrPool.size() is the high-water mark (>= attrCount always).
     private final ArrayList<Attr> attrPool = new ArrayList<Attr>();
     private int attrCount;
+
+    // The characters of this element's attribute values, back to back.
+    // Reset with attrCount; only ever grows, to the largest element seen.
+    private char[] valueArena = new char[256];
+    private int valueArenaLength;
     private boolean hasPrefixedAttributes;
 
     // Element stack. qName is always pushed; uri/localName are only
@@ -125,30 +177,20 @@ class SAXAdapter implements XMLHandler, Attributes2 {
     private final ArrayList<String> uriStack = new ArrayList<String>();
     private final ArrayList<String> localNameStack = new ArrayList<String>();
 
-    // Reused across endElement() calls to avoid allocating a new list every
-    // time just to reverse iteration order for endPrefixMapping.
-    private final ArrayList<String> endedPrefixesBuffer = new ArrayList<String>();
-
     // Current attribute being assembled from startAttribute()/
-    // attributeValueContent() calls. attributeValueFirstChunk is true only
-    // until the first attributeValueContent() call for the current
-    // attribute; combined with that call's own end flag, it identifies the
-    // common single-chunk case, which is handed straight to addAttribute()
-    // with no accumulation at all. attributeValueBuilder is only touched in
-    // the rarer multi-chunk case, and is a single reused field (not a pool)
-    // since attributes are only ever assembled one at a time, never nested
-    // or concurrent.
+    // attributeValueContent() calls: each chunk is appended to valueArena
+    // after the value start recorded by startAttribute(), whether the value
+    // arrives in one chunk (the common case) or several.
     private String currentAttributeName;
     private String currentAttributeType;
     private boolean currentAttributeDeclared;
     private boolean currentAttributeSpecified;
-    private boolean attributeValueFirstChunk;
-    private final StringBuilder attributeValueBuilder = new StringBuilder();
+    private int currentAttributeValueStart;
 
     // Current processing instruction being assembled from piTarget()/
-    // piData() calls - the same first-chunk-fast-path/StringBuilder-only-
-    // for-the-rarer-multi-chunk-case shape as the attribute value fields
-    // just above, needed here because SAX's own ContentHandler.
+    // piData() calls - a first-chunk fast path that hands a single chunk
+    // straight through, with the StringBuilder only used for the rarer
+    // multi-chunk case. Needed here because SAX's own ContentHandler.
     // processingInstruction(String, String) has no streaming form of its
     // own to forward chunks to directly.
     private String currentPITarget;
@@ -175,10 +217,33 @@ class SAXAdapter implements XMLHandler, Attributes2 {
     SAXAdapter(boolean namespaceAware) {
         this.namespaceAware = namespaceAware;
         this.namespaceTracker = namespaceAware ? new NamespaceScopeTracker() : null;
-        // Only the element's own name is resolved via a pooled QName (see
-        // endAttributes()) - attributes no longer need one at all, per
-        // Attr's own Javadoc.
-        this.qnamePool = new QNamePool();
+    }
+
+    boolean isNamespaceAware() {
+        return namespaceAware;
+    }
+
+    /**
+     * Discards the state of the document last seen - which may have ended
+     * in an error, part way through an element - so the adapter can be
+     * reused for the next. Handlers and identifiers are left to the caller
+     * to set again.
+     */
+    void reset() {
+        if (namespaceTracker != null) {
+            namespaceTracker.reset();
+        }
+        attrCount = 0;
+        valueArenaLength = 0;
+        hasPrefixedAttributes = false;
+        qNameStack.clear();
+        uriStack.clear();
+        localNameStack.clear();
+        currentAttributeName = null;
+        currentAttributeType = null;
+        currentPITarget = null;
+        piDataBuilder.setLength(0);
+        commentDataBuilder.setLength(0);
     }
 
     void setContentHandler(ContentHandler handler) {
@@ -252,6 +317,7 @@ class SAXAdapter implements XMLHandler, Attributes2 {
         // O(1): no per-attribute pool to return anything to - see Attr's
         // own Javadoc.
         attrCount = 0;
+        valueArenaLength = 0;
         hasPrefixedAttributes = false;
         qNameStack.add(qName);
     }
@@ -279,27 +345,30 @@ class SAXAdapter implements XMLHandler, Attributes2 {
         currentAttributeType = type;
         currentAttributeDeclared = declared;
         currentAttributeSpecified = specified;
-        attributeValueFirstChunk = true;
+        currentAttributeValueStart = valueArenaLength;
     }
 
     @Override
     public void attributeValueContent(CharBuffer value, boolean end) throws SAXException {
-        if (attributeValueFirstChunk && end) {
-            // Common case: exactly one chunk for this attribute - hand it
-            // straight through, no accumulation, no StringBuilder touched at all.
-            addCurrentAttribute(value.toString());
-            return;
-        }
-        if (attributeValueFirstChunk) {
-            attributeValueBuilder.setLength(0);
-            attributeValueFirstChunk = false;
+        int len = value.remaining();
+        if (valueArenaLength + len > valueArena.length) {
+            char[] grown = new char[Math.max(valueArena.length * 2, valueArenaLength + len)];
+            System.arraycopy(valueArena, 0, grown, 0, valueArenaLength);
+            valueArena = grown;
+        }
+        // Absolute reads only: value's position must not move, since
+        // Scanner still owns this buffer.
+        int pos = value.position();
+        if (value.hasArray()) {
+            System.arraycopy(value.array(), value.arrayOffset() + pos, valueArena, valueArenaLength, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                valueArena[valueArenaLength + i] = value.get(pos + i);
+            }
         }
-        // CharBuffer implements CharSequence via the absolute (non-position-
-        // mutating) get(int) internally, so this does not disturb value's
-        // position - safe even though Scanner still owns this buffer.
-        attributeValueBuilder.append(value);
+        valueArenaLength += len;
         if (end) {
-            addCurrentAttribute(attributeValueBuilder.toString());
+            addCurrentAttribute(currentAttributeValueStart, valueArenaLength - currentAttributeValueStart);
         }
     }
 
@@ -325,7 +394,7 @@ class SAXAdapter implements XMLHandler, Attributes2 {
      * #resolveAttributeNamespaces}'s post-resolution scan below catches a
      * genuine same-namespace-different-prefix duplicate.
      */
-    private void addCurrentAttribute(String valueStr) throws SAXException {
+    private void addCurrentAttribute(int valueStart, int valueLength) throws SAXException {
         String qName = currentAttributeName;
         for (int i = 0; i < attrCount; i++) {
             if (attrPool.get(i).qName == qName) {
@@ -343,7 +412,9 @@ class SAXAdapter implements XMLHandler, Attributes2 {
         attr.localName = qName;
         attr.qName = qName;
         attr.type = currentAttributeType;
-        attr.value = valueStr;
+        attr.valueStart = valueStart;
+        attr.valueLength = valueLength;
+        attr.value = null;
         attr.declared = currentAttributeDeclared;
         attr.specified = currentAttributeSpecified;
         if (namespaceAware && xmlnsUris
@@ -377,12 +448,13 @@ class SAXAdapter implements XMLHandler, Attributes2 {
                 if (qName.startsWith("xmlns:")) {
                     continue;
                 }
-                String prefix = qName.substring(0, colonPos);
-                String localName = qName.substring(colonPos + 1);
-                String uri = tracker.getURI(prefix);
-                if (uri == null) {
-                    throw fatalError("Unbound namespace prefix: " + prefix);
+                try {
+                    tracker.resolve(qName, true);
+                } catch (NamespaceException e) {
+                    throw fatalError(e.getMessage());
                 }
+                String uri = tracker.getResolvedURI();
+                String localName = tracker.getResolvedLocalName();
                 attr.uri = uri;
                 attr.localName = localName;
                 for (int j = 0; j < attrCount; j++) {
@@ -404,25 +476,23 @@ class SAXAdapter implements XMLHandler, Attributes2 {
         String qName = qNameStack.get(qNameStack.size() - 1);
 
         if (namespaceTracker != null) {
-            Iterator<Map.Entry<String, String>> declarations = namespaceTracker.getCurrentScopeDeclarations();
-            while (declarations.hasNext()) {
-                Map.Entry<String, String> entry = declarations.next();
-                if (contentHandler != null) {
-                    contentHandler.startPrefixMapping(entry.getKey(), entry.getValue());
+            if (contentHandler != null) {
+                int count = namespaceTracker.getCurrentScopeDeclarationCount();
+                for (int i = 0; i < count; i++) {
+                    contentHandler.startPrefixMapping(namespaceTracker.getCurrentScopeDeclarationPrefix(i),
+                            namespaceTracker.getCurrentScopeDeclarationURI(i));
                 }
             }
 
             resolveAttributeNamespaces(namespaceTracker);
 
-            QName elementQName;
             try {
-                elementQName = namespaceTracker.processName(qName, false, qnamePool);
+                namespaceTracker.resolve(qName, false);
             } catch (NamespaceException e) {
                 throw fatalError(e.getMessage());
             }
-            String uri = elementQName.getURI();
-            String localName = elementQName.getLocalName();
-            qnamePool.returnToPool(elementQName);
+            String uri = namespaceTracker.getResolvedURI();
+            String localName = namespaceTracker.getResolvedLocalName();
 
             uriStack.add(uri);
             localNameStack.add(localName);
@@ -484,15 +554,10 @@ class SAXAdapter implements XMLHandler, Attributes2 {
         }
 
         if (namespaceTracker != null) {
-            endedPrefixesBuffer.clear();
-            Iterator<Map.Entry<String, String>> declarations = namespaceTracker.getCurrentScopeDeclarations();
-            while (declarations.hasNext()) {
-                endedPrefixesBuffer.add(declarations.next().getKey());
-            }
             if (contentHandler != null) {
                 // Reverse order, matching ContentParser.fireStartElement/fireEndElement.
-                for (int i = endedPrefixesBuffer.size() - 1; i >= 0; i--) {
-                    contentHandler.endPrefixMapping(endedPrefixesBuffer.get(i));
+                for (int i = namespaceTracker.getCurrentScopeDeclarationCount() - 1; i >= 0; i--) {
+                    contentHandler.endPrefixMapping(namespaceTracker.getCurrentScopeDeclarationPrefix(i));
                 }
             }
             namespaceTracker.popContext();
@@ -759,7 +824,16 @@ class SAXAdapter implements XMLHandler, Attributes2 {
 
     @Override
     public String getValue(int index) {
-        return (index < 0 || index >= attrCount) ? null : attrPool.get(index).value;
+        return (index < 0 || index >= attrCount) ? null : materialize(attrPool.get(index));
+    }
+
+    private String materialize(Attr attr) {
+        String value = attr.value;
+        if (value == null) {
+            value = new String(valueArena, attr.valueStart, attr.valueLength);
+            attr.value = value;
+        }
+        return value;
     }
 
     @Override
@@ -787,13 +861,42 @@ class SAXAdapter implements XMLHandler, Attributes2 {
     @Override
     public String getValue(String uri, String localName) {
         int i = findIndexByExpandedName(uri, localName);
-        return i < 0 ? null : attrPool.get(i).value;
+        return i < 0 ? null : materialize(attrPool.get(i));
     }
 
     @Override
     public String getValue(String qName) {
         int i = findIndexByQName(qName);
-        return i < 0 ? null : attrPool.get(i).value;
+        return i < 0 ? null : materialize(attrPool.get(i));
+    }
+
+    // ===== AttributeValues =====
+
+    @Override
+    public int getValueLength(int index) {
+        return (index < 0 || index >= attrCount) ? -1 : attrPool.get(index).valueLength;
+    }
+
+    @Override
+    public CharSequence getValueCharacters(int index) {
+        if (index < 0 || index >= attrCount) {
+            return null;
+        }
+        Attr attr = attrPool.get(index);
+        if (attr.view == null) {
+            attr.view = new ValueView(attr);
+        }
+        return attr.view;
+    }
+
+    @Override
+    public int getValue(int index, char[] buf, int offset) {
+        if (index < 0 || index >= attrCount) {
+            return -1;
+        }
+        Attr attr = attrPool.get(index);
+        System.arraycopy(valueArena, attr.valueStart, buf, offset, attr.valueLength);
+        return attr.valueLength;
     }
 
     @Override
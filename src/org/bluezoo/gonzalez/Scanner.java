@@ -347,7 +347,7 @@ class Scanner implements Locator2 {
      * constantly throughout a document. See class Javadoc for the choice of
      * {@link PackedName} over {@link InternedStringPool}.
      */
-    private final PackedName namePool = new PackedName();
+    private final PackedName namePool;
 
     // ===== Entity reference buffers (see class Javadoc: "Zero allocation") =====
 
@@ -455,6 +455,12 @@ class Scanner implements Locator2 {
      *  needing the old architecture's lazy/list-of-tokens representation. */
     private final HashMap<String, String> generalEntities = new HashMap<String, String>();
 
+    /** What has been worked out about each internal general entity's
+     *  replacement text at its first reference, for the next - see {@link
+     *  EntityText}. A {@link #generalEntities} entry never changes once
+     *  made (the first declaration is binding), so neither does this. */
+    private final HashMap<String, EntityText> entityTextCache = new HashMap<String, EntityText>();
+
     /** Entities declared via an external ID (SYSTEM/PUBLIC) rather than a
      *  quoted literal, keyed by name, value {@code {publicId, systemId}}
      *  (publicId may be null) - fetched lazily, at first reference in
@@ -654,6 +660,23 @@ class Scanner implements Locator2 {
     Scanner(XMLHandler handler, boolean xml11, EntityResolver entityResolver, String publicId, String baseSystemId,
             boolean validationEnabled, boolean namespaceAware, ScannerSettings settings,
             boolean deferDocumentStartUntilEncoding) throws SAXException {
+        this(handler, xml11, entityResolver, publicId, baseSystemId, validationEnabled, namespaceAware, settings,
+                deferDocumentStartUntilEncoding, null, null);
+    }
+
+    /**
+     * Full constructor, as used by {@code Parser}: besides the settings
+     * above, takes the scan buffer of a previous document, to scan this one
+     * without allocating (or growing) a new one, and a name pool shared
+     * with {@code Parser}.
+     *
+     * @param recycledBuffer a scan buffer no longer in use, or null
+     * @param namePool the name pool to intern names in, or null for a new one
+     */
+    Scanner(XMLHandler handler, boolean xml11, EntityResolver entityResolver, String publicId, String baseSystemId,
+            boolean validationEnabled, boolean namespaceAware, ScannerSettings settings,
+            boolean deferDocumentStartUntilEncoding, char[] recycledBuffer, PackedName namePool)
+            throws SAXException {
         this.handler = handler;
         this.locatorPublicId = publicId;
         this.locatorSystemId = baseSystemId;
@@ -664,7 +687,8 @@ class Scanner implements Locator2 {
         this.namespaceAware = namespaceAware;
         this.settings = settings;
         this.deferDocumentStartUntilEncoding = deferDocumentStartUntilEncoding;
-        this.buf = new char[INITIAL_CAPACITY];
+        this.buf = recycledBuffer != null ? recycledBuffer : new char[INITIAL_CAPACITY];
+        this.namePool = namePool != null ? namePool : new PackedName();
         this.contentStopTable = xml11 ? CONTENT_STOP_XML11 : CONTENT_STOP_XML10;
         this.quotAttrStopTable = xml11 ? QUOT_ATTR_STOP_XML11 : QUOT_ATTR_STOP_XML10;
         this.aposAttrStopTable = xml11 ? APOS_ATTR_STOP_XML11 : APOS_ATTR_STOP_XML10;
@@ -737,7 +761,82 @@ class Scanner implements Locator2 {
     public void receive(CharBuffer data) throws SAXException {
         append(data);
         scan();
-        handler.saveBuffers();
+        if (!paused) {
+            handler.saveBuffers();
+        }
+    }
+
+    /** The scan buffer, for {@code Parser} to hand to the next document's
+     *  Scanner once this one is finished with. */
+    char[] buffer() {
+        return buf;
+    }
+
+    /**
+     * Direct-write counterpart of {@link #receive(CharBuffer)}, for a
+     * decoder that writes characters straight into the scan buffer rather
+     * than into a buffer of its own that would then be copied here (see
+     * {@link ExternalEntityDecoder}). Compacts the buffer and makes room for at least
+     * {@code maxChars} more characters after {@link #receiveLimit()}; the
+     * decoder writes there and then hands the new limit to {@link
+     * #receive(int)}. The returned array is only valid until that call.
+     */
+    char[] prepareReceive(int maxChars) {
+        compact(maxChars);
+        return buf;
+    }
+
+    /** Index in {@link #prepareReceive}'s array at which new characters
+     *  are to be written. */
+    int receiveLimit() {
+        return limit;
+    }
+
+    /**
+     * Scans the characters written in place since {@link #prepareReceive},
+     * exactly as {@link #receive(CharBuffer)} scans appended ones.
+     *
+     * @param newLimit the index after the last character written
+     */
+    void receive(int newLimit) throws SAXException {
+        limit = newLimit;
+        scan();
+        if (!paused) {
+            handler.saveBuffers();
+        }
+    }
+
+    // ===== Pausing =====
+
+    /**
+     * Set by {@link #pause()}: {@link #scan()} returns before the next
+     * construct, leaving the rest of the buffer unscanned - and valid, so
+     * {@link XMLHandler#saveBuffers()} is not fired - until {@link
+     * #resume()}. Lets {@link XMLCursor} pull one event at a time from the
+     * scan buffer.
+     */
+    private boolean paused;
+
+    /** Asks the scanner to stop once the current construct is complete.
+     *  Called by the handler, during an event. */
+    void pause() {
+        paused = true;
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Continues scanning the characters already received after a {@link
+     * #pause()}: until the scanner pauses again, or needs more input.
+     */
+    void resume() throws SAXException {
+        paused = false;
+        scan();
+        if (!paused) {
+            handler.saveBuffers();
+        }
     }
 
     /**
@@ -745,6 +844,12 @@ class Scanner implements Locator2 {
      * mid-construct or with unclosed elements.
      */
     public void close() throws SAXException {
+        if (documentFinished) {
+            if (hasNextDocument()) {
+                throw handler.fatalError("Document ended unexpectedly (unclosed element or tag)");
+            }
+            return;
+        }
         if (!documentStarted) {
             startDocument();
         }
@@ -754,13 +859,90 @@ class Scanner implements Locator2 {
         if (!rootStarted) {
             throw handler.fatalError("Document must contain a root element");
         }
+        finishDocument();
+    }
+
+    /** The end-of-document checks and event, once the root element has
+     *  closed and (unless {@link #multipleDocuments}) input has ended. */
+    private void finishDocument() throws SAXException {
         checkEntityValuesDoNotReferenceUnparsedEntities();
         if (validationEnabled) {
             checkPendingIdrefs();
             checkUnparsedEntityNotationsDeclared();
             checkAttlistNotationNamesDeclared();
         }
+        documentFinished = true;
         handler.endDocument();
+        if (documentListener != null) {
+            documentListener.documentEnded(documentIndex);
+        }
+    }
+
+    // ===== Multiple documents =====
+
+    /**
+     * Whether this document ends as soon as its root element does, any
+     * characters after it being the start of the next document in the
+     * stream, rather than at the end of input - Parser's {@code
+     * multiple-documents} feature. {@code ExternalEntityDecoder} then
+     * continues with a new Scanner (see {@link #continueFrom}) once {@link
+     * #hasNextDocument()}.
+     */
+    private boolean multipleDocuments;
+
+    /** Set once {@link #finishDocument()} has reported the end. */
+    private boolean documentFinished;
+
+    /** Where this document's XML declaration may be, if this Scanner
+     *  {@link #continueFrom continues} a stream; -1 otherwise, or once
+     *  past it. */
+    private int xmlDeclPos = -1;
+
+    private DocumentListener documentListener;
+    private int documentIndex;
+
+    void setMultipleDocuments(boolean multipleDocuments) {
+        this.multipleDocuments = multipleDocuments;
+    }
+
+    /** Sets the listener told of this document's end, and its index in the
+     *  stream. */
+    void setDocumentListener(DocumentListener listener, int index) {
+        this.documentListener = listener;
+        this.documentIndex = index;
+    }
+
+    int getDocumentIndex() {
+        return documentIndex;
+    }
+
+    /**
+     * Returns whether this document has ended and the start of another
+     * follows it in the buffer. White space and NUL characters (a common
+     * message separator, and never legal XML) between documents are
+     * skipped.
+     */
+    boolean hasNextDocument() {
+        if (!documentFinished) {
+            return false;
+        }
+        while (pos < limit && (isWs(buf[pos]) || buf[pos] == '\u0000')) {
+            pos++;
+        }
+        return pos < limit;
+    }
+
+    /**
+     * Takes over the scan buffer, and the characters not yet scanned in
+     * it, of the finished document before this one. Call {@link
+     * #receive(int)} with {@link #receiveLimit()} to scan them; an XML
+     * declaration at their start is skipped.
+     */
+    void continueFrom(Scanner previous) {
+        buf = previous.buf;
+        pos = previous.pos;
+        limit = previous.limit;
+        xmlDeclPos = pos;
     }
 
     /** WFC "Parsed Entity" (Section 4.1): "An entity reference must not
@@ -959,12 +1141,23 @@ class Scanner implements Locator2 {
 
     private void append(CharBuffer data) {
         int needed = data.remaining();
+        compact(needed);
+        data.get(buf, limit, needed);
+        limit += needed;
+    }
+
+    /** Moves unconsumed characters to the start of {@link #buf} and grows
+     *  it, if necessary, to hold {@code needed} more after them. */
+    private void compact(int needed) {
         if (pos > 0) {
             int remaining = limit - pos;
             if (remaining > 0) {
                 System.arraycopy(buf, pos, buf, 0, remaining);
             }
             limit = remaining;
+            if (xmlDeclPos >= 0) {
+                xmlDeclPos -= pos;
+            }
             pos = 0;
         }
         if (limit + needed > buf.length) {
@@ -974,8 +1167,6 @@ class Scanner implements Locator2 {
             }
             buf = Arrays.copyOf(buf, newCap);
         }
-        data.get(buf, limit, needed);
-        limit += needed;
     }
 
     private static boolean isWs(char c) {
@@ -1348,6 +1539,9 @@ class Scanner implements Locator2 {
 
     private void scan() throws SAXException {
         while (true) {
+            if (paused && entityExpansionStack.isEmpty()) {
+                return;
+            }
             if (inPI) {
                 if (!scanPIData()) {
                     return;
@@ -1390,6 +1584,13 @@ class Scanner implements Locator2 {
                 inDoctype = false;
                 continue;
             }
+            if (rootEnded && multipleDocuments) {
+                // What follows belongs to the next document
+                if (!documentFinished) {
+                    finishDocument();
+                }
+                return;
+            }
             if (pos >= limit) {
                 return;
             }
@@ -1402,6 +1603,7 @@ class Scanner implements Locator2 {
                     return;
                 }
             }
+            xmlDeclPos = -1;
         }
     }
 
@@ -2632,6 +2834,21 @@ class Scanner implements Locator2 {
         }
         checkNameStartChar(targetStart);
         String target = namePool.internRange(buf, targetStart, p - targetStart);
+        if (tagStart == xmlDeclPos && "xml".equals(target)) {
+            // The XML declaration of a document following another in the
+            // same stream: decoding continues in the first document's
+            // encoding, so there is nothing to apply - skip it
+            int end = p;
+            while (end + 1 < limit && !(buf[end] == '?' && buf[end + 1] == '>')) {
+                end++;
+            }
+            if (end + 1 >= limit) {
+                pos = tagStart;
+                return false;
+            }
+            pos = end + 2;
+            return true;
+        }
         if (target.length() == 3
                 && (target.charAt(0) == 'x' || target.charAt(0) == 'X')
                 && (target.charAt(1) == 'm' || target.charAt(1) == 'M')
@@ -4832,7 +5049,19 @@ class Scanner implements Locator2 {
             replacementChars = XmlDeclUtil.stripXmlDeclaration(
                     fetchExternalEntity(name, externalIds[0], externalIds[1]), handler);
         } else {
-            replacementChars = generalEntities.get(name).toCharArray();
+            EntityText entityText = entityText(name);
+            if (entityText.isTextOnly() && !isCurrentElementContentElementOnly()) {
+                // Nothing for scan() to find but characters: report the
+                // text as the single run a re-scan would produce
+                if (validationEnabled) {
+                    recordTextForValidation(entityText.getString(), false);
+                }
+                contentBracketRun = 0;
+                handler.characters(CharBuffer.wrap(entityText.chars), false, true);
+                handler.endEntity(name);
+                return;
+            }
+            replacementChars = entityText.chars;
         }
 
         entityExpansionStack.add(name);
@@ -4902,14 +5131,89 @@ class Scanner implements Locator2 {
             // Errata E13 - see expandGeneralEntityInContent's identical carve-out.
             return "";
         }
-        String replacement = generalEntities.get(name);
+        EntityText entityText = entityText(name);
+        if (entityText.attributeValue != null) {
+            // Account for the nested references the first expansion made
+            entityExpansionCount += entityText.attributeExpansions - 1;
+            checkEntityExpansionLimit();
+            return entityText.attributeValue;
+        }
+        int countBefore = entityExpansionCount;
         entityExpansionStack.add(name);
+        String value;
         try {
-            char[] rbuf = replacement.toCharArray();
-            return resolveAttributeText(rbuf, "entity \"" + name + "\"");
+            value = resolveAttributeText(entityText.chars, "entity \"" + name + "\"");
         } finally {
             entityExpansionStack.remove(entityExpansionStack.size() - 1);
         }
+        if (!sawInternalSubsetParameterEntityReference) {
+            // Without errata E13's downgraded errors, which a cached value
+            // would not repeat, the expansion is the same every time
+            entityText.attributeValue = value;
+            entityText.attributeExpansions = entityExpansionCount - countBefore;
+        }
+        return value;
+    }
+
+    /** Returns the {@link #entityTextCache} entry for a declared internal
+     *  general entity, creating it at the entity's first reference. */
+    private EntityText entityText(String name) {
+        EntityText entityText = entityTextCache.get(name);
+        if (entityText == null) {
+            entityText = new EntityText(generalEntities.get(name).toCharArray(), contentStopTable);
+            entityTextCache.put(name, entityText);
+        }
+        return entityText;
+    }
+
+    /**
+     * An internal general entity's replacement text, kept in the form
+     * {@link #expandGeneralEntityInContent} and {@link
+     * #expandGeneralEntityInAttributeValue} use it, so that an entity
+     * referenced many times is only examined once.
+     * <p>
+     * Text-only replacement text - no markup, references or "]]&gt;"
+     * to find, and no character {@link #scanContentRunFast()} would stop
+     * at - is reported in content as one {@link XMLHandler#characters} run
+     * without re-entering {@link #scan()}. Anything else is still re-scanned
+     * at each reference, since its events depend on the context (element
+     * stack, validation state) they occur in. In attribute values, the
+     * fully-resolved value is kept, with the number of expansions it took,
+     * so that a cached value still counts against the expansion limit.
+     */
+    private static final class EntityText {
+
+        final char[] chars;
+        private final boolean textOnly;
+        private String string;
+
+        /** The resolved attribute value, once known - see {@link
+         *  #expandGeneralEntityInAttributeValue}. */
+        String attributeValue;
+        /** Expansions resolving {@link #attributeValue} took, this entity's
+         *  own included. */
+        int attributeExpansions;
+
+        EntityText(char[] chars, boolean[] contentStopTable) {
+            this.chars = chars;
+            boolean plain = chars.length > 0;
+            for (int i = 0; plain && i < chars.length; i++) {
+                plain = !contentStopTable[chars[i]];
+            }
+            textOnly = plain;
+        }
+
+        boolean isTextOnly() {
+            return textOnly;
+        }
+
+        String getString() {
+            if (string == null) {
+                string = new String(chars);
+            }
+            return string;
+        }
+
     }
 
     /**
@@ -0,0 +1,1015 @@
+/*
+ * XMLCursor.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A pull parser: reads an XML document one event at a time, in the manner
+ * of StAX's {@code XMLStreamReader}.
+ *
+ * <p>The cursor drives a {@link Parser} itself, asking it to stop after
+ * each construct (start tag, end tag, run of text, comment or processing
+ * instruction), and reads from its byte source only once the characters
+ * already decoded are used up. Events refer to the parser's own scan
+ * buffer wherever they can: names are the parser's interned Strings, and
+ * {@link #getTextCharacters()} and {@link #getAttributeValueCharacters}
+ * return views of the buffer rather than copies. A value is only copied
+ * when it is split - by an entity reference, or across the end of the
+ * decoded input.
+ * <pre>
+ * XMLCursor cursor = new XMLCursor(in);
+ * while (cursor.hasNext()) {
+ *     switch (cursor.next()) {
+ *         case XMLCursor.START_ELEMENT:
+ *             if ("item".equals(cursor.getLocalName())) { ... }
+ *             break;
+ *         case XMLCursor.CHARACTERS:
+ *             CharBuffer text = cursor.getTextCharacters();
+ *             ...
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Each run of character data is one event, whether reported as {@link
+ * #CHARACTERS}, {@link #CDATA} or ignorable {@link #SPACE}. The DTD is
+ * read but not reported, and entity references are always expanded.
+ * Like the views themselves, the current event's data is only valid until
+ * the next call to {@link #next()}. The event type constants have the
+ * values of their {@code javax.xml.stream.XMLStreamConstants} namesakes.
+ *
+ * <p>A cursor reads a single document. It is not thread-safe.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public final class XMLCursor {
+
+    /** The start of an element; its attributes are available. */
+    public static final int START_ELEMENT = 1;
+    /** The end of an element. */
+    public static final int END_ELEMENT = 2;
+    /** A processing instruction. */
+    public static final int PROCESSING_INSTRUCTION = 3;
+    /** A run of character data. */
+    public static final int CHARACTERS = 4;
+    /** A comment. */
+    public static final int COMMENT = 5;
+    /** Ignorable white space, in element content declared by the DTD. */
+    public static final int SPACE = 6;
+    /** The start of the document. */
+    public static final int START_DOCUMENT = 7;
+    /** The end of the document. */
+    public static final int END_DOCUMENT = 8;
+    /** The content of a CDATA section. */
+    public static final int CDATA = 12;
+
+    private static final int INPUT_BUFFER_SIZE = 8192;
+
+    private final Parser parser;
+    private final ReadableByteChannel source;
+    private final ByteBuffer input;
+    private final Events events;
+
+    /** The namespace bindings in scope; null if the parser is not
+     *  namespace-aware. */
+    private final NamespaceScopeTracker namespaceTracker;
+
+    /** Whether the parser paused with some of {@link #input} not yet
+     *  decoded, to be passed to it again. */
+    private boolean inputPending;
+    private boolean inputEnded;
+    private boolean documentEnded;
+
+    private Locator locator;
+
+    // ===== Event queue =====
+    //
+    // The events reported while the parser scans one construct - usually
+    // one, but an empty element is two, and an entity reference may expand
+    // to many. Events [head, ready) are complete; an event still being
+    // reported in chunks (text, a comment or PI) is at ready. Reset once
+    // every queued event has been read.
+
+    private int[] types = new int[8];
+    private String[] qNames = new String[8];
+    private String[] uris = new String[8];
+    private String[] localNames = new String[8];
+    /** The segment holding each event's text, comment or PI data; -1 if
+     *  none. */
+    private int[] texts = new int[8];
+    private int[] attrStarts = new int[8];
+    private int[] attrCounts = new int[8];
+    private int[] nsStarts = new int[8];
+    private int[] nsCounts = new int[8];
+    private int head;
+    private int ready;
+    private int tail;
+
+    /** The current event's index, or -1 before the first. */
+    private int current = -1;
+
+    // Attributes of queued START_ELEMENTs
+    private String[] attrQNames = new String[8];
+    private String[] attrUris = new String[8];
+    private String[] attrLocalNames = new String[8];
+    private String[] attrTypes = new String[8];
+    private int[] attrValues = new int[8];
+    private int attrTotal;
+
+    // Namespace declarations of queued START_ELEMENTs
+    private String[] nsPrefixes = new String[4];
+    private String[] nsURIs = new String[4];
+    private int nsTotal;
+
+    // ===== Text segments =====
+    //
+    // A segment is a run of characters in the scan buffer (or an entity's
+    // replacement text), or - once XMLHandler.saveBuffers() has said the
+    // scan buffer is about to change, or when a value arrives in more than
+    // one chunk - in arena. A null array means the arena.
+
+    private char[][] segArrays = new char[16][];
+    private int[] segStarts = new int[16];
+    private int[] segLengths = new int[16];
+    private int segCount;
+    private char[] arena = new char[256];
+    private int arenaLength;
+
+    // Open elements, for END_ELEMENT names
+    private String[] stackQNames = new String[16];
+    private String[] stackURIs = new String[16];
+    private String[] stackLocalNames = new String[16];
+    private int depth;
+
+    /** Reused views for {@link #getTextCharacters()} and {@link
+     *  #getAttributeValueCharacters}. */
+    private CharBuffer textView;
+    private CharBuffer attrView;
+
+    /**
+     * Creates a namespace-aware cursor over a document.
+     *
+     * @param in the document's bytes
+     * @throws SAXException if the parser cannot be configured
+     */
+    public XMLCursor(InputStream in) throws SAXException {
+        this(new Parser(), Channels.newChannel(in));
+    }
+
+    /**
+     * Creates a cursor over a document, using a parser configured by the
+     * caller - for example with namespace processing off, or one borrowed
+     * from a {@link ParserPool}. The cursor replaces the parser's handlers
+     * with its own; {@link #close()} resets it for reuse. The
+     * multiple-documents feature is not used.
+     *
+     * @param parser the parser to drive; not parsing any other document
+     * @param source the document's bytes
+     * @throws SAXException if the parser cannot be configured
+     */
+    public XMLCursor(Parser parser, ReadableByteChannel source) throws SAXException {
+        this.parser = parser;
+        this.source = source;
+        parser.setFeature("http://www.nongnu.org/gonzalez/features/multiple-documents", false);
+        events = new Events();
+        parser.setXMLHandler(events);
+        namespaceTracker = parser.getFeature("http://xml.org/sax/features/namespaces")
+                ? new NamespaceScopeTracker() : null;
+        input = ByteBuffer.allocate(INPUT_BUFFER_SIZE);
+        input.flip();
+    }
+
+    // ===== Cursor =====
+
+    /**
+     * Returns whether there is another event: false once {@link
+     * #END_DOCUMENT} has been returned.
+     *
+     * @return whether {@link #next()} may be called
+     */
+    public boolean hasNext() {
+        return !documentEnded;
+    }
+
+    /**
+     * Advances to the next event, reading more of the document if needed.
+     *
+     * @return the event type
+     * @throws SAXException if the document is not well-formed
+     * @throws IOException if the byte source cannot be read
+     * @throws NoSuchElementException if the document has ended
+     */
+    public int next() throws SAXException, IOException {
+        if (documentEnded) {
+            throw new NoSuchElementException("Document has ended");
+        }
+        current = -1;
+        if (head == ready) {
+            clearQueue();
+            fill();
+        }
+        current = head++;
+        int type = types[current];
+        if (type == END_DOCUMENT) {
+            documentEnded = true;
+        }
+        return type;
+    }
+
+    /**
+     * Returns the type of the current event.
+     *
+     * @return the event type, or 0 before the first call to {@link #next()}
+     */
+    public int getEventType() {
+        return current < 0 ? 0 : types[current];
+    }
+
+    /**
+     * Resets the parser, so that it may parse another document, and drops
+     * the cursor's references to the document. Does not close the byte
+     * source.
+     *
+     * @throws SAXException if the parser cannot be reset
+     */
+    public void close() throws SAXException {
+        documentEnded = true;
+        current = -1;
+        clearQueue();
+        parser.reset();
+        parser.setXMLHandler(null);
+    }
+
+    /**
+     * Returns the parser's locator: the position in the document of the
+     * current event's end.
+     *
+     * @return the locator, or null before the document has started
+     */
+    public Locator getLocator() {
+        return locator;
+    }
+
+    /** Scans until an event is complete. */
+    private void fill() throws SAXException, IOException {
+        while (ready == head) {
+            if (parser.isPaused()) {
+                parser.resume();
+            } else if (inputPending) {
+                parser.receive(input);
+                inputPending = parser.isPaused();
+            } else if (inputEnded) {
+                // close() reports endDocument, or the document's truncation
+                throw new IllegalStateException("No events after end of input");
+            } else {
+                input.compact();
+                int n = source.read(input);
+                input.flip();
+                if (n < 0) {
+                    inputEnded = true;
+                    parser.close();
+                } else if (n > 0) {
+                    parser.receive(input);
+                    inputPending = parser.isPaused();
+                }
+            }
+        }
+    }
+
+    // ===== Element events =====
+
+    /**
+     * Returns the qualified name of the current element.
+     *
+     * @return the qName
+     * @throws IllegalStateException unless at START_ELEMENT or END_ELEMENT
+     */
+    public String getName() {
+        checkElement();
+        return qNames[current];
+    }
+
+    /**
+     * Returns the local name of the current element: its qName if the
+     * parser is not namespace-aware.
+     *
+     * @return the local name
+     * @throws IllegalStateException unless at START_ELEMENT or END_ELEMENT
+     */
+    public String getLocalName() {
+        checkElement();
+        return localNames[current];
+    }
+
+    /**
+     * Returns the namespace URI of the current element.
+     *
+     * @return the namespace URI, or the empty string if none
+     * @throws IllegalStateException unless at START_ELEMENT or END_ELEMENT
+     */
+    public String getNamespaceURI() {
+        checkElement();
+        return uris[current];
+    }
+
+    /**
+     * Returns the number of attributes of the current element.
+     *
+     * @return the number of attributes
+     * @throws IllegalStateException unless at START_ELEMENT
+     */
+    public int getAttributeCount() {
+        checkStartElement();
+        return attrCounts[current];
+    }
+
+    /**
+     * Returns an attribute's qualified name.
+     *
+     * @param index the attribute index (zero-based)
+     * @return the qName
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String getAttributeName(int index) {
+        return attrQNames[attr(index)];
+    }
+
+    /**
+     * Returns an attribute's local name: its qName if the parser is not
+     * namespace-aware.
+     *
+     * @param index the attribute index (zero-based)
+     * @return the local name
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String getAttributeLocalName(int index) {
+        return attrLocalNames[attr(index)];
+    }
+
+    /**
+     * Returns an attribute's namespace URI.
+     *
+     * @param index the attribute index (zero-based)
+     * @return the namespace URI, or the empty string if none
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String getAttributeNamespace(int index) {
+        return attrUris[attr(index)];
+    }
+
+    /**
+     * Returns an attribute's type, {@code "CDATA"} unless the DTD declares
+     * another.
+     *
+     * @param index the attribute index (zero-based)
+     * @return the type
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String getAttributeType(int index) {
+        return attrTypes[attr(index)];
+    }
+
+    /**
+     * Returns an attribute's value as a new String.
+     *
+     * @param index the attribute index (zero-based)
+     * @return the value
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String getAttributeValue(int index) {
+        return segmentString(attrValues[attr(index)]);
+    }
+
+    /**
+     * Returns an attribute's value as a view of the parser's buffer, valid
+     * until the next call to {@link #next()} or to this method. The view
+     * must not be modified.
+     *
+     * @param index the attribute index (zero-based)
+     * @return the value
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public CharBuffer getAttributeValueCharacters(int index) {
+        int seg = attrValues[attr(index)];
+        attrView = view(attrView, seg);
+        return attrView;
+    }
+
+    /**
+     * Returns the value of the current element's attribute with a given
+     * name, as a new String.
+     *
+     * @param namespaceURI the attribute's namespace URI, or null to match
+     *        its qName against localName instead
+     * @param localName the attribute's local name
+     * @return the value, or null if the element has no such attribute
+     * @throws IllegalStateException unless at START_ELEMENT
+     */
+    public String getAttributeValue(String namespaceURI, String localName) {
+        checkStartElement();
+        int start = attrStarts[current];
+        int end = start + attrCounts[current];
+        for (int i = start; i < end; i++) {
+            if (namespaceURI == null
+                    ? localName.equals(attrQNames[i])
+                    : localName.equals(attrLocalNames[i]) && namespaceURI.equals(attrUris[i])) {
+                return segmentString(attrValues[i]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of namespace declarations on the current element.
+     *
+     * @return the number of declarations; 0 if the parser is not
+     *         namespace-aware
+     * @throws IllegalStateException unless at START_ELEMENT
+     */
+    public int getNamespaceCount() {
+        checkStartElement();
+        return nsCounts[current];
+    }
+
+    /**
+     * Returns the prefix a namespace declaration on the current element
+     * binds.
+     *
+     * @param index the declaration index (zero-based)
+     * @return the prefix, or the empty string for the default namespace
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String getNamespacePrefix(int index) {
+        return nsPrefixes[ns(index)];
+    }
+
+    /**
+     * Returns the URI a namespace declaration on the current element binds
+     * its prefix to.
+     *
+     * @param index the declaration index (zero-based)
+     * @return the namespace URI
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public String getNamespaceURI(int index) {
+        return nsURIs[ns(index)];
+    }
+
+    // ===== Text events =====
+
+    /**
+     * Returns the text of the current character data or comment, or the
+     * data of the current processing instruction, as a new String.
+     *
+     * @return the text
+     * @throws IllegalStateException if the current event has no text
+     */
+    public String getText() {
+        return segmentString(text());
+    }
+
+    /**
+     * Returns the text of the current event as a view of the parser's
+     * buffer, valid until the next call to {@link #next()}. The view must
+     * not be modified.
+     *
+     * @return the text
+     * @throws IllegalStateException if the current event has no text
+     */
+    public CharBuffer getTextCharacters() {
+        textView = view(textView, text());
+        return textView;
+    }
+
+    /**
+     * Returns the length of the current event's text.
+     *
+     * @return the number of characters
+     * @throws IllegalStateException if the current event has no text
+     */
+    public int getTextLength() {
+        return segLengths[text()];
+    }
+
+    /**
+     * Returns the target of the current processing instruction.
+     *
+     * @return the target
+     * @throws IllegalStateException unless at PROCESSING_INSTRUCTION
+     */
+    public String getPITarget() {
+        if (getEventType() != PROCESSING_INSTRUCTION) {
+            throw new IllegalStateException("Not at a processing instruction");
+        }
+        return qNames[current];
+    }
+
+    // ===== Accessor helpers =====
+
+    private void checkElement() {
+        int type = getEventType();
+        if (type != START_ELEMENT && type != END_ELEMENT) {
+            throw new IllegalStateException("Not at an element");
+        }
+    }
+
+    private void checkStartElement() {
+        if (getEventType() != START_ELEMENT) {
+            throw new IllegalStateException("Not at a start tag");
+        }
+    }
+
+    private int attr(int index) {
+        checkStartElement();
+        if (index < 0 || index >= attrCounts[current]) {
+            throw new IndexOutOfBoundsException("Attribute index " + index);
+        }
+        return attrStarts[current] + index;
+    }
+
+    private int ns(int index) {
+        checkStartElement();
+        if (index < 0 || index >= nsCounts[current]) {
+            throw new IndexOutOfBoundsException("Namespace index " + index);
+        }
+        return nsStarts[current] + index;
+    }
+
+    private int text() {
+        int seg = current < 0 ? -1 : texts[current];
+        if (seg < 0) {
+            throw new IllegalStateException("Current event has no text");
+        }
+        return seg;
+    }
+
+    private String segmentString(int seg) {
+        char[] array = segArrays[seg];
+        return new String(array != null ? array : arena, segStarts[seg], segLengths[seg]);
+    }
+
+    private CharBuffer view(CharBuffer view, int seg) {
+        char[] array = segArrays[seg];
+        if (array == null) {
+            array = arena;
+        }
+        if (view == null || view.array() != array) {
+            view = CharBuffer.wrap(array);
+        }
+        int start = segStarts[seg];
+        view.limit(start + segLengths[seg]);
+        view.position(start);
+        return view;
+    }
+
+    // ===== Queue =====
+
+    private void clearQueue() {
+        if (tail > ready) {
+            // An event still being reported refers to the arena
+            return;
+        }
+        head = ready = tail = 0;
+        attrTotal = 0;
+        nsTotal = 0;
+        segCount = 0;
+        arenaLength = 0;
+    }
+
+    /** Appends an event, to be completed by {@link #complete()}. */
+    private int addEvent(int type, String qName, String uri, String localName) {
+        if (tail == types.length) {
+            int n = tail * 2;
+            types = Arrays.copyOf(types, n);
+            qNames = Arrays.copyOf(qNames, n);
+            uris = Arrays.copyOf(uris, n);
+            localNames = Arrays.copyOf(localNames, n);
+            texts = Arrays.copyOf(texts, n);
+            attrStarts = Arrays.copyOf(attrStarts, n);
+            attrCounts = Arrays.copyOf(attrCounts, n);
+            nsStarts = Arrays.copyOf(nsStarts, n);
+            nsCounts = Arrays.copyOf(nsCounts, n);
+        }
+        int index = tail++;
+        types[index] = type;
+        qNames[index] = qName;
+        uris[index] = uri;
+        localNames[index] = localName;
+        texts[index] = -1;
+        attrStarts[index] = attrTotal;
+        attrCounts[index] = 0;
+        nsStarts[index] = nsTotal;
+        nsCounts[index] = 0;
+        return index;
+    }
+
+    /** Marks the last event complete, and stops the parser after the
+     *  construct that reported it. */
+    private void complete() {
+        ready = tail;
+        parser.pause();
+    }
+
+    private int addSegment() {
+        if (segCount == segArrays.length) {
+            int n = segCount * 2;
+            segArrays = Arrays.copyOf(segArrays, n);
+            segStarts = Arrays.copyOf(segStarts, n);
+            segLengths = Arrays.copyOf(segLengths, n);
+        }
+        int seg = segCount++;
+        segArrays[seg] = null;
+        segStarts[seg] = arenaLength;
+        segLengths[seg] = 0;
+        return seg;
+    }
+
+    /**
+     * Adds a chunk to a segment: by reference if it is the first, otherwise
+     * by copying both into the end of the arena.
+     */
+    private void appendChunk(int seg, CharBuffer chunk) {
+        int len = chunk.remaining();
+        if (len == 0) {
+            return;
+        }
+        if (segLengths[seg] == 0 && chunk.hasArray()) {
+            segArrays[seg] = chunk.array();
+            segStarts[seg] = chunk.arrayOffset() + chunk.position();
+            segLengths[seg] = len;
+            return;
+        }
+        if (segArrays[seg] != null) {
+            toArena(seg);
+        } else if (segStarts[seg] + segLengths[seg] != arenaLength) {
+            // Another segment has been copied in after this one
+            int segLength = segLengths[seg];
+            ensureArena(segLength);
+            System.arraycopy(arena, segStarts[seg], arena, arenaLength, segLength);
+            segStarts[seg] = arenaLength;
+            arenaLength += segLength;
+        }
+        ensureArena(len);
+        int pos = chunk.position();
+        if (chunk.hasArray()) {
+            System.arraycopy(chunk.array(), chunk.arrayOffset() + pos, arena, arenaLength, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                arena[arenaLength + i] = chunk.get(pos + i);
+            }
+        }
+        arenaLength += len;
+        segLengths[seg] += len;
+    }
+
+    /** Copies a segment that refers to another buffer into the arena. */
+    private void toArena(int seg) {
+        int len = segLengths[seg];
+        ensureArena(len);
+        System.arraycopy(segArrays[seg], segStarts[seg], arena, arenaLength, len);
+        segArrays[seg] = null;
+        segStarts[seg] = arenaLength;
+        arenaLength += len;
+    }
+
+    private void ensureArena(int len) {
+        if (arenaLength + len > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + len));
+        }
+    }
+
+    /**
+     * Receives the parser's events, queueing them for the cursor.
+     */
+    private final class Events implements XMLHandler {
+
+        /** The segment of the text, comment or PI data being reported in
+         *  chunks, or of the attribute value; -1 if none. */
+        private int openSegment = -1;
+        /** Whether {@link #openSegment} is a run of character data. */
+        private boolean textOpen;
+        private boolean inCDATA;
+        private boolean inDTD;
+
+        private int element = -1;
+        private String attributeName;
+        private String attributeType;
+
+        @Override
+        public void setLocator(Locator locator) {
+            XMLCursor.this.locator = locator;
+        }
+
+        @Override
+        public void setXml11(boolean xml11) {
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            addEvent(START_DOCUMENT, null, null, null);
+            complete();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            endText();
+            addEvent(END_DOCUMENT, null, null, null);
+            complete();
+        }
+
+        @Override
+        public void startElement(String qName) throws SAXException {
+            endText();
+            element = addEvent(START_ELEMENT, qName, "", qName);
+            if (namespaceTracker != null) {
+                namespaceTracker.pushContext();
+            }
+        }
+
+        @Override
+        public void namespace(String prefix, String uri) throws SAXException {
+            namespaceTracker.declarePrefix(prefix, uri);
+        }
+
+        @Override
+        public void startAttribute(String name, String type, boolean declared, boolean specified)
+                throws SAXException {
+            int start = attrStarts[element];
+            for (int i = start; i < attrTotal; i++) {
+                if (attrQNames[i] == name) {
+                    throw fatalError("Duplicate attribute: " + name);
+                }
+            }
+            attributeName = name;
+            attributeType = type;
+            openSegment = addSegment();
+        }
+
+        @Override
+        public void attributeValueContent(CharBuffer value, boolean end) throws SAXException {
+            appendChunk(openSegment, value);
+            if (end) {
+                if (attrTotal == attrQNames.length) {
+                    int n = attrTotal * 2;
+                    attrQNames = Arrays.copyOf(attrQNames, n);
+                    attrUris = Arrays.copyOf(attrUris, n);
+                    attrLocalNames = Arrays.copyOf(attrLocalNames, n);
+                    attrTypes = Arrays.copyOf(attrTypes, n);
+                    attrValues = Arrays.copyOf(attrValues, n);
+                }
+                attrQNames[attrTotal] = attributeName;
+                attrUris[attrTotal] = "";
+                attrLocalNames[attrTotal] = attributeName;
+                attrTypes[attrTotal] = attributeType;
+                attrValues[attrTotal] = openSegment;
+                attrTotal++;
+                attrCounts[element]++;
+                openSegment = -1;
+            }
+        }
+
+        @Override
+        public void endAttributes() throws SAXException {
+            int index = element;
+            String qName = qNames[index];
+            if (namespaceTracker != null) {
+                int count = namespaceTracker.getCurrentScopeDeclarationCount();
+                for (int i = 0; i < count; i++) {
+                    if (nsTotal == nsPrefixes.length) {
+                        nsPrefixes = Arrays.copyOf(nsPrefixes, nsTotal * 2);
+                        nsURIs = Arrays.copyOf(nsURIs, nsTotal * 2);
+                    }
+                    nsPrefixes[nsTotal] = namespaceTracker.getCurrentScopeDeclarationPrefix(i);
+                    nsURIs[nsTotal] = namespaceTracker.getCurrentScopeDeclarationURI(i);
+                    nsTotal++;
+                }
+                nsCounts[index] = count;
+                resolveAttributes(attrStarts[index], attrTotal);
+                resolve(qName, false);
+                uris[index] = namespaceTracker.getResolvedURI();
+                localNames[index] = namespaceTracker.getResolvedLocalName();
+            }
+            if (depth == stackQNames.length) {
+                stackQNames = Arrays.copyOf(stackQNames, depth * 2);
+                stackURIs = Arrays.copyOf(stackURIs, depth * 2);
+                stackLocalNames = Arrays.copyOf(stackLocalNames, depth * 2);
+            }
+            stackQNames[depth] = qName;
+            stackURIs[depth] = uris[index];
+            stackLocalNames[depth] = localNames[index];
+            depth++;
+            element = -1;
+            complete();
+        }
+
+        /** Resolves prefixed attribute names, once the element's namespace
+         *  declarations are all known, and checks their expanded names
+         *  are distinct. */
+        private void resolveAttributes(int start, int end) throws SAXException {
+            for (int i = start; i < end; i++) {
+                String qName = attrQNames[i];
+                if (qName.indexOf(':') <= 0 || qName.startsWith("xmlns:")) {
+                    continue;
+                }
+                resolve(qName, true);
+                String uri = namespaceTracker.getResolvedURI();
+                String localName = namespaceTracker.getResolvedLocalName();
+                for (int j = start; j < end; j++) {
+                    if (j != i && localName.equals(attrLocalNames[j]) && uri.equals(attrUris[j])) {
+                        throw fatalError("Duplicate attribute by expanded name: {" + uri + "}" + localName
+                                + " (qName: " + qName + ")");
+                    }
+                }
+                attrUris[i] = uri;
+                attrLocalNames[i] = localName;
+            }
+        }
+
+        private void resolve(String qName, boolean isAttribute) throws SAXException {
+            try {
+                namespaceTracker.resolve(qName, isAttribute);
+            } catch (NamespaceException e) {
+                throw fatalError(e.getMessage());
+            }
+        }
+
+        @Override
+        public void characters(CharBuffer text, boolean ignorable, boolean end) throws SAXException {
+            if (!textOpen) {
+                if (!text.hasRemaining()) {
+                    return;
+                }
+                int type = inCDATA ? CDATA : ignorable ? SPACE : CHARACTERS;
+                int index = addEvent(type, null, null, null);
+                openSegment = addSegment();
+                texts[index] = openSegment;
+                textOpen = true;
+            }
+            appendChunk(openSegment, text);
+            if (end) {
+                endText();
+            }
+        }
+
+        /** Completes the run of character data being reported, if any: at
+         *  the end flag, or at the next markup if that comes first. */
+        private void endText() {
+            if (textOpen) {
+                textOpen = false;
+                openSegment = -1;
+                complete();
+            }
+        }
+
+        @Override
+        public void endElement() throws SAXException {
+            endText();
+            depth--;
+            addEvent(END_ELEMENT, stackQNames[depth], stackURIs[depth], stackLocalNames[depth]);
+            stackQNames[depth] = null;
+            stackURIs[depth] = null;
+            stackLocalNames[depth] = null;
+            if (namespaceTracker != null) {
+                namespaceTracker.popContext();
+            }
+            complete();
+        }
+
+        @Override
+        public void startComment() throws SAXException {
+            endText();
+            if (inDTD) {
+                return;
+            }
+            int index = addEvent(COMMENT, null, null, null);
+            openSegment = addSegment();
+            texts[index] = openSegment;
+        }
+
+        @Override
+        public void commentData(CharBuffer text, boolean end) throws SAXException {
+            if (inDTD) {
+                return;
+            }
+            appendChunk(openSegment, text);
+            if (end) {
+                openSegment = -1;
+                complete();
+            }
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            endText();
+            inCDATA = true;
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            endText();
+            inCDATA = false;
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) throws SAXException {
+            inDTD = true;
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+            inDTD = false;
+        }
+
+        @Override
+        public void startEntity(String name) throws SAXException {
+        }
+
+        @Override
+        public void endEntity(String name) throws SAXException {
+        }
+
+        @Override
+        public void notationDecl(String name, String publicId, String systemId) throws SAXException {
+        }
+
+        @Override
+        public void unparsedEntityDecl(String name, String publicId, String systemId, String notationName)
+                throws SAXException {
+        }
+
+        @Override
+        public void piTarget(String target) throws SAXException {
+            if (inDTD) {
+                return;
+            }
+            endText();
+            int index = addEvent(PROCESSING_INSTRUCTION, target, null, null);
+            openSegment = addSegment();
+            texts[index] = openSegment;
+        }
+
+        @Override
+        public void piData(CharBuffer data, boolean end) throws SAXException {
+            if (inDTD) {
+                return;
+            }
+            appendChunk(openSegment, data);
+            if (end) {
+                openSegment = -1;
+                complete();
+            }
+        }
+
+        @Override
+        public void saveBuffers() throws SAXException {
+            for (int seg = 0; seg < segCount; seg++) {
+                if (segArrays[seg] != null) {
+                    toArena(seg);
+                }
+            }
+        }
+
+        @Override
+        public SAXException fatalError(String message) throws SAXException {
+            return new SAXParseException(message, locator);
+        }
+
+        @Override
+        public void error(String message) throws SAXException {
+            // Validity errors are not reported, as with a SAX parser that
+            // has no ErrorHandler
+        }
+
+    }
+
+}
@@ -171,6 +171,23 @@
  * parser.close();
  * }</pre>
  *
+ * <h2>Pull Parsing (XMLCursor)</h2>
+ *
+ * <p>{@link org.bluezoo.gonzalez.XMLCursor} reads a document one event at
+ * a time, StAX-style, driving a Parser itself and reading its input only
+ * as needed. Names are the parser's own Strings, and text and attribute
+ * values are views of its scan buffer:
+ *
+ * <pre>{@code
+ * XMLCursor cursor = new XMLCursor(stream);
+ * while (cursor.hasNext()) {
+ *     if (cursor.next() == XMLCursor.CHARACTERS) {
+ *         CharBuffer text = cursor.getTextCharacters();
+ *         // ...
+ *     }
+ * }
+ * }</pre>
+ *
  * <h2>XML Serialization (XMLWriter)</h2>
  *
  * <p>The {@link org.bluezoo.gonzalez.XMLWriter} provides a streaming XML
@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.schema.xsd;
 
+import java.io.Serializable;
+
 /**
  * Represents an XSD attribute declaration.
  *
@@ -34,7 +36,9 @@ package org.bluezoo.gonzalez.schema.xsd;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public class XSDAttribute {
+public class XSDAttribute implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     
     /**
      * Attribute use mode.
@@ -41,6 +41,8 @@ import java.util.Map;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class XSDComplexType extends XSDType {
+
+    private static final long serialVersionUID = 1L;
     
     /**
      * Content type of the complex type.
@@ -85,7 +87,7 @@ public class XSDComplexType extends XSDType {
     
     // Attribute declarations
     private final Map<String, XSDAttribute> attributes = new LinkedHashMap<>();
-    private Map<String, XSDAttribute> cachedMergedAttributes;
+    private transient Map<String, XSDAttribute> cachedMergedAttributes;
     
     // Content model (simplified: just a list of allowed child elements)
     private final List<XSDParticle> particles = new ArrayList<>();
@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.schema.xsd;
 
+import java.io.Serializable;
+
 /**
  * Represents an XSD element declaration.
  *
@@ -35,7 +37,9 @@ package org.bluezoo.gonzalez.schema.xsd;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public class XSDElement {
+public class XSDElement implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     
     private final String name;
     private final String namespaceURI;
@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.schema.xsd;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -39,7 +40,9 @@ import java.util.Set;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public class XSDParticle {
+public class XSDParticle implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     
     /**
      * Kind of particle in a content model.
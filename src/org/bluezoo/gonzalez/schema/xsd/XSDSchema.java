@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.schema.xsd;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,7 +34,9 @@ import java.util.Map;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public class XSDSchema {
+public class XSDSchema implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     
     /**
      * XML Schema namespace URI.
@@ -324,6 +327,61 @@ public class XSDSchema {
         }
     }
     
+    /**
+     * Returns the local names of all elements and attributes declared in
+     * this schema, global or local - the vocabulary of its instance
+     * documents, for seeding an {@link org.bluezoo.gonzalez.NameDictionary}.
+     *
+     * @return the declared names
+     */
+    public java.util.Set<String> getDeclaredNames() {
+        java.util.Set<String> names = new java.util.LinkedHashSet<>();
+        java.util.Set<XSDType> visited = new java.util.HashSet<>();
+        for (XSDElement element : globalElements.values()) {
+            collectDeclaredNames(element, names, visited);
+        }
+        for (XSDAttribute attribute : globalAttributes.values()) {
+            names.add(attribute.getName());
+        }
+        for (XSDType type : types.values()) {
+            collectDeclaredNames(type, names, visited);
+        }
+        return names;
+    }
+
+    private void collectDeclaredNames(XSDElement element, java.util.Set<String> names,
+                                      java.util.Set<XSDType> visited) {
+        names.add(element.getName());
+        if (element.getType() != null) {
+            collectDeclaredNames(element.getType(), names, visited);
+        }
+    }
+
+    private void collectDeclaredNames(XSDType type, java.util.Set<String> names,
+                                      java.util.Set<XSDType> visited) {
+        if (!(type instanceof XSDComplexType) || !visited.add(type)) {
+            return;
+        }
+        XSDComplexType complexType = (XSDComplexType) type;
+        names.addAll(complexType.getAttributes().keySet());
+        for (XSDParticle particle : complexType.getParticles()) {
+            collectDeclaredNames(particle, names, visited);
+        }
+        if (complexType.getBaseType() != null) {
+            collectDeclaredNames(complexType.getBaseType(), names, visited);
+        }
+    }
+
+    private void collectDeclaredNames(XSDParticle particle, java.util.Set<String> names,
+                                      java.util.Set<XSDType> visited) {
+        if (particle.getElement() != null) {
+            collectDeclaredNames(particle.getElement(), names, visited);
+        }
+        for (XSDParticle child : particle.getChildren()) {
+            collectDeclaredNames(child, names, visited);
+        }
+    }
+
     @Override
     public String toString() {
         return "XSDSchema[targetNamespace=" + targetNamespace + 
@@ -46,6 +46,8 @@ import java.util.regex.Pattern;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class XSDSimpleType extends XSDType {
+
+    private static final long serialVersionUID = 1L;
     
     /** Resource path for type hierarchy configuration */
     private static final String TYPE_HIERARCHY_RESOURCE = "/META-INF/xsd-type-hierarchy.properties";
@@ -154,7 +156,7 @@ public class XSDSimpleType extends XSDType {
     private WhitespaceHandling whitespace = WhitespaceHandling.PRESERVE;
     
     // Compiled pattern cache for performance
-    private Pattern compiledPattern;
+    private transient Pattern compiledPattern;
     
     /**
      * Whitespace handling modes for simple types.
@@ -1199,6 +1201,19 @@ public class XSDSimpleType extends XSDType {
         return null; // Valid
     }
     
+    /**
+     * Resolves a deserialized built-in type to the shared instance.
+     */
+    private Object readResolve() {
+        if (XSDSchema.XSD_NAMESPACE.equals(getNamespaceURI())) {
+            XSDSimpleType builtIn = BUILT_IN_TYPE_MAP.get(getName());
+            if (builtIn != null) {
+                return builtIn;
+            }
+        }
+        return this;
+    }
+    
     @Override
     public String toString() {
         return "XSDSimpleType[" + super.toString() + ", variety=" + variety + "]";
@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.schema.xsd;
 
+import java.io.Serializable;
+
 /**
  * Base class for XSD type definitions.
  *
@@ -32,7 +34,9 @@ package org.bluezoo.gonzalez.schema.xsd;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public abstract class XSDType {
+public abstract class XSDType implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     
     private final String name;
     private final String namespaceURI;
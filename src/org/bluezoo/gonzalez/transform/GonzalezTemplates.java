@@ -23,10 +23,15 @@ package org.bluezoo.gonzalez.transform;
 
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
 import org.bluezoo.gonzalez.transform.compiler.OutputProperties;
+import org.bluezoo.gonzalez.transform.compiler.StreamabilityReport;
+import org.bluezoo.gonzalez.transform.compiler.StylesheetArchive;
+import org.bluezoo.gonzalez.transform.runtime.TemplateMatcher;
 
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Properties;
 
 /**
@@ -114,6 +119,52 @@ public class GonzalezTemplates implements Templates {
         return props;
     }
 
+    /**
+     * Returns the memo cache for xsl:function declarations with
+     * cache="yes". Its hit, miss and eviction counts cover all
+     * transformers created from these templates.
+     *
+     * @return the function result cache
+     */
+    public FunctionResultCache getFunctionResultCache() {
+        return stylesheet.getFunctionResultCache();
+    }
+
+    /**
+     * Returns the template matcher shared by all transformers created from
+     * these templates.
+     *
+     * @return the template matcher
+     */
+    public TemplateMatcher getTemplateMatcher() {
+        return stylesheet.getTemplateMatcher();
+    }
+
+    /**
+     * Returns how the templates of the stylesheet were classified for
+     * streaming, and the constructs that keep each template that buffers
+     * from streaming.
+     *
+     * @return the streamability report
+     */
+    public StreamabilityReport getStreamabilityReport() {
+        return StreamabilityReport.of(stylesheet);
+    }
+
+    /**
+     * Writes the compiled stylesheet to a stream in binary form, so that
+     * it can later be loaded with
+     * {@link GonzalezTransformerFactory#loadTemplates} without recompiling
+     * the XSLT source. The archive is only readable by the same version of
+     * Gonzalez. The stream is not closed.
+     *
+     * @param out the output stream
+     * @throws IOException if the stylesheet cannot be written
+     */
+    public void save(OutputStream out) throws IOException {
+        StylesheetArchive.write(stylesheet, out);
+    }
+
     /**
      * Returns the compiled stylesheet.
      *
@@ -121,6 +121,11 @@ public class GonzalezTransformHandler extends DefaultHandler
 
     /** Resource URIs declared available by the test environment. */
     private List<String> availableResourceUris;
+
+    /** What the templates of the transformation buffered. */
+    private GroundedBuffering groundedBuffering;
+    private TransformStatistics statistics;
+    private Profiler profiler;
     
     /** PSVIProvider for accessing schema type information (DTD/XSD types). */
     private PSVIProvider psviProvider;
@@ -142,6 +147,15 @@ public class GonzalezTransformHandler extends DefaultHandler
     private boolean nativeCommentDataFirstChunk;
     private final StringBuilder nativeCommentDataBuffer = new StringBuilder();
 
+    // Source projection: the projection of the current element (null to
+    // build the whole tree), whether the tree is projected at all, those
+    // of its ancestors, and the depth within a subtree being left out
+    private DocumentProjection.Node currentProjection;
+    private boolean projecting;
+    private final List<DocumentProjection.Node> projectionStack = new ArrayList<>();
+    private int skipDepth;
+    private final Deque<Map<String, String>> skippedNsBindings = new ArrayDeque<>();
+
     // Buffer for unparsed entity declarations received before startDocument()
     private List<String[]> pendingUnparsedEntities;
 
@@ -173,7 +187,7 @@ public class GonzalezTransformHandler extends DefaultHandler
         this.stylesheet = stylesheet;
         this.parameters = parameters;
         this.outputHandler = outputHandler;
-        this.matcher = new TemplateMatcher(stylesheet);
+        this.matcher = stylesheet.getTemplateMatcher();
         this.errorListener = errorListener;
     }
 
@@ -287,6 +301,35 @@ public class GonzalezTransformHandler extends DefaultHandler
         this.availableResourceUris = uris;
     }
 
+    /**
+     * Sets the record of what the templates of the
+     * transformation buffered.
+     *
+     * @param buffering the grounded buffering state
+     */
+    public void setGroundedBuffering(GroundedBuffering buffering) {
+        this.groundedBuffering = buffering;
+    }
+
+    /**
+     * Sets the statistics the transformation reports what it buffered to.
+     *
+     * @param statistics the statistics of the transformation
+     */
+    public void setTransformStatistics(TransformStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Sets the profiler that the instrumented templates, functions and
+     * expressions of the transformation report to.
+     *
+     * @param profiler the profiler
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
     /**
      * Sets an XPath expression to select the initial context node from the
      * source tree. Used when the source specifies a select attribute.
@@ -337,6 +380,7 @@ public class GonzalezTransformHandler extends DefaultHandler
         currentNode = root;
         documentOrderCounter = 1;
         pendingNamespaces.clear();
+        startProjection();
 
         if (pendingUnparsedEntities != null) {
             for (String[] entity : pendingUnparsedEntities) {
@@ -390,14 +434,21 @@ public class GonzalezTransformHandler extends DefaultHandler
 
     @Override
     public void endAttributes() throws SAXException {
+        Map<String, String> parentBindings;
+        if (skipDepth > 0) {
+            parentBindings = skippedNsBindings.peek();
+        } else {
+            parentBindings = currentNode != null
+                    ? currentNode.getNamespaceBindingsForChild() : null;
+        }
         Map<String, String> nsBindings;
         boolean hadPending = !pendingNamespaces.isEmpty();
-        if (!hadPending && currentNode != null) {
-            nsBindings = currentNode.getNamespaceBindingsForChild();
+        if (!hadPending && parentBindings != null) {
+            nsBindings = parentBindings;
         } else {
             reusableNsBindings.clear();
-            if (currentNode != null) {
-                reusableNsBindings.putAll(currentNode.getNamespaceBindingsForChild());
+            if (parentBindings != null) {
+                reusableNsBindings.putAll(parentBindings);
             }
             reusableNsBindings.putAll(pendingNamespaces);
             pendingNamespaces.clear();
@@ -410,6 +461,14 @@ public class GonzalezTransformHandler extends DefaultHandler
         String elementUri = NativeExpandedNames.resolveNamespaceURI(
                 elementPrefix, false, nsBindings);
         nativeAttributes.resolveAndCheckDuplicates(nsBindings);
+        if (!enterElement(elementUri, elementLocalName)) {
+            // Left out, but names below it must still resolve
+            if (nsBindings == reusableNsBindings) {
+                nsBindings = new HashMap<>(nsBindings);
+            }
+            skippedNsBindings.push(nsBindings);
+            return;
+        }
         StreamingNode element = StreamingNode.createElement(
                 elementUri, elementLocalName, elementPrefix, null,
                 nsBindings, currentNode, documentOrderCounter);
@@ -437,13 +496,17 @@ public class GonzalezTransformHandler extends DefaultHandler
     @Override
     public void characters(CharBuffer text, boolean ignorable, boolean end)
             throws SAXException {
-        if (!ignorable) {
+        if (!ignorable && isTextKept()) {
             textBuffer.append(text);
         }
     }
 
     @Override
     public void endElement() throws SAXException {
+        if (leaveElement()) {
+            skippedNsBindings.pop();
+            return;
+        }
         flushTextBuffer();
         currentNode = (StreamingNode) currentNode.getParent();
     }
@@ -484,6 +547,9 @@ public class GonzalezTransformHandler extends DefaultHandler
             nsBindings = reusableNsBindings;
         }
         pendingNamespaces.clear();
+        if (!enterElement(uri, localName)) {
+            return;
+        }
         
         // Create element node - pass PSVIProvider for type information if available
         StreamingNode element = StreamingNode.createElement(
@@ -500,6 +566,9 @@ public class GonzalezTransformHandler extends DefaultHandler
 
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (leaveElement()) {
+            return;
+        }
         flushTextBuffer();
         
         // Move back to parent
@@ -508,7 +577,9 @@ public class GonzalezTransformHandler extends DefaultHandler
 
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException {
-        textBuffer.append(ch, start, length);
+        if (isTextKept()) {
+            textBuffer.append(ch, start, length);
+        }
     }
 
     @Override
@@ -520,6 +591,9 @@ public class GonzalezTransformHandler extends DefaultHandler
     @Override
     public void processingInstruction(String target, String data) throws SAXException {
         flushTextBuffer();
+        if (!isOtherContentKept()) {
+            return;
+        }
         StreamingNode pi = StreamingNode.createPI(target, data, currentNode, documentOrderCounter++);
         setEntityBaseURIIfNeeded(pi);
     }
@@ -547,6 +621,9 @@ public class GonzalezTransformHandler extends DefaultHandler
             }
             value = nativePIDataBuffer.toString();
         }
+        if (!isOtherContentKept()) {
+            return;
+        }
         StreamingNode pi = StreamingNode.createPI(
                 nativePITarget, value, currentNode, documentOrderCounter++);
         setEntityBaseURIIfNeeded(pi);
@@ -576,12 +653,18 @@ public class GonzalezTransformHandler extends DefaultHandler
             }
             value = nativeCommentDataBuffer.toString();
         }
+        if (!isOtherContentKept()) {
+            return;
+        }
         StreamingNode.createComment(value, currentNode, documentOrderCounter++);
     }
     
     @Override
     public void comment(char[] ch, int start, int length) throws SAXException {
         flushTextBuffer();
+        if (!isOtherContentKept()) {
+            return;
+        }
         String text = new String(ch, start, length);
         StreamingNode.createComment(text, currentNode, documentOrderCounter++);
     }
@@ -701,6 +784,77 @@ public class GonzalezTransformHandler extends DefaultHandler
         }
     }
     
+    /**
+     * Starts building a projected source tree if the transformation applies
+     * templates to the document node in the default mode, the only start
+     * the stylesheet's projection is computed for.
+     */
+    private void startProjection() {
+        projectionStack.clear();
+        skippedNsBindings.clear();
+        skipDepth = 0;
+        currentProjection = null;
+        projecting = false;
+        if (initialTemplate == null && initialFunctionLocalName == null
+                && initialMode == null && initialModeSelect == null
+                && initialContextSelect == null
+                && hasInitialContextItem && hasMatchSelection) {
+            DocumentProjection projection = stylesheet.getDocumentProjection();
+            if (projection != null) {
+                currentProjection = projection.getRoot();
+                projecting = true;
+            }
+        }
+    }
+
+    /**
+     * Enters a child element of the current node.
+     *
+     * @return true to build the element, false if it is left out
+     */
+    private boolean enterElement(String uri, String localName) {
+        if (skipDepth > 0) {
+            skipDepth++;
+            return false;
+        }
+        if (currentProjection != null) {
+            DocumentProjection.Node child = currentProjection.getChild(uri, localName);
+            if (child == null) {
+                skipDepth = 1;
+                return false;
+            }
+            projectionStack.add(currentProjection);
+            currentProjection = child;
+        }
+        return true;
+    }
+
+    /**
+     * Leaves the current element.
+     *
+     * @return true if the element was left out
+     */
+    private boolean leaveElement() {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return true;
+        }
+        if (currentProjection != null) {
+            currentProjection = projectionStack.remove(projectionStack.size() - 1);
+        }
+        return false;
+    }
+
+    private boolean isTextKept() {
+        return skipDepth == 0
+                && (currentProjection == null || currentProjection.isTextKept());
+    }
+
+    private boolean isOtherContentKept() {
+        return skipDepth == 0
+                && (currentProjection == null || currentProjection.isOtherContentKept());
+    }
+
     private void flushTextBuffer() {
         if (textBuffer.length() > 0) {
             String text = textBuffer.toString();
@@ -805,6 +959,9 @@ public class GonzalezTransformHandler extends DefaultHandler
 
     private void executeTransformation() throws SAXException {
         OutputHandler output = outputHandler;
+        if (statistics != null) {
+            statistics.setSourceTree(documentOrderCounter - 1, projecting);
+        }
         
         // Determine initial context node (may be overridden by initialContextSelect)
         XPathNode contextNode = root;
@@ -851,6 +1008,10 @@ public class GonzalezTransformHandler extends DefaultHandler
                 context.addAvailableResourceUri(resUri);
             }
         }
+        if (groundedBuffering != null) {
+            context.setGroundedBuffering(groundedBuffering);
+        }
+        context.setProfiler(profiler);
         
         // Wire accumulators for the main document (manager created now,
         // but initialization deferred until globals are available)
@@ -1342,6 +1503,7 @@ public class GonzalezTransformHandler extends DefaultHandler
                             new BufferOutputHandler(buffer);
                         templateParam.getDefaultContent()
                             .execute(execContext, bufferOutput);
+                        GroundedBuffering.recordTree(execContext, buffer);
                         value = new XPathResultTreeFragment(buffer);
                     }
                 }
@@ -1635,6 +1797,7 @@ public class GonzalezTransformHandler extends DefaultHandler
                     SAXEventBuffer buffer = new SAXEventBuffer();
                     BufferOutputHandler bufferOutput = new BufferOutputHandler(buffer);
                     var.getContent().execute(context, bufferOutput);
+                    GroundedBuffering.recordTree(context, buffer);
                     String varBaseUri = var.getBaseUri();
                     if (varBaseUri == null) {
                         varBaseUri = context.getStaticBaseURI();
@@ -1910,6 +2073,7 @@ public class GonzalezTransformHandler extends DefaultHandler
                     SAXEventBuffer buffer = new SAXEventBuffer();
                     BufferOutputHandler bufferOutput = new BufferOutputHandler(buffer);
                     templateParam.getDefaultContent().execute(templateContext, bufferOutput);
+                    GroundedBuffering.recordTree(templateContext, buffer);
                     defaultValue = new XPathResultTreeFragment(buffer);
                 }
             } else {
@@ -1929,34 +2093,53 @@ public class GonzalezTransformHandler extends DefaultHandler
             // If the template requires grounded execution, run through
             // GroundedExecutor so that reverse-axis navigation works.
             BufferingStrategy strategy = rule.getBufferingStrategy();
-            if (strategy == BufferingStrategy.GROUNDED && node.isFullyNavigable() == false) {
-                executeGroundedTemplate(body, node, templateContext, output, rule);
-                return;
-            }
-
-            String asType = rule.getAsType();
-            if (asType != null && !asType.isEmpty()) {
-                SequenceBuilderOutputHandler seqBuilder = new SequenceBuilderOutputHandler();
-                body.execute(templateContext, seqBuilder);
-                XPathValue result = seqBuilder.getSequence();
-                
-                SequenceType expectedType = rule.getParsedAsType();
-                if (expectedType == null) {
-                    expectedType = SequenceType.parse(asType, null);
+            if (strategy == BufferingStrategy.GROUNDED) {
+                if (node.isFullyNavigable() == false) {
+                    executeGroundedTemplate(body, node, templateContext, output, rule);
+                    return;
                 }
-                if (expectedType != null && !expectedType.matches(result, SchemaContext.NONE)) {
-                    String templateDesc = rule.getName() != null ?
-                        "named template '" + rule.getName() + "'" :
-                        "template matching '" + rule.getMatchPattern() + "'";
-                    throw new SAXException("XTTE0505: Required item type of " +
-                        templateDesc + " is " + asType +
-                        "; supplied value does not match");
+                // The node is already navigable: time it as a grounded execution
+                long start = System.nanoTime();
+                try {
+                    executeTemplateBody(rule, body, templateContext, output);
+                } finally {
+                    GroundedBuffering.recordGrounded(templateContext, rule,
+                            System.nanoTime() - start);
                 }
-                
-                outputValidatedResult(result, output);
             } else {
-                body.execute(templateContext, output);
+                executeTemplateBody(rule, body, templateContext, output);
+            }
+        }
+    }
+
+    /**
+     * Executes a template body, validating its result against the
+     * template's declared type if it has one.
+     */
+    private void executeTemplateBody(TemplateRule rule, XSLTNode body,
+            TransformContext templateContext, OutputHandler output) throws SAXException {
+        String asType = rule.getAsType();
+        if (asType != null && !asType.isEmpty()) {
+            SequenceBuilderOutputHandler seqBuilder = new SequenceBuilderOutputHandler();
+            body.execute(templateContext, seqBuilder);
+            XPathValue result = seqBuilder.getSequence();
+            
+            SequenceType expectedType = rule.getParsedAsType();
+            if (expectedType == null) {
+                expectedType = SequenceType.parse(asType, null);
+            }
+            if (expectedType != null && !expectedType.matches(result, SchemaContext.NONE)) {
+                String templateDesc = rule.getName() != null ?
+                    "named template '" + rule.getName() + "'" :
+                    "template matching '" + rule.getMatchPattern() + "'";
+                throw new SAXException("XTTE0505: Required item type of " +
+                    templateDesc + " is " + asType +
+                    "; supplied value does not match");
             }
+            
+            outputValidatedResult(result, output);
+        } else {
+            body.execute(templateContext, output);
         }
     }
 
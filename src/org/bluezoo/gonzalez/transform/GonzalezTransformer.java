@@ -21,7 +21,9 @@
 
 package org.bluezoo.gonzalez.transform;
 
+import org.bluezoo.gonzalez.Metrics;
 import org.bluezoo.gonzalez.Parser;
+import org.bluezoo.gonzalez.ParserPool;
 import org.bluezoo.gonzalez.schema.PSVIProvider;
 import org.bluezoo.gonzalez.transform.ast.ApplyTemplatesNode;
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
@@ -33,15 +35,16 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 import org.bluezoo.gonzalez.transform.compiler.OutputProperties;
 import org.bluezoo.gonzalez.transform.runtime.AccumulatorManager;
 import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.Profiler;
 import org.bluezoo.gonzalez.transform.runtime.HTMLOutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.StreamingContext;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
 import org.bluezoo.gonzalez.transform.runtime.StreamingTransformHandler;
 import org.bluezoo.gonzalez.transform.runtime.TemplateMatcher;
 import org.bluezoo.gonzalez.transform.runtime.TextOutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.XMLWriterOutputHandler;
 import org.xml.sax.*;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
@@ -52,6 +55,7 @@ import javax.xml.transform.stream.StreamSource;
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
@@ -126,6 +130,22 @@ public class GonzalezTransformer extends Transformer {
     /** Allowed protocols for external DTD access. */
     private String accessExternalDTD = "";
 
+    /** Grounded buffering of the last transformation. */
+    private GroundedBuffering groundedBuffering;
+    private TransformStatistics statistics;
+    private Profiler profiler;
+
+    /** Metrics measuring the current transformation, or null. */
+    private Metrics metrics;
+    /** Counts the bytes written to a stream result, when measured. */
+    private CountingChannel outputCounter;
+
+    /** Parsers for the source documents of identity transforms. */
+    private static final ParserPool IDENTITY_PARSER_POOL = new ParserPool();
+
+    /** The parser getXMLReader() borrowed for the current transformation. */
+    private Parser borrowedParser;
+
     /**
      * Creates a transformer with a stylesheet (or null for identity transform).
      *
@@ -154,6 +174,9 @@ public class GonzalezTransformer extends Transformer {
      */
     @Override
     public void transform(Source xmlSource, Result outputTarget) throws TransformerException {
+        metrics = Metrics.getMetrics();
+        outputCounter = null;
+        long start = (metrics != null) ? System.nanoTime() : 0L;
         try {
             if (stylesheet == null) {
                 // Identity transform
@@ -162,8 +185,29 @@ public class GonzalezTransformer extends Transformer {
                 // XSLT transform
                 performTransform(xmlSource, outputTarget);
             }
+            if (metrics != null) {
+                recordMetrics(System.nanoTime() - start);
+            }
         } catch (SAXException | IOException e) {
             throw new TransformerException(e);
+        } finally {
+            releaseXMLReader();
+            metrics = null;
+            outputCounter = null;
+        }
+    }
+
+    private void recordMetrics(long nanos) {
+        metrics.record(Metrics.TRANSFORM, nanos);
+        if (stylesheet != null && statistics.getSourceNodes() > 0) {
+            metrics.increment(statistics.isProjected()
+                    ? Metrics.TRANSFORM_PROJECTED : Metrics.TRANSFORM_FULL_DOCUMENT, 1L);
+            metrics.increment(Metrics.TRANSFORM_SOURCE_NODES, statistics.getSourceNodes());
+        } else {
+            metrics.increment(Metrics.TRANSFORM_STREAMED, 1L);
+        }
+        if (outputCounter != null) {
+            metrics.increment(Metrics.TRANSFORM_OUTPUT_BYTES, outputCounter.count);
         }
     }
 
@@ -246,6 +290,14 @@ public class GonzalezTransformer extends Transformer {
         if (availableResourceUris != null) {
             transformHandler.setAvailableResourceUris(availableResourceUris);
         }
+        groundedBuffering = new GroundedBuffering();
+        transformHandler.setGroundedBuffering(groundedBuffering);
+        statistics = new TransformStatistics(groundedBuffering);
+        transformHandler.setTransformStatistics(statistics);
+        if (stylesheet != null && stylesheet.isProfiled()) {
+            profiler = new Profiler();
+            transformHandler.setProfiler(profiler);
+        }
         
         // Parse input through the transform
         XMLReader reader = getXMLReader(source);
@@ -287,7 +339,7 @@ public class GonzalezTransformer extends Transformer {
      */
     void performStreamingPrimaryTransform(Source source, OutputHandler outputHandler)
             throws SAXException, IOException, TransformerException {
-        TemplateMatcher matcher = new TemplateMatcher(stylesheet);
+        TemplateMatcher matcher = stylesheet.getTemplateMatcher();
         BasicTransformContext parentContext = new BasicTransformContext(
                 stylesheet, null, matcher, outputHandler, errorListener);
         if (parameters != null) {
@@ -322,13 +374,17 @@ public class GonzalezTransformer extends Transformer {
         StreamingTransformHandler handler = new StreamingTransformHandler(
                 streamCtx, body, outputHandler);
 
-        XMLReader reader = getXMLReader(source);
-        if (reader instanceof Parser) {
-            ((Parser) reader).setXMLHandler(handler);
-        } else {
-            reader.setContentHandler(handler);
+        try {
+            XMLReader reader = getXMLReader(source);
+            if (reader instanceof Parser) {
+                ((Parser) reader).setXMLHandler(handler);
+            } else {
+                reader.setContentHandler(handler);
+            }
+            reader.parse(getInputSource(source));
+        } finally {
+            releaseXMLReader();
         }
-        reader.parse(getInputSource(source));
     }
 
     /**
@@ -348,14 +404,12 @@ public class GonzalezTransformer extends Transformer {
             }
         }
         
-        XMLReader reader;
-        try {
-            // Try Gonzalez parser
-            Class<?> parserClass = Class.forName("org.bluezoo.gonzalez.Parser");
-            reader = (XMLReader) parserClass.getDeclaredConstructor().newInstance();
-        } catch (Exception e) {
-            reader = XMLReaderFactory.createXMLReader();
-        }
+        // Borrowed from the stylesheet's pool, which installs its name
+        // dictionary; returned by releaseXMLReader() after the transform.
+        ParserPool pool = (stylesheet != null) ? stylesheet.getParserPool() : IDENTITY_PARSER_POOL;
+        releaseXMLReader();
+        borrowedParser = pool.acquire();
+        XMLReader reader = borrowedParser;
 
         // Configure entity processing based on accessExternalDTD setting
         boolean allowDTD = accessExternalDTD != null && !accessExternalDTD.isEmpty();
@@ -377,6 +431,15 @@ public class GonzalezTransformer extends Transformer {
         return reader;
     }
 
+    private void releaseXMLReader() {
+        Parser parser = borrowedParser;
+        if (parser != null) {
+            borrowedParser = null;
+            ParserPool pool = (stylesheet != null) ? stylesheet.getParserPool() : IDENTITY_PARSER_POOL;
+            pool.release(parser);
+        }
+    }
+
     private InputSource getInputSource(Source source) throws TransformerException {
         if (source instanceof StreamSource) {
             StreamSource ss = (StreamSource) source;
@@ -531,6 +594,10 @@ public class GonzalezTransformer extends Transformer {
             } else {
                 throw new TransformerException("StreamResult has no output target");
             }
+            if (metrics != null) {
+                outputCounter = new CountingChannel(channel);
+                channel = outputCounter;
+            }
             
             // Select handler based on output method
             // All handlers now use WritableByteChannel for NIO-native output
@@ -739,6 +806,40 @@ public class GonzalezTransformer extends Transformer {
         return initialTemplate;
     }
 
+    /**
+     * Returns the grounded buffering of the last transformation: the
+     * peak number of bytes each template buffered, and how often each
+     * grounded template ran.
+     *
+     * @return the grounded buffering, or null before the first
+     *         transformation
+     */
+    public GroundedBuffering getGroundedBuffering() {
+        return groundedBuffering;
+    }
+
+    /**
+     * Returns what the last transformation buffered: how many source
+     * nodes were built, what the templates buffered and how long the
+     * grounded templates ran.
+     *
+     * @return the statistics, or null before the first transformation
+     */
+    public TransformStatistics getTransformStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the profile of the last transformation, if the stylesheet
+     * was compiled with {@link GonzalezTransformerFactory#setProfiling}.
+     *
+     * @return the profiler, or null if the stylesheet is not profiled or
+     *         before the first transformation
+     */
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
     /**
      * Sets whether a real initial context item is available.
      * When false, accessing the focus in the initial template raises XPDY0002.
@@ -995,6 +1096,37 @@ public class GonzalezTransformer extends Transformer {
      * Used by the identity transform path to pipe SAX events from a reader
      * to an OutputHandler without going through the XSLT engine.
      */
+    /**
+     * Counts the bytes written to a stream result.
+     */
+    private static final class CountingChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+        long count;
+
+        CountingChannel(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = channel.write(src);
+            count += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
     private static class OutputHandlerSAXAdapter implements ContentHandler {
 
         private final OutputHandler output;
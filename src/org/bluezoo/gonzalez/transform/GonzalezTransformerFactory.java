@@ -33,12 +33,14 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.xml.transform.ErrorListener;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 
+import org.bluezoo.gonzalez.Metrics;
 import org.bluezoo.gonzalez.Parser;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.URIResolver;
@@ -56,6 +58,8 @@ import org.xml.sax.helpers.XMLReaderFactory;
 
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
 import org.bluezoo.gonzalez.transform.compiler.PackageResolver;
+import org.bluezoo.gonzalez.transform.compiler.ProfileInstrumenter;
+import org.bluezoo.gonzalez.transform.compiler.StylesheetArchive;
 import org.bluezoo.gonzalez.transform.compiler.StylesheetCompiler;
 import org.bluezoo.gonzalez.transform.compiler.StylesheetResolver;
 
@@ -121,6 +125,21 @@ public class GonzalezTransformerFactory extends SAXTransformerFactory {
     /** Streaming fallback (§19.10): fall back to non-streaming for non-streamable content. */
     private boolean streamingFallback = false;
 
+    /** Lifetime of xsl:function cache="yes" results. */
+    private FunctionResultCache.Scope functionCacheScope = FunctionResultCache.Scope.TRANSFORM;
+
+    /** Maximum number of cached xsl:function results. */
+    private int functionCacheSize = FunctionResultCache.DEFAULT_MAX_ENTRIES;
+
+    /** Executor for xsl:fork branches, or null for the shared default. */
+    private Executor forkExecutor;
+
+    /** Maximum number of threads per xsl:fork. */
+    private int forkParallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Whether stylesheets are instrumented for profiling. */
+    private boolean profiling = false;
+
     /**
      * Creates a new transformer factory.
      */
@@ -170,7 +189,12 @@ public class GonzalezTransformerFactory extends SAXTransformerFactory {
     @Override
     public Templates newTemplates(Source source) throws TransformerConfigurationException {
         try {
+            Metrics metrics = Metrics.getMetrics();
+            long start = (metrics != null) ? System.nanoTime() : 0L;
             CompiledStylesheet stylesheet = compileStylesheet(source);
+            if (metrics != null) {
+                metrics.record(Metrics.COMPILE, System.nanoTime() - start);
+            }
             GonzalezTemplates templates = new GonzalezTemplates(stylesheet);
             templates.setAccessExternalDTD(accessExternalDTD);
             return templates;
@@ -258,12 +282,52 @@ public class GonzalezTransformerFactory extends SAXTransformerFactory {
         }
         
         try {
-            return compiler.getCompiledStylesheet();
+            CompiledStylesheet stylesheet = compiler.getCompiledStylesheet();
+            configureStylesheet(stylesheet);
+            return stylesheet;
         } catch (TransformerConfigurationException e) {
             throw new SAXException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Loads templates from a precompiled stylesheet written by
+     * {@link GonzalezTemplates#save}. The function cache, xsl:fork and
+     * external access settings of this factory apply to the loaded
+     * templates, as they would to a freshly compiled stylesheet. The
+     * stream is not closed.
+     *
+     * @param in the precompiled stylesheet
+     * @return the templates
+     * @throws TransformerConfigurationException if the stream is not a
+     *         precompiled stylesheet, or was written by a different
+     *         version of Gonzalez
+     */
+    public Templates loadTemplates(InputStream in) throws TransformerConfigurationException {
+        try {
+            CompiledStylesheet stylesheet = StylesheetArchive.read(in);
+            configureStylesheet(stylesheet);
+            if (packageResolver != null) {
+                stylesheet.setPackageResolver(packageResolver);
+            }
+            GonzalezTemplates templates = new GonzalezTemplates(stylesheet);
+            templates.setAccessExternalDTD(accessExternalDTD);
+            return templates;
+        } catch (IOException e) {
+            throw new TransformerConfigurationException("Failed to load precompiled stylesheet", e);
+        }
+    }
+
+    private void configureStylesheet(CompiledStylesheet stylesheet) {
+        stylesheet.setFunctionResultCache(
+            new FunctionResultCache(functionCacheScope, functionCacheSize));
+        stylesheet.setForkExecutor(forkExecutor);
+        stylesheet.setForkParallelism(forkParallelism);
+        if (profiling) {
+            ProfileInstrumenter.instrument(stylesheet);
+        }
+    }
+
     /**
      * Opens a ReadableByteChannel from a URI string.
      *
@@ -447,6 +511,88 @@ public class GonzalezTransformerFactory extends SAXTransformerFactory {
         this.streamingFallback = fallback;
     }
 
+    /**
+     * Sets the lifetime of results memoized for xsl:function declarations
+     * with cache="yes". With {@link FunctionResultCache.Scope#TRANSFORM}
+     * (the default) results are discarded after each transformation. With
+     * {@link FunctionResultCache.Scope#TEMPLATES} results of calls with
+     * atomic arguments and atomic results are shared by all transformers
+     * created from the same Templates; this assumes such functions do not
+     * depend on stylesheet parameters or the source document.
+     *
+     * @param scope the cache scope
+     */
+    public void setFunctionCacheScope(FunctionResultCache.Scope scope) {
+        if (scope == null) {
+            throw new IllegalArgumentException("scope must not be null");
+        }
+        this.functionCacheScope = scope;
+    }
+
+    /**
+     * Sets the maximum number of memoized xsl:function results held per
+     * cache. Least recently used entries are evicted beyond this size.
+     * A size of 0 disables memoization.
+     *
+     * @param size the maximum number of entries
+     */
+    public void setFunctionCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        this.functionCacheSize = size;
+    }
+
+    /**
+     * Sets the executor used to run xsl:fork branches concurrently.
+     * By default a shared work-stealing pool sized to the available
+     * processors is used. On Java 21 and later, virtual threads can be
+     * used by passing {@code Executors.newVirtualThreadPerTaskExecutor()}.
+     *
+     * @param executor the executor, or null for the shared default pool
+     */
+    public void setForkExecutor(Executor executor) {
+        this.forkExecutor = executor;
+    }
+
+    /**
+     * Sets the maximum number of threads, including the calling thread,
+     * that work on the branches of a single xsl:fork. Defaults to the
+     * number of available processors; 1 runs branches sequentially.
+     *
+     * @param parallelism the maximum number of threads per fork
+     */
+    public void setForkParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.forkParallelism = parallelism;
+    }
+
+    /**
+     * Enables or disables profiling of the stylesheets this factory
+     * compiles or loads. A profiled stylesheet measures the calls, time
+     * and allocation of each template, function and instruction-level
+     * XPath expression in every transformation; the results are available
+     * from {@link GonzalezTransformer#getProfiler} afterwards. Stylesheets
+     * compiled without profiling carry no instrumentation. Disabled by
+     * default.
+     *
+     * @param profiling true to profile
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    /**
+     * Returns whether stylesheets are compiled for profiling.
+     *
+     * @return true if profiling is enabled
+     */
+    public boolean isProfiling() {
+        return profiling;
+    }
+
     /**
      * Gets the URI resolver.
      *
@@ -39,6 +39,9 @@ import org.bluezoo.gonzalez.transform.compiler.AccumulatorDefinition;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class AccumulatorRuleNode implements XSLTNode, ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final Pattern pattern;
     private final AccumulatorDefinition.Phase phase;
     private final XPathExpression newValue;
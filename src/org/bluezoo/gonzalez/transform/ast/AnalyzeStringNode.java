@@ -48,14 +48,17 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class AnalyzeStringNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;
     private final AttributeValueTemplate regexAvt;
     private final AttributeValueTemplate flagsAvt;
     private final XSLTNode matchingContent;
     private final XSLTNode nonMatchingContent;
-    private String lastRegex;
-    private int lastFlags;
-    private java.util.regex.Pattern lastPattern;
+    private transient String lastRegex;
+    private transient int lastFlags;
+    private transient java.util.regex.Pattern lastPattern;
     
     public AnalyzeStringNode(XPathExpression selectExpr, AttributeValueTemplate regexAvt,
                      AttributeValueTemplate flagsAvt, XSLTNode matchingContent,
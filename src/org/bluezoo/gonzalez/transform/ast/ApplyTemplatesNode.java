@@ -37,6 +37,8 @@ import org.bluezoo.gonzalez.transform.runtime.AccumulatorManager;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandlerUtils;
 import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
 import org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.BufferingStrategy;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer;
 import org.bluezoo.gonzalez.transform.runtime.TemplateMatcher;
@@ -63,11 +65,16 @@ import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class ApplyTemplatesNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;
     private final String mode;
     private final List<SortSpec> sorts;
     private final List<WithParamNode> params;
     private final boolean backwardsCompatible;
+    /** Minimum node count for parallel execution, or -1 if sequential. */
+    private int parallelThreshold = -1;
     public ApplyTemplatesNode(XPathExpression selectExpr, String mode, List<SortSpec> sorts, List<WithParamNode> params) {
         this(selectExpr, mode, sorts, params, false);
     }
@@ -83,6 +90,24 @@ public class ApplyTemplatesNode extends XSLTInstruction implements ExpressionHol
     public boolean isBackwardsCompatible() {
         return backwardsCompatible;
     }
+    public XPathExpression getSelectExpr() { return selectExpr; }
+    public String getMode() { return mode; }
+    public List<SortSpec> getSorts() { return sorts; }
+    public List<WithParamNode> getParams() { return params; }
+
+    /**
+     * Enables parallel processing of the selected nodes when at least
+     * {@code threshold} nodes are selected (gz:parallel).
+     *
+     * @param threshold the minimum node count, or -1 to always run sequentially
+     */
+    public void setParallelThreshold(int threshold) {
+        this.parallelThreshold = threshold;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
     @Override public String getInstructionName() { return "apply-templates"; }
 
     @Override
@@ -278,179 +303,230 @@ public class ApplyTemplatesNode extends XSLTInstruction implements ExpressionHol
                 resolvedMode = context.getCurrentMode();
             }
             boolean hasWithParams = params != null && !params.isEmpty();
-            TemplateMatcher matcher = context.getTemplateMatcher();
             AccumulatorManager sharedAccMgr = context instanceof BasicTransformContext
                 ? ((BasicTransformContext) context).getAccumulatorManager() : null;
 
-            for (XPathNode node : nodes) {
-                String effectiveMode = resolvedMode;
+            if (ParallelIteration.isEnabled(parallelThreshold, size, context)
+                    && sharedAccMgr == null) {
+                final List<XPathNode> selected = nodes;
+                final String selectedMode = resolvedMode;
+                final boolean withParams = hasWithParams;
+                ParallelIteration.execute(size, false, context, output,
+                    new ParallelIteration.Body() {
+                        public void execute(int index, TransformContext partitionContext,
+                                            OutputHandler out) throws SAXException {
+                            try {
+                                applyToNode(selected.get(index), index + 1, selected.size(),
+                                            selectedMode, withParams, partitionContext, out);
+                            } catch (XPathException e) {
+                                throw new SAXException("Error in xsl:apply-templates", e);
+                            }
+                        }
+                    });
+                return;
+            }
 
+            for (XPathNode node : nodes) {
                 if (sharedAccMgr != null) {
                     sharedAccMgr.notifyStartElement(node);
                 }
                 
-                // Match against the parent context: pattern predicates allocate
-                // their own node-local context. Then enter the template in one
-                // allocation (focus + current rule + optional scope push).
-                TemplateRule rule = matcher.findMatch(node, effectiveMode, context);
+                applyToNode(node, position, size, resolvedMode, hasWithParams, context, output);
                 
-                if (rule != null) {
-                    boolean pushScope = hasWithParams
-                        || !rule.getParameters().isEmpty()
-                        || LocalVariableDetector.declaresLocalVariables(rule.getBody());
-                    TransformContext execContext;
-                    if (context instanceof BasicTransformContext) {
-                        execContext = ((BasicTransformContext) context)
-                            .applyTemplates(node, position, size, resolvedMode, rule, pushScope);
-                    } else {
-                        TransformContext nodeContext = context.withContextNode(node)
-                            .withPositionAndSize(position, size);
-                        if (resolvedMode != null) {
-                            nodeContext = nodeContext.withMode(resolvedMode);
-                        }
-                        execContext = nodeContext.pushVariableScope()
-                            .withCurrentTemplateRule(rule);
-                    }
-                    
-                    // Collect new tunnel parameters from with-param nodes
-                    Map<String, XPathValue> newTunnelParams = null;
-                    if (hasWithParams) {
-                        for (WithParamNode param : params) {
-                            if (param.isTunnel()) {
-                                try {
-                                    if (newTunnelParams == null) {
-                                        newTunnelParams = new HashMap<>();
-                                    }
-                                    newTunnelParams.put(param.getName(), param.evaluate(context));
-                                } catch (XPathException e) {
-                                    throw new SAXException("Error evaluating tunnel param: " + e.getMessage(), e);
-                                }
+                // Fire post-descent accumulator rules
+                if (sharedAccMgr != null) {
+                    sharedAccMgr.notifyEndElement(node);
+                }
+                position++;
+            }
+        } catch (XPathException e) {
+            throw new SAXException("Error in xsl:apply-templates", e);
+        }
+    }
+    
+    /**
+     * Finds the template rule for one selected node and executes it.
+     */
+    private void applyToNode(XPathNode node, int position, int size, String resolvedMode,
+                             boolean hasWithParams, TransformContext context,
+                             OutputHandler output) throws SAXException, XPathException {
+        TemplateMatcher matcher = context.getTemplateMatcher();
+        TemplateRule rule = matcher.findMatch(node, resolvedMode, context);
+        
+        if (rule != null) {
+            boolean pushScope = hasWithParams
+                || !rule.getParameters().isEmpty()
+                || LocalVariableDetector.declaresLocalVariables(rule.getBody());
+            TransformContext execContext;
+            if (context instanceof BasicTransformContext) {
+                execContext = ((BasicTransformContext) context)
+                    .applyTemplates(node, position, size, resolvedMode, rule, pushScope);
+            } else {
+                TransformContext nodeContext = context.withContextNode(node)
+                    .withPositionAndSize(position, size);
+                if (resolvedMode != null) {
+                    nodeContext = nodeContext.withMode(resolvedMode);
+                }
+                execContext = nodeContext.pushVariableScope()
+                    .withCurrentTemplateRule(rule);
+            }
+            
+            // Collect new tunnel parameters from with-param nodes
+            Map<String, XPathValue> newTunnelParams = null;
+            if (hasWithParams) {
+                for (WithParamNode param : params) {
+                    if (param.isTunnel()) {
+                        try {
+                            if (newTunnelParams == null) {
+                                newTunnelParams = new HashMap<>();
                             }
+                            newTunnelParams.put(param.getName(), param.evaluate(context));
+                        } catch (XPathException e) {
+                            throw new SAXException("Error evaluating tunnel param: " + e.getMessage(), e);
                         }
                     }
+                }
+            }
+            
+            // Merge with existing tunnel params and update context
+            if (newTunnelParams != null && !newTunnelParams.isEmpty()) {
+                execContext = (TransformContext) execContext.withTunnelParameters(newTunnelParams);
+            }
+            
+            // Process each template parameter
+            List<TemplateParameter> templateParams = rule.getParameters();
+            if (!templateParams.isEmpty()) {
+                for (TemplateParameter templateParam : templateParams) {
+                    XPathValue value = null;
+                    boolean found = false;
                     
-                    // Merge with existing tunnel params and update context
-                    if (newTunnelParams != null && !newTunnelParams.isEmpty()) {
-                        execContext = (TransformContext) execContext.withTunnelParameters(newTunnelParams);
-                    }
-                    
-                    // Process each template parameter
-                    List<TemplateParameter> templateParams = rule.getParameters();
-                    if (!templateParams.isEmpty()) {
-                        for (TemplateParameter templateParam : templateParams) {
-                            XPathValue value = null;
-                            boolean found = false;
-                            
-                            if (templateParam.isTunnel()) {
-                                // Tunnel param: first check tunnel with-param, then context tunnel params
-                                if (hasWithParams) {
-                                    for (WithParamNode param : params) {
-                                        if (param.isTunnel() && param.getName().equals(templateParam.getName())) {
-                                            try {
-                                                value = param.evaluate(context);
-                                                found = true;
-                                            } catch (XPathException e) {
-                                                throw new SAXException("Error evaluating tunnel param: " + e.getMessage(), e);
-                                            }
-                                            break;
-                                        }
-                                    }
-                                }
-                                // If not passed directly, check context's tunnel params
-                                if (!found) {
-                                    value = execContext.getTunnelParameters().get(templateParam.getName());
-                                    found = (value != null);
-                                }
-                            } else if (hasWithParams) {
-                                // Non-tunnel param: only accept non-tunnel with-param
-                                for (WithParamNode param : params) {
-                                    if (!param.isTunnel() && param.getName().equals(templateParam.getName())) {
-                                        try {
-                                            value = param.evaluate(context);
-                                            found = true;
-                                        } catch (XPathException e) {
-                                            throw new SAXException("Error evaluating param: " + e.getMessage(), e);
-                                        }
-                                        break;
-                                    }
-                                }
-                            }
-                            
-                            if (found && value != null) {
-                                // XTTE0590: validate supplied value against declared type
-                                try {
-                                    value = templateParam.validateValue(value, "XTTE0590");
-                                } catch (XPathException e) {
-                                    throw new SAXException(e.getMessage(), e);
-                                }
-                                execContext.getVariableScope().bind(templateParam.getNamespaceURI(), templateParam.getLocalName(), value);
-                            } else {
-                                // XTDE0700: required parameter must be supplied
-                                if (templateParam.isRequired()) {
-                                    throw new SAXException("XTDE0700: Template parameter $" +
-                                        templateParam.getLocalName() + " is required but no value was supplied");
-                                }
-                                // Use default value
-                                XPathValue defaultValue = null;
-                                if (templateParam.getSelectExpr() != null) {
+                    if (templateParam.isTunnel()) {
+                        // Tunnel param: first check tunnel with-param, then context tunnel params
+                        if (hasWithParams) {
+                            for (WithParamNode param : params) {
+                                if (param.isTunnel() && param.getName().equals(templateParam.getName())) {
                                     try {
-                                        defaultValue = templateParam.getSelectExpr().evaluate(execContext);
+                                        value = param.evaluate(context);
+                                        found = true;
                                     } catch (XPathException e) {
-                                        throw new SAXException("Error evaluating param default: " + e.getMessage(), e);
+                                        throw new SAXException("Error evaluating tunnel param: " + e.getMessage(), e);
                                     }
-                                } else {
-                                    defaultValue = templateParam.evaluateDefaultContent(execContext);
+                                    break;
                                 }
+                            }
+                        }
+                        // If not passed directly, check context's tunnel params
+                        if (!found) {
+                            value = execContext.getTunnelParameters().get(templateParam.getName());
+                            found = (value != null);
+                        }
+                    } else if (hasWithParams) {
+                        // Non-tunnel param: only accept non-tunnel with-param
+                        for (WithParamNode param : params) {
+                            if (!param.isTunnel() && param.getName().equals(templateParam.getName())) {
                                 try {
-                                    defaultValue = templateParam.coerceDefaultValue(defaultValue);
-                                } catch (XPathException e) {
-                                    throw new SAXException("Error coercing parameter default: " + e.getMessage(), e);
-                                }
-                                // XTTE0600: validate default value against declared type
-                                try {
-                                    defaultValue = templateParam.validateValue(defaultValue, "XTTE0600");
+                                    value = param.evaluate(context);
+                                    found = true;
                                 } catch (XPathException e) {
-                                    throw new SAXException(e.getMessage(), e);
+                                    throw new SAXException("Error evaluating param: " + e.getMessage(), e);
                                 }
-                                execContext.getVariableScope().bind(templateParam.getNamespaceURI(), templateParam.getLocalName(), defaultValue);
+                                break;
                             }
                         }
                     }
                     
-                    if (TemplateMatcher.isBuiltIn(rule)) {
-                        executeBuiltIn(TemplateMatcher
-                            .getBuiltInType(rule), node, execContext, output);
+                    if (found && value != null) {
+                        // XTTE0590: validate supplied value against declared type
+                        try {
+                            value = templateParam.validateValue(value, "XTTE0590");
+                        } catch (XPathException e) {
+                            throw new SAXException(e.getMessage(), e);
+                        }
+                        execContext.getVariableScope().bind(templateParam.getNamespaceURI(), templateParam.getLocalName(), value);
                     } else {
-                        // XSLT 2.0+: If template has 'as' attribute, validate return type
-                        String asType = rule.getAsType();
-                        if (asType != null && !asType.isEmpty()) {
-                            // Execute to a sequence builder to capture the result
-                            SequenceBuilderOutputHandler seqBuilder = 
-                                new SequenceBuilderOutputHandler();
-                            rule.getBody().execute(execContext, seqBuilder);
-                            
-                            // Get the result sequence
-                            XPathValue result = seqBuilder.getSequence();
-                            
-                            // Validate against declared type
-                            validateTemplateReturnType(result, asType, rule);
-                            
-                            // Output the validated result
-                            outputValidatedResult(result, output);
+                        // XTDE0700: required parameter must be supplied
+                        if (templateParam.isRequired()) {
+                            throw new SAXException("XTDE0700: Template parameter $" +
+                                templateParam.getLocalName() + " is required but no value was supplied");
+                        }
+                        // Use default value
+                        XPathValue defaultValue = null;
+                        if (templateParam.getSelectExpr() != null) {
+                            try {
+                                defaultValue = templateParam.getSelectExpr().evaluate(execContext);
+                            } catch (XPathException e) {
+                                throw new SAXException("Error evaluating param default: " + e.getMessage(), e);
+                            }
                         } else {
-                            rule.getBody().execute(execContext, output);
+                            defaultValue = templateParam.evaluateDefaultContent(execContext);
                         }
+                        try {
+                            defaultValue = templateParam.coerceDefaultValue(defaultValue);
+                        } catch (XPathException e) {
+                            throw new SAXException("Error coercing parameter default: " + e.getMessage(), e);
+                        }
+                        // XTTE0600: validate default value against declared type
+                        try {
+                            defaultValue = templateParam.validateValue(defaultValue, "XTTE0600");
+                        } catch (XPathException e) {
+                            throw new SAXException(e.getMessage(), e);
+                        }
+                        execContext.getVariableScope().bind(templateParam.getNamespaceURI(), templateParam.getLocalName(), defaultValue);
                     }
                 }
-                
-                // Fire post-descent accumulator rules
-                if (sharedAccMgr != null) {
-                    sharedAccMgr.notifyEndElement(node);
-                }
-                position++;
             }
-        } catch (XPathException e) {
-            throw new SAXException("Error in xsl:apply-templates", e);
+            
+            if (TemplateMatcher.isBuiltIn(rule)) {
+                executeBuiltIn(TemplateMatcher
+                    .getBuiltInType(rule), node, execContext, output);
+            } else {
+                executeRule(rule, execContext, output, true);
+            }
+        }
+    }
+
+    /**
+     * Executes a template body, recording the time it takes if the
+     * template is grounded.
+     *
+     * @param validate whether to validate the result against the
+     *                 template's declared type
+     */
+    private void executeRule(TemplateRule rule, TransformContext execContext,
+            OutputHandler output, boolean validate) throws SAXException {
+        if (rule.getBufferingStrategy() != BufferingStrategy.GROUNDED) {
+            executeBody(rule, execContext, output, validate);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            executeBody(rule, execContext, output, validate);
+        } finally {
+            GroundedBuffering.recordGrounded(execContext, rule,
+                    System.nanoTime() - start);
+        }
+    }
+
+    private void executeBody(TemplateRule rule, TransformContext execContext,
+            OutputHandler output, boolean validate) throws SAXException {
+        // XSLT 2.0+: If template has 'as' attribute, validate return type
+        String asType = rule.getAsType();
+        if (validate && asType != null && !asType.isEmpty()) {
+            // Execute to a sequence builder to capture the result
+            SequenceBuilderOutputHandler seqBuilder = 
+                new SequenceBuilderOutputHandler();
+            rule.getBody().execute(execContext, seqBuilder);
+            
+            // Get the result sequence
+            XPathValue result = seqBuilder.getSequence();
+            
+            // Validate against declared type
+            validateTemplateReturnType(result, asType, rule);
+            
+            // Output the validated result
+            outputValidatedResult(result, output);
+        } else {
+            rule.getBody().execute(execContext, output);
         }
     }
     
@@ -763,7 +839,7 @@ public class ApplyTemplatesNode extends XSLTInstruction implements ExpressionHol
                     TransformContext execCtx = attrCtx.pushVariableScope()
                         .withCurrentTemplateRule(r);
                     bindTemplateParams(r, execCtx, context, output);
-                    r.getBody().execute(execCtx, output);
+                    executeRule(r, execCtx, output, false);
                 }
             }
         }
@@ -804,7 +880,7 @@ public class ApplyTemplatesNode extends XSLTInstruction implements ExpressionHol
                     TransformContext execCtx = childCtx.pushVariableScope()
                         .withCurrentTemplateRule(r);
                     bindTemplateParams(r, execCtx, context, output);
-                    r.getBody().execute(execCtx, output);
+                    executeRule(r, execCtx, output, false);
                 }
             }
             
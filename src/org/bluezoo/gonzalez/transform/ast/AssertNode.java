@@ -39,6 +39,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class AssertNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression testExpr;
     private final String errorCode;
     private final XSLTNode messageContent;
@@ -57,6 +57,9 @@ import org.bluezoo.gonzalez.transform.compiler.StylesheetCompiler;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class AttributeNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
     private final AttributeValueTemplate nameAvt;
     private final AttributeValueTemplate nsAvt;
@@ -99,6 +102,9 @@ public class AttributeNode extends XSLTInstruction implements ExpressionHolder {
     
     @Override public String getInstructionName() { return "attribute"; }
     public SequenceNode getContent() { return content; }
+    public AttributeValueTemplate getNameAvt() { return nameAvt; }
+    public AttributeValueTemplate getNamespaceAvt() { return nsAvt; }
+    public AttributeValueTemplate getSeparatorAvt() { return separatorAvt; }
 
     @Override
     public List<XPathExpression> getExpressions() {
@@ -48,6 +48,8 @@ import org.xml.sax.SAXException;
  */
 public final class BreakNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final XSLTNode content;
     private final XPathExpression selectExpr;
 
@@ -56,6 +56,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class CallTemplateNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final String name;
     private final List<WithParamNode> params;
     public CallTemplateNode(String name, List<WithParamNode> params) {
@@ -63,6 +66,8 @@ public class CallTemplateNode extends XSLTInstruction {
         this.params = params;
     }
     @Override public String getInstructionName() { return "call-template"; }
+    public String getName() { return name; }
+    public List<WithParamNode> getParams() { return params; }
     @Override public void execute(TransformContext context, 
                                   OutputHandler output) throws SAXException {
         // Find template by name - getNamedTemplate respects import precedence
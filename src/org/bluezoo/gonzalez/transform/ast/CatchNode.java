@@ -35,6 +35,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class CatchNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final XSLTNode content;
     private final String errorCodes;
     private final XPathExpression selectExpr;
@@ -35,6 +35,9 @@ import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class ChooseNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final List<WhenNode> whens;
     private final SequenceNode otherwise;
     public ChooseNode(List<WhenNode> whens, SequenceNode otherwise) {
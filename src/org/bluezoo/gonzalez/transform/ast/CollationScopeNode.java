@@ -37,6 +37,8 @@ import org.xml.sax.SAXException;
  */
 public final class CollationScopeNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final String collationUri;
     private final XSLTNode body;
 
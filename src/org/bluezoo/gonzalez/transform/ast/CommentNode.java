@@ -42,6 +42,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class CommentNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;
     private final SequenceNode content;
 
@@ -51,6 +54,7 @@ public class CommentNode extends XSLTInstruction implements ExpressionHolder {
     }
 
     @Override public String getInstructionName() { return "comment"; }
+    public SequenceNode getContent() { return content; }
 
     @Override
     public List<XPathExpression> getExpressions() {
@@ -58,6 +58,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class CopyNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;          // XSLT 3.0 - select items to copy (null = context item)
     private final String useAttrSets;
     private final SequenceNode content;
@@ -114,6 +117,9 @@ public class CopyNode extends XSLTInstruction implements ExpressionHolder {
     @Override public String getInstructionName() { return "copy"; }
     public SequenceNode getContent() { return content; }
     public String getUseAttributeSetsString() { return useAttrSets; }
+    public AttributeValueTemplate getInheritNamespacesAvt() { return inheritNamespacesAvt; }
+    public AttributeValueTemplate getCopyNamespacesAvt() { return copyNamespacesAvt; }
+    public XSLTNode getOnEmpty() { return onEmptyNode; }
 
     @Override
     public List<XPathExpression> getExpressions() {
@@ -53,6 +53,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class CopyOfNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;
     private final String typeNamespaceURI;
     private final String typeLocalName;
@@ -88,6 +91,7 @@ public class CopyOfNode extends XSLTInstruction implements ExpressionHolder {
     }
     
     @Override public String getInstructionName() { return "copy-of"; }
+    public AttributeValueTemplate getCopyNamespacesAvt() { return copyNamespacesAvt; }
 
     @Override
     public List<XPathExpression> getExpressions() {
@@ -24,6 +24,7 @@ package org.bluezoo.gonzalez.transform.ast;
 import org.bluezoo.gonzalez.transform.ValidationMode;
 import org.bluezoo.gonzalez.transform.compiler.SequenceBuilderOutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
 import org.bluezoo.gonzalez.transform.runtime.ItemCollectorOutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.RuntimeSchemaValidator;
@@ -52,6 +53,8 @@ import java.util.List;
  */
 public final class DocumentConstructorNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<XSLTNode> content;
     private final ValidationMode validation;
     private final String typeNamespaceURI;
@@ -121,6 +124,7 @@ public final class DocumentConstructorNode implements XSLTNode {
         
         // End the document
         bufferOutput.endDocument();
+        GroundedBuffering.recordTree(context, buffer);
         
         // Create the result tree fragment
         XPathResultTreeFragment rtf = new XPathResultTreeFragment(buffer);
@@ -46,6 +46,8 @@ import java.util.Iterator;
  */
 public final class DynamicValueOfNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final AttributeValueTemplate selectAvt;
     private final boolean disableEscaping;
     private final String separator;
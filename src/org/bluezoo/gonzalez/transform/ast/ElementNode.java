@@ -43,6 +43,9 @@ import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class ElementNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
     private final AttributeValueTemplate nameAvt;
     private final AttributeValueTemplate nsAvt;
@@ -111,6 +114,10 @@ public class ElementNode extends XSLTInstruction {
     @Override public String getInstructionName() { return "element"; }
     public SequenceNode getContent() { return content; }
     public String getUseAttributeSetsString() { return useAttrSets; }
+    public AttributeValueTemplate getNameAvt() { return nameAvt; }
+    public AttributeValueTemplate getNamespaceAvt() { return nsAvt; }
+    public XSLTNode getOnEmpty() { return onEmptyNode; }
+    public XSLTNode getOnNonEmpty() { return onNonEmptyNode; }
     @Override public void execute(TransformContext context, 
                                   OutputHandler output) throws SAXException {
         try {
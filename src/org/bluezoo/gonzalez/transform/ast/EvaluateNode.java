@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.ast;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -59,6 +60,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class EvaluateNode implements XSLTNode, ExpressionHolder {
 
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression xpathExpr;
     private final XPathExpression contextItemExpr;
     private final AttributeValueTemplate baseUriAvt;
@@ -72,7 +75,10 @@ public final class EvaluateNode implements XSLTNode, ExpressionHolder {
     /**
      * Represents an xsl:with-param child of xsl:evaluate.
      */
-    public static class WithParamNode {
+    public static class WithParamNode implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final String namespaceURI;
         private final String localName;
         private final XPathExpression select;
@@ -30,6 +30,7 @@ import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
 import org.bluezoo.gonzalez.transform.runtime.GroupingContext;
+import org.bluezoo.gonzalez.transform.runtime.VariableScope;
 import org.bluezoo.gonzalez.transform.xpath.Collation;
 import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
 import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
@@ -44,7 +45,7 @@ import org.xml.sax.SAXException;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -58,10 +59,19 @@ import java.util.Map;
  * <p>Items can be nodes or atomic values. Composite keys (XSLT 3.0)
  * are supported when {@code composite="yes"}.
  *
+ * <p>For group-by, groups are located through a hash index on the
+ * grouping key, so grouping is linear in the size of the population.
+ * When the body only uses the group through aggregates such as
+ * {@code count(current-group())} or {@code sum(current-group()/@price)}
+ * (see {@link GroupAggregation}), the aggregates are folded as items are
+ * grouped and the group members are not retained.
+ *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Grouping method for xsl:for-each-group.
      */
@@ -82,6 +92,7 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
     private final AttributeValueTemplate collationAvt;
     private final List<SortSpec> sorts;
     private final boolean composite;
+    private final GroupAggregation aggregation;
 
     public static ForEachGroupNode groupBy(XPathExpression select, XPathExpression groupByExpr,
                                             XSLTNode body) {
@@ -172,6 +183,9 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
         this.collationAvt = collationAvt;
         this.sorts = sorts != null ? sorts : Collections.emptyList();
         this.composite = composite;
+        this.aggregation = (method == GroupingMethod.GROUP_BY)
+            ? GroupAggregation.analyze(select, body, this.sorts)
+            : null;
     }
 
     public XSLTNode getBody() { return body; }
@@ -279,16 +293,7 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
                     }
                 }
 
-                XPathValue currentGroupValue = buildCurrentGroup(groupItems);
-                groupContext.getVariableScope().bind("__current_group__", currentGroupValue);
-                if (method == GroupingMethod.GROUP_BY || method == GroupingMethod.GROUP_ADJACENT) {
-                    groupContext.getVariableScope().bind("__current_grouping_key__", entry.keyValue);
-                    groupContext.getVariableScope().bind("__current_grouping_key_absent__", null);
-                } else {
-                    groupContext.getVariableScope().bind("__current_grouping_key__", null);
-                    groupContext.getVariableScope().bind("__current_grouping_key_absent__",
-                                                         XPathString.of("true"));
-                }
+                bindGroup(groupContext, entry);
 
                 if (body != null) {
                     body.execute(groupContext, output);
@@ -299,6 +304,29 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
         }
     }
 
+    /**
+     * Binds current-group(), current-grouping-key() and any folded
+     * aggregates for a group.
+     */
+    private void bindGroup(TransformContext groupContext, GroupEntry entry)
+            throws XPathException {
+        VariableScope scope = groupContext.getVariableScope();
+        if (entry.aggregateState != null) {
+            // Members were not retained: the body only sees the aggregates
+            scope.bind("__current_group__", XPathSequence.EMPTY);
+            aggregation.bind(scope, entry.aggregateState, groupContext);
+        } else {
+            scope.bind("__current_group__", buildCurrentGroup(entry.items));
+        }
+        if (method == GroupingMethod.GROUP_BY || method == GroupingMethod.GROUP_ADJACENT) {
+            scope.bind("__current_grouping_key__", entry.keyValue);
+            scope.bind("__current_grouping_key_absent__", null);
+        } else {
+            scope.bind("__current_grouping_key__", null);
+            scope.bind("__current_grouping_key_absent__", XPathString.of("true"));
+        }
+    }
+
     /**
      * Wraps an XPathNode as an XPathValue (single-item XPathNodeSet).
      * XPathNode does not extend XPathValue, so this bridge is needed
@@ -413,11 +441,23 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
         final String key;
         final XPathValue keyValue;
         final List<XPathValue> items;
+        final GroupAggregation.State aggregateState;
+        int lastItemIndex = -1;
 
         GroupEntry(String key, XPathValue keyValue, List<XPathValue> items) {
+            this(key, keyValue, items, null);
+        }
+
+        /**
+         * @param items the group members, or only the first member when
+         *        the members are folded into aggregateState
+         */
+        GroupEntry(String key, XPathValue keyValue, List<XPathValue> items,
+                   GroupAggregation.State aggregateState) {
             this.key = key;
             this.keyValue = keyValue;
             this.items = items;
+            this.aggregateState = aggregateState;
         }
     }
 
@@ -474,14 +514,15 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
     /**
      * Groups items by computed key. With composite="yes", each key component
      * is compared separately; otherwise the key is stringified.
+     * An item is added to a given group at most once, even if several of
+     * its keys are equal.
      */
     private List<GroupEntry> groupByKey(List<XPathValue> items, XPathExpression keyExpr,
                                          TransformContext context, Collation collation)
             throws XPathException {
 
-        List<String> groupKeyStrings = new ArrayList<>();
-        List<XPathValue> groupKeyValues = new ArrayList<>();
-        List<List<XPathValue>> groupItemLists = new ArrayList<>();
+        GroupKeyIndex index = new GroupKeyIndex(collation);
+        List<GroupEntry> entries = new ArrayList<>();
 
         int itemCount = items.size();
         for (int i = 0; i < itemCount; i++) {
@@ -491,8 +532,7 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
 
             if (composite) {
                 String compositeKey = compositeKeyString(keyResult);
-                addToGroup(groupKeyStrings, groupKeyValues, groupItemLists,
-                           compositeKey, keyResult, item, collation);
+                addToGroup(index, entries, compositeKey, keyResult, item, i, itemCtx);
             } else {
                 List<XPathValue> keyValues = flattenToAtomics(keyResult);
                 if (keyValues.isEmpty()) {
@@ -500,38 +540,150 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
                 }
                 for (XPathValue kv : keyValues) {
                     String key = canonicalKeyString(kv);
-                    addToGroup(groupKeyStrings, groupKeyValues, groupItemLists,
-                               key, kv, item, collation);
+                    addToGroup(index, entries, key, kv, item, i, itemCtx);
                 }
             }
         }
+        return entries;
+    }
 
-        List<GroupEntry> entries = new ArrayList<>();
-        for (int i = 0; i < groupKeyStrings.size(); i++) {
-            List<XPathValue> gItems = groupItemLists.get(i);
-            if (!gItems.isEmpty()) {
-                entries.add(new GroupEntry(groupKeyStrings.get(i),
-                                          groupKeyValues.get(i), gItems));
+    private void addToGroup(GroupKeyIndex index, List<GroupEntry> entries,
+                            String key, XPathValue keyValue, XPathValue item,
+                            int itemIndex, TransformContext itemCtx)
+            throws XPathException {
+        int groupIndex = index.find(keyValue, entries);
+        GroupEntry entry;
+        if (groupIndex < 0) {
+            List<XPathValue> members = new ArrayList<>();
+            members.add(item);
+            GroupAggregation.State state = aggregation != null ? aggregation.newState() : null;
+            entry = new GroupEntry(key, keyValue, members, state);
+            index.add(keyValue, entries.size());
+            entries.add(entry);
+        } else {
+            entry = entries.get(groupIndex);
+            if (aggregation == null && entry.lastItemIndex != itemIndex) {
+                entry.items.add(item);
             }
         }
-        return entries;
+        entry.lastItemIndex = itemIndex;
+        if (aggregation != null) {
+            aggregation.accumulate(entry.aggregateState, itemIndex, item, itemCtx);
+        }
     }
 
-    private void addToGroup(List<String> keyStrings, List<XPathValue> keyValues,
-                            List<List<XPathValue>> itemLists,
-                            String key, XPathValue keyValue, XPathValue item,
-                            Collation collation) {
-        for (int j = 0; j < keyValues.size(); j++) {
-            if (groupingKeysEqual(keyValue, keyValues.get(j), collation)) {
-                itemLists.get(j).add(item);
+    /**
+     * Hash index from grouping key to group number.
+     *
+     * <p>Keys fall into three classes: numeric values, QNames, and all
+     * other values. Two numbers or two QNames are compared by value; any
+     * other pair of keys is compared as strings under the collation (see
+     * {@link #groupingKeysEqual}). Every key is therefore chained under
+     * its string form, and numbers and QNames also under a hash of their
+     * value: numbers by their float value, which is equal for any two
+     * numbers equal under double or float comparison, QNames by their
+     * expanded name. A key only needs to be compared with the keys in
+     * those chains, and like a linear scan the index finds the first
+     * group whose key is equal. Strings under a collation other than the
+     * codepoint collation have no such hash, so keys are then compared
+     * with every group.
+     */
+    private final class GroupKeyIndex {
+
+        private static final int NUMERIC = 0;
+        private static final int QNAME = 1;
+        private static final int OTHER = 2;
+
+        private final Collation collation;
+        private final boolean hashStrings;
+        private final Map<Object, Integer> valueHeads = new HashMap<>();
+        private final Map<String, Integer> stringHeads = new HashMap<>();
+        private int[] nextValue = new int[16];
+        private int[] nextString = new int[16];
+        private int groupCount;
+
+        GroupKeyIndex(Collation collation) {
+            this.collation = collation;
+            this.hashStrings = collation == Collation.getCodepointCollation();
+        }
+
+        int find(XPathValue keyValue, List<GroupEntry> entries) {
+            if (!hashStrings) {
+                for (int g = 0; g < groupCount; g++) {
+                    if (groupingKeysEqual(keyValue, entries.get(g).keyValue, collation)) {
+                        return g;
+                    }
+                }
+                return -1;
+            }
+            // Chains run from the newest group to the oldest
+            int found = -1;
+            int keyClass = keyClass(keyValue);
+            if (keyClass != OTHER) {
+                Integer head = valueHeads.get(valueHashKey(keyValue, keyClass));
+                for (int g = head != null ? head.intValue() : -1; g >= 0; g = nextValue[g]) {
+                    XPathValue groupKey = entries.get(g).keyValue;
+                    if (keyClass(groupKey) == keyClass
+                            && groupingKeysEqual(keyValue, groupKey, collation)) {
+                        found = g;
+                    }
+                }
+            }
+            Integer head = stringHeads.get(keyValue.asString());
+            for (int g = head != null ? head.intValue() : -1; g >= 0; g = nextString[g]) {
+                if (found >= 0 && g > found) {
+                    continue;
+                }
+                int groupClass = keyClass(entries.get(g).keyValue);
+                if (groupClass != keyClass || keyClass == OTHER) {
+                    found = g;
+                }
+            }
+            return found;
+        }
+
+        void add(XPathValue keyValue, int group) {
+            if (group >= nextString.length) {
+                nextValue = java.util.Arrays.copyOf(nextValue, nextValue.length * 2);
+                nextString = java.util.Arrays.copyOf(nextString, nextString.length * 2);
+            }
+            groupCount = group + 1;
+            if (!hashStrings) {
                 return;
             }
+            int keyClass = keyClass(keyValue);
+            nextValue[group] = -1;
+            if (keyClass != OTHER) {
+                Integer head = valueHeads.put(valueHashKey(keyValue, keyClass),
+                        Integer.valueOf(group));
+                if (head != null) {
+                    nextValue[group] = head.intValue();
+                }
+            }
+            Integer head = stringHeads.put(keyValue.asString(), Integer.valueOf(group));
+            nextString[group] = head != null ? head.intValue() : -1;
+        }
+
+        private int keyClass(XPathValue value) {
+            if (value instanceof XPathNumber) {
+                return NUMERIC;
+            }
+            if (value instanceof XPathQName) {
+                return QNAME;
+            }
+            return OTHER;
+        }
+
+        private Object valueHashKey(XPathValue value, int keyClass) {
+            if (keyClass == NUMERIC) {
+                float f = (float) value.asNumber();
+                if (f == 0.0f) {
+                    f = 0.0f; // -0 and +0 are equal
+                }
+                return Float.valueOf(f);
+            }
+            return canonicalKeyString(value);
         }
-        keyStrings.add(key);
-        keyValues.add(keyValue);
-        List<XPathValue> newGroup = new ArrayList<>();
-        newGroup.add(item);
-        itemLists.add(newGroup);
     }
 
     /**
@@ -820,16 +972,7 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
             XPathValue firstItem = group.items.get(0);
             TransformContext itemCtx = itemContext(context, firstItem, i + 1, groupCount);
 
-            XPathValue currentGroupValue = buildCurrentGroup(group.items);
-            itemCtx.getVariableScope().bind("__current_group__", currentGroupValue);
-            if (method == GroupingMethod.GROUP_BY || method == GroupingMethod.GROUP_ADJACENT) {
-                itemCtx.getVariableScope().bind("__current_grouping_key__", group.keyValue);
-                itemCtx.getVariableScope().bind("__current_grouping_key_absent__", null);
-            } else {
-                itemCtx.getVariableScope().bind("__current_grouping_key__", null);
-                itemCtx.getVariableScope().bind("__current_grouping_key_absent__",
-                                                 XPathString.of("true"));
-            }
+            bindGroup(itemCtx, group);
 
             for (int j = 0; j < sortCount; j++) {
                 SortSpec spec = sorts.get(j);
@@ -959,7 +1102,8 @@ public final class ForEachGroupNode implements XSLTNode, ExpressionHolder {
 
     @Override
     public String toString() {
-        return "ForEachGroupNode[method=" + method + ", composite=" + composite + "]";
+        return "ForEachGroupNode[method=" + method + ", composite=" + composite +
+            ", aggregated=" + (aggregation != null) + "]";
     }
 
 }
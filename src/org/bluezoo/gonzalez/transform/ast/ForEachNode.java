@@ -53,11 +53,16 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class ForEachNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;
     private final List<SortSpec> sorts;
     private final SequenceNode body;
     /** Lazily: whether body declares xsl:variable / xsl:param. */
     private Boolean bodyDeclaresLocalVariables;
+    /** Minimum item count for parallel execution, or -1 if sequential. */
+    private int parallelThreshold = -1;
     public ForEachNode(XPathExpression selectExpr, List<SortSpec> sorts, SequenceNode body) {
         this.selectExpr = selectExpr;
         this.sorts = sorts;
@@ -65,6 +70,21 @@ public class ForEachNode extends XSLTInstruction implements ExpressionHolder {
     }
     @Override public String getInstructionName() { return "for-each"; }
     public SequenceNode getBody() { return body; }
+    public List<SortSpec> getSorts() { return sorts; }
+
+    /**
+     * Enables parallel execution of the body when at least {@code threshold}
+     * nodes are selected (gz:parallel).
+     *
+     * @param threshold the minimum node count, or -1 to always run sequentially
+     */
+    public void setParallelThreshold(int threshold) {
+        this.parallelThreshold = threshold;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
 
     private boolean bodyNeedsLocalScope() {
         Boolean cached = bodyDeclaresLocalVariables;
@@ -123,6 +143,21 @@ public class ForEachNode extends XSLTInstruction implements ExpressionHolder {
         }
         
         int size = nodes.size();
+        if (ParallelIteration.isEnabled(parallelThreshold, size, context)) {
+            final List<XPathNode> selected = nodes;
+            final boolean localScope = bodyNeedsLocalScope();
+            ParallelIteration.execute(size, true, context, output,
+                new ParallelIteration.Body() {
+                    public void execute(int index, TransformContext partitionContext,
+                                        OutputHandler out) throws SAXException {
+                        TransformContext iterContext = ((BasicTransformContext) partitionContext)
+                            .forEachIteration(selected.get(index), index + 1,
+                                              selected.size(), localScope);
+                        body.execute(iterContext, out);
+                    }
+                });
+            return;
+        }
         int position = 1;
         boolean first = true;
         for (XPathNode node : nodes) {
@@ -0,0 +1,140 @@
+/*
+ * ForkCostEstimator.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.bluezoo.gonzalez.transform.xpath.expr.BinaryExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.ContextItemExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Expr;
+import org.bluezoo.gonzalez.transform.xpath.expr.FunctionCall;
+import org.bluezoo.gonzalez.transform.xpath.expr.Literal;
+import org.bluezoo.gonzalez.transform.xpath.expr.Step;
+import org.bluezoo.gonzalez.transform.xpath.expr.TypeExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.UnaryExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.VariableReference;
+
+/**
+ * Static cost estimate for an xsl:fork branch.
+ *
+ * <p>The estimate is a rough count of the instructions and expression
+ * operators the branch evaluates, used only to decide whether handing a
+ * branch to another thread is worthwhile. Anything whose cost depends on
+ * the size of the input or on other templates and functions (loops,
+ * template and function calls, descendant or sibling axes, document
+ * access) is reported as {@link #UNBOUNDED}.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+final class ForkCostEstimator extends InstructionWalker {
+
+    /** Cost of a branch whose work cannot be bounded statically. */
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private static final String FN_NAMESPACE = "http://www.w3.org/2005/xpath-functions";
+
+    private int cost;
+
+    private ForkCostEstimator() {
+    }
+
+    /**
+     * Estimates the cost of executing an instruction tree.
+     *
+     * @param node the instruction tree (may be null)
+     * @return the estimated cost, or {@link #UNBOUNDED}
+     */
+    static int estimate(XSLTNode node) {
+        ForkCostEstimator estimator = new ForkCostEstimator();
+        return estimator.walk(node) ? estimator.cost : UNBOUNDED;
+    }
+
+    @Override
+    boolean visitInstruction(XSLTNode node) {
+        if (node instanceof ForEachNode) {
+            // A loop costs as much as its input is long
+            return false;
+        }
+        if (!(node instanceof SequenceNode) && !(node instanceof ChooseNode)) {
+            add(1);
+        }
+        return true;
+    }
+
+    @Override
+    Visit visitExpr(Expr expr) {
+        if (expr instanceof FunctionCall) {
+            FunctionCall fc = (FunctionCall) expr;
+            String ns = fc.getResolvedNamespaceURI();
+            if (ns != null && !ns.isEmpty() && !FN_NAMESPACE.equals(ns)) {
+                // User-defined or extension function
+                return Visit.REJECT;
+            }
+            if (fc.getPrefix() != null && !fc.getPrefix().isEmpty() && ns == null) {
+                return Visit.REJECT;
+            }
+            if (isDocumentAccess(fc.getLocalName())) {
+                return Visit.REJECT;
+            }
+            add(2);
+        } else if (expr instanceof Literal || expr instanceof VariableReference
+                || expr instanceof ContextItemExpr || expr instanceof BinaryExpr
+                || expr instanceof UnaryExpr || expr instanceof TypeExpr) {
+            add(1);
+        }
+        return Visit.DESCEND;
+    }
+
+    @Override
+    boolean visitStep(Step step) {
+        switch (step.getAxis()) {
+            case CHILD:
+            case ATTRIBUTE:
+            case SELF:
+            case PARENT:
+                add(2);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isDocumentAccess(String name) {
+        switch (name) {
+            case "doc":
+            case "document":
+            case "collection":
+            case "uri-collection":
+            case "unparsed-text":
+            case "unparsed-text-lines":
+            case "json-doc":
+            case "transform":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void add(int n) {
+        long sum = (long) cost + n;
+        cost = sum >= UNBOUNDED ? UNBOUNDED : (int) sum;
+    }
+
+}
@@ -21,7 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.ast;
 
-import org.bluezoo.gonzalez.transform.runtime.AccumulatorManager;
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
 import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandlerUtils;
@@ -31,12 +31,15 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -65,28 +68,64 @@ import java.util.concurrent.atomic.AtomicInteger;
  *   <li>All branches receive the same SAX events</li>
  *   <li>Each branch has its own accumulator state</li>
  *   <li>Outputs are combined in document order</li>
- *   <li>Branches execute concurrently using a dedicated thread pool</li>
+ *   <li>Branches execute concurrently on the stylesheet's fork executor</li>
  * </ul>
  *
+ * <p>The calling thread executes the first branch itself, writing straight
+ * to the output, and then helps with any branch no other thread has
+ * started. Only the remaining branches are buffered and replayed in order.
+ * Because the caller never waits for a branch that has not been claimed,
+ * nested forks cannot deadlock on a bounded executor. At most
+ * {@link CompiledStylesheet#getForkParallelism()} threads work on one fork,
+ * and forks whose branches are cheap (as estimated from the instruction
+ * tree) run sequentially on the calling thread.
+ *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public final class ForkNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Branches whose combined estimated cost is at most this are run
+     * sequentially: the hand-off would cost more than the work.
+     */
+    static final int INLINE_COST_THRESHOLD = 64;
+
+    /**
+     * Shared default executor, created on first use. Worker threads are
+     * daemon threads so they don't prevent JVM shutdown.
+     */
+    private static volatile ForkJoinPool defaultExecutor;
+
     /**
-     * Dedicated thread pool for fork branch execution.
-     * Uses daemon threads so they don't prevent JVM shutdown.
+     * Returns the shared default fork executor.
+     *
+     * @return a work-stealing pool sized to the available processors
      */
-    private static final ExecutorService FORK_EXECUTOR = Executors.newCachedThreadPool(
-        new ThreadFactory() {
-            private final AtomicInteger counter = new AtomicInteger(0);
-            
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(r, "xsl-fork-" + counter.incrementAndGet());
-                t.setDaemon(true);
-                return t;
+    public static Executor getDefaultExecutor() {
+        ForkJoinPool pool = defaultExecutor;
+        if (pool == null) {
+            synchronized (ForkNode.class) {
+                pool = defaultExecutor;
+                if (pool == null) {
+                    final AtomicInteger counter = new AtomicInteger(0);
+                    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                        new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                            public ForkJoinWorkerThread newThread(ForkJoinPool p) {
+                                ForkJoinWorkerThread t = ForkJoinPool
+                                    .defaultForkJoinWorkerThreadFactory.newThread(p);
+                                t.setName("xsl-fork-" + counter.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        }, null, true);
+                    defaultExecutor = pool;
+                }
             }
         }
-    );
+        return pool;
+    }
 
     /**
      * Represents a branch within xsl:fork.
@@ -95,7 +134,10 @@ public final class ForkNode implements XSLTNode {
      * All branches receive the same SAX events but maintain independent
      * accumulator state.
      */
-    public static final class ForkBranch {
+    public static final class ForkBranch implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final XSLTNode content;
 
         /**
@@ -118,6 +160,7 @@ public final class ForkNode implements XSLTNode {
     }
 
     private final List<ForkBranch> branches;
+    private final boolean inline;
 
     /**
      * Creates a new fork instruction.
@@ -126,6 +169,11 @@ public final class ForkNode implements XSLTNode {
      */
     public ForkNode(List<ForkBranch> branches) {
         this.branches = branches != null ? new ArrayList<>(branches) : new ArrayList<>();
+        long cost = 0;
+        for (ForkBranch branch : this.branches) {
+            cost += ForkCostEstimator.estimate(branch.getContent());
+        }
+        this.inline = cost <= INLINE_COST_THRESHOLD;
     }
 
     /**
@@ -140,6 +188,16 @@ public final class ForkNode implements XSLTNode {
         return branches;
     }
 
+    /**
+     * Returns true if the branches are cheap enough to run sequentially
+     * on the calling thread.
+     *
+     * @return true if this fork is executed inline
+     */
+    public boolean isInline() {
+        return inline;
+    }
+
     @Override
     public void execute(TransformContext context, OutputHandler output) throws SAXException {
         int branchCount = branches.size();
@@ -156,76 +214,82 @@ public final class ForkNode implements XSLTNode {
             }
             return;
         }
-        
-        // Multiple branches - execute in parallel
-        final SAXEventBuffer[] results = new SAXEventBuffer[branchCount];
-        final BufferOutputHandler[] bufferHandlers = new BufferOutputHandler[branchCount];
-        final SAXException[] errors = new SAXException[1];
-        final CountDownLatch latch = new CountDownLatch(branchCount);
-        
+
+        CompiledStylesheet stylesheet = context.getStylesheet();
+        Executor executor = stylesheet != null ? stylesheet.getForkExecutor() : null;
+        int parallelism = stylesheet != null
+            ? stylesheet.getForkParallelism() : Runtime.getRuntime().availableProcessors();
+        if (executor == null) {
+            executor = getDefaultExecutor();
+        }
+
+        // Tiny branches or no parallelism: run in order, straight to output
+        if (inline || parallelism <= 1) {
+            for (int i = 0; i < branchCount; i++) {
+                XSLTNode content = branches.get(i).getContent();
+                if (content != null) {
+                    content.execute(cloneContextForBranch(context), output);
+                }
+            }
+            return;
+        }
+
+        // Each branch gets its own context, created on this thread
+        TransformContext[] branchContexts = new TransformContext[branchCount];
         for (int i = 0; i < branchCount; i++) {
-            final int index = i;
-            final ForkBranch branch = branches.get(index);
-            
-            if (branch.getContent() == null) {
-                results[index] = new SAXEventBuffer();
-                latch.countDown();
-                continue;
+            if (branches.get(i).getContent() != null) {
+                branchContexts[i] = cloneContextForBranch(context);
             }
-            
-            final TransformContext branchContext = cloneContextForBranch(context);
-            
-            FORK_EXECUTOR.execute(new Runnable() {
-                public void run() {
-                    try {
-                        SAXEventBuffer buffer = new SAXEventBuffer();
-                        BufferOutputHandler bufferHandler = new BufferOutputHandler(buffer);
-                        branch.getContent().execute(branchContext, bufferHandler);
-                        bufferHandler.flush();
-                        results[index] = buffer;
-                        bufferHandlers[index] = bufferHandler;
-                    } catch (SAXException e) {
-                        synchronized (errors) {
-                            if (errors[0] == null) {
-                                errors[0] = e;
-                            }
-                        }
-                    } catch (Exception e) {
-                        synchronized (errors) {
-                            if (errors[0] == null) {
-                                errors[0] = new SAXException("Error in fork branch " + index, e);
-                            }
-                        }
-                    } finally {
-                        latch.countDown();
+        }
+        final ForkExecution fork = new ForkExecution(branchContexts);
+
+        // Helpers claim branches 1..n-1; at most parallelism threads in total
+        int helpers = Math.min(parallelism, branchCount) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        fork.runClaimedBranches();
                     }
-                }
-            });
+                });
+            } catch (RejectedExecutionException e) {
+                // The calling thread will run the unclaimed branches
+                break;
+            }
         }
-        
-        // Wait for all branches to complete
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new SAXException("Fork execution interrupted", e);
+
+        // Streaming hand-off: the first branch writes directly to output
+        XSLTNode first = branches.get(0).getContent();
+        if (first != null) {
+            try {
+                first.execute(branchContexts[0], output);
+            } catch (SAXException e) {
+                fork.fail(e);
+            } catch (RuntimeException e) {
+                fork.fail(new SAXException("Error in fork branch 0", e));
+            }
         }
+
+        // Help with any branch not yet started, then wait for the rest
+        fork.runClaimedBranches();
+        fork.await();
         
         // Check for errors
-        if (errors[0] != null) {
-            throw errors[0];
+        if (fork.error != null) {
+            throw fork.error;
         }
         
-        // Replay all buffers to output in document order.
+        // Replay buffered branches to output in document order.
         // First pass: emit any parent attributes/namespaces (for the enclosing element).
-        for (int i = 0; i < branchCount; i++) {
-            if (bufferHandlers[i] != null) {
-                List<String[]> pns = bufferHandlers[i].getParentNamespaces();
+        for (int i = 1; i < branchCount; i++) {
+            BufferOutputHandler bufferHandler = fork.handlers[i];
+            if (bufferHandler != null) {
+                List<String[]> pns = bufferHandler.getParentNamespaces();
                 for (int j = 0; j < pns.size(); j++) {
                     String[] ns = pns.get(j);
                     output.namespace(ns[0], ns[1]);
                 }
-                List<String[]> pa = bufferHandlers[i].getParentAttributes();
+                List<String[]> pa = bufferHandler.getParentAttributes();
                 for (int j = 0; j < pa.size(); j++) {
                     String[] attr = pa.get(j);
                     output.attribute(attr[0], attr[1], attr[2], attr[3]);
@@ -233,9 +297,79 @@ public final class ForkNode implements XSLTNode {
             }
         }
         // Second pass: replay buffered content.
-        for (int i = 0; i < branchCount; i++) {
-            if (results[i] != null) {
-                results[i].replayContent(new SAXEventAdapter(output));
+        for (int i = 1; i < branchCount; i++) {
+            if (fork.results[i] != null) {
+                fork.results[i].replayContent(new SAXEventAdapter(output));
+            }
+        }
+    }
+
+    /**
+     * State shared by the threads executing one xsl:fork. Branches 1..n-1
+     * are claimed in order from a counter by whichever thread gets there
+     * first, so each runs exactly once and the caller only ever waits for
+     * branches that are already in progress.
+     */
+    private final class ForkExecution {
+        final TransformContext[] contexts;
+        final SAXEventBuffer[] results;
+        final BufferOutputHandler[] handlers;
+        final AtomicInteger next = new AtomicInteger(1);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final CountDownLatch done;
+        volatile SAXException error;
+
+        ForkExecution(TransformContext[] contexts) {
+            this.contexts = contexts;
+            this.results = new SAXEventBuffer[contexts.length];
+            this.handlers = new BufferOutputHandler[contexts.length];
+            this.done = new CountDownLatch(contexts.length - 1);
+        }
+
+        void runClaimedBranches() {
+            int index;
+            while ((index = next.getAndIncrement()) < contexts.length) {
+                try {
+                    if (!failed.get()) {
+                        runBranch(index);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+
+        private void runBranch(int index) {
+            XSLTNode content = branches.get(index).getContent();
+            if (content == null) {
+                return;
+            }
+            try {
+                SAXEventBuffer buffer = new SAXEventBuffer();
+                BufferOutputHandler bufferHandler = new BufferOutputHandler(buffer);
+                content.execute(contexts[index], bufferHandler);
+                bufferHandler.flush();
+                results[index] = buffer;
+                handlers[index] = bufferHandler;
+            } catch (SAXException e) {
+                fail(e);
+            } catch (Exception e) {
+                fail(new SAXException("Error in fork branch " + index, e));
+            }
+        }
+
+        void fail(SAXException e) {
+            if (failed.compareAndSet(false, true)) {
+                error = e;
+            }
+        }
+
+        void await() throws SAXException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException("Fork execution interrupted", e);
             }
         }
     }
@@ -245,20 +379,10 @@ public final class ForkNode implements XSLTNode {
      * Each branch gets its own variable scope and accumulator state.
      */
     private TransformContext cloneContextForBranch(TransformContext context) {
-        // Push a new variable scope for isolation
-        TransformContext branchContext = context.pushVariableScope();
-        
-        // Clone accumulator manager if present
-        if (branchContext instanceof BasicTransformContext) {
-            BasicTransformContext btc = (BasicTransformContext) branchContext;
-            AccumulatorManager origManager = btc.getAccumulatorManager();
-            if (origManager != null) {
-                AccumulatorManager clonedManager = new AccumulatorManager(origManager, branchContext);
-                btc.setAccumulatorManager(clonedManager);
-            }
+        if (context instanceof BasicTransformContext) {
+            return ((BasicTransformContext) context).forParallelPartition();
         }
-        
-        return branchContext;
+        return context.pushVariableScope();
     }
 
     @Override
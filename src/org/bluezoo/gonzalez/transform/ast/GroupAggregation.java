@@ -0,0 +1,467 @@
+/*
+ * GroupAggregation.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.bluezoo.gonzalez.transform.compiler.SortSpec;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.runtime.VariableScope;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+import org.bluezoo.gonzalez.transform.xpath.XPathFunctionLibrary;
+import org.bluezoo.gonzalez.transform.xpath.expr.BinaryExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Expr;
+import org.bluezoo.gonzalez.transform.xpath.expr.FunctionCall;
+import org.bluezoo.gonzalez.transform.xpath.expr.Literal;
+import org.bluezoo.gonzalez.transform.xpath.expr.LocationPath;
+import org.bluezoo.gonzalez.transform.xpath.expr.PathExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Step;
+import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNumber;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathSequence;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathString;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Incremental evaluation plan for an xsl:for-each-group body that only
+ * observes its group through aggregate functions.
+ *
+ * <p>When every reference to {@code current-group()} in the group body
+ * (and in any xsl:sort keys) is the direct argument of one of
+ * {@code count}, {@code sum}, {@code min}, {@code max} or
+ * {@code string-join}, optionally followed by a relative path over the
+ * child, attribute or self axes, the grouping loop does not need to keep
+ * the members of each group. Instead each aggregate is folded as items
+ * are assigned to groups, and only the first item (the context item of
+ * the group) and the running aggregate values are retained per key.
+ *
+ * <p>Folding a path item by item gives the nodes the path selects only
+ * when no item occurs twice in the population, and in document order only
+ * when the population is in document order, as a group of nodes is. So
+ * aggregates over a path from current-group(), and string-join, whose
+ * result depends on order, are only folded when the population is
+ * selected by a path or set operation, which yields distinct nodes in
+ * document order.
+ *
+ * <p>The analysis is deliberately conservative: any instruction or
+ * expression type it does not fully understand disables the plan, and
+ * the ordinary buffered grouping is used.
+ *
+ * <p>The aggregate calls are marked with
+ * {@link FunctionCall#setPrecomputedVariable(String)} so that, when the
+ * body executes, they return the folded value bound for the current group.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+final class GroupAggregation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String FN_NAMESPACE = "http://www.w3.org/2005/xpath-functions";
+    private static final String VARIABLE_PREFIX = "__group_aggregate_";
+
+    private enum Kind {
+        COUNT,
+        SUM,
+        MIN,
+        MAX,
+        STRING_JOIN
+    }
+
+    /**
+     * A single aggregate call over current-group().
+     */
+    private static final class Aggregate implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final Kind kind;
+        final FunctionCall call;
+        final LocationPath relativePath; // null for the group items themselves
+        final Expr separator; // string-join only, may be null
+        String variableName;
+
+        Aggregate(Kind kind, FunctionCall call, LocationPath relativePath, Expr separator) {
+            this.kind = kind;
+            this.call = call;
+            this.relativePath = relativePath;
+            this.separator = separator;
+        }
+    }
+
+    /**
+     * Running aggregate values for one group.
+     */
+    static final class State {
+        final long[] counts;
+        final XPathValue[] values;
+        final StringBuilder[] joins;
+        int lastItemIndex = -1;
+
+        State(int size) {
+            counts = new long[size];
+            values = new XPathValue[size];
+            joins = new StringBuilder[size];
+        }
+    }
+
+    private final Aggregate[] aggregates;
+
+    private GroupAggregation(List<Aggregate> aggregates) {
+        this.aggregates = aggregates.toArray(new Aggregate[aggregates.size()]);
+        for (int i = 0; i < this.aggregates.length; i++) {
+            Aggregate agg = this.aggregates[i];
+            agg.variableName = VARIABLE_PREFIX + i + "__";
+            agg.call.setPrecomputedVariable(agg.variableName);
+        }
+    }
+
+    /**
+     * Analyses a group body and its sort keys.
+     *
+     * @param select the population expression
+     * @param body the group body (may be null)
+     * @param sorts the xsl:sort specifications
+     * @return the aggregation plan, or null if the group members are
+     *         needed by the body or sort keys
+     */
+    static GroupAggregation analyze(XPathExpression select, XSLTNode body,
+                                    List<SortSpec> sorts) {
+        AggregateScanner scanner = new AggregateScanner();
+        for (int i = 0; i < sorts.size(); i++) {
+            SortSpec spec = sorts.get(i);
+            if (spec.getContentBody() != null) {
+                return null;
+            }
+            if (!scanner.walk(spec.getSelectExpr())) {
+                return null;
+            }
+        }
+        if (!scanner.walk(body)) {
+            return null;
+        }
+        List<Aggregate> found = scanner.found;
+        if (!isDistinctInDocumentOrder(select)) {
+            for (int i = 0; i < found.size(); i++) {
+                Aggregate aggregate = found.get(i);
+                if (aggregate.relativePath != null
+                        || aggregate.kind == Kind.STRING_JOIN) {
+                    return null;
+                }
+            }
+        }
+        // An empty plan is still useful: the body only needs the first
+        // item and the grouping key of each group
+        return new GroupAggregation(found);
+    }
+
+    /**
+     * Creates the state for a new group.
+     *
+     * @return empty running values
+     */
+    State newState() {
+        return new State(aggregates.length);
+    }
+
+    /**
+     * Folds one item of the population into a group.
+     *
+     * @param state the group state
+     * @param itemIndex the index of the item in the population, used to
+     *        add an item to a group at most once
+     * @param item the item
+     * @param itemContext the context with the item as context item
+     * @throws XPathException if an aggregate cannot be evaluated
+     */
+    void accumulate(State state, int itemIndex, XPathValue item,
+                    TransformContext itemContext)
+            throws XPathException {
+        if (state.lastItemIndex == itemIndex) {
+            return;
+        }
+        state.lastItemIndex = itemIndex;
+        XPathFunctionLibrary library = itemContext.getFunctionLibrary();
+        for (int i = 0; i < aggregates.length; i++) {
+            Aggregate agg = aggregates[i];
+            XPathValue contribution;
+            if (agg.relativePath != null) {
+                contribution = agg.relativePath.evaluate(itemContext);
+            } else {
+                contribution = item;
+            }
+            String ns = agg.call.getResolvedNamespaceURI();
+            switch (agg.kind) {
+                case COUNT:
+                    state.counts[i] += contribution.sequenceSize();
+                    break;
+                case SUM:
+                case MIN:
+                case MAX:
+                    fold(state, i, agg, library, ns, contribution, itemContext);
+                    break;
+                case STRING_JOIN:
+                    if (contribution.sequenceSize() == 0) {
+                        break;
+                    }
+                    List<XPathValue> args = new ArrayList<XPathValue>(2);
+                    args.add(contribution);
+                    XPathValue sep = separator(agg, itemContext);
+                    if (sep != null) {
+                        args.add(sep);
+                    }
+                    String part = library.invokeFunction(ns, "string-join", args, itemContext)
+                        .asString();
+                    StringBuilder join = state.joins[i];
+                    if (join == null) {
+                        state.joins[i] = new StringBuilder(part);
+                    } else {
+                        if (sep != null) {
+                            join.append(sep.asString());
+                        }
+                        join.append(part);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Folds a contribution into a sum/min/max by applying the function to
+     * the contribution alone and then to the pair (running value, partial
+     * result). Both steps reuse the library implementation so type
+     * promotion and error behaviour match the unfolded call.
+     */
+    private void fold(State state, int i, Aggregate agg, XPathFunctionLibrary library,
+                      String ns, XPathValue contribution, TransformContext context)
+            throws XPathException {
+        String name = agg.call.getLocalName();
+        XPathValue partial = library.invokeFunction(ns, name,
+                Collections.singletonList(contribution), context);
+        if (partial == null || partial.sequenceSize() == 0) {
+            return;
+        }
+        XPathValue running = state.values[i];
+        if (running == null) {
+            state.values[i] = partial;
+            return;
+        }
+        List<XPathValue> pair = new ArrayList<XPathValue>(2);
+        pair.add(running);
+        pair.add(partial);
+        state.values[i] = library.invokeFunction(ns, name,
+                Collections.<XPathValue>singletonList(new XPathSequence(pair)), context);
+    }
+
+    private static XPathValue separator(Aggregate agg, TransformContext context)
+            throws XPathException {
+        if (agg.separator == null) {
+            return null;
+        }
+        return agg.separator.evaluate(context);
+    }
+
+    /**
+     * Binds the folded values of a group for execution of the body and
+     * sort keys.
+     *
+     * @param scope the group's variable scope
+     * @param state the group state
+     * @param context the group context, used to finish empty aggregates
+     * @throws XPathException if an empty aggregate cannot be computed
+     */
+    void bind(VariableScope scope, State state, TransformContext context)
+            throws XPathException {
+        for (int i = 0; i < aggregates.length; i++) {
+            Aggregate agg = aggregates[i];
+            XPathValue value;
+            switch (agg.kind) {
+                case COUNT:
+                    value = XPathNumber.ofInteger(state.counts[i]);
+                    break;
+                case STRING_JOIN:
+                    value = XPathString.of(state.joins[i] != null ? state.joins[i].toString() : "");
+                    break;
+                default:
+                    value = state.values[i];
+                    if (value == null) {
+                        // sum(()) is 0, min(()) and max(()) are ()
+                        value = context.getFunctionLibrary().invokeFunction(
+                            agg.call.getResolvedNamespaceURI(), agg.call.getLocalName(),
+                            Collections.<XPathValue>singletonList(XPathSequence.EMPTY), context);
+                    }
+                    break;
+            }
+            scope.bind(agg.variableName, value);
+        }
+    }
+
+    // -- Analysis --
+
+    /**
+     * Collects the aggregate calls of a body. Rejects the body if it may
+     * observe current-group() other than through a recognised aggregate.
+     */
+    private static final class AggregateScanner extends InstructionWalker {
+
+        final List<Aggregate> found = new ArrayList<Aggregate>();
+
+        @Override
+        Visit visitExpr(Expr expr) {
+            if (expr instanceof FunctionCall) {
+                FunctionCall fc = (FunctionCall) expr;
+                if ("current-group".equals(fc.getLocalName())) {
+                    // Whatever the prefix: never assume it is not ours
+                    return Visit.REJECT;
+                }
+                Aggregate agg = matchAggregate(fc);
+                if (agg != null) {
+                    found.add(agg);
+                    return Visit.SKIP;
+                }
+            }
+            return Visit.DESCEND;
+        }
+    }
+
+    /**
+     * Recognises count/sum/min/max/string-join over current-group() or
+     * over a child/attribute/self path from current-group(). Such paths
+     * select distinct nodes for distinct group items, so folding them item
+     * by item gives the same multiset as evaluating the path once.
+     */
+    private static Aggregate matchAggregate(FunctionCall fc) {
+        if (!isBuiltin(fc)) {
+            return null;
+        }
+        Kind kind;
+        String name = fc.getLocalName();
+        List<Expr> args = fc.getArguments();
+        Expr separator = null;
+        if ("count".equals(name) && args.size() == 1) {
+            kind = Kind.COUNT;
+        } else if ("sum".equals(name) && args.size() == 1) {
+            kind = Kind.SUM;
+        } else if ("min".equals(name) && args.size() == 1) {
+            kind = Kind.MIN;
+        } else if ("max".equals(name) && args.size() == 1) {
+            kind = Kind.MAX;
+        } else if ("string-join".equals(name) && (args.size() == 1 || args.size() == 2)) {
+            kind = Kind.STRING_JOIN;
+            if (args.size() == 2) {
+                separator = args.get(1);
+                if (!(separator instanceof Literal)) {
+                    return null;
+                }
+            }
+        } else {
+            return null;
+        }
+        Expr arg = args.get(0);
+        if (arg instanceof FunctionCall && isCurrentGroup((FunctionCall) arg)) {
+            return new Aggregate(kind, fc, null, separator);
+        }
+        if (!(arg instanceof PathExpr)) {
+            return null;
+        }
+        PathExpr path = (PathExpr) arg;
+        if (!(path.getFilter() instanceof FunctionCall)
+                || !isCurrentGroup((FunctionCall) path.getFilter())) {
+            return null;
+        }
+        LocationPath relative = path.getPath();
+        List<Step> steps = relative.getSteps();
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            Step.Axis axis = step.getAxis();
+            if (step.getStepExpr() != null) {
+                return null;
+            }
+            if (axis != Step.Axis.CHILD && axis != Step.Axis.ATTRIBUTE && axis != Step.Axis.SELF) {
+                return null;
+            }
+            // string-join is order sensitive: only allow attributes, whose
+            // document order always follows that of their parents
+            if (kind == Kind.STRING_JOIN && axis == Step.Axis.CHILD) {
+                return null;
+            }
+            AggregateScanner nested = new AggregateScanner();
+            if (!nested.walk(step.getPredicates()) || !nested.found.isEmpty()) {
+                return null;
+            }
+        }
+        return new Aggregate(kind, fc, relative, separator);
+    }
+
+    /**
+     * Returns whether an expression is a path or a set operation, whose
+     * result is a sequence of distinct nodes in document order.
+     */
+    private static boolean isDistinctInDocumentOrder(XPathExpression select) {
+        return select != null && isDistinctInDocumentOrder(select.getCompiledExpr());
+    }
+
+    private static boolean isDistinctInDocumentOrder(Expr expr) {
+        if (expr instanceof LocationPath) {
+            return isAxisPath((LocationPath) expr);
+        }
+        if (expr instanceof PathExpr) {
+            return isAxisPath(((PathExpr) expr).getPath());
+        }
+        if (expr instanceof BinaryExpr) {
+            return ((BinaryExpr) expr).getOperator().isSetOperator();
+        }
+        return false;
+    }
+
+    private static boolean isAxisPath(LocationPath path) {
+        if (path == null) {
+            return false;
+        }
+        List<Step> steps = path.getSteps();
+        for (int i = 0; i < steps.size(); i++) {
+            if (steps.get(i).getStepExpr() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCurrentGroup(FunctionCall fc) {
+        return "current-group".equals(fc.getLocalName()) && isBuiltin(fc);
+    }
+
+    private static boolean isBuiltin(FunctionCall fc) {
+        String ns = fc.getResolvedNamespaceURI();
+        if (ns != null) {
+            return FN_NAMESPACE.equals(ns);
+        }
+        String prefix = fc.getPrefix();
+        return prefix == null || prefix.isEmpty();
+    }
+
+}
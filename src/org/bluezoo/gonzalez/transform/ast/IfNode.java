@@ -38,6 +38,9 @@ import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class IfNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression testExpr;
     private final SequenceNode content;
     public IfNode(XPathExpression testExpr, SequenceNode content) {
@@ -36,6 +36,7 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathString;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -77,13 +78,18 @@ import java.util.Map;
  */
 public final class IterateNode implements XSLTNode, ExpressionHolder {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Parameter declaration for xsl:iterate.
      *
      * <p>Represents an iteration parameter that can be initialized with a default
      * value and updated via xsl:next-iteration for subsequent iterations.
      */
-    public static final class IterateParam {
+    public static final class IterateParam implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final String name;
         private final XPathExpression defaultValue;
         private final String asType;
@@ -65,6 +65,8 @@ import java.util.Set;
  */
 public final class LiteralResultElement implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final String namespaceURI;
     private final String localName;
     private final String prefix;
@@ -559,6 +561,24 @@ public final class LiteralResultElement implements XSLTNode {
         return useAttributeSets;
     }
 
+    /**
+     * Returns the xsl:on-empty content, if any.
+     *
+     * @return the on-empty node, or null
+     */
+    public XSLTNode getOnEmpty() {
+        return onEmptyNode;
+    }
+
+    /**
+     * Returns the xsl:on-non-empty content, if any.
+     *
+     * @return the on-non-empty node, or null
+     */
+    public XSLTNode getOnNonEmpty() {
+        return onNonEmptyNode;
+    }
+
     /**
      * Returns the type annotation namespace URI.
      *
@@ -35,6 +35,8 @@ import org.xml.sax.SAXException;
  */
 public final class LiteralText implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final String text;
     private final boolean disableOutputEscaping;
     private final boolean fromXslText;
@@ -46,6 +46,9 @@ final class LocalVariableDetector {
         if (node instanceof VariableNode || node instanceof ParamNode) {
             return true;
         }
+        if (node instanceof ProfiledNode) {
+            return declaresLocalVariables(((ProfiledNode) node).getBody());
+        }
         if (node instanceof SequenceNode) {
             for (XSLTNode child : ((SequenceNode) node).getChildren()) {
                 if (declaresLocalVariables(child)) {
@@ -45,6 +45,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class MapConstructionNode extends XSLTInstruction {
 
+    private static final long serialVersionUID = 1L;
+
     private final SequenceNode content;
 
     /**
@@ -47,6 +47,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class MapEntryNode extends XSLTInstruction implements ExpressionHolder {
 
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression keyExpr;
     private final XPathExpression selectExpr;
     private final SequenceNode content;
@@ -42,6 +42,7 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathString;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -86,6 +87,8 @@ import java.util.Set;
  */
 public final class MergeNode implements XSLTNode, ExpressionHolder {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<MergeSource> sources;
     private final XSLTNode action;
     private final String baseUri;
@@ -662,7 +665,10 @@ public final class MergeNode implements XSLTNode, ExpressionHolder {
     /**
      * Represents a merge source (xsl:merge-source).
      */
-    public static class MergeSource {
+    public static class MergeSource implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         public final String name;
         public final XPathExpression select;
         public final XPathExpression forEachItem;
@@ -690,7 +696,10 @@ public final class MergeNode implements XSLTNode, ExpressionHolder {
     /**
      * Represents a merge key (xsl:merge-key).
      */
-    public static class MergeKey {
+    public static class MergeKey implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         public final XPathExpression select;
         public final XSLTNode body;
         public final AttributeValueTemplate orderAvt;
@@ -44,6 +44,9 @@ import javax.xml.transform.TransformerException;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class MessageNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final SequenceNode content;
     private final XPathExpression selectExpr;
     private final boolean terminateStatic;
@@ -61,6 +64,7 @@ public class MessageNode extends XSLTInstruction implements ExpressionHolder {
     
     @Override public String getInstructionName() { return "message"; }
     public SequenceNode getContent() { return content; }
+    public AttributeValueTemplate getTerminateAvt() { return terminateAvt; }
 
     @Override
     public List<XPathExpression> getExpressions() {
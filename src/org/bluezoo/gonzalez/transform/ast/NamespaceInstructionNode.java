@@ -41,6 +41,9 @@ import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class NamespaceInstructionNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final AttributeValueTemplate nameAvt;
     private final XPathExpression selectExpr;
     private final SequenceNode content;
@@ -22,6 +22,7 @@
 package org.bluezoo.gonzalez.transform.ast;
 
 import org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
@@ -32,6 +33,7 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathString;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -54,6 +56,8 @@ import java.util.Map;
  */
 public final class NextIterationNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Represents a parameter value for next-iteration.
      *
@@ -61,7 +65,10 @@ public final class NextIterationNode implements XSLTNode {
      * xsl:next-iteration. The value can be provided either via the select
      * attribute or as element content.
      */
-    public static final class ParamValue {
+    public static final class ParamValue implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final String name;
         private final XPathExpression select;
         private final XSLTNode content;
@@ -106,6 +113,7 @@ public final class NextIterationNode implements XSLTNode {
                 if (content != null) {
                     SAXEventBuffer buffer = new SAXEventBuffer();
                     content.execute(context, new BufferOutputHandler(buffer));
+                    GroundedBuffering.recordTree(context, buffer);
                     return new XPathResultTreeFragment(buffer);
                 }
                 return XPathString.of("");
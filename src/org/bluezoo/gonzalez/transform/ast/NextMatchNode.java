@@ -50,6 +50,9 @@ import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class NextMatchNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final List<WithParamNode> params;
     
     public NextMatchNode(List<WithParamNode> params) {
@@ -33,6 +33,7 @@ import org.bluezoo.gonzalez.transform.compiler.AttributeValueTemplate;
 import org.bluezoo.gonzalez.transform.compiler.ExpressionHolder;
 import org.bluezoo.gonzalez.transform.compiler.Pattern;
 import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.NodeCounters;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
 import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
@@ -52,6 +53,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class NumberNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression valueExpr;
     private final XPathExpression selectExpr; // XSLT 2.0+ select attribute
     private final String level;
@@ -65,6 +69,8 @@ public class NumberNode extends XSLTInstruction implements ExpressionHolder {
     private final AttributeValueTemplate ordinalAVT;
     private final AttributeValueTemplate startAtAVT; // XSLT 3.0
     private final boolean backwardsCompatible; // XSLT 1.0 BC mode
+    // Whether counts may be carried on from one node to the next
+    private final boolean incremental;
     
     public NumberNode(XPathExpression valueExpr, XPathExpression selectExpr, String level, 
               Pattern countPattern, Pattern fromPattern, AttributeValueTemplate formatAVT,
@@ -94,6 +100,8 @@ public class NumberNode extends XSLTInstruction implements ExpressionHolder {
         this.ordinalAVT = ordinalAVT;
         this.startAtAVT = startAtAVT;
         this.backwardsCompatible = backwardsCompatible;
+        this.incremental = NodeCounters.isContextFree(countPattern)
+            && NodeCounters.isContextFree(fromPattern);
     }
     
     @Override 
@@ -491,15 +499,7 @@ public class NumberNode extends XSLTInstruction implements ExpressionHolder {
             // Check if current matches the count pattern
             if (matchesCount(current, referenceNode, context)) {
                 // Found a matching node - count it and its preceding siblings
-                int count = 1;
-                XPathNode sibling = current.getPrecedingSibling();
-                while (sibling != null) {
-                    if (matchesCount(sibling, referenceNode, context)) {
-                        count++;
-                    }
-                    sibling = sibling.getPrecedingSibling();
-                }
-                return count;
+                return 1 + countPrecedingSiblings(current, referenceNode, context);
             }
             
             // Stop if we've reached the from boundary (don't go into or past it)
@@ -524,14 +524,7 @@ public class NumberNode extends XSLTInstruction implements ExpressionHolder {
             }
             // First check if current matches count pattern and count it
             if (matchesCount(current, referenceNode, context)) {
-                int count = 1;
-                XPathNode sibling = current.getPrecedingSibling();
-                while (sibling != null) {
-                    if (matchesCount(sibling, referenceNode, context)) {
-                        count++;
-                    }
-                    sibling = sibling.getPrecedingSibling();
-                }
+                int count = 1 + countPrecedingSiblings(current, referenceNode, context);
                 counts.add(0, count); // Prepend to get correct order
             }
             
@@ -546,10 +539,48 @@ public class NumberNode extends XSLTInstruction implements ExpressionHolder {
         return counts;
     }
     
+    private int countPrecedingSiblings(XPathNode node, XPathNode referenceNode,
+                                       TransformContext context) {
+        if (incremental && context instanceof BasicTransformContext
+                && NodeCounters.isCountable(node)) {
+            NodeCounters counters = ((BasicTransformContext) context).getNodeCounters();
+            return counters.countPrecedingSiblings(countKey(referenceNode), node,
+                countTest(referenceNode, context));
+        }
+        int count = 0;
+        XPathNode sibling = node.getPrecedingSibling();
+        while (sibling != null) {
+            if (matchesCount(sibling, referenceNode, context)) {
+                count++;
+            }
+            sibling = sibling.getPrecedingSibling();
+        }
+        return count;
+    }
+    
     private int countAny(XPathNode node, XPathNode referenceNode, TransformContext context) {
         // Count all matching nodes before this one in document order
         // starting from the most recent node matching 'from' pattern
         
+        // Carry on from the last node numbered, instead of walking the
+        // whole document again each time
+        if (incremental && context instanceof BasicTransformContext
+                && NodeCounters.isCountable(node)) {
+            NodeCounters counters = ((BasicTransformContext) context).getNodeCounters();
+            NodeCounters.Test fromTest = null;
+            if (fromPattern != null) {
+                final TransformContext fromContext = context;
+                fromTest = new NodeCounters.Test() {
+                    @Override
+                    public boolean matches(XPathNode n) {
+                        return fromPattern.matches(n, fromContext);
+                    }
+                };
+            }
+            return counters.countInDocumentOrder(countKey(referenceNode), node,
+                countTest(referenceNode, context), fromTest);
+        }
+        
         // Get document root
         XPathNode root = node;
         while (root.getParent() != null) {
@@ -659,6 +690,68 @@ public class NumberNode extends XSLTInstruction implements ExpressionHolder {
     }
     
     
+    /**
+     * Returns the key of this instruction's node counters. Without a count
+     * pattern the nodes counted depend on the name of the node numbered.
+     */
+    private Object countKey(XPathNode referenceNode) {
+        if (countPattern != null) {
+            return this;
+        }
+        return new DefaultCountKey(this, referenceNode);
+    }
+    
+    private NodeCounters.Test countTest(final XPathNode referenceNode,
+                                        final TransformContext context) {
+        return new NodeCounters.Test() {
+            @Override
+            public boolean matches(XPathNode n) {
+                return matchesCount(n, referenceNode, context);
+            }
+        };
+    }
+    
+    /**
+     * Counter key for the default count pattern: nodes of the same kind
+     * and name as the node numbered.
+     */
+    private static final class DefaultCountKey {
+        private final NumberNode owner;
+        private final NodeType type;
+        private final String namespaceURI;
+        private final String localName;
+        
+        DefaultCountKey(NumberNode owner, XPathNode referenceNode) {
+            this.owner = owner;
+            this.type = referenceNode.getNodeType();
+            if (type == NodeType.ELEMENT) {
+                String uri = referenceNode.getNamespaceURI();
+                this.namespaceURI = uri == null ? "" : uri;
+                this.localName = referenceNode.getLocalName();
+            } else {
+                this.namespaceURI = "";
+                this.localName = null;
+            }
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof DefaultCountKey)) {
+                return false;
+            }
+            DefaultCountKey key = (DefaultCountKey) other;
+            return owner == key.owner && type == key.type
+                && namespaceURI.equals(key.namespaceURI)
+                && (localName == null ? key.localName == null : localName.equals(key.localName));
+        }
+        
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(owner) * 31 + type.hashCode();
+            return localName == null ? h : h * 31 + localName.hashCode();
+        }
+    }
+    
     private boolean matchesCount(XPathNode node, XPathNode referenceNode, TransformContext context) {
         if (countPattern != null) {
             return countPattern.matches(node, context);
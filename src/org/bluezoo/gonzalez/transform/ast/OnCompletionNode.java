@@ -41,6 +41,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public class OnCompletionNode extends XSLTInstruction implements ExpressionHolder {
 
+    private static final long serialVersionUID = 1L;
+
     private final XSLTNode content;
     private final XPathExpression selectExpr;
 
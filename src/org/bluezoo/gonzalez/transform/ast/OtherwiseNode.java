@@ -32,6 +32,9 @@ import org.bluezoo.gonzalez.transform.runtime.TransformContext;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class OtherwiseNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final SequenceNode content;
     public OtherwiseNode(SequenceNode content) { this.content = content; }
     public SequenceNode getContent() { return content; }
@@ -30,6 +30,9 @@ import org.bluezoo.gonzalez.transform.runtime.TransformContext;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class OutputCharacterNode implements XSLTNode {
+
+    private static final long serialVersionUID = 1L;
+
     private final int codePoint;  // Unicode code point (supports supplementary characters)
     private final String string;
     
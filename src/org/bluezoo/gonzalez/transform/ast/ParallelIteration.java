@@ -0,0 +1,574 @@
+/*
+ * ParallelIteration.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.ast;
+
+import org.bluezoo.gonzalez.transform.ValidationMode;
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
+import org.xml.sax.SAXException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel execution of the per-item bodies of xsl:for-each and
+ * xsl:apply-templates, enabled with the gz:parallel extension attribute.
+ *
+ * <p>The selected items are split into contiguous partitions. The calling
+ * thread executes the first partition itself, writing straight to the
+ * output, while the remaining partitions are claimed from a counter by
+ * helper tasks on the stylesheet's fork executor (or by the caller once it
+ * has finished its own). Each of those records its output events and the
+ * recordings are replayed to the output in partition order, so the result
+ * is the same as sequential execution. As with xsl:fork, the caller only
+ * ever waits for partitions that are already in progress.
+ *
+ * <p>Each partition runs with its own context (see
+ * {@link BasicTransformContext#forParallelPartition()}). Iteration is only
+ * parallelised for stylesheets without accumulators, since accumulator
+ * values are computed lazily into state shared by the whole transformation.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+final class ParallelIteration {
+
+    /** Partitions per thread, so that uneven items balance out. */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * The body executed for each item.
+     */
+    interface Body {
+
+        /**
+         * Executes the body for one item.
+         *
+         * @param index the 0-based index of the item
+         * @param context the context of the partition containing the item
+         * @param output the output for the partition
+         * @throws SAXException if execution fails
+         */
+        void execute(int index, TransformContext context, OutputHandler output)
+            throws SAXException;
+    }
+
+    private ParallelIteration() {
+    }
+
+    /**
+     * Returns true if an iteration over {@code count} items should run
+     * in parallel.
+     *
+     * @param threshold the instruction's threshold, or -1 if not enabled
+     * @param count the number of selected items
+     * @param context the transformation context
+     * @return true to use {@link #execute}
+     */
+    static boolean isEnabled(int threshold, int count, TransformContext context) {
+        if (threshold < 0 || count < 2 || count < threshold) {
+            return false;
+        }
+        if (!(context instanceof BasicTransformContext)) {
+            return false;
+        }
+        CompiledStylesheet stylesheet = context.getStylesheet();
+        if (stylesheet == null || stylesheet.getForkParallelism() <= 1) {
+            return false;
+        }
+        return stylesheet.getAccumulators().isEmpty();
+    }
+
+    /**
+     * Executes the body for items 0..count-1, in parallel, with the output
+     * delivered in item order.
+     *
+     * @param count the number of items
+     * @param itemBoundaries whether to mark item boundaries between items
+     * @param context the transformation context
+     * @param output the output handler
+     * @param body the per-item body
+     * @throws SAXException if the body fails for any item
+     */
+    static void execute(int count, boolean itemBoundaries, TransformContext context,
+                        OutputHandler output, Body body) throws SAXException {
+        CompiledStylesheet stylesheet = context.getStylesheet();
+        int parallelism = stylesheet.getForkParallelism();
+        Executor executor = stylesheet.getForkExecutor();
+        if (executor == null) {
+            executor = ForkNode.getDefaultExecutor();
+        }
+
+        int partitions = (int) Math.min(count, (long) parallelism * PARTITIONS_PER_THREAD);
+        BasicTransformContext parent = (BasicTransformContext) context;
+        TransformContext[] contexts = new TransformContext[partitions];
+        RecordingOutputHandler[] recordings = new RecordingOutputHandler[partitions];
+        contexts[0] = context;
+        for (int i = 1; i < partitions; i++) {
+            contexts[i] = parent.forParallelPartition();
+            recordings[i] = new RecordingOutputHandler(output);
+        }
+        final Execution execution = new Execution(count, itemBoundaries, body,
+                                                  contexts, recordings);
+
+        int helpers = Math.min(parallelism, partitions) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        execution.runClaimedPartitions();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The calling thread will run the unclaimed partitions
+                break;
+            }
+        }
+
+        try {
+            execution.runPartition(0, output);
+        } catch (SAXException e) {
+            execution.fail(e);
+        } catch (RuntimeException e) {
+            execution.fail(new SAXException("Error in parallel iteration", e));
+        }
+        execution.runClaimedPartitions();
+        execution.await();
+        if (execution.error != null) {
+            throw execution.error;
+        }
+
+        for (int i = 1; i < partitions; i++) {
+            recordings[i].replay(output);
+        }
+    }
+
+    /**
+     * State shared by the threads executing one parallel iteration.
+     */
+    private static final class Execution {
+        final int count;
+        final boolean itemBoundaries;
+        final Body body;
+        final TransformContext[] contexts;
+        final RecordingOutputHandler[] recordings;
+        final AtomicInteger next = new AtomicInteger(1);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final CountDownLatch done;
+        volatile SAXException error;
+
+        Execution(int count, boolean itemBoundaries, Body body,
+                  TransformContext[] contexts, RecordingOutputHandler[] recordings) {
+            this.count = count;
+            this.itemBoundaries = itemBoundaries;
+            this.body = body;
+            this.contexts = contexts;
+            this.recordings = recordings;
+            this.done = new CountDownLatch(contexts.length - 1);
+        }
+
+        void runClaimedPartitions() {
+            int index;
+            while ((index = next.getAndIncrement()) < contexts.length) {
+                try {
+                    if (!failed.get()) {
+                        runPartition(index, recordings[index]);
+                    }
+                } catch (SAXException e) {
+                    fail(e);
+                } catch (RuntimeException e) {
+                    fail(new SAXException("Error in parallel iteration", e));
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+
+        void runPartition(int partition, OutputHandler out) throws SAXException {
+            int partitions = contexts.length;
+            int start = (int) ((long) count * partition / partitions);
+            int end = (int) ((long) count * (partition + 1) / partitions);
+            TransformContext partitionContext = contexts[partition];
+            for (int i = start; i < end && !failed.get(); i++) {
+                if (itemBoundaries && i > 0) {
+                    out.itemBoundary();
+                }
+                body.execute(i, partitionContext, out);
+            }
+        }
+
+        void fail(SAXException e) {
+            if (failed.compareAndSet(false, true)) {
+                error = e;
+            }
+        }
+
+        void await() throws SAXException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException("Parallel iteration interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Records every output event so that it can be replayed, unchanged, to
+     * the real output handler once the preceding partitions are complete.
+     * State queries are answered from a snapshot of the target taken when
+     * the partition was set up, updated by the partition's own events.
+     */
+    static final class RecordingOutputHandler implements OutputHandler {
+
+        private static final int START_DOCUMENT = 0;
+        private static final int END_DOCUMENT = 1;
+        private static final int START_ELEMENT = 2;
+        private static final int END_ELEMENT = 3;
+        private static final int ATTRIBUTE = 4;
+        private static final int NAMESPACE = 5;
+        private static final int CHARACTERS = 6;
+        private static final int CHARACTERS_RAW = 7;
+        private static final int COMMENT = 8;
+        private static final int PROCESSING_INSTRUCTION = 9;
+        private static final int ITEM_BOUNDARY = 10;
+        private static final int ATOMIC_VALUE_PENDING = 11;
+        private static final int IN_ATTRIBUTE_CONTENT = 12;
+        private static final int ELEMENT_TYPE = 13;
+        private static final int ATTRIBUTE_TYPE = 14;
+        private static final int VALIDATION_MODE = 15;
+        private static final int ATOMIC_VALUE = 16;
+        private static final int CLAIMED_BY_RESULT_DOCUMENT = 17;
+        private static final int ELEMENT_PREFIX_NAMESPACE = 18;
+        private static final int INHERIT_NAMESPACES = 19;
+        private static final int NODE_BASE_URI = 20;
+
+        private int[] ops = new int[64];
+        private Object[] operands = new Object[128];
+        private int opCount;
+        private int operandCount;
+
+        private boolean atomicValuePending;
+        private boolean inAttributeContent;
+        private ValidationMode validationMode;
+        private boolean receivedContent;
+        private boolean claimed;
+        private final boolean wantsDocumentBoundaries;
+
+        RecordingOutputHandler(OutputHandler target) {
+            this.atomicValuePending = target.isAtomicValuePending();
+            this.inAttributeContent = target.isInAttributeContent();
+            this.validationMode = target.getValidationMode();
+            this.receivedContent = target.hasReceivedContent();
+            this.claimed = target.isClaimedByResultDocument();
+            this.wantsDocumentBoundaries = target.wantsDocumentBoundaries();
+        }
+
+        private void record(int op) {
+            if (opCount == ops.length) {
+                int[] grown = new int[opCount * 2];
+                System.arraycopy(ops, 0, grown, 0, opCount);
+                ops = grown;
+            }
+            ops[opCount++] = op;
+        }
+
+        private void operand(Object value) {
+            if (operandCount == operands.length) {
+                Object[] grown = new Object[operandCount * 2];
+                System.arraycopy(operands, 0, grown, 0, operandCount);
+                operands = grown;
+            }
+            operands[operandCount++] = value;
+        }
+
+        private void record(int op, Object a) {
+            record(op);
+            operand(a);
+        }
+
+        private void record(int op, Object a, Object b) {
+            record(op);
+            operand(a);
+            operand(b);
+        }
+
+        private void record(int op, Object a, Object b, Object c) {
+            record(op);
+            operand(a);
+            operand(b);
+            operand(c);
+        }
+
+        /**
+         * Replays the recorded events to the given handler.
+         *
+         * @param out the handler to receive the events
+         * @throws SAXException if the handler fails
+         */
+        void replay(OutputHandler out) throws SAXException {
+            int k = 0;
+            Object[] o = operands;
+            for (int i = 0; i < opCount; i++) {
+                switch (ops[i]) {
+                    case START_DOCUMENT:
+                        out.startDocument();
+                        break;
+                    case END_DOCUMENT:
+                        out.endDocument();
+                        break;
+                    case START_ELEMENT:
+                        out.startElement((String) o[k], (String) o[k + 1], (String) o[k + 2]);
+                        k += 3;
+                        break;
+                    case END_ELEMENT:
+                        out.endElement((String) o[k], (String) o[k + 1], (String) o[k + 2]);
+                        k += 3;
+                        break;
+                    case ATTRIBUTE:
+                        out.attribute((String) o[k], (String) o[k + 1], (String) o[k + 2],
+                                      (String) o[k + 3]);
+                        k += 4;
+                        break;
+                    case NAMESPACE:
+                        out.namespace((String) o[k], (String) o[k + 1]);
+                        k += 2;
+                        break;
+                    case CHARACTERS:
+                        out.characters((String) o[k++]);
+                        break;
+                    case CHARACTERS_RAW:
+                        out.charactersRaw((String) o[k++]);
+                        break;
+                    case COMMENT:
+                        out.comment((String) o[k++]);
+                        break;
+                    case PROCESSING_INSTRUCTION:
+                        out.processingInstruction((String) o[k], (String) o[k + 1]);
+                        k += 2;
+                        break;
+                    case ITEM_BOUNDARY:
+                        out.itemBoundary();
+                        break;
+                    case ATOMIC_VALUE_PENDING:
+                        out.setAtomicValuePending(((Boolean) o[k++]).booleanValue());
+                        break;
+                    case IN_ATTRIBUTE_CONTENT:
+                        out.setInAttributeContent(((Boolean) o[k++]).booleanValue());
+                        break;
+                    case ELEMENT_TYPE:
+                        out.setElementType((String) o[k], (String) o[k + 1]);
+                        k += 2;
+                        break;
+                    case ATTRIBUTE_TYPE:
+                        out.setAttributeType((String) o[k], (String) o[k + 1]);
+                        k += 2;
+                        break;
+                    case VALIDATION_MODE:
+                        out.setValidationMode((ValidationMode) o[k++]);
+                        break;
+                    case ATOMIC_VALUE:
+                        out.atomicValue((XPathValue) o[k++]);
+                        break;
+                    case CLAIMED_BY_RESULT_DOCUMENT:
+                        out.markClaimedByResultDocument();
+                        break;
+                    case ELEMENT_PREFIX_NAMESPACE:
+                        out.elementPrefixNamespace((String) o[k], (String) o[k + 1]);
+                        k += 2;
+                        break;
+                    case INHERIT_NAMESPACES:
+                        out.setInheritNamespaces(((Boolean) o[k++]).booleanValue());
+                        break;
+                    case NODE_BASE_URI:
+                        out.setNodeBaseURI((String) o[k++]);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown event " + ops[i]);
+                }
+            }
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            record(START_DOCUMENT);
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            record(END_DOCUMENT);
+        }
+
+        @Override
+        public void startElement(String namespaceURI, String localName, String qName)
+                throws SAXException {
+            record(START_ELEMENT, namespaceURI, localName, qName);
+            receivedContent = true;
+        }
+
+        @Override
+        public void endElement(String namespaceURI, String localName, String qName)
+                throws SAXException {
+            record(END_ELEMENT, namespaceURI, localName, qName);
+        }
+
+        @Override
+        public void attribute(String namespaceURI, String localName, String qName, String value)
+                throws SAXException {
+            record(ATTRIBUTE);
+            operand(namespaceURI);
+            operand(localName);
+            operand(qName);
+            operand(value);
+        }
+
+        @Override
+        public void namespace(String prefix, String uri) throws SAXException {
+            record(NAMESPACE, prefix, uri);
+        }
+
+        @Override
+        public void characters(String text) throws SAXException {
+            record(CHARACTERS, text);
+            receivedContent = true;
+        }
+
+        @Override
+        public void charactersRaw(String text) throws SAXException {
+            record(CHARACTERS_RAW, text);
+            receivedContent = true;
+        }
+
+        @Override
+        public void comment(String text) throws SAXException {
+            record(COMMENT, text);
+            receivedContent = true;
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            record(PROCESSING_INSTRUCTION, target, data);
+            receivedContent = true;
+        }
+
+        @Override
+        public void flush() throws SAXException {
+            // The target is flushed by its owner
+        }
+
+        @Override
+        public void itemBoundary() throws SAXException {
+            record(ITEM_BOUNDARY);
+        }
+
+        @Override
+        public boolean isAtomicValuePending() {
+            return atomicValuePending;
+        }
+
+        @Override
+        public void setAtomicValuePending(boolean pending) throws SAXException {
+            record(ATOMIC_VALUE_PENDING, Boolean.valueOf(pending));
+            atomicValuePending = pending;
+        }
+
+        @Override
+        public boolean isInAttributeContent() {
+            return inAttributeContent;
+        }
+
+        @Override
+        public void setInAttributeContent(boolean inAttributeContent) throws SAXException {
+            record(IN_ATTRIBUTE_CONTENT, Boolean.valueOf(inAttributeContent));
+            this.inAttributeContent = inAttributeContent;
+        }
+
+        @Override
+        public void setElementType(String namespaceURI, String localName) throws SAXException {
+            record(ELEMENT_TYPE, namespaceURI, localName);
+        }
+
+        @Override
+        public void setAttributeType(String namespaceURI, String localName) throws SAXException {
+            record(ATTRIBUTE_TYPE, namespaceURI, localName);
+        }
+
+        @Override
+        public void setValidationMode(ValidationMode mode) throws SAXException {
+            record(VALIDATION_MODE, mode);
+            validationMode = mode;
+        }
+
+        @Override
+        public ValidationMode getValidationMode() {
+            return validationMode;
+        }
+
+        @Override
+        public void atomicValue(XPathValue value) throws SAXException {
+            record(ATOMIC_VALUE, value);
+            receivedContent = true;
+        }
+
+        @Override
+        public boolean hasReceivedContent() {
+            return receivedContent;
+        }
+
+        @Override
+        public void markClaimedByResultDocument() {
+            record(CLAIMED_BY_RESULT_DOCUMENT);
+            claimed = true;
+        }
+
+        @Override
+        public boolean isClaimedByResultDocument() {
+            return claimed;
+        }
+
+        @Override
+        public boolean wantsDocumentBoundaries() {
+            return wantsDocumentBoundaries;
+        }
+
+        @Override
+        public void elementPrefixNamespace(String prefix, String uri) throws SAXException {
+            record(ELEMENT_PREFIX_NAMESPACE, prefix, uri);
+        }
+
+        @Override
+        public void setInheritNamespaces(boolean inherit) throws SAXException {
+            record(INHERIT_NAMESPACES, Boolean.valueOf(inherit));
+        }
+
+        @Override
+        public void setNodeBaseURI(String uri) throws SAXException {
+            record(NODE_BASE_URI, uri);
+        }
+    }
+
+}
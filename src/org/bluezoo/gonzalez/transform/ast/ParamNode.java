@@ -37,6 +37,9 @@ import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class ParamNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final String namespaceURI;
     private final String localName;
     private final XPathExpression selectExpr;
@@ -42,6 +42,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class ProcessingInstructionNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final AttributeValueTemplate nameAvt;
     private final XPathExpression selectExpr;
     private final SequenceNode content;
@@ -72,6 +72,8 @@ import java.util.Map;
  */
 public final class ResultDocumentNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final AttributeValueTemplate hrefAvt;
     private final AttributeValueTemplate formatAvt;
     private final Map<String, String> formatNamespaceBindings;
@@ -42,6 +42,8 @@ import java.util.List;
  */
 public final class SequenceNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Empty sequence singleton.
      *
@@ -49,6 +49,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class SequenceOutputNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;
     public SequenceOutputNode(XPathExpression selectExpr) { this.selectExpr = selectExpr; }
     @Override public String getInstructionName() { return "sequence"; }
@@ -31,6 +31,9 @@ import org.bluezoo.gonzalez.transform.runtime.TransformContext;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class SortSpecNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final SortSpec sortSpec;
     public SortSpecNode(SortSpec sortSpec) { this.sortSpec = sortSpec; }
     public SortSpec getSortSpec() { return sortSpec; }
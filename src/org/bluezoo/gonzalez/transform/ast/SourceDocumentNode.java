@@ -93,6 +93,8 @@ import java.util.Set;
  */
 public final class SourceDocumentNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final AttributeValueTemplate hrefAvt;
     private final boolean streamable;
     private final String validation;  // "strict", "lax", "preserve", "strip", or null
@@ -185,13 +187,15 @@ public final class SourceDocumentNode implements XSLTNode {
             );
 
             // Parse the external document in streaming mode
-            Parser parser = SecureGonzalezParser.create(handler);
+            Parser parser = SecureGonzalezParser.acquire(handler);
             
             URL url = new URL(href);
             try (InputStream in = url.openStream()) {
                 InputSource inputSource = new InputSource(in);
                 inputSource.setSystemId(href);
                 parser.parse(inputSource);
+            } finally {
+                SecureGonzalezParser.release(parser);
             }
 
         } catch (IOException e) {
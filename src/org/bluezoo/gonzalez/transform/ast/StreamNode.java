@@ -61,6 +61,8 @@ import java.net.URL;
  */
 public final class StreamNode implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     private final String href;
     private final XSLTNode body;
 
@@ -126,13 +128,15 @@ public final class StreamNode implements XSLTNode {
             );
 
             // Parse the external document in streaming mode
-            Parser parser = SecureGonzalezParser.create(handler);
+            Parser parser = SecureGonzalezParser.acquire(handler);
             
             URL url = new URL(resolvedHref);
             try (InputStream is = url.openStream()) {
                 InputSource inputSource = new InputSource(is);
                 inputSource.setSystemId(resolvedHref);
                 parser.parse(inputSource);
+            } finally {
+                SecureGonzalezParser.release(parser);
             }
 
         } catch (IOException e) {
@@ -45,6 +45,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class TryNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final XSLTNode tryContent;
     private final List<CatchNode> catchBlocks;
     private final boolean rollbackOutput;
@@ -35,6 +35,9 @@ import org.bluezoo.gonzalez.transform.runtime.TransformContext;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class ValueOfContentNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final XSLTNode content;
     private final boolean disableEscaping;
     private final String separator;  // null means use default (space)
@@ -46,6 +49,7 @@ public class ValueOfContentNode extends XSLTInstruction {
     }
     
     @Override public String getInstructionName() { return "value-of"; }
+    public XSLTNode getContent() { return content; }
     
     @Override
     public void execute(TransformContext context, 
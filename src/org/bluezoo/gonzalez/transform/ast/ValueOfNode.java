@@ -48,6 +48,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class ValueOfNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;
     private final boolean disableEscaping;
     private final AttributeValueTemplate separatorAvt;  // null means use default
@@ -69,6 +72,7 @@ public class ValueOfNode extends XSLTInstruction implements ExpressionHolder {
     }
     
     @Override public String getInstructionName() { return "value-of"; }
+    public AttributeValueTemplate getSeparatorAvt() { return separatorAvt; }
 
     @Override
     public List<XPathExpression> getExpressions() {
@@ -34,6 +34,7 @@ import org.bluezoo.gonzalez.transform.compiler.ExpressionHolder;
 import org.bluezoo.gonzalez.transform.compiler.TemplateParameter;
 import org.bluezoo.gonzalez.transform.compiler.SequenceBuilderOutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
@@ -59,6 +60,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class VariableNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final String namespaceURI;
     private final String localName;
     private final XPathExpression selectExpr;
@@ -83,6 +87,7 @@ public class VariableNode extends XSLTInstruction implements ExpressionHolder {
     
     @Override public String getInstructionName() { return "variable"; }
     public String getName() { return localName; }
+    public String getNamespaceURI() { return namespaceURI; }
     public SequenceNode getContent() { return content; }
 
     @Override
@@ -209,6 +214,7 @@ public class VariableNode extends XSLTInstruction implements ExpressionHolder {
                     OutputHandler bufferHandler = 
                         new BufferOutputHandler(buffer);
                     content.execute(context, bufferHandler);
+                    GroundedBuffering.recordTree(context, buffer);
                     // Store as RTF so xsl:copy-of can access the tree structure
                     // Use the instruction's static base URI (from xml:base) for the RTF
                     String rtfBaseUri = (staticBaseURI != null) ? staticBaseURI : context.getStaticBaseURI();
@@ -532,6 +538,9 @@ public class VariableNode extends XSLTInstruction implements ExpressionHolder {
      * If the variable is never accessed, the error is silently ignored.
      */
     private static class DeferredErrorValue implements XPathValue {
+
+        private static final long serialVersionUID = 1L;
+
         private final String message;
 
         DeferredErrorValue(String message) {
@@ -37,6 +37,9 @@ import org.bluezoo.gonzalez.transform.runtime.TransformContext;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class WherePopulatedNode extends XSLTInstruction {
+
+    private static final long serialVersionUID = 1L;
+
     private final XSLTNode content;
     
     public WherePopulatedNode(XSLTNode content) {
@@ -31,6 +31,7 @@ import org.xml.sax.SAXException;
 import org.bluezoo.gonzalez.transform.compiler.ExpressionHolder;
 import org.bluezoo.gonzalez.transform.compiler.SequenceBuilderOutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
@@ -51,6 +52,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class WithParamNode extends XSLTInstruction implements ExpressionHolder {
+
+    private static final long serialVersionUID = 1L;
+
     private final String namespaceURI;
     private final String localName;
     private final String expandedName; // Clark notation: {uri}localname or just localname
@@ -120,6 +124,7 @@ public class WithParamNode extends XSLTInstruction implements ExpressionHolder {
             } else {
                 SAXEventBuffer buffer = new SAXEventBuffer();
                 content.execute(context, new BufferOutputHandler(buffer));
+                GroundedBuffering.recordTree(context, buffer);
                 value = new XPathResultTreeFragment(buffer);
             }
         } else if (asType != null) {
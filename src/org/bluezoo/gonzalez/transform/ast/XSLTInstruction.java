@@ -39,6 +39,8 @@ package org.bluezoo.gonzalez.transform.ast;
  */
 public abstract class XSLTInstruction implements XSLTNode {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * XSLT namespace URI.
      *
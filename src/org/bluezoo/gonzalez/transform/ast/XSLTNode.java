@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.ast;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.xml.sax.SAXException;
@@ -37,7 +39,7 @@ import org.xml.sax.SAXException;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public interface XSLTNode {
+public interface XSLTNode extends Serializable {
 
     /**
      * Executes this XSLT node.
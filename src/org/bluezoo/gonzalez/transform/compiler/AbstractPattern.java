@@ -21,10 +21,10 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
@@ -51,13 +51,15 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 abstract class AbstractPattern implements Pattern {
 
+    private static final long serialVersionUID = 1L;
+
     private static final double POSITION_COMPARISON_TOLERANCE = 0.0001;
-    static final Map<String, XPathExpression> xpathCache = new HashMap<>();
+    static final Map<String, XPathExpression> xpathCache = new ConcurrentHashMap<>();
     /** Cache: whether a predicate expression needs sibling position/size. */
-    private static final Map<String, Boolean> needsPositionCache = new HashMap<>();
+    private static final Map<String, Boolean> needsPositionCache = new ConcurrentHashMap<>();
     /** Cache: simple @attr='literal' fingerprints extracted from predicates. */
     private static final Map<String, SimpleAttrEquality> simpleAttrEqualityCache =
-        new HashMap<>();
+        new ConcurrentHashMap<>();
     private static final SimpleAttrEquality NO_SIMPLE_ATTR_EQUALITY =
         new SimpleAttrEquality("", "", "");
 
@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -45,7 +46,9 @@ import java.util.regex.Pattern;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  * @see <a href="https://www.w3.org/TR/xslt-30/#element-accept">XSLT 3.0 xsl:accept</a>
  */
-public final class AcceptDeclaration {
+public final class AcceptDeclaration implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Component types that can be selected.
@@ -24,6 +24,7 @@ package org.bluezoo.gonzalez.transform.compiler;
 import org.bluezoo.gonzalez.transform.ast.XSLTNode;
 import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -55,7 +56,9 @@ import java.util.List;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class AccumulatorDefinition {
+public final class AccumulatorDefinition implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Phase when accumulator rules fire.
@@ -70,7 +73,10 @@ public final class AccumulatorDefinition {
     /**
      * A single accumulator rule.
      */
-    public static final class AccumulatorRule {
+    public static final class AccumulatorRule implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final Pattern matchPattern;
         private final Phase phase;
         private final XPathExpression newValue;
@@ -30,6 +30,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class AnyNodeTest implements NodeTest {
 
+    private static final long serialVersionUID = 1L;
+
     static final AnyNodeTest INSTANCE = new AnyNodeTest();
 
     private AnyNodeTest() {
@@ -46,6 +46,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 final class AtomicPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private static final double POSITION_TOLERANCE = 0.0001;
 
     private final List<String> predicates;
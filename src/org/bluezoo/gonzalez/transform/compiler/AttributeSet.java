@@ -27,6 +27,7 @@ import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
 import org.xml.sax.SAXException;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**
@@ -42,7 +43,9 @@ import java.util.*;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class AttributeSet {
+public final class AttributeSet implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String name;
     private final List<Definition> definitions;
@@ -53,7 +56,10 @@ public final class AttributeSet {
      * A single xsl:attribute-set definition with its own use-attribute-sets
      * and attribute instructions.
      */
-    private static final class Definition {
+    private static final class Definition implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         final List<String> useAttributeSets;
         final SequenceNode attributes;
 
@@ -33,6 +33,7 @@ import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -52,17 +53,25 @@ import java.util.List;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class AttributeValueTemplate {
+public final class AttributeValueTemplate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * A part of an AVT - either literal text or an XPath expression.
      */
-    private static abstract class Part {
+    private static abstract class Part implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         abstract String evaluate(TransformContext context, boolean backwardsCompatible) throws XPathException;
         abstract StreamingCapability getStreamingCapability();
     }
 
     private static final class LiteralPart extends Part {
+
+        private static final long serialVersionUID = 1L;
+
         final String text;
 
         LiteralPart(String text) {
@@ -81,6 +90,9 @@ public final class AttributeValueTemplate {
     }
 
     private static final class ExpressionPart extends Part {
+
+        private static final long serialVersionUID = 1L;
+
         final XPathExpression expression;
 
         ExpressionPart(XPathExpression expression) {
@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
 
@@ -34,7 +36,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-final class ChildAxisAnyNodeTest implements NodeTest {
+final class ChildAxisAnyNodeTest implements NodeTest, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     static final ChildAxisAnyNodeTest INSTANCE = new ChildAxisAnyNodeTest();
 
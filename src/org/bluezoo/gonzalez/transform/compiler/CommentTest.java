@@ -31,6 +31,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class CommentTest implements NodeTest {
 
+    private static final long serialVersionUID = 1L;
+
     static final CommentTest INSTANCE = new CommentTest();
 
     private CommentTest() {
@@ -21,6 +21,9 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import org.bluezoo.gonzalez.NameDictionary;
+import org.bluezoo.gonzalez.Parser;
+import org.bluezoo.gonzalez.ParserPool;
 import org.bluezoo.gonzalez.schema.xsd.XSDSchema;
 import org.bluezoo.gonzalez.schema.xsd.XSDSimpleType;
 import org.bluezoo.gonzalez.schema.xsd.XSDType;
@@ -28,6 +31,7 @@ import org.bluezoo.gonzalez.transform.ast.XSLTNode.StreamingCapability;
 import org.bluezoo.gonzalez.transform.ValidationMode;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandlerUtils;
 
+import java.io.Serializable;
 import java.util.*;
 
 import org.xml.sax.SAXException;
@@ -52,7 +56,9 @@ import org.xml.sax.SAXException;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class CompiledStylesheet {
+public final class CompiledStylesheet implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final List<TemplateRule> templateRules;
     private final Map<String, TemplateRule> namedTemplates;
@@ -71,7 +77,10 @@ public final class CompiledStylesheet {
     /**
      * Represents a strip-space or preserve-space declaration with import precedence.
      */
-    public static class SpaceDeclaration {
+    public static class SpaceDeclaration implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         public final String pattern;
         public final int importPrecedence;
         
@@ -123,17 +132,42 @@ public final class CompiledStylesheet {
     // XSLT 3.0 package information
     private final String packageName;  // package name URI
     private final String packageVersion;  // package version string
-    private PackageResolver packageResolver;  // for fn:transform() package access
+    private transient PackageResolver packageResolver;  // for fn:transform() package access
     
     // Streamability analysis (set after build)
     private volatile StreamabilityAnalyzer.StylesheetStreamability streamabilityAnalysis;
     private List<org.bluezoo.gonzalez.transform.runtime.InternalAccumulator> internalAccumulators =
             java.util.Collections.emptyList();
 
+    // Executor and thread cap for xsl:fork branches (null: shared default)
+    private transient volatile java.util.concurrent.Executor forkExecutor;
+    private volatile int forkParallelism = Runtime.getRuntime().availableProcessors();
+
+    // Whether template and function bodies and their expressions report to a profiler
+    private boolean profiled;
+
+    // Memo cache for xsl:function cache="yes"
+    private transient volatile org.bluezoo.gonzalez.transform.FunctionResultCache functionResultCache =
+            newDefaultFunctionResultCache();
+
+    // Names of the match patterns, for parsing source documents (built lazily)
+    private transient volatile NameDictionary nameDictionary;
+    private transient volatile ParserPool parserPool;
+
+    // Template rule index, shared by every transformation (built lazily)
+    private transient volatile org.bluezoo.gonzalez.transform.runtime.TemplateMatcher templateMatcher;
+
+    // Parts of the source document the templates can reach (analysed lazily)
+    private transient volatile org.bluezoo.gonzalez.transform.runtime.DocumentProjection documentProjection;
+    private transient volatile boolean documentProjectionAnalysed;
+
     /**
      * Stores decimal format configuration for format-number().
      */
-    public static class DecimalFormatInfo {
+    public static class DecimalFormatInfo implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         public final String name;
         public final char decimalSeparator;
         public final char groupingSeparator;
@@ -230,7 +264,10 @@ public final class CompiledStylesheet {
      * applied during serialization. Each mapping replaces a single character with
      * a string (which may include markup).
      */
-    public static class CharacterMap {
+    public static class CharacterMap implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final String name;
         private final Map<Integer, String> mappings;  // Unicode code points to strings
         private final List<String> useCharacterMaps;  // names of referenced character maps
@@ -317,7 +354,10 @@ public final class CompiledStylesheet {
      * in the XSLT namespace (or any other) without the XSLT processor treating
      * them as instructions.
      */
-    public static class NamespaceAlias {
+    public static class NamespaceAlias implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         /** The result namespace URI to use in output. */
         public final String resultUri;
         /** The suggested prefix to use in output (may be empty for default namespace). */
@@ -1298,6 +1338,8 @@ public final class CompiledStylesheet {
                         rule.getVisibility()
                     );
                     adjusted.setParsedAsType(rule.getParsedAsType());
+                    adjusted.setSourceLocation(rule.getSystemId(),
+                        rule.getLineNumber(), rule.getColumnNumber());
                     adjusted.setEffectiveVersion(rule.getEffectiveVersion());
                     adjusted.setDefiningStylesheet(rule.getDefiningStylesheet());
                 }
@@ -1656,6 +1698,8 @@ public final class CompiledStylesheet {
                         rule.getVisibility()
                     );
                     adjusted.setParsedAsType(rule.getParsedAsType());
+                    adjusted.setSourceLocation(rule.getSystemId(),
+                        rule.getLineNumber(), rule.getColumnNumber());
                     adjusted.setEffectiveVersion(rule.getEffectiveVersion());
                     adjusted.setMinImportPrecedence(effectiveMinImport);
                     adjusted.setDefiningStylesheet(rule.getDefiningStylesheet());
@@ -2286,6 +2330,20 @@ public final class CompiledStylesheet {
         return streamabilityAnalysis;
     }
 
+    /**
+     * Returns true if the stylesheet was instrumented for profiling (see
+     * {@link ProfileInstrumenter}).
+     *
+     * @return true if transformations of the stylesheet can be profiled
+     */
+    public boolean isProfiled() {
+        return profiled;
+    }
+
+    void setProfiled(boolean profiled) {
+        this.profiled = profiled;
+    }
+
     /**
      * Sets synthetic internal accumulators for 1.0/2.0 streaming patterns.
      *
@@ -2299,6 +2357,178 @@ public final class CompiledStylesheet {
                 : java.util.Collections.emptyList();
     }
 
+    /**
+     * Sets the executor used to run xsl:fork branches concurrently.
+     *
+     * @param executor the executor, or null for the shared default pool
+     */
+    public void setForkExecutor(java.util.concurrent.Executor executor) {
+        this.forkExecutor = executor;
+    }
+
+    /**
+     * Returns the executor used to run xsl:fork branches concurrently.
+     *
+     * @return the executor, or null to use the shared default pool
+     */
+    public java.util.concurrent.Executor getForkExecutor() {
+        return forkExecutor;
+    }
+
+    /**
+     * Sets the maximum number of threads, including the calling thread,
+     * that work on the branches of a single xsl:fork. A value of 1 runs
+     * all branches sequentially.
+     *
+     * @param parallelism the maximum number of threads per fork
+     */
+    public void setForkParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.forkParallelism = parallelism;
+    }
+
+    /**
+     * Returns the maximum number of threads working on a single xsl:fork.
+     *
+     * @return the parallelism cap
+     */
+    public int getForkParallelism() {
+        return forkParallelism;
+    }
+
+    /**
+     * Sets the memo cache used for xsl:function declarations with
+     * cache="yes". Transformations started after this call use it.
+     *
+     * @param cache the function result cache
+     */
+    public void setFunctionResultCache(
+            org.bluezoo.gonzalez.transform.FunctionResultCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("cache must not be null");
+        }
+        this.functionResultCache = cache;
+    }
+
+    /**
+     * Returns the memo cache for xsl:function declarations with cache="yes".
+     * Per-transformation caches are derived from it and report their hit
+     * and miss counts to it.
+     *
+     * @return the function result cache (never null)
+     */
+    public org.bluezoo.gonzalez.transform.FunctionResultCache getFunctionResultCache() {
+        return functionResultCache;
+    }
+
+    /**
+     * Returns a dictionary of the names tested by this stylesheet's
+     * template and key match patterns. Installed on the parsers reading
+     * source documents, so those names are shared rather than allocated
+     * per document; the dictionary is built on first use and shared by
+     * every transformation of this stylesheet.
+     *
+     * @return the name dictionary (never null)
+     */
+    public NameDictionary getNameDictionary() {
+        NameDictionary dictionary = nameDictionary;
+        if (dictionary == null) {
+            Set<String> names = new LinkedHashSet<>();
+            for (TemplateRule rule : templateRules) {
+                if (rule.getMatchPattern() != null) {
+                    rule.getMatchPattern().collectNameTests(names);
+                }
+            }
+            for (List<KeyDefinition> defs : keyDefinitions.values()) {
+                for (KeyDefinition def : defs) {
+                    if (def.getMatchPattern() != null) {
+                        def.getMatchPattern().collectNameTests(names);
+                    }
+                }
+            }
+            dictionary = new NameDictionary(names);
+            nameDictionary = dictionary;
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns the pool of parsers reading source documents for this
+     * stylesheet, each with the {@link #getNameDictionary() name
+     * dictionary} installed. Shared by every transformer of the stylesheet,
+     * so a transformer created per document still reuses a parser.
+     *
+     * @return the parser pool (never null)
+     */
+    public ParserPool getParserPool() {
+        ParserPool pool = parserPool;
+        if (pool == null) {
+            final NameDictionary dictionary = getNameDictionary();
+            pool = new ParserPool(ParserPool.DEFAULT_MAX_IDLE,
+                new ParserPool.Configurer() {
+                    @Override
+                    public void configure(Parser parser) throws SAXException {
+                        parser.setProperty("http://www.nongnu.org/gonzalez/properties/name-dictionary",
+                            dictionary);
+                    }
+                });
+            parserPool = pool;
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the template matcher for this stylesheet. Indexing the
+     * template rules is done on first use; the matcher is immutable and
+     * shared by every transformation of this stylesheet.
+     *
+     * @return the template matcher (never null)
+     */
+    public org.bluezoo.gonzalez.transform.runtime.TemplateMatcher getTemplateMatcher() {
+        org.bluezoo.gonzalez.transform.runtime.TemplateMatcher matcher = templateMatcher;
+        if (matcher == null) {
+            matcher = new org.bluezoo.gonzalez.transform.runtime.TemplateMatcher(this);
+            templateMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    /**
+     * Returns the projection of the principal source document: the parts
+     * of it that applying this stylesheet's templates to the document node
+     * can reach. The source tree is built with only those parts, which
+     * saves memory and time for stylesheets that read a little of a large
+     * document. The analysis is done on first use and shared by every
+     * transformation of this stylesheet.
+     *
+     * @return the projection, or null if the whole document may be needed
+     */
+    public org.bluezoo.gonzalez.transform.runtime.DocumentProjection getDocumentProjection() {
+        if (!documentProjectionAnalysed) {
+            documentProjection = ProjectionAnalyzer.analyze(this);
+            documentProjectionAnalysed = true;
+        }
+        return documentProjection;
+    }
+
+    private static org.bluezoo.gonzalez.transform.FunctionResultCache newDefaultFunctionResultCache() {
+        return new org.bluezoo.gonzalez.transform.FunctionResultCache(
+            org.bluezoo.gonzalez.transform.FunctionResultCache.Scope.TRANSFORM,
+            org.bluezoo.gonzalez.transform.FunctionResultCache.DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Restores the runtime configuration that is not saved with a
+     * precompiled stylesheet (see {@link StylesheetArchive}).
+     */
+    private void readObject(java.io.ObjectInputStream in)
+            throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        functionResultCache = newDefaultFunctionResultCache();
+    }
+
     /**
      * Returns synthetic internal accumulators for streaming 1.0/2.0 patterns.
      *
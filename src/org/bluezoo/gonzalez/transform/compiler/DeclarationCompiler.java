@@ -545,6 +545,7 @@ final class DeclarationCompiler {
 
         UserFunction function = new UserFunction(
             namespaceURI, localName, params, body, asType, compiler.importPrecedence, cached, funcVisibility);
+        function.setSourceLocation(ctx.locatorSystemId, ctx.lineNumber, ctx.columnNumber);
         if (streamability != null) {
             function.setStreamability(streamability);
         }
@@ -1272,6 +1273,9 @@ final class DeclarationCompiler {
     }
 
     static class AcceptDeclarationNode implements XSLTNode {
+
+        private static final long serialVersionUID = 1L;
+
         private final AcceptDeclaration declaration;
 
         AcceptDeclarationNode(AcceptDeclaration declaration) {
@@ -1308,6 +1312,9 @@ final class DeclarationCompiler {
     }
 
     static class OverrideDeclarationNode implements XSLTNode {
+
+        private static final long serialVersionUID = 1L;
+
         private final List<OverrideDeclaration> declarations;
 
         OverrideDeclarationNode(List<OverrideDeclaration> declarations) {
@@ -1536,6 +1543,8 @@ final class DeclarationCompiler {
                         template.getAsType(),
                         template.getVisibility());
                     origTemplate.setEffectiveVersion(template.getEffectiveVersion());
+                    origTemplate.setSourceLocation(template.getSystemId(),
+                        template.getLineNumber(), template.getColumnNumber());
                     origTemplate.setDefiningStylesheet(pkgStylesheet);
                     compiler.builder.addTemplateRule(origTemplate);
                     addedXslOriginal = true;
@@ -1567,6 +1576,8 @@ final class DeclarationCompiler {
                         function.getAsType(), function.getImportPrecedence(),
                         function.isCached(), function.getVisibility());
                     origFunc.setDefiningStylesheet(pkgStylesheet);
+                    origFunc.setSourceLocation(function.getSystemId(),
+                        function.getLineNumber(), function.getColumnNumber());
                     compiler.builder.addUserFunction(origFunc);
                 } catch (javax.xml.transform.TransformerConfigurationException e) {
                     throw new SAXException(e.getMessage(), e);
@@ -2634,6 +2645,7 @@ final class DeclarationCompiler {
                         visibility);
                     rule.setParsedAsType(parsedAsType);
                     rule.setEffectiveVersion(templateVersion);
+                    rule.setSourceLocation(ctx.locatorSystemId, ctx.lineNumber, ctx.columnNumber);
                     compiler.builder.addTemplateRule(rule);
                     if (inOverride && pi == 0) {
                         compiler.pendingOverrideDeclarations.add(
@@ -2649,6 +2661,7 @@ final class DeclarationCompiler {
                     compiler.nextTemplateIndex(), params, body, asType, visibility);
                 rule.setParsedAsType(parsedAsType);
                 rule.setEffectiveVersion(templateVersion);
+                rule.setSourceLocation(ctx.locatorSystemId, ctx.lineNumber, ctx.columnNumber);
                 compiler.builder.addTemplateRule(rule);
                 if (inOverride) {
                     compiler.pendingOverrideDeclarations.add(
@@ -39,6 +39,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 final class DocPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final String docExpr;
     private final Pattern trailingPattern;
     private final Step.Axis trailingAxis;
@@ -32,6 +32,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class DocumentNodePattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     DocumentNodePattern(String patternStr) {
         super(patternStr, null);
     }
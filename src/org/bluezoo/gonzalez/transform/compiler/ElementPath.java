@@ -0,0 +1,110 @@
+/*
+ * ElementPath.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import java.io.Serializable;
+
+import org.bluezoo.gonzalez.transform.xpath.expr.Step;
+
+/**
+ * A pattern that is only element name tests joined by child steps, such as
+ * {@code item}, {@code section/title} or {@code /doc/*}, with no predicates.
+ * Whether a node matches such a pattern depends only on the names of the
+ * node and its ancestors, so template rules with these patterns can be
+ * compiled into a shared decision structure.
+ *
+ * <p>Steps are numbered from the matched node upwards: step 0 tests the
+ * node itself, step 1 its parent, and so on.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public final class ElementPath implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ElementTest[] steps;
+    private final boolean absolute;
+
+    ElementPath(ElementTest[] steps, boolean absolute) {
+        this.steps = steps;
+        this.absolute = absolute;
+    }
+
+    /**
+     * Returns the element path of a sequence of pattern steps in document
+     * order, or null if the steps are not all plain child-axis element
+     * name tests.
+     */
+    static ElementPath of(PatternStep[] steps, boolean absolute) {
+        if (steps.length == 0) {
+            return null;
+        }
+        ElementTest[] tests = new ElementTest[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            PatternStep step = steps[steps.length - 1 - i];
+            if (step.axis != Step.Axis.CHILD || step.predicateStr != null
+                    || !(step.nodeTest instanceof ElementTest)) {
+                return null;
+            }
+            ElementTest test = (ElementTest) step.nodeTest;
+            if (test.getType() != null) {
+                return null;
+            }
+            tests[i] = test;
+        }
+        return new ElementPath(tests, absolute);
+    }
+
+    /**
+     * Returns the number of steps.
+     */
+    public int getLength() {
+        return steps.length;
+    }
+
+    /**
+     * Returns whether the outermost step must be a child of a document
+     * node, as in {@code /doc/item}.
+     */
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    /**
+     * Returns the namespace URI a step tests for: the empty string for no
+     * namespace, or null for any namespace.
+     *
+     * @param i the step, counted from the matched node upwards
+     */
+    public String getNamespaceURI(int i) {
+        return steps[i].getNamespaceURI();
+    }
+
+    /**
+     * Returns the local name a step tests for, or null for any name.
+     *
+     * @param i the step, counted from the matched node upwards
+     */
+    public String getLocalName(int i) {
+        return steps[i].getLocalName();
+    }
+}
@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.QName;
 import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
@@ -38,7 +40,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-final class ElementTest implements NodeTest {
+final class ElementTest implements NodeTest, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String namespaceURI;
     private final String localName;
@@ -58,6 +62,10 @@ final class ElementTest implements NodeTest {
         return localName;
     }
 
+    QName getType() {
+        return type;
+    }
+
     @Override
     public boolean matches(XPathNode node) {
         if (!node.isElement()) {
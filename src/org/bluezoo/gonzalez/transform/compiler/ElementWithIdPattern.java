@@ -36,6 +36,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 final class ElementWithIdPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final String[] ids;
     private final String docVarName;
     private final Pattern trailingPattern;
@@ -32,6 +32,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class ExceptPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final Pattern left;
     private final Pattern right;
 
@@ -0,0 +1,53 @@
+/*
+ * FailingInstruction.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import org.bluezoo.gonzalez.transform.ast.XSLTNode;
+import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.xml.sax.SAXException;
+
+/**
+ * Instruction that raises a dynamic error when executed.
+ *
+ * <p>Used for unknown or extension instructions without xsl:fallback,
+ * which are only an error if they are actually evaluated (XTDE1450).
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+final class FailingInstruction implements XSLTNode {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String message;
+
+    FailingInstruction(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public void execute(TransformContext context,
+            OutputHandler output) throws SAXException {
+        throw new SAXException(message);
+    }
+
+}
@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.QName;
 import org.bluezoo.gonzalez.transform.ast.SequenceNode;
 import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
@@ -35,7 +37,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class GlobalVariable {
+public final class GlobalVariable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final QName name;
     private final boolean isParam;
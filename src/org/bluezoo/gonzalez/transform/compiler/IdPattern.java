@@ -39,6 +39,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 final class IdPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final String[] ids;
     private final String idVarName;
     private final String docVarName;
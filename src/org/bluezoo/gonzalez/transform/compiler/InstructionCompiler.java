@@ -619,8 +619,45 @@ final class InstructionCompiler {
         validateSortStable(sorts);
         boolean backCompat = ctx.effectiveVersion > 0
             && ctx.effectiveVersion < 2.0;
-        return new ApplyTemplatesNode(selectExpr, expandedMode, sorts, params,
-                                      backCompat);
+        ApplyTemplatesNode node = new ApplyTemplatesNode(selectExpr, expandedMode,
+                                                         sorts, params, backCompat);
+        node.setParallelThreshold(parseParallelThreshold(ctx));
+        return node;
+    }
+
+    /** Minimum selected item count for gz:parallel="yes". */
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 32;
+
+    /**
+     * Parses the gz:parallel extension attribute of xsl:for-each and
+     * xsl:apply-templates: "yes" (parallel above a default item count),
+     * "no", or the minimum number of selected items.
+     *
+     * @return the minimum item count, or -1 for sequential execution
+     */
+    private static int parseParallelThreshold(StylesheetCompiler.ElementContext ctx)
+            throws SAXException {
+        String value = ctx.getExtensionAttribute(StylesheetCompiler.GONZALEZ_NS, "parallel");
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+        if ("yes".equals(value) || "true".equals(value) || "1".equals(value)) {
+            return DEFAULT_PARALLEL_THRESHOLD;
+        }
+        if ("no".equals(value) || "false".equals(value) || "0".equals(value)) {
+            return -1;
+        }
+        try {
+            int threshold = Integer.parseInt(value);
+            if (threshold >= 0) {
+                return threshold;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new SAXException("XTSE0020: Invalid value for gz:parallel on xsl:" +
+            ctx.localName + ": '" + value + "' (expected yes, no or an item count)");
     }
 
     static XSLTNode compileCallTemplate(StylesheetCompiler compiler, StylesheetCompiler.ElementContext ctx) throws SAXException {
@@ -731,7 +768,10 @@ final class InstructionCompiler {
         }
 
         validateSortStable(sorts);
-        return new ForEachNode(compiler.compileExpression(select), sorts, new SequenceNode(bodyNodes));
+        ForEachNode node = new ForEachNode(compiler.compileExpression(select), sorts,
+                                           new SequenceNode(bodyNodes));
+        node.setParallelThreshold(parseParallelThreshold(ctx));
+        return node;
     }
 
     static XSLTNode compileStream(StylesheetCompiler compiler, StylesheetCompiler.ElementContext ctx) throws SAXException {
@@ -1216,6 +1256,9 @@ final class InstructionCompiler {
     }
 
     private static class MergeSourceHolder implements XSLTNode {
+
+        private static final long serialVersionUID = 1L;
+
         final MergeNode.MergeSource source;
         MergeSourceHolder(MergeNode.MergeSource source) { this.source = source; }
         @Override public void execute(TransformContext ctx, OutputHandler out) {}
@@ -1223,6 +1266,9 @@ final class InstructionCompiler {
     }
 
     private static class MergeKeyHolder implements XSLTNode {
+
+        private static final long serialVersionUID = 1L;
+
         final MergeNode.MergeKey key;
         MergeKeyHolder(MergeNode.MergeKey key) { this.key = key; }
         @Override public void execute(TransformContext ctx, OutputHandler out) {}
@@ -1230,6 +1276,9 @@ final class InstructionCompiler {
     }
 
     private static class MergeActionHolder implements XSLTNode {
+
+        private static final long serialVersionUID = 1L;
+
         final XSLTNode content;
         MergeActionHolder(XSLTNode content) { this.content = content; }
         @Override public void execute(TransformContext ctx, OutputHandler out) {}
@@ -1307,6 +1356,9 @@ final class InstructionCompiler {
     }
 
     public static class ContextItemDeclaration implements XSLTNode {
+
+        private static final long serialVersionUID = 1L;
+
         final String asType;
         final String use;
         final SequenceType parsedType;
@@ -1845,6 +1897,9 @@ final class InstructionCompiler {
     }
 
     private static class SelectExprNode extends XSLTInstruction {
+
+        private static final long serialVersionUID = 1L;
+
         private final XPathExpression expr;
 
         SelectExprNode(XPathExpression expr) {
@@ -2668,15 +2723,8 @@ final class InstructionCompiler {
             if (!fallbackNodes.isEmpty()) {
                 return new SequenceNode(fallbackNodes);
             }
-            final String unknownName = ctx.localName;
-            return new XSLTNode() {
-                @Override
-                public void execute(TransformContext context,
-                        OutputHandler output) throws SAXException {
-                    throw new SAXException("XTDE1450: Unknown XSLT instruction " +
-                        "xsl:" + unknownName + " (no xsl:fallback)");
-                }
-            };
+            return new FailingInstruction("XTDE1450: Unknown XSLT instruction " +
+                "xsl:" + ctx.localName + " (no xsl:fallback)");
         }
         throw new SAXException("XTSE0010: Unknown XSLT element: xsl:" + ctx.localName);
     }
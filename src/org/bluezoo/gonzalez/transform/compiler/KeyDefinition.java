@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.QName;
 import org.bluezoo.gonzalez.transform.ast.SequenceNode;
 import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
@@ -34,7 +36,9 @@ import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class KeyDefinition {
+public final class KeyDefinition implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final QName name;
     private final Pattern matchPattern;
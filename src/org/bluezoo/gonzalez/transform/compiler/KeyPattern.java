@@ -44,6 +44,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 final class KeyPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final String keyName;
     private final String keyValueExpr;
     private final boolean isVariable;
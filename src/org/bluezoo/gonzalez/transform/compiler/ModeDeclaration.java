@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,7 +45,9 @@ import java.util.Map;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class ModeDeclaration {
+public final class ModeDeclaration implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Behavior when no template matches a node.
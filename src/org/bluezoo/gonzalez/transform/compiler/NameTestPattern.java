@@ -34,6 +34,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class NameTestPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final NodeTest nodeTest;
     private final double priority;
     private final boolean requiresDocumentRoot;
@@ -92,6 +94,15 @@ final class NameTestPattern extends AbstractPattern {
         return nodeTest.getMatchableLocalName();
     }
 
+    @Override
+    public ElementPath getElementPath() {
+        if (predicateStr != null || requiresDocumentRoot) {
+            return null;
+        }
+        PatternStep step = new PatternStep(nodeTest, axis, null);
+        return ElementPath.of(new PatternStep[] { step }, false);
+    }
+
     NodeTest getNodeTest() {
         return nodeTest;
     }
@@ -31,6 +31,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class NamespaceNodeTest implements NodeTest {
 
+    private static final long serialVersionUID = 1L;
+
     static final NamespaceNodeTest INSTANCE = new NamespaceNodeTest();
 
     private final String requiredPrefix;
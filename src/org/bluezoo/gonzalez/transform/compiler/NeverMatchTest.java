@@ -31,6 +31,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class NeverMatchTest implements NodeTest {
 
+    private static final long serialVersionUID = 1L;
+
     static final NeverMatchTest INSTANCE = new NeverMatchTest();
 
     private NeverMatchTest() {
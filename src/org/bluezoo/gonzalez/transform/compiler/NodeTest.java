@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.QName;
 import org.bluezoo.gonzalez.schema.xsd.XSDSimpleType;
 import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
@@ -34,7 +36,7 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-interface NodeTest {
+interface NodeTest extends Serializable {
 
     static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
 
@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**
@@ -28,7 +29,9 @@ import java.util.*;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class OutputProperties {
+public final class OutputProperties implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Output serialization method.
@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.transform.ast.XSLTNode;
 
 /**
@@ -56,7 +58,9 @@ import org.bluezoo.gonzalez.transform.ast.XSLTNode;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  * @see <a href="https://www.w3.org/TR/xslt-30/#element-override">XSLT 3.0 xsl:override</a>
  */
-public final class OverrideDeclaration {
+public final class OverrideDeclaration implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Type of component being overridden.
@@ -33,6 +33,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class PITest implements NodeTest {
 
+    private static final long serialVersionUID = 1L;
+
     static final PITest ANY = new PITest(null);
 
     private final String target;
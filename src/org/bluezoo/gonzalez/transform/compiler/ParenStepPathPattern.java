@@ -47,6 +47,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class ParenStepPathPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final PatternStep[] prefixSteps;
     private final PatternStep[] suffixSteps;
     private final PatternStep leftStep;
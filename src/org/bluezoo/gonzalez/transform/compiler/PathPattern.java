@@ -41,6 +41,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 final class PathPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final PatternStep[] steps;
     private final boolean isAbsolute;
 
@@ -73,6 +75,16 @@ final class PathPattern extends AbstractPattern {
         return null;
     }
 
+    @Override
+    public void collectNameTests(java.util.Collection<String> names) {
+        for (int i = 0; i < steps.length; i++) {
+            String name = steps[i].nodeTest.getMatchableLocalName();
+            if (name != null) {
+                names.add(name);
+            }
+        }
+    }
+
     @Override
     public SimpleAttrEquality getSimpleAttrEquality() {
         if (predicateStr != null) {
@@ -84,10 +96,22 @@ final class PathPattern extends AbstractPattern {
         return analyzeSimpleAttrEquality(steps[steps.length - 1].predicateStr);
     }
 
+    @Override
+    public ElementPath getElementPath() {
+        if (predicateStr != null) {
+            return null;
+        }
+        return ElementPath.of(steps, isAbsolute);
+    }
+
     PatternStep[] getSteps() {
         return steps;
     }
 
+    boolean isAbsolute() {
+        return isAbsolute;
+    }
+
     @Override
     boolean matchesBase(XPathNode node, TransformContext context,
                         XPathNode targetNode) {
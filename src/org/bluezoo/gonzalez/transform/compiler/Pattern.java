@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
 import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
@@ -44,7 +46,7 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public interface Pattern {
+public interface Pattern extends Serializable {
 
     /**
      * Tests if the given node matches this pattern.
@@ -99,6 +101,20 @@ public interface Pattern {
         return null;
     }
 
+    /**
+     * Adds the local names this pattern tests for to a collection - the
+     * names a matching source document is expected to use. Used to seed
+     * the stylesheet's name dictionary.
+     *
+     * @param names the collection to add to
+     */
+    default void collectNameTests(java.util.Collection<String> names) {
+        String name = getMatchableLocalName();
+        if (name != null) {
+            names.add(name);
+        }
+    }
+
     /**
      * Returns a simple {@code @attr = 'literal'} predicate fingerprint when
      * this pattern is exactly that form, or null otherwise. Used to index
@@ -110,6 +126,18 @@ public interface Pattern {
         return null;
     }
 
+    /**
+     * Returns the chain of element name tests this pattern consists of
+     * when it is only child-axis element name tests without predicates,
+     * or null otherwise. Used to compile template rules into a shared
+     * decision structure over the ancestor chain.
+     *
+     * @return the element path, or null if the pattern is not of that form
+     */
+    default ElementPath getElementPath() {
+        return null;
+    }
+
     /**
      * Returns the default priority for this pattern.
      *
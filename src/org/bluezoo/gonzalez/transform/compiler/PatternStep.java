@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.transform.xpath.expr.Step;
 
 /**
@@ -29,7 +31,9 @@ import org.bluezoo.gonzalez.transform.xpath.expr.Step;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-final class PatternStep {
+final class PatternStep implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     final NodeTest nodeTest;
     final Step.Axis axis;
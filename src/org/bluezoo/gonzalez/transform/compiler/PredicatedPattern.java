@@ -33,6 +33,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class PredicatedPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final Pattern inner;
 
     PredicatedPattern(String patternStr, String predicateStr,
@@ -0,0 +1,1768 @@
+/*
+ * ProjectionAnalyzer.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bluezoo.gonzalez.transform.ast.ApplyTemplatesNode;
+import org.bluezoo.gonzalez.transform.ast.AttributeNode;
+import org.bluezoo.gonzalez.transform.ast.CallTemplateNode;
+import org.bluezoo.gonzalez.transform.ast.ChooseNode;
+import org.bluezoo.gonzalez.transform.ast.CommentNode;
+import org.bluezoo.gonzalez.transform.ast.CopyNode;
+import org.bluezoo.gonzalez.transform.ast.CopyOfNode;
+import org.bluezoo.gonzalez.transform.ast.ElementNode;
+import org.bluezoo.gonzalez.transform.ast.ForEachNode;
+import org.bluezoo.gonzalez.transform.ast.IfNode;
+import org.bluezoo.gonzalez.transform.ast.LiteralResultElement;
+import org.bluezoo.gonzalez.transform.ast.LiteralText;
+import org.bluezoo.gonzalez.transform.ast.MessageNode;
+import org.bluezoo.gonzalez.transform.ast.OtherwiseNode;
+import org.bluezoo.gonzalez.transform.ast.ParamNode;
+import org.bluezoo.gonzalez.transform.ast.ProfiledNode;
+import org.bluezoo.gonzalez.transform.ast.SequenceNode;
+import org.bluezoo.gonzalez.transform.ast.SequenceOutputNode;
+import org.bluezoo.gonzalez.transform.ast.ValueOfContentNode;
+import org.bluezoo.gonzalez.transform.ast.ValueOfNode;
+import org.bluezoo.gonzalez.transform.ast.VariableNode;
+import org.bluezoo.gonzalez.transform.ast.WhenNode;
+import org.bluezoo.gonzalez.transform.ast.WithParamNode;
+import org.bluezoo.gonzalez.transform.ast.XSLTNode;
+import org.bluezoo.gonzalez.transform.runtime.DocumentProjection;
+import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
+import org.bluezoo.gonzalez.transform.xpath.XPathSyntaxException;
+import org.bluezoo.gonzalez.transform.xpath.expr.BinaryExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.ContextItemExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Expr;
+import org.bluezoo.gonzalez.transform.xpath.expr.FilterExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.ForExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.FunctionCall;
+import org.bluezoo.gonzalez.transform.xpath.expr.IfExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.LetExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Literal;
+import org.bluezoo.gonzalez.transform.xpath.expr.LocationPath;
+import org.bluezoo.gonzalez.transform.xpath.expr.PathExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.QuantifiedExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.SequenceExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.Step;
+import org.bluezoo.gonzalez.transform.xpath.expr.TypeExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.UnaryExpr;
+import org.bluezoo.gonzalez.transform.xpath.expr.VariableReference;
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+
+/**
+ * Computes the {@link DocumentProjection} of a stylesheet: the parts of
+ * the principal source document that applying its templates to the
+ * document node can reach.
+ *
+ * <p>The analysis is an abstract interpretation of the stylesheet over a
+ * tree of element names (the <em>trie</em>). Starting from the document
+ * node in the default mode, it follows every path expression, template
+ * dispatch, variable and parameter, adding to the trie each child element
+ * a step can select and recording where text, comments and processing
+ * instructions are needed. Wildcard steps add a node standing for the
+ * child elements not named anywhere else. Wherever the string value or a
+ * copy of a node may be taken, or a descendant axis is used, the node's
+ * subtree is kept whole. Because adding to the trie can make more of the
+ * stylesheet reachable, the analysis is repeated until nothing changes.
+ *
+ * <p>Anything the analysis does not model precisely - reverse document
+ * axes, keys, IDs, user functions, function items, accumulators, package
+ * components, schema types and so on - makes the whole document needed,
+ * and {@link #analyze} returns null, as does a trie grown too large for
+ * the projection to be worthwhile.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+final class ProjectionAnalyzer {
+
+    private static final String FN_NAMESPACE = "http://www.w3.org/2005/xpath-functions";
+    private static final String XS_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+    private static final String MATH_NAMESPACE = "http://www.w3.org/2005/xpath-functions/math";
+
+    /** Maximum number of times the stylesheet is re-analysed. */
+    private static final int MAX_PASSES = 32;
+
+    /** Depth below which the trie keeps whole subtrees. */
+    private static final int MAX_DEPTH = 32;
+
+    /** Number of trie nodes beyond which projection is not worthwhile. */
+    private static final int MAX_NODES = 512;
+
+    /** Functions whose result does not depend on node content. */
+    private static final Set<String> STRUCTURAL_FUNCTIONS = new HashSet<String>(Arrays.asList(
+        "count", "exists", "empty", "boolean", "not", "name", "local-name",
+        "namespace-uri", "node-name", "generate-id", "base-uri", "document-uri",
+        "nilled", "in-scope-prefixes", "position", "last", "true", "false"));
+
+    /** Functions returning items of their first argument. */
+    private static final Set<String> FILTER_FUNCTIONS = new HashSet<String>(Arrays.asList(
+        "reverse", "subsequence", "head", "tail", "remove", "exactly-one",
+        "zero-or-one", "one-or-more", "unordered", "trace", "innermost",
+        "outermost"));
+
+    /** Functions reading the string value of the context item by default. */
+    private static final Set<String> CONTEXT_VALUE_FUNCTIONS = new HashSet<String>(Arrays.asList(
+        "string", "normalize-space", "string-length", "number", "data",
+        "has-children"));
+
+    /** Functions returning nodes of another document. */
+    private static final Set<String> DOCUMENT_FUNCTIONS = new HashSet<String>(Arrays.asList(
+        "doc", "document", "collection", "parse-xml", "parse-xml-fragment",
+        "json-to-xml", "analyze-string"));
+
+    /** Functions that reach nodes in ways the analysis does not model. */
+    private static final Set<String> UNSAFE_FUNCTIONS = new HashSet<String>(Arrays.asList(
+        "id", "idref", "element-with-id", "key", "path", "current-group",
+        "current-grouping-key", "current-merge-group", "current-merge-key",
+        "accumulator-before", "accumulator-after", "function-lookup", "apply",
+        "for-each", "filter", "fold-left", "fold-right", "for-each-pair",
+        "transform", "load-xquery-module", "random-number-generator"));
+
+    private static final Set<Item> EMPTY = Collections.emptySet();
+
+    private static final int TRIE = 0;
+    private static final int KEPT = 1;
+    private static final int LEAF = 2;
+    private static final int OTHER = 3;
+
+    /** A node of a tree other than the source: temporary trees, copies,
+     *  documents loaded by the stylesheet and external parameters. */
+    private static final Item OTHER_ITEM = new Item(OTHER, null);
+
+    private final CompiledStylesheet stylesheet;
+    private final List<TemplateRule> matchRules = new ArrayList<TemplateRule>();
+    private final Map<String, List<GlobalVariable>> globals =
+        new HashMap<String, List<GlobalVariable>>();
+    private final PNode root;
+    private final Set<Item> rootItems;
+    private int nodeCount;
+    private int changes;
+
+    // Kept across passes: only ever grow
+    private final Map<Visit, Set<Item>> results = new HashMap<Visit, Set<Item>>();
+    private final Map<String, Set<Item>> paramValues = new HashMap<String, Set<Item>>();
+
+    // Reset on each pass
+    private final Set<Visit> visited = new HashSet<Visit>();
+    private final Map<GlobalVariable, Set<Item>> globalValues =
+        new HashMap<GlobalVariable, Set<Item>>();
+
+    private ProjectionAnalyzer(CompiledStylesheet stylesheet) {
+        this.stylesheet = stylesheet;
+        this.root = new PNode(null, null, null, false);
+        this.rootItems = Collections.singleton(root.trie);
+    }
+
+    /**
+     * Computes the projection of a stylesheet.
+     *
+     * @param stylesheet the compiled stylesheet
+     * @return the projection, or null if the stylesheet may need the whole
+     *         document
+     */
+    static DocumentProjection analyze(CompiledStylesheet stylesheet) {
+        try {
+            return new ProjectionAnalyzer(stylesheet).run();
+        } catch (Unprojectable e) {
+            return null;
+        }
+    }
+
+    private DocumentProjection run() throws Unprojectable {
+        if (!stylesheet.getAccumulators().isEmpty()
+                || !stylesheet.getInternalAccumulators().isEmpty()
+                || !stylesheet.getImportedSchemas().isEmpty()
+                || stylesheet.getNamedTemplate("xsl:initial-template") != null
+                || stylesheet.getNamedTemplate(
+                    "{http://www.w3.org/1999/XSL/Transform}initial-template") != null) {
+            return null;
+        }
+        for (TemplateRule rule : stylesheet.getTemplateRules()) {
+            if (rule.getDefiningStylesheet() != null) {
+                return null;
+            }
+            if (rule.getMatchPattern() != null) {
+                checkPattern(rule.getMatchPattern());
+                matchRules.add(rule);
+            }
+        }
+        for (GlobalVariable var : stylesheet.getGlobalVariables()) {
+            String key = varKey(var.getNamespaceURI(), var.getLocalName());
+            List<GlobalVariable> vars = globals.get(key);
+            if (vars == null) {
+                vars = new ArrayList<GlobalVariable>(1);
+                globals.put(key, vars);
+            }
+            vars.add(var);
+        }
+        String mode = stylesheet.getDefaultMode();
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            changes = 0;
+            visited.clear();
+            globalValues.clear();
+            for (List<GlobalVariable> vars : globals.values()) {
+                global(vars);
+            }
+            dispatch(root.trie, mode);
+            if (changes == 0) {
+                if (root.keepSubtree) {
+                    return null;
+                }
+                return new DocumentProjection(toProjection(root,
+                    new IdentityHashMap<PNode, DocumentProjection.Node>()));
+            }
+        }
+        return null;
+    }
+
+    private DocumentProjection.Node toProjection(PNode node,
+            Map<PNode, DocumentProjection.Node> converted) {
+        DocumentProjection.Node result = converted.get(node);
+        if (result != null) {
+            return result;
+        }
+        if (node.keepSubtree) {
+            result = node.isStar() ? DocumentProjection.ALL
+                : DocumentProjection.Node.whole(node.uri, node.local);
+            converted.put(node, result);
+            return result;
+        }
+        result = new DocumentProjection.Node(node.uri, node.local, node.keepText, node.keepOthers);
+        converted.put(node, result);
+        if (node.children != null) {
+            for (PNode child : node.children.values()) {
+                result.addChild(toProjection(child, converted));
+            }
+        }
+        if (node.star != null) {
+            result.setOtherChildren(toProjection(node.star, converted));
+        }
+        return result;
+    }
+
+    // ========================================================================
+    // Trie
+    // ========================================================================
+
+    private void markSubtree(PNode node) {
+        if (!node.keepSubtree) {
+            node.keepSubtree = true;
+            changes++;
+        }
+    }
+
+    private void keepText(PNode node) {
+        if (!node.keepText) {
+            node.keepText = true;
+            changes++;
+        }
+    }
+
+    private void keepOthers(PNode node) {
+        if (!node.keepOthers) {
+            node.keepOthers = true;
+            changes++;
+        }
+    }
+
+    private boolean canGrow(PNode node) throws Unprojectable {
+        if (nodeCount >= MAX_NODES) {
+            throw new Unprojectable();
+        }
+        if (node.depth >= MAX_DEPTH) {
+            markSubtree(node);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the ancestor a new child would repeat, if any. In recursive
+     * structures the child is given that ancestor's node, keeping the trie
+     * small at the cost of merging what is needed at each level.
+     */
+    private static PNode recursion(PNode node, String key, boolean star) {
+        for (PNode n = node; n.parent != null; n = n.parent) {
+            if (star ? n.isStar() : !n.isStar() && key.equals(n.key)) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    /** Adds the named child elements of a node. */
+    private void child(PNode node, String uri, String local, Set<Item> out)
+            throws Unprojectable {
+        if (node.keepSubtree) {
+            out.add(node.kept);
+            return;
+        }
+        String key = varKey(uri, local);
+        PNode child = node.children != null ? node.children.get(key) : null;
+        if (child == null) {
+            child = recursion(node, key, false);
+            if (child != null) {
+                child.parents.add(node);
+            } else if (canGrow(node)) {
+                child = new PNode(node, uri, local, false);
+                nodeCount++;
+            } else {
+                out.add(node.kept);
+                return;
+            }
+            if (node.children == null) {
+                node.children = new LinkedHashMap<String, PNode>();
+            }
+            node.children.put(key, child);
+            changes++;
+        }
+        out.add(child.trie);
+    }
+
+    /** Adds all the child elements of a node. */
+    private void elementChildren(PNode node, Set<Item> out) throws Unprojectable {
+        if (node.keepSubtree) {
+            out.add(node.kept);
+            return;
+        }
+        if (node.star == null) {
+            PNode star = recursion(node, null, true);
+            if (star != null) {
+                star.parents.add(node);
+            } else if (canGrow(node)) {
+                star = new PNode(node, null, null, true);
+                nodeCount++;
+            } else {
+                out.add(node.kept);
+                return;
+            }
+            node.star = star;
+            changes++;
+        }
+        out.add(node.star.trie);
+        if (node.children != null) {
+            for (PNode child : node.children.values()) {
+                out.add(child.trie);
+            }
+        }
+    }
+
+    /** Adds the children of a node matching a step's node test. */
+    private void children(PNode node, Step step, Set<Item> out) throws Unprojectable {
+        switch (step.getNodeTestType()) {
+            case NAME:
+                child(node, "", step.getLocalName(), out);
+                break;
+            case QNAME:
+                child(node, step.getNamespaceURI(), step.getLocalName(), out);
+                break;
+            case WILDCARD:
+            case NAMESPACE_WILDCARD:
+            case ANY_NAMESPACE:
+            case ELEMENT:
+            case SCHEMA_ELEMENT:
+                elementChildren(node, out);
+                break;
+            case NODE:
+                elementChildren(node, out);
+                keepText(node);
+                keepOthers(node);
+                out.add(node.leaf);
+                break;
+            case TEXT:
+                keepText(node);
+                out.add(node.leaf);
+                break;
+            case COMMENT:
+            case PROCESSING_INSTRUCTION:
+                keepOthers(node);
+                out.add(node.leaf);
+                break;
+            default:
+                // Attributes, namespaces and documents are never children
+                break;
+        }
+    }
+
+    private void ancestors(PNode node, Set<Item> out) {
+        for (PNode parent : node.parents) {
+            if (out.add(parent.trie)) {
+                ancestors(parent, out);
+            }
+        }
+    }
+
+    /** Adds the nodes reached from an item along a step's axis. */
+    private void axis(Item item, Step step, Set<Item> out) throws Unprojectable {
+        Step.Axis axis = step.getAxis();
+        if (axis == Step.Axis.FOLLOWING || axis == Step.Axis.PRECEDING) {
+            throw new Unprojectable();
+        }
+        if (item.kind == OTHER) {
+            out.add(item);
+            return;
+        }
+        PNode node = item.node;
+        switch (item.kind) {
+            case TRIE:
+                switch (axis) {
+                    case CHILD:
+                        children(node, step, out);
+                        break;
+                    case DESCENDANT:
+                        markSubtree(node);
+                        out.add(node.kept);
+                        break;
+                    case DESCENDANT_OR_SELF:
+                        markSubtree(node);
+                        out.add(node.kept);
+                        out.add(item);
+                        break;
+                    case ATTRIBUTE:
+                    case NAMESPACE:
+                        out.add(node.leaf);
+                        break;
+                    case SELF:
+                        out.add(item);
+                        break;
+                    case PARENT:
+                        for (PNode parent : node.parents) {
+                            out.add(parent.trie);
+                        }
+                        break;
+                    case ANCESTOR_OR_SELF:
+                        out.add(item);
+                        ancestors(node, out);
+                        break;
+                    case ANCESTOR:
+                        ancestors(node, out);
+                        break;
+                    default:
+                        for (PNode parent : new ArrayList<PNode>(node.parents)) {
+                            children(parent, step, out);
+                        }
+                        break;
+                }
+                break;
+            case KEPT:
+                switch (axis) {
+                    case PARENT:
+                        out.add(item);
+                        out.add(node.trie);
+                        break;
+                    case ANCESTOR:
+                    case ANCESTOR_OR_SELF:
+                        out.add(item);
+                        out.add(node.trie);
+                        ancestors(node, out);
+                        break;
+                    default:
+                        out.add(item);
+                        break;
+                }
+                break;
+            default: // LEAF
+                switch (axis) {
+                    case SELF:
+                    case DESCENDANT_OR_SELF:
+                        out.add(item);
+                        break;
+                    case PARENT:
+                        out.add(node.trie);
+                        break;
+                    case ANCESTOR_OR_SELF:
+                        out.add(item);
+                        out.add(node.trie);
+                        ancestors(node, out);
+                        break;
+                    case ANCESTOR:
+                        out.add(node.trie);
+                        ancestors(node, out);
+                        break;
+                    case FOLLOWING_SIBLING:
+                    case PRECEDING_SIBLING:
+                        children(node, step, out);
+                        break;
+                    default:
+                        // Leaves have no children or attributes
+                        break;
+                }
+                break;
+        }
+    }
+
+    /** Records that the string value or a copy of some items is needed. */
+    private void markValue(Set<Item> items) {
+        for (Item item : items) {
+            if (item.kind == TRIE) {
+                markSubtree(item.node);
+            }
+        }
+    }
+
+    private Set<Item> roots(Set<Item> items) {
+        Set<Item> result = new LinkedHashSet<Item>();
+        result.add(root.trie);
+        if (items.contains(OTHER_ITEM)) {
+            result.add(OTHER_ITEM);
+        }
+        return result;
+    }
+
+    // ========================================================================
+    // Expressions
+    // ========================================================================
+
+    private Set<Item> eval(XPathExpression expr, Scope scope) throws Unprojectable {
+        if (expr == null) {
+            return EMPTY;
+        }
+        return eval(expr.getCompiledExpr(), scope);
+    }
+
+    private void value(XPathExpression expr, Scope scope) throws Unprojectable {
+        markValue(eval(expr, scope));
+    }
+
+    private void value(AttributeValueTemplate avt, Scope scope) throws Unprojectable {
+        if (avt != null) {
+            List<XPathExpression> exprs = new ArrayList<XPathExpression>();
+            avt.collectExpressions(exprs);
+            for (XPathExpression expr : exprs) {
+                value(expr, scope);
+            }
+        }
+    }
+
+    private Set<Item> eval(Expr expr, Scope scope) throws Unprojectable {
+        if (expr == null || expr instanceof Literal) {
+            return EMPTY;
+        }
+        if (expr instanceof ContextItemExpr) {
+            return scope.focus;
+        }
+        if (expr instanceof VariableReference) {
+            return variable((VariableReference) expr, scope);
+        }
+        if (expr instanceof LocationPath) {
+            return path((LocationPath) expr, scope.focus, scope);
+        }
+        if (expr instanceof PathExpr) {
+            PathExpr pathExpr = (PathExpr) expr;
+            Set<Item> items = eval(pathExpr.getFilter(), scope);
+            return path(pathExpr.getPath(), items, scope);
+        }
+        if (expr instanceof FilterExpr) {
+            FilterExpr filter = (FilterExpr) expr;
+            Set<Item> items = eval(filter.getPrimary(), scope);
+            predicates(filter.getPredicates(), items, scope);
+            return items;
+        }
+        if (expr instanceof BinaryExpr) {
+            return binary((BinaryExpr) expr, scope);
+        }
+        if (expr instanceof UnaryExpr) {
+            markValue(eval(((UnaryExpr) expr).getOperand(), scope));
+            return EMPTY;
+        }
+        if (expr instanceof FunctionCall) {
+            return function((FunctionCall) expr, scope);
+        }
+        if (expr instanceof IfExpr) {
+            IfExpr ifExpr = (IfExpr) expr;
+            eval(ifExpr.getCondition(), scope);
+            return union(eval(ifExpr.getThenExpr(), scope), eval(ifExpr.getElseExpr(), scope));
+        }
+        if (expr instanceof ForExpr) {
+            ForExpr forExpr = (ForExpr) expr;
+            Scope s = scope;
+            for (ForExpr.Binding binding : forExpr.getBindings()) {
+                s = s.bind(binding.getVarName(), eval(binding.getSequence(), s));
+            }
+            return eval(forExpr.getReturnExpr(), s);
+        }
+        if (expr instanceof LetExpr) {
+            LetExpr letExpr = (LetExpr) expr;
+            Scope s = scope;
+            for (LetExpr.Binding binding : letExpr.getBindings()) {
+                s = s.bind(binding.getVarName(), eval(binding.getValue(), s));
+            }
+            return eval(letExpr.getReturnExpr(), s);
+        }
+        if (expr instanceof QuantifiedExpr) {
+            QuantifiedExpr quantified = (QuantifiedExpr) expr;
+            Scope s = scope;
+            for (QuantifiedExpr.Binding binding : quantified.getBindings()) {
+                s = s.bind(binding.getVarName(), eval(binding.getSequence(), s));
+            }
+            eval(quantified.getSatisfiesExpr(), s);
+            return EMPTY;
+        }
+        if (expr instanceof SequenceExpr) {
+            Set<Item> result = new LinkedHashSet<Item>();
+            for (Expr item : ((SequenceExpr) expr).getItems()) {
+                result.addAll(eval(item, scope));
+            }
+            return result;
+        }
+        if (expr instanceof TypeExpr) {
+            TypeExpr typeExpr = (TypeExpr) expr;
+            Set<Item> items = eval(typeExpr.getOperand(), scope);
+            switch (typeExpr.getKind()) {
+                case TREAT_AS:
+                    return items;
+                case INSTANCE_OF:
+                    return EMPTY;
+                default:
+                    markValue(items);
+                    return EMPTY;
+            }
+        }
+        // Function items, maps, arrays, lookups, dynamic calls
+        throw new Unprojectable();
+    }
+
+    private Set<Item> binary(BinaryExpr expr, Scope scope) throws Unprojectable {
+        switch (expr.getOperator()) {
+            case UNION:
+            case INTERSECT:
+            case EXCEPT:
+                return union(eval(expr.getLeft(), scope), eval(expr.getRight(), scope));
+            case SIMPLE_MAP:
+                return eval(expr.getRight(), scope.withFocus(eval(expr.getLeft(), scope)));
+            case TREAT_AS:
+                return eval(expr.getLeft(), scope);
+            case AND:
+            case OR:
+            case NODE_IS:
+            case NODE_PRECEDES:
+            case NODE_FOLLOWS:
+            case INSTANCE_OF:
+                eval(expr.getLeft(), scope);
+                eval(expr.getRight(), scope);
+                return EMPTY;
+            case ARROW:
+                throw new Unprojectable();
+            default:
+                markValue(eval(expr.getLeft(), scope));
+                markValue(eval(expr.getRight(), scope));
+                return EMPTY;
+        }
+    }
+
+    private Set<Item> path(LocationPath path, Set<Item> focus, Scope scope)
+            throws Unprojectable {
+        Set<Item> items = path.isAbsolute() ? roots(focus) : focus;
+        for (Step step : path.getSteps()) {
+            Set<Item> next;
+            if (step.getNodeTestType() == Step.NodeTestType.EXPR) {
+                next = eval(step.getStepExpr(), scope.withFocus(items));
+            } else {
+                next = new LinkedHashSet<Item>();
+                for (Item item : items) {
+                    axis(item, step, next);
+                }
+            }
+            predicates(step.getPredicates(), next, scope);
+            items = next;
+        }
+        return items;
+    }
+
+    /** Analyses predicates; their own result only filters, so is not a value. */
+    private void predicates(List<Expr> predicates, Set<Item> focus, Scope scope)
+            throws Unprojectable {
+        if (predicates != null && !predicates.isEmpty()) {
+            Scope s = scope.withFocus(focus);
+            for (Expr predicate : predicates) {
+                eval(predicate, s);
+            }
+        }
+    }
+
+    private Set<Item> variable(VariableReference ref, Scope scope) throws Unprojectable {
+        String prefix = ref.getPrefix();
+        if (prefix != null && !prefix.isEmpty()) {
+            throw new Unprojectable();
+        }
+        String name = ref.getLocalName();
+        Set<Item> value = scope.lookup(name);
+        if (value != null) {
+            return value;
+        }
+        List<GlobalVariable> vars = globals.get(name);
+        if (vars == null) {
+            throw new Unprojectable();
+        }
+        return global(vars);
+    }
+
+    private Set<Item> global(List<GlobalVariable> vars) throws Unprojectable {
+        Set<Item> result = new LinkedHashSet<Item>();
+        for (GlobalVariable var : vars) {
+            Set<Item> value = globalValues.get(var);
+            if (value == null) {
+                // Circular references are errors; see nothing for now
+                globalValues.put(var, EMPTY);
+                Scope scope = new Scope(rootItems, rootItems);
+                value = new LinkedHashSet<Item>();
+                value.addAll(eval(var.getSelectExpr(), scope));
+                if (var.getContent() != null) {
+                    value.addAll(instructions(var.getContent(), scope));
+                    value.add(OTHER_ITEM);
+                }
+                if (var.isParam()) {
+                    value.add(OTHER_ITEM);
+                }
+                globalValues.put(var, value);
+            }
+            result.addAll(value);
+        }
+        return result;
+    }
+
+    private Set<Item> function(FunctionCall call, Scope scope) throws Unprojectable {
+        String prefix = call.getPrefix();
+        String uri = call.getResolvedNamespaceURI();
+        List<Expr> args = call.getArguments();
+        if (XS_NAMESPACE.equals(uri) || MATH_NAMESPACE.equals(uri)) {
+            values(args, 0, scope);
+            return EMPTY;
+        }
+        boolean core = FN_NAMESPACE.equals(uri)
+            || ((prefix == null || prefix.isEmpty()) && (uri == null || uri.isEmpty()));
+        String name = call.getLocalName();
+        if (!core || UNSAFE_FUNCTIONS.contains(name)) {
+            throw new Unprojectable();
+        }
+        if (STRUCTURAL_FUNCTIONS.contains(name)) {
+            for (Expr arg : args) {
+                eval(arg, scope);
+            }
+            return EMPTY;
+        }
+        if (FILTER_FUNCTIONS.contains(name) && !args.isEmpty()) {
+            Set<Item> result = eval(args.get(0), scope);
+            values(args, 1, scope);
+            return result;
+        }
+        if ("insert-before".equals(name) && args.size() == 3) {
+            markValue(eval(args.get(1), scope));
+            return union(eval(args.get(0), scope), eval(args.get(2), scope));
+        }
+        if ("sort".equals(name) && !args.isEmpty()) {
+            Set<Item> result = eval(args.get(0), scope);
+            markValue(result);
+            values(args, 1, scope);
+            return result;
+        }
+        if (CONTEXT_VALUE_FUNCTIONS.contains(name) && args.isEmpty()) {
+            markValue(scope.focus);
+            return EMPTY;
+        }
+        if ("root".equals(name)) {
+            return roots(args.isEmpty() ? scope.focus : eval(args.get(0), scope));
+        }
+        if ("current".equals(name)) {
+            return scope.current;
+        }
+        if ("copy-of".equals(name) || "snapshot".equals(name)) {
+            markValue(args.isEmpty() ? scope.focus : eval(args.get(0), scope));
+            return Collections.singleton(OTHER_ITEM);
+        }
+        values(args, 0, scope);
+        if (DOCUMENT_FUNCTIONS.contains(name)) {
+            return Collections.singleton(OTHER_ITEM);
+        }
+        return EMPTY;
+    }
+
+    private void values(List<Expr> exprs, int start, Scope scope) throws Unprojectable {
+        for (int i = start; i < exprs.size(); i++) {
+            markValue(eval(exprs.get(i), scope));
+        }
+    }
+
+    // ========================================================================
+    // Instructions
+    // ========================================================================
+
+    /**
+     * Analyses a sequence constructor, returning the items it may return
+     * as they are (rather than as new nodes).
+     */
+    private Set<Item> instructions(XSLTNode node, Scope scope) throws Unprojectable {
+        if (node == null || node instanceof LiteralText) {
+            return EMPTY;
+        }
+        if (node instanceof ProfiledNode) {
+            return instructions(((ProfiledNode) node).getBody(), scope);
+        }
+        if (node instanceof SequenceNode) {
+            Set<Item> result = new LinkedHashSet<Item>();
+            Scope s = scope;
+            for (XSLTNode child : ((SequenceNode) node).getChildren()) {
+                if (child instanceof VariableNode) {
+                    VariableNode var = (VariableNode) child;
+                    s = s.bind(varKey(var.getNamespaceURI(), var.getName()), variableValue(var, s));
+                } else if (child instanceof ParamNode) {
+                    ParamNode param = (ParamNode) child;
+                    s = s.bind(varKey(param.getNamespaceURI(), param.getLocalName()),
+                               paramValue(param, s));
+                } else {
+                    result.addAll(instructions(child, s));
+                }
+            }
+            return result;
+        }
+        if (node instanceof VariableNode) {
+            variableValue((VariableNode) node, scope);
+            return EMPTY;
+        }
+        if (node instanceof ParamNode) {
+            paramValue((ParamNode) node, scope);
+            return EMPTY;
+        }
+        if (node instanceof LiteralResultElement) {
+            LiteralResultElement lre = (LiteralResultElement) node;
+            List<String> attributeSets = lre.getUseAttributeSets();
+            if (attributeSets != null && !attributeSets.isEmpty()) {
+                throw new Unprojectable();
+            }
+            for (AttributeValueTemplate avt : lre.getAttributes().values()) {
+                value(avt, scope);
+            }
+            constructorContent(lre.getContent(), scope);
+            constructorContent(lre.getOnEmpty(), scope);
+            constructorContent(lre.getOnNonEmpty(), scope);
+            return EMPTY;
+        }
+        if (node instanceof ValueOfNode) {
+            ValueOfNode valueOf = (ValueOfNode) node;
+            expressionValues(valueOf.getExpressions(), scope);
+            value(valueOf.getSeparatorAvt(), scope);
+            return EMPTY;
+        }
+        if (node instanceof ValueOfContentNode) {
+            constructorContent(((ValueOfContentNode) node).getContent(), scope);
+            return EMPTY;
+        }
+        if (node instanceof CopyOfNode) {
+            CopyOfNode copyOf = (CopyOfNode) node;
+            expressionValues(copyOf.getExpressions(), scope);
+            value(copyOf.getCopyNamespacesAvt(), scope);
+            return EMPTY;
+        }
+        if (node instanceof SequenceOutputNode) {
+            Set<Item> result = new LinkedHashSet<Item>();
+            for (XPathExpression expr : ((SequenceOutputNode) node).getExpressions()) {
+                result.addAll(eval(expr, scope));
+            }
+            // Output as a copy unless bound to a variable or parameter
+            markValue(result);
+            return result;
+        }
+        if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            tests(ifNode.getExpressions(), scope);
+            return instructions(ifNode.getContent(), scope);
+        }
+        if (node instanceof ChooseNode) {
+            ChooseNode choose = (ChooseNode) node;
+            Set<Item> result = new LinkedHashSet<Item>();
+            for (WhenNode when : choose.getWhens()) {
+                result.addAll(instructions(when, scope));
+            }
+            result.addAll(instructions(choose.getOtherwise(), scope));
+            return result;
+        }
+        if (node instanceof WhenNode) {
+            WhenNode when = (WhenNode) node;
+            eval(when.getTestExpr(), scope);
+            return instructions(when.getContent(), scope);
+        }
+        if (node instanceof OtherwiseNode) {
+            return instructions(((OtherwiseNode) node).getContent(), scope);
+        }
+        if (node instanceof ForEachNode) {
+            ForEachNode forEach = (ForEachNode) node;
+            Set<Item> items = new LinkedHashSet<Item>();
+            for (XPathExpression expr : forEach.getExpressions()) {
+                items.addAll(eval(expr, scope));
+            }
+            Scope inner = scope.withFocusAndCurrent(items);
+            sortKeys(forEach.getSorts(), inner);
+            return instructions(forEach.getBody(), inner);
+        }
+        if (node instanceof ApplyTemplatesNode) {
+            ApplyTemplatesNode apply = (ApplyTemplatesNode) node;
+            Set<Item> items;
+            if (apply.getSelectExpr() != null) {
+                items = eval(apply.getSelectExpr(), scope);
+            } else {
+                items = new LinkedHashSet<Item>();
+                for (Item item : scope.focus) {
+                    childNodes(item, apply.getMode(), items);
+                }
+            }
+            sortKeys(apply.getSorts(), scope.withFocusAndCurrent(items));
+            withParams(apply.getParams(), scope);
+            return dispatch(items, apply.getMode());
+        }
+        if (node instanceof CallTemplateNode) {
+            CallTemplateNode call = (CallTemplateNode) node;
+            TemplateRule rule = stylesheet.getNamedTemplate(call.getName());
+            if (rule == null) {
+                throw new Unprojectable();
+            }
+            withParams(call.getParams(), scope);
+            if (scope.focus.isEmpty()) {
+                return template(rule, null);
+            }
+            Set<Item> result = new LinkedHashSet<Item>();
+            for (Item item : scope.focus) {
+                result.addAll(template(rule, item));
+            }
+            return result;
+        }
+        if (node instanceof WithParamNode) {
+            List<WithParamNode> params = Collections.singletonList((WithParamNode) node);
+            withParams(params, scope);
+            return EMPTY;
+        }
+        if (node instanceof CopyNode) {
+            CopyNode copy = (CopyNode) node;
+            String attributeSets = copy.getUseAttributeSetsString();
+            if (attributeSets != null && !attributeSets.trim().isEmpty()) {
+                throw new Unprojectable();
+            }
+            Set<Item> items = scope.focus;
+            if (!copy.getExpressions().isEmpty()) {
+                items = new LinkedHashSet<Item>();
+                for (XPathExpression expr : copy.getExpressions()) {
+                    items.addAll(eval(expr, scope));
+                }
+            }
+            value(copy.getInheritNamespacesAvt(), scope);
+            value(copy.getCopyNamespacesAvt(), scope);
+            Scope inner = scope.withFocus(items);
+            constructorContent(copy.getContent(), inner);
+            constructorContent(copy.getOnEmpty(), inner);
+            return EMPTY;
+        }
+        if (node instanceof ElementNode) {
+            ElementNode element = (ElementNode) node;
+            String attributeSets = element.getUseAttributeSetsString();
+            if (attributeSets != null && !attributeSets.trim().isEmpty()) {
+                throw new Unprojectable();
+            }
+            value(element.getNameAvt(), scope);
+            value(element.getNamespaceAvt(), scope);
+            constructorContent(element.getContent(), scope);
+            constructorContent(element.getOnEmpty(), scope);
+            constructorContent(element.getOnNonEmpty(), scope);
+            return EMPTY;
+        }
+        if (node instanceof AttributeNode) {
+            AttributeNode attribute = (AttributeNode) node;
+            value(attribute.getNameAvt(), scope);
+            value(attribute.getNamespaceAvt(), scope);
+            value(attribute.getSeparatorAvt(), scope);
+            expressionValues(attribute.getExpressions(), scope);
+            constructorContent(attribute.getContent(), scope);
+            return EMPTY;
+        }
+        if (node instanceof CommentNode) {
+            CommentNode comment = (CommentNode) node;
+            expressionValues(comment.getExpressions(), scope);
+            constructorContent(comment.getContent(), scope);
+            return EMPTY;
+        }
+        if (node instanceof MessageNode) {
+            MessageNode message = (MessageNode) node;
+            expressionValues(message.getExpressions(), scope);
+            value(message.getTerminateAvt(), scope);
+            constructorContent(message.getContent(), scope);
+            return EMPTY;
+        }
+        throw new Unprojectable();
+    }
+
+    /** Analyses content whose result becomes part of a new node. */
+    private void constructorContent(XSLTNode content, Scope scope) throws Unprojectable {
+        markValue(instructions(content, scope));
+    }
+
+    private void expressionValues(List<XPathExpression> exprs, Scope scope)
+            throws Unprojectable {
+        for (XPathExpression expr : exprs) {
+            value(expr, scope);
+        }
+    }
+
+    private void tests(List<XPathExpression> exprs, Scope scope) throws Unprojectable {
+        for (XPathExpression expr : exprs) {
+            eval(expr, scope);
+        }
+    }
+
+    private Set<Item> variableValue(VariableNode var, Scope scope) throws Unprojectable {
+        Set<Item> value = new LinkedHashSet<Item>();
+        for (XPathExpression expr : var.getExpressions()) {
+            value.addAll(eval(expr, scope));
+        }
+        if (var.getContent() != null) {
+            value.addAll(instructions(var.getContent(), scope));
+            value.add(OTHER_ITEM);
+        }
+        return value;
+    }
+
+    private Set<Item> paramValue(ParamNode param, Scope scope) throws Unprojectable {
+        Set<Item> value = new LinkedHashSet<Item>();
+        value.addAll(eval(param.getSelectExpr(), scope));
+        if (param.getContent() != null) {
+            value.addAll(instructions(param.getContent(), scope));
+            value.add(OTHER_ITEM);
+        }
+        Set<Item> supplied = paramValues.get(varKey(param.getNamespaceURI(), param.getLocalName()));
+        if (supplied != null) {
+            value.addAll(supplied);
+        }
+        return value;
+    }
+
+    /**
+     * Records the values passed as parameters. A parameter may receive the
+     * value of any parameter of the same name passed anywhere.
+     */
+    private void withParams(List<WithParamNode> params, Scope scope) throws Unprojectable {
+        if (params == null) {
+            return;
+        }
+        for (WithParamNode param : params) {
+            Set<Item> value = new LinkedHashSet<Item>();
+            value.addAll(eval(param.getSelectExpr(), scope));
+            if (param.getContent() != null) {
+                value.addAll(instructions(param.getContent(), scope));
+                value.add(OTHER_ITEM);
+            }
+            String key = varKey(param.getNamespaceURI(), param.getLocalName());
+            Set<Item> supplied = paramValues.get(key);
+            if (supplied == null) {
+                supplied = new LinkedHashSet<Item>();
+                paramValues.put(key, supplied);
+            }
+            if (supplied.addAll(value)) {
+                changes++;
+            }
+        }
+    }
+
+    private void sortKeys(List<SortSpec> sorts, Scope scope) throws Unprojectable {
+        if (sorts == null) {
+            return;
+        }
+        for (SortSpec sort : sorts) {
+            value(sort.getSelectExpr(), scope);
+            List<XPathExpression> exprs = new ArrayList<XPathExpression>();
+            sort.collectAvtExpressions(exprs);
+            expressionValues(exprs, scope);
+            Object body = sort.getContentBody();
+            if (body instanceof XSLTNode) {
+                constructorContent((XSLTNode) body, scope);
+            } else if (body != null) {
+                throw new Unprojectable();
+            }
+            if (sort.getSelectExpr() == null && body == null) {
+                markValue(scope.focus);
+            }
+        }
+    }
+
+    // ========================================================================
+    // Templates
+    // ========================================================================
+
+    /** Adds the nodes xsl:apply-templates without a select would process. */
+    private void childNodes(Item item, String mode, Set<Item> out) throws Unprojectable {
+        if (item.kind != TRIE) {
+            if (item.kind != LEAF) {
+                out.add(item);
+            }
+            return;
+        }
+        PNode node = item.node;
+        if (!node.keepSubtree) {
+            // Name the children templates are written for, so that the rest
+            // can be told apart from them
+            for (TemplateRule rule : matchRules) {
+                if (appliesInMode(rule, mode)) {
+                    addNamedChildren(rule.getMatchPattern(), node);
+                }
+            }
+        }
+        elementChildren(node, out);
+        keepText(node);
+        keepOthers(node);
+        out.add(node.leaf);
+    }
+
+    private void addNamedChildren(Pattern pattern, PNode node) throws Unprojectable {
+        if (pattern instanceof UnionPattern) {
+            for (Pattern alternative : ((UnionPattern) pattern).getAlternatives()) {
+                addNamedChildren(alternative, node);
+            }
+            return;
+        }
+        NodeTest test = lastNodeTest(pattern);
+        if (isExactElementTest(test)) {
+            ElementTest elementTest = (ElementTest) test;
+            child(node, elementTest.getNamespaceURI(), elementTest.getLocalName(),
+                  new HashSet<Item>());
+        }
+    }
+
+    private Set<Item> dispatch(Set<Item> items, String mode) throws Unprojectable {
+        Set<Item> result = new LinkedHashSet<Item>();
+        for (Item item : items) {
+            result.addAll(dispatch(item, mode));
+        }
+        return result;
+    }
+
+    private Set<Item> dispatch(Item item, String mode) throws Unprojectable {
+        Visit visit = new Visit(null, item, modeKey(mode));
+        Set<Item> stored = results.get(visit);
+        if (!visited.add(visit)) {
+            return stored != null ? stored : EMPTY;
+        }
+        Set<Item> result = new LinkedHashSet<Item>();
+        boolean handled = false;
+        for (TemplateRule rule : matchRules) {
+            if (!appliesInMode(rule, mode)) {
+                continue;
+            }
+            Pattern pattern = rule.getMatchPattern();
+            if (!mayMatch(pattern, item)) {
+                continue;
+            }
+            patternPredicates(pattern, item);
+            result.addAll(template(rule, item));
+            if (!handled && !"#current".equals(mode) && surelyMatches(pattern, item)) {
+                handled = true;
+            }
+        }
+        if (!handled) {
+            result.addAll(builtIn(item, mode));
+        }
+        return store(visit, result);
+    }
+
+    private Set<Item> template(TemplateRule rule, Item item) throws Unprojectable {
+        Visit visit = new Visit(rule, item, null);
+        Set<Item> stored = results.get(visit);
+        if (!visited.add(visit)) {
+            return stored != null ? stored : EMPTY;
+        }
+        Set<Item> focus = item != null ? Collections.singleton(item) : EMPTY;
+        Scope scope = new Scope(focus, focus);
+        for (TemplateParameter param : rule.getParameters()) {
+            Set<Item> value = new LinkedHashSet<Item>();
+            value.addAll(eval(param.getSelectExpr(), scope));
+            if (param.getDefaultContent() != null) {
+                value.addAll(instructions(param.getDefaultContent(), scope));
+                value.add(OTHER_ITEM);
+            }
+            String key = varKey(param.getNamespaceURI(), param.getLocalName());
+            Set<Item> supplied = paramValues.get(key);
+            if (supplied != null) {
+                value.addAll(supplied);
+            }
+            scope = scope.bind(key, value);
+        }
+        return store(visit, instructions(rule.getBody(), scope));
+    }
+
+    private Set<Item> store(Visit visit, Set<Item> result) {
+        Set<Item> stored = results.get(visit);
+        if (stored == null) {
+            stored = new LinkedHashSet<Item>();
+            results.put(visit, stored);
+        }
+        if (stored.addAll(result)) {
+            changes++;
+        }
+        return stored;
+    }
+
+    private Set<Item> builtIn(Item item, String mode) throws Unprojectable {
+        if (item.kind != TRIE) {
+            // Other nodes are kept with everything below them
+            return EMPTY;
+        }
+        switch (onNoMatch(mode)) {
+            case DEEP_COPY:
+                markSubtree(item.node);
+                return EMPTY;
+            case DEEP_SKIP:
+            case FAIL:
+                return EMPTY;
+            default:
+                Set<Item> items = new LinkedHashSet<Item>();
+                childNodes(item, mode, items);
+                return dispatch(items, mode);
+        }
+    }
+
+    private ModeDeclaration.OnNoMatch onNoMatch(String mode) {
+        if ("#current".equals(mode)) {
+            ModeDeclaration.OnNoMatch result = ModeDeclaration.OnNoMatch.TEXT_ONLY_COPY;
+            for (ModeDeclaration decl : stylesheet.getModeDeclarations().values()) {
+                if (decl.getOnNoMatch() == ModeDeclaration.OnNoMatch.DEEP_COPY) {
+                    return ModeDeclaration.OnNoMatch.DEEP_COPY;
+                }
+            }
+            return result;
+        }
+        ModeDeclaration decl = stylesheet.getModeDeclaration(
+            modeKey(mode).isEmpty() ? null : mode);
+        if (decl == null && modeKey(mode).isEmpty()) {
+            decl = stylesheet.getModeDeclaration("#unnamed");
+        }
+        if (decl == null || decl.getOnNoMatch() == null) {
+            return ModeDeclaration.OnNoMatch.TEXT_ONLY_COPY;
+        }
+        return decl.getOnNoMatch();
+    }
+
+    private static String modeKey(String mode) {
+        if (mode == null || "#default".equals(mode) || "#unnamed".equals(mode)) {
+            return "";
+        }
+        return mode;
+    }
+
+    private static boolean appliesInMode(TemplateRule rule, String mode) {
+        String ruleMode = rule.getMode();
+        return "#current".equals(mode) || "#all".equals(ruleMode)
+            || modeKey(ruleMode).equals(modeKey(mode));
+    }
+
+    // ========================================================================
+    // Patterns
+    // ========================================================================
+
+    /** Rejects patterns the analysis cannot match against the trie. */
+    private static void checkPattern(Pattern pattern) throws Unprojectable {
+        if (pattern instanceof RootPattern) {
+            return;
+        }
+        if (pattern instanceof NameTestPattern) {
+            NameTestPattern nameTest = (NameTestPattern) pattern;
+            if (nameTest.getPredicateStr() != null) {
+                Step.Axis axis = nameTest.getAxis();
+                if ((axis != Step.Axis.CHILD && axis != Step.Axis.ATTRIBUTE)
+                        || !allowsPredicate(nameTest.getNodeTest())) {
+                    throw new Unprojectable();
+                }
+            }
+            return;
+        }
+        if (pattern instanceof PathPattern) {
+            PathPattern pathPattern = (PathPattern) pattern;
+            if (pathPattern.getPredicateStr() != null) {
+                throw new Unprojectable();
+            }
+            for (PatternStep step : pathPattern.getSteps()) {
+                if (step.predicateStr != null
+                        && (step.axis == Step.Axis.DESCENDANT
+                            || step.axis == Step.Axis.DESCENDANT_OR_SELF
+                            || !allowsPredicate(step.nodeTest))) {
+                    throw new Unprojectable();
+                }
+            }
+            return;
+        }
+        if (pattern instanceof UnionPattern) {
+            if (((UnionPattern) pattern).getPredicateStr() != null) {
+                throw new Unprojectable();
+            }
+            for (Pattern alternative : ((UnionPattern) pattern).getAlternatives()) {
+                checkPattern(alternative);
+            }
+            return;
+        }
+        if (pattern instanceof IntersectPattern) {
+            IntersectPattern intersect = (IntersectPattern) pattern;
+            if (intersect.getPredicateStr() != null) {
+                throw new Unprojectable();
+            }
+            checkPattern(intersect.getLeft());
+            checkPattern(intersect.getRight());
+            return;
+        }
+        if (pattern instanceof ExceptPattern) {
+            ExceptPattern except = (ExceptPattern) pattern;
+            if (except.getPredicateStr() != null) {
+                throw new Unprojectable();
+            }
+            checkPattern(except.getLeft());
+            checkPattern(except.getRight());
+            return;
+        }
+        throw new Unprojectable();
+    }
+
+    /**
+     * Whether a predicate on a step with this test sees the same positions
+     * in the projected tree: every sibling it counts is kept along with the
+     * node matched.
+     */
+    private static boolean allowsPredicate(NodeTest test) {
+        return isExactElementTest(test) || test instanceof AttributeTest
+            || test instanceof TextTest || test instanceof CommentTest
+            || test instanceof PITest;
+    }
+
+    private static boolean isExactElementTest(NodeTest test) {
+        if (!(test instanceof ElementTest)) {
+            return false;
+        }
+        ElementTest elementTest = (ElementTest) test;
+        return elementTest.getNamespaceURI() != null && elementTest.getLocalName() != null
+            && elementTest.getType() == null;
+    }
+
+    private static NodeTest lastNodeTest(Pattern pattern) {
+        if (pattern instanceof NameTestPattern) {
+            return ((NameTestPattern) pattern).getNodeTest();
+        }
+        if (pattern instanceof PathPattern) {
+            PatternStep[] steps = ((PathPattern) pattern).getSteps();
+            return steps.length > 0 ? steps[steps.length - 1].nodeTest : null;
+        }
+        return null;
+    }
+
+    private static boolean mayMatch(Pattern pattern, Item item) {
+        if (pattern instanceof UnionPattern) {
+            for (Pattern alternative : ((UnionPattern) pattern).getAlternatives()) {
+                if (mayMatch(alternative, item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (pattern instanceof IntersectPattern) {
+            IntersectPattern intersect = (IntersectPattern) pattern;
+            return mayMatch(intersect.getLeft(), item) && mayMatch(intersect.getRight(), item);
+        }
+        if (pattern instanceof ExceptPattern) {
+            return mayMatch(((ExceptPattern) pattern).getLeft(), item);
+        }
+        if (item.kind != TRIE && item.kind != LEAF) {
+            return true;
+        }
+        if (pattern instanceof RootPattern) {
+            return item.kind == TRIE && item.node.parent == null;
+        }
+        NodeTest test = lastNodeTest(pattern);
+        if (test == null) {
+            return true;
+        }
+        NodeType type = test.getMatchableNodeType();
+        if (item.kind == LEAF) {
+            return type != NodeType.ELEMENT && type != NodeType.ROOT;
+        }
+        PNode node = item.node;
+        if (node.parent == null) {
+            // Only "/" matches the document node
+            return false;
+        }
+        if (type != null && type != NodeType.ELEMENT) {
+            return false;
+        }
+        if (!(test instanceof ElementTest)) {
+            return true;
+        }
+        ElementTest elementTest = (ElementTest) test;
+        if (node.isStar()) {
+            // Stands for the children not named in the trie
+            if (!isExactElementTest(test)) {
+                return true;
+            }
+            String key = varKey(elementTest.getNamespaceURI(), elementTest.getLocalName());
+            for (PNode parent : node.parents) {
+                if (parent.children == null || !parent.children.containsKey(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return (elementTest.getLocalName() == null
+                || elementTest.getLocalName().equals(node.local))
+            && (elementTest.getNamespaceURI() == null
+                || elementTest.getNamespaceURI().equals(node.uri));
+    }
+
+    /**
+     * Whether a pattern is certain to match a trie node, so that the
+     * built-in rule is never used for it.
+     */
+    private static boolean surelyMatches(Pattern pattern, Item item) {
+        if (item.kind != TRIE || item.node.isStar()) {
+            return false;
+        }
+        PNode node = item.node;
+        if (pattern instanceof UnionPattern) {
+            for (Pattern alternative : ((UnionPattern) pattern).getAlternatives()) {
+                if (surelyMatches(alternative, item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (pattern instanceof RootPattern) {
+            return node.parent == null;
+        }
+        if (node.parent == null) {
+            return false;
+        }
+        if (pattern instanceof NameTestPattern) {
+            NameTestPattern nameTest = (NameTestPattern) pattern;
+            return nameTest.getPredicateStr() == null
+                && nameTest.getAxis() == Step.Axis.CHILD
+                && isNamed(nameTest.getNodeTest(), node);
+        }
+        if (pattern instanceof PathPattern) {
+            PathPattern pathPattern = (PathPattern) pattern;
+            PatternStep[] steps = pathPattern.getSteps();
+            if (pathPattern.getPredicateStr() != null || steps.length == 0) {
+                return false;
+            }
+            return surelyMatches(steps, steps.length - 1, pathPattern.isAbsolute(), node);
+        }
+        return false;
+    }
+
+    /** Whether steps up to i match a node wherever it occurs. */
+    private static boolean surelyMatches(PatternStep[] steps, int i, boolean absolute,
+                                         PNode node) {
+        PatternStep step = steps[i];
+        if (step.predicateStr != null || !isNamed(step.nodeTest, node)) {
+            return false;
+        }
+        if (i == 0 && !absolute) {
+            return true;
+        }
+        if (step.axis != Step.Axis.CHILD) {
+            return false;
+        }
+        for (PNode parent : node.parents) {
+            boolean matches = (i == 0) ? parent.parent == null
+                : parent.parent != null && surelyMatches(steps, i - 1, absolute, parent);
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNamed(NodeTest test, PNode node) {
+        if (!isExactElementTest(test) || node.isStar() || node.parent == null) {
+            return false;
+        }
+        ElementTest elementTest = (ElementTest) test;
+        return elementTest.getLocalName().equals(node.local)
+            && elementTest.getNamespaceURI().equals(node.uri);
+    }
+
+    /** Analyses the predicates of a pattern that may match an item. */
+    private void patternPredicates(Pattern pattern, Item item) throws Unprojectable {
+        List<String> last = new ArrayList<String>();
+        List<String> inner = new ArrayList<String>();
+        collectPredicates(pattern, last, inner);
+        if (last.isEmpty() && inner.isEmpty()) {
+            return;
+        }
+        Set<Item> self = Collections.singleton(item);
+        Scope scope = new Scope(self, self);
+        for (String predicate : last) {
+            eval(compile(predicate), scope);
+        }
+        if (!inner.isEmpty()) {
+            Set<Item> ancestors = new LinkedHashSet<Item>();
+            switch (item.kind) {
+                case TRIE:
+                    ancestors(item.node, ancestors);
+                    ancestors.remove(root.trie);
+                    break;
+                case KEPT:
+                    ancestors.add(item);
+                    ancestors.add(item.node.trie);
+                    ancestors(item.node, ancestors);
+                    break;
+                case LEAF:
+                    ancestors.add(item.node.trie);
+                    ancestors(item.node, ancestors);
+                    break;
+                default:
+                    ancestors.add(item);
+                    break;
+            }
+            Scope ancestorScope = new Scope(ancestors, self);
+            for (String predicate : inner) {
+                eval(compile(predicate), ancestorScope);
+            }
+        }
+    }
+
+    private static void collectPredicates(Pattern pattern, List<String> last,
+                                          List<String> inner) {
+        if (pattern instanceof NameTestPattern) {
+            String predicate = ((NameTestPattern) pattern).getPredicateStr();
+            if (predicate != null) {
+                last.add(predicate);
+            }
+        } else if (pattern instanceof PathPattern) {
+            PatternStep[] steps = ((PathPattern) pattern).getSteps();
+            for (int i = 0; i < steps.length; i++) {
+                if (steps[i].predicateStr != null) {
+                    (i == steps.length - 1 ? last : inner).add(steps[i].predicateStr);
+                }
+            }
+        } else if (pattern instanceof UnionPattern) {
+            for (Pattern alternative : ((UnionPattern) pattern).getAlternatives()) {
+                collectPredicates(alternative, last, inner);
+            }
+        } else if (pattern instanceof IntersectPattern) {
+            collectPredicates(((IntersectPattern) pattern).getLeft(), last, inner);
+            collectPredicates(((IntersectPattern) pattern).getRight(), last, inner);
+        } else if (pattern instanceof ExceptPattern) {
+            collectPredicates(((ExceptPattern) pattern).getLeft(), last, inner);
+            collectPredicates(((ExceptPattern) pattern).getRight(), last, inner);
+        }
+    }
+
+    private static Expr compile(String predicate) throws Unprojectable {
+        try {
+            return XPathExpression.compile(predicate, null).getCompiledExpr();
+        } catch (XPathSyntaxException e) {
+            throw new Unprojectable();
+        }
+    }
+
+    // ========================================================================
+    // Support
+    // ========================================================================
+
+    private static String varKey(String uri, String local) {
+        if (uri == null || uri.isEmpty()) {
+            return local;
+        }
+        return "{" + uri + "}" + local;
+    }
+
+    private static Set<Item> union(Set<Item> a, Set<Item> b) {
+        if (b.isEmpty()) {
+            return a;
+        }
+        if (a.isEmpty()) {
+            return b;
+        }
+        Set<Item> result = new LinkedHashSet<Item>(a);
+        result.addAll(b);
+        return result;
+    }
+
+    /**
+     * An element of the trie: the document node, a named element, or all
+     * the child elements of its parent not named in the trie (a star).
+     * A node repeated by a descendant is also that descendant's child, so
+     * it may have several parents.
+     */
+    private static final class PNode {
+
+        final PNode parent;
+        final List<PNode> parents = new ArrayList<PNode>(1);
+        final String uri;
+        final String local;
+        final String key;
+        final int depth;
+        final boolean wildcard;
+        final Item trie;
+        final Item kept;
+        final Item leaf;
+        Map<String, PNode> children;
+        PNode star;
+        boolean keepText;
+        boolean keepOthers;
+        boolean keepSubtree;
+
+        PNode(PNode parent, String uri, String local, boolean wildcard) {
+            this.parent = parent;
+            if (parent != null) {
+                parents.add(parent);
+            }
+            this.uri = uri == null ? "" : uri;
+            this.local = local;
+            this.key = wildcard || parent == null ? null : varKey(uri, local);
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.wildcard = wildcard;
+            this.trie = new Item(TRIE, this);
+            this.kept = new Item(KEPT, this);
+            this.leaf = new Item(LEAF, this);
+        }
+
+        boolean isStar() {
+            return wildcard;
+        }
+
+    }
+
+    /**
+     * An abstract source node. TRIE is the node itself; KEPT is any node
+     * below it in a subtree kept whole; LEAF is any attribute, namespace,
+     * text, comment or processing instruction child of it; OTHER is a node
+     * of some other tree. Items are canonical, so compare by identity.
+     */
+    private static final class Item {
+
+        final int kind;
+        final PNode node;
+
+        Item(int kind, PNode node) {
+            this.kind = kind;
+            this.node = node;
+        }
+
+    }
+
+    /** A template or template dispatch applied to an item. */
+    private static final class Visit {
+
+        final TemplateRule rule;
+        final Item item;
+        final String mode;
+
+        Visit(TemplateRule rule, Item item, String mode) {
+            this.rule = rule;
+            this.item = item;
+            this.mode = mode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Visit)) {
+                return false;
+            }
+            Visit other = (Visit) o;
+            return rule == other.rule && item == other.item
+                && (mode == null ? other.mode == null : mode.equals(other.mode));
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(rule) * 31 + System.identityHashCode(item);
+            return mode == null ? h : h * 31 + mode.hashCode();
+        }
+
+    }
+
+    /** The focus, current() and in-scope local variables. */
+    private static final class Scope {
+
+        final Set<Item> focus;
+        final Set<Item> current;
+        final Binding bindings;
+
+        Scope(Set<Item> focus, Set<Item> current) {
+            this(focus, current, null);
+        }
+
+        private Scope(Set<Item> focus, Set<Item> current, Binding bindings) {
+            this.focus = focus;
+            this.current = current;
+            this.bindings = bindings;
+        }
+
+        Scope withFocus(Set<Item> items) {
+            return new Scope(items, current, bindings);
+        }
+
+        Scope withFocusAndCurrent(Set<Item> items) {
+            return new Scope(items, items, bindings);
+        }
+
+        Scope bind(String name, Set<Item> value) {
+            return new Scope(focus, current, new Binding(name, value, bindings));
+        }
+
+        Set<Item> lookup(String name) {
+            for (Binding b = bindings; b != null; b = b.next) {
+                if (b.name.equals(name)) {
+                    return b.value;
+                }
+            }
+            return null;
+        }
+
+    }
+
+    private static final class Binding {
+
+        final String name;
+        final Set<Item> value;
+        final Binding next;
+
+        Binding(String name, Set<Item> value, Binding next) {
+            this.name = name;
+            this.value = value;
+            this.next = next;
+        }
+
+    }
+
+    /** Thrown when the stylesheet may need the whole document. */
+    private static final class Unprojectable extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        Unprojectable() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
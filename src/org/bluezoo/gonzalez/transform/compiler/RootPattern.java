@@ -32,6 +32,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class RootPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     static final RootPattern INSTANCE = new RootPattern();
 
     private RootPattern() {
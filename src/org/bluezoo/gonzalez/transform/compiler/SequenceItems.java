@@ -30,6 +30,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNodeSet;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 
 class SequenceAttributeItem implements XPathValue, XPathNode {
+
+    private static final long serialVersionUID = 1L;
+
     private final String namespaceURI;
     private final String localName;
     private final String qName;
@@ -98,6 +101,9 @@ class SequenceAttributeItem implements XPathValue, XPathNode {
 }
 
 class SequenceTextItem implements XPathValue, XPathNode {
+
+    private static final long serialVersionUID = 1L;
+
     private final String text;
     
     SequenceTextItem(String text) {
@@ -140,6 +146,9 @@ class SequenceTextItem implements XPathValue, XPathNode {
 }
 
 class SequenceCommentItem implements XPathValue, XPathNode {
+
+    private static final long serialVersionUID = 1L;
+
     private final String text;
     
     SequenceCommentItem(String text) {
@@ -182,6 +191,9 @@ class SequenceCommentItem implements XPathValue, XPathNode {
 }
 
 class SequencePIItem implements XPathValue, XPathNode {
+
+    private static final long serialVersionUID = 1L;
+
     private final String target;
     private final String data;
     
@@ -227,6 +239,9 @@ class SequencePIItem implements XPathValue, XPathNode {
 }
 
 class SequenceNamespaceItem implements XPathValue, XPathNode {
+
+    private static final long serialVersionUID = 1L;
+
     private final String prefix;  // The namespace prefix (local name of namespace node)
     private final String uri;     // The namespace URI (string value)
     
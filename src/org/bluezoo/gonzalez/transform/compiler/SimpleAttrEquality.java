@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 /**
  * A pattern predicate that is exactly {@code @attr = 'literal'} (or
  * {@code 'literal' = @attr} / {@code eq}), used to index and fast-match
@@ -28,7 +30,9 @@ package org.bluezoo.gonzalez.transform.compiler;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class SimpleAttrEquality {
+public final class SimpleAttrEquality implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String namespaceURI;
     private final String localName;
@@ -21,6 +21,9 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+import java.util.List;
+
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
 import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
 import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
@@ -30,7 +33,10 @@ import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public class SortSpec {
+public class SortSpec implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     private final XPathExpression selectExpr;
     private final Object contentBody;
     private final AttributeValueTemplate dataTypeAvt;
@@ -111,4 +117,14 @@ public class SortSpec {
         String value = collationAvt.evaluate(context);
         return value != null && !value.isEmpty() ? value : null;
     }
+    
+    /** Adds the expressions in the sort key's attribute value templates. */
+    void collectAvtExpressions(List<XPathExpression> exprs) {
+        AttributeValueTemplate[] avts = { dataTypeAvt, orderAvt, caseOrderAvt, langAvt, collationAvt };
+        for (AttributeValueTemplate avt : avts) {
+            if (avt != null) {
+                avt.collectExpressions(exprs);
+            }
+        }
+    }
 }
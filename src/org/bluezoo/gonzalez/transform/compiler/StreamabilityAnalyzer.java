@@ -34,6 +34,7 @@ import org.bluezoo.gonzalez.transform.ast.IfNode;
 import org.bluezoo.gonzalez.transform.ast.IterateNode;
 import org.bluezoo.gonzalez.transform.ast.LiteralResultElement;
 import org.bluezoo.gonzalez.transform.ast.MessageNode;
+import org.bluezoo.gonzalez.transform.ast.ProfiledNode;
 import org.bluezoo.gonzalez.transform.ast.ResultDocumentNode;
 import org.bluezoo.gonzalez.transform.ast.TryNode;
 import org.bluezoo.gonzalez.transform.ast.VariableNode;
@@ -42,6 +43,7 @@ import org.bluezoo.gonzalez.transform.ast.XSLTNode;
 import org.bluezoo.gonzalez.transform.runtime.BufferingStrategy;
 import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -102,7 +104,10 @@ public final class StreamabilityAnalyzer {
      *
      * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
      */
-    public static final class TemplateStreamability {
+    public static final class TemplateStreamability implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final TemplateRule template;
         private final ExpressionStreamability streamability;
         private final List<String> bufferingReasons;
@@ -185,7 +190,10 @@ public final class StreamabilityAnalyzer {
      *
      * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
      */
-    public static final class StylesheetStreamability {
+    public static final class StylesheetStreamability implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final BufferingStrategy overallStrategy;
         private final Map<TemplateRule, TemplateStreamability> templateAnalysis;
         private final List<String> bufferingReasons;
@@ -370,6 +378,10 @@ public final class StreamabilityAnalyzer {
         if (node == null || depth > 50) {
             return;
         }
+        if (node instanceof ProfiledNode) {
+            collectExpressions(((ProfiledNode) node).getBody(), expressions, depth);
+            return;
+        }
 
         if (node instanceof ExpressionHolder) {
             List<XPathExpression> nodeExprs =
@@ -555,6 +567,9 @@ public final class StreamabilityAnalyzer {
         if (node == null || depth > 50) {
             return false;
         }
+        if (node instanceof ProfiledNode) {
+            return containsNumberInstruction(((ProfiledNode) node).getBody(), depth);
+        }
         if (node instanceof NumberNode) {
             return true;
         }
@@ -198,6 +198,9 @@ public class StylesheetCompiler extends DefaultHandler
 
     /** XSLT namespace URI. */
     public static final String XSLT_NS = "http://www.w3.org/1999/XSL/Transform";
+
+    /** Namespace URI of Gonzalez extension attributes, such as gz:parallel. */
+    public static final String GONZALEZ_NS = "http://www.nongnu.org/gonzalez/xslt";
     
     /** XML Schema namespace URI. */
     private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
@@ -358,6 +361,26 @@ public class StylesheetCompiler extends DefaultHandler
             String shadowValue = shadowAttributes.get(name);
             return shadowValue != null ? shadowValue : attributes.get(name);
         }
+
+        /**
+         * Gets the value of a namespaced (extension) attribute, whatever
+         * prefix the stylesheet bound to its namespace.
+         *
+         * @param uri the attribute namespace URI
+         * @param name the attribute local name
+         * @return the attribute value, or null if not present
+         */
+        String getExtensionAttribute(String uri, String name) {
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                String qName = entry.getKey();
+                int colon = qName.indexOf(':');
+                if (colon > 0 && name.equals(qName.substring(colon + 1))
+                        && uri.equals(namespaceBindings.get(qName.substring(0, colon)))) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
         
         /**
          * Returns true if the attribute has a shadow version (runtime-evaluated AVT).
@@ -710,16 +733,7 @@ public class StylesheetCompiler extends DefaultHandler
         if (isSimplifiedStylesheet && simplifiedStylesheetBody != null) {
             try {
                 // Create a pattern matching "/"
-                Pattern rootPattern = new Pattern() {
-                    @Override
-                    public boolean matches(XPathNode node, TransformContext context) {
-                        return node.getNodeType() == NodeType.ROOT;
-                    }
-                    @Override
-                    public double getDefaultPriority() {
-                        return 0.5;
-                    }
-                };
+                Pattern rootPattern = new SimplifiedRootPattern();
                 
                 // Create a template rule - body must be a SequenceNode
                 SequenceNode body;
@@ -813,6 +827,22 @@ public class StylesheetCompiler extends DefaultHandler
     // Temporary storage for previous namespace values before startElement is called
     private Map<String, String> pendingPreviousNamespaces;
 
+    // Match="/" pattern for the implicit template of a simplified stylesheet
+    private static final class SimplifiedRootPattern implements Pattern {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean matches(XPathNode node, TransformContext context) {
+            return node.getNodeType() == NodeType.ROOT;
+        }
+
+        @Override
+        public double getDefaultPriority() {
+            return 0.5;
+        }
+    }
+
     // Native XMLHandler start-tag assembly (funnels into SAX startElement/endElement)
     private static final class NativeElementFrame {
         final String uri;
@@ -1748,17 +1778,9 @@ public class StylesheetCompiler extends DefaultHandler
                 if (!fallbacks.isEmpty()) {
                     result = new SequenceNode(fallbacks);
                 } else {
-                    final String extElementName = ctx.localName;
-                    final String extNsUri = ctx.namespaceURI;
-                    result = new XSLTNode() {
-                        @Override
-                        public void execute(TransformContext context,
-                                OutputHandler output) throws SAXException {
-                            throw new SAXException("XTDE1450: No xsl:fallback was found " +
-                                "for the extension instruction {" + extNsUri + "}" +
-                                extElementName);
-                        }
-                    };
+                    result = new FailingInstruction("XTDE1450: No xsl:fallback was found " +
+                        "for the extension instruction {" + ctx.namespaceURI + "}" +
+                        ctx.localName);
                 }
             } else {
                 result = DeclarationCompiler.compileLiteralResultElement(this, ctx);
@@ -21,11 +21,14 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
+
 import org.xml.sax.SAXException;
 
 import org.bluezoo.gonzalez.transform.ast.SequenceNode;
 import org.bluezoo.gonzalez.transform.ast.XSLTNode;
 import org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
 import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
 import org.bluezoo.gonzalez.transform.xpath.XPathExpression;
@@ -47,7 +50,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class TemplateParameter {
+public final class TemplateParameter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String namespaceURI;
     private final String localName;
@@ -279,6 +284,7 @@ public final class TemplateParameter {
         SAXEventBuffer buffer = new SAXEventBuffer();
         BufferOutputHandler bufOutput = new BufferOutputHandler(buffer);
         defaultContent.execute(context, bufOutput);
+        GroundedBuffering.recordTree(context, buffer);
         return new XPathResultTreeFragment(buffer);
     }
 
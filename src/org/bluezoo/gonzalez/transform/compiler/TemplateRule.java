@@ -27,6 +27,7 @@ import org.bluezoo.gonzalez.transform.ast.XSLTNode.StreamingCapability;
 import org.bluezoo.gonzalez.transform.runtime.BufferingStrategy;
 import org.bluezoo.gonzalez.transform.xpath.type.SequenceType;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -46,7 +47,9 @@ import java.util.List;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class TemplateRule {
+public final class TemplateRule implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final Pattern matchPattern;
     private final String name;
@@ -56,13 +59,16 @@ public final class TemplateRule {
     private int minImportPrecedence = -1;  // Lowest precedence in this module's import subtree
     private final int declarationIndex;
     private final List<TemplateParameter> parameters;
-    private final XSLTNode body;
+    private XSLTNode body;
     private final String asType;  // XSLT 2.0+ return type declaration
     private SequenceType parsedAsType;  // Pre-parsed from asType with namespace resolution
     private final ComponentVisibility visibility;  // XSLT 3.0 package visibility
     private volatile BufferingStrategy bufferingStrategy;  // set by StreamabilityAnalyzer
     private double effectiveVersion = -1;  // Per-element XSLT version for BC mode (-1 = inherit)
     private CompiledStylesheet definingStylesheet;  // Package scope: stylesheet that originally defined this template
+    private String systemId;  // Location of the xsl:template element
+    private int lineNumber = -1;
+    private int columnNumber = -1;
 
     /**
      * Creates a template rule.
@@ -244,6 +250,15 @@ public final class TemplateRule {
         return body;
     }
 
+    /**
+     * Replaces the template body with an instrumented form of it.
+     *
+     * @param body the new body
+     */
+    void setBody(XSLTNode body) {
+        this.body = body;
+    }
+
     /**
      * Returns the declared return type (XSLT 2.0+).
      *
@@ -294,6 +309,7 @@ public final class TemplateRule {
         copy.minImportPrecedence = this.minImportPrecedence;
         copy.effectiveVersion = this.effectiveVersion;
         copy.definingStylesheet = this.definingStylesheet;
+        copy.setSourceLocation(systemId, lineNumber, columnNumber);
         return copy;
     }
 
@@ -310,6 +326,7 @@ public final class TemplateRule {
         copy.minImportPrecedence = this.minImportPrecedence;
         copy.effectiveVersion = this.effectiveVersion;
         copy.definingStylesheet = this.definingStylesheet;
+        copy.setSourceLocation(systemId, lineNumber, columnNumber);
         return copy;
     }
 
@@ -391,6 +408,46 @@ public final class TemplateRule {
         return matchPattern != null;
     }
 
+    /**
+     * Sets the location of the xsl:template element.
+     *
+     * @param systemId the system ID of the stylesheet module
+     * @param lineNumber the line number
+     * @param columnNumber the column number
+     */
+    public void setSourceLocation(String systemId, int lineNumber, int columnNumber) {
+        this.systemId = systemId;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+    }
+
+    /**
+     * Returns the system ID of the stylesheet module declaring the template.
+     *
+     * @return the system ID, or null if unknown
+     */
+    public String getSystemId() {
+        return systemId;
+    }
+
+    /**
+     * Returns the line number of the xsl:template element.
+     *
+     * @return the line number, or -1 if unknown
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the column number of the xsl:template element.
+     *
+     * @return the column number, or -1 if unknown
+     */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
     /**
      * Returns true if this is a named template.
      *
@@ -31,6 +31,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
  */
 final class TextTest implements NodeTest {
 
+    private static final long serialVersionUID = 1L;
+
     static final TextTest INSTANCE = new TextTest();
 
     private TextTest() {
@@ -34,6 +34,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 final class UnionPattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final Pattern[] alternatives;
 
     UnionPattern(String patternStr, Pattern[] alternatives) {
@@ -121,6 +123,13 @@ final class UnionPattern extends AbstractPattern {
         return name;
     }
 
+    @Override
+    public void collectNameTests(java.util.Collection<String> names) {
+        for (int i = 0; i < alternatives.length; i++) {
+            alternatives[i].collectNameTests(names);
+        }
+    }
+
     @Override
     public double getDefaultPriority() {
         double max = Double.NEGATIVE_INFINITY;
@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.compiler;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -44,18 +45,23 @@ import org.bluezoo.gonzalez.transform.ast.XSLTNode;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class UserFunction {
+public final class UserFunction implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String namespaceURI;
     private final String localName;
     private final List<FunctionParameter> parameters;
-    private final XSLTNode body;
+    private XSLTNode body;
     private final String asType; // Optional return type (as="...")
     private final int importPrecedence;
     private final boolean cached; // XSLT 3.0 cache="yes" attribute
     private final ComponentVisibility visibility; // XSLT 3.0 package visibility
     private String streamability; // XSLT 3.0 streamability attribute
     private CompiledStylesheet definingStylesheet;  // Package scope for cross-package invocations
+    private String systemId; // Location of the xsl:function element
+    private int lineNumber = -1;
+    private int columnNumber = -1;
 
     /**
      * Creates a new user-defined function.
@@ -162,6 +168,15 @@ public final class UserFunction {
         return body;
     }
 
+    /**
+     * Replaces the function body with an instrumented form of it.
+     *
+     * @param body the new body
+     */
+    void setBody(XSLTNode body) {
+        this.body = body;
+    }
+
     /**
      * Returns the declared return type.
      *
@@ -216,6 +231,46 @@ public final class UserFunction {
         this.streamability = streamability;
     }
 
+    /**
+     * Sets the location of the xsl:function element.
+     *
+     * @param systemId the system ID of the stylesheet module
+     * @param lineNumber the line number
+     * @param columnNumber the column number
+     */
+    public void setSourceLocation(String systemId, int lineNumber, int columnNumber) {
+        this.systemId = systemId;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+    }
+
+    /**
+     * Returns the system ID of the stylesheet module declaring the function.
+     *
+     * @return the system ID, or null if unknown
+     */
+    public String getSystemId() {
+        return systemId;
+    }
+
+    /**
+     * Returns the line number of the xsl:function element.
+     *
+     * @return the line number, or -1 if unknown
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the column number of the xsl:function element.
+     *
+     * @return the column number, or -1 if unknown
+     */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
     /**
      * Returns the defining stylesheet for cross-package scope.
      * When a function is imported from a package, it retains a reference
@@ -247,6 +302,7 @@ public final class UserFunction {
         UserFunction copy = new UserFunction(namespaceURI, localName, parameters, body,
                                asType, importPrecedence, cached, newVisibility);
         copy.definingStylesheet = this.definingStylesheet;
+        copy.setSourceLocation(systemId, lineNumber, columnNumber);
         return copy;
     }
 
@@ -260,6 +316,7 @@ public final class UserFunction {
         UserFunction copy = new UserFunction(namespaceURI, localName, parameters, body,
                                asType, newPrecedence, cached, visibility);
         copy.definingStylesheet = this.definingStylesheet;
+        copy.setSourceLocation(systemId, lineNumber, columnNumber);
         return copy;
     }
 
@@ -312,7 +369,10 @@ public final class UserFunction {
      *
      * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
      */
-    public static final class FunctionParameter {
+    public static final class FunctionParameter implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final String name;
         private final String namespaceURI;
         private final String localName;
@@ -41,6 +41,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 final class VariablePattern extends AbstractPattern {
 
+    private static final long serialVersionUID = 1L;
+
     private final String varName;
     private final Pattern trailingPattern;
     private final Step.Axis trailingAxis;
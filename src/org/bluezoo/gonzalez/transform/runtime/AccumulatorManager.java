@@ -43,9 +43,9 @@ import org.xml.sax.SAXException;
 import java.util.ArrayList;
 import java.util.List;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -54,10 +54,14 @@ import java.util.Set;
  * Manages accumulator state during transformation.
  *
  * <p>For tree-based (non-streaming) transforms, accumulators are computed by
- * performing a depth-first traversal of each document before template values
- * are accessed. Each document (main input, doc() results, temporary trees)
- * gets its own independent traversal starting from the initial accumulator
- * values, per XSLT 3.0 Section 6.1.
+ * a depth-first traversal of the document the first time one of their
+ * values is asked for, so an accumulator the stylesheet never reads is never
+ * computed. Each document (main input, doc() results, temporary trees)
+ * gets its own independent traversal of each accumulator, starting from
+ * its initial value, per XSLT 3.0 Section 6.1. The traversal is iterative,
+ * tests only the rules whose pattern could match each node (see {@link
+ * AccumulatorRules}), and keeps the values where they change (see {@link
+ * AccumulatorValues}).
  *
  * <p>For streaming transforms, accumulator rules fire on SAX events
  * via {@link #notifyStartElement} and {@link #notifyEndElement}.
@@ -72,6 +76,9 @@ public final class AccumulatorManager {
      * it is stored as a DeferredError and re-thrown when the value is accessed.
      */
     static final class DeferredError implements XPathValue {
+
+        private static final long serialVersionUID = 1L;
+
         final Exception cause;
         DeferredError(Exception cause) {
             this.cause = cause;
@@ -91,14 +98,10 @@ public final class AccumulatorManager {
     private boolean streamingMode;
 
     /**
-     * Pre-computed before/after values keyed by accumulator name then node
-     * identity. Populated lazily as documents are encountered.
+     * Computed values of the documents encountered so far, keyed by
+     * document root. Populated lazily as values are asked for.
      */
-    private final Map<String, Map<XPathNode, XPathValue>> beforeValues;
-    private final Map<String, Map<XPathNode, XPathValue>> afterValues;
-
-    /** Document roots that have been fully traversed (by identity). */
-    private final Set<XPathNode> traversedDocuments;
+    private final Map<XPathNode, DocumentValues> documents;
 
     /** Accumulators currently being evaluated (for cycle detection). */
     private final Set<String> evaluatingAccumulators;
@@ -124,9 +127,7 @@ public final class AccumulatorManager {
                 ? new ArrayList<InternalAccumulator>(stylesheet.getInternalAccumulators())
                 : new ArrayList<InternalAccumulator>();
         this.initialized = false;
-        this.beforeValues = new HashMap<>();
-        this.afterValues = new HashMap<>();
-        this.traversedDocuments = new HashSet<XPathNode>();
+        this.documents = new HashMap<>();
         this.evaluatingAccumulators = new HashSet<>();
     }
 
@@ -143,9 +144,7 @@ public final class AccumulatorManager {
         this.accumulators = new HashMap<>();
         this.internalAccumulators = new ArrayList<InternalAccumulator>(other.internalAccumulators);
         this.initialized = other.initialized;
-        this.beforeValues = other.beforeValues;
-        this.afterValues = other.afterValues;
-        this.traversedDocuments = other.traversedDocuments;
+        this.documents = other.documents;
         this.evaluatingAccumulators = other.evaluatingAccumulators;
 
         for (Map.Entry<String, AccumulatorState> entry : other.accumulators.entrySet()) {
@@ -169,15 +168,6 @@ public final class AccumulatorManager {
             accumulators.put(entry.getKey(), state);
         }
 
-        for (String accName : accumulators.keySet()) {
-            if (!beforeValues.containsKey(accName)) {
-                beforeValues.put(accName, new IdentityHashMap<XPathNode, XPathValue>());
-            }
-            if (!afterValues.containsKey(accName)) {
-                afterValues.put(accName, new IdentityHashMap<XPathNode, XPathValue>());
-            }
-        }
-
         for (int i = 0; i < internalAccumulators.size(); i++) {
             internalAccumulators.get(i).initialize();
         }
@@ -186,138 +176,166 @@ public final class AccumulatorManager {
     }
 
     /**
-     * Pre-traverses a grounded (tree-based) document to compute all accumulator
-     * values. Each document starts from initial accumulator values per the spec.
+     * Registers a grounded (tree-based) document whose accumulator values
+     * may be asked for. The values of each accumulator are computed on
+     * first access; each document starts from initial accumulator values
+     * per the spec.
      *
      * @param documentRoot the root node of the document to traverse
-     * @throws SAXException if rule evaluation fails
+     * @throws SAXException if initialization fails
      */
     public void preTraverseDocument(XPathNode documentRoot) throws SAXException {
         if (!initialized) {
             initialize();
         }
-
-        if (traversedDocuments.contains(documentRoot)) {
-            return;
+        if (!documents.containsKey(documentRoot)) {
+            documents.put(documentRoot, new DocumentValues(documentRoot));
         }
+    }
 
-        // Mark before traversal to prevent reentrant calls when rules
-        // reference accumulator-before/after during evaluation
-        traversedDocuments.add(documentRoot);
-
-        Map<String, XPathValue> savedValues = new HashMap<>();
-        for (Map.Entry<String, AccumulatorState> entry : accumulators.entrySet()) {
-            savedValues.put(entry.getKey(), entry.getValue().getCurrentValue());
+    /**
+     * Returns the values of an accumulator over a document, computing them
+     * if they have not been asked for before. While the accumulator is
+     * being computed - when one of its rules asks for its own values - the
+     * values of the nodes visited so far are returned.
+     *
+     * @return the values, or null if there is no such accumulator
+     */
+    private AccumulatorValues getValues(DocumentValues document, String name)
+            throws SAXException {
+        AccumulatorValues values = document.values.get(name);
+        if (values != null) {
+            return values;
         }
-
-        for (Map.Entry<String, AccumulatorState> entry : accumulators.entrySet()) {
-            AccumulatorDefinition def = entry.getValue().getDefinition();
-            XPathValue initialValue = evaluateInitialValue(def);
-            entry.getValue().setCurrentValue(initialValue);
+        AccumulatorState state = accumulators.get(name);
+        if (state == null) {
+            return null;
         }
+        if (document.ordinals == null) {
+            document.ordinals = AccumulatorValues.Ordinals.of(document.root);
+        }
+        values = new AccumulatorValues(document.ordinals);
+        document.values.put(name, values);
 
-        traverseNode(documentRoot);
-
-        for (Map.Entry<String, XPathValue> entry : savedValues.entrySet()) {
-            AccumulatorState state = accumulators.get(entry.getKey());
-            if (state != null) {
-                state.setCurrentValue(entry.getValue());
-            }
+        XPathValue savedValue = state.getCurrentValue();
+        state.setCurrentValue(evaluateInitialValue(state.getDefinition()));
+        try {
+            traverse(document.root, name, state, values);
+        } finally {
+            values.seal();
+            state.setCurrentValue(savedValue);
         }
+        return values;
     }
 
     /**
-     * Recursive depth-first traversal that fires accumulator rules on each node
-     * and records the before/after values.
+     * Depth-first traversal of a document that fires one accumulator's
+     * rules on each node and records the before/after values. Nodes copied
+     * from another document take their values from the original nodes.
      */
-    private void traverseNode(XPathNode node) throws SAXException {
-        XPathNode copySource = node.getCopySource();
-        if (copySource != null) {
-            traverseCopiedNode(node, copySource);
-            return;
-        }
-
-        for (Map.Entry<String, AccumulatorState> entry : accumulators.entrySet()) {
-            String accName = entry.getKey();
-            AccumulatorState state = entry.getValue();
-            AccumulatorDefinition def = state.getDefinition();
-
-            if (!(state.getCurrentValue() instanceof DeferredError)) {
-                for (AccumulatorRule rule : def.getPreDescentRules()) {
-                    if (matchesPattern(rule.getMatchPattern(), node)) {
-                        XPathValue newValue = evaluateRule(state, rule, node);
-                        newValue = coerceWithDeferral(newValue, def);
-                        state.setCurrentValue(newValue);
-                    }
+    private void traverse(XPathNode root, String name, AccumulatorState state,
+            AccumulatorValues values) throws SAXException {
+        Frame[] stack = new Frame[16];
+        int depth = 0;
+        int ordinal = 0;
+        stack[0] = new Frame();
+        stack[0].set(root, null, null, ordinal++);
+        enter(stack[0], name, state, values);
+        while (depth >= 0) {
+            Frame frame = stack[depth];
+            if (!frame.children.hasNext()) {
+                exit(frame, state, values);
+                depth--;
+                continue;
+            }
+            XPathNode child = frame.children.next();
+            XPathNode childSource = null;
+            if (frame.source != null) {
+                if (!frame.sourceChildren.hasNext()) {
+                    // No original to take values from
+                    ordinal += AccumulatorValues.Ordinals.countSubtree(child);
+                    continue;
                 }
+                childSource = frame.sourceChildren.next();
             }
-
-            beforeValues.get(accName).put(node, state.getCurrentValue());
+            if (++depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            if (stack[depth] == null) {
+                stack[depth] = new Frame();
+            }
+            stack[depth].set(child, childSource, frame.sourceValues, ordinal++);
+            enter(stack[depth], name, state, values);
         }
+    }
 
-        Iterator<XPathNode> children = node.getChildren();
-        while (children.hasNext()) {
-            traverseNode(children.next());
+    private void enter(Frame frame, String name, AccumulatorState state,
+            AccumulatorValues values) throws SAXException {
+        XPathNode node = frame.node;
+        if (frame.source == null) {
+            XPathNode copySource = node.getCopySource();
+            if (copySource != null) {
+                frame.source = copySource;
+                frame.sourceValues = getSourceValues(copySource, name);
+            }
         }
-
-        for (Map.Entry<String, AccumulatorState> entry : accumulators.entrySet()) {
-            String accName = entry.getKey();
-            AccumulatorState state = entry.getValue();
-            AccumulatorDefinition def = state.getDefinition();
-
-            if (!(state.getCurrentValue() instanceof DeferredError)) {
-                for (AccumulatorRule rule : def.getPostDescentRules()) {
-                    if (matchesPattern(rule.getMatchPattern(), node)) {
-                        XPathValue newValue = evaluateRule(state, rule, node);
-                        newValue = coerceWithDeferral(newValue, def);
-                        state.setCurrentValue(newValue);
-                    }
-                }
+        if (frame.source != null) {
+            frame.sourceChildren = frame.source.getChildren();
+            XPathValue val = frame.sourceValues != null
+                    ? frame.sourceValues.getBefore(frame.source) : null;
+            if (val != null) {
+                state.setCurrentValue(val);
             }
+            values.setBefore(frame.ordinal, val);
+        } else {
+            applyRules(state, state.getPreDescentRules(), node);
+            values.setBefore(frame.ordinal, state.getCurrentValue());
+        }
+        frame.children = node.getChildren();
+    }
 
-            afterValues.get(accName).put(node, state.getCurrentValue());
+    private void exit(Frame frame, AccumulatorState state, AccumulatorValues values)
+            throws SAXException {
+        if (frame.source != null) {
+            XPathValue val = frame.sourceValues != null
+                    ? frame.sourceValues.getAfter(frame.source) : null;
+            if (val != null) {
+                state.setCurrentValue(val);
+            }
+            values.setAfter(frame.ordinal, val);
+        } else {
+            applyRules(state, state.getPostDescentRules(), frame.node);
+            values.setAfter(frame.ordinal, state.getCurrentValue());
         }
+        frame.clear();
     }
 
     /**
-     * Traverses a copied node subtree, propagating accumulator values from
-     * the original source nodes. Ensures the source document is traversed first.
+     * Returns the values of an accumulator over the document a copied node
+     * was copied from.
      */
-    private void traverseCopiedNode(XPathNode copiedNode, XPathNode sourceNode)
+    private AccumulatorValues getSourceValues(XPathNode sourceNode, String name)
             throws SAXException {
-        ensureDocumentTraversed(sourceNode);
-
-        for (Map.Entry<String, AccumulatorState> entry : accumulators.entrySet()) {
-            String accName = entry.getKey();
-            AccumulatorState state = entry.getValue();
-            Map<XPathNode, XPathValue> srcBefore = beforeValues.get(accName);
-            if (srcBefore != null) {
-                XPathValue val = srcBefore.get(sourceNode);
-                if (val != null) {
-                    beforeValues.get(accName).put(copiedNode, val);
-                    state.setCurrentValue(val);
-                }
-            }
-        }
+        XPathNode root = getDocumentRoot(sourceNode);
+        preTraverseDocument(root);
+        return getValues(documents.get(root), name);
+    }
 
-        Iterator<XPathNode> copiedChildren = copiedNode.getChildren();
-        Iterator<XPathNode> sourceChildren = sourceNode.getChildren();
-        while (copiedChildren.hasNext() && sourceChildren.hasNext()) {
-            XPathNode copiedChild = copiedChildren.next();
-            XPathNode sourceChild = sourceChildren.next();
-            traverseCopiedNode(copiedChild, sourceChild);
+    /**
+     * Fires the rules that match a node, in declaration order.
+     */
+    private void applyRules(AccumulatorState state, AccumulatorRules rules, XPathNode node)
+            throws SAXException {
+        AccumulatorRule[] candidates = rules.getCandidates(node);
+        if (candidates.length == 0 || state.getCurrentValue() instanceof DeferredError) {
+            return;
         }
-
-        for (Map.Entry<String, AccumulatorState> entry : accumulators.entrySet()) {
-            String accName = entry.getKey();
-            AccumulatorState state = entry.getValue();
-            Map<XPathNode, XPathValue> srcAfter = afterValues.get(accName);
-            if (srcAfter != null) {
-                XPathValue val = srcAfter.get(sourceNode);
-                if (val != null) {
-                    afterValues.get(accName).put(copiedNode, val);
-                    state.setCurrentValue(val);
-                }
+        AccumulatorDefinition def = state.getDefinition();
+        for (AccumulatorRule rule : candidates) {
+            if (matchesPattern(rule.getMatchPattern(), node)) {
+                XPathValue newValue = evaluateRule(state, rule, node);
+                newValue = coerceWithDeferral(newValue, def);
+                state.setCurrentValue(newValue);
             }
         }
     }
@@ -334,23 +352,20 @@ public final class AccumulatorManager {
     }
 
     /**
-     * Ensures the document containing the given node has been traversed.
-     * If not yet traversed, performs a lazy traversal.
+     * Returns the values of an accumulator over the document containing
+     * the given node, computing them if needed.
      */
-    private void ensureDocumentTraversed(XPathNode node) {
-        if (node == null) {
-            return;
-        }
+    private AccumulatorValues getDocumentValues(String name, XPathNode node) {
         XPathNode root = getDocumentRoot(node);
-        if (!traversedDocuments.contains(root)) {
-            try {
-                preTraverseDocument(root);
-            } catch (SAXException e) {
-                String msg = e.getMessage();
-                if (msg != null && msg.contains("XTDE3400")) {
-                    throw new RuntimeException(msg, e);
-                }
+        try {
+            preTraverseDocument(root);
+            return getValues(documents.get(root), name);
+        } catch (SAXException e) {
+            String msg = e.getMessage();
+            if (msg != null && msg.contains("XTDE3400")) {
+                throw new RuntimeException(msg, e);
             }
+            return null;
         }
     }
 
@@ -380,18 +395,8 @@ public final class AccumulatorManager {
         }
 
         for (AccumulatorState state : accumulators.values()) {
-            AccumulatorDefinition def = state.getDefinition();
             state.push();
-
-            if (!(state.getCurrentValue() instanceof DeferredError)) {
-                for (AccumulatorRule rule : def.getPreDescentRules()) {
-                    if (matchesPattern(rule.getMatchPattern(), node)) {
-                        XPathValue newValue = evaluateRule(state, rule, node);
-                        newValue = coerceWithDeferral(newValue, def);
-                        state.setCurrentValue(newValue);
-                    }
-                }
-            }
+            applyRules(state, state.getPreDescentRules(), node);
         }
 
         for (int i = 0; i < internalAccumulators.size(); i++) {
@@ -411,18 +416,7 @@ public final class AccumulatorManager {
         }
 
         for (AccumulatorState state : accumulators.values()) {
-            AccumulatorDefinition def = state.getDefinition();
-
-            if (!(state.getCurrentValue() instanceof DeferredError)) {
-                for (AccumulatorRule rule : def.getPostDescentRules()) {
-                    if (matchesPattern(rule.getMatchPattern(), node)) {
-                        XPathValue newValue = evaluateRule(state, rule, node);
-                        newValue = coerceWithDeferral(newValue, def);
-                        state.setCurrentValue(newValue);
-                    }
-                }
-            }
-
+            applyRules(state, state.getPostDescentRules(), node);
             state.pop();
         }
 
@@ -445,29 +439,8 @@ public final class AccumulatorManager {
         }
 
         for (AccumulatorState state : accumulators.values()) {
-            AccumulatorDefinition def = state.getDefinition();
-
-            if (!(state.getCurrentValue() instanceof DeferredError)) {
-                for (AccumulatorRule rule : def.getPreDescentRules()) {
-                    boolean matches = matchesPattern(rule.getMatchPattern(), node);
-                    if (matches) {
-                        XPathValue newValue = evaluateRule(state, rule, node);
-                        newValue = coerceWithDeferral(newValue, def);
-                        state.setCurrentValue(newValue);
-                    }
-                }
-            }
-
-            if (!(state.getCurrentValue() instanceof DeferredError)) {
-                for (AccumulatorRule rule : def.getPostDescentRules()) {
-                    boolean matches = matchesPattern(rule.getMatchPattern(), node);
-                    if (matches) {
-                        XPathValue newValue = evaluateRule(state, rule, node);
-                        newValue = coerceWithDeferral(newValue, def);
-                        state.setCurrentValue(newValue);
-                    }
-                }
-            }
+            applyRules(state, state.getPreDescentRules(), node);
+            applyRules(state, state.getPostDescentRules(), node);
         }
     }
 
@@ -754,7 +727,7 @@ public final class AccumulatorManager {
 
     /**
      * Returns the accumulator-before value for the named accumulator.
-     * Lazily traverses the node's document if not yet traversed.
+     * Computes the accumulator over the node's document if needed.
      *
      * @param name the accumulator name
      * @param node the context node
@@ -778,10 +751,9 @@ public final class AccumulatorManager {
             }
         }
         if (node != null && !streamingMode) {
-            ensureDocumentTraversed(node);
-            Map<XPathNode, XPathValue> nodeMap = beforeValues.get(name);
-            if (nodeMap != null) {
-                XPathValue val = nodeMap.get(node);
+            AccumulatorValues values = getDocumentValues(name, node);
+            if (values != null) {
+                XPathValue val = values.getBefore(node);
                 if (val != null) {
                     rethrowIfDeferred(val);
                     return val;
@@ -799,7 +771,7 @@ public final class AccumulatorManager {
 
     /**
      * Returns the accumulator-after value for the named accumulator.
-     * Lazily traverses the node's document if not yet traversed.
+     * Computes the accumulator over the node's document if needed.
      *
      * @param name the accumulator name
      * @param node the context node
@@ -823,10 +795,9 @@ public final class AccumulatorManager {
             }
         }
         if (node != null && !streamingMode) {
-            ensureDocumentTraversed(node);
-            Map<XPathNode, XPathValue> nodeMap = afterValues.get(name);
-            if (nodeMap != null) {
-                XPathValue val = nodeMap.get(node);
+            AccumulatorValues values = getDocumentValues(name, node);
+            if (values != null) {
+                XPathValue val = values.getAfter(node);
                 if (val != null) {
                     rethrowIfDeferred(val);
                     return val;
@@ -919,7 +890,7 @@ public final class AccumulatorManager {
 
     /**
      * Returns true if the document containing the given node has been
-     * pre-traversed for accumulator values.
+     * registered for accumulator values.
      *
      * @param node a node in the document
      * @return true if pre-traversed
@@ -929,7 +900,7 @@ public final class AccumulatorManager {
             return false;
         }
         XPathNode root = getDocumentRoot(node);
-        return traversedDocuments.contains(root);
+        return documents.containsKey(root);
     }
 
     /**
@@ -1000,7 +971,50 @@ public final class AccumulatorManager {
     public String toString() {
         return "AccumulatorManager[accumulators=" + accumulators.size() +
                ", initialized=" + initialized +
-               ", documents=" + traversedDocuments.size() + "]";
+               ", documents=" + documents.size() + "]";
+    }
+
+    /**
+     * The accumulator values computed so far for one document.
+     */
+    private static final class DocumentValues {
+        final XPathNode root;
+        final Map<String, AccumulatorValues> values;
+        AccumulatorValues.Ordinals ordinals;
+
+        DocumentValues(XPathNode root) {
+            this.root = root;
+            this.values = new HashMap<>();
+        }
+    }
+
+    /**
+     * A node being visited by {@link #traverse}, and for a copied node the
+     * original it takes its values from.
+     */
+    private static final class Frame {
+        XPathNode node;
+        int ordinal;
+        Iterator<XPathNode> children;
+        XPathNode source;
+        Iterator<XPathNode> sourceChildren;
+        AccumulatorValues sourceValues;
+
+        void set(XPathNode node, XPathNode source, AccumulatorValues sourceValues,
+                int ordinal) {
+            this.node = node;
+            this.source = source;
+            this.sourceValues = sourceValues;
+            this.ordinal = ordinal;
+        }
+
+        void clear() {
+            node = null;
+            children = null;
+            source = null;
+            sourceChildren = null;
+            sourceValues = null;
+        }
     }
 
 }
@@ -0,0 +1,147 @@
+/*
+ * AccumulatorRules.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import org.bluezoo.gonzalez.transform.compiler.AccumulatorDefinition.AccumulatorRule;
+import org.bluezoo.gonzalez.transform.compiler.Pattern;
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The rules of one accumulator phase, indexed by the node type and local
+ * name their patterns can match.
+ *
+ * <p>{@link #getCandidates} returns only the rules whose pattern could
+ * match a node, in declaration order, so a traversal tests a handful of
+ * patterns at each node rather than every rule. The patterns themselves
+ * still decide whether a rule fires.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+final class AccumulatorRules {
+
+    private static final AccumulatorRule[] NONE = new AccumulatorRule[0];
+
+    /** Rules matching any name, by node type ordinal. */
+    private final AccumulatorRule[][] byType;
+
+    /** Rules for each local name, by node type ordinal, or null. */
+    private final Map<String, AccumulatorRule[]>[] byTypeName;
+
+    /**
+     * Indexes a list of rules.
+     *
+     * @param rules the rules of one phase, in declaration order
+     */
+    AccumulatorRules(List<AccumulatorRule> rules) {
+        NodeType[] types = NodeType.values();
+        byType = new AccumulatorRule[types.length][];
+        byTypeName = newRuleMaps(types.length);
+        for (NodeType type : types) {
+            List<AccumulatorRule> other = new ArrayList<>();
+            Set<String> names = new LinkedHashSet<>();
+            for (AccumulatorRule rule : rules) {
+                Pattern pattern = rule.getMatchPattern();
+                if (pattern == null) {
+                    continue;
+                }
+                NodeType ruleType = pattern.getMatchableNodeType();
+                if (ruleType == null) {
+                    other.add(rule);
+                } else if (ruleType == type) {
+                    String localName = pattern.getMatchableLocalName();
+                    if (localName == null) {
+                        other.add(rule);
+                    } else {
+                        names.add(localName);
+                    }
+                }
+            }
+            byType[type.ordinal()] = toArray(other);
+            if (names.isEmpty()) {
+                continue;
+            }
+            Map<String, AccumulatorRule[]> byName = new HashMap<>();
+            for (String name : names) {
+                List<AccumulatorRule> candidates = new ArrayList<>();
+                for (AccumulatorRule rule : rules) {
+                    Pattern pattern = rule.getMatchPattern();
+                    if (pattern == null) {
+                        continue;
+                    }
+                    NodeType ruleType = pattern.getMatchableNodeType();
+                    if (ruleType == null) {
+                        candidates.add(rule);
+                    } else if (ruleType == type) {
+                        String localName = pattern.getMatchableLocalName();
+                        if (localName == null || localName.equals(name)) {
+                            candidates.add(rule);
+                        }
+                    }
+                }
+                byName.put(name, toArray(candidates));
+            }
+            byTypeName[type.ordinal()] = byName;
+        }
+    }
+
+    /**
+     * Returns the rules whose pattern could match a node.
+     *
+     * @param node the node
+     * @return the candidate rules in declaration order, possibly empty
+     */
+    AccumulatorRule[] getCandidates(XPathNode node) {
+        int type = node.getNodeType().ordinal();
+        Map<String, AccumulatorRule[]> byName = byTypeName[type];
+        if (byName != null) {
+            String localName = node.getLocalName();
+            if (localName != null) {
+                AccumulatorRule[] named = byName.get(localName);
+                if (named != null) {
+                    return named;
+                }
+            }
+        }
+        return byType[type];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, AccumulatorRule[]>[] newRuleMaps(int length) {
+        return new Map[length];
+    }
+
+    private static AccumulatorRule[] toArray(List<AccumulatorRule> rules) {
+        if (rules.isEmpty()) {
+            return NONE;
+        }
+        return rules.toArray(new AccumulatorRule[rules.size()]);
+    }
+
+}
@@ -45,6 +45,8 @@ import java.util.Deque;
 public final class AccumulatorState {
 
     private final AccumulatorDefinition definition;
+    private final AccumulatorRules preDescentRules;
+    private final AccumulatorRules postDescentRules;
     private final Deque<XPathValue> valueStack;
     private XPathValue currentValue;
 
@@ -56,6 +58,8 @@ public final class AccumulatorState {
      */
     public AccumulatorState(AccumulatorDefinition definition, XPathValue initialValue) {
         this.definition = definition;
+        this.preDescentRules = new AccumulatorRules(definition.getPreDescentRules());
+        this.postDescentRules = new AccumulatorRules(definition.getPostDescentRules());
         this.valueStack = new ArrayDeque<>();
         this.currentValue = initialValue;
     }
@@ -68,6 +72,8 @@ public final class AccumulatorState {
      */
     public AccumulatorState(AccumulatorState other) {
         this.definition = other.definition;
+        this.preDescentRules = other.preDescentRules;
+        this.postDescentRules = other.postDescentRules;
         this.valueStack = new ArrayDeque<>(other.valueStack);
         this.currentValue = other.currentValue;
     }
@@ -81,6 +87,24 @@ public final class AccumulatorState {
         return definition;
     }
 
+    /**
+     * Returns the pre-descent rules indexed by the nodes they can match.
+     *
+     * @return the pre-descent rules
+     */
+    AccumulatorRules getPreDescentRules() {
+        return preDescentRules;
+    }
+
+    /**
+     * Returns the post-descent rules indexed by the nodes they can match.
+     *
+     * @return the post-descent rules
+     */
+    AccumulatorRules getPostDescentRules() {
+        return postDescentRules;
+    }
+
     /**
      * Returns the current accumulator value.
      * This is the value after the most recent rule firing.
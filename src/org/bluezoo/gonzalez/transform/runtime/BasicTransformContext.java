@@ -28,6 +28,7 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 
 import javax.xml.transform.ErrorListener;
@@ -35,6 +36,7 @@ import javax.xml.transform.ErrorListener;
 import org.xml.sax.SAXException;
 
 import org.bluezoo.gonzalez.schema.xsd.XSDSimpleType;
+import org.bluezoo.gonzalez.transform.FunctionResultCache;
 import org.bluezoo.gonzalez.transform.compiler.AccumulatorDefinition;
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
 import org.bluezoo.gonzalez.transform.compiler.ModeDeclaration;
@@ -84,7 +86,7 @@ public class BasicTransformContext implements TransformContext {
     private final Map<String, XPathValue> tunnelParameters;  // XSLT 2.0 tunnel params
     private org.bluezoo.gonzalez.transform.xpath.type.XPathDateTime cachedCurrentDateTime;  // Cached for current-dateTime()
     private final OutputHandler principalOutput;  // Principal output for xsl:result-document
-    private final java.util.Set<String> usedResultUris;  // Track URIs for XTDE1490
+    private final java.util.Set<String> usedResultUris;  // Track URIs for XTDE1490, shared by parallel partitions
     private final org.bluezoo.gonzalez.transform.ErrorHandlingMode errorHandlingMode;  // Error handling mode
     private boolean contextItemUndefined;  // XPDY0002: true inside xsl:function bodies
     private boolean dynamicEvaluation;    // true inside xsl:evaluate (restricts function access)
@@ -97,6 +99,12 @@ public class BasicTransformContext implements TransformContext {
     private java.util.Set<String> availableResourceUris;  // URIs declared available by test environment
     /** Shared across for-each context clones: memoized location-path results. */
     private Map<LocationPath, PathCacheEntry> pathResultCache;
+    /** Shared across all contexts of a transformation: xsl:function memo cache. */
+    private FunctionResultCache functionResultCache;
+    /** Shared across for-each context clones: xsl:number and preceding counts. */
+    private NodeCounters nodeCounters;
+    private GroundedBuffering groundedBuffering;
+    private Profiler profiler;
 
     /**
      * Creates a new transform context.
@@ -168,7 +176,7 @@ public class BasicTransformContext implements TransformContext {
              variableScope, functionLibrary, matcher, outputHandler, accumulatorManager,
              errorListener, currentTemplateRule, staticBaseURI, runtimeValidator, regexMatcher,
              tunnelParameters, new HashSet<String>(),
-             new HashMap<String, Map<String, List<XPathNode>>>(), principalOutput);
+             new ConcurrentHashMap<String, Map<String, List<XPathNode>>>(), principalOutput);
     }
 
     private BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
@@ -183,7 +191,8 @@ public class BasicTransformContext implements TransformContext {
         this(stylesheet, contextNode, xsltCurrentNode, contextItem, position, size, currentMode,
              variableScope, functionLibrary, matcher, outputHandler, accumulatorManager,
              errorListener, currentTemplateRule, staticBaseURI, runtimeValidator, regexMatcher,
-             tunnelParameters, keysBeingEvaluated, keyIndexCache, new HashSet<>(), new HashSet<>(), principalOutput);
+             tunnelParameters, keysBeingEvaluated, keyIndexCache, new HashSet<>(),
+             Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()), principalOutput);
     }
 
     private BasicTransformContext(CompiledStylesheet stylesheet, XPathNode contextNode,
@@ -389,6 +398,31 @@ public class BasicTransformContext implements TransformContext {
         return forEachIteration(node, position, size, true);
     }
 
+    /**
+     * Creates a context for a partition of a parallel iteration that runs
+     * on another thread. The partition pushes its own variable scope and has
+     * its own path result cache, circular-reference tracking and accumulator
+     * state; key indexes, the function result cache and the result document
+     * URIs already claimed remain shared, since all are safe for concurrent
+     * use.
+     *
+     * @return a new context for the partition
+     */
+    public BasicTransformContext forParallelPartition() {
+        BasicTransformContext result = inherit(new BasicTransformContext(stylesheet, contextNode,
+            xsltCurrentNode, contextItem, position, size, currentMode, variableScope.push(),
+            functionLibrary, templateMatcher, outputHandler, accumulatorManager, errorListener,
+            currentTemplateRule, staticBaseURI, runtimeValidator, regexMatcher, tunnelParameters,
+            new HashSet<String>(keysBeingEvaluated), keyIndexCache,
+            new HashSet<String>(variablesBeingEvaluated), usedResultUris, principalOutput));
+        result.pathResultCache = new IdentityHashMap<LocationPath, PathCacheEntry>();
+        result.nodeCounters = new NodeCounters();
+        if (accumulatorManager != null) {
+            result.accumulatorManager = new AccumulatorManager(accumulatorManager, result);
+        }
+        return result;
+    }
+
     /**
      * Single-allocation apply-templates execution context: focus on {@code node}
      * plus the matched template rule (and optional variable-scope push).
@@ -1217,6 +1251,10 @@ public class BasicTransformContext implements TransformContext {
             this.pathResultCache = new IdentityHashMap<LocationPath, PathCacheEntry>();
         }
         derived.pathResultCache = this.pathResultCache;
+        derived.functionResultCache = getFunctionResultCache();
+        derived.nodeCounters = getNodeCounters();
+        derived.groundedBuffering = getGroundedBuffering();
+        derived.profiler = this.profiler;
         if (this.contextItemUndefined &&
                 derived.contextNode == this.contextNode &&
                 derived.contextItem == this.contextItem) {
@@ -1225,6 +1263,73 @@ public class BasicTransformContext implements TransformContext {
         return derived;
     }
 
+    /**
+     * Returns the memo cache for xsl:function cache="yes" calls in this
+     * transformation, creating it from the stylesheet on first use.
+     *
+     * @return the function result cache, or null if there is no stylesheet
+     */
+    public FunctionResultCache getFunctionResultCache() {
+        if (functionResultCache == null && stylesheet != null) {
+            functionResultCache = stylesheet.getFunctionResultCache().forTransformation();
+        }
+        return functionResultCache;
+    }
+
+    /**
+     * Returns the counters used to number nodes and count preceding nodes
+     * incrementally in this transformation, creating them on first use.
+     *
+     * @return the node counters
+     */
+    public NodeCounters getNodeCounters() {
+        if (nodeCounters == null) {
+            nodeCounters = new NodeCounters();
+        }
+        return nodeCounters;
+    }
+
+    /**
+     * Returns the record of what the templates of this
+     * transformation buffered.
+     *
+     * @return the grounded buffering state
+     */
+    public GroundedBuffering getGroundedBuffering() {
+        if (groundedBuffering == null) {
+            groundedBuffering = new GroundedBuffering();
+        }
+        return groundedBuffering;
+    }
+
+    /**
+     * Sets the record of what the templates of this
+     * transformation buffered.
+     *
+     * @param buffering the grounded buffering state
+     */
+    public void setGroundedBuffering(GroundedBuffering buffering) {
+        this.groundedBuffering = buffering;
+    }
+
+    /**
+     * Returns the profiler of this transformation.
+     *
+     * @return the profiler, or null if the transformation is not profiled
+     */
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Sets the profiler of this transformation.
+     *
+     * @param profiler the profiler, or null not to profile
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
     /**
      * Returns a memoized location-path result for the given anchor node, or null.
      * The anchor is the document root for absolute paths, or the climbed-to
@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.runtime;
 
+import org.bluezoo.gonzalez.Metrics;
 import org.bluezoo.gonzalez.Parser;
 import org.bluezoo.gonzalez.XMLHandler;
 import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
@@ -155,8 +156,12 @@ public final class DocumentLoader {
             String cacheKey = buildCacheKey(absoluteUri, stripSpace, preserveSpace);
             
             // Check cache
+            Metrics metrics = Metrics.getMetrics();
             XPathNode cached = documentCache.get(cacheKey);
             if (cached != null) {
+                if (metrics != null) {
+                    metrics.increment(Metrics.DOCUMENT_CACHE_HITS, 1L);
+                }
                 if (fragment != null && !fragment.isEmpty()) {
                     return findElementById(cached, fragment);
                 }
@@ -164,17 +169,23 @@ public final class DocumentLoader {
             }
             
             // Parse with Gonzalez's native XMLHandler path (no SAXAdapter).
+            long start = (metrics != null) ? System.nanoTime() : 0L;
             URL url = resolved.toURL();
             DocumentTreeBuilder builder = new DocumentTreeBuilder(
                     absoluteUri, stripSpace, preserveSpace);
-            Parser parser = SecureGonzalezParser.create(builder);
+            Parser parser = SecureGonzalezParser.acquire(builder);
             try (InputStream in = url.openStream()) {
                 InputSource source = new InputSource(in);
                 source.setSystemId(absoluteUri);
                 parser.parse(source);
+            } finally {
+                SecureGonzalezParser.release(parser);
             }
             
             XPathNode root = builder.getRoot();
+            if (metrics != null) {
+                metrics.record(Metrics.DOCUMENT_LOAD, System.nanoTime() - start);
+            }
             
             // Cache the full document (with size limit to prevent memory exhaustion)
             if (root != null) {
@@ -285,13 +296,17 @@ public final class DocumentLoader {
         try {
             DocumentTreeBuilder builder = new DocumentTreeBuilder(
                     baseUri, stripSpace, preserveSpace);
-            Parser parser = SecureGonzalezParser.create(builder);
-            InputSource source = new InputSource(new ByteArrayInputStream(
-                    xml.getBytes(StandardCharsets.UTF_8)));
-            if (baseUri != null) {
-                source.setSystemId(baseUri);
+            Parser parser = SecureGonzalezParser.acquire(builder);
+            try {
+                InputSource source = new InputSource(new ByteArrayInputStream(
+                        xml.getBytes(StandardCharsets.UTF_8)));
+                if (baseUri != null) {
+                    source.setSystemId(baseUri);
+                }
+                parser.parse(source);
+            } finally {
+                SecureGonzalezParser.release(parser);
             }
-            parser.parse(source);
             return builder.getRoot();
         } catch (SAXException e) {
             throw e;
@@ -22,14 +22,8 @@
 package org.bluezoo.gonzalez.transform.runtime;
 
 import org.bluezoo.gonzalez.transform.ast.XSLTNode;
-import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
-import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Executor for grounded (subtree-buffered) transformations.
@@ -41,7 +35,7 @@ import java.util.List;
  * <p>Grounded execution flow:
  * <ol>
  *   <li>Buffer current element's complete subtree (all SAX events)</li>
- *   <li>Build a fully navigable BufferedNode tree</li>
+ *   <li>Navigate the buffered subtree through a node view over the buffer</li>
  *   <li>Execute the template with full XPath navigation available</li>
  *   <li>Release the buffer</li>
  * </ol>
@@ -98,16 +92,18 @@ public final class GroundedExecutor {
         if (contextNode == null || buffer == null) {
             return;
         }
+        GroundedBuffering budget = getBuffering();
+        if (budget != null) {
+            budget.record(parentContext.getCurrentTemplateRule(), buffer);
+        }
         
-        // Build a fully navigable tree from the buffer
+        // Navigate the buffered subtree through a view over the buffer
         XPathNode bufferedRoot = buildTreeFromBuffer(buffer);
         XPathNode targetNode = bufferedRoot;
         if (targetNode != null) {
-            TransformContext groundedCtx = parentContext.withContextNode(targetNode);
-            template.execute(groundedCtx, output);
+            execute(template, targetNode);
         } else {
-            TransformContext groundedCtx = parentContext.withContextNode(contextNode);
-            template.execute(groundedCtx, output);
+            execute(template, contextNode);
         }
     }
 
@@ -123,9 +119,27 @@ public final class GroundedExecutor {
         if (contextNode == null) {
             return;
         }
-        
-        TransformContext groundedCtx = parentContext.withContextNode(contextNode);
-        template.execute(groundedCtx, output);
+        execute(template, contextNode);
+    }
+
+    /**
+     * Executes the template on a navigable node, recording the time it
+     * took against the current template.
+     */
+    private void execute(XSLTNode template, XPathNode node) throws SAXException {
+        TransformContext groundedCtx = parentContext.withContextNode(node);
+        GroundedBuffering budget = getBuffering();
+        if (budget == null) {
+            template.execute(groundedCtx, output);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            template.execute(groundedCtx, output);
+        } finally {
+            budget.recordExecution(parentContext.getCurrentTemplateRule(),
+                    System.nanoTime() - start);
+        }
     }
 
     /**
@@ -209,6 +223,13 @@ public final class GroundedExecutor {
         return output;
     }
 
+    private GroundedBuffering getBuffering() {
+        if (parentContext instanceof BasicTransformContext) {
+            return ((BasicTransformContext) parentContext).getGroundedBuffering();
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return "GroundedExecutor[buffering=" + buffering + 
@@ -216,129 +237,19 @@ public final class GroundedExecutor {
     }
 
     /**
-     * Builds a fully navigable tree from a SAX event buffer.
+     * Returns a fully navigable view of a SAX event buffer. The nodes are
+     * read directly from the buffer's encoding as they are navigated to,
+     * rather than built into a separate tree first.
      *
      * @param buffer the buffer containing SAX events
-     * @return the root node of the built tree, or null if buffer is empty
-     * @throws SAXException if replay fails
+     * @return the root node of the view, or null if buffer is empty
+     * @throws SAXException if the view cannot be built
      */
     public static XPathNode buildTreeFromBuffer(SAXEventBuffer buffer) throws SAXException {
         if (buffer == null || buffer.isEmpty()) {
             return null;
         }
-        BufferedTreeBuilder builder = new BufferedTreeBuilder();
-        buffer.replay(builder);
-        return builder.getRoot();
+        return buffer.getNavigableRoot();
     }
 
-    /**
-     * SAX handler that builds a navigable DocumentNode tree from SAX events.
-     */
-    private static class BufferedTreeBuilder extends DefaultHandler {
-        private DocumentLoader.DocumentNode root;
-        private DocumentLoader.DocumentNode current;
-        private StringBuilder textBuffer = new StringBuilder();
-        private int documentOrder = 0;
-        private List<String[]> pendingNamespaces = new ArrayList<String[]>();
-
-        XPathNode getRoot() {
-            return root;
-        }
-
-        @Override
-        public void startDocument() {
-            root = new DocumentLoader.DocumentNode(NodeType.ROOT, null, null, null, null);
-            root.documentOrder = documentOrder++;
-            current = root;
-        }
-
-        @Override
-        public void startPrefixMapping(String prefix, String uri) {
-            pendingNamespaces.add(new String[]{prefix, uri});
-        }
-
-        @Override
-        public void endPrefixMapping(String prefix) {
-        }
-
-        @Override
-        public void startElement(String uri, String localName, String qName, Attributes attrs) {
-            flushText();
-            String prefix = null;
-            if (qName != null) {
-                int colonIdx = qName.indexOf(':');
-                if (colonIdx > 0) {
-                    prefix = qName.substring(0, colonIdx);
-                }
-            }
-            DocumentLoader.DocumentNode element = new DocumentLoader.DocumentNode(
-                NodeType.ELEMENT, uri, localName, prefix, null);
-            element.documentOrder = documentOrder++;
-            element.parent = current;
-            if (current != null) {
-                current.addChild(element);
-            }
-
-            for (String[] ns : pendingNamespaces) {
-                DocumentLoader.DocumentNode nsNode = new DocumentLoader.DocumentNode(
-                    NodeType.NAMESPACE, null, ns[0], null, null);
-                nsNode.documentOrder = documentOrder++;
-                nsNode.value = ns[1];
-                nsNode.parent = element;
-                element.addNamespace(nsNode);
-            }
-            pendingNamespaces.clear();
-
-            for (int i = 0; i < attrs.getLength(); i++) {
-                DocumentLoader.DocumentNode attr = new DocumentLoader.DocumentNode(
-                    NodeType.ATTRIBUTE, attrs.getURI(i), attrs.getLocalName(i), null, null);
-                attr.documentOrder = documentOrder++;
-                attr.value = attrs.getValue(i);
-                attr.parent = element;
-                element.addAttribute(attr);
-            }
-
-            current = element;
-        }
-
-        @Override
-        public void endElement(String uri, String localName, String qName) {
-            flushText();
-            if (current != null && current.parent != null) {
-                current = current.parent;
-            }
-        }
-
-        @Override
-        public void characters(char[] ch, int start, int length) {
-            textBuffer.append(ch, start, length);
-        }
-
-        @Override
-        public void processingInstruction(String target, String data) {
-            flushText();
-            DocumentLoader.DocumentNode pi = new DocumentLoader.DocumentNode(
-                NodeType.PROCESSING_INSTRUCTION, null, target, null, null);
-            pi.documentOrder = documentOrder++;
-            pi.value = data;
-            pi.parent = current;
-            if (current != null) {
-                current.addChild(pi);
-            }
-        }
-
-        private void flushText() {
-            if (textBuffer.length() > 0) {
-                DocumentLoader.DocumentNode text = new DocumentLoader.DocumentNode(
-                    NodeType.TEXT, null, null, null, null);
-                text.documentOrder = documentOrder++;
-                text.value = textBuffer.toString();
-                text.parent = current;
-                if (current != null) {
-                    current.addChild(text);
-                }
-                textBuffer.setLength(0);
-            }
-        }
-    }
 }
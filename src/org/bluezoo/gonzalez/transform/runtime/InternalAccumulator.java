@@ -28,6 +28,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathNumber;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 import org.xml.sax.SAXException;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
@@ -50,7 +53,9 @@ import java.util.Deque;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public class InternalAccumulator {
+public class InternalAccumulator implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * Type of internal accumulator.
@@ -73,8 +78,8 @@ public class InternalAccumulator {
     private final XPathExpression originalExpression;  // The XSLT 1.0 expression this replaces
 
     // Runtime state
-    private final Deque<XPathValue> valueStack;
-    private XPathValue currentValue;
+    private transient Deque<XPathValue> valueStack;
+    private transient XPathValue currentValue;
 
     /**
      * Creates a counter accumulator.
@@ -250,6 +255,16 @@ public class InternalAccumulator {
         }
     }
 
+    /**
+     * Restores the runtime state, which is not saved with a precompiled
+     * stylesheet.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        valueStack = new ArrayDeque<>();
+        currentValue = XPathNumber.of(0);
+    }
+
     @Override
     public String toString() {
         return "InternalAccumulator[" + syntheticId + ", type=" + type + "]";
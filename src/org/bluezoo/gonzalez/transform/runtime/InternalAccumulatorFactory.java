@@ -60,6 +60,10 @@ import java.util.concurrent.atomic.AtomicLong;
  * <p>The factory returns a list of internal accumulators that should be
  * managed by the AccumulatorManager during transformation.
  *
+ * <p>When the source tree is built, {@code xsl:number} and {@code
+ * count(preceding::x)} do not need accumulators: they are counted on from
+ * the last node counted by {@link NodeCounters}.
+ *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public final class InternalAccumulatorFactory {
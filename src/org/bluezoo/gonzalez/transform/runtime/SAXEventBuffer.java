@@ -23,11 +23,14 @@ package org.bluezoo.gonzalez.transform.runtime;
 
 import org.xml.sax.*;
 import org.xml.sax.ext.LexicalHandler;
-import org.xml.sax.helpers.AttributesImpl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 
 /**
@@ -41,190 +44,38 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  *   <li>Implementing xsl:variable with content</li>
  * </ul>
  *
+ * <p>Events are not stored as objects. Each event is appended to a byte
+ * stream as an opcode followed by its operands, written as variable-length
+ * integers: names (URIs, local names, qualified names, prefixes and types)
+ * are indices into a table holding each distinct name once, and character
+ * data - text, comments, attribute values and processing instruction
+ * data - is an offset and length in a single shared character arena.
+ * A buffered element with attributes thus costs a few dozen bytes and no
+ * objects, and replay passes the arena directly to
+ * {@link ContentHandler#characters}.
+ *
+ * <p>{@link #getNavigableRoot} gives a navigable node view over the
+ * encoding itself, so buffered content can be navigated without first
+ * being built into a separate node tree.
+ *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
 
-    /**
-     * Base class for stored events.
-     */
-    private abstract static class Event {
-        abstract void replay(ContentHandler handler) throws SAXException;
-        
-        // Optional method for replaying lexical events
-        void replayLexical(LexicalHandler handler) throws SAXException {
-            // Default: do nothing (most events are content events)
-        }
-    }
-
-    private static class StartDocument extends Event {
-        @Override void replay(ContentHandler h) throws SAXException { h.startDocument(); }
-    }
-
-    private static class EndDocument extends Event {
-        @Override void replay(ContentHandler h) throws SAXException { h.endDocument(); }
-    }
-
-    private static class StartPrefixMapping extends Event {
-        final String prefix, uri;
-        StartPrefixMapping(String prefix, String uri) {
-            this.prefix = prefix;
-            this.uri = uri;
-        }
-        @Override void replay(ContentHandler h) throws SAXException {
-            h.startPrefixMapping(prefix, uri);
-        }
-    }
-
-    private static class EndPrefixMapping extends Event {
-        final String prefix;
-        EndPrefixMapping(String prefix) { this.prefix = prefix; }
-        @Override void replay(ContentHandler h) throws SAXException {
-            h.endPrefixMapping(prefix);
-        }
-    }
-
-    private static class StartElement extends Event {
-        final String uri, localName, qName;
-        final Attributes atts;
-        final String typeNamespaceURI;  // Type annotation namespace for element
-        final String typeLocalName;     // Type annotation local name for element
-        final List<String[]> attributeTypes; // Type annotations for attributes [ns, local]
-        
-        StartElement(String uri, String localName, String qName, Attributes atts) {
-            this(uri, localName, qName, atts, null, null, null);
-        }
-        
-        StartElement(String uri, String localName, String qName, Attributes atts,
-                     String typeNamespaceURI, String typeLocalName) {
-            this(uri, localName, qName, atts, typeNamespaceURI, typeLocalName, null);
-        }
-        
-        StartElement(String uri, String localName, String qName, Attributes atts,
-                     String typeNamespaceURI, String typeLocalName, 
-                     List<String[]> attributeTypes) {
-            this.uri = uri;
-            this.localName = localName;
-            this.qName = qName;
-            this.atts = new AttributesImpl(atts);
-            this.typeNamespaceURI = typeNamespaceURI;
-            this.typeLocalName = typeLocalName;
-            // Copy attribute types
-            if (attributeTypes != null && !attributeTypes.isEmpty()) {
-                this.attributeTypes = new ArrayList<>(attributeTypes);
-            } else {
-                this.attributeTypes = null;
-            }
-        }
-        
-        @Override void replay(ContentHandler h) throws SAXException {
-            h.startElement(uri, localName, qName, atts);
-        }
-        
-        /** Returns the type annotation for an attribute by index, or null if none. */
-        String[] getAttributeType(int index) {
-            if (attributeTypes != null && index < attributeTypes.size()) {
-                return attributeTypes.get(index);
-            }
-            return null;
-        }
-    }
-
-    private static class EndElement extends Event {
-        final String uri, localName, qName;
-        EndElement(String uri, String localName, String qName) {
-            this.uri = uri;
-            this.localName = localName;
-            this.qName = qName;
-        }
-        @Override void replay(ContentHandler h) throws SAXException {
-            h.endElement(uri, localName, qName);
-        }
-    }
-
-    private static class Characters extends Event {
-        final char[] ch;
-        final int start, length;
-        Characters(char[] ch, int start, int length) {
-            this.ch = new char[length];
-            System.arraycopy(ch, start, this.ch, 0, length);
-            this.start = 0;
-            this.length = length;
-        }
-        @Override void replay(ContentHandler h) throws SAXException {
-            h.characters(ch, start, length);
-        }
-    }
-
-    private static class IgnorableWhitespace extends Event {
-        final char[] ch;
-        final int start, length;
-        IgnorableWhitespace(char[] ch, int start, int length) {
-            this.ch = new char[length];
-            System.arraycopy(ch, start, this.ch, 0, length);
-            this.start = 0;
-            this.length = length;
-        }
-        @Override void replay(ContentHandler h) throws SAXException {
-            h.ignorableWhitespace(ch, start, length);
-        }
-    }
-
-    private static class ProcessingInstruction extends Event {
-        final String target, data;
-        ProcessingInstruction(String target, String data) {
-            this.target = target;
-            this.data = data;
-        }
-        @Override void replay(ContentHandler h) throws SAXException {
-            h.processingInstruction(target, data);
-        }
-    }
-
-    private static class SkippedEntity extends Event {
-        final String name;
-        SkippedEntity(String name) { this.name = name; }
-        @Override void replay(ContentHandler h) throws SAXException {
-            h.skippedEntity(name);
-        }
-    }
-
-    // Lexical event classes
-    private static class Comment extends Event {
-        final char[] ch;
-        final int start, length;
-        Comment(char[] ch, int start, int length) {
-            this.ch = new char[length];
-            System.arraycopy(ch, start, this.ch, 0, length);
-            this.start = 0;
-            this.length = length;
-        }
-        @Override void replay(ContentHandler h) throws SAXException {
-            // Comments need LexicalHandler
-            if (h instanceof LexicalHandler) {
-                ((LexicalHandler) h).comment(ch, start, length);
-            }
-        }
-        @Override void replayLexical(LexicalHandler h) throws SAXException {
-            h.comment(ch, start, length);
-        }
-    }
-
-    /**
-     * Event representing a typed XPath value (e.g., a map, array, or other
-     * non-SAX-serializable item). Preserved as-is through buffering.
-     */
-    static class XPathValueEvent extends Event {
-        final XPathValue value;
-        XPathValueEvent(XPathValue value) {
-            this.value = value;
-        }
-        @Override void replay(ContentHandler h) throws SAXException {
-            if (h instanceof XPathValueHandler) {
-                ((XPathValueHandler) h).xpathValue(value);
-            }
-        }
-    }
+    // Opcodes
+    static final byte START_DOCUMENT = 1;
+    static final byte END_DOCUMENT = 2;
+    static final byte START_PREFIX_MAPPING = 3;
+    static final byte END_PREFIX_MAPPING = 4;
+    static final byte START_ELEMENT = 5;           // uri local qName atts
+    static final byte START_ELEMENT_TYPED = 6;     // ... typeNs typeLocal attTypes
+    static final byte END_ELEMENT = 7;             // uri local qName
+    static final byte CHARACTERS = 8;              // offset length
+    static final byte IGNORABLE_WHITESPACE = 9;    // offset length
+    static final byte PROCESSING_INSTRUCTION = 10; // target offset length+1
+    static final byte SKIPPED_ENTITY = 11;         // name
+    static final byte COMMENT = 12;                // offset length
+    static final byte XPATH_VALUE = 13;            // value index
 
     /**
      * Extended ContentHandler that can receive typed XPath values.
@@ -238,12 +89,34 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
      */
     public void xpathValue(XPathValue value) {
         if (recording && value != null) {
-            events.add(new XPathValueEvent(value));
+            if (values == null) {
+                values = new ArrayList<>();
+            }
+            appendOp(XPATH_VALUE);
+            appendInt(values.size());
+            values.add(value);
         }
     }
 
-    private final List<Event> events = new ArrayList<>();
+    // The encoding: opcodes and operands
+    private byte[] ops = new byte[64];
+    private int opsLength;
+
+    // Character data of all events
+    private char[] chars = new char[64];
+    private int charsLength;
+
+    // Names by index; index 0 is null. Most buffers use a few names, found
+    // by identity scan; the map is only built once there are more.
+    private static final int NAME_SCAN_LIMIT = 16;
+    private String[] names = new String[8];
+    private int nameCount = 1;
+    private Map<String, Integer> nameIndex;
+
+    private List<XPathValue> values;
+    private int eventCount;
     private boolean recording = true;
+    private EventBufferTree tree;
 
     /**
      * Creates a new event buffer.
@@ -257,7 +130,7 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
      * @return true if no events stored
      */
     public boolean isEmpty() {
-        return events.isEmpty();
+        return eventCount == 0;
     }
 
     /**
@@ -268,22 +141,23 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
      * @return true if there is meaningful content
      */
     public boolean hasNonEmptyContent() {
-        for (int i = 0; i < events.size(); i++) {
-            Event e = events.get(i);
-            if (e instanceof StartElement) {
-                return true;
-            }
-            if (e instanceof ProcessingInstruction) {
-                return true;
-            }
-            if (e instanceof Comment) {
-                return true;
-            }
-            if (e instanceof Characters) {
-                Characters c = (Characters) e;
-                if (c.length > 0) {
+        Cursor in = new Cursor(ops);
+        while (in.pos < opsLength) {
+            byte op = ops[in.pos++];
+            switch (op) {
+                case START_ELEMENT:
+                case START_ELEMENT_TYPED:
+                case PROCESSING_INSTRUCTION:
+                case COMMENT:
                     return true;
-                }
+                case CHARACTERS:
+                    in.next();
+                    if (in.next() > 0) {
+                        return true;
+                    }
+                    break;
+                default:
+                    in.skip(op);
             }
         }
         return false;
@@ -295,14 +169,33 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
      * @return the event count
      */
     public int size() {
-        return events.size();
+        return eventCount;
+    }
+
+    /**
+     * Returns the number of bytes the buffered events occupy, not counting
+     * the name table.
+     *
+     * @return the encoded size in bytes
+     */
+    public long getEncodedSize() {
+        return opsLength + 2L * charsLength;
     }
 
     /**
      * Clears all stored events.
      */
     public void clear() {
-        events.clear();
+        if (tree != null) {
+            // The view still reads the old arrays
+            ops = new byte[64];
+            chars = new char[64];
+            tree = null;
+        }
+        opsLength = 0;
+        charsLength = 0;
+        values = null;
+        eventCount = 0;
     }
 
     /**
@@ -312,6 +205,22 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
         recording = false;
     }
 
+    /**
+     * Returns a navigable view of the buffered events. The root is a
+     * document node whose children are the buffered top-level nodes; the
+     * nodes read their names and content directly from the encoding and
+     * are created only as they are navigated to. The view reflects the
+     * events buffered when it was created.
+     *
+     * @return the root node of the view
+     */
+    public XPathNode getNavigableRoot() {
+        if (tree == null) {
+            tree = new EventBufferTree(ops, opsLength, chars, names);
+        }
+        return tree.getRoot();
+    }
+
     /**
      * Replays all stored events to a content handler.
      * Includes startDocument and endDocument events.
@@ -320,9 +229,7 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
      * @throws SAXException if replay fails
      */
     public void replay(ContentHandler handler) throws SAXException {
-        for (Event event : events) {
-            event.replay(handler);
-        }
+        replay(handler, true, null);
     }
 
     /**
@@ -333,11 +240,7 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
      * @throws SAXException if replay fails
      */
     public void replayContent(ContentHandler handler) throws SAXException {
-        for (Event event : events) {
-            if (!(event instanceof StartDocument) && !(event instanceof EndDocument)) {
-                event.replay(handler);
-            }
-        }
+        replay(handler, false, null);
     }
 
     /**
@@ -375,28 +278,110 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
     public void replayContentWithTypes(ContentHandler handler) throws SAXException {
         TypeAwareHandler typeHandler = (handler instanceof TypeAwareHandler) 
             ? (TypeAwareHandler) handler : null;
-        
-        for (Event event : events) {
-            if (event instanceof StartDocument || event instanceof EndDocument) {
-                continue;
-            }
-            event.replay(handler);
-            
-            // If this was a StartElement with type annotation, notify the handler
-            if (typeHandler != null && event instanceof StartElement) {
-                StartElement se = (StartElement) event;
-                // Element type annotation
-                if (se.typeLocalName != null) {
-                    typeHandler.setElementType(se.typeNamespaceURI, se.typeLocalName);
+        replay(handler, false, typeHandler);
+    }
+
+    private void replay(ContentHandler handler, boolean document,
+            TypeAwareHandler typeHandler) throws SAXException {
+        // Snapshot: the handler may not append, but be safe if it does
+        byte[] ops = this.ops;
+        char[] chars = this.chars;
+        String[] names = this.names;
+        int limit = opsLength;
+        Cursor in = new Cursor(ops);
+        EncodedAttributes atts = new EncodedAttributes(chars, names);
+        while (in.pos < limit) {
+            byte op = ops[in.pos++];
+            switch (op) {
+                case START_DOCUMENT:
+                    if (document) {
+                        handler.startDocument();
+                    }
+                    break;
+                case END_DOCUMENT:
+                    if (document) {
+                        handler.endDocument();
+                    }
+                    break;
+                case START_PREFIX_MAPPING: {
+                    String prefix = names[in.next()];
+                    handler.startPrefixMapping(prefix, names[in.next()]);
+                    break;
                 }
-                // Attribute type annotations
-                if (se.attributeTypes != null) {
-                    for (int i = 0; i < se.attributeTypes.size(); i++) {
-                        String[] attrType = se.attributeTypes.get(i);
-                        if (attrType != null) {
-                            typeHandler.setAttributeType(i, attrType[0], attrType[1]);
-                        }
+                case END_PREFIX_MAPPING:
+                    handler.endPrefixMapping(names[in.next()]);
+                    break;
+                case START_ELEMENT:
+                case START_ELEMENT_TYPED: {
+                    String uri = names[in.next()];
+                    String localName = names[in.next()];
+                    String qName = names[in.next()];
+                    handler.startElement(uri, localName, qName, atts.read(in));
+                    if (op == START_ELEMENT_TYPED) {
+                        replayTypes(in, names, typeHandler);
                     }
+                    break;
+                }
+                case END_ELEMENT: {
+                    String uri = names[in.next()];
+                    String localName = names[in.next()];
+                    handler.endElement(uri, localName, names[in.next()]);
+                    break;
+                }
+                case CHARACTERS: {
+                    int offset = in.next();
+                    handler.characters(chars, offset, in.next());
+                    break;
+                }
+                case IGNORABLE_WHITESPACE: {
+                    int offset = in.next();
+                    handler.ignorableWhitespace(chars, offset, in.next());
+                    break;
+                }
+                case PROCESSING_INSTRUCTION: {
+                    String target = names[in.next()];
+                    handler.processingInstruction(target, in.nextString(chars));
+                    break;
+                }
+                case SKIPPED_ENTITY:
+                    handler.skippedEntity(names[in.next()]);
+                    break;
+                case COMMENT: {
+                    int offset = in.next();
+                    int length = in.next();
+                    // Comments need LexicalHandler
+                    if (handler instanceof LexicalHandler) {
+                        ((LexicalHandler) handler).comment(chars, offset, length);
+                    }
+                    break;
+                }
+                case XPATH_VALUE: {
+                    XPathValue value = values.get(in.next());
+                    if (handler instanceof XPathValueHandler) {
+                        ((XPathValueHandler) handler).xpathValue(value);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Bad opcode " + op);
+            }
+        }
+    }
+
+    private static void replayTypes(Cursor in, String[] names,
+            TypeAwareHandler typeHandler) {
+        String typeNamespaceURI = names[in.next()];
+        String typeLocalName = names[in.next()];
+        if (typeHandler != null && typeLocalName != null) {
+            typeHandler.setElementType(typeNamespaceURI, typeLocalName);
+        }
+        int count = in.next();
+        for (int i = 0; i < count; i++) {
+            if (in.next() != 0) {
+                String namespaceURI = names[in.next()];
+                String localName = names[in.next()];
+                if (typeHandler != null) {
+                    typeHandler.setAttributeType(i, namespaceURI, localName);
                 }
             }
         }
@@ -412,28 +397,31 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
     @Override
     public void startDocument() throws SAXException {
         if (recording) {
-            events.add(new StartDocument());
+            appendOp(START_DOCUMENT);
         }
     }
 
     @Override
     public void endDocument() throws SAXException {
         if (recording) {
-            events.add(new EndDocument());
+            appendOp(END_DOCUMENT);
         }
     }
 
     @Override
     public void startPrefixMapping(String prefix, String uri) throws SAXException {
         if (recording) {
-            events.add(new StartPrefixMapping(prefix, uri));
+            appendOp(START_PREFIX_MAPPING);
+            appendName(prefix);
+            appendName(uri);
         }
     }
 
     @Override
     public void endPrefixMapping(String prefix) throws SAXException {
         if (recording) {
-            events.add(new EndPrefixMapping(prefix));
+            appendOp(END_PREFIX_MAPPING);
+            appendName(prefix);
         }
     }
 
@@ -441,7 +429,7 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
     public void startElement(String uri, String localName, String qName, Attributes atts) 
             throws SAXException {
         if (recording) {
-            events.add(new StartElement(uri, localName, qName, atts));
+            appendStartElement(START_ELEMENT, uri, localName, qName, atts);
         }
     }
 
@@ -458,10 +446,7 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
      */
     public void startElementWithType(String uri, String localName, String qName, Attributes atts,
             String typeNamespaceURI, String typeLocalName) throws SAXException {
-        if (recording) {
-            events.add(new StartElement(uri, localName, qName, atts, 
-                typeNamespaceURI, typeLocalName));
-        }
+        startElementWithTypes(uri, localName, qName, atts, typeNamespaceURI, typeLocalName, null);
     }
 
     /**
@@ -479,44 +464,91 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
     public void startElementWithTypes(String uri, String localName, String qName, Attributes atts,
             String typeNamespaceURI, String typeLocalName, 
             List<String[]> attributeTypes) throws SAXException {
-        if (recording) {
-            events.add(new StartElement(uri, localName, qName, atts, 
-                typeNamespaceURI, typeLocalName, attributeTypes));
+        if (!recording) {
+            return;
+        }
+        boolean hasAttributeTypes = attributeTypes != null && !attributeTypes.isEmpty();
+        if (typeLocalName == null && !hasAttributeTypes) {
+            appendStartElement(START_ELEMENT, uri, localName, qName, atts);
+            return;
+        }
+        appendStartElement(START_ELEMENT_TYPED, uri, localName, qName, atts);
+        appendName(typeNamespaceURI);
+        appendName(typeLocalName);
+        if (!hasAttributeTypes) {
+            appendInt(0);
+            return;
+        }
+        appendInt(attributeTypes.size());
+        for (int i = 0; i < attributeTypes.size(); i++) {
+            String[] attrType = attributeTypes.get(i);
+            if (attrType == null) {
+                appendInt(0);
+            } else {
+                appendInt(1);
+                appendName(attrType[0]);
+                appendName(attrType[1]);
+            }
+        }
+    }
+
+    private void appendStartElement(byte op, String uri, String localName, String qName,
+            Attributes atts) {
+        appendOp(op);
+        appendName(uri);
+        appendName(localName);
+        appendName(qName);
+        int count = atts != null ? atts.getLength() : 0;
+        appendInt(count);
+        for (int i = 0; i < count; i++) {
+            appendName(atts.getURI(i));
+            appendName(atts.getLocalName(i));
+            appendName(atts.getQName(i));
+            appendName(atts.getType(i));
+            appendString(atts.getValue(i));
         }
     }
 
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
         if (recording) {
-            events.add(new EndElement(uri, localName, qName));
+            appendOp(END_ELEMENT);
+            appendName(uri);
+            appendName(localName);
+            appendName(qName);
         }
     }
 
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException {
         if (recording) {
-            events.add(new Characters(ch, start, length));
+            appendOp(CHARACTERS);
+            appendChars(ch, start, length);
         }
     }
 
     @Override
     public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
         if (recording) {
-            events.add(new IgnorableWhitespace(ch, start, length));
+            appendOp(IGNORABLE_WHITESPACE);
+            appendChars(ch, start, length);
         }
     }
 
     @Override
     public void processingInstruction(String target, String data) throws SAXException {
         if (recording) {
-            events.add(new ProcessingInstruction(target, data));
+            appendOp(PROCESSING_INSTRUCTION);
+            appendName(target);
+            appendString(data);
         }
     }
 
     @Override
     public void skippedEntity(String name) throws SAXException {
         if (recording) {
-            events.add(new SkippedEntity(name));
+            appendOp(SKIPPED_ENTITY);
+            appendName(name);
         }
     }
 
@@ -528,10 +560,14 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
      */
     public String getTextContent() {
         StringBuilder sb = new StringBuilder();
-        for (Event event : events) {
-            if (event instanceof Characters) {
-                Characters c = (Characters) event;
-                sb.append(c.ch, c.start, c.length);
+        Cursor in = new Cursor(ops);
+        while (in.pos < opsLength) {
+            byte op = ops[in.pos++];
+            if (op == CHARACTERS) {
+                int offset = in.next();
+                sb.append(chars, offset, in.next());
+            } else {
+                in.skip(op);
             }
         }
         return sb.toString();
@@ -547,7 +583,8 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
     @Override
     public void comment(char[] ch, int start, int length) throws SAXException {
         if (recording) {
-            events.add(new Comment(ch, start, length));
+            appendOp(COMMENT);
+            appendChars(ch, start, length);
         }
     }
 
@@ -581,4 +618,324 @@ public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
         // CDATA section markers not captured
     }
 
+    // -- Encoding --
+
+    private void appendOp(byte op) {
+        if (opsLength == ops.length) {
+            ops = Arrays.copyOf(ops, opsLength * 2);
+        }
+        ops[opsLength++] = op;
+        eventCount++;
+        tree = null;
+    }
+
+    /** Appends an unsigned variable-length integer, 7 bits per byte. */
+    private void appendInt(int value) {
+        if (opsLength + 5 > ops.length) {
+            ops = Arrays.copyOf(ops, Math.max(opsLength * 2, opsLength + 5));
+        }
+        while ((value & ~0x7f) != 0) {
+            ops[opsLength++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        ops[opsLength++] = (byte) value;
+    }
+
+    private void appendName(String name) {
+        if (name == null) {
+            appendInt(0);
+            return;
+        }
+        if (nameIndex == null) {
+            for (int i = 1; i < nameCount; i++) {
+                if (names[i] == name) {
+                    appendInt(i);
+                    return;
+                }
+            }
+            for (int i = 1; i < nameCount; i++) {
+                if (names[i].equals(name)) {
+                    appendInt(i);
+                    return;
+                }
+            }
+            if (nameCount == NAME_SCAN_LIMIT) {
+                nameIndex = new HashMap<>();
+                for (int i = 1; i < nameCount; i++) {
+                    nameIndex.put(names[i], Integer.valueOf(i));
+                }
+            }
+        } else {
+            Integer index = nameIndex.get(name);
+            if (index != null) {
+                appendInt(index.intValue());
+                return;
+            }
+        }
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+        }
+        int index = nameCount++;
+        names[index] = name;
+        if (nameIndex != null) {
+            nameIndex.put(name, Integer.valueOf(index));
+        }
+        appendInt(index);
+    }
+
+    private void appendChars(char[] ch, int start, int length) {
+        ensureChars(length);
+        System.arraycopy(ch, start, chars, charsLength, length);
+        appendInt(charsLength);
+        appendInt(length);
+        charsLength += length;
+    }
+
+    /** Appends a possibly null string as offset and length + 1 (0 for null). */
+    private void appendString(String s) {
+        if (s == null) {
+            appendInt(0);
+            appendInt(0);
+            return;
+        }
+        int length = s.length();
+        ensureChars(length);
+        s.getChars(0, length, chars, charsLength);
+        appendInt(charsLength);
+        appendInt(length + 1);
+        charsLength += length;
+    }
+
+    private void ensureChars(int length) {
+        if (charsLength + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsLength + length));
+        }
+    }
+
+    /**
+     * Reads operands from an encoded event stream.
+     */
+    static final class Cursor {
+
+        final byte[] ops;
+        int pos;
+
+        Cursor(byte[] ops) {
+            this.ops = ops;
+        }
+
+        Cursor(byte[] ops, int pos) {
+            this.ops = ops;
+            this.pos = pos;
+        }
+
+        /** Reads an unsigned variable-length integer. */
+        int next() {
+            int b = ops[pos++];
+            if (b >= 0) {
+                return b;
+            }
+            int value = b & 0x7f;
+            int shift = 7;
+            while (true) {
+                b = ops[pos++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        /** Reads a string written as offset and length + 1. */
+        String nextString(char[] chars) {
+            int offset = next();
+            int length = next();
+            return length == 0 ? null : new String(chars, offset, length - 1);
+        }
+
+        /** Skips the operands of an event whose opcode has been read. */
+        void skip(byte op) {
+            switch (op) {
+                case START_DOCUMENT:
+                case END_DOCUMENT:
+                    break;
+                case END_PREFIX_MAPPING:
+                case SKIPPED_ENTITY:
+                case XPATH_VALUE:
+                    next();
+                    break;
+                case START_PREFIX_MAPPING:
+                case CHARACTERS:
+                case IGNORABLE_WHITESPACE:
+                case COMMENT:
+                    next();
+                    next();
+                    break;
+                case END_ELEMENT:
+                case PROCESSING_INSTRUCTION:
+                    next();
+                    next();
+                    next();
+                    break;
+                case START_ELEMENT:
+                case START_ELEMENT_TYPED:
+                    next();
+                    next();
+                    next();
+                    skipAttributes();
+                    if (op == START_ELEMENT_TYPED) {
+                        skipTypes();
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Bad opcode " + op);
+            }
+        }
+
+        void skipAttributes() {
+            int count = next();
+            for (int i = 0; i < count; i++) {
+                next();
+                next();
+                next();
+                next();
+                next();
+                next();
+            }
+        }
+
+        void skipTypes() {
+            next();
+            next();
+            int count = next();
+            for (int i = 0; i < count; i++) {
+                if (next() != 0) {
+                    next();
+                    next();
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The attributes of a buffered start element, read from the encoding.
+     * One instance is refilled for each element of a replay: as SAX
+     * specifies, the attributes are only valid during startElement.
+     */
+    static final class EncodedAttributes implements Attributes {
+
+        private static final int FIELDS = 6; // uri local qName type offset length+1
+
+        private final char[] chars;
+        private final String[] names;
+        private int[] fields = new int[4 * FIELDS];
+        private int length;
+
+        EncodedAttributes(char[] chars, String[] names) {
+            this.chars = chars;
+            this.names = names;
+        }
+
+        /** Reads an attribute count and the attributes that follow. */
+        EncodedAttributes read(Cursor in) {
+            length = in.next();
+            int size = length * FIELDS;
+            if (size > fields.length) {
+                fields = new int[size];
+            }
+            for (int i = 0; i < size; i++) {
+                fields[i] = in.next();
+            }
+            return this;
+        }
+
+        @Override
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public String getURI(int index) {
+            return inRange(index) ? names[fields[index * FIELDS]] : null;
+        }
+
+        @Override
+        public String getLocalName(int index) {
+            return inRange(index) ? names[fields[index * FIELDS + 1]] : null;
+        }
+
+        @Override
+        public String getQName(int index) {
+            return inRange(index) ? names[fields[index * FIELDS + 2]] : null;
+        }
+
+        @Override
+        public String getType(int index) {
+            return inRange(index) ? names[fields[index * FIELDS + 3]] : null;
+        }
+
+        @Override
+        public String getValue(int index) {
+            if (!inRange(index)) {
+                return null;
+            }
+            int length = fields[index * FIELDS + 5];
+            if (length == 0) {
+                return null;
+            }
+            return new String(chars, fields[index * FIELDS + 4], length - 1);
+        }
+
+        @Override
+        public int getIndex(String uri, String localName) {
+            int count = getLength();
+            for (int i = 0; i < count; i++) {
+                String attrUri = getURI(i);
+                if ((attrUri == null ? "" : attrUri).equals(uri == null ? "" : uri)
+                        && localName.equals(getLocalName(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int getIndex(String qName) {
+            int count = getLength();
+            for (int i = 0; i < count; i++) {
+                if (qName.equals(getQName(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String getType(String uri, String localName) {
+            return getType(getIndex(uri, localName));
+        }
+
+        @Override
+        public String getType(String qName) {
+            return getType(getIndex(qName));
+        }
+
+        @Override
+        public String getValue(String uri, String localName) {
+            return getValue(getIndex(uri, localName));
+        }
+
+        @Override
+        public String getValue(String qName) {
+            return getValue(getIndex(qName));
+        }
+
+        private boolean inRange(int index) {
+            return index >= 0 && index < length;
+        }
+
+    }
+
 }
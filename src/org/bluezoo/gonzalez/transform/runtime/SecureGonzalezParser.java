@@ -22,6 +22,7 @@
 package org.bluezoo.gonzalez.transform.runtime;
 
 import org.bluezoo.gonzalez.Parser;
+import org.bluezoo.gonzalez.ParserPool;
 import org.bluezoo.gonzalez.XMLHandler;
 import org.xml.sax.SAXException;
 
@@ -31,14 +32,51 @@ import org.xml.sax.SAXException;
  * <p>Matches the secure defaults DocumentLoader previously applied through
  * the platform SAXParserFactory: namespaces on, secure processing on, and
  * external entities off.
+ *
+ * <p>{@link #acquire} and {@link #release} borrow the parsers from a shared
+ * {@link ParserPool}, so a transformation loading many documents (with
+ * {@code document()}, {@code xsl:source-document} or {@code
+ * parse-xml()}) reuses their buffers instead of allocating them per
+ * document.
  */
 public final class SecureGonzalezParser {
 
+    private static final ParserPool POOL = new ParserPool(ParserPool.DEFAULT_MAX_IDLE,
+            new ParserPool.Configurer() {
+                @Override
+                public void configure(Parser parser) throws SAXException {
+                    configureSecure(parser);
+                }
+            });
+
     private SecureGonzalezParser() {
     }
 
     public static Parser create(XMLHandler handler) throws SAXException {
         Parser parser = new Parser();
+        configureSecure(parser);
+        parser.setXMLHandler(handler);
+        return parser;
+    }
+
+    /**
+     * Borrows a securely configured parser from the shared pool. The
+     * caller must pass it to {@link #release} once parsing is done.
+     */
+    public static Parser acquire(XMLHandler handler) throws SAXException {
+        Parser parser = POOL.acquire();
+        parser.setXMLHandler(handler);
+        return parser;
+    }
+
+    /**
+     * Returns a parser obtained from {@link #acquire} to the shared pool.
+     */
+    public static void release(Parser parser) {
+        POOL.release(parser);
+    }
+
+    private static void configureSecure(Parser parser) throws SAXException {
         parser.setFeature("http://xml.org/sax/features/namespaces", true);
         parser.setFeature(
                 "http://javax.xml.XMLConstants/feature/secure-processing", true);
@@ -46,7 +84,5 @@ public final class SecureGonzalezParser {
                 "http://xml.org/sax/features/external-general-entities", false);
         parser.setFeature(
                 "http://xml.org/sax/features/external-parameter-entities", false);
-        parser.setXMLHandler(handler);
-        return parser;
     }
 }
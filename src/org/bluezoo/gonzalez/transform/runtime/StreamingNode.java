@@ -61,12 +61,16 @@ public class StreamingNode implements XPathNode, XPathNodeWithBaseURI {
 
     // For element nodes - track children as they're added
     private final List<StreamingNode> children;
-    /** Lazy index of element children by local name; invalidated when children change. */
-    private Map<String, List<StreamingNode>> elementChildrenByLocalName;
+    /**
+     * Lazy index of element children by local name; invalidated when children
+     * change. Volatile and only assigned once built, as parallel partitions
+     * may read the same tree.
+     */
+    private volatile Map<String, List<StreamingNode>> elementChildrenByLocalName;
     private StreamingNode followingSibling;
     private StreamingNode precedingSibling;
-    private List<XPathNode> cachedNamespaceNodes;
-    private String cachedStringValue;
+    private volatile List<XPathNode> cachedNamespaceNodes;
+    private volatile String cachedStringValue;
     private int namespaceNodeCount;
     
     // Per-node base URI override (from external entity expansion)
@@ -435,21 +439,24 @@ public class StreamingNode implements XPathNode, XPathNodeWithBaseURI {
         }
         // For element/root, concatenate descendant text (cached)
         if (nodeType == NodeType.ELEMENT || nodeType == NodeType.ROOT) {
-            if (cachedStringValue != null) {
-                return cachedStringValue;
+            String value = cachedStringValue;
+            if (value != null) {
+                return value;
             }
             // Fast path: single text child (common for leaf elements like <item>value</item>)
             if (children.size() == 1) {
                 StreamingNode only = children.get(0);
                 if (only.nodeType == NodeType.TEXT) {
-                    cachedStringValue = only.stringValue != null ? only.stringValue : "";
-                    return cachedStringValue;
+                    value = only.stringValue != null ? only.stringValue : "";
+                    cachedStringValue = value;
+                    return value;
                 }
             }
             StringBuilder sb = new StringBuilder();
             appendDescendantText(sb);
-            cachedStringValue = sb.toString();
-            return cachedStringValue;
+            value = sb.toString();
+            cachedStringValue = value;
+            return value;
         }
         return "";
     }
@@ -560,10 +567,11 @@ public class StreamingNode implements XPathNode, XPathNodeWithBaseURI {
         if (nodeType != NodeType.ELEMENT) {
             return Collections.<XPathNode>emptyIterator();
         }
-        if (cachedNamespaceNodes != null) {
-            return cachedNamespaceNodes.iterator();
+        List<XPathNode> nsNodes = cachedNamespaceNodes;
+        if (nsNodes != null) {
+            return nsNodes.iterator();
         }
-        List<XPathNode> nsNodes = new ArrayList<>();
+        nsNodes = new ArrayList<>();
         int index = 0;
         for (Map.Entry<String, String> entry : namespaceBindings.entrySet()) {
             String uri = entry.getValue();
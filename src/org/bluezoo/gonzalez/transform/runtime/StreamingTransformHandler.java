@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.runtime;
 
+import org.bluezoo.gonzalez.NamespaceScopeTracker;
 import org.bluezoo.gonzalez.XMLHandler;
 import org.bluezoo.gonzalez.transform.ast.XSLTNode;
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
@@ -64,7 +65,11 @@ public final class StreamingTransformHandler implements ContentHandler, XMLHandl
     private boolean documentStarted;
     private boolean hasPendingText;
     private final Map<String, String> reusableNsBindings = new HashMap<String, String>();
-    private final Map<String, String> pendingNamespaces = new HashMap<String, String>();
+    // Declarations for the next element are made in a scope pushed on the
+    // first of them (namespaceScopePending), or at the element's start if
+    // there are none; the scope is popped at its end.
+    private final NamespaceScopeTracker namespaces = new NamespaceScopeTracker();
+    private boolean namespaceScopePending;
     private final NativeAttributeBuffer nativeAttributes = new NativeAttributeBuffer();
     private String nativeElementQName;
     private String nativePITarget;
@@ -105,7 +110,8 @@ public final class StreamingTransformHandler implements ContentHandler, XMLHandl
     public void startDocument() throws SAXException {
         documentStarted = true;
         documentOrder = 0;
-        pendingNamespaces.clear();
+        namespaces.reset();
+        namespaceScopePending = false;
         
         // Create root node so that document element becomes its child,
         // matching the non-streaming tree where / is the document root
@@ -132,7 +138,7 @@ public final class StreamingTransformHandler implements ContentHandler, XMLHandl
 
     @Override
     public void startPrefixMapping(String prefix, String uri) throws SAXException {
-        pendingNamespaces.put(prefix != null ? prefix : "", uri != null ? uri : "");
+        declareNamespace(prefix, uri);
     }
 
     @Override
@@ -142,7 +148,7 @@ public final class StreamingTransformHandler implements ContentHandler, XMLHandl
 
     @Override
     public void namespace(String prefix, String uri) throws SAXException {
-        pendingNamespaces.put(prefix != null ? prefix : "", uri != null ? uri : "");
+        declareNamespace(prefix, uri);
     }
 
     @Override
@@ -169,19 +175,7 @@ public final class StreamingTransformHandler implements ContentHandler, XMLHandl
         documentOrder++;
         streamingContext.pushDepth();
 
-        boolean hadPending = !pendingNamespaces.isEmpty();
-        Map<String, String> nsBindings;
-        if (!hadPending && currentNode != null) {
-            nsBindings = currentNode.getNamespaceBindingsForChild();
-        } else {
-            reusableNsBindings.clear();
-            if (currentNode != null) {
-                reusableNsBindings.putAll(currentNode.getNamespaceBindingsForChild());
-            }
-            reusableNsBindings.putAll(pendingNamespaces);
-            nsBindings = reusableNsBindings;
-        }
-        pendingNamespaces.clear();
+        Map<String, String> nsBindings = enterNamespaceScope();
 
         String prefix = NativeExpandedNames.extractPrefix(nativeElementQName);
         String localName = NativeExpandedNames.extractLocalName(nativeElementQName);
@@ -225,19 +219,7 @@ public final class StreamingTransformHandler implements ContentHandler, XMLHandl
         }
         
         // Collect namespace bindings from parent + pending declarations
-        Map<String, String> nsBindings;
-        boolean hadPending = !pendingNamespaces.isEmpty();
-        if (!hadPending && currentNode != null) {
-            nsBindings = currentNode.getNamespaceBindingsForChild();
-        } else {
-            reusableNsBindings.clear();
-            if (currentNode != null) {
-                reusableNsBindings.putAll(currentNode.getNamespaceBindingsForChild());
-            }
-            reusableNsBindings.putAll(pendingNamespaces);
-            nsBindings = reusableNsBindings;
-        }
-        pendingNamespaces.clear();
+        Map<String, String> nsBindings = enterNamespaceScope();
         
         StreamingNode node = StreamingNode.createElement(
             uri, localName, prefix, atts, nsBindings, currentNode, documentOrder
@@ -246,6 +228,39 @@ public final class StreamingTransformHandler implements ContentHandler, XMLHandl
         finishStartElement(node);
     }
 
+    private void declareNamespace(String prefix, String uri) {
+        if (!namespaceScopePending) {
+            namespaces.pushContext();
+            namespaceScopePending = true;
+        }
+        namespaces.declarePrefix(prefix != null ? prefix : "", uri != null ? uri : "");
+    }
+
+    /**
+     * Opens the namespace scope of an element starting now and returns its
+     * in-scope bindings: the parent's own map when the element declares
+     * nothing, otherwise the parent's bindings plus the declarations.
+     */
+    private Map<String, String> enterNamespaceScope() {
+        if (!namespaceScopePending) {
+            namespaces.pushContext();
+        }
+        namespaceScopePending = false;
+        int count = namespaces.getCurrentScopeDeclarationCount();
+        if (count == 0 && currentNode != null) {
+            return currentNode.getNamespaceBindingsForChild();
+        }
+        reusableNsBindings.clear();
+        if (currentNode != null) {
+            reusableNsBindings.putAll(currentNode.getNamespaceBindingsForChild());
+        }
+        for (int i = 0; i < count; i++) {
+            reusableNsBindings.put(namespaces.getCurrentScopeDeclarationPrefix(i),
+                    namespaces.getCurrentScopeDeclarationURI(i));
+        }
+        return reusableNsBindings;
+    }
+
     private void finishStartElement(StreamingNode node) throws SAXException {
         currentNode = node;
         streamingContext.setCurrentNode(node);
@@ -293,6 +308,7 @@ public final class StreamingTransformHandler implements ContentHandler, XMLHandl
         }
         streamingContext.setCurrentNode(currentNode);
         streamingContext.popDepth();
+        namespaces.popContext();
     }
 
     @Override
@@ -22,17 +22,20 @@
 package org.bluezoo.gonzalez.transform.runtime;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bluezoo.gonzalez.transform.ast.SequenceNode;
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.compiler.ElementPath;
 import org.bluezoo.gonzalez.transform.compiler.ModeDeclaration;
 import org.bluezoo.gonzalez.transform.compiler.Pattern;
 import org.bluezoo.gonzalez.transform.compiler.SimpleAttrEquality;
@@ -52,7 +55,16 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  * </ol>
  *
  * <p>Rules are indexed by mode, then by matchable node type and local name so
- * that only plausible candidates are considered for each node.
+ * that only plausible candidates are considered for each node. When a mode
+ * is indexed the candidates for each node type and local name are merged
+ * into a single array in conflict-resolution order, so finding the rule
+ * for a node is one lookup followed by pattern checks, without allocation.
+ * Candidates whose patterns are only element names joined by child steps
+ * are further compiled into a suffix trie over the ancestor chain, so a
+ * single upward walk finds the best of them however many there are.
+ *
+ * <p>A matcher is immutable once built and may be shared by concurrent
+ * transformations; see {@link CompiledStylesheet#getTemplateMatcher()}.
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
@@ -71,9 +83,9 @@ public final class TemplateMatcher {
         this.stylesheet = stylesheet;
         this.allModeRules = new ArrayList<>();
         if (stylesheet != null) {
-            this.rulesByMode = indexRulesByMode();
+            this.rulesByMode = new ConcurrentHashMap<>(indexRulesByMode());
         } else {
-            this.rulesByMode = new HashMap<>();
+            this.rulesByMode = new ConcurrentHashMap<>();
         }
     }
 
@@ -141,8 +153,9 @@ public final class TemplateMatcher {
                 newIndex.add(allModeRules.get(i));
             }
             newIndex.seal();
-            rulesByMode.put(modeKey, newIndex);
-            return newIndex;
+            // May be reached concurrently from parallel iterations
+            ModeIndex existing = rulesByMode.putIfAbsent(modeKey, newIndex);
+            return (existing != null) ? existing : newIndex;
         }
         return null;
     }
@@ -187,14 +200,31 @@ public final class TemplateMatcher {
         boolean failOnMultiple = modeDecl != null &&
             modeDecl.getOnMultipleMatch() == ModeDeclaration.OnMultipleMatch.FAIL;
 
-        CandidateLists candidates = index.candidatesFor(node);
+        Dispatch dispatch = index.dispatchFor(node);
+        TemplateRule[] rules = dispatch.rules;
+        String keyValue = dispatch.keyValue(node);
         TemplateRule firstMatch = null;
         int matchCount = 0;
 
-        CandidateCursor cursor = new CandidateCursor(candidates);
-        while (cursor.hasNext()) {
-            TemplateRule rule = cursor.next();
-            if (rule.getMatchPattern().matches(node, context)) {
+        if (!failOnMultiple && dispatch.paths != null) {
+            // Rules ranked above the best path rule still need checking
+            int best = Math.min(dispatch.paths.bestMatch(node), rules.length);
+            for (int i = 0; i < best; i++) {
+                if (!dispatch.inPaths[i] && dispatch.mayMatch(i, node, keyValue)
+                        && rules[i].getMatchPattern().matches(node, context)) {
+                    return rules[i];
+                }
+            }
+            if (best < rules.length) {
+                return rules[best];
+            }
+            return getBuiltInRule(node, mode);
+        }
+
+        for (int i = 0; i < rules.length; i++) {
+            TemplateRule rule = rules[i];
+            if (dispatch.mayMatch(i, node, keyValue)
+                    && rule.getMatchPattern().matches(node, context)) {
                 if (firstMatch == null) {
                     firstMatch = rule;
                     matchCount = 1;
@@ -485,11 +515,14 @@ public final class TemplateMatcher {
         }
 
         boolean foundCurrent = false;
-        CandidateCursor cursor = new CandidateCursor(index.candidatesFor(node));
-        while (cursor.hasNext()) {
-            TemplateRule rule = cursor.next();
+        Dispatch dispatch = index.dispatchFor(node);
+        TemplateRule[] rules = dispatch.rules;
+        String keyValue = dispatch.keyValue(node);
+        for (int i = 0; i < rules.length; i++) {
+            TemplateRule rule = rules[i];
             if (foundCurrent) {
-                if (rule.getMatchPattern().matches(node, context)) {
+                if (dispatch.mayMatch(i, node, keyValue)
+                        && rule.getMatchPattern().matches(node, context)) {
                     return rule;
                 }
             } else if (rule == currentRule || isSameRule(rule, currentRule)) {
@@ -553,13 +586,16 @@ public final class TemplateMatcher {
         int currentPrecedence = currentRule.getImportPrecedence();
         int minPrecedence = currentRule.getMinImportPrecedence();
 
-        CandidateCursor cursor = new CandidateCursor(index.candidatesFor(node));
-        while (cursor.hasNext()) {
-            TemplateRule rule = cursor.next();
+        Dispatch dispatch = index.dispatchFor(node);
+        TemplateRule[] rules = dispatch.rules;
+        String keyValue = dispatch.keyValue(node);
+        for (int i = 0; i < rules.length; i++) {
+            TemplateRule rule = rules[i];
             int rulePrec = rule.getImportPrecedence();
             if (rulePrec < currentPrecedence
                     && (minPrecedence < 0 || rulePrec >= minPrecedence)) {
-                if (rule.getMatchPattern().matches(node, context)) {
+                if (dispatch.mayMatch(i, node, keyValue)
+                        && rule.getMatchPattern().matches(node, context)) {
                     return rule;
                 }
             }
@@ -609,6 +645,10 @@ public final class TemplateMatcher {
         final List<TemplateRule> anyType = new ArrayList<>();
         final Map<NodeType, TypeIndex> byType = new HashMap<>();
 
+        // Built by seal(): candidates by node type ordinal, then local name
+        private Dispatch[] byTypeOther;
+        private Map<String, Dispatch>[] byTypeName;
+
         void add(TemplateRule rule) {
             all.add(rule);
             Pattern pattern = rule.getMatchPattern();
@@ -626,163 +666,291 @@ public final class TemplateMatcher {
             if (localName == null) {
                 typeIndex.anyName.add(rule);
             } else {
-                NameBucket bucket = typeIndex.byLocalName.get(localName);
+                List<TemplateRule> bucket = typeIndex.byLocalName.get(localName);
                 if (bucket == null) {
-                    bucket = new NameBucket();
+                    bucket = new ArrayList<>();
                     typeIndex.byLocalName.put(localName, bucket);
                 }
-                SimpleAttrEquality attrEq = pattern.getSimpleAttrEquality();
-                if (attrEq != null) {
-                    String key = attrEq.indexKey();
-                    List<TemplateRule> keyed = bucket.byAttrEq.get(key);
-                    if (keyed == null) {
-                        keyed = new ArrayList<>();
-                        bucket.byAttrEq.put(key, keyed);
-                    }
-                    keyed.add(rule);
-                } else {
-                    bucket.residual.add(rule);
-                }
+                bucket.add(rule);
             }
         }
 
         void seal() {
             Collections.sort(all, TEMPLATE_PRECEDENCE_COMPARATOR);
-            Collections.sort(anyType, TEMPLATE_PRECEDENCE_COMPARATOR);
-            for (TypeIndex typeIndex : byType.values()) {
-                Collections.sort(typeIndex.anyName, TEMPLATE_PRECEDENCE_COMPARATOR);
-                for (NameBucket bucket : typeIndex.byLocalName.values()) {
-                    Collections.sort(bucket.residual, TEMPLATE_PRECEDENCE_COMPARATOR);
-                    for (List<TemplateRule> keyed : bucket.byAttrEq.values()) {
-                        Collections.sort(keyed, TEMPLATE_PRECEDENCE_COMPARATOR);
+            NodeType[] types = NodeType.values();
+            byTypeOther = new Dispatch[types.length];
+            byTypeName = newDispatchMaps(types.length);
+            Dispatch anyTypeOnly = new Dispatch(anyType, null);
+            for (NodeType type : types) {
+                TypeIndex typeIndex = byType.get(type);
+                if (typeIndex == null) {
+                    byTypeOther[type.ordinal()] = anyTypeOnly;
+                    continue;
+                }
+                List<TemplateRule> other = new ArrayList<>(typeIndex.anyName);
+                other.addAll(anyType);
+                byTypeOther[type.ordinal()] = new Dispatch(other, null);
+                if (!typeIndex.byLocalName.isEmpty()) {
+                    Map<String, Dispatch> byName = new HashMap<>();
+                    for (Map.Entry<String, List<TemplateRule>> entry
+                            : typeIndex.byLocalName.entrySet()) {
+                        List<TemplateRule> named = entry.getValue();
+                        List<TemplateRule> candidates = new ArrayList<>(named);
+                        candidates.addAll(other);
+                        byName.put(entry.getKey(), new Dispatch(candidates, named));
                     }
+                    byTypeName[type.ordinal()] = byName;
                 }
             }
         }
 
-        CandidateLists candidatesFor(XPathNode node) {
-            NodeType nodeType = node.getNodeType();
-            TypeIndex typeIndex = byType.get(nodeType);
-            List<TemplateRule> attrHits = null;
-            List<TemplateRule> residual = Collections.emptyList();
-            List<TemplateRule> anyName = Collections.emptyList();
-            if (typeIndex != null) {
-                anyName = typeIndex.anyName;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Map<String, Dispatch>[] newDispatchMaps(int length) {
+            return new Map[length];
+        }
+
+        /**
+         * Returns the candidate rules for a node. Names no rule is indexed
+         * by share their type's candidates, so the table never grows.
+         */
+        Dispatch dispatchFor(XPathNode node) {
+            int type = node.getNodeType().ordinal();
+            Map<String, Dispatch> byName = byTypeName[type];
+            if (byName != null) {
                 String localName = node.getLocalName();
                 if (localName != null) {
-                    NameBucket bucket = typeIndex.byLocalName.get(localName);
-                    if (bucket != null) {
-                        residual = bucket.residual;
-                        if (!bucket.byAttrEq.isEmpty()) {
-                            attrHits = collectAttrEqualityHits(bucket, node);
-                        }
-                    }
-                }
-            }
-            return new CandidateLists(attrHits, residual, anyName, anyType);
-        }
-
-        private static List<TemplateRule> collectAttrEqualityHits(
-                NameBucket bucket, XPathNode node) {
-            List<TemplateRule> hits = null;
-            Iterator<XPathNode> attrs = node.getAttributes();
-            while (attrs.hasNext()) {
-                XPathNode attr = attrs.next();
-                String key = SimpleAttrEquality.indexKey(
-                    attr.getNamespaceURI(), attr.getLocalName(),
-                    attr.getStringValue());
-                List<TemplateRule> keyed = bucket.byAttrEq.get(key);
-                if (keyed != null) {
-                    if (hits == null) {
-                        hits = new ArrayList<>(keyed.size());
+                    Dispatch dispatch = byName.get(localName);
+                    if (dispatch != null) {
+                        return dispatch;
                     }
-                    hits.addAll(keyed);
                 }
             }
-            if (hits != null && hits.size() > 1) {
-                Collections.sort(hits, TEMPLATE_PRECEDENCE_COMPARATOR);
-            }
-            return hits;
+            return byTypeOther[type];
         }
     }
 
     private static final class TypeIndex {
-        final Map<String, NameBucket> byLocalName = new HashMap<>();
+        final Map<String, List<TemplateRule>> byLocalName = new HashMap<>();
         final List<TemplateRule> anyName = new ArrayList<>();
     }
 
     /**
-     * Per-local-name rules: simple {@code @attr='v'} templates are keyed;
-     * everything else stays in {@code residual}.
+     * The candidate rules for one node type and local name, in
+     * conflict-resolution order. Rules indexed by that name whose pattern
+     * has a simple {@code @attr='v'} predicate are pre-tested on the
+     * attribute before the full pattern; when they all test the same
+     * attribute, its value is looked up once per node.
      */
-    private static final class NameBucket {
-        final Map<String, List<TemplateRule>> byAttrEq = new HashMap<>();
-        final List<TemplateRule> residual = new ArrayList<>();
-    }
+    private static final class Dispatch {
+        final TemplateRule[] rules;
+        final Suffix paths;
+        final boolean[] inPaths;
+        private final SimpleAttrEquality[] attrTests;
+        private final String keyNamespaceURI;
+        private final String keyLocalName;
+
+        Dispatch(List<TemplateRule> candidates, List<TemplateRule> named) {
+            Collections.sort(candidates, TEMPLATE_PRECEDENCE_COMPARATOR);
+            rules = candidates.toArray(new TemplateRule[candidates.size()]);
+            Set<TemplateRule> indexed = Collections.newSetFromMap(
+                new IdentityHashMap<TemplateRule, Boolean>());
+            if (named != null) {
+                indexed.addAll(named);
+            }
+            SimpleAttrEquality[] tests = null;
+            String keyNs = null;
+            String keyLocal = null;
+            boolean sameAttribute = true;
+            for (int i = 0; i < rules.length; i++) {
+                if (!indexed.contains(rules[i])) {
+                    continue;
+                }
+                SimpleAttrEquality test = rules[i].getMatchPattern().getSimpleAttrEquality();
+                if (test == null) {
+                    continue;
+                }
+                if (tests == null) {
+                    tests = new SimpleAttrEquality[rules.length];
+                    keyNs = test.getNamespaceURI();
+                    keyLocal = test.getLocalName();
+                } else if (!keyNs.equals(test.getNamespaceURI())
+                        || !keyLocal.equals(test.getLocalName())) {
+                    sameAttribute = false;
+                }
+                tests[i] = test;
+            }
+            attrTests = tests;
+            Suffix trie = null;
+            boolean[] decided = null;
+            for (int i = 0; i < rules.length; i++) {
+                ElementPath path = rules[i].getMatchPattern().getElementPath();
+                if (path == null) {
+                    continue;
+                }
+                if (trie == null) {
+                    trie = new Suffix(null, null);
+                    decided = new boolean[rules.length];
+                }
+                trie.add(path, i);
+                decided[i] = true;
+            }
+            paths = trie;
+            inPaths = decided;
+            keyNamespaceURI = (tests != null && sameAttribute) ? keyNs : null;
+            keyLocalName = (tests != null && sameAttribute) ? keyLocal : null;
+        }
+
+        /**
+         * Returns the value of the attribute all pre-tests compare, or
+         * null if there is no such attribute or no single one.
+         */
+        String keyValue(XPathNode node) {
+            if (keyLocalName == null) {
+                return null;
+            }
+            XPathNode attr = node.getAttribute(keyNamespaceURI, keyLocalName);
+            return attr != null ? attr.getStringValue() : null;
+        }
 
-    /**
-     * Up to four precedence-sorted candidate lists to merge for a node.
-     */
-    private static final class CandidateLists {
-        final List<TemplateRule> attrHits;
-        final List<TemplateRule> residual;
-        final List<TemplateRule> anyName;
-        final List<TemplateRule> anyType;
-
-        CandidateLists(List<TemplateRule> attrHits, List<TemplateRule> residual,
-                       List<TemplateRule> anyName, List<TemplateRule> anyType) {
-            this.attrHits = attrHits;
-            this.residual = residual;
-            this.anyName = anyName;
-            this.anyType = anyType;
+        /**
+         * Returns false if the rule at index i cannot match the node
+         * because its attribute pre-test fails.
+         */
+        boolean mayMatch(int i, XPathNode node, String keyValue) {
+            if (attrTests == null || attrTests[i] == null) {
+                return true;
+            }
+            SimpleAttrEquality test = attrTests[i];
+            if (keyLocalName != null) {
+                return test.getValue().equals(keyValue);
+            }
+            XPathNode attr = node.getAttribute(test.getNamespaceURI(), test.getLocalName());
+            return attr != null && test.getValue().equals(attr.getStringValue());
         }
     }
 
     /**
-     * Merges precedence-sorted candidate lists in conflict-resolution order.
+     * A node of the suffix trie of the element paths in a dispatch. Each
+     * node stands for the steps on the way to it from the root, read from
+     * the matched element upwards, and records the best-ranked rule whose
+     * path ends there. The trie is walked up the ancestor chain of an
+     * element, following every edge whose name test the ancestor passes,
+     * so each element is tested once per distinct suffix rather than once
+     * per rule.
      */
-    private static final class CandidateCursor {
-        private final List<TemplateRule>[] lists;
-        private final int[] indexes;
-
-        @SuppressWarnings("unchecked")
-        CandidateCursor(CandidateLists candidates) {
-            this.lists = new List[] {
-                candidates.attrHits,
-                candidates.residual,
-                candidates.anyName,
-                candidates.anyType
-            };
-            this.indexes = new int[lists.length];
-        }
-
-        boolean hasNext() {
-            for (int i = 0; i < lists.length; i++) {
-                List<TemplateRule> list = lists[i];
-                if (list != null && indexes[i] < list.size()) {
-                    return true;
+    private static final class Suffix {
+
+        private static final Suffix[] NO_EDGES = new Suffix[0];
+
+        private final String namespaceURI; // null for any
+        private final String localName; // null for any
+        private int relative = Integer.MAX_VALUE;
+        private int absolute = Integer.MAX_VALUE;
+        private int floor = Integer.MAX_VALUE; // best rule at or below here
+        private Map<String, Suffix[]> named;
+        private Suffix[] unnamed = NO_EDGES;
+
+        Suffix(String namespaceURI, String localName) {
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+        }
+
+        void add(ElementPath path, int rule) {
+            Suffix node = this;
+            node.floor = Math.min(node.floor, rule);
+            for (int i = 0; i < path.getLength(); i++) {
+                node = node.edge(path.getNamespaceURI(i), path.getLocalName(i));
+                node.floor = Math.min(node.floor, rule);
+            }
+            if (path.isAbsolute()) {
+                node.absolute = Math.min(node.absolute, rule);
+            } else {
+                node.relative = Math.min(node.relative, rule);
+            }
+        }
+
+        private Suffix edge(String uri, String local) {
+            Suffix[] edges = unnamed;
+            if (local != null) {
+                if (named == null) {
+                    named = new HashMap<>();
+                }
+                edges = named.get(local);
+                if (edges == null) {
+                    edges = NO_EDGES;
                 }
             }
-            return false;
+            for (Suffix edge : edges) {
+                if (uri == null ? edge.namespaceURI == null : uri.equals(edge.namespaceURI)) {
+                    return edge;
+                }
+            }
+            Suffix edge = new Suffix(uri, local);
+            edges = Arrays.copyOf(edges, edges.length + 1);
+            edges[edges.length - 1] = edge;
+            if (local != null) {
+                named.put(local, edges);
+            } else {
+                unnamed = edges;
+            }
+            return edge;
+        }
+
+        /**
+         * Returns the index of the best-ranked rule whose path matches the
+         * element, or {@link Integer#MAX_VALUE} if none does.
+         */
+        int bestMatch(XPathNode node) {
+            return descend(node, Integer.MAX_VALUE);
         }
 
-        TemplateRule next() {
-            TemplateRule best = null;
-            int bestList = -1;
-            for (int i = 0; i < lists.length; i++) {
-                List<TemplateRule> list = lists[i];
-                if (list != null && indexes[i] < list.size()) {
-                    TemplateRule r = list.get(indexes[i]);
-                    if (best == null
-                            || TEMPLATE_PRECEDENCE_COMPARATOR.compare(r, best) < 0) {
-                        best = r;
-                        bestList = i;
+        private boolean accepts(XPathNode element) {
+            if (namespaceURI == null) {
+                return true;
+            }
+            String uri = element.getNamespaceURI();
+            return namespaceURI.equals(uri == null ? "" : uri);
+        }
+
+        /**
+         * Follows the edges whose tests the element passes and returns the
+         * best rule found below them, or best if that is better.
+         */
+        private int descend(XPathNode element, int best) {
+            if (!element.isElement()) {
+                return best;
+            }
+            if (named != null) {
+                Suffix[] edges = named.get(element.getLocalName());
+                if (edges != null) {
+                    for (Suffix edge : edges) {
+                        if (edge.floor < best && edge.accepts(element)) {
+                            best = edge.match(element, best);
+                        }
                     }
                 }
             }
-            indexes[bestList]++;
+            for (Suffix edge : unnamed) {
+                if (edge.floor < best && edge.accepts(element)) {
+                    best = edge.match(element, best);
+                }
+            }
             return best;
         }
+
+        private int match(XPathNode element, int best) {
+            if (relative < best) {
+                best = relative;
+            }
+            XPathNode parent = element.getParent();
+            if (parent == null) {
+                return best;
+            }
+            if (absolute < best && parent.getParent() == null && parent.isRoot()) {
+                best = absolute;
+            }
+            return descend(parent, best);
+        }
     }
 
 }
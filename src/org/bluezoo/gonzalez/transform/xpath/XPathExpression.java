@@ -21,6 +21,11 @@
 
 package org.bluezoo.gonzalez.transform.xpath;
 
+import java.io.Serializable;
+
+import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.ProfileSite;
+import org.bluezoo.gonzalez.transform.runtime.Profiler;
 import org.bluezoo.gonzalez.transform.xpath.expr.Expr;
 import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
 import org.bluezoo.gonzalez.transform.xpath.type.SequenceType;
@@ -43,10 +48,13 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class XPathExpression {
+public final class XPathExpression implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String expressionString;
     private final Expr compiledExpr;
+    private ProfileSite profileSite;
 
     /**
      * Creates a compiled expression (private - use compile()).
@@ -125,9 +133,39 @@ public final class XPathExpression {
      * @throws XPathException if evaluation fails
      */
     public XPathValue evaluate(XPathContext context) throws XPathException {
+        if (profileSite != null && context instanceof BasicTransformContext) {
+            Profiler profiler = ((BasicTransformContext) context).getProfiler();
+            if (profiler != null) {
+                profiler.enter(profileSite);
+                try {
+                    return compiledExpr.evaluate(context);
+                } finally {
+                    profiler.exit();
+                }
+            }
+        }
         return compiledExpr.evaluate(context);
     }
 
+    /**
+     * Sets the site this expression is measured as when the stylesheet
+     * containing it is profiled.
+     *
+     * @param site the profile site, or null not to measure the expression
+     */
+    public void setProfileSite(ProfileSite site) {
+        this.profileSite = site;
+    }
+
+    /**
+     * Returns the site this expression is measured as.
+     *
+     * @return the profile site, or null if the expression is not measured
+     */
+    public ProfileSite getProfileSite() {
+        return profileSite;
+    }
+
     /**
      * Evaluates the expression and returns the result as a string.
      *
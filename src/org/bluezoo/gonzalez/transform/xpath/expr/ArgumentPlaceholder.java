@@ -36,6 +36,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class ArgumentPlaceholder implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     /** Singleton instance. */
     public static final ArgumentPlaceholder INSTANCE = new ArgumentPlaceholder();
 
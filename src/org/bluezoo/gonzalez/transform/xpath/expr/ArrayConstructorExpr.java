@@ -38,6 +38,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class ArrayConstructorExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<Expr> memberExprs;
 
     /**
@@ -57,6 +57,8 @@ import java.util.Set;
  */
 public final class BinaryExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Operator operator;
     private final Expr left;
     private final Expr right;
@@ -377,6 +379,9 @@ public final class BinaryExpr implements Expr {
     
     /** Simple wrapper to treat XPathNode as XPathValue for atomization */
     private static class NodeValueWrapper implements XPathValue, XPathNode {
+
+        private static final long serialVersionUID = 1L;
+
         private final XPathNode node;
         NodeValueWrapper(XPathNode node) { this.node = node; }
         @Override public Type getType() { return Type.NODESET; }
@@ -40,7 +40,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class ContextItemExpr implements Expr {
 
-    private StaticTypeContext typeContext;
+    private static final long serialVersionUID = 1L;
+
+    private transient StaticTypeContext typeContext;
 
     @Override
     public void bindStaticTypes(StaticTypeContext context) {
@@ -41,6 +41,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class DynamicFunctionCallExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Expr base;
     private final List<Expr> args;
 
@@ -40,6 +40,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class DynamicPartialItem implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     private final XPathValue baseFunction;
     private final int arity;
     private final XPathValue[] boundArgs;
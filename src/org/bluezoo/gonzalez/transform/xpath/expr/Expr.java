@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.xpath.expr;
 
+import java.io.Serializable;
+
 import org.bluezoo.gonzalez.transform.xpath.StaticTypeContext;
 import org.bluezoo.gonzalez.transform.xpath.XPathContext;
 import org.bluezoo.gonzalez.transform.xpath.type.SequenceType;
@@ -39,7 +41,7 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public interface Expr {
+public interface Expr extends Serializable {
 
     /**
      * Evaluates this expression in the given context.
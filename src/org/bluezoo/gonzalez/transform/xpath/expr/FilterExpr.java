@@ -53,6 +53,8 @@ import java.util.List;
  */
 public final class FilterExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Expr primary;
     private final List<Expr> predicates;
 
@@ -27,6 +27,7 @@ import org.bluezoo.gonzalez.transform.xpath.type.SequenceType;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathSequence;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -54,10 +55,15 @@ import java.util.List;
  */
 public final class ForExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * A variable binding in a for expression.
      */
-    public static final class Binding {
+    public static final class Binding implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final String varName;
         private final Expr sequence;
 
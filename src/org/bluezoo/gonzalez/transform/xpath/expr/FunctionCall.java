@@ -21,6 +21,8 @@
 
 package org.bluezoo.gonzalez.transform.xpath.expr;
 
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.runtime.VariableScope;
 import org.bluezoo.gonzalez.transform.xpath.StaticTypeContext;
 import org.bluezoo.gonzalez.transform.xpath.XPathContext;
 import org.bluezoo.gonzalez.transform.xpath.XPathFunctionLibrary;
@@ -45,11 +47,16 @@ import java.util.List;
  */
 public final class FunctionCall implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
+    private static final String FN_NAMESPACE = "http://www.w3.org/2005/xpath-functions";
+
     private final String prefix;
     private final String localName;
     private final String resolvedNamespaceURI;
     private final List<Expr> arguments;
-    private StaticTypeContext typeContext;
+    private transient StaticTypeContext typeContext;
+    private String precomputedVariable;
 
     /**
      * Creates a function call with no namespace prefix.
@@ -95,6 +102,15 @@ public final class FunctionCall implements Expr {
 
     @Override
     public XPathValue evaluate(XPathContext context) throws XPathException {
+        // Result computed ahead of time by the enclosing instruction
+        if (precomputedVariable != null && context instanceof TransformContext) {
+            VariableScope scope = ((TransformContext) context).getVariableScope();
+            XPathValue precomputed = scope.lookup(null, precomputedVariable);
+            if (precomputed != null) {
+                return precomputed;
+            }
+        }
+
         // Use compile-time resolved URI if available, otherwise resolve at runtime
         String namespaceURI = resolvedNamespaceURI;
         if (namespaceURI == null && prefix != null && !prefix.isEmpty()) {
@@ -128,6 +144,18 @@ public final class FunctionCall implements Expr {
             return createPartialApplication(namespaceURI, library, context);
         }
 
+        // count(preceding::x) and count(preceding-sibling::x) are counted
+        // on from the previous context node rather than walked each time
+        if ("count".equals(localName) && arguments.size() == 1
+                && arguments.get(0) instanceof LocationPath
+                && (namespaceURI == null || namespaceURI.isEmpty()
+                    || FN_NAMESPACE.equals(namespaceURI))) {
+            int count = ((LocationPath) arguments.get(0)).countPreceding(context);
+            if (count >= 0) {
+                return XPathNumber.of(count);
+            }
+        }
+
         // Evaluate arguments
         List<XPathValue> argValues = new ArrayList<>(arguments.size());
         for (Expr arg : arguments) {
@@ -220,6 +248,19 @@ public final class FunctionCall implements Expr {
         return null;
     }
 
+    /**
+     * Marks this call as precomputed by an enclosing instruction.
+     * When the named internal variable is bound at evaluation time its
+     * value is returned instead of invoking the function. This is used
+     * by xsl:for-each-group to fold aggregates over current-group()
+     * incrementally, without retaining the group members.
+     *
+     * @param variableName the internal variable holding the result
+     */
+    public void setPrecomputedVariable(String variableName) {
+        this.precomputedVariable = variableName;
+    }
+
     /**
      * Returns the namespace prefix.
      *
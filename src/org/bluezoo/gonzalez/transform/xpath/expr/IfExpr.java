@@ -44,6 +44,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class IfExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Expr condition;
     private final Expr thenExpr;
     private final Expr elseExpr;
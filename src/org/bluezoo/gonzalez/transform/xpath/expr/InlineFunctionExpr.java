@@ -38,6 +38,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class InlineFunctionExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<String> paramNames;
     private final List<String> paramTypes;
     private final String returnType;
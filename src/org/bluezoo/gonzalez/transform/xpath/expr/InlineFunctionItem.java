@@ -39,6 +39,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class InlineFunctionItem implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<String> paramNames;
     private final List<String> paramTypeStrings;
     private final String returnTypeString;
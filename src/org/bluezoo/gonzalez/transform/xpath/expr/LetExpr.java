@@ -26,6 +26,7 @@ import org.bluezoo.gonzalez.transform.xpath.XPathContext;
 import org.bluezoo.gonzalez.transform.xpath.type.SequenceType;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -52,10 +53,15 @@ import java.util.List;
  */
 public final class LetExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * A variable binding in a let expression.
      */
-    public static final class Binding {
+    public static final class Binding implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final String varName;
         private final Expr value;
 
@@ -32,6 +32,8 @@ import org.bluezoo.gonzalez.schema.xsd.XSDAttribute;
 import org.bluezoo.gonzalez.schema.xsd.XSDElement;
 import org.bluezoo.gonzalez.schema.xsd.XSDSchema;
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
+import org.bluezoo.gonzalez.transform.runtime.NodeCounters;
 import org.bluezoo.gonzalez.transform.runtime.TransformContext;
 import org.bluezoo.gonzalez.transform.xpath.XPathContext;
 import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
@@ -64,6 +66,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class LocationPath implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final boolean absolute;
     private final List<Step> steps;
 
@@ -936,6 +940,50 @@ public final class LocationPath implements Expr {
         return absolute;
     }
 
+    /**
+     * Counts the nodes this path selects without selecting them, when the
+     * path is a single {@code preceding} or {@code preceding-sibling} step
+     * without predicates, as in {@code count(preceding::footnote)}. The
+     * count carries on from the last context node counted for this step in
+     * the transformation, so counting for every node of a document in
+     * order is linear rather than quadratic.
+     *
+     * @param context the evaluation context
+     * @return the number of nodes selected, or -1 if the path is not of
+     *         that form or the context node cannot be counted this way
+     */
+    public int countPreceding(final XPathContext context) {
+        if (absolute || steps.size() != 1) {
+            return -1;
+        }
+        final Step step = steps.get(0);
+        Step.Axis axis = step.getAxis();
+        if ((axis != Step.Axis.PRECEDING && axis != Step.Axis.PRECEDING_SIBLING)
+                || step.hasPredicates() || step.hasTypeConstraint()
+                || step.getNodeTestType() == Step.NodeTestType.SCHEMA_ELEMENT
+                || step.getNodeTestType() == Step.NodeTestType.SCHEMA_ATTRIBUTE) {
+            return -1;
+        }
+        if (!(context instanceof BasicTransformContext)) {
+            return -1;
+        }
+        XPathNode node = context.getContextNode();
+        if (!NodeCounters.isCountable(node)) {
+            return -1;
+        }
+        NodeCounters counters = ((BasicTransformContext) context).getNodeCounters();
+        NodeCounters.Test test = new NodeCounters.Test() {
+            @Override
+            public boolean matches(XPathNode n) {
+                return matchesNodeTest(step, n, context);
+            }
+        };
+        if (axis == Step.Axis.PRECEDING_SIBLING) {
+            return counters.countPrecedingSiblings(step, node, test);
+        }
+        return counters.countPreceding(step, node, test);
+    }
+
     /**
      * Returns true if this absolute path does not depend on the context node
      * (only on the document root). Safe to memoize across for-each iterations.
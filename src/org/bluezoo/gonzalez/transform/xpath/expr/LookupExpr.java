@@ -46,6 +46,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class LookupExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Expr base;
     private final String key;
     private final boolean wildcard;
@@ -41,6 +41,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class MapConstructorExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<Expr> keyExprs;
     private final List<Expr> valueExprs;
 
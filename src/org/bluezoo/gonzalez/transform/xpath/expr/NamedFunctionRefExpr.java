@@ -44,6 +44,8 @@ import java.util.List;
  */
 public final class NamedFunctionRefExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private static final String FN_NAMESPACE = "http://www.w3.org/2005/xpath-functions";
 
     private final String prefix;
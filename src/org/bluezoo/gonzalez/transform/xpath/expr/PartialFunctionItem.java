@@ -44,6 +44,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class PartialFunctionItem implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     private final String fullName;
     private final String namespaceURI;
     private final String funcLocalName;
@@ -52,6 +52,8 @@ import java.util.Set;
  */
 public final class PathExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Expr filter;
     private final LocationPath path;
 
@@ -27,6 +27,7 @@ import org.bluezoo.gonzalez.transform.xpath.type.SequenceType;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathBoolean;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -54,6 +55,8 @@ import java.util.List;
  */
 public final class QuantifiedExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * The quantifier type.
      */
@@ -65,7 +68,10 @@ public final class QuantifiedExpr implements Expr {
     /**
      * A variable binding in a quantified expression.
      */
-    public static final class Binding {
+    public static final class Binding implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
         private final String varName;
         private final Expr sequence;
 
@@ -35,6 +35,8 @@ import java.util.List;
  */
 public final class SequenceExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<Expr> items;
 
     /**
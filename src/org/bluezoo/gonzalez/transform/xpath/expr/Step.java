@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.xpath.expr;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -45,7 +46,9 @@ import java.util.List;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public final class Step {
+public final class Step implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * The XPath axes.
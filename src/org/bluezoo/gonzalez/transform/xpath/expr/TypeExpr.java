@@ -43,6 +43,8 @@ import java.math.BigInteger;
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
 public class TypeExpr implements Expr {
+
+    private static final long serialVersionUID = 1L;
     
     /**
      * Type operation kind.
@@ -39,6 +39,8 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class UnaryExpr implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Expr operand;
     private final int negationCount;
 
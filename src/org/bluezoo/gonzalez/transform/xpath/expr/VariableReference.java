@@ -37,10 +37,12 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathValue;
  */
 public final class VariableReference implements Expr {
 
+    private static final long serialVersionUID = 1L;
+
     private final String prefix;
     private final String localName;
     private final String resolvedNamespaceURI;
-    private StaticTypeContext typeContext;
+    private transient StaticTypeContext typeContext;
 
     /**
      * Creates a variable reference with no namespace prefix.
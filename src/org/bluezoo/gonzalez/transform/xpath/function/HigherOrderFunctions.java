@@ -643,12 +643,13 @@ final class HigherOrderFunctions {
                 primaryOutput = seqOutput;
             }
 
-            // Set up secondary output collector
+            // Set up secondary output collector, filled by parallel
+            // partitions too
             Map<String, OutputHandler> secondaryCollector =
-                new LinkedHashMap<String, OutputHandler>();
+                Collections.synchronizedMap(new LinkedHashMap<String, OutputHandler>());
 
             // Build context for inner transformation
-            TemplateMatcher matcher = new TemplateMatcher(stylesheet);
+            TemplateMatcher matcher = stylesheet.getTemplateMatcher();
             BasicTransformContext innerContext = new BasicTransformContext(
                 stylesheet, null, matcher, primaryOutput, null);
             innerContext.setResultDocumentCollector(secondaryCollector);
@@ -30,6 +30,7 @@ import java.util.TreeMap;
 
 import org.xml.sax.SAXException;
 
+import org.bluezoo.gonzalez.Metrics;
 import org.bluezoo.gonzalez.transform.ast.SequenceNode;
 import org.bluezoo.gonzalez.transform.ast.XSLTNode;
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
@@ -255,11 +256,16 @@ final class KeyFunctions {
                     return collation.compare(a, b);
                 }
             };
+            Metrics metrics = Metrics.getMetrics();
+            long start = (metrics != null) ? System.nanoTime() : 0L;
             Map<String, List<XPathNode>> index = new TreeMap<String, List<XPathNode>>(comparator);
             for (int d = 0; d < keyDefs.size(); d++) {
                 KeyDefinition keyDef = keyDefs.get(d);
                 indexNode(root, keyDef, index, context);
             }
+            if (metrics != null) {
+                metrics.record(Metrics.KEY_INDEX, System.nanoTime() - start);
+            }
             return index;
         }
 
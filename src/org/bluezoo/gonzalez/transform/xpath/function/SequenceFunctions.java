@@ -1518,6 +1518,9 @@ public final class SequenceFunctions {
 
     // Helper class to wrap a single node as an XPathValue (used by deep-equal)
     private static class SingleNodeValue implements XPathValue {
+
+        private static final long serialVersionUID = 1L;
+
         final XPathNode node;
         SingleNodeValue(XPathNode node) { this.node = node; }
         @Override public Type getType() { return Type.NODESET; }
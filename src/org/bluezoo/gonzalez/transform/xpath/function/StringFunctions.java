@@ -24,10 +24,10 @@ package org.bluezoo.gonzalez.transform.xpath.function;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -81,7 +81,7 @@ public final class StringFunctions {
             || value instanceof DynamicPartialItem;
     }
 
-    private static final Map<String, Pattern> regexCache = new HashMap<>();
+    private static final Map<String, Pattern> regexCache = new ConcurrentHashMap<>();
 
     private StringFunctions() {}
 
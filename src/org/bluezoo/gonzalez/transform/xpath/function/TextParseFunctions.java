@@ -37,9 +37,9 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.xml.sax.SAXException;
 
@@ -67,7 +67,7 @@ final class TextParseFunctions {
 
     private static final int IO_BUFFER_SIZE = 8192;
 
-    private static final Map<String, java.util.regex.Pattern> regexCache = new HashMap<>();
+    private static final Map<String, java.util.regex.Pattern> regexCache = new ConcurrentHashMap<>();
 
     private TextParseFunctions() {
     }
@@ -25,15 +25,15 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.bluezoo.gonzalez.transform.ErrorHandlingMode;
+import org.bluezoo.gonzalez.transform.FunctionResultCache;
 import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
 import org.bluezoo.gonzalez.transform.compiler.SequenceBuilderOutputHandler;
 import org.bluezoo.gonzalez.transform.compiler.UserFunction;
 import org.bluezoo.gonzalez.transform.runtime.BasicTransformContext;
 import org.bluezoo.gonzalez.transform.runtime.BufferOutputHandler;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
 import org.bluezoo.gonzalez.transform.runtime.OutputHandler;
 import org.bluezoo.gonzalez.transform.runtime.SAXEventBuffer;
 import org.bluezoo.gonzalez.transform.runtime.TemplateMatcher;
@@ -49,11 +49,9 @@ import org.bluezoo.gonzalez.transform.xpath.type.XPathBoolean;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathDateTime;
 import org.bluezoo.gonzalez.transform.xpath.type.NativeFunctionItem;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathFunctionItem;
-import org.bluezoo.gonzalez.transform.xpath.type.XPathMap;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathNodeSet;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathNumber;
-import org.bluezoo.gonzalez.transform.xpath.type.XPathQName;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathResultTreeFragment;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathSequence;
 import org.bluezoo.gonzalez.transform.xpath.type.XPathString;
@@ -71,9 +69,6 @@ import org.xml.sax.SAXException;
  */
 final class UserFunctionInvoker {
 
-    // Key: function key + stringified arguments, Value: cached result
-    static final Map<String, XPathValue> functionCache = new ConcurrentHashMap<String, XPathValue>();
-
     private UserFunctionInvoker() {
     }
 
@@ -89,12 +84,16 @@ final class UserFunctionInvoker {
     static XPathValue invoke(UserFunction function, List<XPathValue> args,
             TransformContext context) throws XPathException {
         // Check for cached result if caching is enabled
-        String cacheKey = null;
-        if (function.isCached()) {
-            cacheKey = buildCacheKey(function, args);
-            XPathValue cached = functionCache.get(cacheKey);
-            if (cached != null) {
-                return cached;
+        FunctionResultCache cache = null;
+        FunctionResultCache.Key cacheKey = null;
+        if (function.isCached() && context instanceof BasicTransformContext) {
+            cache = ((BasicTransformContext) context).getFunctionResultCache();
+            if (cache != null) {
+                cacheKey = FunctionResultCache.key(function, args);
+                XPathValue cached = cache.get(cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
             }
         }
 
@@ -194,6 +193,7 @@ final class UserFunctionInvoker {
                 SAXEventBuffer resultBuffer = new SAXEventBuffer();
                 BufferOutputHandler output = new BufferOutputHandler(resultBuffer);
                 function.getBody().execute(funcContext, output);
+                GroundedBuffering.recordTree(funcContext, resultBuffer);
                 result = new XPathResultTreeFragment(resultBuffer);
 
                 // TODO: For RTF results with declared types, validate if possible
@@ -204,7 +204,7 @@ final class UserFunctionInvoker {
 
             // Cache the result if caching is enabled
             if (cacheKey != null) {
-                functionCache.put(cacheKey, result);
+                cache.put(cacheKey, result);
             }
 
             return result;
@@ -269,48 +269,6 @@ final class UserFunctionInvoker {
         throw new XPathException(callerName + ": argument is not a function item");
     }
 
-    /**
-     * Builds a cache key for a function call (for memoized functions).
-     *
-     * @param function the function being called
-     * @param args the function arguments
-     * @return a cache key string
-     */
-    static String buildCacheKey(UserFunction function, List<XPathValue> args) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(function.getKey());
-        for (XPathValue arg : args) {
-            sb.append("|");
-            if (arg == null) {
-                sb.append("null");
-            } else if (arg instanceof XPathQName) {
-                XPathQName qn = (XPathQName) arg;
-                sb.append("Q{");
-                String ns = qn.getNamespaceURI();
-                if (ns != null) {
-                    sb.append(ns);
-                }
-                sb.append("}");
-                sb.append(qn.getLocalName());
-            } else if (arg instanceof XPathNode) {
-                sb.append("node@");
-                sb.append(System.identityHashCode(arg));
-            } else if (arg instanceof XPathNodeSet) {
-                sb.append("ns@");
-                sb.append(System.identityHashCode(arg));
-            } else if (arg instanceof XPathMap) {
-                sb.append("map@");
-                sb.append(System.identityHashCode(arg));
-            } else if (arg instanceof InlineFunctionItem || arg instanceof PartialFunctionItem) {
-                sb.append("fn@");
-                sb.append(System.identityHashCode(arg));
-            } else {
-                sb.append(arg.asString());
-            }
-        }
-        return sb.toString();
-    }
-
     /**
      * Coerces an xs:untypedAtomic value to the target type declared by a function parameter.
      * Per XPath 2.0+, untypedAtomic values are automatically cast to the expected type.
@@ -41,6 +41,8 @@ import org.bluezoo.gonzalez.transform.xpath.expr.XPathException;
  */
 public abstract class NativeFunctionItem implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     private final String name;
     private final int arity;
 
@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.xpath.type;
 
+import java.io.Serializable;
 import java.util.Iterator;
 
 import org.bluezoo.gonzalez.QName;
@@ -49,7 +50,9 @@ import org.bluezoo.gonzalez.transform.runtime.OutputHandlerUtils;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public class SequenceType {
+public class SequenceType implements Serializable {
+
+    private static final long serialVersionUID = 1L;
     
     /** XSD namespace URI for built-in types */
     public static final String XS_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
@@ -36,6 +36,8 @@ import org.bluezoo.gonzalez.transform.runtime.OutputHandlerUtils;
  */
 public final class XPathAnyURI implements XPathValue, Comparable<XPathAnyURI> {
 
+    private static final long serialVersionUID = 1L;
+
     /** Empty URI value. */
     public static final XPathAnyURI EMPTY = new XPathAnyURI("");
 
@@ -39,6 +39,8 @@ import java.util.List;
  */
 public final class XPathArray implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     /** An empty array. */
     public static final XPathArray EMPTY = new XPathArray(new ArrayList<XPathValue>());
 
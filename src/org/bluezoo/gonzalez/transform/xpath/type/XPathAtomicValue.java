@@ -41,6 +41,8 @@ package org.bluezoo.gonzalez.transform.xpath.type;
  */
 public final class XPathAtomicValue implements XPathValue, Comparable<XPathAtomicValue> {
 
+    private static final long serialVersionUID = 1L;
+
     /** Empty atomic value. */
     public static final XPathAtomicValue EMPTY = new XPathAtomicValue("");
 
@@ -34,6 +34,8 @@ import java.util.Arrays;
  */
 public final class XPathBinaryValue implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     /** Whether this is base64Binary (true) or hexBinary (false). */
     private final boolean isBase64;
 
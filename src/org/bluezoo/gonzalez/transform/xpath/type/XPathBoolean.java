@@ -31,6 +31,8 @@ package org.bluezoo.gonzalez.transform.xpath.type;
  */
 public final class XPathBoolean implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     /** The true singleton. */
     public static final XPathBoolean TRUE = new XPathBoolean(true);
 
@@ -50,6 +50,8 @@ import java.util.regex.Pattern;
  */
 public final class XPathDateTime implements XPathValue, Comparable<XPathDateTime> {
 
+    private static final long serialVersionUID = 1L;
+
     /** The type of date/time value. */
     public enum DateTimeType {
         DATE_TIME,
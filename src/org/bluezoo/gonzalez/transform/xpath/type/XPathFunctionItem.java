@@ -41,6 +41,8 @@ import java.util.List;
  */
 public final class XPathFunctionItem implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     private final String name;
     private final String namespaceURI;
     private final int arity;
@@ -41,6 +41,8 @@ import java.util.Map;
  */
 public final class XPathMap implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     /** An empty map. */
     public static final XPathMap EMPTY = new XPathMap(new LinkedHashMap<String, XPathValue>());
 
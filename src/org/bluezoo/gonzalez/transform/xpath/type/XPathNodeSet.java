@@ -42,6 +42,8 @@ import java.util.Set;
  */
 public final class XPathNodeSet implements XPathValue, Iterable<XPathNode> {
 
+    private static final long serialVersionUID = 1L;
+
     /** Empty node-set singleton. */
     public static final XPathNodeSet EMPTY = new XPathNodeSet(Collections.emptyList());
 
@@ -40,6 +40,8 @@ import java.math.BigInteger;
  */
 public final class XPathNumber implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     /** Zero singleton. */
     public static final XPathNumber ZERO = new XPathNumber(0.0);
 
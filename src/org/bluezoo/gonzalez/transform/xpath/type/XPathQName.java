@@ -35,6 +35,8 @@ package org.bluezoo.gonzalez.transform.xpath.type;
  */
 public final class XPathQName implements XPathValue, Comparable<XPathQName> {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Callback interface for resolving namespace prefixes to URIs.
      */
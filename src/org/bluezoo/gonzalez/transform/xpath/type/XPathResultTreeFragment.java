@@ -52,6 +52,8 @@ import java.util.Set;
  */
 public final class XPathResultTreeFragment implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     private final SAXEventBuffer buffer;
     private final String baseUri;
 
@@ -47,6 +47,8 @@ import java.util.List;
  */
 public final class XPathSequence implements XPathValue, Iterable<XPathValue> {
 
+    private static final long serialVersionUID = 1L;
+
     /** Empty sequence singleton. */
     public static final XPathSequence EMPTY = new XPathSequence(Collections.emptyList());
 
@@ -31,6 +31,8 @@ package org.bluezoo.gonzalez.transform.xpath.type;
  */
 public class XPathString implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     /** Empty string singleton. */
     public static final XPathString EMPTY = new XPathString("");
 
@@ -40,6 +40,8 @@ package org.bluezoo.gonzalez.transform.xpath.type;
  */
 public class XPathTypedAtomic implements XPathValue {
 
+    private static final long serialVersionUID = 1L;
+
     /** XSD namespace URI */
     public static final String XS_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
 
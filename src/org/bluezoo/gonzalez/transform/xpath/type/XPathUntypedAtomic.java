@@ -33,6 +33,8 @@ package org.bluezoo.gonzalez.transform.xpath.type;
  */
 public final class XPathUntypedAtomic extends XPathString {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates a new xs:untypedAtomic value.
      *
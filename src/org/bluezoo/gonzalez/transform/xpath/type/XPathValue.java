@@ -21,6 +21,7 @@
 
 package org.bluezoo.gonzalez.transform.xpath.type;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.Iterator;
 
@@ -46,7 +47,7 @@ import java.util.Iterator;
  *
  * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
  */
-public interface XPathValue {
+public interface XPathValue extends Serializable {
 
     /**
      * Enumeration of XPath value types.
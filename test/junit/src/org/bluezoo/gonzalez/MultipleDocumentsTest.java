@@ -0,0 +1,218 @@
+/*
+ * MultipleDocumentsTest.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@code multiple-documents} feature: several documents read
+ * from one input.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public class MultipleDocumentsTest {
+
+    private static final String FEATURE = "http://www.nongnu.org/gonzalez/features/multiple-documents";
+    private static final String LISTENER = "http://www.nongnu.org/gonzalez/properties/document-listener";
+
+    @Test
+    public void testConcatenatedDocuments() throws Exception {
+        List<String> events = parse("<a x='1'>one</a><b/><p:c xmlns:p='urn:p'/>");
+        assertEquals(Arrays.asList(
+                "startDocument", "start a x=1", "text one", "end a", "endDocument", "ended 0",
+                "startDocument", "start b", "end b", "endDocument", "ended 1",
+                "startDocument", "start {urn:p}c", "end p:c", "endDocument", "ended 2"), events);
+    }
+
+    @Test
+    public void testSeparators() throws Exception {
+        List<String> events = parse("<a/>\n\u0000<b/>\u0000\u0000 <c/>\n");
+        assertEquals(Arrays.asList(
+                "startDocument", "start a", "end a", "endDocument", "ended 0",
+                "startDocument", "start b", "end b", "endDocument", "ended 1",
+                "startDocument", "start c", "end c", "endDocument", "ended 2"), events);
+    }
+
+    @Test
+    public void testXmlDeclarations() throws Exception {
+        List<String> events = parse("<?xml version='1.0' encoding='UTF-8'?><a/>\n"
+                + "<?xml version='1.0'?>\n<!-- second --><?pi data?><b/>");
+        assertEquals(Arrays.asList(
+                "startDocument", "start a", "end a", "endDocument", "ended 0",
+                "startDocument", "pi pi data", "start b", "end b", "endDocument", "ended 1"), events);
+    }
+
+    @Test
+    public void testChunkedInput() throws Exception {
+        String doc = "<?xml version='1.0'?><a>\u00e9t\u00e9</a>\u0000<?xml version='1.0'?><b y='2'>x</b><c/>";
+        List<String> expected = parse(doc);
+        byte[] bytes = doc.getBytes(StandardCharsets.UTF_8);
+        for (int chunk = 1; chunk < 8; chunk++) {
+            final List<String> events = new ArrayList<String>();
+            Parser parser = newParser(events);
+            ByteBuffer buf = ByteBuffer.allocate(bytes.length);
+            for (int i = 0; i < bytes.length; i += chunk) {
+                buf.put(bytes, i, Math.min(chunk, bytes.length - i));
+                buf.flip();
+                parser.receive(buf);
+                buf.compact();
+            }
+            parser.close();
+            assertEquals("chunk " + chunk, expected, events);
+        }
+    }
+
+    @Test
+    public void testErrorInLaterDocument() throws Exception {
+        List<String> events = new ArrayList<String>();
+        try {
+            parse(newParser(events), "<a/><b><c></b>");
+            fail("Expected SAXParseException");
+        } catch (SAXParseException e) {
+            // Mismatched end tag
+        }
+        assertTrue(events.contains("ended 0"));
+        assertFalse(events.contains("ended 1"));
+    }
+
+    @Test
+    public void testTruncatedLastDocument() throws Exception {
+        try {
+            parse("<a/><b>");
+            fail("Expected SAXParseException");
+        } catch (SAXParseException e) {
+            // Unclosed element
+        }
+    }
+
+    @Test
+    public void testSingleDocumentRejectsSecondRoot() throws Exception {
+        Parser parser = new Parser();
+        parser.setContentHandler(new DefaultHandler());
+        try {
+            parser.parse(source("<a/><b/>"));
+            fail("Expected SAXParseException");
+        } catch (SAXParseException e) {
+            // Only one root element allowed
+        }
+    }
+
+    @Test
+    public void testReusedParser() throws Exception {
+        List<String> events = new ArrayList<String>();
+        Parser parser = newParser(events);
+        parse(parser, "<a/><b/>");
+        parser.reset();
+        events.clear();
+        parse(parser, "<c/><d/>");
+        assertEquals(Arrays.asList(
+                "startDocument", "start c", "end c", "endDocument", "ended 0",
+                "startDocument", "start d", "end d", "endDocument", "ended 1"), events);
+        parser.resetConfiguration();
+        assertFalse(parser.getFeature(FEATURE));
+    }
+
+    private static List<String> parse(String doc) throws Exception {
+        List<String> events = new ArrayList<String>();
+        parse(newParser(events), doc);
+        return events;
+    }
+
+    private static void parse(Parser parser, String doc) throws Exception {
+        parser.parse(source(doc));
+    }
+
+    private static Parser newParser(final List<String> events) throws SAXException {
+        Parser parser = new Parser();
+        parser.setFeature(FEATURE, true);
+        parser.setProperty(LISTENER, new DocumentListener() {
+            @Override
+            public void documentEnded(int index) {
+                events.add("ended " + index);
+            }
+        });
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startDocument() {
+                events.add("startDocument");
+            }
+
+            @Override
+            public void endDocument() {
+                events.add("endDocument");
+            }
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                StringBuilder buf = new StringBuilder("start ");
+                buf.append(uri.isEmpty() ? qName : "{" + uri + "}" + localName);
+                for (int i = 0; i < atts.getLength(); i++) {
+                    buf.append(' ').append(atts.getQName(i)).append('=').append(atts.getValue(i));
+                }
+                events.add(buf.toString());
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                events.add("end " + qName);
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                int last = events.size() - 1;
+                if (events.get(last).startsWith("text ")) {
+                    events.set(last, events.get(last) + new String(ch, start, length));
+                } else {
+                    events.add("text " + new String(ch, start, length));
+                }
+            }
+
+            @Override
+            public void processingInstruction(String target, String data) {
+                events.add("pi " + target + " " + data);
+            }
+        });
+        return parser;
+    }
+
+    private static InputSource source(String doc) {
+        return new InputSource(new ByteArrayInputStream(doc.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * NameDictionaryTest.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link NameDictionary}: seeding, and the names parsers sharing a
+ * dictionary report.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public class NameDictionaryTest {
+
+    private static final String DOC = "<order id='1'><item sku='a'/><item sku='b'/></order>";
+
+    @Test
+    public void testParsersShareDictionaryNames() throws Exception {
+        NameDictionary dictionary = new NameDictionary(Arrays.asList("order", "item", "id", "sku"));
+        List<String> first = parse(newParser(dictionary), DOC);
+        List<String> second = parse(newParser(dictionary), DOC);
+        assertEquals(Arrays.asList("order", "id", "item", "sku", "item", "sku"), first);
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(dictionary.get(first.get(i)), first.get(i));
+            assertSame(first.get(i), second.get(i));
+        }
+    }
+
+    @Test
+    public void testNamesOutsideDictionaryAreNotShared() throws Exception {
+        NameDictionary dictionary = new NameDictionary(Arrays.asList("order"));
+        List<String> first = parse(newParser(dictionary), DOC);
+        List<String> second = parse(newParser(dictionary), DOC);
+        assertSame(first.get(0), second.get(0));
+        assertNotSame(first.get(2), second.get(2));
+        assertSame(first.get(2), first.get(4));
+    }
+
+    @Test
+    public void testReusedParserKeepsNames() throws Exception {
+        Parser parser = new Parser();
+        List<String> first = parse(parser, DOC);
+        parser.reset();
+        List<String> second = parse(parser, DOC);
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+    }
+
+    @Test
+    public void testSeedFromDtd() throws Exception {
+        NameDictionary dictionary = new NameDictionary();
+        Parser parser = new Parser();
+        parser.setProperty("http://xml.org/sax/properties/declaration-handler", dictionary);
+        parse(parser, "<!DOCTYPE order [<!ELEMENT order (item*)><!ATTLIST item sku CDATA #IMPLIED>]><order/>");
+        assertTrue(dictionary.contains("order"));
+        assertTrue(dictionary.contains("item"));
+        assertTrue(dictionary.contains("sku"));
+        assertEquals(3, dictionary.size());
+    }
+
+    @Test
+    public void testAddKeepsFirstInstance() {
+        String item = new String("item");
+        NameDictionary dictionary = new NameDictionary();
+        dictionary.add(item);
+        dictionary.add(new String("item"));
+        dictionary.add("");
+        dictionary.add(null);
+        assertSame(item, dictionary.get("item"));
+        assertNull(dictionary.get("order"));
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    public void testPropertyRoundTrip() throws Exception {
+        NameDictionary dictionary = new NameDictionary();
+        Parser parser = new Parser();
+        assertNull(parser.getProperty("http://www.nongnu.org/gonzalez/properties/name-dictionary"));
+        parser.setProperty("http://www.nongnu.org/gonzalez/properties/name-dictionary", dictionary);
+        assertSame(dictionary, parser.getProperty("http://www.nongnu.org/gonzalez/properties/name-dictionary"));
+    }
+
+    private static Parser newParser(NameDictionary dictionary) throws Exception {
+        Parser parser = new Parser();
+        parser.setProperty("http://www.nongnu.org/gonzalez/properties/name-dictionary", dictionary);
+        return parser;
+    }
+
+    private static List<String> parse(Parser parser, String doc) throws Exception {
+        final List<String> names = new ArrayList<String>();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                names.add(qName);
+                for (int i = 0; i < atts.getLength(); i++) {
+                    names.add(atts.getQName(i));
+                }
+            }
+        });
+        parser.parse(new InputSource(new ByteArrayInputStream(doc.getBytes(StandardCharsets.UTF_8))));
+        return names;
+    }
+
+}
@@ -19,6 +19,7 @@
 package org.bluezoo.gonzalez;
 
 import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -114,15 +115,57 @@ public class PackedNameTest {
     }
 
     @Test
-    public void testProbeOverflowDoesNotCrash() {
-        // Force many distinct names into a small pool to exercise the
-        // MAX_PROBES exhaustion fallback (create-without-caching) path.
+    public void testGrowthKeepsEveryNameCanonical() {
+        // Far more names than the initial capacity: the table must grow
+        // rather than drop names, so every one stays canonical.
         PackedName pool = new PackedName(1);
-        for (int i = 0; i < 2000; i++) {
+        String[] first = new String[2000];
+        for (int i = 0; i < first.length; i++) {
             String name = "n" + i;
-            String result = intern(pool, name);
-            assertEquals(name, result);
+            first[i] = intern(pool, name);
+            assertEquals(name, first[i]);
         }
+        for (int i = 0; i < first.length; i++) {
+            assertSame(first[i], intern(pool, "n" + i));
+        }
+        assertEquals(2000, pool.size());
+    }
+
+    @Test
+    public void testCollidingNamesStayCanonical() {
+        // Long names sharing their first 12 characters and length, with
+        // remainders chosen to hash alike ("Aa" and "BB" have the same
+        // rolling hash) - they all share one probe sequence, which overflows
+        // without the table being full enough to grow.
+        PackedName pool = new PackedName();
+        String[] suffixes = {"AaAaAa", "AaAaBB", "AaBBAa", "AaBBBB", "BBAaAa", "BBAaBB", "BBBBAa"};
+        String[] first = new String[suffixes.length];
+        for (int i = 0; i < suffixes.length; i++) {
+            first[i] = intern(pool, "colliding-nm" + suffixes[i]);
+        }
+        for (int i = 0; i < suffixes.length; i++) {
+            assertEquals("colliding-nm" + suffixes[i], first[i]);
+            assertSame(first[i], intern(pool, "colliding-nm" + suffixes[i]));
+        }
+        // Growing the table must not lose the spilled names either.
+        for (int i = 0; i < 1000; i++) {
+            intern(pool, "g" + i);
+        }
+        for (int i = 0; i < suffixes.length; i++) {
+            assertSame(first[i], intern(pool, "colliding-nm" + suffixes[i]));
+        }
+    }
+
+    @Test
+    public void testDictionaryFallback() {
+        String book = new String("book");
+        NameDictionary dictionary = new NameDictionary(Arrays.asList(book, "title"));
+        PackedName pool = new PackedName(dictionary);
+        assertSame(book, intern(pool, "book"));
+        assertSame(book, intern(pool, "book"));
+        assertSame(dictionary.get("title"), intern(pool, "title"));
+        assertEquals("author", intern(pool, "author"));
+        assertEquals(null, dictionary.get("author"));
     }
 
     @Test
@@ -143,18 +186,13 @@ public class PackedNameTest {
             if (previouslySeen == null) {
                 expected.put(name, first);
             } else {
-                // Same content interned earlier - unless probe overflow
-                // occurred (name went uncached), this must be the same
-                // reference. Compare by content either way as the primary
-                // correctness check.
-                assertEquals(name, first);
+                assertSame(previouslySeen, first);
             }
         }
         // Re-intern everything once more; every name must still round-trip
-        // to equal content (reference identity only guaranteed if it was
-        // never bumped by probe overflow, so only content is asserted here).
-        for (String name : expected.keySet()) {
-            assertEquals(name, intern(pool, name));
+        // to the same reference.
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), intern(pool, entry.getKey()));
         }
     }
 
@@ -56,6 +56,21 @@ public class ParserEncodingTest {
         }
     }
 
+    /** Feeds bytes {@code chunk} at a time through a compacting buffer,
+     *  per the receive() buffer contract. */
+    private static void receiveInChunks(Parser parser, byte[] bytes, int chunk) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            int n = Math.min(chunk, bytes.length - offset);
+            buffer.put(bytes, offset, n);
+            offset += n;
+            buffer.flip();
+            parser.receive(buffer);
+            buffer.compact();
+        }
+    }
+
     private String parseAndCollectText(byte[] bytes) throws Exception {
         Parser parser = new Parser();
         TextCollector handler = new TextCollector();
@@ -137,6 +152,49 @@ public class ParserEncodingTest {
         }
     }
 
+    @Test(timeout = 5000)
+    public void testMalformedSequenceReportsByteOffset() throws Exception {
+        // Offset counts from the start of the entity, across receive() calls
+        byte[] prefix = "<?xml version=\"1.0\"?><doc>caf\u00e9 ".getBytes("UTF-8");
+        byte[] malformed = new byte[prefix.length + 8];
+        System.arraycopy(prefix, 0, malformed, 0, prefix.length);
+        malformed[prefix.length] = (byte) 0xFF;
+        System.arraycopy("</doc>".getBytes("UTF-8"), 0, malformed, prefix.length + 1, 6);
+
+        Parser parser = new Parser();
+        parser.setContentHandler(new DefaultHandler());
+        try {
+            receiveInChunks(parser, malformed, 10);
+            parser.close();
+            fail("Expected a malformed-byte-sequence error");
+        } catch (SAXParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("at byte offset " + prefix.length));
+        }
+    }
+
+    // ========== Line-ending normalization ==========
+
+    @Test
+    public void testLineEndingsNormalizedAcrossChunks() throws Exception {
+        byte[] bytes = "<?xml version=\"1.0\"?><doc>a\r\nb\rc\r\n\u00e9\r</doc>".getBytes("UTF-8");
+        for (int chunk = 1; chunk < bytes.length; chunk++) {
+            Parser parser = new Parser();
+            TextCollector handler = new TextCollector();
+            parser.setContentHandler(handler);
+            receiveInChunks(parser, bytes, chunk);
+            parser.close();
+            assertEquals("chunk size " + chunk, "a\nb\nc\n\u00e9\n", handler.text.toString());
+        }
+    }
+
+    @Test
+    public void testXml11LineEndings() throws Exception {
+        // NEL, LS and CR NEL each become a single LF in XML 1.1
+        String text = parseAndCollectText(
+                "<?xml version=\"1.1\"?><doc>a\u0085b\u2028c\r\u0085d</doc>".getBytes("UTF-8"));
+        assertEquals("a\nb\nc\nd", text);
+    }
+
     @Test(timeout = 5000)
     public void testTruncatedMultibyteSequenceAtEofViaInputSource() throws Exception {
         // Document ends mid-character: a 2-byte UTF-8 sequence's lead byte with
@@ -436,6 +436,52 @@ public class ParserEntityTest {
         }
     }
 
+    @Test
+    public void testRepeatedEntityReferences() throws Exception {
+        // Text-only and markup-bearing entities, each referenced repeatedly
+        StringBuilder xml = new StringBuilder("<!DOCTYPE root [\n"
+                + "  <!ENTITY t \"text\">\n"
+                + "  <!ENTITY m \"<b>&t;</b>\">\n"
+                + "]>\n<root>");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            xml.append("&t;[&m;]");
+            expected.append("text[text]");
+        }
+        xml.append("</root>");
+
+        ContentCapture handler = new ContentCapture();
+        parse(xml.toString(), handler);
+        assertEquals(expected.toString(), handler.getContent());
+    }
+
+    @Test
+    public void testRepeatedReferencesCountTowardsExpansionLimit() throws Exception {
+        String dtd = "<!DOCTYPE root [\n"
+                + "  <!ENTITY a \"x\">\n"
+                + "  <!ENTITY b \"&a;&a;&a;\">\n"
+                + "]>\n";
+        // 2 x (b + 3 a) = 8 expansions, in content and in attribute values
+        String[] docs = {
+            dtd + "<root>&b;&b;</root>",
+            dtd + "<root x='&b;' y='&b;'/>"
+        };
+        for (String doc : docs) {
+            Parser parser = new Parser();
+            parser.setProperty("http://www.nongnu.org/gonzalez/properties/entity-expansion-limit", 8);
+            parser.parse(new InputSource(new ByteArrayInputStream(doc.getBytes("UTF-8"))));
+
+            parser = new Parser();
+            parser.setProperty("http://www.nongnu.org/gonzalez/properties/entity-expansion-limit", 7);
+            try {
+                parser.parse(new InputSource(new ByteArrayInputStream(doc.getBytes("UTF-8"))));
+                fail("Expected expansion limit to be exceeded: " + doc);
+            } catch (SAXParseException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("expansion limit"));
+            }
+        }
+    }
+
     // ========== Helper classes ==========
 
     /**
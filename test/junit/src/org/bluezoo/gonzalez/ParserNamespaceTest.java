@@ -376,6 +376,72 @@ public class ParserNamespaceTest {
         assertFalse(prefixes.contains("c"));
     }
 
+    @Test
+    public void testCurrentScopeDeclarationsInOrder() throws Exception {
+        NamespaceScopeTracker tracker = new NamespaceScopeTracker();
+
+        tracker.pushContext();
+        tracker.declarePrefix("z", "http://example.com/z");
+        tracker.declarePrefix("a", "http://example.com/a");
+        tracker.declarePrefix("", "http://example.com/default");
+        assertFalse(tracker.declarePrefix("a", "http://example.com/a"));
+        assertTrue(tracker.declarePrefix("a", "http://example.com/a2"));
+
+        assertEquals(3, tracker.getCurrentScopeDeclarationCount());
+        assertEquals("z", tracker.getCurrentScopeDeclarationPrefix(0));
+        assertEquals("a", tracker.getCurrentScopeDeclarationPrefix(1));
+        assertEquals("http://example.com/a2", tracker.getCurrentScopeDeclarationURI(1));
+        assertEquals("", tracker.getCurrentScopeDeclarationPrefix(2));
+
+        tracker.pushContext();
+        assertEquals(0, tracker.getCurrentScopeDeclarationCount());
+        assertFalse(tracker.getCurrentScopeDeclarations().hasNext());
+        tracker.popContext();
+        assertEquals(3, tracker.getCurrentScopeDeclarationCount());
+    }
+
+    @Test
+    public void testProcessNameFollowsScopeChanges() throws Exception {
+        NamespaceScopeTracker tracker = new NamespaceScopeTracker();
+        QNamePool pool = new QNamePool();
+        String name = "p:x";
+
+        tracker.pushContext();
+        tracker.declarePrefix("p", "http://example.com/outer");
+        assertEquals("http://example.com/outer", tracker.processName(name, false, pool).getURI());
+
+        // Same String again: resolved from the cache
+        assertEquals("http://example.com/outer", tracker.processName(name, true, pool).getURI());
+
+        tracker.pushContext();
+        assertEquals("http://example.com/outer", tracker.processName(name, false, pool).getURI());
+        tracker.declarePrefix("p", "http://example.com/inner");
+        assertEquals("http://example.com/inner", tracker.processName(name, false, pool).getURI());
+
+        tracker.popContext();
+        assertEquals("http://example.com/outer", tracker.processName(name, false, pool).getURI());
+
+        tracker.popContext();
+        try {
+            tracker.processName(name, false, pool);
+            fail("Expected NamespaceException for unbound prefix");
+        } catch (NamespaceException e) {
+            assertTrue(e.getMessage().contains("Unbound namespace prefix: p"));
+        }
+    }
+
+    @Test
+    public void testUnprefixedNamesElementVersusAttribute() throws Exception {
+        NamespaceScopeTracker tracker = new NamespaceScopeTracker();
+        QNamePool pool = new QNamePool();
+
+        tracker.pushContext();
+        tracker.declarePrefix("", "http://example.com/default");
+        assertEquals("http://example.com/default", tracker.processName("a", false, pool).getURI());
+        assertEquals("", tracker.processName("a", true, pool).getURI());
+        assertEquals("http://example.com/default", tracker.processName("a", false, pool).getURI());
+    }
+
     /**
      * Recording ContentHandler that captures startPrefixMapping, endPrefixMapping,
      * startElement, and endElement events.
@@ -0,0 +1,230 @@
+/*
+ * ParserPoolTest.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link ParserPool}, and the reuse of a reset {@link Parser} it
+ * relies on.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public class ParserPoolTest {
+
+    private static final String DOC = "<p:a xmlns:p='urn:p' x='1'><b>text</b><p:c y='2'/></p:a>";
+
+    @Test
+    public void testReleasedParserIsReused() throws Exception {
+        ParserPool pool = new ParserPool();
+        Parser first = pool.acquire();
+        assertEquals(1, pool.getActiveCount());
+        pool.release(first);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+        assertSame(first, pool.acquire());
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    @Test
+    public void testMaxIdle() throws Exception {
+        ParserPool pool = new ParserPool(1, null);
+        Parser a = pool.acquire();
+        Parser b = pool.acquire();
+        assertNotSame(a, b);
+        pool.release(a);
+        pool.release(b);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(2, pool.getCreatedCount());
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testReleaseRestoresConfiguration() throws Exception {
+        ParserPool pool = new ParserPool(1, new ParserPool.Configurer() {
+            @Override
+            public void configure(Parser parser) throws SAXException {
+                parser.setFeature("http://xml.org/sax/features/namespaces", false);
+            }
+        });
+        Parser parser = pool.acquire();
+        assertFalse(parser.getFeature("http://xml.org/sax/features/namespaces"));
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setFeature("http://xml.org/sax/features/namespaces", true);
+        parser.setContentHandler(new DefaultHandler());
+        pool.release(parser);
+
+        parser = pool.acquire();
+        assertFalse(parser.getFeature("http://xml.org/sax/features/namespaces"));
+        assertFalse(parser.getFeature("http://xml.org/sax/features/validation"));
+        assertNull(parser.getContentHandler());
+    }
+
+    @Test
+    public void testReusedParserReportsSameEvents() throws Exception {
+        ParserPool pool = new ParserPool(1, null);
+        List<String> first = parse(pool, DOC);
+        List<String> second = parse(pool, DOC);
+        assertEquals(first, second);
+        assertEquals(1, pool.getCreatedCount());
+        assertTrue(first.contains("start {urn:p}c y=2"));
+    }
+
+    @Test
+    public void testReuseAfterError() throws Exception {
+        ParserPool pool = new ParserPool(1, null);
+        List<String> expected = parse(pool, DOC);
+        try {
+            parse(pool, "<p:a xmlns:p='urn:p'><b><c x='1'>");
+            fail("Expected SAXParseException");
+        } catch (SAXParseException e) {
+            // Unclosed elements
+        }
+        assertEquals(expected, parse(pool, DOC));
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    public void testReuseAcrossNamespaceSetting() throws Exception {
+        Parser parser = new Parser();
+        final List<String> names = new ArrayList<String>();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                names.add(uri + "|" + localName);
+            }
+        });
+        parser.parse(source(DOC));
+        parser.reset();
+        parser.setFeature("http://xml.org/sax/features/namespaces", false);
+        parser.parse(source(DOC));
+        assertEquals("urn:p|a", names.get(0));
+        assertEquals("|p:a", names.get(3));
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        ParserPool pool = new ParserPool();
+        pool.setLeakDetection(true);
+        pool.release(pool.acquire());
+        pool.acquire();
+        for (int i = 0; i < 50 && pool.getLeakCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, pool.getLeakCount());
+        assertEquals(1, pool.getLeaks().size());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        final ParserPool pool = new ParserPool(2, null);
+        final List<String> expected = parse(pool, DOC);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            assertEquals(expected, parse(pool, DOC));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(0, pool.getActiveCount());
+        assertTrue(pool.getCreatedCount() <= threads.length + 1);
+    }
+
+    private static List<String> parse(ParserPool pool, String doc) throws Exception {
+        final List<String> events = new ArrayList<String>();
+        Parser parser = pool.acquire();
+        try {
+            parser.setContentHandler(new DefaultHandler() {
+                @Override
+                public void startPrefixMapping(String prefix, String uri) {
+                    events.add("prefix " + prefix + "=" + uri);
+                }
+
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes atts) {
+                    StringBuilder buf = new StringBuilder("start {" + uri + "}" + localName);
+                    for (int i = 0; i < atts.getLength(); i++) {
+                        buf.append(' ').append(atts.getQName(i)).append('=').append(atts.getValue(i));
+                    }
+                    events.add(buf.toString());
+                }
+
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    events.add("text " + new String(ch, start, length));
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) {
+                    events.add("end " + qName);
+                }
+            });
+            parser.parse(source(doc));
+        } finally {
+            pool.release(parser);
+        }
+        return events;
+    }
+
+    private static InputSource source(String doc) {
+        return new InputSource(new ByteArrayInputStream(doc.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
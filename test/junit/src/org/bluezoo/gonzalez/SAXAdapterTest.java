@@ -329,4 +329,45 @@ public class SAXAdapterTest {
         }
     }
 
+    @Test
+    public void testAttributeValuesWithoutStrings() throws Exception {
+        SAXAdapter adapter = new SAXAdapter(false);
+        final StringBuilder seen = new StringBuilder();
+        adapter.setContentHandler(new org.xml.sax.helpers.DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName,
+                    org.xml.sax.Attributes atts) {
+                AttributeValues values = (AttributeValues) atts;
+                char[] buf = new char[values.getValueLength(1) + 2];
+                assertEquals(values.getValueLength(1), values.getValue(1, buf, 2));
+                CharSequence first = values.getValueCharacters(0);
+                seen.append(first).append('|').append(first.charAt(1));
+                seen.append('|').append(new String(buf, 2, buf.length - 2).length());
+                seen.append('|').append(atts.getValue(0) == atts.getValue("a"));
+                assertEquals(-1, values.getValueLength(2));
+                assertEquals(null, values.getValueCharacters(-1));
+                seen.append(';');
+            }
+        });
+        // The second value outgrows the initial arena, in three chunks.
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            big.append((char) ('a' + i % 26));
+        }
+        char[] bigChars = big.toString().toCharArray();
+        adapter.startDocument();
+        for (int e = 0; e < 2; e++) {
+            adapter.startElement("root");
+            attr(adapter, "a", "xy" + e);
+            adapter.startAttribute("b", "CDATA");
+            adapter.attributeValueContent(CharBuffer.wrap(bigChars, 0, 300), false);
+            adapter.attributeValueContent(CharBuffer.wrap(bigChars, 300, 400), false);
+            adapter.attributeValueContent(CharBuffer.wrap(bigChars, 700, 300), true);
+            adapter.endAttributes();
+            adapter.endElement();
+        }
+        adapter.endDocument();
+        assertEquals("xy0|y|1000|true;xy1|y|1000|true;", seen.toString());
+    }
+
 }
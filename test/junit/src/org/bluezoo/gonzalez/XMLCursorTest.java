@@ -0,0 +1,272 @@
+/*
+ * XMLCursorTest.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.SAXParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link XMLCursor}.
+ *
+ * @author <a href='mailto:dog@gnu.org'>Chris Burdess</a>
+ */
+public class XMLCursorTest {
+
+    private static final String DOC = "<?xml version='1.0'?>\n"
+            + "<!DOCTYPE r [<!ENTITY e 'x<i>y</i>'><!-- dtd --><?dtd pi?>]>\n"
+            + "<!-- top --><r xmlns='urn:r' xmlns:p='urn:p' p:a='1' b='&lt;2&gt;'>"
+            + "text &amp; more<![CDATA[<cdata>]]><p:c/>&e;<?pi data?></r>";
+
+    private static final List<String> EXPECTED = Arrays.asList(
+            "startDocument",
+            "comment  top ",
+            "start {urn:r}r ns[=urn:r p=urn:p] {urn:p}a=1 b=<2>",
+            "chars text & more",
+            "cdata <cdata>",
+            "start {urn:p}c",
+            "end p:c",
+            "chars x",
+            "start {urn:r}i",
+            "chars y",
+            "end i",
+            "pi pi data",
+            "end r",
+            "endDocument");
+
+    @Test
+    public void testEvents() throws Exception {
+        assertEquals(EXPECTED, events(new XMLCursor(stream(DOC))));
+    }
+
+    @Test
+    public void testSmallReads() throws Exception {
+        for (int size = 1; size < 12; size++) {
+            XMLCursor cursor = new XMLCursor(new Parser(), new ChunkedChannel(DOC, size));
+            assertEquals("read size " + size, EXPECTED, events(cursor));
+        }
+    }
+
+    @Test
+    public void testLongText() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("text ").append(i).append(i % 100 == 0 ? "&amp;" : "").append(' ');
+        }
+        String doc = "<r a='" + text + "'>" + text + "</r>";
+        String expected = text.toString().replace("&amp;", "&");
+        XMLCursor cursor = new XMLCursor(new Parser(), new ChunkedChannel(doc, 1000));
+        assertEquals(XMLCursor.START_DOCUMENT, cursor.next());
+        assertEquals(XMLCursor.START_ELEMENT, cursor.next());
+        assertEquals(expected, cursor.getAttributeValue(0));
+        assertEquals(XMLCursor.CHARACTERS, cursor.next());
+        assertEquals(expected, cursor.getText());
+        assertEquals(expected, cursor.getTextCharacters().toString());
+        assertEquals(expected.length(), cursor.getTextLength());
+        assertEquals(XMLCursor.END_ELEMENT, cursor.next());
+        assertEquals(XMLCursor.END_DOCUMENT, cursor.next());
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void testNamesAreInterned() throws Exception {
+        XMLCursor cursor = new XMLCursor(stream("<r><item/><item/></r>"));
+        List<String> names = new ArrayList<String>();
+        while (cursor.hasNext()) {
+            if (cursor.next() == XMLCursor.START_ELEMENT) {
+                names.add(cursor.getLocalName());
+            }
+        }
+        assertSame(names.get(1), names.get(2));
+    }
+
+    @Test
+    public void testAttributeLookup() throws Exception {
+        XMLCursor cursor = new XMLCursor(stream("<r xmlns:p='urn:p' p:a='1' a='2'/>"));
+        cursor.next();
+        cursor.next();
+        assertEquals(2, cursor.getAttributeCount());
+        assertEquals("1", cursor.getAttributeValue("urn:p", "a"));
+        assertEquals("2", cursor.getAttributeValue("", "a"));
+        assertEquals("1", cursor.getAttributeValue(null, "p:a"));
+        assertNull(cursor.getAttributeValue("urn:q", "a"));
+        assertEquals("1", cursor.getAttributeValueCharacters(0).toString());
+        assertEquals(1, cursor.getNamespaceCount());
+        assertEquals("p", cursor.getNamespacePrefix(0));
+        assertEquals("urn:p", cursor.getNamespaceURI(0));
+        assertEquals(XMLCursor.END_ELEMENT, cursor.next());
+        assertEquals("r", cursor.getName());
+    }
+
+    @Test
+    public void testNamespacesOff() throws Exception {
+        Parser parser = new Parser();
+        parser.setFeature("http://xml.org/sax/features/namespaces", false);
+        XMLCursor cursor = new XMLCursor(parser, new ChunkedChannel("<p:r xmlns:p='urn:p'/>", 64));
+        assertEquals(Arrays.asList("startDocument", "start p:r xmlns:p=urn:p", "end p:r", "endDocument"),
+                events(cursor));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        XMLCursor cursor = new XMLCursor(stream("<r><a></b></r>"));
+        assertEquals(XMLCursor.START_DOCUMENT, cursor.next());
+        assertEquals(XMLCursor.START_ELEMENT, cursor.next());
+        assertEquals(XMLCursor.START_ELEMENT, cursor.next());
+        try {
+            cursor.next();
+            fail("Expected SAXParseException");
+        } catch (SAXParseException e) {
+            // Mismatched end tag
+        }
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        XMLCursor cursor = new XMLCursor(stream("<r><a>"));
+        try {
+            while (cursor.hasNext()) {
+                cursor.next();
+            }
+            fail("Expected SAXParseException");
+        } catch (SAXParseException e) {
+            // Unclosed elements
+        }
+    }
+
+    @Test
+    public void testParserReuse() throws Exception {
+        Parser parser = new Parser();
+        XMLCursor cursor = new XMLCursor(parser, new ChunkedChannel(DOC, 64));
+        assertEquals(EXPECTED, events(cursor));
+        cursor.close();
+        cursor = new XMLCursor(parser, new ChunkedChannel(DOC, 64));
+        assertEquals(EXPECTED, events(cursor));
+    }
+
+    private static List<String> events(XMLCursor cursor) throws Exception {
+        List<String> events = new ArrayList<String>();
+        while (cursor.hasNext()) {
+            switch (cursor.next()) {
+                case XMLCursor.START_DOCUMENT:
+                    events.add("startDocument");
+                    break;
+                case XMLCursor.END_DOCUMENT:
+                    events.add("endDocument");
+                    break;
+                case XMLCursor.START_ELEMENT:
+                    StringBuilder buf = new StringBuilder("start ");
+                    buf.append(name(cursor.getNamespaceURI(), cursor.getLocalName()));
+                    if (cursor.getNamespaceCount() > 0) {
+                        buf.append(" ns[");
+                        for (int i = 0; i < cursor.getNamespaceCount(); i++) {
+                            buf.append(i > 0 ? " " : "").append(cursor.getNamespacePrefix(i))
+                                    .append('=').append(cursor.getNamespaceURI(i));
+                        }
+                        buf.append(']');
+                    }
+                    for (int i = 0; i < cursor.getAttributeCount(); i++) {
+                        buf.append(' ').append(name(cursor.getAttributeNamespace(i), cursor.getAttributeLocalName(i)))
+                                .append('=').append(cursor.getAttributeValue(i));
+                    }
+                    events.add(buf.toString());
+                    break;
+                case XMLCursor.END_ELEMENT:
+                    events.add("end " + cursor.getName());
+                    break;
+                case XMLCursor.CHARACTERS:
+                    events.add("chars " + cursor.getText());
+                    break;
+                case XMLCursor.CDATA:
+                    events.add("cdata " + cursor.getText());
+                    break;
+                case XMLCursor.COMMENT:
+                    events.add("comment " + cursor.getText());
+                    break;
+                case XMLCursor.PROCESSING_INSTRUCTION:
+                    events.add("pi " + cursor.getPITarget() + " " + cursor.getText());
+                    break;
+                default:
+                    events.add("event " + cursor.getEventType());
+            }
+        }
+        return events;
+    }
+
+    private static String name(String uri, String localName) {
+        return uri.isEmpty() ? localName : "{" + uri + "}" + localName;
+    }
+
+    private static ByteArrayInputStream stream(String doc) {
+        return new ByteArrayInputStream(doc.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns at most a given number of bytes per read. */
+    private static final class ChunkedChannel implements ReadableByteChannel {
+
+        private final ByteBuffer data;
+        private final int size;
+
+        ChunkedChannel(String doc, int size) {
+            this.data = ByteBuffer.wrap(doc.getBytes(StandardCharsets.UTF_8));
+            this.size = size;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(size, dst.remaining()), data.remaining());
+            ByteBuffer slice = data.duplicate();
+            slice.limit(slice.position() + n);
+            dst.put(slice);
+            data.position(data.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * AccumulatorValuesTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests accumulator values computed over tree documents.
+ */
+public class AccumulatorValuesTest {
+
+    private static final String SOURCE =
+        "<r><s><p>a</p><p>b</p></s><q/><s><p>c</p><t><p>d</p></t></s></r>";
+
+    @Test
+    public void recordsBeforeAndAfterValues() throws Exception {
+        Templates templates = compile(
+            "<xsl:accumulator name='p' initial-value='0'>"
+            + "<xsl:accumulator-rule match='p' select='$value + 1'/>"
+            + "</xsl:accumulator>"
+            + "<xsl:accumulator name='depth' initial-value='0'>"
+            + "<xsl:accumulator-rule match='*' select='$value + 1'/>"
+            + "<xsl:accumulator-rule match='*' phase='end' select='$value - 1'/>"
+            + "</xsl:accumulator>"
+            + "<xsl:template match='/'>"
+            + "<xsl:for-each select='//node()'>"
+            + "<xsl:value-of select=\"name(), accumulator-before('p'),"
+            + " accumulator-after('p'), accumulator-before('depth')\"/>;"
+            + "</xsl:for-each>"
+            + "</xsl:template>");
+        assertEquals("r 0 4 1;s 0 2 2;p 1 1 3; 1 1 3;p 2 2 3; 2 2 3;q 2 2 2;"
+                + "s 2 4 2;p 3 3 3; 3 3 3;t 3 4 3;p 4 4 4; 4 4 4;",
+                transform(templates, SOURCE));
+    }
+
+    @Test
+    public void computesDependentAccumulators() throws Exception {
+        Templates templates = compile(
+            "<xsl:accumulator name='p' initial-value='0'>"
+            + "<xsl:accumulator-rule match='p' select='$value + 1'/>"
+            + "</xsl:accumulator>"
+            + "<xsl:accumulator name='s' initial-value='()'>"
+            + "<xsl:accumulator-rule match='s' phase='end'"
+            + " select=\"$value, accumulator-after('p') - accumulator-before('p')\"/>"
+            + "</xsl:accumulator>"
+            + "<xsl:template match='/'>"
+            + "<xsl:value-of select=\"r/accumulator-after('s')\"/>"
+            + "</xsl:template>");
+        assertEquals("2 2", transform(templates, SOURCE));
+    }
+
+    @Test
+    public void computesTemporaryTreesSeparately() throws Exception {
+        Templates templates = compile(
+            "<xsl:accumulator name='p' initial-value='0'>"
+            + "<xsl:accumulator-rule match='p' select='$value + 1'/>"
+            + "</xsl:accumulator>"
+            + "<xsl:template match='/'>"
+            + "<xsl:variable name='tree'><x><p/><p/><p/></x></xsl:variable>"
+            + "<xsl:value-of select=\"$tree/x/p[3]/accumulator-before('p'),"
+            + " r/accumulator-after('p'), copy-of(r/s[2])/t/p/accumulator-before('p')\"/>"
+            + "</xsl:template>");
+        assertEquals("3 4 4", transform(templates, SOURCE));
+    }
+
+    private static Templates compile(String templates) throws Exception {
+        String stylesheet = "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='text'/>"
+            + "<xsl:mode use-accumulators='#all'/>"
+            + templates
+            + "</xsl:stylesheet>";
+        return new GonzalezTransformerFactory().newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static String transform(Templates templates, String source)
+            throws Exception {
+        Transformer transformer = templates.newTransformer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        source.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+}
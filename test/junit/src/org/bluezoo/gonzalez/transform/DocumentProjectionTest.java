@@ -0,0 +1,162 @@
+/*
+ * DocumentProjectionTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.bluezoo.gonzalez.Parser;
+import org.bluezoo.gonzalez.transform.runtime.DocumentProjection;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests projection of the source tree onto the parts a stylesheet reaches.
+ */
+public class DocumentProjectionTest {
+
+    private static final String SOURCE =
+        "<catalog xmlns:x='urn:x'>"
+        + "<!-- books -->"
+        + "<book id='b1' year='1999'><title>Emma</title><x:note>skip <i>me</i></x:note></book>"
+        + "<book id='b2' year='2005'><title>Ulysses</title><price>9</price></book>"
+        + "<magazine><title>Wired</title><x:issue n='3'/></magazine>"
+        + "<?pi data?>"
+        + "</catalog>";
+
+    @Test
+    public void projectsNamedPaths() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match='/'>"
+            + "<xsl:for-each select='catalog/book[@year &gt; 2000]'>"
+            + "<xsl:value-of select='@id, title' separator=':'/>"
+            + "</xsl:for-each>"
+            + "</xsl:template>");
+        assertEquals("{catalog{book{title{**}}}}",
+                String.valueOf(templates.getStylesheet().getDocumentProjection()));
+        assertEquals("b2:Ulysses", transform(templates, SOURCE));
+        assertEquals("b2:Ulysses", transformSAX(templates, SOURCE));
+    }
+
+    @Test
+    public void projectsTemplateRules() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match='catalog'>"
+            + "<xsl:apply-templates/>"
+            + "</xsl:template>"
+            + "<xsl:template match='book'>"
+            + "[<xsl:value-of select='title'/>]"
+            + "</xsl:template>"
+            + "<xsl:template match='text()'/>");
+        DocumentProjection projection = templates.getStylesheet().getDocumentProjection();
+        DocumentProjection.Node catalog = projection.getRoot().getChild("", "catalog");
+        assertEquals(DocumentProjection.ALL,
+                catalog.getChild("", "book").getChild("", "title"));
+        assertNull(catalog.getChild("", "book").getChild("urn:x", "note"));
+        assertEquals("[Emma][Ulysses]", transform(templates, SOURCE));
+        assertEquals("[Emma][Ulysses]", transformSAX(templates, SOURCE));
+    }
+
+    @Test
+    public void projectsWildcardChildren() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match='/'>"
+            + "<xsl:for-each select='catalog/*'>"
+            + "<xsl:value-of select='name()'/>;"
+            + "</xsl:for-each>"
+            + "<xsl:value-of select='count(catalog/node())'/>"
+            + "</xsl:template>");
+        DocumentProjection.Node catalog =
+            templates.getStylesheet().getDocumentProjection().getRoot().getChild("", "catalog");
+        assertEquals(true, catalog.isOtherContentKept());
+        assertNull(catalog.getChild("", "magazine").getChild("", "title"));
+        assertEquals("book;book;magazine;5", transform(templates, SOURCE));
+        assertEquals("book;book;magazine;5", transformSAX(templates, SOURCE));
+    }
+
+    @Test
+    public void keepsCopiedSubtrees() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match='/'>"
+            + "<xsl:copy-of select='catalog/magazine'/>"
+            + "</xsl:template>", "xml");
+        String expected = "<magazine xmlns:x=\"urn:x\"><title>Wired</title><x:issue n=\"3\"/></magazine>";
+        assertEquals(expected, stripDeclaration(transform(templates, SOURCE)));
+        assertEquals(expected, stripDeclaration(transformSAX(templates, SOURCE)));
+    }
+
+    @Test
+    public void fallsBackForUnanalysableAccess() throws Exception {
+        assertNull(compile("<xsl:template match='/'>"
+                + "<xsl:value-of select='//title'/>"
+                + "</xsl:template>").getStylesheet().getDocumentProjection());
+        GonzalezTemplates templates = compile(
+            "<xsl:key name='k' match='book' use='@id'/>"
+            + "<xsl:template match='/'>"
+            + "<xsl:value-of select=\"key('k', 'b2')/title\"/>"
+            + "</xsl:template>");
+        assertNull(templates.getStylesheet().getDocumentProjection());
+        assertEquals("Ulysses", transform(templates, SOURCE));
+        assertNull(compile("<xsl:template match='title'>"
+                + "<xsl:value-of select='preceding::title[1]'/>"
+                + "</xsl:template>").getStylesheet().getDocumentProjection());
+    }
+
+    private static GonzalezTemplates compile(String templates) throws Exception {
+        return compile(templates, "text");
+    }
+
+    private static GonzalezTemplates compile(String templates, String method) throws Exception {
+        String stylesheet = "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='" + method + "'/>"
+            + templates
+            + "</xsl:stylesheet>";
+        Templates result = new GonzalezTransformerFactory().newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+        return (GonzalezTemplates) result;
+    }
+
+    private static String transform(Templates templates, String source)
+            throws Exception {
+        Transformer transformer = templates.newTransformer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        source.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+
+    /** Builds the source tree through the SAX content handler path. */
+    private static String transformSAX(Templates templates, String source)
+            throws Exception {
+        TransformerHandler handler =
+            new GonzalezTransformerFactory().newTransformerHandler(templates);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.setResult(new StreamResult(output));
+        Parser parser = new Parser();
+        parser.setContentHandler(handler);
+        parser.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+        parser.parse(new InputSource(new ByteArrayInputStream(
+                source.getBytes(StandardCharsets.UTF_8))));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private static String stripDeclaration(String xml) {
+        return xml.startsWith("<?xml") ? xml.substring(xml.indexOf("?>") + 2).trim() : xml;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * ForEachGroupTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests xsl:for-each-group group-by, both with bodies that only use
+ * aggregates over current-group() (folded incrementally) and bodies
+ * that need the group members.
+ */
+public class ForEachGroupTest {
+
+    private static final String ORDERS =
+        "<orders>"
+        + "<order region='north' amount='10' id='a'/>"
+        + "<order region='south' amount='5' id='b'/>"
+        + "<order region='north' amount='7' id='c'/>"
+        + "<order region='east' amount='1' id='d'/>"
+        + "<order region='south' amount='20' id='e'/>"
+        + "</orders>";
+
+    @Test
+    public void foldsAggregatesOverCurrentGroup() throws Exception {
+        String body =
+            "<xsl:sort select='current-grouping-key()'/>"
+            + "<xsl:value-of select='current-grouping-key()'/>"
+            + "<xsl:text>:</xsl:text>"
+            + "<xsl:value-of select='count(current-group())'/>"
+            + "<xsl:text>,</xsl:text>"
+            + "<xsl:value-of select='sum(current-group()/@amount)'/>"
+            + "<xsl:text>,</xsl:text>"
+            + "<xsl:value-of select='min(current-group()/@amount)'/>"
+            + "<xsl:text>,</xsl:text>"
+            + "<xsl:value-of select='max(current-group()/@amount)'/>"
+            + "<xsl:text>,</xsl:text>"
+            + "<xsl:value-of select=\"string-join(current-group()/@id, '+')\"/>"
+            + "<xsl:text>,</xsl:text>"
+            + "<xsl:value-of select='@id'/>"
+            + "<xsl:text>;</xsl:text>";
+
+        assertEquals("east:1,1,1,1,d,d;north:2,17,7,10,a+c,a;south:2,25,5,20,b+e,b;",
+                transform(groupBy("@region", body), ORDERS));
+    }
+
+    @Test
+    public void bufferedBodyMatchesFoldedBody() throws Exception {
+        String body =
+            "<xsl:value-of select='current-grouping-key()'/>"
+            + "<xsl:text>:</xsl:text>"
+            + "<xsl:value-of select='count(current-group())'/>"
+            + "<xsl:text>,</xsl:text>"
+            + "<xsl:for-each select='current-group()'>"
+            + "<xsl:value-of select='@id'/>"
+            + "</xsl:for-each>"
+            + "<xsl:text>;</xsl:text>";
+
+        assertEquals("north:2,ac;south:2,be;east:1,d;",
+                transform(groupBy("@region", body), ORDERS));
+    }
+
+    @Test
+    public void groupsEqualNumericKeysTogether() throws Exception {
+        String source = "<r><i k='1'/><i k='1.0'/><i k='01'/><i k='2'/></r>";
+        String stylesheet =
+            "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='text'/>"
+            + "<xsl:template match='/'>"
+            + "<xsl:for-each-group select='//i' group-by='number(@k)'>"
+            + "<xsl:value-of select='current-grouping-key()'/>"
+            + "<xsl:text>=</xsl:text>"
+            + "<xsl:value-of select='count(current-group())'/>"
+            + "<xsl:text>;</xsl:text>"
+            + "</xsl:for-each-group>"
+            + "</xsl:template>"
+            + "</xsl:stylesheet>";
+
+        assertEquals("1=3;2=1;", transform(stylesheet, source));
+    }
+
+    @Test
+    public void groupsNumericAndStringKeysByStringValue() throws Exception {
+        String source = "<r><i s='2'/><i n='1'/><i s='1'/><i s='x'/><i n='2'/></r>";
+        String body =
+            "<xsl:value-of select='current-grouping-key()'/>"
+            + "<xsl:text>=</xsl:text>"
+            + "<xsl:value-of select='count(current-group())'/>"
+            + "<xsl:text>;</xsl:text>";
+
+        assertEquals("2=2;1=2;x=1;",
+                transform(groupBy("if (@n) then number(@n) else string(@s)", body), source));
+    }
+
+    @Test
+    public void addsItemToGroupOnceForRepeatedKeys() throws Exception {
+        String source = "<r><i a='x' b='x'/><i a='x' b='y'/></r>";
+        String folded =
+            "<xsl:value-of select='current-grouping-key()'/>"
+            + "<xsl:text>=</xsl:text>"
+            + "<xsl:value-of select='count(current-group())'/>"
+            + "<xsl:text>;</xsl:text>";
+        String buffered =
+            "<xsl:value-of select='current-grouping-key()'/>"
+            + "<xsl:text>=</xsl:text>"
+            + "<xsl:value-of select='count(current-group()/self::i)'/>"
+            + "<xsl:for-each select='current-group()'>.</xsl:for-each>"
+            + "<xsl:text>;</xsl:text>";
+
+        assertEquals("x=2;y=1;", transform(groupBy("(@a, @b)", folded), source));
+        assertEquals("x=2..;y=1.;", transform(groupBy("(@a, @b)", buffered), source));
+    }
+
+    @Test
+    public void emptyAggregatesOfEmptyGroupPaths() throws Exception {
+        String source = "<r><i k='a'/><i k='a'/></r>";
+        String body =
+            "<xsl:value-of select='sum(current-group()/@missing)'/>"
+            + "<xsl:text>|</xsl:text>"
+            + "<xsl:value-of select='count(max(current-group()/@missing))'/>"
+            + "<xsl:text>|</xsl:text>"
+            + "<xsl:value-of select=\"string-join(current-group()/@missing, ',')\"/>"
+            + "<xsl:text>|</xsl:text>";
+
+        assertEquals("0|0||", transform(groupBy("@k", body), source));
+    }
+
+    @Test
+    public void joinsPathsInDocumentOrder() throws Exception {
+        String source = "<r><a id='1'>x</a><a id='2'>y</a><a id='3'>z</a></r>";
+        String stylesheet =
+            "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='text'/>"
+            + "<xsl:template match='/'>"
+            + "<xsl:for-each-group select='reverse(//a)' group-by=\"'k'\">"
+            + "<xsl:value-of select=\"string-join(current-group()/@id, ',')\"/>"
+            + "<xsl:text>;</xsl:text>"
+            + "<xsl:value-of select=\"string-join(current-group(), ',')\"/>"
+            + "</xsl:for-each-group>"
+            + "</xsl:template>"
+            + "</xsl:stylesheet>";
+
+        assertEquals("1,2,3;x,y,z", transform(stylesheet, source));
+    }
+
+    @Test
+    public void aggregatesPathsOverRepeatedItems() throws Exception {
+        String stylesheet =
+            "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='text'/>"
+            + "<xsl:template match='/'>"
+            + "<xsl:for-each-group select='/*/*, /*/*' group-by='@region'>"
+            + "<xsl:sort select='current-grouping-key()'/>"
+            + "<xsl:value-of select='count(current-group())'/>"
+            + "<xsl:text>,</xsl:text>"
+            + "<xsl:value-of select='sum(current-group()/@amount)'/>"
+            + "<xsl:text>;</xsl:text>"
+            + "</xsl:for-each-group>"
+            + "</xsl:template>"
+            + "</xsl:stylesheet>";
+
+        assertEquals("2,1;4,17;4,25;", transform(stylesheet, ORDERS));
+    }
+
+    private static String groupBy(String key, String body) {
+        return "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='text'/>"
+            + "<xsl:template match='/'>"
+            + "<xsl:for-each-group select='/*/*' group-by=\"" + key + "\">"
+            + body
+            + "</xsl:for-each-group>"
+            + "</xsl:template>"
+            + "</xsl:stylesheet>";
+    }
+
+    private static String transform(String stylesheet, String source)
+            throws Exception {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        Transformer transformer = factory.newTransformer(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        source.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+}
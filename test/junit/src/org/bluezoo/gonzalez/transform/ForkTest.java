@@ -0,0 +1,151 @@
+/*
+ * ForkTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests xsl:fork branch execution: output order, executor hand-off,
+ * inline execution of cheap branches and nested forks.
+ */
+public class ForkTest {
+
+    private static final String SOURCE =
+        "<r><i>1</i><i>2</i><i>3</i><i>4</i></r>";
+
+    private static final String LOOP_BRANCHES =
+        "<xsl:fork>"
+        + "<xsl:sequence><xsl:for-each select='//i'>a<xsl:value-of select='.'/></xsl:for-each></xsl:sequence>"
+        + "<xsl:sequence><xsl:for-each select='//i'>b<xsl:value-of select='.'/></xsl:for-each></xsl:sequence>"
+        + "<xsl:sequence><xsl:for-each select='//i'>c<xsl:value-of select='.'/></xsl:for-each></xsl:sequence>"
+        + "</xsl:fork>";
+
+    @Test
+    public void preservesBranchOrder() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setForkExecutor(executor);
+        factory.setForkParallelism(4);
+        assertEquals("a1a2a3a4b1b2b3b4c1c2c3c4",
+                transform(factory, stylesheet(LOOP_BRANCHES)));
+        // The calling thread runs the first branch; two helpers are offered
+        assertEquals(2, executor.tasks.get());
+    }
+
+    @Test
+    public void runsCheapBranchesInline() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setForkExecutor(executor);
+        String body =
+            "<xsl:fork>"
+            + "<xsl:sequence><a><xsl:value-of select='count(/r/i)'/></a></xsl:sequence>"
+            + "<xsl:sequence><b><xsl:value-of select='/r/i[1]'/></b></xsl:sequence>"
+            + "</xsl:fork>";
+        assertEquals("<a>4</a><b>1</b>", transform(factory, stylesheet(body)));
+        assertEquals(0, executor.tasks.get());
+    }
+
+    @Test
+    public void respectsParallelismCap() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setForkExecutor(executor);
+        factory.setForkParallelism(1);
+        assertEquals("a1a2a3a4b1b2b3b4c1c2c3c4",
+                transform(factory, stylesheet(LOOP_BRANCHES)));
+        assertEquals(0, executor.tasks.get());
+    }
+
+    @Test
+    public void nestedForksOnSingleThreadExecutor() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+            factory.setForkExecutor(single);
+            String body =
+                "<xsl:fork>"
+                + "<xsl:sequence>" + LOOP_BRANCHES + "</xsl:sequence>"
+                + "<xsl:sequence>" + LOOP_BRANCHES + "</xsl:sequence>"
+                + "</xsl:fork>";
+            String once = "a1a2a3a4b1b2b3b4c1c2c3c4";
+            assertEquals(once + once, transform(factory, stylesheet(body)));
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void reportsBranchErrors() throws Exception {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        String body =
+            "<xsl:fork>"
+            + "<xsl:sequence><xsl:for-each select='//i'>a</xsl:for-each></xsl:sequence>"
+            + "<xsl:sequence><xsl:for-each select='//i'>"
+            + "<xsl:value-of select=\"error(QName('urn:e', 'boom'), 'boom')\"/>"
+            + "</xsl:for-each></xsl:sequence>"
+            + "</xsl:fork>";
+        try {
+            transform(factory, stylesheet(body));
+            fail("Expected the branch error to be reported");
+        } catch (TransformerException e) {
+            assertTrue(String.valueOf(e.getMessage()).contains("boom")
+                    || String.valueOf(e.getCause()).contains("boom"));
+        }
+    }
+
+    private static String stylesheet(String body) {
+        return "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='xml' omit-xml-declaration='yes'/>"
+            + "<xsl:template match='/'>"
+            + body
+            + "</xsl:template>"
+            + "</xsl:stylesheet>";
+    }
+
+    private static String transform(GonzalezTransformerFactory factory,
+            String stylesheet) throws Exception {
+        Transformer transformer = factory.newTransformer(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        SOURCE.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Runs tasks on new threads, counting them.
+     */
+    private static final class CountingExecutor implements Executor {
+        final AtomicInteger tasks = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.incrementAndGet();
+            new Thread(command).start();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * FunctionResultCacheTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests memoization of xsl:function declarations with cache="yes".
+ */
+public class FunctionResultCacheTest {
+
+    private static final String SOURCE = "<r><a/><b/></r>";
+
+    @Test
+    public void distinguishesArgumentTypes() throws Exception {
+        String body =
+            "<xsl:value-of select=\"f:kind(2), f:kind('2'), f:kind(2.5), f:kind(xs:double(2.5)), f:kind(2)\"/>";
+        String function =
+            "<xsl:function name='f:kind' cache='yes'>"
+            + "<xsl:param name='x'/>"
+            + "<xsl:sequence select=\"if ($x instance of xs:integer) then 'int'"
+            + " else if ($x instance of xs:decimal) then 'dec'"
+            + " else if ($x instance of xs:double) then 'dbl' else 'str'\"/>"
+            + "</xsl:function>";
+
+        GonzalezTemplates templates = compile(new GonzalezTransformerFactory(),
+                stylesheet(function, body));
+        assertEquals("int str dec dbl int", transform(templates, SOURCE));
+        FunctionResultCache cache = templates.getFunctionResultCache();
+        assertEquals(1, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void keysNodesByIdentity() throws Exception {
+        String body = "<xsl:value-of select='f:name(/r/a), f:name(/r/b), f:name(/r/a)'/>";
+        String function =
+            "<xsl:function name='f:name' cache='yes'>"
+            + "<xsl:param name='n'/>"
+            + "<xsl:sequence select='local-name($n)'/>"
+            + "</xsl:function>";
+
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setFunctionCacheScope(FunctionResultCache.Scope.TEMPLATES);
+        GonzalezTemplates templates = compile(factory, stylesheet(function, body));
+        assertEquals("a b a", transform(templates, SOURCE));
+        assertEquals("a b a", transform(templates, SOURCE));
+        // Node-keyed results stay with their transformation
+        assertEquals(0, templates.getFunctionResultCache().size());
+        assertEquals(2, templates.getFunctionResultCache().getHitCount());
+    }
+
+    @Test
+    public void sharesAtomicResultsAcrossTransformers() throws Exception {
+        String body = "<xsl:value-of select='f:square(3), f:square(4)'/>";
+        String function =
+            "<xsl:function name='f:square' cache='yes'>"
+            + "<xsl:param name='x'/>"
+            + "<xsl:sequence select='$x * $x'/>"
+            + "</xsl:function>";
+
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setFunctionCacheScope(FunctionResultCache.Scope.TEMPLATES);
+        GonzalezTemplates templates = compile(factory, stylesheet(function, body));
+        assertEquals("9 16", transform(templates, SOURCE));
+        assertEquals("9 16", transform(templates, SOURCE));
+        FunctionResultCache cache = templates.getFunctionResultCache();
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        String body = "<xsl:value-of select='f:square(1), f:square(2), f:square(1),"
+            + " f:square(3), f:square(1), f:square(2)'/>";
+        String function =
+            "<xsl:function name='f:square' cache='yes'>"
+            + "<xsl:param name='x'/>"
+            + "<xsl:sequence select='$x * $x'/>"
+            + "</xsl:function>";
+
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setFunctionCacheScope(FunctionResultCache.Scope.TEMPLATES);
+        factory.setFunctionCacheSize(2);
+        GonzalezTemplates templates = compile(factory, stylesheet(function, body));
+        assertEquals("1 4 1 9 1 4", transform(templates, SOURCE));
+        FunctionResultCache cache = templates.getFunctionResultCache();
+        // 3 evicts 2 (1 was used more recently), so 2 is evaluated again
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    private static String stylesheet(String function, String body) {
+        return "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'"
+            + " xmlns:xs='http://www.w3.org/2001/XMLSchema'"
+            + " xmlns:f='urn:f' exclude-result-prefixes='f xs'>"
+            + "<xsl:output method='text'/>"
+            + function
+            + "<xsl:template match='/'>"
+            + body
+            + "</xsl:template>"
+            + "</xsl:stylesheet>";
+    }
+
+    private static GonzalezTemplates compile(GonzalezTransformerFactory factory,
+            String stylesheet) throws Exception {
+        Templates templates = factory.newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+        return (GonzalezTemplates) templates;
+    }
+
+    private static String transform(Templates templates, String source)
+            throws Exception {
+        Transformer transformer = templates.newTransformer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        source.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * MetricsTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.bluezoo.gonzalez.Metrics;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the counters and timers reported to installed metrics.
+ */
+public class MetricsTest {
+
+    private static final String STYLESHEET =
+        "<xsl:stylesheet version='3.0'"
+        + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+        + "<xsl:output method='text'/>"
+        + "<xsl:key name='k' match='item' use='@id'/>"
+        + "<xsl:template match='/'>"
+        + "<xsl:value-of select=\"key('k', 'b')/@v, count(preceding::*)\"/>"
+        + "</xsl:template>"
+        + "</xsl:stylesheet>";
+
+    private static final String INPUT =
+        "<r><item id='a' v='1'/><item id='b' v='2'/></r>";
+
+    static final class RecordingMetrics extends Metrics {
+
+        final Map<String, Long> counters = new HashMap<String, Long>();
+        final Map<String, Integer> timers = new HashMap<String, Integer>();
+
+        @Override
+        public synchronized void increment(String name, long delta) {
+            Long value = counters.get(name);
+            counters.put(name, Long.valueOf(value == null ? delta : value.longValue() + delta));
+        }
+
+        @Override
+        public synchronized void record(String name, long nanos) {
+            assertTrue(nanos >= 0L);
+            Integer count = timers.get(name);
+            timers.put(name, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+        }
+
+        long counter(String name) {
+            Long value = counters.get(name);
+            return value == null ? 0L : value.longValue();
+        }
+
+        int timer(String name) {
+            Integer count = timers.get(name);
+            return count == null ? 0 : count.intValue();
+        }
+    }
+
+    @After
+    public void uninstall() {
+        Metrics.setMetrics(null);
+    }
+
+    @Test
+    public void reportsCompileParseAndTransform() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        Metrics.setMetrics(metrics);
+        Transformer transformer = new GonzalezTransformerFactory().newTransformer(
+                new StreamSource(new ByteArrayInputStream(
+                        STYLESHEET.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(1, metrics.timer(Metrics.COMPILE));
+        assertEquals(1, metrics.timer(Metrics.PARSE));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        assertEquals("2 0", output.toString(StandardCharsets.UTF_8.name()));
+
+        assertEquals(2, metrics.timer(Metrics.PARSE));
+        assertEquals(STYLESHEET.length() + INPUT.length(), metrics.counter(Metrics.PARSE_BYTES));
+        assertEquals(2L, metrics.counter(Metrics.PARSE_ENCODING + "UTF-8"));
+        assertEquals(1, metrics.timer(Metrics.TRANSFORM));
+        assertEquals(1, metrics.timer(Metrics.KEY_INDEX));
+        assertEquals(1L, metrics.counter(Metrics.TRANSFORM_FULL_DOCUMENT)
+                + metrics.counter(Metrics.TRANSFORM_PROJECTED));
+        assertTrue(metrics.counter(Metrics.TRANSFORM_SOURCE_NODES) > 0L);
+        assertEquals(output.size(), metrics.counter(Metrics.TRANSFORM_OUTPUT_BYTES));
+    }
+
+    @Test
+    public void reportsNothingWhenUninstalled() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        Metrics.setMetrics(metrics);
+        Metrics.setMetrics(null);
+        Transformer transformer = new GonzalezTransformerFactory().newTransformer(
+                new StreamSource(new ByteArrayInputStream(
+                        STYLESHEET.getBytes(StandardCharsets.UTF_8))));
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(new ByteArrayOutputStream()));
+        assertTrue(metrics.counters.isEmpty());
+        assertTrue(metrics.timers.isEmpty());
+        assertNull(Metrics.getMetrics());
+    }
+}
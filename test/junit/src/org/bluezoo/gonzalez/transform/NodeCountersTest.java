@@ -0,0 +1,127 @@
+/*
+ * NodeCountersTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests incremental counting for xsl:number and preceding-node counts.
+ * Each case is checked against the same count written so that it is
+ * evaluated by walking the tree.
+ */
+public class NodeCountersTest {
+
+    private static final String SOURCE =
+        "<book><ch><p/><fn/><p><fn/><fn/></p></ch>"
+        + "<ch><fn/><p/><sec><p><fn/></p><p/></sec><p/><fn/></ch>"
+        + "<ch/><ch><p><fn/></p></ch></book>";
+
+    @Test
+    public void numbersAnyLevel() throws Exception {
+        String numbered = transform(
+            "<xsl:template match='fn'>"
+            + "<xsl:number level='any'/>,<xsl:number level='any' from='ch'/>;"
+            + "</xsl:template>");
+        assertEquals("1,1;2,2;3,3;4,1;5,2;6,3;7,1;", numbered);
+        assertEquals(numbered, transform(
+            "<xsl:template match='fn'>"
+            + "<xsl:value-of select='count(preceding::fn | ancestor-or-self::fn)'/>,"
+            + "<xsl:value-of select='count((preceding::fn | self::fn)"
+            + "[not(ancestor::ch[1]/preceding::* intersect current())]"
+            + "[. &gt;&gt; current()/ancestor::ch[1]])'/>;"
+            + "</xsl:template>"));
+    }
+
+    @Test
+    public void numbersSingleAndMultipleLevels() throws Exception {
+        String numbered = transform(
+            "<xsl:template match='p'>"
+            + "<xsl:number/>/<xsl:number level='multiple' count='ch|sec|p'/>"
+            + "/<xsl:number count='p|fn'/>;<xsl:apply-templates/>"
+            + "</xsl:template>");
+        assertEquals("1/1.1/1;2/1.2/3;1/2.1/2;1/2.2.1/1;2/2.2.2/2;2/2.3/3;1/4.1/1;",
+            numbered);
+    }
+
+    @Test
+    public void countsPrecedingNodes() throws Exception {
+        String fast = transform(
+            "<xsl:template match='*'>"
+            + "<xsl:value-of select='count(preceding::fn)'/>."
+            + "<xsl:value-of select='count(preceding-sibling::*)'/>."
+            + "<xsl:value-of select='count(preceding::node())'/>;"
+            + "<xsl:apply-templates/>"
+            + "</xsl:template>");
+        String walked = transform(
+            "<xsl:template match='*'>"
+            + "<xsl:value-of select='count(preceding::fn[true()])'/>."
+            + "<xsl:value-of select='count(preceding-sibling::*[true()])'/>."
+            + "<xsl:value-of select='count(preceding::node()[true()])'/>;"
+            + "<xsl:apply-templates/>"
+            + "</xsl:template>");
+        assertEquals(walked, fast);
+        assertEquals("0.0.0;0.0.0;0.0.0;0.1.1;1.2.2;1.0.2;2.1.3;"
+            + "3.1.6;3.0.6;4.1.7;4.2.8;4.0.8;4.0.8;5.1.10;5.3.12;5.4.13;"
+            + "6.2.15;6.3.16;6.0.16;6.0.16;", fast);
+    }
+
+    @Test
+    public void countsOutOfDocumentOrder() throws Exception {
+        String reversed = transform(
+            "<xsl:template match='/'>"
+            + "<xsl:for-each select='//fn'>"
+            + "<xsl:sort select='position()' data-type='number' order='descending'/>"
+            + "<xsl:number level='any'/>.<xsl:value-of select='count(preceding::p)'/>;"
+            + "</xsl:for-each>"
+            + "</xsl:template>");
+        assertEquals("7.6;6.6;5.3;4.2;3.1;2.1;1.1;", reversed);
+    }
+
+    @Test
+    public void numbersWithContextDependentPatterns() throws Exception {
+        String source = "<r><i t='x'/><i t='y'/><i t='x'/><i t='y'/><i t='x'/></r>";
+        String numbered = transform(
+            "<xsl:template match='i'>"
+            + "<xsl:variable name='t' select='@t'/>"
+            + "<xsl:value-of select='$t'/>"
+            + "<xsl:number count='i[@t=$t]'/>."
+            + "<xsl:number level='any' count='i[@t=$t]'/>,"
+            + "</xsl:template>", source);
+        assertEquals("x1.1,y1.1,x2.2,y2.2,x3.3,", numbered);
+    }
+
+    private static String transform(String templates) throws Exception {
+        return transform(templates, SOURCE);
+    }
+
+    private static String transform(String templates, String source) throws Exception {
+        String stylesheet = "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='text'/>"
+            + templates
+            + "</xsl:stylesheet>";
+        Templates compiled = new GonzalezTransformerFactory().newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+        Transformer transformer = compiled.newTransformer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        source.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+}
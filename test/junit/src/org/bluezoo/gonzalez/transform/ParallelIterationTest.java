@@ -0,0 +1,197 @@
+/*
+ * ParallelIterationTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests gz:parallel on xsl:for-each and xsl:apply-templates: the output
+ * must be identical to sequential execution.
+ */
+public class ParallelIterationTest {
+
+    private static final String SOURCE;
+    private static final String EXPECTED;
+    static {
+        StringBuilder source = new StringBuilder("<r>");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= 100; i++) {
+            source.append("<i n='").append(i).append("'/>");
+            expected.append("<v p=\"").append(i).append("\">").append(i * 2).append("</v>");
+        }
+        SOURCE = source.append("</r>").toString();
+        EXPECTED = expected.toString();
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void forEachPreservesOrder() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        String body =
+            "<xsl:for-each select='/r/i' gz:parallel='yes'>"
+            + "<v p='{position()}'><xsl:value-of select='@n * 2'/></v>"
+            + "</xsl:for-each>";
+        assertEquals(EXPECTED, transform(factory(executor, 4), stylesheet(body, "")));
+        assertEquals(3, executor.tasks.get());
+    }
+
+    @Test
+    public void applyTemplatesPreservesOrder() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        String body = "<xsl:apply-templates select='/r/i' gz:parallel='10'/>";
+        String template =
+            "<xsl:template match='i'>"
+            + "<xsl:variable name='d' select='@n * 2'/>"
+            + "<v p='{position()}'><xsl:value-of select='$d'/></v>"
+            + "</xsl:template>";
+        assertEquals(EXPECTED, transform(factory(executor, 4), stylesheet(body, template)));
+        assertEquals(3, executor.tasks.get());
+    }
+
+    @Test
+    public void sequenceConstructionAcrossPartitions() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        String body =
+            "<xsl:variable name='s' as='xs:integer*'>"
+            + "<xsl:for-each select='/r/i' gz:parallel='2'>"
+            + "<xsl:sequence select='xs:integer(@n)'/>"
+            + "</xsl:for-each>"
+            + "</xsl:variable>"
+            + "<xsl:value-of select='count($s), sum($s), $s[last()]'/>";
+        assertEquals("100 5050 100", transform(factory(executor, 3), stylesheet(body, "")));
+    }
+
+    @Test
+    public void belowThresholdRunsSequentially() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        String body =
+            "<xsl:for-each select='/r/i' gz:parallel='1000'>"
+            + "<v p='{position()}'><xsl:value-of select='@n * 2'/></v>"
+            + "</xsl:for-each>";
+        assertEquals(EXPECTED, transform(factory(executor, 4), stylesheet(body, "")));
+        assertEquals(0, executor.tasks.get());
+    }
+
+    @Test
+    public void reportsErrorsFromPartitions() throws Exception {
+        String body =
+            "<xsl:for-each select='/r/i' gz:parallel='yes'>"
+            + "<xsl:if test='@n = 90'>"
+            + "<xsl:value-of select=\"error(QName('urn:e', 'boom'), 'boom')\"/>"
+            + "</xsl:if>"
+            + "</xsl:for-each>";
+        try {
+            transform(factory(new CountingExecutor(), 4), stylesheet(body, ""));
+            fail("Expected the partition error to be reported");
+        } catch (TransformerException e) {
+            assertTrue(String.valueOf(e.getMessage()).contains("boom")
+                    || String.valueOf(e.getCause()).contains("boom"));
+        }
+    }
+
+    @Test
+    public void resultDocumentsFromPartitions() throws Exception {
+        File dir = folder.newFolder();
+        CountingExecutor executor = new CountingExecutor();
+        String body = resultDocuments(dir, "@n");
+        transform(factory(executor, 4), stylesheet(body, ""));
+        assertEquals(3, executor.tasks.get());
+        assertEquals(100, dir.list().length);
+    }
+
+    @Test
+    public void reportsResultDocumentUriClaimedByAnotherPartition() throws Exception {
+        // Items n and n + 50 fall in different partitions
+        String body = resultDocuments(folder.newFolder(), "@n mod 50");
+        try {
+            transform(factory(new CountingExecutor(), 4), stylesheet(body, ""));
+            fail("Expected XTDE1490");
+        } catch (TransformerException e) {
+            assertTrue(String.valueOf(e.getMessage()).contains("XTDE1490")
+                    || String.valueOf(e.getCause()).contains("XTDE1490"));
+        }
+    }
+
+    @Test(expected = TransformerException.class)
+    public void rejectsInvalidValue() throws Exception {
+        String body = "<xsl:for-each select='/r/i' gz:parallel='maybe'/>";
+        transform(new GonzalezTransformerFactory(), stylesheet(body, ""));
+    }
+
+    private static String resultDocuments(File dir, String name) {
+        return "<xsl:for-each select='/r/i' gz:parallel='yes'>"
+            + "<xsl:result-document href='" + dir.toURI() + "r{" + name + "}.xml'>"
+            + "<v><xsl:value-of select='@n'/></v>"
+            + "</xsl:result-document>"
+            + "</xsl:for-each>";
+    }
+
+    private static GonzalezTransformerFactory factory(Executor executor, int parallelism) {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setForkExecutor(executor);
+        factory.setForkParallelism(parallelism);
+        return factory;
+    }
+
+    private static String stylesheet(String body, String templates) {
+        return "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'"
+            + " xmlns:xs='http://www.w3.org/2001/XMLSchema'"
+            + " xmlns:gz='http://www.nongnu.org/gonzalez/xslt'"
+            + " exclude-result-prefixes='xs gz'>"
+            + "<xsl:output method='xml' omit-xml-declaration='yes'/>"
+            + "<xsl:template match='/'>"
+            + body
+            + "</xsl:template>"
+            + templates
+            + "</xsl:stylesheet>";
+    }
+
+    private static String transform(GonzalezTransformerFactory factory,
+            String stylesheet) throws Exception {
+        Transformer transformer = factory.newTransformer(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        SOURCE.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Runs tasks on new threads, counting them.
+     */
+    private static final class CountingExecutor implements Executor {
+        final AtomicInteger tasks = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.incrementAndGet();
+            new Thread(command).start();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * ProfilerTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.bluezoo.gonzalez.transform.runtime.ProfileSite;
+import org.bluezoo.gonzalez.transform.runtime.Profiler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the execution profiler of stylesheets compiled for profiling.
+ */
+public class ProfilerTest {
+
+    private static final String STYLESHEET =
+        "<xsl:stylesheet version='3.0'"
+        + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'"
+        + " xmlns:f='urn:f'>"
+        + "<xsl:output method='text'/>"
+        + "<xsl:function name='f:fib'>"
+        + "<xsl:param name='n'/>"
+        + "<xsl:sequence select='if ($n lt 2) then $n else f:fib($n - 1) + f:fib($n - 2)'/>"
+        + "</xsl:function>"
+        + "<xsl:template match='/'><xsl:apply-templates select='r/item'/></xsl:template>"
+        + "<xsl:template match='item'>"
+        + "<xsl:call-template name='fib'/>"
+        + "</xsl:template>"
+        + "<xsl:template name='fib'>"
+        + "<xsl:value-of select='f:fib(xs:integer(@n))'"
+        + " xmlns:xs='http://www.w3.org/2001/XMLSchema'/>"
+        + "<xsl:text>,</xsl:text>"
+        + "</xsl:template>"
+        + "</xsl:stylesheet>";
+
+    private static final String INPUT = "<r><item n='5'/><item n='6'/></r>";
+
+    @Test
+    public void profilesTemplatesFunctionsAndExpressions() throws Exception {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setProfiling(true);
+        GonzalezTransformer transformer = transform(factory);
+        Profiler profiler = transformer.getProfiler();
+        assertNotNull(profiler);
+
+        List<Profiler.Entry> entries = profiler.getEntries();
+        Profiler.Entry root = find(entries, ProfileSite.Kind.TEMPLATE, "/");
+        Profiler.Entry item = find(entries, ProfileSite.Kind.TEMPLATE, "item");
+        Profiler.Entry named = find(entries, ProfileSite.Kind.NAMED_TEMPLATE, "fib");
+        Profiler.Entry fib = find(entries, ProfileSite.Kind.FUNCTION, "fib#1");
+        Profiler.Entry select = find(entries, ProfileSite.Kind.EXPRESSION, "f:fib(xs:integer(@n))");
+        assertEquals(1, root.getCalls());
+        assertEquals(2, item.getCalls());
+        assertEquals(2, named.getCalls());
+        assertEquals(2, select.getCalls());
+        // fib(5) and fib(6) make 15 and 25 calls
+        assertEquals(40, fib.getCalls());
+
+        for (Profiler.Entry entry : entries) {
+            assertTrue(entry.getSite().toString(),
+                    entry.getExclusiveNanos() <= entry.getInclusiveNanos());
+        }
+        assertTrue(root.getInclusiveNanos() >= item.getInclusiveNanos());
+        for (int i = 1; i < entries.size(); i++) {
+            assertTrue(entries.get(i - 1).getExclusiveNanos()
+                    >= entries.get(i).getExclusiveNanos());
+        }
+        assertTrue(profiler.toString().contains("FUNCTION {urn:f}fib#1"));
+    }
+
+    @Test
+    public void profilingIsOffByDefault() throws Exception {
+        GonzalezTransformer transformer = transform(new GonzalezTransformerFactory());
+        assertNull(transformer.getProfiler());
+    }
+
+    private static GonzalezTransformer transform(GonzalezTransformerFactory factory)
+            throws Exception {
+        GonzalezTransformer transformer = (GonzalezTransformer) factory.newTransformer(
+                new StreamSource(new ByteArrayInputStream(
+                        STYLESHEET.getBytes(StandardCharsets.UTF_8))));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        assertEquals("5,8,", output.toString(StandardCharsets.UTF_8.name()));
+        return transformer;
+    }
+
+    private static Profiler.Entry find(List<Profiler.Entry> entries,
+            ProfileSite.Kind kind, String name) {
+        for (Profiler.Entry entry : entries) {
+            ProfileSite site = entry.getSite();
+            if (site.getKind() == kind && site.getName().endsWith(name)) {
+                return entry;
+            }
+        }
+        throw new AssertionError("No " + kind + " site " + name + " in " + entries.size());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * StreamabilityReportTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.bluezoo.gonzalez.transform.compiler.StreamabilityAnalyzer.ExpressionStreamability;
+import org.bluezoo.gonzalez.transform.compiler.StreamabilityReport;
+import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
+import org.bluezoo.gonzalez.transform.runtime.BufferingStrategy;
+import org.bluezoo.gonzalez.transform.runtime.GroundedBuffering;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the streamability report of compiled stylesheets and the
+ * statistics of a transformation.
+ */
+public class StreamabilityReportTest {
+
+    private static final String STYLESHEET =
+        "<xsl:template match='/'><xsl:apply-templates/></xsl:template>"
+        + "<xsl:template match='item'>"
+        + "<xsl:value-of select='count(preceding::item)'/>"
+        + "</xsl:template>"
+        + "<xsl:template match='group'>"
+        + "<xsl:value-of select=\"string-join(ancestor::*/name(), '/')\"/>"
+        + "</xsl:template>";
+
+    @Test
+    public void classifiesTemplatesWithReasons() throws Exception {
+        StreamabilityReport report = compile(STYLESHEET).getStreamabilityReport();
+        List<StreamabilityReport.Entry> entries = report.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(BufferingStrategy.FULL_DOCUMENT, report.getOverallStrategy());
+
+        StreamabilityReport.Entry root = entries.get(0);
+        assertEquals(BufferingStrategy.NONE, root.getBufferingStrategy());
+        assertTrue(root.getReasons().isEmpty());
+
+        StreamabilityReport.Entry item = entries.get(1);
+        assertEquals(ExpressionStreamability.FREE_RANGING, item.getStreamability());
+        assertEquals(BufferingStrategy.FULL_DOCUMENT, item.getBufferingStrategy());
+        assertTrue(item.getReasons().get(0), item.getReasons().get(0).contains("preceding::item"));
+
+        StreamabilityReport.Entry group = entries.get(2);
+        assertEquals(ExpressionStreamability.GROUNDED, group.getStreamability());
+        assertEquals(BufferingStrategy.GROUNDED, group.getBufferingStrategy());
+        assertTrue(group.getReasons().get(0), group.getReasons().get(0).contains("ancestor::*"));
+
+        assertEquals(2, report.getBufferingEntries().size());
+        assertTrue(report.toString().contains("preceding::item"));
+    }
+
+    @Test
+    public void reportsSourceTree() throws Exception {
+        GonzalezTransformer transformer =
+            (GonzalezTransformer) compile(STYLESHEET).newTransformer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        "<r><item/><group><item/></group></r>".getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        assertEquals("0r", output.toString(StandardCharsets.UTF_8.name()));
+
+        TransformStatistics statistics = transformer.getTransformStatistics();
+        assertFalse(statistics.isProjected());
+        assertTrue(statistics.getSourceNodes() >= 4);
+    }
+
+    @Test
+    public void reportsGroundedBuffering() throws Exception {
+        GonzalezTransformer transformer = (GonzalezTransformer) compile(
+            "<xsl:template match='/'><xsl:apply-templates/></xsl:template>"
+            + "<xsl:template match='group'>"
+            + "<xsl:variable name='path'>"
+            + "<xsl:for-each select='ancestor-or-self::*'><p><xsl:value-of select='name()'/></p></xsl:for-each>"
+            + "</xsl:variable>"
+            + "<xsl:value-of select='count($path/p)'/>"
+            + "</xsl:template>").newTransformer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        "<r><group/><group/></r>".getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        assertEquals("22", output.toString(StandardCharsets.UTF_8.name()));
+
+        GroundedBuffering buffering = transformer.getTransformStatistics().getGroundedBuffering();
+        assertEquals(2, buffering.getGroundedExecutions());
+        assertTrue(buffering.getGroundedNanos() > 0);
+        assertTrue(buffering.getBufferedEvents() >= 2 * 6);
+        assertTrue(buffering.getPeakBufferSize() > 0);
+
+        Map<TemplateRule, GroundedBuffering.Usage> usage = buffering.getUsage();
+        assertEquals(1, usage.size());
+        TemplateRule group = usage.keySet().iterator().next();
+        assertEquals(BufferingStrategy.GROUNDED, group.getBufferingStrategy());
+        assertEquals(2, usage.get(group).getExecutions());
+        assertEquals(buffering.getPeakBufferSize(), usage.get(group).getPeakBytes());
+        assertEquals(Long.valueOf(buffering.getPeakBufferSize()),
+                buffering.getPeakBufferedBytes().get(group));
+    }
+
+    private static GonzalezTemplates compile(String templates) throws Exception {
+        String stylesheet = "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='text'/>"
+            + templates
+            + "</xsl:stylesheet>";
+        return (GonzalezTemplates) new GonzalezTransformerFactory().newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * StylesheetArchiveTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Date;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.bluezoo.gonzalez.transform.compiler.CompiledStylesheet;
+import org.bluezoo.gonzalez.transform.compiler.PackageResolver;
+import org.bluezoo.gonzalez.transform.compiler.Pattern;
+import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
+import org.bluezoo.gonzalez.transform.runtime.InternalAccumulator;
+import org.bluezoo.gonzalez.transform.runtime.TransformContext;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests saving compiled stylesheets with GonzalezTemplates.save and loading
+ * them with GonzalezTransformerFactory.loadTemplates.
+ */
+public class StylesheetArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SOURCE =
+        "<orders>"
+        + "<order id='o1' customer='c1'><item price='10' qty='2'/><item price='5' qty='1'/></order>"
+        + "<order id='o2' customer='c2'><item price='3' qty='4'/></order>"
+        + "<order id='o3' customer='c1'><item price='7' qty='1'/></order>"
+        + "</orders>";
+
+    private static final String STYLESHEET =
+        "<xsl:stylesheet version='3.0'"
+        + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'"
+        + " xmlns:xs='http://www.w3.org/2001/XMLSchema'"
+        + " xmlns:f='urn:f'"
+        + " exclude-result-prefixes='xs f'>"
+        + "<xsl:output method='xml' omit-xml-declaration='yes'/>"
+        + "<xsl:key name='by-customer' match='order' use='@customer'/>"
+        + "<xsl:accumulator name='count' as='xs:integer' initial-value='0'>"
+        + "<xsl:accumulator-rule match='item' select='$value + 1'/>"
+        + "</xsl:accumulator>"
+        + "<xsl:param name='label' select=\"'total'\"/>"
+        + "<xsl:function name='f:total' as='xs:decimal'>"
+        + "<xsl:param name='o'/>"
+        + "<xsl:sequence select='sum($o/item/(@price * @qty))'/>"
+        + "</xsl:function>"
+        + "<xsl:template match='/'>"
+        + "<r><xsl:apply-templates select='orders/order'/>"
+        + "<c1 n='{count(key(\"by-customer\", \"c1\"))}'/>"
+        + "<items><xsl:value-of select=\"accumulator-after('count')\"/></items></r>"
+        + "</xsl:template>"
+        + "<xsl:template match='order[@customer = \"c2\"]' priority='2'>"
+        + "<vip id='{@id}'/>"
+        + "</xsl:template>"
+        + "<xsl:template match='order'>"
+        + "<o id='{@id}' t='{f:total(.)}'>"
+        + "<xsl:for-each select='item'><xsl:sort select='@price' data-type='number'/>"
+        + "<xsl:value-of select='@price'/><xsl:if test='position() != last()'>,</xsl:if>"
+        + "</xsl:for-each>"
+        + "<xsl:value-of select='$label'/>"
+        + "</o>"
+        + "</xsl:template>"
+        + "</xsl:stylesheet>";
+
+    @Test
+    public void loadedTemplatesProduceSameOutput() throws Exception {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        GonzalezTemplates compiled = (GonzalezTemplates) factory.newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        STYLESHEET.getBytes(StandardCharsets.UTF_8))));
+        String expected = transform(compiled);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        compiled.save(archive);
+        Templates loaded = factory.loadTemplates(
+                new ByteArrayInputStream(archive.toByteArray()));
+
+        assertEquals("<r><o t=\"25\" id=\"o1\">5,10total</o><vip id=\"o2\"/>"
+                + "<o t=\"7\" id=\"o3\">7total</o><c1 n=\"2\"/><items>4</items></r>",
+                expected);
+        assertEquals(expected, transform(loaded));
+        assertEquals(compiled.getOutputProperties(), loaded.getOutputProperties());
+        assertNotNull(((GonzalezTemplates) loaded).getFunctionResultCache());
+    }
+
+    @Test
+    public void loadedTemplatesAcceptParameters() throws Exception {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        GonzalezTemplates compiled = (GonzalezTemplates) factory.newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        STYLESHEET.getBytes(StandardCharsets.UTF_8))));
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        compiled.save(archive);
+        Templates loaded = factory.loadTemplates(
+                new ByteArrayInputStream(archive.toByteArray()));
+        Transformer transformer = loaded.newTransformer();
+        transformer.setParameter("label", "!");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        SOURCE.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        String result = output.toString(StandardCharsets.UTF_8.name());
+        assertEquals(true, result.contains("5,10!</o>"));
+    }
+
+    @Test(expected = TransformerConfigurationException.class)
+    public void rejectsForeignData() throws Exception {
+        byte[] data = "<xsl:stylesheet/>".getBytes(StandardCharsets.UTF_8);
+        new GonzalezTransformerFactory().loadTemplates(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = TransformerConfigurationException.class)
+    public void rejectsOtherFormatVersion() throws Exception {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        GonzalezTemplates compiled = (GonzalezTemplates) factory.newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        STYLESHEET.getBytes(StandardCharsets.UTF_8))));
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        compiled.save(archive);
+        byte[] data = archive.toByteArray();
+        // Format version follows the 4-byte magic number
+        data[7]++;
+        factory.loadTemplates(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = TransformerConfigurationException.class)
+    public void rejectsOtherBuild() throws Exception {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        GonzalezTemplates compiled = (GonzalezTemplates) factory.newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        STYLESHEET.getBytes(StandardCharsets.UTF_8))));
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        compiled.save(archive);
+        byte[] data = archive.toByteArray();
+        // The build stamp follows the format version and its own length;
+        // an unversioned build is stamped with the hash of its classes
+        data[10]++;
+        factory.loadTemplates(new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void savesBindingExpressions() throws Exception {
+        String result = roundTrip(new GonzalezTransformerFactory(), stylesheet("text", ""
+            + "<xsl:template match='/'>"
+            + "<xsl:value-of select='for $o in orders/order return string($o/@id)'/>|"
+            + "<xsl:value-of select='let $n := count(//item) return $n * 2'/>|"
+            + "<xsl:value-of select='some $i in //item satisfies $i/@price &gt; 9'/>|"
+            + "<xsl:value-of select='every $i in //item satisfies $i/@qty &gt; 1'/>"
+            + "</xsl:template>"));
+        assertEquals("o1 o2 o3|8|true|false", result);
+    }
+
+    @Test
+    public void savesFork() throws Exception {
+        String result = roundTrip(new GonzalezTransformerFactory(), stylesheet("xml", ""
+            + "<xsl:template match='/'><r><xsl:fork>"
+            + "<xsl:sequence><n><xsl:value-of select='count(//order)'/></n></xsl:sequence>"
+            + "<xsl:sequence><n><xsl:value-of select='count(//item)'/></n></xsl:sequence>"
+            + "</xsl:fork></r></xsl:template>"));
+        assertEquals("<r><n>3</n><n>4</n></r>", result);
+    }
+
+    @Test
+    public void savesEvaluateParameters() throws Exception {
+        String result = roundTrip(new GonzalezTransformerFactory(), stylesheet("text", ""
+            + "<xsl:template match='/'>"
+            + "<xsl:evaluate xpath=\"'$p * count(//order)'\" context-item='.'>"
+            + "<xsl:with-param name='p' select='7'/>"
+            + "</xsl:evaluate>"
+            + "</xsl:template>"));
+        assertEquals("21", result);
+    }
+
+    @Test
+    public void savesNamespaceAliases() throws Exception {
+        String result = roundTrip(new GonzalezTransformerFactory(), stylesheet("xml", ""
+            + "<xsl:namespace-alias stylesheet-prefix='f' result-prefix='xs'/>"
+            + "<xsl:template match='/'><f:r/></xsl:template>"));
+        assertEquals("<xs:r xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"/>", result);
+    }
+
+    @Test
+    public void savesImportedSchemas() throws Exception {
+        File schema = folder.newFile("s.xsd");
+        Files.write(schema.toPath(), (""
+            + "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:s'>"
+            + "<xs:element name='total' type='xs:decimal'/>"
+            + "</xs:schema>").getBytes(StandardCharsets.UTF_8));
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        String stylesheet = stylesheet("text", ""
+            + "<xsl:import-schema namespace='urn:s' schema-location='"
+            + schema.toURI() + "'/>"
+            + "<xsl:template match='/'>"
+            + "<xsl:value-of select='sum(//item/@qty)'/>"
+            + "</xsl:template>");
+        assertEquals("8", roundTrip(factory, stylesheet));
+        CompiledStylesheet loaded = load(factory, compile(factory, stylesheet));
+        assertNotNull(loaded.getImportedSchema("urn:s").getElement("total"));
+    }
+
+    @Test
+    public void savesInternalAccumulators() throws Exception {
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        GonzalezTemplates compiled = compile(factory, STYLESHEET);
+        Pattern pattern = null;
+        for (TemplateRule rule : compiled.getStylesheet().getTemplateRules()) {
+            if (rule.getMatchPattern() != null) {
+                pattern = rule.getMatchPattern();
+            }
+        }
+        compiled.getStylesheet().setInternalAccumulators(Collections.singletonList(
+                InternalAccumulator.createCounter("orders", pattern, null)));
+        InternalAccumulator loaded = load(factory, compiled).getInternalAccumulators().get(0);
+        assertEquals("orders", loaded.getSyntheticId());
+        assertEquals(pattern.toString(), loaded.getMatchPattern().toString());
+        assertEquals(0, (int) loaded.getCurrentValue().asNumber());
+        loaded.initialize();
+        assertEquals(0, (int) loaded.getCurrentValue().asNumber());
+    }
+
+    @Test
+    public void savesOverrides() throws Exception {
+        File pkg = folder.newFile("pkg.xsl");
+        Files.write(pkg.toPath(), (""
+            + "<xsl:package name='urn:pkg' package-version='1.0' version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'"
+            + " xmlns:f='urn:f'>"
+            + "<xsl:function name='f:label' visibility='public'>"
+            + "<xsl:param name='s'/><xsl:sequence select=\"concat('pkg ', $s)\"/>"
+            + "</xsl:function>"
+            + "</xsl:package>").getBytes(StandardCharsets.UTF_8));
+        PackageResolver resolver = new PackageResolver();
+        resolver.registerPackageLocation("urn:pkg", pkg.toURI().toString());
+        GonzalezTransformerFactory factory = new GonzalezTransformerFactory();
+        factory.setPackageResolver(resolver);
+        String result = roundTrip(factory, stylesheet("text", ""
+            + "<xsl:use-package name='urn:pkg' package-version='1.0'>"
+            + "<xsl:override>"
+            + "<xsl:function name='f:label' visibility='public'>"
+            + "<xsl:param name='s'/><xsl:sequence select=\"concat('override ', $s)\"/>"
+            + "</xsl:function>"
+            + "</xsl:override>"
+            + "</xsl:use-package>"
+            + "<xsl:template match='/'><xsl:value-of select=\"f:label('x')\"/></xsl:template>"));
+        assertEquals("override x", result);
+    }
+
+    @Test
+    public void namesClassesThatCannotBeSaved() throws Exception {
+        GonzalezTemplates compiled = compile(new GonzalezTransformerFactory(), STYLESHEET);
+        compiled.getStylesheet().setInternalAccumulators(Collections.singletonList(
+                InternalAccumulator.createCounter("held", new HoldingPattern(new Object()), null)));
+        try {
+            compiled.save(new ByteArrayOutputStream());
+            fail("saved a stylesheet holding an unserializable object");
+        } catch (NotSerializableException e) {
+            assertEquals("java.lang.Object", e.getMessage());
+        }
+        compiled.getStylesheet().setInternalAccumulators(Collections.singletonList(
+                InternalAccumulator.createCounter("held", new HoldingPattern(new Date()), null)));
+        try {
+            compiled.save(new ByteArrayOutputStream());
+            fail("saved a stylesheet holding a class that is not allowed");
+        } catch (InvalidClassException e) {
+            assertEquals("java.util.Date", e.classname);
+        }
+    }
+
+    /** Pattern holding an object that is not part of a compiled stylesheet. */
+    private static final class HoldingPattern implements Pattern {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object held;
+
+        HoldingPattern(Object held) {
+            this.held = held;
+        }
+
+        @Override
+        public boolean matches(XPathNode node, TransformContext context) {
+            return false;
+        }
+
+        @Override
+        public double getDefaultPriority() {
+            return 0.5;
+        }
+
+        @Override
+        public String toString() {
+            return "held";
+        }
+    }
+
+    /**
+     * Compiles a stylesheet, saves and loads it, and checks that both
+     * give the same result for the source document.
+     */
+    private static String roundTrip(GonzalezTransformerFactory factory, String stylesheet)
+            throws Exception {
+        GonzalezTemplates compiled = compile(factory, stylesheet);
+        String expected = transform(compiled);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        compiled.save(archive);
+        Templates loaded = factory.loadTemplates(
+                new ByteArrayInputStream(archive.toByteArray()));
+        assertEquals(expected, transform(loaded));
+        return expected;
+    }
+
+    private static GonzalezTemplates compile(GonzalezTransformerFactory factory,
+            String stylesheet) throws Exception {
+        return (GonzalezTemplates) factory.newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static CompiledStylesheet load(GonzalezTransformerFactory factory,
+            GonzalezTemplates compiled) throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        compiled.save(archive);
+        return ((GonzalezTemplates) factory.loadTemplates(
+                new ByteArrayInputStream(archive.toByteArray()))).getStylesheet();
+    }
+
+    private static String stylesheet(String method, String declarations) {
+        return "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'"
+            + " xmlns:xs='http://www.w3.org/2001/XMLSchema'"
+            + " xmlns:f='urn:f'"
+            + " exclude-result-prefixes='xs f'>"
+            + "<xsl:output method='" + method + "' omit-xml-declaration='yes'/>"
+            + declarations
+            + "</xsl:stylesheet>";
+    }
+
+    private static String transform(Templates templates) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        templates.newTransformer().transform(
+                new StreamSource(new ByteArrayInputStream(
+                        SOURCE.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+}
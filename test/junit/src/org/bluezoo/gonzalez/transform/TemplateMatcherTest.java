@@ -0,0 +1,110 @@
+/*
+ * TemplateMatcherTest.java
+ * Copyright (C) 2026 Chris Burdess
+ */
+package org.bluezoo.gonzalez.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests template rule dispatch through the shared matcher.
+ */
+public class TemplateMatcherTest {
+
+    private static final String SOURCE =
+        "<r><i type='a'/><i type='b' k='x'/><i type='c'/><i k='x'/><j type='a'/>text</r>";
+
+    @Test
+    public void sharesMatcherAcrossTransformers() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match='i'>i</xsl:template>");
+        assertSame(templates.getTemplateMatcher(), templates.getTemplateMatcher());
+        assertEquals("iiiitext", transform(templates, SOURCE));
+        assertEquals("iiiitext", transform(templates, SOURCE));
+        assertSame(templates.getTemplateMatcher(), templates.getStylesheet().getTemplateMatcher());
+    }
+
+    @Test
+    public void dispatchesOnAttributeValues() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match=\"i[@type='a']\">A</xsl:template>"
+            + "<xsl:template match=\"i[@type='b']\">B</xsl:template>"
+            + "<xsl:template match='i'>I</xsl:template>"
+            + "<xsl:template match='*[@type]' priority='-0.4'>*</xsl:template>"
+            + "<xsl:template match='text()'/>");
+        assertEquals("ABII*", transform(templates, SOURCE));
+    }
+
+    @Test
+    public void dispatchesOnSeveralAttributes() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match=\"i[@type='b']\">B<xsl:next-match/></xsl:template>"
+            + "<xsl:template match=\"i[@k='x']\" priority='0.4'>K</xsl:template>"
+            + "<xsl:template match='node()' priority='-1'>.</xsl:template>"
+            + "<xsl:template match='/'><xsl:apply-templates select='r/node()'/></xsl:template>");
+        assertEquals(".BK.K..", transform(templates, SOURCE));
+    }
+
+    @Test
+    public void dispatchesOnAncestorPaths() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match='a/i'>1</xsl:template>"
+            + "<xsl:template match='b/a/i'>2</xsl:template>"
+            + "<xsl:template match='/r/a/i'>3</xsl:template>"
+            + "<xsl:template match='*/c/i'>4</xsl:template>"
+            + "<xsl:template match='n:c/i' xmlns:n='urn:n'>5</xsl:template>"
+            + "<xsl:template match='i'>.</xsl:template>"
+            + "<xsl:template match=\"c/i[@k='x']\" priority='0.6'>K</xsl:template>"
+            + "<xsl:template match='text()'/>");
+        assertEquals("32442K45.1", transform(templates,
+            "<r xmlns:n='urn:n'><a><i/></a><b><a><i/></a></b><x><c><i/></c></x>"
+            + "<b><a><c><i/></c></a></b><a><b><a><i/></a></b></a><c><i k='x'/></c>"
+            + "<c><i/></c><n:c><i/></n:c><n:x><i/></n:x><x><a><i/></a></x></r>"));
+    }
+
+    @Test
+    public void checksHigherRankedRulesBeforePaths() throws Exception {
+        GonzalezTemplates templates = compile(
+            "<xsl:template match=\"i[@k='x']\" priority='1'>K</xsl:template>"
+            + "<xsl:template match='a/i'>A<xsl:next-match/></xsl:template>"
+            + "<xsl:template match='i'>I</xsl:template>"
+            + "<xsl:template match='text()'/>");
+        assertEquals("KAII", transform(templates,
+            "<r><a><i k='x'/></a><a><i/></a><i/></r>"));
+    }
+
+    private static GonzalezTemplates compile(String templates) throws Exception {
+        String stylesheet = "<xsl:stylesheet version='3.0'"
+            + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+            + "<xsl:output method='text'/>"
+            + templates
+            + "</xsl:stylesheet>";
+        Templates result = new GonzalezTransformerFactory().newTemplates(
+                new StreamSource(new ByteArrayInputStream(
+                        stylesheet.getBytes(StandardCharsets.UTF_8))));
+        return (GonzalezTemplates) result;
+    }
+
+    private static String transform(Templates templates, String source)
+            throws Exception {
+        Transformer transformer = templates.newTransformer();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(
+                new StreamSource(new ByteArrayInputStream(
+                        source.getBytes(StandardCharsets.UTF_8))),
+                new StreamResult(output));
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * SAXEventBufferTest.java
+ * Copyright (C) 2026 Chris Burdess
+ *
+ * This file is part of Gonzalez, a streaming XML parser.
+ * For more information please visit https://www.nongnu.org/gonzalez/
+ *
+ * Gonzalez is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Gonzalez is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Gonzalez.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bluezoo.gonzalez.transform.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bluezoo.gonzalez.transform.compiler.TemplateParameter;
+import org.bluezoo.gonzalez.transform.compiler.TemplateRule;
+import org.bluezoo.gonzalez.transform.xpath.type.NodeType;
+import org.bluezoo.gonzalez.transform.xpath.type.XPathNode;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SAXEventBuffer} - recording, replay and the
+ * navigable view over the encoded events.
+ *
+ * @author <a href="mailto:dog@gnu.org">Chris Burdess</a>
+ */
+public class SAXEventBufferTest {
+
+    @Test
+    public void testReplay() throws Exception {
+        SAXEventBuffer buffer = record();
+        EventLog log = new EventLog();
+        buffer.replay(log);
+        assertEquals("startDocument|prefix(p,urn:p)|start(urn:p,a,p:a;id=1,x=two)"
+                + "|chars(one )|chars(two)|comment( c )|start(,b,b;y=3)|end(,b,b)"
+                + "|pi(t,d)|chars(Ü)|end(urn:p,a,p:a)|endPrefix(p)|endDocument",
+                log.toString());
+        log = new EventLog();
+        buffer.replayContentWithTypes(log);
+        assertTrue(log.toString().startsWith("prefix(p,urn:p)|start(urn:p,a,p:a;id=1,x=two)"
+                + "|chars(one )|chars(two)|comment( c )|start(,b,b;y=3)|type(urn:t,T)|atype(0,urn:t,A)"));
+        // Attributes are only valid during startElement, so queried there
+        assertEquals("2,1,two,ID,1,-1,null", log.probe);
+        assertEquals(13, buffer.size());
+        assertEquals("one twoÜ", buffer.getTextContent());
+        assertTrue(buffer.hasNonEmptyContent());
+    }
+
+    @Test
+    public void testReplayIntoBuffer() throws Exception {
+        SAXEventBuffer copy = new SAXEventBuffer();
+        record().replay(copy);
+        EventLog log = new EventLog();
+        copy.replay(log);
+        EventLog expected = new EventLog();
+        record().replay(expected);
+        assertEquals(expected.toString(), log.toString());
+    }
+
+    @Test
+    public void testEmptyContent() throws Exception {
+        SAXEventBuffer buffer = new SAXEventBuffer();
+        assertTrue(buffer.isEmpty());
+        buffer.startDocument();
+        buffer.characters(new char[0], 0, 0);
+        buffer.endDocument();
+        assertFalse(buffer.isEmpty());
+        assertFalse(buffer.hasNonEmptyContent());
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testNavigableView() throws Exception {
+        XPathNode root = record().getNavigableRoot();
+        assertEquals(NodeType.ROOT, root.getNodeType());
+        assertEquals("one twoÜ", root.getStringValue());
+
+        XPathNode a = root.getChildren().next();
+        assertEquals(NodeType.ELEMENT, a.getNodeType());
+        assertEquals("urn:p", a.getNamespaceURI());
+        assertEquals("a", a.getLocalName());
+        assertEquals("p", a.getPrefix());
+        assertSame(root, a.getParent());
+        assertSame(a, root.getChildren().next());
+
+        List<XPathNode> attributes = list(a.getAttributes());
+        assertEquals(2, attributes.size());
+        assertEquals("id", attributes.get(0).getLocalName());
+        assertEquals("1", attributes.get(0).getStringValue());
+        assertEquals("two", attributes.get(1).getStringValue());
+        assertSame(a, attributes.get(1).getParent());
+
+        List<XPathNode> namespaces = list(a.getNamespaces());
+        assertEquals(2, namespaces.size());
+        assertEquals("p", namespaces.get(0).getLocalName());
+        assertEquals("urn:p", namespaces.get(0).getStringValue());
+        assertEquals("xml", namespaces.get(1).getLocalName());
+
+        List<XPathNode> children = list(a.getChildren());
+        assertEquals(5, children.size());
+        assertEquals(NodeType.TEXT, children.get(0).getNodeType());
+        assertEquals("one two", children.get(0).getStringValue());
+        assertEquals(NodeType.COMMENT, children.get(1).getNodeType());
+        assertEquals(" c ", children.get(1).getStringValue());
+        XPathNode b = children.get(2);
+        assertEquals("b", b.getLocalName());
+        assertEquals("T", b.getTypeLocalName());
+        assertEquals("urn:t", b.getTypeNamespaceURI());
+        assertEquals("A", b.getAttributes().next().getTypeLocalName());
+        assertFalse(b.getChildren().hasNext());
+        assertEquals(NodeType.PROCESSING_INSTRUCTION, children.get(3).getNodeType());
+        assertEquals("t", children.get(3).getLocalName());
+        assertEquals("d", children.get(3).getStringValue());
+        assertEquals("Ü", children.get(4).getStringValue());
+
+        assertSame(children.get(3), b.getFollowingSibling());
+        assertSame(children.get(1), b.getPrecedingSibling());
+        assertNull(children.get(4).getFollowingSibling());
+        assertNull(children.get(0).getPrecedingSibling());
+        assertNull(a.getFollowingSibling());
+        for (int i = 1; i < children.size(); i++) {
+            assertTrue(children.get(i - 1).getDocumentOrder()
+                    < children.get(i).getDocumentOrder());
+        }
+        assertSame(root, b.getRoot());
+    }
+
+    @Test
+    public void testGroundedTree() throws Exception {
+        assertNull(GroundedExecutor.buildTreeFromBuffer(new SAXEventBuffer()));
+        XPathNode root = GroundedExecutor.buildTreeFromBuffer(record());
+        assertEquals("a", root.getChildren().next().getLocalName());
+    }
+
+    @Test
+    public void testGroundedBuffering() throws Exception {
+        GroundedBuffering buffering = new GroundedBuffering();
+        SAXEventBuffer small = new SAXEventBuffer();
+        small.characters("x".toCharArray(), 0, 1);
+        buffering.record(null, small);
+        SAXEventBuffer large = record();
+        buffering.record(null, large);
+        assertEquals(small.size() + large.size(), buffering.getBufferedEvents());
+
+        TemplateRule template = new TemplateRule(null, "t", null, 0, 0,
+                Collections.<TemplateParameter>emptyList(), null);
+        buffering.record(template, small);
+        buffering.recordExecution(template, 5);
+        buffering.recordExecution(template, 7);
+        GroundedBuffering.Usage usage = buffering.getUsage().get(template);
+        assertEquals(2, usage.getExecutions());
+        assertEquals(12, usage.getNanos());
+        assertEquals(small.getEncodedSize(), usage.getPeakBytes());
+        assertEquals(2, buffering.getGroundedExecutions());
+        assertEquals(large.getEncodedSize(), buffering.getPeakBufferSize());
+    }
+
+    /** Records a small document exercising every kind of event. */
+    private static SAXEventBuffer record() throws Exception {
+        SAXEventBuffer buffer = new SAXEventBuffer();
+        buffer.startDocument();
+        buffer.startPrefixMapping("p", "urn:p");
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "id", "id", "ID", "1");
+        atts.addAttribute("", "x", "x", "CDATA", "two");
+        buffer.startElement("urn:p", "a", "p:a", atts);
+        char[] text = "xone two".toCharArray();
+        buffer.characters(text, 1, 4);
+        buffer.characters(text, 5, 3);
+        buffer.comment(" c ".toCharArray(), 0, 3);
+        AttributesImpl typed = new AttributesImpl();
+        typed.addAttribute("", "y", "y", "CDATA", "3");
+        buffer.startElementWithTypes("", "b", "b", typed, "urn:t", "T",
+                Arrays.asList(new String[][] { { "urn:t", "A" } }));
+        buffer.endElement("", "b", "b");
+        buffer.processingInstruction("t", "d");
+        buffer.characters("Ü".toCharArray(), 0, 1);
+        buffer.endElement("urn:p", "a", "p:a");
+        buffer.endPrefixMapping("p");
+        buffer.endDocument();
+        return buffer;
+    }
+
+    private static List<XPathNode> list(Iterator<XPathNode> nodes) {
+        List<XPathNode> list = new ArrayList<>();
+        while (nodes.hasNext()) {
+            list.add(nodes.next());
+        }
+        return list;
+    }
+
+    /** Logs the events it receives. */
+    private static class EventLog extends DefaultHandler
+            implements LexicalHandler, SAXEventBuffer.TypeAwareHandler {
+
+        private final StringBuilder log = new StringBuilder();
+        String probe;
+
+        private void add(String event) {
+            if (log.length() > 0) {
+                log.append('|');
+            }
+            log.append(event);
+        }
+
+        @Override public void startDocument() { add("startDocument"); }
+        @Override public void endDocument() { add("endDocument"); }
+        @Override public void startPrefixMapping(String prefix, String uri) {
+            add("prefix(" + prefix + "," + uri + ")");
+        }
+        @Override public void endPrefixMapping(String prefix) {
+            add("endPrefix(" + prefix + ")");
+        }
+        @Override public void startElement(String uri, String localName, String qName,
+                Attributes atts) {
+            StringBuilder buf = new StringBuilder("start(" + uri + "," + localName + "," + qName);
+            for (int i = 0; i < atts.getLength(); i++) {
+                buf.append(i == 0 ? ';' : ',');
+                buf.append(atts.getQName(i)).append('=').append(atts.getValue(i));
+            }
+            add(buf.append(')').toString());
+            if (probe == null) {
+                probe = atts.getLength() + "," + atts.getValue("id")
+                        + "," + atts.getValue("", "x") + "," + atts.getType("id")
+                        + "," + atts.getIndex("", "x") + "," + atts.getIndex("y")
+                        + "," + atts.getValue(2);
+            }
+        }
+        @Override public void endElement(String uri, String localName, String qName) {
+            add("end(" + uri + "," + localName + "," + qName + ")");
+        }
+        @Override public void characters(char[] ch, int start, int length) {
+            add("chars(" + new String(ch, start, length) + ")");
+        }
+        @Override public void processingInstruction(String target, String data) {
+            add("pi(" + target + "," + data + ")");
+        }
+        @Override public void comment(char[] ch, int start, int length) {
+            add("comment(" + new String(ch, start, length) + ")");
+        }
+        @Override public void startDTD(String name, String publicId, String systemId) { }
+        @Override public void endDTD() { }
+        @Override public void startEntity(String name) { }
+        @Override public void endEntity(String name) { }
+        @Override public void startCDATA() { }
+        @Override public void endCDATA() { }
+        @Override public void setElementType(String namespaceURI, String localName) {
+            add("type(" + namespaceURI + "," + localName + ")");
+        }
+        @Override public void setAttributeType(int index, String namespaceURI, String localName) {
+            add("atype(" + index + "," + namespaceURI + "," + localName + ")");
+        }
+
+        @Override
+        public String toString() {
+            return log.toString();
+        }
+    }
+}